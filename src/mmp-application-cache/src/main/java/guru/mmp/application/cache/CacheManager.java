@@ -21,6 +21,8 @@ package guru.mmp.application.cache;
 import com.hazelcast.config.*;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.monitor.NearCacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -143,6 +145,35 @@ public class CacheManager
         mapConfig.setAsyncBackupCount(cacheConfiguration.getAsyncBackupCount());
 
         mapConfig.setReadBackupData(cacheConfiguration.getReadBackupData());
+
+        /*
+         * Configure the near cache, which keeps a bounded local copy of the entries read from the
+         * distributed in-memory cache so that repeated reads do not require a network hop to the
+         * member that owns the entry. The local copy is invalidated when the entry is updated or
+         * removed on any member.
+         */
+        if (cacheConfiguration.getNearCacheEnabled())
+        {
+          logger.info("Enabling the near cache for the distributed in-memory cache ("
+              + cacheConfiguration.getName() + ")");
+
+          NearCacheConfig nearCacheConfig = new NearCacheConfig(cacheConfiguration.getName());
+
+          nearCacheConfig.setInMemoryFormat(Enum.valueOf(InMemoryFormat.class,
+              cacheConfiguration.getInMemoryFormat()));
+
+          nearCacheConfig.setInvalidateOnChange(true);
+
+          nearCacheConfig.setMaxIdleSeconds(cacheConfiguration.getNearCacheMaxIdleSeconds());
+
+          nearCacheConfig.setTimeToLiveSeconds(cacheConfiguration.getNearCacheTimeToLiveSeconds());
+
+          nearCacheConfig.setEvictionConfig(new EvictionConfig(
+              cacheConfiguration.getNearCacheMaxSize(), EvictionConfig.MaxSizePolicy.ENTRY_COUNT,
+              Enum.valueOf(EvictionPolicy.class, cacheConfiguration.getNearCacheEvictionPolicy())));
+
+          mapConfig.setNearCacheConfig(nearCacheConfig);
+        }
       }
 
       HazelcastInstance hazelcastInstance = Hazelcast.newHazelcastInstance(config);
@@ -187,4 +218,34 @@ public class CacheManager
           + ") does not exist");
     }
   }
+
+  /**
+   * Returns the statistics for the near cache for the distributed in-memory cache with the
+   * specified name.
+   * <p/>
+   * The statistics are only available if both the near cache and statistics are enabled for the
+   * distributed in-memory cache.
+   *
+   * @param name the name of the distributed in-memory cache
+   *
+   * @return the statistics for the near cache or <code>null</code> if no statistics are available
+   */
+  public NearCacheStatistics getNearCacheStatistics(String name)
+    throws CacheManagerException
+  {
+    Map cache = getCache(name);
+
+    if (cache instanceof IMap)
+    {
+      NearCacheStats nearCacheStats = ((IMap) cache).getLocalMapStats().getNearCacheStats();
+
+      if (nearCacheStats != null)
+      {
+        return new NearCacheStatistics(nearCacheStats.getHits(), nearCacheStats.getMisses(),
+            nearCacheStats.getEvictions(), nearCacheStats.getOwnedEntryCount());
+      }
+    }
+
+    return null;
+  }
 }
@@ -247,6 +247,32 @@ public class CacheManagerConfiguration
      */
     private boolean readBackupData;
 
+    /**
+     * Is the near cache, which keeps a bounded local copy of the entries read from the
+     * distributed in-memory cache on this cluster member, enabled?
+     */
+    private boolean nearCacheEnabled;
+
+    /**
+     * The maximum number of entries in the near cache.
+     */
+    private int nearCacheMaxSize = 10000;
+
+    /**
+     * The eviction policy for the near cache.
+     */
+    private String nearCacheEvictionPolicy = "LRU";
+
+    /**
+     * The maximum number of seconds an entry can stay in the near cache without being read.
+     */
+    private int nearCacheMaxIdleSeconds;
+
+    /**
+     * The maximum number of seconds an entry can stay in the near cache.
+     */
+    private int nearCacheTimeToLiveSeconds;
+
     /**
      * Returns the number of asynchronous backups for the distributed in-memory cache.
      *
@@ -327,6 +353,58 @@ public class CacheManagerConfiguration
       return name;
     }
 
+    /**
+     * Returns whether the near cache is enabled for the distributed in-memory cache.
+     *
+     * @return <code>true</code> if the near cache is enabled for the distributed in-memory cache
+     *         or <code>false</code> otherwise
+     */
+    public boolean getNearCacheEnabled()
+    {
+      return nearCacheEnabled;
+    }
+
+    /**
+     * Returns the eviction policy for the near cache.
+     *
+     * @return the eviction policy for the near cache
+     */
+    public String getNearCacheEvictionPolicy()
+    {
+      return nearCacheEvictionPolicy;
+    }
+
+    /**
+     * Returns the maximum number of seconds an entry can stay in the near cache without being
+     * read.
+     *
+     * @return the maximum number of seconds an entry can stay in the near cache without being read
+     */
+    public int getNearCacheMaxIdleSeconds()
+    {
+      return nearCacheMaxIdleSeconds;
+    }
+
+    /**
+     * Returns the maximum number of entries in the near cache.
+     *
+     * @return the maximum number of entries in the near cache
+     */
+    public int getNearCacheMaxSize()
+    {
+      return nearCacheMaxSize;
+    }
+
+    /**
+     * Returns the maximum number of seconds an entry can stay in the near cache.
+     *
+     * @return the maximum number of seconds an entry can stay in the near cache
+     */
+    public int getNearCacheTimeToLiveSeconds()
+    {
+      return nearCacheTimeToLiveSeconds;
+    }
+
     /**
      * Returns whether read-backup-data is enabled for the distributed in-memory cache.
      *
@@ -430,6 +508,59 @@ public class CacheManagerConfiguration
       this.name = name;
     }
 
+    /**
+     * Set whether the near cache is enabled for the distributed in-memory cache.
+     *
+     * @param nearCacheEnabled <code>true</code> if the near cache is enabled for the distributed
+     *                         in-memory cache or <code>false</code> otherwise
+     */
+    public void setNearCacheEnabled(boolean nearCacheEnabled)
+    {
+      this.nearCacheEnabled = nearCacheEnabled;
+    }
+
+    /**
+     * Set the eviction policy for the near cache.
+     *
+     * @param nearCacheEvictionPolicy the eviction policy for the near cache
+     */
+    public void setNearCacheEvictionPolicy(String nearCacheEvictionPolicy)
+    {
+      this.nearCacheEvictionPolicy = nearCacheEvictionPolicy;
+    }
+
+    /**
+     * Set the maximum number of seconds an entry can stay in the near cache without being read.
+     *
+     * @param nearCacheMaxIdleSeconds the maximum number of seconds an entry can stay in the near
+     *                                cache without being read
+     */
+    public void setNearCacheMaxIdleSeconds(int nearCacheMaxIdleSeconds)
+    {
+      this.nearCacheMaxIdleSeconds = nearCacheMaxIdleSeconds;
+    }
+
+    /**
+     * Set the maximum number of entries in the near cache.
+     *
+     * @param nearCacheMaxSize the maximum number of entries in the near cache
+     */
+    public void setNearCacheMaxSize(int nearCacheMaxSize)
+    {
+      this.nearCacheMaxSize = nearCacheMaxSize;
+    }
+
+    /**
+     * Set the maximum number of seconds an entry can stay in the near cache.
+     *
+     * @param nearCacheTimeToLiveSeconds the maximum number of seconds an entry can stay in the near
+     *                                   cache
+     */
+    public void setNearCacheTimeToLiveSeconds(int nearCacheTimeToLiveSeconds)
+    {
+      this.nearCacheTimeToLiveSeconds = nearCacheTimeToLiveSeconds;
+    }
+
     /**
      * Set whether read-backup-data is enabled for the distributed in-memory cache.
      *
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.cache;
+
+/**
+ * The <code>NearCacheStatistics</code> class holds the statistics for the near cache for a
+ * distributed in-memory cache on this cluster member.
+ *
+ * @author Marcus Portmann
+ */
+public class NearCacheStatistics
+{
+  /**
+   * The number of entries evicted from the near cache.
+   */
+  private long evictions;
+
+  /**
+   * The number of reads that were satisfied by the near cache.
+   */
+  private long hits;
+
+  /**
+   * The number of reads that were not satisfied by the near cache.
+   */
+  private long misses;
+
+  /**
+   * The number of entries in the near cache.
+   */
+  private long size;
+
+  /**
+   * Constructs a new <code>NearCacheStatistics</code>.
+   *
+   * @param hits      the number of reads that were satisfied by the near cache
+   * @param misses    the number of reads that were not satisfied by the near cache
+   * @param evictions the number of entries evicted from the near cache
+   * @param size      the number of entries in the near cache
+   */
+  public NearCacheStatistics(long hits, long misses, long evictions, long size)
+  {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.size = size;
+  }
+
+  /**
+   * Returns the number of entries evicted from the near cache.
+   *
+   * @return the number of entries evicted from the near cache
+   */
+  public long getEvictions()
+  {
+    return evictions;
+  }
+
+  /**
+   * Returns the number of reads that were satisfied by the near cache.
+   *
+   * @return the number of reads that were satisfied by the near cache
+   */
+  public long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of reads that were not satisfied by the near cache.
+   *
+   * @return the number of reads that were not satisfied by the near cache
+   */
+  public long getMisses()
+  {
+    return misses;
+  }
+
+  /**
+   * Returns the number of entries in the near cache.
+   *
+   * @return the number of entries in the near cache
+   */
+  public long getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Returns a string representation of the near cache statistics.
+   *
+   * @return a string representation of the near cache statistics
+   */
+  @Override
+  public String toString()
+  {
+    return "NearCacheStatistics {hits=\"" + hits + "\", misses=\"" + misses + "\", evictions=\""
+        + evictions + "\", size=\"" + size + "\"}";
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import guru.mmp.application.cache.CacheManager;
+import guru.mmp.application.cache.CacheManagerConfiguration;
+import guru.mmp.application.cache.NearCacheStatistics;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>CacheManagerTest</code> class contains the implementation of the JUnit tests for the
+ * <code>CacheManager</code> class.
+ *
+ * @author Marcus Portmann
+ */
+public class CacheManagerTest
+{
+  private static final String CLUSTER_NAME = "CacheManagerTest";
+  private static final String CLUSTER_PASSWORD = "Password1";
+  private static final int NUMBER_OF_ENTRIES = 1000;
+  private static final int NUMBER_OF_READS = 20;
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(CacheManagerTest.class);
+
+  /**
+   * Shutdown the cluster members started by the tests.
+   */
+  @After
+  public void shutdown()
+  {
+    Hazelcast.shutdownAll();
+  }
+
+  /**
+   * Test that the near cache serves repeated reads locally and is invalidated when an entry is
+   * updated on another cluster member.
+   */
+  @Test
+  public void nearCacheTest()
+    throws Exception
+  {
+    CacheManager cacheManager = new CacheManager(getConfiguration());
+
+    HazelcastInstance peer = startPeer();
+
+    Map<String, String> peerNearCached = peer.getMap("NearCached");
+    Map<String, String> peerUncached = peer.getMap("Uncached");
+
+    for (int i = 0; i < NUMBER_OF_ENTRIES; i++)
+    {
+      peerNearCached.put("Key" + i, "Value" + i);
+      peerUncached.put("Key" + i, "Value" + i);
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, String> nearCached = cacheManager.getCache("NearCached");
+
+    @SuppressWarnings("unchecked")
+    Map<String, String> uncached = cacheManager.getCache("Uncached");
+
+    long uncachedElapsed = readEntries(uncached);
+    long nearCachedElapsed = readEntries(nearCached);
+
+    logger.info(String.format("Performed %d reads in %d ms without a near cache (%.0f ns/read)",
+        NUMBER_OF_ENTRIES * NUMBER_OF_READS, uncachedElapsed / 1000000, ((double) uncachedElapsed)
+        / (NUMBER_OF_ENTRIES * NUMBER_OF_READS)));
+    logger.info(String.format("Performed %d reads in %d ms with a near cache (%.0f ns/read)",
+        NUMBER_OF_ENTRIES * NUMBER_OF_READS, nearCachedElapsed / 1000000,
+        ((double) nearCachedElapsed) / (NUMBER_OF_ENTRIES * NUMBER_OF_READS)));
+
+    NearCacheStatistics nearCacheStatistics = cacheManager.getNearCacheStatistics("NearCached");
+
+    assertNotNull("Failed to retrieve the statistics for the near cache", nearCacheStatistics);
+    assertTrue("The near cache was not used to satisfy the reads", nearCacheStatistics.getHits()
+        > 0);
+
+    logger.info("Retrieved the near cache statistics: " + nearCacheStatistics);
+
+    assertNull("Near cache statistics were returned for a cache without a near cache",
+        cacheManager.getNearCacheStatistics("Uncached"));
+
+    // Update the entries on the other cluster member and confirm the near cache is invalidated
+    for (int i = 0; i < NUMBER_OF_ENTRIES; i++)
+    {
+      peerNearCached.put("Key" + i, "UpdatedValue" + i);
+    }
+
+    List<String> staleKeys = new ArrayList<>();
+
+    long deadline = System.currentTimeMillis() + 30000;
+
+    do
+    {
+      staleKeys.clear();
+
+      for (int i = 0; i < NUMBER_OF_ENTRIES; i++)
+      {
+        if (!("UpdatedValue" + i).equals(nearCached.get("Key" + i)))
+        {
+          staleKeys.add("Key" + i);
+        }
+      }
+
+      if (!staleKeys.isEmpty())
+      {
+        Thread.sleep(250);
+      }
+    }
+    while ((!staleKeys.isEmpty()) && (System.currentTimeMillis() < deadline));
+
+    assertEquals("The near cache was not invalidated for the updated entries " + staleKeys, 0,
+        staleKeys.size());
+  }
+
+  private CacheManagerConfiguration.CacheConfiguration getCacheConfiguration(String name,
+      boolean nearCacheEnabled)
+  {
+    CacheManagerConfiguration.CacheConfiguration cacheConfiguration =
+        new CacheManagerConfiguration.CacheConfiguration();
+
+    cacheConfiguration.setName(name);
+    cacheConfiguration.setMaxSizePolicy("PER_NODE");
+    cacheConfiguration.setMaxSize(10000);
+    cacheConfiguration.setInMemoryFormat("OBJECT");
+    cacheConfiguration.setEvictionPolicy("LRU");
+    cacheConfiguration.setStatisticsEnabled(true);
+    cacheConfiguration.setBackupCount(0);
+    cacheConfiguration.setNearCacheEnabled(nearCacheEnabled);
+
+    return cacheConfiguration;
+  }
+
+  private CacheManagerConfiguration getConfiguration()
+  {
+    CacheManagerConfiguration.CacheClusterConfiguration clusterConfiguration =
+        new CacheManagerConfiguration.CacheClusterConfiguration();
+
+    clusterConfiguration.setName(CLUSTER_NAME);
+    clusterConfiguration.setPassword(CLUSTER_PASSWORD);
+    clusterConfiguration.setPort(15101);
+    clusterConfiguration.setMembers("127.0.0.1:15101,127.0.0.1:15102");
+
+    List<CacheManagerConfiguration.CacheConfiguration> caches = new ArrayList<>();
+
+    caches.add(getCacheConfiguration("NearCached", true));
+    caches.add(getCacheConfiguration("Uncached", false));
+
+    CacheManagerConfiguration configuration = new CacheManagerConfiguration();
+
+    configuration.setCluster(clusterConfiguration);
+    configuration.setCaches(caches);
+
+    return configuration;
+  }
+
+  private long readEntries(Map<String, String> cache)
+  {
+    long startTime = System.nanoTime();
+
+    for (int i = 0; i < NUMBER_OF_READS; i++)
+    {
+      for (int j = 0; j < NUMBER_OF_ENTRIES; j++)
+      {
+        assertEquals("Value" + j, cache.get("Key" + j));
+      }
+    }
+
+    return System.nanoTime() - startTime;
+  }
+
+  private HazelcastInstance startPeer()
+  {
+    Config config = new Config();
+
+    config.setInstanceName(CLUSTER_NAME + "Peer");
+    config.setProperty("hazelcast.logging.type", "slf4j");
+    config.getNetworkConfig().setPort(15102);
+    config.getNetworkConfig().setPortAutoIncrement(false);
+
+    JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+
+    joinConfig.getMulticastConfig().setEnabled(false);
+    joinConfig.getTcpIpConfig().setEnabled(true);
+    joinConfig.getTcpIpConfig().addMember("127.0.0.1:15101").addMember("127.0.0.1:15102");
+
+    config.getGroupConfig().setName(CLUSTER_NAME);
+    config.getGroupConfig().setPassword(CLUSTER_PASSWORD);
+    config.getMapConfig("NearCached").setBackupCount(0);
+    config.getMapConfig("Uncached").setBackupCount(0);
+
+    return Hazelcast.newHazelcastInstance(config);
+  }
+}
@@ -46,11 +46,46 @@ public class KafkaConfiguration
    */
   private int maxPollInterval;
 
+  /**
+   * The maximum number of records returned by a single poll.
+   */
+  private int maxPollRecords;
+
   /**
    * The client ID.
    */
   private String clientId;
 
+  /**
+   * The maximum size in bytes of a batch of records sent to a partition.
+   */
+  private int batchSize;
+
+  /**
+   * The compression type for the data generated by a producer, i.e. none, gzip, snappy or lz4.
+   */
+  private String compressionType;
+
+  /**
+   * Should a producer avoid duplicate and reordered records when retrying failed sends?
+   */
+  private boolean idempotence;
+
+  /**
+   * The time in milliseconds a producer waits for additional records to batch.
+   */
+  private int linger;
+
+  /**
+   * Returns the maximum size in bytes of a batch of records sent to a partition.
+   *
+   * @return the maximum size in bytes of a batch of records sent to a partition
+   */
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
   /**
    * Returns the bootstap servers.
    *
@@ -71,6 +106,36 @@ public class KafkaConfiguration
     return clientId;
   }
 
+  /**
+   * Returns the compression type for the data generated by a producer.
+   *
+   * @return the compression type for the data generated by a producer
+   */
+  public String getCompressionType()
+  {
+    return compressionType;
+  }
+
+  /**
+   * Returns whether a producer should avoid duplicate and reordered records when retrying.
+   *
+   * @return whether a producer should avoid duplicate and reordered records when retrying
+   */
+  public boolean getIdempotence()
+  {
+    return idempotence;
+  }
+
+  /**
+   * Returns the time in milliseconds a producer waits for additional records to batch.
+   *
+   * @return the time in milliseconds a producer waits for additional records to batch
+   */
+  public int getLinger()
+  {
+    return linger;
+  }
+
   /**
    * Returns the maximum time to block in milliseconds.
    *
@@ -91,6 +156,16 @@ public class KafkaConfiguration
     return maxPollInterval;
   }
 
+  /**
+   * Returns the maximum number of records returned by a single poll.
+   *
+   * @return the maximum number of records returned by a single poll
+   */
+  public int getMaxPollRecords()
+  {
+    return maxPollRecords;
+  }
+
   /**
    * Returns the request timeout in milliseconds.
    *
@@ -111,6 +186,16 @@ public class KafkaConfiguration
     return transactionTimeout;
   }
 
+  /**
+   * Set the maximum size in bytes of a batch of records sent to a partition.
+   *
+   * @param batchSize the maximum size in bytes of a batch of records sent to a partition
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
   /**
    * Set the bootstap servers.
    *
@@ -131,6 +216,37 @@ public class KafkaConfiguration
     this.clientId = clientId;
   }
 
+  /**
+   * Set the compression type for the data generated by a producer.
+   *
+   * @param compressionType the compression type for the data generated by a producer
+   */
+  public void setCompressionType(String compressionType)
+  {
+    this.compressionType = compressionType;
+  }
+
+  /**
+   * Set whether a producer should avoid duplicate and reordered records when retrying.
+   *
+   * @param idempotence whether a producer should avoid duplicate and reordered records when
+   *                    retrying
+   */
+  public void setIdempotence(boolean idempotence)
+  {
+    this.idempotence = idempotence;
+  }
+
+  /**
+   * Set the time in milliseconds a producer waits for additional records to batch.
+   *
+   * @param linger the time in milliseconds a producer waits for additional records to batch
+   */
+  public void setLinger(int linger)
+  {
+    this.linger = linger;
+  }
+
   /**
    * Set the maximum time to block in milliseconds.
    *
@@ -151,6 +267,16 @@ public class KafkaConfiguration
     this.maxPollInterval = maxPollInterval;
   }
 
+  /**
+   * Set the maximum number of records returned by a single poll.
+   *
+   * @param maxPollRecords the maximum number of records returned by a single poll
+   */
+  public void setMaxPollRecords(int maxPollRecords)
+  {
+    this.maxPollRecords = maxPollRecords;
+  }
+
   /**
    * Set the request timeout in milliseconds.
    *
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.outbox;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.kafka.producer.EventProducer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>BackgroundEventOutboxPublisher</code> class implements the Background Event Outbox
+ * Publisher, which publishes the events in the outbox using the shared <code>EventProducer</code>.
+ * <p/>
+ * Each batch of events is sent without waiting for the individual events to be acknowledged and
+ * the producer is then flushed once, which allows the producer to batch the events sent to the
+ * same partition. The events that were acknowledged are deleted from the outbox and the others
+ * are unlocked so they can be retried.
+ *
+ * @author Marcus Portmann
+ */
+@Service
+@SuppressWarnings("unused")
+public class BackgroundEventOutboxPublisher
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(
+      BackgroundEventOutboxPublisher.class);
+
+  /* Event Outbox Service */
+  @Inject
+  private IEventOutboxService eventOutboxService;
+
+  /* The shared event producer, which is optional. */
+  @Inject
+  private ObjectProvider<EventProducer> eventProducer;
+
+  /* Are the events in the outbox currently being published? */
+  private AtomicBoolean publishing = new AtomicBoolean();
+
+  /**
+   * Initialise the Background Event Outbox Publisher.
+   */
+  @PostConstruct
+  public void init()
+  {
+    logger.info("Initialising the Background Event Outbox Publisher");
+
+    if (eventOutboxService != null)
+    {
+      /*
+       * Reset any locks for events that were previously being published by the background
+       * event outbox publisher.
+       */
+      try
+      {
+        logger.info("Resetting the event locks for the events being published");
+
+        eventOutboxService.resetEventLocks(OutboxEvent.Status.PUBLISHING,
+            OutboxEvent.Status.QUEUED_FOR_PUBLISHING);
+      }
+      catch (Throwable e)
+      {
+        logger.error("Failed to reset the event locks for the events being published", e);
+      }
+    }
+    else
+    {
+      logger.error("Failed to initialise the Background Event Outbox Publisher: The Event Outbox "
+          + "Service was NOT injected");
+    }
+  }
+
+  /**
+   * Log the metrics for the shared event producer if one has been configured.
+   */
+  @Scheduled(cron = "0 * * * * *")
+  public void logEventProducerMetrics()
+  {
+    EventProducer producer = eventProducer.getIfAvailable();
+
+    if (producer == null)
+    {
+      return;
+    }
+
+    try
+    {
+      producer.logMetrics();
+    }
+    catch (Throwable e)
+    {
+      logger.error("Failed to log the metrics for the event producer", e);
+    }
+  }
+
+  /**
+   * Publish the events in the outbox.
+   * <p/>
+   * The events queued for publishing are retrieved and published in batches until the outbox is
+   * empty. No events are published if an <code>EventProducer</code> has not been configured.
+   */
+  @Scheduled(fixedDelay = 1000)
+  @Async
+  public void publishEvents()
+  {
+    EventProducer producer = eventProducer.getIfAvailable();
+
+    if (producer == null)
+    {
+      return;
+    }
+
+    if (!publishing.compareAndSet(false, true))
+    {
+      return;
+    }
+
+    try
+    {
+      while (publishBatch(producer)) {}
+    }
+    finally
+    {
+      publishing.set(false);
+    }
+  }
+
+  private boolean publishBatch(EventProducer producer)
+  {
+    List<OutboxEvent> events;
+
+    // Retrieve the next batch of events queued for publishing
+    try
+    {
+      events = eventOutboxService.getNextEventsQueuedForPublishing();
+
+      if (events.isEmpty())
+      {
+        if (logger.isDebugEnabled())
+        {
+          logger.debug("No events queued for publishing");
+        }
+
+        return false;
+      }
+    }
+    catch (Throwable e)
+    {
+      logger.error("Failed to retrieve the next events queued for publishing", e);
+
+      return false;
+    }
+
+    if (logger.isDebugEnabled())
+    {
+      logger.debug(String.format("Publishing a batch of %d queued events", events.size()));
+    }
+
+    // Send the batch of events and wait for them to be acknowledged
+    List<OutboxEvent> publishedEvents = new ArrayList<>();
+    List<OutboxEvent> failedEvents = new ArrayList<>();
+
+    try
+    {
+      List<Future<RecordMetadata>> futures = new ArrayList<>(events.size());
+
+      for (OutboxEvent event : events)
+      {
+        futures.add(producer.send(event.getTopic(), event.getKey(), event.getData(), null));
+      }
+
+      producer.flush();
+
+      for (int i = 0; i < events.size(); i++)
+      {
+        try
+        {
+          futures.get(i).get();
+
+          publishedEvents.add(events.get(i));
+        }
+        catch (Throwable e)
+        {
+          logger.error(String.format("Failed to publish the queued event (%d) to the topic (%s)",
+              events.get(i).getId(), events.get(i).getTopic()), e);
+
+          failedEvents.add(events.get(i));
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      logger.error(String.format("Failed to publish the batch of %d queued events",
+          events.size()), e);
+
+      publishedEvents.clear();
+      failedEvents.clear();
+      failedEvents.addAll(events);
+    }
+
+    // Delete the events that were published
+    if (!publishedEvents.isEmpty())
+    {
+      try
+      {
+        eventOutboxService.deleteEvents(publishedEvents);
+      }
+      catch (Throwable e)
+      {
+        logger.error(String.format("Failed to delete the %d published events",
+            publishedEvents.size()), e);
+      }
+    }
+
+    if (failedEvents.isEmpty())
+    {
+      return true;
+    }
+
+    // Increment the publish attempts for the events that could not be published
+    try
+    {
+      eventOutboxService.incrementEventPublishAttempts(failedEvents);
+    }
+    catch (Throwable e)
+    {
+      logger.error(String.format("Failed to increment the publish attempts for the %d queued "
+          + "events", failedEvents.size()), e);
+    }
+
+    try
+    {
+      /*
+       * If an event has exceeded the maximum number of publish attempts then unlock it and set
+       * its status to "Failed" otherwise unlock it and set its status to "QueuedForPublishing".
+       */
+      List<OutboxEvent> abandonedEvents = new ArrayList<>();
+      List<OutboxEvent> retryEvents = new ArrayList<>();
+
+      for (OutboxEvent event : failedEvents)
+      {
+        if (event.getPublishAttempts() >= eventOutboxService.getMaximumPublishAttempts())
+        {
+          logger.warn(String.format("The queued event (%d) has exceeded the maximum number of "
+              + "publish attempts and will be marked as \"Failed\"", event.getId()));
+
+          abandonedEvents.add(event);
+        }
+        else
+        {
+          retryEvents.add(event);
+        }
+      }
+
+      if (!abandonedEvents.isEmpty())
+      {
+        eventOutboxService.unlockEvents(abandonedEvents, OutboxEvent.Status.FAILED);
+      }
+
+      if (!retryEvents.isEmpty())
+      {
+        eventOutboxService.unlockEvents(retryEvents, OutboxEvent.Status.QUEUED_FOR_PUBLISHING);
+      }
+    }
+    catch (Throwable e)
+    {
+      logger.error(String.format("Failed to unlock and set the status for the %d queued events",
+          failedEvents.size()), e);
+    }
+
+    /*
+     * Stop publishing until the next scheduled execution to give the events that could not be
+     * published a chance to be retried after the publish retry delay.
+     */
+    return false;
+  }
+}
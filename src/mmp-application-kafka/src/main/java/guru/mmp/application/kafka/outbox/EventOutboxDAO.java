@@ -0,0 +1,381 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.outbox;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.persistence.IDGenerator;
+import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.DAOUtil;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>EventOutboxDAO</code> class implements the persistence operations for the event
+ * outbox.
+ *
+ * @author Marcus Portmann
+ */
+@SuppressWarnings("unused")
+@Repository
+public class EventOutboxDAO
+  implements IEventOutboxDAO
+{
+  /**
+   * The data source used to provide connections to the application database.
+   */
+  @Inject
+  @Qualifier("applicationDataSource")
+  private DataSource dataSource;
+
+  /**
+   * The ID Generator.
+   */
+  @Inject
+  private IDGenerator idGenerator;
+
+  /* The SQL used to retrieve the next batch of events queued for publishing. */
+  private String getNextEventsQueuedForPublishingSQL;
+
+  /**
+   * Constructs a new <code>EventOutboxDAO</code>.
+   */
+  public EventOutboxDAO() {}
+
+  /**
+   * Add the event to the outbox.
+   * <p/>
+   * The event is added using the current transaction, if one exists, so that it is only
+   * published if the transaction commits.
+   *
+   * @param event the <code>OutboxEvent</code> instance containing the information for the event
+   */
+  public void createEvent(OutboxEvent event)
+    throws DAOException
+  {
+    String createEventSQL =
+        "INSERT INTO EVENTS.OUTBOX (ID, TOPIC, EVENT_KEY, DATA, STATUS, PUBLISH_ATTEMPTS, CREATED) "
+        + "VALUES (?, ?, ?, ?, ?, 0, ?)";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(createEventSQL))
+    {
+      long id = idGenerator.next("Application.OutboxEventId");
+
+      statement.setLong(1, id);
+      statement.setString(2, event.getTopic());
+      statement.setString(3, event.getKey());
+      statement.setBytes(4, event.getData());
+      statement.setInt(5, event.getStatus().getCode());
+      statement.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+
+      if (statement.executeUpdate() != 1)
+      {
+        throw new DAOException(String.format(
+            "No rows were affected as a result of executing the SQL statement (%s)",
+            createEventSQL));
+      }
+
+      event.setId(id);
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to add the event for the topic (%s) to the outbox in the database",
+          event.getTopic()), e);
+    }
+  }
+
+  /**
+   * Delete the existing events.
+   * <p/>
+   * The events are deleted using a single JDBC batch update.
+   *
+   * @param events the events to delete
+   */
+  public void deleteEvents(List<OutboxEvent> events)
+    throws DAOException
+  {
+    String deleteEventSQL = "DELETE FROM EVENTS.OUTBOX WHERE ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(deleteEventSQL))
+    {
+      for (OutboxEvent event : events)
+      {
+        statement.setLong(1, event.getId());
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to delete the %d events from the outbox in the database", events.size()), e);
+    }
+  }
+
+  /**
+   * Retrieve the next batch of events that have been queued for publishing.
+   * <p/>
+   * The events will be locked to prevent duplicate publishing. Events that are already locked by
+   * another transaction are skipped where the database supports it.
+   *
+   * @param maximumNumberOfEvents the maximum number of events to retrieve
+   * @param publishRetryDelay     the delay in milliseconds to wait before re-attempting to publish
+   *                              an event
+   * @param lockName              the name of the lock that should be applied to the events queued
+   *                              for publishing when they are retrieved
+   *
+   * @return the next batch of events that have been queued for publishing, which will be empty if
+   *         no events are currently queued for publishing
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public List<OutboxEvent> getNextEventsQueuedForPublishing(int maximumNumberOfEvents,
+      int publishRetryDelay, String lockName)
+    throws DAOException
+  {
+    String lockEventSQL =
+        "UPDATE EVENTS.OUTBOX SET STATUS=?, LOCK_NAME=? WHERE ID=? AND STATUS=?";
+
+    try
+    {
+      List<OutboxEvent> events = new ArrayList<>();
+
+      try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(String.format(
+            getNextEventsQueuedForPublishingSQL, maximumNumberOfEvents)))
+      {
+        Timestamp processedBefore = new Timestamp(System.currentTimeMillis() - publishRetryDelay);
+
+        statement.setInt(1, OutboxEvent.Status.QUEUED_FOR_PUBLISHING.getCode());
+        statement.setTimestamp(2, processedBefore);
+
+        try (ResultSet rs = statement.executeQuery())
+        {
+          while (rs.next())
+          {
+            events.add(getEvent(rs));
+          }
+        }
+
+        if (events.size() == 0)
+        {
+          return events;
+        }
+
+        try (PreparedStatement updateStatement = connection.prepareStatement(lockEventSQL))
+        {
+          for (OutboxEvent event : events)
+          {
+            updateStatement.setInt(1, OutboxEvent.Status.PUBLISHING.getCode());
+            updateStatement.setString(2, lockName);
+            updateStatement.setLong(3, event.getId());
+            updateStatement.setInt(4, OutboxEvent.Status.QUEUED_FOR_PUBLISHING.getCode());
+            updateStatement.addBatch();
+          }
+
+          int[] updateCounts = updateStatement.executeBatch();
+
+          /*
+           * Only return the events we actually managed to lock. On databases that do not support
+           * skipping locked rows an event may have been claimed by another publisher between the
+           * SELECT and the UPDATE.
+           */
+          List<OutboxEvent> lockedEvents = new ArrayList<>(events.size());
+
+          for (int i = 0; i < events.size(); i++)
+          {
+            if ((updateCounts[i] == 1) || (updateCounts[i] == Statement.SUCCESS_NO_INFO))
+            {
+              OutboxEvent event = events.get(i);
+
+              event.setStatus(OutboxEvent.Status.PUBLISHING);
+              event.setLockName(lockName);
+
+              lockedEvents.add(event);
+            }
+          }
+
+          return lockedEvents;
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the next %d events that have been queued for publishing from the "
+          + "outbox in the database", maximumNumberOfEvents), e);
+    }
+  }
+
+  /**
+   * Increment the publish attempts for the events.
+   * <p/>
+   * The publish attempts are incremented using a single JDBC batch update.
+   *
+   * @param events the events whose publish attempts should be incremented
+   */
+  public void incrementEventPublishAttempts(List<OutboxEvent> events)
+    throws DAOException
+  {
+    String incrementEventPublishAttemptsSQL =
+        "UPDATE EVENTS.OUTBOX SET PUBLISH_ATTEMPTS=PUBLISH_ATTEMPTS + 1, LAST_PROCESSED=? "
+        + "WHERE ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(incrementEventPublishAttemptsSQL))
+    {
+      Timestamp currentTime = new Timestamp(System.currentTimeMillis());
+
+      for (OutboxEvent event : events)
+      {
+        statement.setTimestamp(1, currentTime);
+        statement.setLong(2, event.getId());
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+
+      for (OutboxEvent event : events)
+      {
+        event.setPublishAttempts(event.getPublishAttempts() + 1);
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to increment the publish attempts for the %d events in the outbox in the "
+          + "database", events.size()), e);
+    }
+  }
+
+  /**
+   * Initialise the <code>EventOutboxDAO</code> instance.
+   */
+  @PostConstruct
+  public void init()
+    throws DAOException
+  {
+    String getNextEventsQueuedForPublishingColumnsSQL =
+        "ID, TOPIC, EVENT_KEY, DATA, STATUS, PUBLISH_ATTEMPTS, LOCK_NAME, CREATED, LAST_PROCESSED";
+
+    String getNextEventsQueuedForPublishingWhereSQL =
+        "WHERE STATUS=? AND (LAST_PROCESSED<? OR LAST_PROCESSED IS NULL)";
+
+    try (Connection connection = dataSource.getConnection())
+    {
+      getNextEventsQueuedForPublishingSQL = DAOUtil.getClaimNextRowsSQL(connection,
+          getNextEventsQueuedForPublishingColumnsSQL, "EVENTS.OUTBOX",
+          getNextEventsQueuedForPublishingWhereSQL, "ID");
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException("Failed to initialise the EventOutboxDAO instance", e);
+    }
+  }
+
+  /**
+   * Reset the event locks.
+   *
+   * @param lockName  the name of the lock applied by the entity that has locked the events
+   * @param status    the current status of the events that have been locked
+   * @param newStatus the new status for the events that have been unlocked
+   */
+  public void resetEventLocks(String lockName, OutboxEvent.Status status,
+      OutboxEvent.Status newStatus)
+    throws DAOException
+  {
+    String resetEventLocksSQL =
+        "UPDATE EVENTS.OUTBOX SET STATUS=?, LOCK_NAME=NULL WHERE LOCK_NAME=? AND STATUS=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(resetEventLocksSQL))
+    {
+      statement.setInt(1, newStatus.getCode());
+      statement.setString(2, lockName);
+      statement.setInt(3, status.getCode());
+
+      statement.executeUpdate();
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to reset the locks for the events with the status (%s) that have been locked "
+          + "using the lock name (%s)", status, lockName), e);
+    }
+  }
+
+  /**
+   * Unlock the events.
+   * <p/>
+   * The events are unlocked using a single JDBC batch update.
+   *
+   * @param events the events to unlock
+   * @param status the new status for the unlocked events
+   */
+  public void unlockEvents(List<OutboxEvent> events, OutboxEvent.Status status)
+    throws DAOException
+  {
+    String unlockEventSQL = "UPDATE EVENTS.OUTBOX SET STATUS=?, LOCK_NAME=NULL WHERE ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(unlockEventSQL))
+    {
+      for (OutboxEvent event : events)
+      {
+        statement.setInt(1, status.getCode());
+        statement.setLong(2, event.getId());
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+
+      for (OutboxEvent event : events)
+      {
+        event.setStatus(status);
+        event.setLockName(null);
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to unlock and set the status for the %d events in the outbox to (%s) in the "
+          + "database", events.size(), status.toString()), e);
+    }
+  }
+
+  private OutboxEvent getEvent(ResultSet rs)
+    throws SQLException
+  {
+    return new OutboxEvent(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBytes(4),
+        OutboxEvent.Status.fromCode(rs.getInt(5)), rs.getInt(6), rs.getString(7),
+        rs.getTimestamp(8), rs.getTimestamp(9));
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.outbox;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.configuration.IConfigurationService;
+import guru.mmp.application.kafka.serialization.AvroSerializer;
+import guru.mmp.application.util.ServiceUtil;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.List;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>EventOutboxService</code> class provides the Event Outbox Service implementation.
+ * <p/>
+ * Events are added to the outbox in the database using the transaction of the caller, so that
+ * they are published if, and only if, the changes made by the caller are committed. The
+ * <code>BackgroundEventOutboxPublisher</code> publishes the events in the outbox, in the order
+ * they were added, using the shared <code>EventProducer</code>.
+ *
+ * @author Marcus Portmann
+ */
+@Service
+@SuppressWarnings("unused")
+public class EventOutboxService
+  implements IEventOutboxService
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(EventOutboxService.class);
+
+  /* Configuration Service */
+  @Inject
+  private IConfigurationService configurationService;
+
+  /* Event Outbox DAO */
+  @Inject
+  private IEventOutboxDAO eventOutboxDAO;
+
+  /* The name of the Event Outbox Service instance. */
+  private String instanceName = ServiceUtil.getServiceInstanceName("Event Outbox Service");
+
+  /* The maximum number of times publishing will be attempted for an event. */
+  private int maximumPublishAttempts;
+
+  /* The maximum number of events to retrieve and publish at a time. */
+  private int publishBatchSize;
+
+  /* The delay in milliseconds to wait before re-attempting to publish an event. */
+  private int publishRetryDelay;
+
+  /* The Apache Avro serializer used to serialize the events. */
+  private AvroSerializer<SpecificRecordBase> serializer = new AvroSerializer<>();
+
+  /**
+   * Delete the existing events.
+   *
+   * @param events the events to delete
+   */
+  public void deleteEvents(List<OutboxEvent> events)
+    throws EventOutboxServiceException
+  {
+    try
+    {
+      eventOutboxDAO.deleteEvents(events);
+    }
+    catch (Throwable e)
+    {
+      throw new EventOutboxServiceException(String.format("Failed to delete the %d events",
+          events.size()), e);
+    }
+  }
+
+  /**
+   * Returns the maximum number of publish attempts for an event.
+   *
+   * @return the maximum number of publish attempts for an event
+   */
+  public int getMaximumPublishAttempts()
+  {
+    return maximumPublishAttempts;
+  }
+
+  /**
+   * Retrieve the next batch of events that have been queued for publishing.
+   * <p/>
+   * The events will be locked to prevent duplicate publishing.
+   *
+   * @return the next batch of events that have been queued for publishing, which will be empty if
+   *         no events are currently queued for publishing
+   */
+  public List<OutboxEvent> getNextEventsQueuedForPublishing()
+    throws EventOutboxServiceException
+  {
+    try
+    {
+      return eventOutboxDAO.getNextEventsQueuedForPublishing(publishBatchSize, publishRetryDelay,
+          instanceName);
+    }
+    catch (Throwable e)
+    {
+      throw new EventOutboxServiceException(String.format(
+          "Failed to retrieve the next %d events queued for publishing", publishBatchSize), e);
+    }
+  }
+
+  /**
+   * Increment the publish attempts for the events.
+   *
+   * @param events the events whose publish attempts should be incremented
+   */
+  public void incrementEventPublishAttempts(List<OutboxEvent> events)
+    throws EventOutboxServiceException
+  {
+    try
+    {
+      eventOutboxDAO.incrementEventPublishAttempts(events);
+    }
+    catch (Throwable e)
+    {
+      throw new EventOutboxServiceException(String.format(
+          "Failed to increment the publish attempts for the %d events", events.size()), e);
+    }
+  }
+
+  /**
+   * Initialise the Event Outbox Service.
+   */
+  @PostConstruct
+  public void init()
+  {
+    logger.info(String.format("Initialising the Event Outbox Service (%s)", instanceName));
+
+    try
+    {
+      // Initialise the configuration for the Event Outbox Service
+      initConfiguration();
+    }
+    catch (Throwable e)
+    {
+      throw new RuntimeException("Failed to initialise the Event Outbox Service", e);
+    }
+  }
+
+  /**
+   * Publish the event.
+   * <p/>
+   * NOTE: This will add the event to the outbox using the current transaction. The event will
+   * only be published, asynchronously, if the transaction commits.
+   *
+   * @param topic the name of the Apache Kafka topic the event should be published to
+   * @param key   the optional key for the event, which determines the partition the event is
+   *              published to
+   * @param event the event
+   *
+   * @return the <code>OutboxEvent</code> instance for the event that was added to the outbox
+   */
+  public OutboxEvent publishEvent(String topic, String key, SpecificRecordBase event)
+    throws EventOutboxServiceException
+  {
+    try
+    {
+      OutboxEvent outboxEvent = new OutboxEvent(topic, key, serializer.serialize(topic, event));
+
+      eventOutboxDAO.createEvent(outboxEvent);
+
+      return outboxEvent;
+    }
+    catch (Throwable e)
+    {
+      throw new EventOutboxServiceException(String.format(
+          "Failed to add the event for the topic (%s) to the outbox", topic), e);
+    }
+  }
+
+  /**
+   * Reset the event locks.
+   *
+   * @param status    the current status of the events that have been locked
+   * @param newStatus the new status for the events that have been unlocked
+   */
+  public void resetEventLocks(OutboxEvent.Status status, OutboxEvent.Status newStatus)
+    throws EventOutboxServiceException
+  {
+    try
+    {
+      eventOutboxDAO.resetEventLocks(instanceName, status, newStatus);
+    }
+    catch (Throwable e)
+    {
+      throw new EventOutboxServiceException(String.format(
+          "Failed to reset the locks for the events with status (%s) locked using the lock name "
+          + "(%s)", status, instanceName), e);
+    }
+  }
+
+  /**
+   * Unlock the events.
+   *
+   * @param events the events to unlock
+   * @param status the new status for the unlocked events
+   */
+  public void unlockEvents(List<OutboxEvent> events, OutboxEvent.Status status)
+    throws EventOutboxServiceException
+  {
+    try
+    {
+      eventOutboxDAO.unlockEvents(events, status);
+    }
+    catch (Throwable e)
+    {
+      throw new EventOutboxServiceException(String.format(
+          "Failed to unlock and set the status for the %d events to (%s)", events.size(),
+          status), e);
+    }
+  }
+
+  private void initConfiguration()
+    throws EventOutboxServiceException
+  {
+    try
+    {
+      if (!configurationService.keyExists("EventOutboxService.PublishRetryDelay"))
+      {
+        configurationService.setValue("EventOutboxService.PublishRetryDelay", 60000,
+            "The delay in milliseconds between attempts to retry the publishing of an event");
+      }
+
+      if (!configurationService.keyExists("EventOutboxService.MaximumPublishAttempts"))
+      {
+        configurationService.setValue("EventOutboxService.MaximumPublishAttempts", 100,
+            "The maximum number of attempts to publish an event");
+      }
+
+      if (!configurationService.keyExists("EventOutboxService.PublishBatchSize"))
+      {
+        configurationService.setValue("EventOutboxService.PublishBatchSize", 100,
+            "The maximum number of events to retrieve and publish at a time");
+      }
+
+      publishRetryDelay = configurationService.getInteger("EventOutboxService.PublishRetryDelay");
+
+      maximumPublishAttempts = configurationService.getInteger(
+          "EventOutboxService.MaximumPublishAttempts");
+
+      publishBatchSize = Math.max(1, configurationService.getInteger(
+          "EventOutboxService.PublishBatchSize"));
+    }
+    catch (Throwable e)
+    {
+      throw new EventOutboxServiceException(
+          "Failed to initialise the configuration for the Event Outbox Service", e);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.outbox;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.persistence.DAOException;
+
+import java.util.List;
+
+/**
+ * The <code>IEventOutboxDAO</code> interface defines the persistence operations for the event
+ * outbox.
+ *
+ * @author Marcus Portmann
+ */
+public interface IEventOutboxDAO
+{
+  /**
+   * Add the event to the outbox.
+   *
+   * @param event the <code>OutboxEvent</code> instance containing the information for the event
+   */
+  void createEvent(OutboxEvent event)
+    throws DAOException;
+
+  /**
+   * Delete the existing events.
+   *
+   * @param events the events to delete
+   */
+  void deleteEvents(List<OutboxEvent> events)
+    throws DAOException;
+
+  /**
+   * Retrieve the next batch of events that have been queued for publishing.
+   * <p/>
+   * The events will be locked to prevent duplicate publishing.
+   *
+   * @param maximumNumberOfEvents the maximum number of events to retrieve
+   * @param publishRetryDelay     the delay in milliseconds to wait before re-attempting to publish
+   *                              an event
+   * @param lockName              the name of the lock that should be applied to the events queued
+   *                              for publishing when they are retrieved
+   *
+   * @return the next batch of events that have been queued for publishing, which will be empty if
+   *         no events are currently queued for publishing
+   */
+  List<OutboxEvent> getNextEventsQueuedForPublishing(int maximumNumberOfEvents,
+      int publishRetryDelay, String lockName)
+    throws DAOException;
+
+  /**
+   * Increment the publish attempts for the events.
+   *
+   * @param events the events whose publish attempts should be incremented
+   */
+  void incrementEventPublishAttempts(List<OutboxEvent> events)
+    throws DAOException;
+
+  /**
+   * Reset the event locks.
+   *
+   * @param lockName  the name of the lock applied by the entity that has locked the events
+   * @param status    the current status of the events that have been locked
+   * @param newStatus the new status for the events that have been unlocked
+   */
+  void resetEventLocks(String lockName, OutboxEvent.Status status, OutboxEvent.Status newStatus)
+    throws DAOException;
+
+  /**
+   * Unlock the events.
+   *
+   * @param events the events to unlock
+   * @param status the new status for the unlocked events
+   */
+  void unlockEvents(List<OutboxEvent> events, OutboxEvent.Status status)
+    throws DAOException;
+}
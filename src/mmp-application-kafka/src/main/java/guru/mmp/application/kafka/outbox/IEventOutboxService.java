@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.outbox;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.apache.avro.specific.SpecificRecordBase;
+
+import java.util.List;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>IEventOutboxService</code> interface defines the functionality provided by an Event
+ * Outbox Service implementation.
+ *
+ * @author Marcus Portmann
+ */
+@SuppressWarnings("unused")
+public interface IEventOutboxService
+{
+  /**
+   * Delete the existing events.
+   *
+   * @param events the events to delete
+   */
+  void deleteEvents(List<OutboxEvent> events)
+    throws EventOutboxServiceException;
+
+  /**
+   * Returns the maximum number of publish attempts for an event.
+   *
+   * @return the maximum number of publish attempts for an event
+   */
+  int getMaximumPublishAttempts();
+
+  /**
+   * Retrieve the next batch of events that have been queued for publishing.
+   * <p/>
+   * The events will be locked to prevent duplicate publishing.
+   *
+   * @return the next batch of events that have been queued for publishing, which will be empty if
+   *         no events are currently queued for publishing
+   */
+  List<OutboxEvent> getNextEventsQueuedForPublishing()
+    throws EventOutboxServiceException;
+
+  /**
+   * Increment the publish attempts for the events.
+   *
+   * @param events the events whose publish attempts should be incremented
+   */
+  void incrementEventPublishAttempts(List<OutboxEvent> events)
+    throws EventOutboxServiceException;
+
+  /**
+   * Publish the event.
+   * <p/>
+   * NOTE: This will add the event to the outbox using the current transaction. The event will
+   * only be published, asynchronously, if the transaction commits.
+   *
+   * @param topic the name of the Apache Kafka topic the event should be published to
+   * @param key   the optional key for the event, which determines the partition the event is
+   *              published to
+   * @param event the event
+   *
+   * @return the <code>OutboxEvent</code> instance for the event that was added to the outbox
+   */
+  OutboxEvent publishEvent(String topic, String key, SpecificRecordBase event)
+    throws EventOutboxServiceException;
+
+  /**
+   * Reset the event locks.
+   *
+   * @param status    the current status of the events that have been locked
+   * @param newStatus the new status for the events that have been unlocked
+   */
+  void resetEventLocks(OutboxEvent.Status status, OutboxEvent.Status newStatus)
+    throws EventOutboxServiceException;
+
+  /**
+   * Unlock the events.
+   *
+   * @param events the events to unlock
+   * @param status the new status for the unlocked events
+   */
+  void unlockEvents(List<OutboxEvent> events, OutboxEvent.Status status)
+    throws EventOutboxServiceException;
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.outbox;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The <code>OutboxEvent</code> class holds the information for a serialized event that has been
+ * added to the event outbox for publishing to an Apache Kafka topic.
+ *
+ * @author Marcus Portmann
+ */
+@SuppressWarnings("unused")
+public class OutboxEvent
+  implements Serializable
+{
+  private static final long serialVersionUID = 1000000;
+
+  /**
+   * The date and time the event was added to the outbox.
+   */
+  private Date created;
+
+  /**
+   * The serialized event.
+   */
+  private byte[] data;
+
+  /**
+   * The ID used to uniquely identify the event.
+   */
+  private long id;
+
+  /**
+   * The optional key for the event, which determines the partition the event is published to.
+   */
+  private String key;
+
+  /**
+   * The date and time the last attempt was made to publish the event.
+   */
+  private Date lastProcessed;
+
+  /**
+   * The name of the entity that has locked the event for publishing.
+   */
+  private String lockName;
+
+  /**
+   * The number of times that the publishing of the event was attempted.
+   */
+  private int publishAttempts;
+
+  /**
+   * The status of the event.
+   */
+  private Status status;
+
+  /**
+   * The name of the Apache Kafka topic the event should be published to.
+   */
+  private String topic;
+
+  /**
+   * Constructs a new <code>OutboxEvent</code>.
+   */
+  public OutboxEvent() {}
+
+  /**
+   * Constructs a new <code>OutboxEvent</code>.
+   *
+   * @param topic the name of the Apache Kafka topic the event should be published to
+   * @param key   the optional key for the event, which determines the partition the event is
+   *              published to
+   * @param data  the serialized event
+   */
+  public OutboxEvent(String topic, String key, byte[] data)
+  {
+    this.topic = topic;
+    this.key = key;
+    this.data = data;
+    this.status = Status.QUEUED_FOR_PUBLISHING;
+  }
+
+  /**
+   * Constructs a new <code>OutboxEvent</code>.
+   *
+   * @param id              the ID used to uniquely identify the event
+   * @param topic           the name of the Apache Kafka topic the event should be published to
+   * @param key             the optional key for the event, which determines the partition the
+   *                        event is published to
+   * @param data            the serialized event
+   * @param status          the status of the event
+   * @param publishAttempts the number of times that the publishing of the event was attempted
+   * @param lockName        the name of the entity that has locked the event for publishing
+   * @param created         the date and time the event was added to the outbox
+   * @param lastProcessed   the date and time the last attempt was made to publish the event
+   */
+  OutboxEvent(long id, String topic, String key, byte[] data, Status status, int publishAttempts,
+      String lockName, Date created, Date lastProcessed)
+  {
+    this.id = id;
+    this.topic = topic;
+    this.key = key;
+    this.data = data;
+    this.status = status;
+    this.publishAttempts = publishAttempts;
+    this.lockName = lockName;
+    this.created = created;
+    this.lastProcessed = lastProcessed;
+  }
+
+  /**
+   * The enumeration giving the possible statuses for an event in the outbox.
+   */
+  public enum Status
+  {
+    UNKNOWN(0, "Unknown"), QUEUED_FOR_PUBLISHING(1, "QueuedForPublishing"), PUBLISHING(2,
+        "Publishing"), FAILED(3, "Failed");
+
+    private int code;
+    private String name;
+
+    Status(int code, String name)
+    {
+      this.code = code;
+      this.name = name;
+    }
+
+    /**
+     * Returns the status given by the specified numeric code value.
+     *
+     * @param code the numeric code value identifying the status
+     *
+     * @return the status given by the specified numeric code value
+     */
+    public static Status fromCode(int code)
+    {
+      switch (code)
+      {
+        case 1:
+          return Status.QUEUED_FOR_PUBLISHING;
+
+        case 2:
+          return Status.PUBLISHING;
+
+        case 3:
+          return Status.FAILED;
+
+        default:
+          return Status.UNKNOWN;
+      }
+    }
+
+    /**
+     * Returns the numeric code value identifying the status.
+     *
+     * @return the numeric code value identifying the status
+     */
+    public int getCode()
+    {
+      return code;
+    }
+
+    /**
+     * Returns the name of the status.
+     *
+     * @return the name of the status
+     */
+    public String getName()
+    {
+      return name;
+    }
+
+    /**
+     * Return the string representation of the status enumeration value.
+     *
+     * @return the string representation of the status enumeration value
+     */
+    public String toString()
+    {
+      return name;
+    }
+  }
+
+  /**
+   * Returns the date and time the event was added to the outbox.
+   *
+   * @return the date and time the event was added to the outbox
+   */
+  public Date getCreated()
+  {
+    return created;
+  }
+
+  /**
+   * Returns the serialized event.
+   *
+   * @return the serialized event
+   */
+  public byte[] getData()
+  {
+    return data;
+  }
+
+  /**
+   * Returns the ID used to uniquely identify the event.
+   *
+   * @return the ID used to uniquely identify the event
+   */
+  public long getId()
+  {
+    return id;
+  }
+
+  /**
+   * Returns the optional key for the event, which determines the partition the event is published
+   * to.
+   *
+   * @return the optional key for the event, which determines the partition the event is published
+   *         to
+   */
+  public String getKey()
+  {
+    return key;
+  }
+
+  /**
+   * Returns the date and time the last attempt was made to publish the event.
+   *
+   * @return the date and time the last attempt was made to publish the event
+   */
+  public Date getLastProcessed()
+  {
+    return lastProcessed;
+  }
+
+  /**
+   * Returns the name of the entity that has locked the event for publishing.
+   *
+   * @return the name of the entity that has locked the event for publishing
+   */
+  public String getLockName()
+  {
+    return lockName;
+  }
+
+  /**
+   * Returns the number of times that the publishing of the event was attempted.
+   *
+   * @return the number of times that the publishing of the event was attempted
+   */
+  public int getPublishAttempts()
+  {
+    return publishAttempts;
+  }
+
+  /**
+   * Returns the status of the event.
+   *
+   * @return the status of the event
+   */
+  public Status getStatus()
+  {
+    return status;
+  }
+
+  /**
+   * Returns the name of the Apache Kafka topic the event should be published to.
+   *
+   * @return the name of the Apache Kafka topic the event should be published to
+   */
+  public String getTopic()
+  {
+    return topic;
+  }
+
+  /**
+   * Set the ID used to uniquely identify the event.
+   *
+   * @param id the ID used to uniquely identify the event
+   */
+  public void setId(long id)
+  {
+    this.id = id;
+  }
+
+  /**
+   * Set the name of the entity that has locked the event for publishing.
+   *
+   * @param lockName the name of the entity that has locked the event for publishing
+   */
+  public void setLockName(String lockName)
+  {
+    this.lockName = lockName;
+  }
+
+  /**
+   * Set the number of times that the publishing of the event was attempted.
+   *
+   * @param publishAttempts the number of times that the publishing of the event was attempted
+   */
+  public void setPublishAttempts(int publishAttempts)
+  {
+    this.publishAttempts = publishAttempts;
+  }
+
+  /**
+   * Set the status of the event.
+   *
+   * @param status the status of the event
+   */
+  public void setStatus(Status status)
+  {
+    this.status = status;
+  }
+}
@@ -28,17 +28,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //~--- JDK imports ------------------------------------------------------------
 
 /**
  * The <code>Processor</code> class implements the base class for the background threads that
  * provide the capability to retrieve and process records from an Apache Kafka topic.
+ * <p/>
+ * The processor thread polls the Apache Kafka consumer and hands the records retrieved for each
+ * partition off as a batch to a pool of worker threads. A partition is paused while a batch of
+ * its records is being processed, which preserves the order of the records within the partition
+ * while the partitions are processed in parallel.
+ * <p/>
+ * The offsets of the processed records are committed asynchronously after each batch, with a
+ * periodic synchronous checkpoint and a final synchronous commit when the partitions are revoked
+ * or the processor is shutdown. If a transient error occurs while processing a batch, the
+ * partition is rewound to the first unprocessed record and paused for the temporarily
+ * unavailable pause while the other partitions continue to be processed.
+ * <p/>
+ * Records are processed at least once. A batch that fails with a transient error is retried from
+ * its first unprocessed record, so processing must be idempotent. Unless the processor overrides
+ * <code>processRecordValues()</code>, the records in a batch are processed one at a time and the
+ * progress is recorded after each record, so only the record that failed is retried. A processor
+ * that overrides <code>processRecordValues()</code> processes each batch as a unit, so a batch
+ * that fails with a transient error is retried from its first record.
  *
  * @author Marcus Portmann
  */
@@ -70,6 +95,25 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
    */
   public static final int DEFAULT_COMMIT_FAILURE_PAUSE = 5000;
 
+  /**
+   * The default maximum number of worker threads used to process the batches of records for the
+   * partitions assigned to the processor.
+   */
+  public static final int DEFAULT_MAXIMUM_WORKERS = 10;
+
+  /**
+   * The default interval in milliseconds between the synchronous checkpoints of the offsets of
+   * the processed records.
+   */
+  public static final int DEFAULT_COMMIT_CHECKPOINT_INTERVAL = 5000;
+
+  /**
+   * The timeout in milliseconds when polling for records from the Apache Kafka topic while
+   * batches of records are being processed or partitions are paused, so that completed batches
+   * are committed and paused partitions are resumed promptly.
+   */
+  private static final int BUSY_POLL_TIMEOUT = 10;
+
   /**
    * The timeout when polling for records from the Apache Kafka topic.
    */
@@ -93,6 +137,18 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
    */
   private int commitFailurePause = DEFAULT_COMMIT_FAILURE_PAUSE;
 
+  /**
+   * The maximum number of worker threads used to process the batches of records for the
+   * partitions assigned to the processor.
+   */
+  private int maximumWorkers = DEFAULT_MAXIMUM_WORKERS;
+
+  /**
+   * The interval in milliseconds between the synchronous checkpoints of the offsets of the
+   * processed records.
+   */
+  private int commitCheckpointInterval = DEFAULT_COMMIT_CHECKPOINT_INTERVAL;
+
   /**
    *  Is the processor active?
    */
@@ -116,7 +172,57 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
   /**
    * The Apache Kafka consumer used to retrieve the messages.
    */
-  private Consumer<K, V> consumer;
+  private volatile Consumer<K, V> consumer;
+
+  /**
+   * The worker threads used to process the batches of records.
+   */
+  private ThreadPoolExecutor workers;
+
+  /**
+   * Does the processor override <code>processRecordValues()</code> to process the record values
+   * in a batch as a unit?
+   */
+  private boolean processesRecordValueBatches;
+
+  /**
+   * The batches of records that have been processed by the worker threads and are waiting to be
+   * committed by the processor thread.
+   */
+  private BlockingQueue<Batch> completedBatches = new LinkedBlockingQueue<>();
+
+  /**
+   * The state of the partitions assigned to the processor. This map is only accessed by the
+   * processor thread.
+   */
+  private Map<TopicPartition, PartitionState> partitionStates = new HashMap<>();
+
+  /**
+   * The offsets of the next records to process for the partitions assigned to the processor,
+   * which are committed to the Apache Kafka topic. This map is only accessed by the processor
+   * thread.
+   */
+  private Map<TopicPartition, OffsetAndMetadata> processedOffsets = new HashMap<>();
+
+  /**
+   * Have records been processed since the offsets were last committed?
+   */
+  private boolean hasUncommittedOffsets;
+
+  /**
+   * Have the offsets been committed asynchronously since the last synchronous checkpoint?
+   */
+  private boolean hasAsynchronousCommits;
+
+  /**
+   * The time in milliseconds at which the next synchronous checkpoint of the offsets is due.
+   */
+  private long nextCommitCheckpoint;
+
+  /**
+   * The number of times committing the offsets has failed.
+   */
+  private int commitFailureCount;
 
   /**
    * Constructs a new <code>Processor</code>.
@@ -153,6 +259,39 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
   public Processor(KafkaConfiguration configuration, Deserializer<K> keyDeserializer,
       Deserializer<V> valueDeserializer, int pollTimeout, int temporarilyUnavailablePause,
       int criticalErrorPause, int commitFailurePause)
+  {
+    this(configuration, keyDeserializer, valueDeserializer, pollTimeout,
+        temporarilyUnavailablePause, criticalErrorPause, commitFailurePause,
+        DEFAULT_MAXIMUM_WORKERS, DEFAULT_COMMIT_CHECKPOINT_INTERVAL);
+  }
+
+  /**
+   * Constructs a new <code>Processor</code>.
+   *
+   * @param configuration               the Apache Kafka configuration
+   * @param keyDeserializer             the Apache Kafka key deserializer
+   * @param valueDeserializer           the Apache Kafka value deserializer
+   * @param pollTimeout                 the timeout when polling for records from the Apache Kafka
+   *                                    topic
+   * @param temporarilyUnavailablePause the amount of time in milliseconds a partition will be
+   *                                    paused when the processor or one of its dependencies is
+   *                                    temporarily unavailable
+   * @param criticalErrorPause          the amount of time in milliseconds the processor will pause
+   *                                    when a critical error is encountered while processing a
+   *                                    record
+   * @param commitFailurePause          the amount of time in milliseconds the processor will
+   *                                    wait before retrying a synchronous checkpoint after
+   *                                    failing to commit the processed records
+   * @param maximumWorkers              the maximum number of worker threads used to process the
+   *                                    batches of records for the partitions assigned to the
+   *                                    processor
+   * @param commitCheckpointInterval    the interval in milliseconds between the synchronous
+   *                                    checkpoints of the offsets of the processed records
+   */
+  public Processor(KafkaConfiguration configuration, Deserializer<K> keyDeserializer,
+      Deserializer<V> valueDeserializer, int pollTimeout, int temporarilyUnavailablePause,
+      int criticalErrorPause, int commitFailurePause, int maximumWorkers,
+      int commitCheckpointInterval)
   {
     this.configuration = configuration;
     this.keyDeserializer = keyDeserializer;
@@ -161,6 +300,9 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
     this.temporarilyUnavailablePause = temporarilyUnavailablePause;
     this.criticalErrorPause = criticalErrorPause;
     this.commitFailurePause = commitFailurePause;
+    this.maximumWorkers = Math.max(maximumWorkers, 1);
+    this.commitCheckpointInterval = commitCheckpointInterval;
+    this.processesRecordValueBatches = overridesProcessRecordValues();
 
     setName("Processor: " + getTopic());
   }
@@ -168,6 +310,22 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
   @Override
   public void run()
   {
+    AtomicInteger workerNumber = new AtomicInteger(1);
+
+    workers = new ThreadPoolExecutor(maximumWorkers, maximumWorkers, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable ->
+        {
+          Thread worker = new Thread(runnable, "Processor Worker " + workerNumber
+              .getAndIncrement() + ": " + getTopic());
+
+          worker.setDaemon(true);
+
+          return worker;
+        }
+        );
+
+    workers.allowCoreThreadTimeOut(true);
+
     try
     {
       Map<String, Object> properties = new HashMap<>();
@@ -175,112 +333,42 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
       properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
       properties.put(ConsumerConfig.GROUP_ID_CONFIG, configuration.getClientId());
       properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
-      properties.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
 
       /*
-       * If maximum interval between poll attempts is not specified then to prevent Kafka from
-       * re-balancing the topic while we are paused for a transient error, critical error or commit
-       * error we set the max poll interval accordingly.
+       * The consumer is polled continuously while batches of records are being processed and
+       * while partitions are paused after a transient error, so the maximum interval between
+       * poll attempts only needs to be set if it has been configured.
        */
       if (configuration.getMaxPollInterval() > 0)
       {
         properties.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG,
             configuration.getMaxPollInterval());
       }
-      else
+
+      if (configuration.getMaxPollRecords() > 0)
       {
-        properties.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, Integer.min(Integer.max(
-            commitFailurePause, Integer.max(temporarilyUnavailablePause, criticalErrorPause))
-            + 5000, 60000));
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, configuration.getMaxPollRecords());
       }
 
-      DefaultKafkaConsumerFactory<K, V> consumerFactory = new DefaultKafkaConsumerFactory<>(
-          properties, keyDeserializer, valueDeserializer);
-
-      consumer = consumerFactory.createConsumer();
+      consumer = createConsumer(properties);
 
-      consumer.subscribe(Collections.singletonList(getTopic()));
+      consumer.subscribe(Collections.singletonList(getTopic()), new RebalanceListener());
 
-      int commitFailureCount = 0;
+      nextCommitCheckpoint = System.currentTimeMillis() + commitCheckpointInterval;
 
       while (isActive.get())
       {
-        try
-        {
-          ConsumerRecords<K, V> records = consumer.poll(pollTimeout);
-
-          for (TopicPartition partition : records.partitions())
-          {
-            List<ConsumerRecord<K, V>> partitionRecords = records.records(partition);
-
-            for (ConsumerRecord<K, V> record : partitionRecords)
-            {
-              try
-              {
-                processRecordValue(record.value());
-
-                if (logger.isDebugEnabled())
-                {
-                  logger.debug("Committing record with key (" + record.key() + ") and offset ("
-                      + record.offset() + ") for the partition (" + partition.partition()
-                      + ") and topic " + "(" + partition.topic() + ")");
-                }
-
-                consumer.commitSync(Collections.singletonMap(partition, new OffsetAndMetadata(
-                    record.offset() + 1)));
-              }
-              catch (InvalidRecordValueException e)
-              {
-                logger.error("The value for the record with key (" + record.key()
-                    + ") and offset (" + record.offset() + ") for the partition ("
-                    + partition.partition() + ") and topic " + "(" + partition.topic()
-                    + ") is invalid and will be ignored", e);
-
-                consumer.commitSync(Collections.singletonMap(partition, new OffsetAndMetadata(
-                    record.offset() + 1)));
-              }
-              catch (TransientErrorException e)
-              {
-                try
-                {
-                  sleep(temporarilyUnavailablePause);
-                }
-                catch (Throwable ignored) {}
+        ConsumerRecords<K, V> records = consumer.poll(isBusy()
+            ? Math.min(pollTimeout, BUSY_POLL_TIMEOUT)
+            : pollTimeout);
 
-              }
-              catch (Throwable e)
-              {
-                logger.error(
-                    "A critical error occurred while attempting to process the record with key ("
-                    + record.key() + ") and offset (" + record.offset() + ") for the partition ("
-                    + partition.partition() + ") and topic " + "(" + partition.topic() + ")", e);
-
-                try
-                {
-                  Thread.sleep(criticalErrorPause);
-                }
-                catch (Throwable ignored) {}
+        dispatchRecords(records);
 
-                isActive.set(false);
-
-                return;
-              }
-            }
-          }
-        }
-        catch (CommitFailedException e)
-        {
-          commitFailureCount++;
+        handleCompletedBatches();
 
-          logger.error("Failed to commit the record retrieved from the topic (" + getTopic()
-              + "). This error has occurred " + commitFailureCount + " time(s)", e);
+        resumePausedPartitions();
 
-          try
-          {
-            sleep(commitFailurePause);
-          }
-          catch (Throwable ignored) {}
-        }
+        commitProcessedOffsets(false);
       }
     }
     catch (WakeupException e)
@@ -293,9 +381,30 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
     }
     finally
     {
+      shutdownWorkers();
+
       try
       {
-        consumer.close();
+        if (consumer != null)
+        {
+          // Commit the offsets for the batches that completed while the workers were shutdown
+          handleCompletedBatches();
+
+          commitProcessedOffsets(true);
+        }
+      }
+      catch (Throwable e)
+      {
+        logger.error("Failed to commit the records processed for the topic (" + getTopic()
+            + ") before closing the consumer", e);
+      }
+
+      try
+      {
+        if (consumer != null)
+        {
+          consumer.close();
+        }
       }
       catch (Throwable e)
       {
@@ -313,7 +422,10 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
     {
       isActive.set(false);
 
-      consumer.wakeup();
+      if (consumer != null)
+      {
+        consumer.wakeup();
+      }
     }
 
     try
@@ -323,6 +435,21 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
     catch (Throwable e) {}
   }
 
+  /**
+   * Create the Apache Kafka consumer used to retrieve the records.
+   *
+   * @param properties the configuration properties for the consumer
+   *
+   * @return the Apache Kafka consumer used to retrieve the records
+   */
+  protected Consumer<K, V> createConsumer(Map<String, Object> properties)
+  {
+    DefaultKafkaConsumerFactory<K, V> consumerFactory = new DefaultKafkaConsumerFactory<>(
+        properties, keyDeserializer, valueDeserializer);
+
+    return consumerFactory.createConsumer();
+  }
+
   /**
    * Returns the OID identifying the Kafka topic associated with this processor.
    *
@@ -337,4 +464,559 @@ public abstract class Processor<K, V extends SpecificRecordBase> extends Thread
    */
   protected abstract void processRecordValue(V value)
     throws InvalidRecordValueException, TransientErrorException, ProcessingFailedException;
+
+  /**
+   * Process a batch of record values retrieved from the same partition, in the order in which
+   * they were written to the partition.
+   * <p/>
+   * The default implementation processes the record values one at a time using
+   * <code>processRecordValue()</code>. Unless this method is overridden, the processor does not
+   * invoke it and instead processes the records in a batch one at a time itself, recording the
+   * progress after each record, so that a record is not processed again when a later record in
+   * the same batch fails. Processors that can process a batch of record values more efficiently,
+   * e.g. using a single database transaction, should override this method.
+   * <p/>
+   * If an overriding implementation throws an <code>InvalidRecordValueException</code> for a batch
+   * containing more than one record value, the record values in the batch are processed again one
+   * at a time using this method to identify the invalid record values, which are ignored.
+   *
+   * @param values the record values
+   */
+  protected void processRecordValues(List<V> values)
+    throws InvalidRecordValueException, TransientErrorException, ProcessingFailedException
+  {
+    for (V value : values)
+    {
+      processRecordValue(value);
+    }
+  }
+
+  /**
+   * Commit the offsets of the processed records.
+   * <p/>
+   * The offsets are committed asynchronously unless a synchronous checkpoint is due or has been
+   * requested.
+   *
+   * @param synchronous <code>true</code> to commit the offsets synchronously or
+   *                    <code>false</code> to commit the offsets synchronously only if a
+   *                    synchronous checkpoint is due
+   */
+  private void commitProcessedOffsets(boolean synchronous)
+  {
+    if ((!hasUncommittedOffsets) && (!hasAsynchronousCommits))
+    {
+      return;
+    }
+
+    if (processedOffsets.isEmpty())
+    {
+      hasUncommittedOffsets = false;
+      hasAsynchronousCommits = false;
+
+      return;
+    }
+
+    long currentTime = System.currentTimeMillis();
+
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>(processedOffsets);
+
+    if (synchronous || (currentTime >= nextCommitCheckpoint))
+    {
+      try
+      {
+        if (logger.isDebugEnabled())
+        {
+          logger.debug("Committing the offsets " + offsets + " for the topic (" + getTopic()
+              + ") synchronously");
+        }
+
+        consumer.commitSync(offsets);
+
+        hasUncommittedOffsets = false;
+        hasAsynchronousCommits = false;
+        nextCommitCheckpoint = currentTime + commitCheckpointInterval;
+      }
+      catch (CommitFailedException e)
+      {
+        commitFailureCount++;
+
+        logger.error("Failed to commit the records processed for the topic (" + getTopic()
+            + "). This error has occurred " + commitFailureCount + " time(s)", e);
+
+        nextCommitCheckpoint = currentTime + commitFailurePause;
+      }
+    }
+    else if (hasUncommittedOffsets)
+    {
+      consumer.commitAsync(offsets, (committedOffsets, exception) ->
+          {
+            if (exception != null)
+            {
+              commitFailureCount++;
+
+              logger.warn("Failed to asynchronously commit the offsets " + offsets
+                  + " for the topic (" + getTopic() + "). This error has occurred "
+                  + commitFailureCount + " time(s)", exception);
+            }
+          }
+          );
+
+      hasUncommittedOffsets = false;
+      hasAsynchronousCommits = true;
+    }
+  }
+
+  /**
+   * Hand the records retrieved for each partition off to the worker threads as a batch and pause
+   * the partition until the batch has been processed.
+   *
+   * @param records the records retrieved from the Apache Kafka topic
+   */
+  private void dispatchRecords(ConsumerRecords<K, V> records)
+  {
+    for (TopicPartition partition : records.partitions())
+    {
+      List<ConsumerRecord<K, V>> partitionRecords = records.records(partition);
+
+      PartitionState partitionState = partitionStates.computeIfAbsent(partition,
+          key -> new PartitionState());
+
+      consumer.pause(Collections.singletonList(partition));
+
+      /*
+       * If records were retrieved for a partition that is already being processed or is paused
+       * then rewind the partition so that the records are retrieved again once it is resumed.
+       */
+      if (partitionState.isProcessing || (partitionState.resumeAt > 0))
+      {
+        consumer.seek(partition, partitionRecords.get(0).offset());
+
+        continue;
+      }
+
+      partitionState.isProcessing = true;
+
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("Dispatching a batch of " + partitionRecords.size()
+            + " record(s) starting at offset (" + partitionRecords.get(0).offset()
+            + ") for the partition (" + partition.partition() + ") and topic ("
+            + partition.topic() + ")");
+      }
+
+      workers.execute(new Batch(partition, partitionRecords));
+    }
+  }
+
+  /**
+   * Handle a batch of records that has been processed by a worker thread.
+   *
+   * @param batch the batch of records
+   */
+  private void handleCompletedBatch(Batch batch)
+  {
+    TopicPartition partition = batch.partition;
+
+    PartitionState partitionState = partitionStates.get(partition);
+
+    if (partitionState == null)
+    {
+      return;
+    }
+
+    partitionState.isProcessing = false;
+
+    if (batch.processedOffset >= 0)
+    {
+      processedOffsets.put(partition, new OffsetAndMetadata(batch.processedOffset));
+
+      hasUncommittedOffsets = true;
+    }
+
+    if (batch.criticalError != null)
+    {
+      logger.error("A critical error occurred while attempting to process the record with "
+          + "offset (" + batch.getUnprocessedOffset() + ") for the partition ("
+          + partition.partition() + ") and topic (" + partition.topic() + ")",
+          batch.criticalError);
+
+      try
+      {
+        Thread.sleep(criticalErrorPause);
+      }
+      catch (Throwable ignored) {}
+
+      isActive.set(false);
+    }
+    else if (batch.transientError != null)
+    {
+      logger.warn("A transient error occurred while attempting to process the record with "
+          + "offset (" + batch.getUnprocessedOffset() + ") for the partition ("
+          + partition.partition() + ") and topic (" + partition.topic()
+          + "). The partition will be paused for " + temporarilyUnavailablePause + " ms",
+          batch.transientError);
+
+      // Rewind the partition to the first unprocessed record and leave it paused
+      consumer.seek(partition, batch.getUnprocessedOffset());
+
+      partitionState.resumeAt = System.currentTimeMillis() + temporarilyUnavailablePause;
+    }
+    else
+    {
+      consumer.resume(Collections.singletonList(partition));
+    }
+  }
+
+  /**
+   * Handle the batches of records that have been processed by the worker threads.
+   */
+  private void handleCompletedBatches()
+  {
+    Batch batch;
+
+    while ((batch = completedBatches.poll()) != null)
+    {
+      handleCompletedBatch(batch);
+    }
+  }
+
+  /**
+   * Returns whether batches of records are being processed or partitions are paused.
+   *
+   * @return <code>true</code> if batches of records are being processed or partitions are paused
+   *         or <code>false</code> otherwise
+   */
+  private boolean isBusy()
+  {
+    for (PartitionState partitionState : partitionStates.values())
+    {
+      if (partitionState.isProcessing || (partitionState.resumeAt > 0))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns whether the processor overrides <code>processRecordValues()</code>.
+   *
+   * @return <code>true</code> if the processor overrides <code>processRecordValues()</code> or
+   *         <code>false</code> otherwise
+   */
+  private boolean overridesProcessRecordValues()
+  {
+    for (Class<?> clazz = getClass(); clazz != Processor.class; clazz = clazz.getSuperclass())
+    {
+      try
+      {
+        clazz.getDeclaredMethod("processRecordValues", List.class);
+
+        return true;
+      }
+      catch (NoSuchMethodException ignored) {}
+    }
+
+    return false;
+  }
+
+  /**
+   * Resume the partitions that were paused after a transient error once the temporarily
+   * unavailable pause has elapsed.
+   */
+  private void resumePausedPartitions()
+  {
+    long currentTime = System.currentTimeMillis();
+
+    for (Map.Entry<TopicPartition, PartitionState> entry : partitionStates.entrySet())
+    {
+      PartitionState partitionState = entry.getValue();
+
+      if ((partitionState.resumeAt > 0) && (currentTime >= partitionState.resumeAt))
+      {
+        partitionState.resumeAt = 0;
+
+        consumer.resume(Collections.singletonList(entry.getKey()));
+      }
+    }
+  }
+
+  /**
+   * Shutdown the worker threads, waiting for the batches of records being processed to complete.
+   */
+  private void shutdownWorkers()
+  {
+    workers.shutdown();
+
+    try
+    {
+      while (!workers.awaitTermination(pollTimeout, TimeUnit.MILLISECONDS))
+      {
+        logger.warn("Waiting for the batches of records being processed for the topic ("
+            + getTopic() + ") to complete");
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Wait for the batches of records being processed for the specified partitions to complete.
+   *
+   * @param partitions the partitions
+   */
+  private void waitForPartitions(Collection<TopicPartition> partitions)
+  {
+    while (true)
+    {
+      boolean isProcessing = false;
+
+      for (TopicPartition partition : partitions)
+      {
+        PartitionState partitionState = partitionStates.get(partition);
+
+        if ((partitionState != null) && partitionState.isProcessing)
+        {
+          isProcessing = true;
+
+          break;
+        }
+      }
+
+      if (!isProcessing)
+      {
+        return;
+      }
+
+      try
+      {
+        Batch batch = completedBatches.poll(pollTimeout, TimeUnit.MILLISECONDS);
+
+        if (batch != null)
+        {
+          handleCompletedBatch(batch);
+        }
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+
+        return;
+      }
+    }
+  }
+
+  /**
+   * The <code>Batch</code> class holds a batch of records retrieved from a partition and the
+   * result of processing the batch on a worker thread.
+   */
+  private class Batch
+    implements Runnable
+  {
+    /**
+     * The critical error that occurred while processing the batch.
+     */
+    private volatile Throwable criticalError;
+
+    /**
+     * The partition the records were retrieved from.
+     */
+    private TopicPartition partition;
+
+    /**
+     * The offset of the record after the last record in the batch that was processed or -1 if no
+     * records were processed.
+     */
+    private volatile long processedOffset = -1;
+
+    /**
+     * The records.
+     */
+    private List<ConsumerRecord<K, V>> records;
+
+    /**
+     * The transient error that occurred while processing the batch.
+     */
+    private volatile TransientErrorException transientError;
+
+    /**
+     * Constructs a new <code>Batch</code>.
+     *
+     * @param partition the partition the records were retrieved from
+     * @param records   the records
+     */
+    Batch(TopicPartition partition, List<ConsumerRecord<K, V>> records)
+    {
+      this.partition = partition;
+      this.records = records;
+    }
+
+    /**
+     * Process the records in the batch.
+     */
+    @Override
+    public void run()
+    {
+      try
+      {
+        if (!processesRecordValueBatches)
+        {
+          processRecordsIndividually();
+
+          return;
+        }
+
+        List<V> values = new ArrayList<>(records.size());
+
+        for (ConsumerRecord<K, V> record : records)
+        {
+          values.add(record.value());
+        }
+
+        try
+        {
+          processRecordValues(values);
+
+          processedOffset = records.get(records.size() - 1).offset() + 1;
+        }
+        catch (InvalidRecordValueException e)
+        {
+          if (records.size() == 1)
+          {
+            logInvalidRecord(records.get(0), e);
+
+            processedOffset = records.get(0).offset() + 1;
+          }
+          else
+          {
+            // Process the records one at a time to identify the invalid records
+            for (ConsumerRecord<K, V> record : records)
+            {
+              try
+              {
+                processRecordValues(Collections.singletonList(record.value()));
+              }
+              catch (InvalidRecordValueException f)
+              {
+                logInvalidRecord(record, f);
+              }
+
+              processedOffset = record.offset() + 1;
+            }
+          }
+        }
+      }
+      catch (TransientErrorException e)
+      {
+        transientError = e;
+      }
+      catch (Throwable e)
+      {
+        criticalError = e;
+      }
+      finally
+      {
+        completedBatches.add(this);
+      }
+    }
+
+    /**
+     * Returns the offset of the first record in the batch that was not processed.
+     *
+     * @return the offset of the first record in the batch that was not processed
+     */
+    long getUnprocessedOffset()
+    {
+      return (processedOffset >= 0)
+          ? processedOffset
+          : records.get(0).offset();
+    }
+
+    private void logInvalidRecord(ConsumerRecord<K, V> record, InvalidRecordValueException e)
+    {
+      logger.error("The value for the record with key (" + record.key() + ") and offset ("
+          + record.offset() + ") for the partition (" + partition.partition() + ") and topic ("
+          + partition.topic() + ") is invalid and will be ignored", e);
+    }
+
+    /**
+     * Process the records in the batch one at a time using <code>processRecordValue()</code>,
+     * recording the progress after each record so that only the records that were not processed
+     * are retrieved again if a transient error occurs.
+     */
+    private void processRecordsIndividually()
+      throws TransientErrorException, ProcessingFailedException
+    {
+      for (ConsumerRecord<K, V> record : records)
+      {
+        try
+        {
+          processRecordValue(record.value());
+        }
+        catch (InvalidRecordValueException e)
+        {
+          logInvalidRecord(record, e);
+        }
+
+        processedOffset = record.offset() + 1;
+      }
+    }
+  }
+
+
+  /**
+   * The <code>PartitionState</code> class holds the processing state for a partition assigned to
+   * the processor.
+   */
+  private static class PartitionState
+  {
+    /**
+     * Is a batch of records for the partition being processed?
+     */
+    private boolean isProcessing;
+
+    /**
+     * The time in milliseconds at which the partition should be resumed after a transient error
+     * or 0 if the partition is not paused after a transient error.
+     */
+    private long resumeAt;
+  }
+
+
+  /**
+   * The <code>RebalanceListener</code> class waits for the batches of records being processed for
+   * the partitions that are revoked from the processor and commits their offsets before the
+   * partitions are reassigned.
+   */
+  private class RebalanceListener
+    implements ConsumerRebalanceListener
+  {
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions)
+    {
+      for (TopicPartition partition : partitions)
+      {
+        partitionStates.put(partition, new PartitionState());
+      }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions)
+    {
+      waitForPartitions(partitions);
+
+      handleCompletedBatches();
+
+      commitProcessedOffsets(true);
+
+      for (TopicPartition partition : partitions)
+      {
+        partitionStates.remove(partition);
+        processedOffsets.remove(partition);
+      }
+    }
+  }
 }
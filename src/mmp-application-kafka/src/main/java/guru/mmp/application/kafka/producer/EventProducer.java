@@ -0,0 +1,404 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.producer;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.kafka.KafkaConfiguration;
+import guru.mmp.application.kafka.serialization.AvroSerializer;
+import guru.mmp.common.util.StringUtil;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.*;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>EventProducer</code> class implements the shared producer used to publish Apache Avro
+ * events to Apache Kafka topics.
+ * <p/>
+ * A single instance should be shared by all the components in an application, so that the events
+ * sent to the same partition are batched, using the linger, batch size and compression settings
+ * in the Apache Kafka configuration, instead of being sent individually.
+ * <p/>
+ * If idempotence is enabled, the producer waits for all the in-sync replicas to acknowledge each
+ * batch and retries failed sends with a single in-flight request per connection, which prevents
+ * lost and reordered events. The version of the Apache Kafka client used by the framework does
+ * not support idempotent or transactional producers, so events may be duplicated when a send is
+ * retried and should include a unique ID that allows consumers to ignore duplicates. Events that
+ * must be published atomically with database changes should be published using the
+ * <code>EventOutboxService</code>.
+ *
+ * @author Marcus Portmann
+ */
+@SuppressWarnings("unused")
+public class EventProducer
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(EventProducer.class);
+
+  /**
+   * The Apache Kafka configuration.
+   */
+  private KafkaConfiguration configuration;
+
+  /**
+   * The maximum send latency in nanoseconds.
+   */
+  private LongAccumulator maximumSendLatency = new LongAccumulator(Long::max, 0);
+
+  /**
+   * The Apache Kafka producer.
+   */
+  private volatile Producer<String, byte[]> producer;
+
+  /**
+   * The number of events that have been sent successfully.
+   */
+  private AtomicLong sendCount = new AtomicLong();
+
+  /**
+   * The number of events that could not be sent.
+   */
+  private AtomicLong sendErrorCount = new AtomicLong();
+
+  /**
+   * The total send latency in nanoseconds for the events that have been sent successfully.
+   */
+  private AtomicLong totalSendLatency = new AtomicLong();
+
+  /**
+   * The Apache Avro serializer used to serialize the events.
+   */
+  private AvroSerializer<SpecificRecordBase> serializer;
+
+  /**
+   * Constructs a new <code>EventProducer</code>.
+   *
+   * @param configuration the Apache Kafka configuration
+   */
+  public EventProducer(KafkaConfiguration configuration)
+  {
+    this(configuration, false);
+  }
+
+  /**
+   * Constructs a new <code>EventProducer</code>.
+   *
+   * @param configuration     the Apache Kafka configuration
+   * @param schemaFingerprint should the serialized events be prefixed with the schema fingerprint
+   *                          header
+   */
+  public EventProducer(KafkaConfiguration configuration, boolean schemaFingerprint)
+  {
+    this.configuration = configuration;
+    this.serializer = new AvroSerializer<>(schemaFingerprint);
+  }
+
+  /**
+   * Close the producer, waiting for the events that have been sent to be acknowledged.
+   */
+  public synchronized void close()
+  {
+    if (producer != null)
+    {
+      producer.close();
+
+      producer = null;
+    }
+  }
+
+  /**
+   * Wait for all the events that have been sent to be acknowledged.
+   */
+  public void flush()
+  {
+    getProducer().flush();
+  }
+
+  /**
+   * Returns the average number of bytes sent per partition per request.
+   *
+   * @return the average number of bytes sent per partition per request or 0 if no requests have
+   *         been sent
+   */
+  public double getAverageBatchSize()
+  {
+    return getProducerMetric("batch-size-avg");
+  }
+
+  /**
+   * Returns the average send latency in milliseconds for the events that have been sent
+   * successfully.
+   *
+   * @return the average send latency in milliseconds for the events that have been sent
+   *         successfully
+   */
+  public double getAverageSendLatency()
+  {
+    long count = sendCount.get();
+
+    return (count == 0)
+        ? 0
+        : (totalSendLatency.get() / (double) count) / 1000000.0;
+  }
+
+  /**
+   * Returns the maximum number of bytes sent per partition per request.
+   *
+   * @return the maximum number of bytes sent per partition per request or 0 if no requests have
+   *         been sent
+   */
+  public double getMaximumBatchSize()
+  {
+    return getProducerMetric("batch-size-max");
+  }
+
+  /**
+   * Returns the maximum send latency in milliseconds for the events that have been sent
+   * successfully.
+   *
+   * @return the maximum send latency in milliseconds for the events that have been sent
+   *         successfully
+   */
+  public double getMaximumSendLatency()
+  {
+    return maximumSendLatency.get() / 1000000.0;
+  }
+
+  /**
+   * Returns the number of events that have been sent successfully.
+   *
+   * @return the number of events that have been sent successfully
+   */
+  public long getSendCount()
+  {
+    return sendCount.get();
+  }
+
+  /**
+   * Returns the number of events that could not be sent.
+   *
+   * @return the number of events that could not be sent
+   */
+  public long getSendErrorCount()
+  {
+    return sendErrorCount.get();
+  }
+
+  /**
+   * Log the metrics for the producer.
+   */
+  public void logMetrics()
+  {
+    if (logger.isDebugEnabled())
+    {
+      logger.debug(String.format(
+          "Event producer: %d event(s) sent, %d send error(s), %.2f ms average send latency, %.2f "
+          + "ms maximum send latency, %.0f bytes average batch size, %.0f bytes maximum batch "
+          + "size", getSendCount(), getSendErrorCount(), getAverageSendLatency(),
+          getMaximumSendLatency(), getAverageBatchSize(), getMaximumBatchSize()));
+    }
+  }
+
+  /**
+   * Send the event asynchronously.
+   *
+   * @param topic the name of the topic
+   * @param key   the key for the event, which determines the partition the event is sent to
+   * @param event the event
+   *
+   * @return the future that can be used to wait for the event to be acknowledged
+   */
+  public Future<RecordMetadata> send(String topic, String key, SpecificRecordBase event)
+  {
+    return send(topic, key, event, null);
+  }
+
+  /**
+   * Send the event asynchronously.
+   *
+   * @param topic    the name of the topic
+   * @param key      the key for the event, which determines the partition the event is sent to
+   * @param event    the event
+   * @param callback the optional callback that will be invoked when the event has been
+   *                 acknowledged or could not be sent
+   *
+   * @return the future that can be used to wait for the event to be acknowledged
+   */
+  public Future<RecordMetadata> send(String topic, String key, SpecificRecordBase event,
+      Callback callback)
+  {
+    return send(topic, key, serializer.serialize(topic, event), callback);
+  }
+
+  /**
+   * Send the serialized event asynchronously.
+   *
+   * @param topic    the name of the topic
+   * @param key      the key for the event, which determines the partition the event is sent to
+   * @param data     the serialized event
+   * @param callback the optional callback that will be invoked when the event has been
+   *                 acknowledged or could not be sent
+   *
+   * @return the future that can be used to wait for the event to be acknowledged
+   */
+  public Future<RecordMetadata> send(String topic, String key, byte[] data, Callback callback)
+  {
+    long started = System.nanoTime();
+
+    try
+    {
+      return getProducer().send(new ProducerRecord<>(topic, key, data), (metadata, exception) ->
+          {
+            if (exception == null)
+            {
+              long latency = System.nanoTime() - started;
+
+              sendCount.incrementAndGet();
+              totalSendLatency.addAndGet(latency);
+              maximumSendLatency.accumulate(latency);
+            }
+            else
+            {
+              sendErrorCount.incrementAndGet();
+            }
+
+            if (callback != null)
+            {
+              callback.onCompletion(metadata, exception);
+            }
+          }
+          );
+    }
+    catch (RuntimeException e)
+    {
+      sendErrorCount.incrementAndGet();
+
+      throw e;
+    }
+  }
+
+  /**
+   * Create the Apache Kafka producer.
+   *
+   * @param properties the configuration properties for the producer
+   *
+   * @return the Apache Kafka producer
+   */
+  protected Producer<String, byte[]> createProducer(Map<String, Object> properties)
+  {
+    return new KafkaProducer<>(properties, new StringSerializer(), new ByteArraySerializer());
+  }
+
+  private Producer<String, byte[]> getProducer()
+  {
+    Producer<String, byte[]> currentProducer = producer;
+
+    if (currentProducer != null)
+    {
+      return currentProducer;
+    }
+
+    synchronized (this)
+    {
+      if (producer == null)
+      {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG,
+            configuration.getBootstrapServers());
+
+        if (!StringUtil.isNullOrEmpty(configuration.getClientId()))
+        {
+          properties.put(ProducerConfig.CLIENT_ID_CONFIG, configuration.getClientId());
+        }
+
+        if (configuration.getMaxBlock() > 0)
+        {
+          properties.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, configuration.getMaxBlock());
+        }
+
+        if (configuration.getRequestTimeout() > 0)
+        {
+          properties.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG,
+              configuration.getRequestTimeout());
+        }
+
+        if (configuration.getLinger() > 0)
+        {
+          properties.put(ProducerConfig.LINGER_MS_CONFIG, configuration.getLinger());
+        }
+
+        if (configuration.getBatchSize() > 0)
+        {
+          properties.put(ProducerConfig.BATCH_SIZE_CONFIG, configuration.getBatchSize());
+        }
+
+        if (!StringUtil.isNullOrEmpty(configuration.getCompressionType()))
+        {
+          properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG,
+              configuration.getCompressionType());
+        }
+
+        if (configuration.getIdempotence())
+        {
+          properties.put(ProducerConfig.ACKS_CONFIG, "all");
+          properties.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+          properties.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1);
+        }
+
+        producer = createProducer(properties);
+      }
+
+      return producer;
+    }
+  }
+
+  private double getProducerMetric(String name)
+  {
+    Producer<String, byte[]> currentProducer = producer;
+
+    if (currentProducer != null)
+    {
+      for (Map.Entry<MetricName, ? extends Metric> entry : currentProducer.metrics().entrySet())
+      {
+        if (entry.getKey().name().equals(name)
+            && entry.getKey().group().equals("producer-metrics"))
+        {
+          double value = entry.getValue().value();
+
+          return (Double.isNaN(value) || Double.isInfinite(value))
+              ? 0
+              : value;
+        }
+      }
+    }
+
+    return 0;
+  }
+}
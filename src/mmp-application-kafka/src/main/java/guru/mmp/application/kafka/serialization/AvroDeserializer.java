@@ -18,63 +18,165 @@ package guru.mmp.application.kafka.serialization;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificData;
 import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 //~--- JDK imports ------------------------------------------------------------
 
 /**
  * The <code>AvroDeserializer</code> class implements the Apache Avro deserializer for Apache Kafka.
+ * <p/>
+ * The schema and datum reader for the target type are resolved once when the deserializer is
+ * constructed and the binary decoder is reused by each thread.
+ * <p/>
+ * If the schema fingerprint is enabled, the data must be prefixed with the schema fingerprint
+ * header written by the <code>AvroSerializer</code>. Data written using the schema for the target
+ * type is read directly and data written using a previous version of the schema, registered using
+ * <code>addWriterSchema()</code>, is resolved against the schema for the target type.
  *
  * @author Marcus Portmann
  */
 public class AvroDeserializer<T extends SpecificRecordBase>
   implements Deserializer<T>
 {
+  /**
+   * The binary decoder reused by each thread.
+   */
+  private static final ThreadLocal<BinaryDecoder> binaryDecoder = new ThreadLocal<>();
+
   protected final Class<T> targetType;
 
+  /**
+   * The datum reader for the data written using the schema for the target type.
+   */
+  private final DatumReader<T> datumReader;
+
+  /**
+   * The datum readers for the schema fingerprints of the known writer schemas.
+   */
+  private final Map<Long, DatumReader<T>> datumReaders = new ConcurrentHashMap<>();
+
+  /**
+   * The schema for the target type.
+   */
+  private final Schema schema;
+
+  /**
+   * Is the data prefixed with the schema fingerprint header?
+   */
+  private boolean schemaFingerprint;
+
   /**
    * Constructs a new <code>AvroDeserializer</code>.
    *
    * @param targetType the target type
    */
   public AvroDeserializer(Class<T> targetType)
+  {
+    this(targetType, false);
+  }
+
+  /**
+   * Constructs a new <code>AvroDeserializer</code>.
+   *
+   * @param targetType        the target type
+   * @param schemaFingerprint is the data prefixed with the schema fingerprint header
+   */
+  public AvroDeserializer(Class<T> targetType, boolean schemaFingerprint)
   {
     this.targetType = targetType;
+    this.schemaFingerprint = schemaFingerprint;
+    this.schema = SpecificData.get().getSchema(targetType);
+    this.datumReader = new SpecificDatumReader<>(schema);
+
+    datumReaders.put(SchemaNormalization.parsingFingerprint64(schema), datumReader);
+  }
+
+  /**
+   * Register a previous version of the schema for the target type, which will be used to read the
+   * data prefixed with the fingerprint for the schema.
+   *
+   * @param writerSchema the previous version of the schema for the target type
+   */
+  public void addWriterSchema(Schema writerSchema)
+  {
+    datumReaders.putIfAbsent(SchemaNormalization.parsingFingerprint64(writerSchema),
+        new SpecificDatumReader<>(writerSchema, schema));
   }
 
   @Override
   public void close() {}
 
   @Override
-  public void configure(Map<String, ?> map, boolean b) {}
+  public void configure(Map<String, ?> configs, boolean isKey)
+  {
+    Object value = configs.get(AvroSerializer.SCHEMA_FINGERPRINT_CONFIG);
+
+    if (value != null)
+    {
+      schemaFingerprint = Boolean.parseBoolean(value.toString());
+    }
+  }
 
   @Override
   public T deserialize(String topic, byte[] data)
   {
-    try
+    if (data == null)
     {
-      T result = null;
+      return null;
+    }
+
+    DatumReader<T> reader = datumReader;
+    int offset = 0;
 
-      if (data != null)
+    if (schemaFingerprint)
+    {
+      if ((data.length < AvroSerializer.SCHEMA_FINGERPRINT_HEADER_LENGTH)
+          || (data[0] != AvroSerializer.SCHEMA_FINGERPRINT_MARKER_0)
+          || (data[1] != AvroSerializer.SCHEMA_FINGERPRINT_MARKER_1))
       {
-        DatumReader<GenericRecord> datumReader = new SpecificDatumReader<>(targetType.newInstance()
-            .getSchema());
-        Decoder decoder = DecoderFactory.get().binaryDecoder(data, null);
+        throw new SerializationException("Failed to deserialize the data for the topic (" + topic
+            + "): The data is not prefixed with a schema fingerprint header");
+      }
+
+      long fingerprint = 0;
+
+      for (int i = 0; i < 8; i++)
+      {
+        fingerprint |= (data[2 + i] & 0xFFL) << (i * 8);
+      }
 
-        result = (T) datumReader.read(null, decoder);
+      reader = datumReaders.get(fingerprint);
 
+      if (reader == null)
+      {
+        throw new SerializationException("Failed to deserialize the data for the topic (" + topic
+            + "): The schema with fingerprint (" + Long.toHexString(fingerprint)
+            + ") is not known");
       }
 
-      return result;
+      offset = AvroSerializer.SCHEMA_FINGERPRINT_HEADER_LENGTH;
+    }
+
+    try
+    {
+      BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, offset, data.length
+          - offset, binaryDecoder.get());
+
+      binaryDecoder.set(decoder);
+
+      return reader.read(null, decoder);
     }
     catch (Throwable e)
     {
@@ -18,23 +18,32 @@ package guru.mmp.application.kafka.serialization;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import org.apache.avro.generic.GenericDatumWriter;
-import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Serializer;
 
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 //~--- JDK imports ------------------------------------------------------------
 
 /**
  * The <code>AvroSerializer</code> class implements the Apache Avro serializer for Apache Kafka.
+ * <p/>
+ * The datum writers are cached per record class and the binary encoder and output buffer are
+ * reused by each thread, so serializing a record only allocates the resulting byte array.
+ * <p/>
+ * If the schema fingerprint is enabled, the serialized data is prefixed with the Apache Avro
+ * single object encoding header, i.e. the two byte marker <code>0xC3 0x01</code> followed by the
+ * 64-bit Rabin fingerprint of the schema in little-endian order, which allows the
+ * <code>AvroDeserializer</code> to resolve data written using a different version of the schema.
  *
  * @param <T>
  *
@@ -43,6 +52,90 @@ import java.util.Map;
 public class AvroSerializer<T extends SpecificRecordBase>
   implements Serializer<T>
 {
+  /**
+   * The name of the configuration property used to enable the schema fingerprint header.
+   */
+  public static final String SCHEMA_FINGERPRINT_CONFIG = "avro.schema.fingerprint";
+
+  /**
+   * The length of the schema fingerprint header.
+   */
+  static final int SCHEMA_FINGERPRINT_HEADER_LENGTH = 10;
+
+  /**
+   * The first byte of the schema fingerprint header.
+   */
+  static final byte SCHEMA_FINGERPRINT_MARKER_0 = (byte) 0xC3;
+
+  /**
+   * The second byte of the schema fingerprint header.
+   */
+  static final byte SCHEMA_FINGERPRINT_MARKER_1 = (byte) 0x01;
+
+  /**
+   * The maximum size in bytes of the output buffer retained by a thread between records.
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * The output buffer and binary encoder reused by each thread.
+   */
+  private static final ThreadLocal<EncoderState> encoderState = ThreadLocal.withInitial(
+      EncoderState::new);
+
+  /**
+   * The datum writers and schema fingerprint headers for the record classes.
+   */
+  private final Map<Class<?>, RecordWriter> recordWriters = new ConcurrentHashMap<>();
+
+  /**
+   * Should the serialized data be prefixed with the schema fingerprint header?
+   */
+  private boolean schemaFingerprint;
+
+  /**
+   * Constructs a new <code>AvroSerializer</code>.
+   */
+  public AvroSerializer()
+  {
+    this(false);
+  }
+
+  /**
+   * Constructs a new <code>AvroSerializer</code>.
+   *
+   * @param schemaFingerprint should the serialized data be prefixed with the schema fingerprint
+   *                          header
+   */
+  public AvroSerializer(boolean schemaFingerprint)
+  {
+    this.schemaFingerprint = schemaFingerprint;
+  }
+
+  /**
+   * Returns the schema fingerprint header for the schema.
+   *
+   * @param schema the schema
+   *
+   * @return the schema fingerprint header for the schema
+   */
+  static byte[] getSchemaFingerprintHeader(Schema schema)
+  {
+    long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+
+    byte[] header = new byte[SCHEMA_FINGERPRINT_HEADER_LENGTH];
+
+    header[0] = SCHEMA_FINGERPRINT_MARKER_0;
+    header[1] = SCHEMA_FINGERPRINT_MARKER_1;
+
+    for (int i = 0; i < 8; i++)
+    {
+      header[2 + i] = (byte) (fingerprint >>> (i * 8));
+    }
+
+    return header;
+  }
+
   @Override
   public void close()
   {
@@ -50,9 +143,14 @@ public class AvroSerializer<T extends SpecificRecordBase>
   }
 
   @Override
-  public void configure(Map<String, ?> arg0, boolean arg1)
+  public void configure(Map<String, ?> configs, boolean isKey)
   {
-    // No-op
+    Object value = configs.get(SCHEMA_FINGERPRINT_CONFIG);
+
+    if (value != null)
+    {
+      schemaFingerprint = Boolean.parseBoolean(value.toString());
+    }
   }
 
   @Override
@@ -64,25 +162,103 @@ public class AvroSerializer<T extends SpecificRecordBase>
 
       if (data != null)
       {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        BinaryEncoder binaryEncoder = EncoderFactory.get().binaryEncoder(byteArrayOutputStream,
-            null);
+        RecordWriter recordWriter = recordWriters.computeIfAbsent(data.getClass(),
+            recordClass -> new RecordWriter(data.getSchema()));
+
+        EncoderState state = encoderState.get();
+
+        state.outputStream.reset();
+
+        if (schemaFingerprint)
+        {
+          state.outputStream.write(recordWriter.schemaFingerprintHeader);
+        }
 
-        DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(data.getSchema());
-        datumWriter.write(data, binaryEncoder);
+        state.encoder = EncoderFactory.get().binaryEncoder(state.outputStream, state.encoder);
 
-        binaryEncoder.flush();
-        byteArrayOutputStream.close();
+        recordWriter.datumWriter.write(data, state.encoder);
 
-        result = byteArrayOutputStream.toByteArray();
+        state.encoder.flush();
+
+        result = state.outputStream.toByteArray();
+
+        // Do not retain the buffer used to serialize an unusually large record
+        if (result.length > MAX_RETAINED_BUFFER_SIZE)
+        {
+          encoderState.remove();
+        }
       }
 
       return result;
     }
-    catch (IOException e)
+    catch (Throwable e)
+    {
+      /*
+       * Discard the output buffer and binary encoder for the thread, since they may still contain
+       * the partially serialized data, which would otherwise be flushed when the next record is
+       * serialized on the thread.
+       */
+      encoderState.remove();
+
+      if (e instanceof SerializationException)
+      {
+        throw (SerializationException) e;
+      }
+      else if (e instanceof Error)
+      {
+        throw (Error) e;
+      }
+      else
+      {
+        throw new SerializationException("Failed to serialize the data for the topic (" + topic
+            + ")", e);
+      }
+    }
+  }
+
+  /**
+   * The <code>EncoderState</code> class holds the output buffer and binary encoder reused by a
+   * thread.
+   */
+  private static class EncoderState
+  {
+    /**
+     * The binary encoder.
+     */
+    private BinaryEncoder encoder;
+
+    /**
+     * The output buffer.
+     */
+    private ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+  }
+
+
+  /**
+   * The <code>RecordWriter</code> class holds the datum writer and schema fingerprint header for
+   * a record class.
+   */
+  private static class RecordWriter
+  {
+    /**
+     * The datum writer.
+     */
+    private DatumWriter<Object> datumWriter;
+
+    /**
+     * The schema fingerprint header.
+     */
+    private byte[] schemaFingerprintHeader;
+
+    /**
+     * Constructs a new <code>RecordWriter</code>.
+     *
+     * @param schema the schema for the record class
+     */
+    RecordWriter(Schema schema)
     {
-      throw new SerializationException("Failed to serialize the data for the topic (" + topic
-          + ")", e);
+      this.datumWriter = new SpecificDatumWriter<>(schema);
+      this.schemaFingerprintHeader = getSchemaFingerprintHeader(schema);
     }
   }
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.kafka.serialization.AvroDeserializer;
+import guru.mmp.application.kafka.serialization.AvroSerializer;
+import guru.mmp.avro.event.Event;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>AvroSerializationTest</code> class contains the implementation of the JUnit tests for
+ * the <code>AvroSerializer</code> and <code>AvroDeserializer</code> classes.
+ *
+ * @author Marcus Portmann
+ */
+public class AvroSerializationTest
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(AvroSerializationTest.class);
+
+  /**
+   * The name of the test topic.
+   */
+  private static final String TOPIC = "test-topic";
+
+  /**
+   * Test that a record that cannot be serialized does not corrupt the next record serialized on
+   * the same thread.
+   */
+  @Test
+  public void failedSerializationTest()
+  {
+    Event event = createEvent(1);
+
+    AvroSerializer<Event> serializer = new AvroSerializer<>(true);
+
+    byte[] expectedData = serializer.serialize(TOPIC, event);
+
+    // An event with a null value for a required field that is written after other fields
+    Event invalidEvent = Event.newBuilder(event).build();
+
+    invalidEvent.setSystem(null);
+
+    try
+    {
+      serializer.serialize(TOPIC, invalidEvent);
+
+      fail("Serialized the event with a null value for a required field");
+    }
+    catch (SerializationException ignored) {}
+
+    assertArrayEquals("The event serialized after the failure is incorrect", expectedData,
+        serializer.serialize(TOPIC, event));
+  }
+
+  /**
+   * Test serializing and deserializing an event.
+   */
+  @Test
+  public void roundTripTest()
+  {
+    Event event = createEvent(1);
+
+    AvroSerializer<Event> serializer = new AvroSerializer<>();
+    AvroDeserializer<Event> deserializer = new AvroDeserializer<>(Event.class);
+
+    assertEquals(event, deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, event)));
+    assertEquals(event, deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, event)));
+    assertEquals(null, deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, null)));
+  }
+
+  /**
+   * Test serializing and deserializing events prefixed with the schema fingerprint header,
+   * including an event written using a previous version of the schema.
+   */
+  @Test
+  public void schemaFingerprintTest()
+    throws Exception
+  {
+    Event event = createEvent(1);
+
+    AvroSerializer<Event> serializer = new AvroSerializer<>(true);
+    AvroDeserializer<Event> deserializer = new AvroDeserializer<>(Event.class, true);
+
+    byte[] data = serializer.serialize(TOPIC, event);
+
+    assertEquals(new AvroSerializer<Event>().serialize(TOPIC, event).length + 10, data.length);
+    assertEquals(event, deserializer.deserialize(TOPIC, data));
+
+    // A previous version of the schema with an additional field that has since been removed
+    Schema previousSchema = new Schema.Parser().parse(Event.getClassSchema().toString().replace(
+        "{\"name\":\"data\",\"type\":\"bytes\"}",
+        "{\"name\":\"data\",\"type\":\"bytes\"},{\"name\":\"source\",\"type\":\"string\"}"));
+
+    GenericRecord previousEvent = new GenericData.Record(previousSchema);
+
+    for (Schema.Field field : Event.getClassSchema().getFields())
+    {
+      previousEvent.put(field.name(), event.get(field.pos()));
+    }
+
+    previousEvent.put("source", "Previous");
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    long fingerprint = SchemaNormalization.parsingFingerprint64(previousSchema);
+
+    outputStream.write(0xC3);
+    outputStream.write(0x01);
+
+    for (int i = 0; i < 8; i++)
+    {
+      outputStream.write((int) (fingerprint >>> (i * 8)));
+    }
+
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+
+    new GenericDatumWriter<GenericRecord>(previousSchema).write(previousEvent, encoder);
+
+    encoder.flush();
+
+    try
+    {
+      deserializer.deserialize(TOPIC, outputStream.toByteArray());
+
+      fail("Deserialized the data written using an unknown schema");
+    }
+    catch (SerializationException ignored) {}
+
+    deserializer.addWriterSchema(previousSchema);
+
+    assertEquals(event, deserializer.deserialize(TOPIC, outputStream.toByteArray()));
+
+    try
+    {
+      deserializer.deserialize(TOPIC, new AvroSerializer<Event>().serialize(TOPIC, event));
+
+      fail("Deserialized the data that was not prefixed with a schema fingerprint header");
+    }
+    catch (SerializationException ignored) {}
+  }
+
+  /**
+   * Compare the throughput of the <code>AvroSerializer</code> and <code>AvroDeserializer</code>
+   * with the throughput when the datum readers, datum writers, encoders, decoders and buffers are
+   * created for each record.
+   */
+  @Test
+  public void throughputTest()
+    throws Exception
+  {
+    int numberOfRecords = 200000;
+
+    Event[] events = new Event[100];
+
+    for (int i = 0; i < events.length; i++)
+    {
+      events[i] = createEvent(i);
+    }
+
+    AvroSerializer<Event> serializer = new AvroSerializer<>();
+    AvroDeserializer<Event> deserializer = new AvroDeserializer<>(Event.class);
+
+    // Warm up
+    for (int i = 0; i < numberOfRecords; i++)
+    {
+      Event event = events[i % events.length];
+
+      uncachedDeserialize(uncachedSerialize(event));
+      deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, event));
+    }
+
+    long started = System.nanoTime();
+
+    for (int i = 0; i < numberOfRecords; i++)
+    {
+      uncachedDeserialize(uncachedSerialize(events[i % events.length]));
+    }
+
+    double uncachedRate = (numberOfRecords * 1000000000.0) / (System.nanoTime() - started);
+
+    started = System.nanoTime();
+
+    for (int i = 0; i < numberOfRecords; i++)
+    {
+      deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, events[i % events.length]));
+    }
+
+    double cachedRate = (numberOfRecords * 1000000000.0) / (System.nanoTime() - started);
+
+    logger.info(String.format("Serialized and deserialized %.0f records/second creating the "
+        + "datum readers, datum writers, encoders and decoders for each record and %.0f "
+        + "records/second reusing them", uncachedRate, cachedRate));
+  }
+
+  private static Event createEvent(int number)
+  {
+    return Event.newBuilder().setId(UUID.randomUUID().toString()).setType("TestEvent").setVersion(
+        1).setReference("Reference " + number).setSystem("Test").setTimestamp(
+        System.currentTimeMillis()).setData(ByteBuffer.wrap(new byte[256])).build();
+  }
+
+  private static Event uncachedDeserialize(byte[] data)
+    throws Exception
+  {
+    DatumReader<Event> datumReader = new SpecificDatumReader<>(Event.class.newInstance()
+        .getSchema());
+
+    return datumReader.read(null, DecoderFactory.get().binaryDecoder(data, null));
+  }
+
+  private static byte[] uncachedSerialize(Event event)
+    throws Exception
+  {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+
+    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(event.getSchema());
+    datumWriter.write(event, encoder);
+
+    encoder.flush();
+
+    return outputStream.toByteArray();
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.kafka.outbox.BackgroundEventOutboxPublisher;
+import guru.mmp.application.kafka.outbox.IEventOutboxService;
+import guru.mmp.application.kafka.producer.EventProducer;
+import guru.mmp.application.kafka.serialization.AvroDeserializer;
+import guru.mmp.application.test.TestClassRunner;
+import guru.mmp.avro.event.Event;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+import org.springframework.test.context.support.DirtiesContextTestExecutionListener;
+import org.springframework.test.context.transaction.TransactionalTestExecutionListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>EventOutboxTest</code> class contains the implementation of the JUnit tests for the
+ * event outbox and the shared <code>EventProducer</code>.
+ *
+ * @author Marcus Portmann
+ */
+@RunWith(TestClassRunner.class)
+@ContextConfiguration(classes = { KafkaTestConfiguration.class })
+@TestExecutionListeners(listeners = { DependencyInjectionTestExecutionListener.class,
+    DirtiesContextTestExecutionListener.class, TransactionalTestExecutionListener.class })
+public class EventOutboxTest
+{
+  /**
+   * The name of the test topic.
+   */
+  private static final String TOPIC = "test-topic";
+
+  /* Background Event Outbox Publisher */
+  @Inject
+  private BackgroundEventOutboxPublisher backgroundEventOutboxPublisher;
+
+  /**
+   * The data source used to provide connections to the application database.
+   */
+  @Inject
+  @Qualifier("applicationDataSource")
+  private DataSource dataSource;
+
+  /* Event Outbox Service */
+  @Inject
+  private IEventOutboxService eventOutboxService;
+
+  /* The shared event producer */
+  @Inject
+  private EventProducer eventProducer;
+
+  /* The mock Apache Kafka producer used by the shared event producer */
+  @Inject
+  private MockProducer<String, byte[]> mockProducer;
+
+  /* Transaction Manager */
+  @Inject
+  private PlatformTransactionManager transactionManager;
+
+  /**
+   * Test that the events added to the outbox in a transaction that commits are published in
+   * order and that the events added in a transaction that is rolled back are not published.
+   */
+  @Test
+  public void publishEventsTest()
+    throws Exception
+  {
+    int numberOfEvents = 250;
+
+    mockProducer.clear();
+
+    // Add the events to the outbox in a transaction that commits
+    TransactionStatus transactionStatus = transactionManager.getTransaction(
+        new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRED));
+
+    for (int i = 0; i < numberOfEvents; i++)
+    {
+      eventOutboxService.publishEvent(TOPIC, "Key " + (i % 10), createEvent(i));
+    }
+
+    transactionManager.commit(transactionStatus);
+
+    // Add an event to the outbox in a transaction that is rolled back
+    transactionStatus = transactionManager.getTransaction(new DefaultTransactionDefinition(
+        TransactionDefinition.PROPAGATION_REQUIRED));
+
+    eventOutboxService.publishEvent(TOPIC, "Key 0", createEvent(numberOfEvents));
+
+    transactionManager.rollback(transactionStatus);
+
+    // Publish the events
+    long timeout = System.currentTimeMillis() + 30000;
+
+    while ((getNumberOfEventsInOutbox() > 0) && (System.currentTimeMillis() < timeout))
+    {
+      backgroundEventOutboxPublisher.publishEvents();
+
+      Thread.sleep(100);
+    }
+
+    assertEquals("The outbox is not empty", 0, getNumberOfEventsInOutbox());
+
+    List<ProducerRecord<String, byte[]>> history = mockProducer.history();
+
+    assertEquals("The number of events published is incorrect", numberOfEvents, history.size());
+
+    AvroDeserializer<Event> deserializer = new AvroDeserializer<>(Event.class);
+
+    for (int i = 0; i < numberOfEvents; i++)
+    {
+      ProducerRecord<String, byte[]> record = history.get(i);
+
+      assertEquals("The topic for the published event is incorrect", TOPIC, record.topic());
+      assertEquals("The key for the published event is incorrect", "Key " + (i % 10),
+          record.key());
+      assertEquals("The published event is incorrect", "Reference " + i,
+          deserializer.deserialize(TOPIC, record.value()).getReference().toString());
+    }
+
+    assertEquals("The number of events sent by the event producer is incorrect", numberOfEvents,
+        eventProducer.getSendCount());
+    assertEquals("The number of send errors for the event producer is incorrect", 0,
+        eventProducer.getSendErrorCount());
+  }
+
+  private static Event createEvent(int number)
+  {
+    return Event.newBuilder().setId(UUID.randomUUID().toString()).setType("TestEvent").setVersion(
+        1).setReference("Reference " + number).setSystem("Test").setTimestamp(
+        System.currentTimeMillis()).setData(ByteBuffer.wrap(new byte[256])).build();
+  }
+
+  private int getNumberOfEventsInOutbox()
+    throws Exception
+  {
+    try (Connection connection = dataSource.getConnection();
+      Statement statement = connection.createStatement();
+      ResultSet rs = statement.executeQuery("SELECT COUNT(ID) FROM EVENTS.OUTBOX"))
+    {
+      rs.next();
+
+      return rs.getInt(1);
+    }
+  }
+}
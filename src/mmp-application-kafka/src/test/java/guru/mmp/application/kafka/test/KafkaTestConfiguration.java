@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.kafka.KafkaConfiguration;
+import guru.mmp.application.kafka.producer.EventProducer;
+import guru.mmp.application.test.TestConfiguration;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>KafkaTestConfiguration</code> class provides the Spring configuration for the JUnit
+ * test classes that test the Apache Kafka capabilities provided by the
+ * <b>mmp-java (Open Source Java and JEE Development Framework)</b>.
+ * <p/>
+ * The shared <code>EventProducer</code> uses a <code>MockProducer</code>, which records the events
+ * that were sent, so that the tests do not require an Apache Kafka broker.
+ *
+ * @author Marcus Portmann
+ */
+@Configuration
+public class KafkaTestConfiguration extends TestConfiguration
+{
+  /**
+   * Returns the shared event producer.
+   *
+   * @return the shared event producer
+   */
+  @Bean
+  public EventProducer eventProducer()
+  {
+    KafkaConfiguration configuration = new KafkaConfiguration();
+
+    configuration.setBootstrapServers("localhost:9092");
+
+    MockProducer<String, byte[]> producer = mockProducer();
+
+    return new EventProducer(configuration)
+    {
+      @Override
+      protected Producer<String, byte[]> createProducer(Map<String, Object> properties)
+      {
+        return producer;
+      }
+    };
+  }
+
+  /**
+   * Returns the mock Apache Kafka producer used by the shared event producer.
+   *
+   * @return the mock Apache Kafka producer used by the shared event producer
+   */
+  @Bean
+  public MockProducer<String, byte[]> mockProducer()
+  {
+    return new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+  }
+}
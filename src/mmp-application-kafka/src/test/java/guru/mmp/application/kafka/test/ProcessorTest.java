@@ -0,0 +1,580 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.kafka.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.kafka.KafkaConfiguration;
+import guru.mmp.application.kafka.processor.InvalidRecordValueException;
+import guru.mmp.application.kafka.processor.Processor;
+import guru.mmp.application.kafka.processor.TransientErrorException;
+import guru.mmp.avro.event.Event;
+import org.apache.kafka.clients.consumer.*;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>ProcessorTest</code> class contains the implementation of the JUnit tests for the
+ * <code>Processor</code> class.
+ * <p/>
+ * The tests use an in-memory consumer in place of an Apache Kafka broker so that they measure the
+ * overhead of the processor itself.
+ *
+ * @author Marcus Portmann
+ */
+public class ProcessorTest
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(ProcessorTest.class);
+
+  /**
+   * The name of the test topic.
+   */
+  private static final String TOPIC = "test-topic";
+
+  /**
+   * Test that a processor that processes the record values one at a time, using the default
+   * implementation of <code>processRecordValues()</code>, resumes from the record that failed
+   * with a transient error without processing the earlier records in the batch again.
+   */
+  @Test
+  public void defaultProcessingTransientErrorTest()
+    throws Exception
+  {
+    int numberOfRecordsPerPartition = 1000;
+
+    InMemoryConsumer consumer = new InMemoryConsumer(2, numberOfRecordsPerPartition, 100);
+
+    AtomicBoolean transientErrorThrown = new AtomicBoolean();
+    AtomicIntegerArray[] numberOfTimesProcessed = new AtomicIntegerArray[] {
+        new AtomicIntegerArray(numberOfRecordsPerPartition),
+        new AtomicIntegerArray(numberOfRecordsPerPartition) };
+
+    Processor<String, Event> processor = new TestProcessor(consumer, 100, 100)
+    {
+      @Override
+      protected void processRecordValue(Event value)
+        throws TransientErrorException
+      {
+        if ((value.getVersion() == 0) && (value.getTimestamp() == 150)
+            && transientErrorThrown.compareAndSet(false, true))
+        {
+          throw new TransientErrorException("Testing a transient error");
+        }
+
+        numberOfTimesProcessed[value.getVersion()].incrementAndGet(value.getTimestamp().intValue());
+      }
+    };
+
+    processor.start();
+
+    waitForCommittedOffsets(consumer, 2, numberOfRecordsPerPartition, 30000);
+
+    processor.shutdown();
+
+    assertTrue("The transient error was not thrown", transientErrorThrown.get());
+
+    assertProcessedExactlyOnce(consumer, numberOfTimesProcessed);
+  }
+
+  /**
+   * Test that a record with an invalid value is ignored without processing the other records in
+   * the same batch again, when the record values are processed one at a time using the default
+   * implementation of <code>processRecordValues()</code>.
+   */
+  @Test
+  public void invalidRecordValueTest()
+    throws Exception
+  {
+    int numberOfRecordsPerPartition = 1000;
+
+    InMemoryConsumer consumer = new InMemoryConsumer(2, numberOfRecordsPerPartition, 100);
+
+    AtomicIntegerArray[] numberOfTimesProcessed = new AtomicIntegerArray[] {
+        new AtomicIntegerArray(numberOfRecordsPerPartition),
+        new AtomicIntegerArray(numberOfRecordsPerPartition) };
+
+    Processor<String, Event> processor = new TestProcessor(consumer, 100, 100)
+    {
+      @Override
+      protected void processRecordValue(Event value)
+        throws InvalidRecordValueException
+      {
+        numberOfTimesProcessed[value.getVersion()].incrementAndGet(value.getTimestamp().intValue());
+
+        if ((value.getVersion() == 0) && (value.getTimestamp() == 150))
+        {
+          throw new InvalidRecordValueException("Testing an invalid record value");
+        }
+      }
+    };
+
+    processor.start();
+
+    waitForCommittedOffsets(consumer, 2, numberOfRecordsPerPartition, 30000);
+
+    processor.shutdown();
+
+    assertProcessedExactlyOnce(consumer, numberOfTimesProcessed);
+  }
+
+  /**
+   * Test the throughput of a single processor retrieving records from multiple partitions.
+   */
+  @Test
+  public void throughputTest()
+    throws Exception
+  {
+    int numberOfPartitions = 4;
+    int numberOfRecordsPerPartition = 25000;
+    int numberOfRecords = numberOfPartitions * numberOfRecordsPerPartition;
+
+    InMemoryConsumer consumer = new InMemoryConsumer(numberOfPartitions,
+        numberOfRecordsPerPartition, 500);
+
+    AtomicLong numberOfRecordsProcessed = new AtomicLong();
+    AtomicInteger numberOfRecordsOutOfOrder = new AtomicInteger();
+    Map<Integer, Long> lastOffsets = new ConcurrentHashMap<>();
+
+    Processor<String, Event> processor = new TestProcessor(consumer, 100, 1000)
+    {
+      @Override
+      protected void processRecordValues(List<Event> values)
+      {
+        for (Event value : values)
+        {
+          Long lastOffset = lastOffsets.put(value.getVersion(), value.getTimestamp());
+
+          if (value.getTimestamp() != ((lastOffset == null)
+              ? 0
+              : lastOffset + 1))
+          {
+            numberOfRecordsOutOfOrder.incrementAndGet();
+          }
+        }
+
+        numberOfRecordsProcessed.addAndGet(values.size());
+      }
+    };
+
+    long started = System.currentTimeMillis();
+
+    processor.start();
+
+    waitFor(() -> numberOfRecordsProcessed.get() >= numberOfRecords, 60000);
+
+    long elapsed = Math.max(System.currentTimeMillis() - started, 1);
+
+    processor.shutdown();
+
+    logger.info(String.format(
+        "Processed %d records from %d partitions in %d ms (%d records/sec) with %d synchronous "
+        + "and %d asynchronous commits", numberOfRecordsProcessed.get(), numberOfPartitions,
+        elapsed, (numberOfRecordsProcessed.get() * 1000L) / elapsed,
+        consumer.synchronousCommitCount.get(), consumer.asynchronousCommitCount.get()));
+
+    assertEquals("The records were not processed exactly once", numberOfRecords,
+        numberOfRecordsProcessed.get());
+    assertEquals("The records were not processed in order", 0, numberOfRecordsOutOfOrder.get());
+
+    for (int partition = 0; partition < numberOfPartitions; partition++)
+    {
+      assertEquals(String.format("The offset for the partition (%d) was not committed",
+          partition), Long.valueOf(numberOfRecordsPerPartition), consumer.committedOffsets.get(
+          new TopicPartition(TOPIC, partition)));
+    }
+  }
+
+  /**
+   * Test that a transient error while processing the records for one partition pauses and
+   * rewinds that partition without stalling the processing of the other partitions.
+   */
+  @Test
+  public void transientErrorTest()
+    throws Exception
+  {
+    int numberOfRecordsPerPartition = 1000;
+
+    InMemoryConsumer consumer = new InMemoryConsumer(2, numberOfRecordsPerPartition, 100);
+
+    AtomicBoolean transientErrorThrown = new AtomicBoolean();
+    AtomicLong[] numberOfRecordsProcessed = new AtomicLong[] { new AtomicLong(),
+        new AtomicLong() };
+    AtomicLong partitionOneCompleted = new AtomicLong();
+    AtomicLong partitionZeroResumed = new AtomicLong();
+
+    Processor<String, Event> processor = new TestProcessor(consumer, 100, 1000)
+    {
+      @Override
+      protected void processRecordValues(List<Event> values)
+        throws TransientErrorException
+      {
+        int partition = values.get(0).getVersion();
+
+        if (partition == 0)
+        {
+          if (transientErrorThrown.compareAndSet(false, true))
+          {
+            throw new TransientErrorException("Testing a transient error");
+          }
+
+          partitionZeroResumed.compareAndSet(0, System.currentTimeMillis());
+        }
+
+        if ((numberOfRecordsProcessed[partition].addAndGet(values.size())
+            == numberOfRecordsPerPartition) && (partition == 1))
+        {
+          partitionOneCompleted.set(System.currentTimeMillis());
+        }
+      }
+    };
+
+    processor.start();
+
+    waitFor(() -> (numberOfRecordsProcessed[0].get() >= numberOfRecordsPerPartition)
+        && (numberOfRecordsProcessed[1].get() >= numberOfRecordsPerPartition), 30000);
+
+    processor.shutdown();
+
+    assertTrue("The transient error was not thrown", transientErrorThrown.get());
+    assertTrue("The other partition was stalled by the transient error",
+        (partitionOneCompleted.get() > 0)
+        && (partitionOneCompleted.get() < partitionZeroResumed.get()));
+
+    for (int partition = 0; partition < 2; partition++)
+    {
+      assertEquals(String.format(
+          "The records for the partition (%d) were not processed exactly once", partition),
+          numberOfRecordsPerPartition, numberOfRecordsProcessed[partition].get());
+      assertEquals(String.format("The offset for the partition (%d) was not committed",
+          partition), Long.valueOf(numberOfRecordsPerPartition), consumer.committedOffsets.get(
+          new TopicPartition(TOPIC, partition)));
+    }
+  }
+
+  private static void assertProcessedExactlyOnce(InMemoryConsumer consumer,
+      AtomicIntegerArray[] numberOfTimesProcessed)
+  {
+    for (int partition = 0; partition < numberOfTimesProcessed.length; partition++)
+    {
+      for (int offset = 0; offset < numberOfTimesProcessed[partition].length(); offset++)
+      {
+        assertEquals(String.format(
+            "The record with offset (%d) for the partition (%d) was not processed exactly once",
+            offset, partition), 1, numberOfTimesProcessed[partition].get(offset));
+      }
+
+      assertEquals(String.format("The offset for the partition (%d) was not committed",
+          partition), Long.valueOf(numberOfTimesProcessed[partition].length()),
+          consumer.committedOffsets.get(new TopicPartition(TOPIC, partition)));
+    }
+  }
+
+  private static void waitFor(BooleanSupplier condition, long timeout)
+    throws InterruptedException
+  {
+    long timeoutAt = System.currentTimeMillis() + timeout;
+
+    while ((!condition.getAsBoolean()) && (System.currentTimeMillis() < timeoutAt))
+    {
+      Thread.sleep(10);
+    }
+  }
+
+  private static void waitForCommittedOffsets(InMemoryConsumer consumer, int numberOfPartitions,
+      long offset, long timeout)
+    throws InterruptedException
+  {
+    waitFor(() ->
+        {
+          for (int partition = 0; partition < numberOfPartitions; partition++)
+          {
+            if (!Long.valueOf(offset).equals(consumer.committedOffsets.get(new TopicPartition(
+                TOPIC, partition))))
+            {
+              return false;
+            }
+          }
+
+          return true;
+        }
+        , timeout);
+  }
+
+  /**
+   * The <code>InMemoryConsumer</code> class implements an Apache Kafka consumer that retrieves
+   * the records for the test topic from in-memory partitions, honouring the seek, pause and
+   * resume operations in the same way as the Apache Kafka consumer.
+   */
+  private static class InMemoryConsumer extends MockConsumer<String, Event>
+  {
+    /**
+     * The number of asynchronous commits.
+     */
+    private AtomicInteger asynchronousCommitCount = new AtomicInteger();
+
+    /**
+     * The committed offsets.
+     */
+    private Map<TopicPartition, Long> committedOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum number of records returned by a single poll.
+     */
+    private int maxPollRecords;
+
+    /**
+     * The records for the partitions.
+     */
+    private Map<TopicPartition, List<ConsumerRecord<String, Event>>> partitions = new HashMap<>();
+
+    /**
+     * The offsets of the next records to retrieve for the partitions.
+     */
+    private Map<TopicPartition, Long> positions = new HashMap<>();
+
+    /**
+     * The number of synchronous commits.
+     */
+    private AtomicInteger synchronousCommitCount = new AtomicInteger();
+
+    /**
+     * Constructs a new <code>InMemoryConsumer</code>.
+     *
+     * @param numberOfPartitions          the number of partitions
+     * @param numberOfRecordsPerPartition the number of records per partition
+     * @param maxPollRecords              the maximum number of records returned by a single poll
+     */
+    InMemoryConsumer(int numberOfPartitions, int numberOfRecordsPerPartition, int maxPollRecords)
+    {
+      super(OffsetResetStrategy.EARLIEST);
+
+      this.maxPollRecords = maxPollRecords;
+
+      Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+
+      for (int partition = 0; partition < numberOfPartitions; partition++)
+      {
+        TopicPartition topicPartition = new TopicPartition(TOPIC, partition);
+
+        List<ConsumerRecord<String, Event>> records = new ArrayList<>(
+            numberOfRecordsPerPartition);
+
+        for (int offset = 0; offset < numberOfRecordsPerPartition; offset++)
+        {
+          Event event = Event.newBuilder().setId(UUID.randomUUID().toString()).setType(
+              "TestEvent").setVersion(partition).setReference(null).setSystem("Test")
+              .setTimestamp(offset).setData(ByteBuffer.wrap(new byte[0])).build();
+
+          records.add(new ConsumerRecord<>(TOPIC, partition, offset, event.getId().toString(),
+              event));
+        }
+
+        partitions.put(topicPartition, records);
+        positions.put(topicPartition, 0L);
+        beginningOffsets.put(topicPartition, 0L);
+      }
+
+      updateBeginningOffsets(beginningOffsets);
+    }
+
+    @Override
+    public synchronized void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets,
+        OffsetCommitCallback callback)
+    {
+      asynchronousCommitCount.incrementAndGet();
+
+      recordCommittedOffsets(offsets);
+
+      super.commitAsync(offsets, callback);
+    }
+
+    @Override
+    public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets)
+    {
+      synchronousCommitCount.incrementAndGet();
+
+      recordCommittedOffsets(offsets);
+
+      super.commitSync(offsets);
+    }
+
+    @Override
+    public ConsumerRecords<String, Event> poll(long timeout)
+    {
+      // Check for a wakeup and initialise the positions for the assigned partitions
+      super.poll(0);
+
+      ConsumerRecords<String, Event> records = fetchRecords();
+
+      if (records.isEmpty())
+      {
+        try
+        {
+          Thread.sleep(Math.min(timeout, 10));
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      return records;
+    }
+
+    @Override
+    public synchronized long position(TopicPartition partition)
+    {
+      return positions.get(partition);
+    }
+
+    @Override
+    public synchronized void seek(TopicPartition partition, long offset)
+    {
+      super.seek(partition, offset);
+
+      positions.put(partition, offset);
+    }
+
+    @Override
+    public synchronized void subscribe(Collection<String> topics,
+        ConsumerRebalanceListener listener)
+    {
+      super.subscribe(topics, listener);
+
+      rebalance(partitions.keySet());
+
+      listener.onPartitionsAssigned(partitions.keySet());
+    }
+
+    private synchronized ConsumerRecords<String, Event> fetchRecords()
+    {
+      Map<TopicPartition, List<ConsumerRecord<String, Event>>> records = new HashMap<>();
+
+      Set<TopicPartition> pausedPartitions = paused();
+
+      int remaining = maxPollRecords;
+
+      for (TopicPartition partition : assignment())
+      {
+        if ((remaining == 0) || pausedPartitions.contains(partition))
+        {
+          continue;
+        }
+
+        List<ConsumerRecord<String, Event>> partitionRecords = partitions.get(partition);
+
+        int position = positions.get(partition).intValue();
+        int end = Math.min(partitionRecords.size(), position + remaining);
+
+        if (end > position)
+        {
+          records.put(partition, new ArrayList<>(partitionRecords.subList(position, end)));
+
+          positions.put(partition, (long) end);
+
+          remaining -= end - position;
+        }
+      }
+
+      return new ConsumerRecords<>(records);
+    }
+
+    private void recordCommittedOffsets(Map<TopicPartition, OffsetAndMetadata> offsets)
+    {
+      for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : offsets.entrySet())
+      {
+        committedOffsets.put(entry.getKey(), entry.getValue().offset());
+      }
+    }
+  }
+
+
+  /**
+   * The <code>TestProcessor</code> class implements a processor that retrieves the records for
+   * the test topic using an in-memory consumer.
+   */
+  private static abstract class TestProcessor extends Processor<String, Event>
+  {
+    /**
+     * The in-memory consumer.
+     */
+    private InMemoryConsumer consumer;
+
+    /**
+     * Constructs a new <code>TestProcessor</code>.
+     *
+     * @param consumer                    the in-memory consumer
+     * @param pollTimeout                 the timeout when polling for records
+     * @param temporarilyUnavailablePause the amount of time in milliseconds a partition will be
+     *                                    paused after a transient error
+     */
+    TestProcessor(InMemoryConsumer consumer, int pollTimeout, int temporarilyUnavailablePause)
+    {
+      super(createConfiguration(), null, null, pollTimeout, temporarilyUnavailablePause,
+          DEFAULT_CRITICAL_ERROR_PAUSE, DEFAULT_COMMIT_FAILURE_PAUSE, DEFAULT_MAXIMUM_WORKERS,
+          DEFAULT_COMMIT_CHECKPOINT_INTERVAL);
+
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected Consumer<String, Event> createConsumer(Map<String, Object> properties)
+    {
+      return consumer;
+    }
+
+    @Override
+    protected String getTopic()
+    {
+      return TOPIC;
+    }
+
+    @Override
+    protected void processRecordValue(Event value)
+      throws InvalidRecordValueException, TransientErrorException
+    {
+      throw new UnsupportedOperationException(
+          "The test processor does not process the record values one at a time");
+    }
+
+    private static KafkaConfiguration createConfiguration()
+    {
+      KafkaConfiguration configuration = new KafkaConfiguration();
+      configuration.setBootstrapServers("localhost:9092");
+      configuration.setClientId("ProcessorTest");
+
+      return configuration;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.messaging;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The <code>ArchivedMessage</code> class holds the information for a message that was archived
+ * using the messaging infrastructure.
+ *
+ * @author Marcus Portmann
+ */
+@SuppressWarnings("unused")
+public class ArchivedMessage
+  implements Serializable
+{
+  private static final long serialVersionUID = 1000000;
+
+  /**
+   * The date and time the message was archived.
+   */
+  private LocalDateTime archived;
+
+  /**
+   * The Universally Unique Identifier (UUID) used to correlate the message.
+   */
+  private UUID correlationId;
+
+  /**
+   * The date and time the message was created.
+   */
+  private LocalDateTime created;
+
+  /**
+   * The data for the message if it is stored in the database.
+   */
+  private byte[] data;
+
+  /**
+   * The location of the data for the message if it is stored in the archived message data store.
+   */
+  private ArchivedMessageDataStore.Location dataLocation;
+
+  /**
+   * The Universally Unique Identifier (UUID) used to uniquely identify the device the message
+   * originated from.
+   */
+  private UUID deviceId;
+
+  /**
+   * The Universally Unique Identifier (UUID) used to uniquely identify the message.
+   */
+  private UUID id;
+
+  /**
+   * The Universally Unique Identifier (UUID) used to uniquely identify the type of message.
+   */
+  private UUID typeId;
+
+  /**
+   * The username identifying the user associated with the message.
+   */
+  private String username;
+
+  /**
+   * Constructs a new <code>ArchivedMessage</code>.
+   *
+   * @param id            the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      message
+   * @param username      the username identifying the user associated with the message
+   * @param deviceId      the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      device the message originated from
+   * @param typeId        the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      type of message
+   * @param correlationId the Universally Unique Identifier (UUID) used to correlate the message
+   * @param created       the date and time the message was created
+   * @param archived      the date and time the message was archived
+   * @param data          the data for the message if it is stored in the database
+   * @param dataLocation  the location of the data for the message if it is stored in the archived
+   *                      message data store
+   */
+  public ArchivedMessage(UUID id, String username, UUID deviceId, UUID typeId, UUID correlationId,
+      LocalDateTime created, LocalDateTime archived, byte[] data,
+      ArchivedMessageDataStore.Location dataLocation)
+  {
+    this.id = id;
+    this.username = username;
+    this.deviceId = deviceId;
+    this.typeId = typeId;
+    this.correlationId = correlationId;
+    this.created = created;
+    this.archived = archived;
+    this.data = data;
+    this.dataLocation = dataLocation;
+  }
+
+  /**
+   * Returns the date and time the message was archived.
+   *
+   * @return the date and time the message was archived
+   */
+  public LocalDateTime getArchived()
+  {
+    return archived;
+  }
+
+  /**
+   * Returns the Universally Unique Identifier (UUID) used to correlate the message.
+   *
+   * @return the Universally Unique Identifier (UUID) used to correlate the message
+   */
+  public UUID getCorrelationId()
+  {
+    return correlationId;
+  }
+
+  /**
+   * Returns the date and time the message was created.
+   *
+   * @return the date and time the message was created
+   */
+  public LocalDateTime getCreated()
+  {
+    return created;
+  }
+
+  /**
+   * Returns the data for the message if it is stored in the database.
+   * <p/>
+   * The data is not retrieved when searching for archived messages.
+   *
+   * @return the data for the message if it is stored in the database or <code>null</code> if the
+   *         data was not retrieved or is stored in the archived message data store
+   */
+  public byte[] getData()
+  {
+    return data;
+  }
+
+  /**
+   * Returns the location of the data for the message if it is stored in the archived message data
+   * store.
+   *
+   * @return the location of the data for the message if it is stored in the archived message data
+   *         store or <code>null</code> if the data is stored in the database
+   */
+  public ArchivedMessageDataStore.Location getDataLocation()
+  {
+    return dataLocation;
+  }
+
+  /**
+   * Returns the Universally Unique Identifier (UUID) used to uniquely identify the device the
+   * message originated from.
+   *
+   * @return the Universally Unique Identifier (UUID) used to uniquely identify the device the
+   *         message originated from
+   */
+  public UUID getDeviceId()
+  {
+    return deviceId;
+  }
+
+  /**
+   * Returns the Universally Unique Identifier (UUID) used to uniquely identify the message.
+   *
+   * @return the Universally Unique Identifier (UUID) used to uniquely identify the message
+   */
+  public UUID getId()
+  {
+    return id;
+  }
+
+  /**
+   * Returns the Universally Unique Identifier (UUID) used to uniquely identify the type of message.
+   *
+   * @return the Universally Unique Identifier (UUID) used to uniquely identify the type of message
+   */
+  public UUID getTypeId()
+  {
+    return typeId;
+  }
+
+  /**
+   * Returns the username identifying the user associated with the message.
+   *
+   * @return the username identifying the user associated with the message
+   */
+  public String getUsername()
+  {
+    return username;
+  }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.messaging;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>ArchivedMessageDataStore</code> class implements the store for the data for large
+ * archived messages, which is compressed and appended to segment files on the local disk instead
+ * of being stored in the database.
+ * <p/>
+ * A separate series of segment files is written for each month, which allows the data for the
+ * archived messages for a month to be deleted along with the corresponding archived message
+ * partition. The location of the data for an archived message in the segment files is stored in
+ * the database, which acts as the index for the segment files.
+ * <p/>
+ * Each record in a segment file consists of a header, containing the compressed size, the
+ * uncompressed size and the CRC32 checksum of the uncompressed data, followed by the compressed
+ * data.
+ *
+ * @author Marcus Portmann
+ */
+public class ArchivedMessageDataStore
+{
+  /**
+   * The size of the header for a record in a segment file.
+   */
+  private static final int RECORD_HEADER_SIZE = 12;
+
+  /**
+   * The prefix for the names of the segment files.
+   */
+  private static final String SEGMENT_PREFIX = "archived-messages-";
+
+  /**
+   * The suffix for the names of the segment files.
+   */
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(ArchivedMessageDataStore.class);
+
+  /**
+   * The formatter for the month portion of the names of the segment files.
+   */
+  private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
+  /**
+   * The segment file the data for archived messages is currently being appended to.
+   */
+  private FileChannel currentSegment;
+
+  /**
+   * The month for the segment file the data for archived messages is currently being appended to.
+   */
+  private YearMonth currentSegmentMonth;
+
+  /**
+   * The name of the segment file the data for archived messages is currently being appended to.
+   */
+  private String currentSegmentName;
+
+  /**
+   * The directory containing the segment files.
+   */
+  private File directory;
+
+  /**
+   * The maximum size in bytes of a segment file before a new segment file is started.
+   */
+  private long maximumSegmentSize;
+
+  /**
+   * Constructs a new <code>ArchivedMessageDataStore</code>.
+   *
+   * @param directory          the directory containing the segment files
+   * @param maximumSegmentSize the maximum size in bytes of a segment file before a new segment
+   *                           file is started
+   */
+  public ArchivedMessageDataStore(File directory, long maximumSegmentSize)
+    throws MessagingException
+  {
+    this.directory = directory;
+    this.maximumSegmentSize = maximumSegmentSize;
+
+    if ((!directory.isDirectory()) && (!directory.mkdirs()))
+    {
+      throw new MessagingException(String.format(
+          "Failed to create the archived message data directory (%s)", directory));
+    }
+  }
+
+  /**
+   * Close the archived message data store.
+   */
+  public synchronized void close()
+  {
+    closeCurrentSegment();
+  }
+
+  /**
+   * Delete the segment files containing the data for the archived messages for the months before
+   * the specified month.
+   *
+   * @param month the month
+   *
+   * @return the number of segment files that were deleted
+   */
+  public synchronized int deleteSegmentsBefore(YearMonth month)
+  {
+    if ((currentSegmentMonth != null) && currentSegmentMonth.isBefore(month))
+    {
+      closeCurrentSegment();
+    }
+
+    int numberOfSegmentsDeleted = 0;
+
+    File[] segmentFiles = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+        && name.endsWith(SEGMENT_SUFFIX));
+
+    if (segmentFiles != null)
+    {
+      for (File segmentFile : segmentFiles)
+      {
+        YearMonth segmentMonth = getSegmentMonth(segmentFile.getName());
+
+        if ((segmentMonth != null) && segmentMonth.isBefore(month))
+        {
+          if (segmentFile.delete())
+          {
+            numberOfSegmentsDeleted++;
+          }
+          else
+          {
+            logger.warn(String.format("Failed to delete the archived message data segment (%s)",
+                segmentFile));
+          }
+        }
+      }
+    }
+
+    return numberOfSegmentsDeleted;
+  }
+
+  /**
+   * Retrieve the data for the archived message stored at the specified location.
+   *
+   * @param location the location of the data for the archived message
+   *
+   * @return the data for the archived message
+   */
+  public byte[] read(Location location)
+    throws MessagingException
+  {
+    File segmentFile = new File(directory, location.getSegment());
+
+    try (RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+      FileChannel channel = file.getChannel())
+    {
+      ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+      readFully(channel, header, location.getOffset());
+
+      header.flip();
+
+      int compressedSize = header.getInt();
+      int size = header.getInt();
+      int checksum = header.getInt();
+
+      ByteBuffer compressedData = ByteBuffer.allocate(compressedSize);
+
+      readFully(channel, compressedData, location.getOffset() + RECORD_HEADER_SIZE);
+
+      byte[] data = new byte[size];
+
+      Inflater inflater = new Inflater();
+
+      try
+      {
+        inflater.setInput(compressedData.array());
+
+        int numberOfBytesInflated = 0;
+
+        while ((numberOfBytesInflated < size) && (!inflater.finished()))
+        {
+          int numberOfBytes = inflater.inflate(data, numberOfBytesInflated,
+              size - numberOfBytesInflated);
+
+          if ((numberOfBytes == 0) && (inflater.needsInput() || inflater.needsDictionary()))
+          {
+            break;
+          }
+
+          numberOfBytesInflated += numberOfBytes;
+        }
+
+        if (numberOfBytesInflated != size)
+        {
+          throw new MessagingException(String.format(
+              "Expected %d bytes of archived message data but inflated %d bytes", size,
+              numberOfBytesInflated));
+        }
+      }
+      finally
+      {
+        inflater.end();
+      }
+
+      CRC32 crc = new CRC32();
+
+      crc.update(data);
+
+      if ((int) crc.getValue() != checksum)
+      {
+        throw new MessagingException("The checksum for the archived message data is invalid");
+      }
+
+      return data;
+    }
+    catch (Throwable e)
+    {
+      throw new MessagingException(String.format(
+          "Failed to read the archived message data at offset %d in the segment (%s)",
+          location.getOffset(), segmentFile), e);
+    }
+  }
+
+  /**
+   * Compress the data for an archived message and append it to the current segment file for the
+   * specified month.
+   *
+   * @param month the month the message was archived
+   * @param data  the data for the archived message
+   *
+   * @return the location of the data for the archived message
+   */
+  public Location write(YearMonth month, byte[] data)
+    throws MessagingException
+  {
+    // Compress the data before acquiring the lock so that writers only contend on the append
+    ByteBuffer record = createRecord(data);
+
+    synchronized (this)
+    {
+      try
+      {
+        if ((currentSegment == null) || (!month.equals(currentSegmentMonth))
+            || ((currentSegment.size() + record.remaining()) > maximumSegmentSize))
+        {
+          openNextSegment(month);
+        }
+
+        long offset = currentSegment.size();
+
+        while (record.hasRemaining())
+        {
+          currentSegment.write(record, offset + record.position());
+        }
+
+        currentSegment.force(false);
+
+        return new Location(currentSegmentName, offset);
+      }
+      catch (IOException e)
+      {
+        String segmentName = currentSegmentName;
+
+        closeCurrentSegment();
+
+        throw new MessagingException(String.format(
+            "Failed to write the archived message data to the segment (%s)", segmentName), e);
+      }
+    }
+  }
+
+  private static ByteBuffer createRecord(byte[] data)
+  {
+    CRC32 crc = new CRC32();
+
+    crc.update(data);
+
+    ByteArrayOutputStream compressedData = new ByteArrayOutputStream(Math.max(64, data.length
+        / 2));
+
+    Deflater deflater = new Deflater();
+
+    try
+    {
+      deflater.setInput(data);
+      deflater.finish();
+
+      byte[] buffer = new byte[8192];
+
+      while (!deflater.finished())
+      {
+        int numberOfBytes = deflater.deflate(buffer);
+
+        compressedData.write(buffer, 0, numberOfBytes);
+      }
+    }
+    finally
+    {
+      deflater.end();
+    }
+
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + compressedData.size());
+
+    record.putInt(compressedData.size());
+    record.putInt(data.length);
+    record.putInt((int) crc.getValue());
+    record.put(compressedData.toByteArray());
+
+    record.flip();
+
+    return record;
+  }
+
+  private static YearMonth getSegmentMonth(String segmentName)
+  {
+    try
+    {
+      return YearMonth.parse(segmentName.substring(SEGMENT_PREFIX.length(),
+          SEGMENT_PREFIX.length() + 6), MONTH_FORMATTER);
+    }
+    catch (Throwable e)
+    {
+      return null;
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+    throws IOException
+  {
+    while (buffer.hasRemaining())
+    {
+      if (channel.read(buffer, position + buffer.position()) < 0)
+      {
+        throw new IOException("Unexpected end of segment");
+      }
+    }
+  }
+
+  private void closeCurrentSegment()
+  {
+    if (currentSegment != null)
+    {
+      try
+      {
+        currentSegment.close();
+      }
+      catch (Throwable e)
+      {
+        logger.warn(String.format("Failed to close the archived message data segment (%s)",
+            currentSegmentName), e);
+      }
+
+      currentSegment = null;
+      currentSegmentMonth = null;
+      currentSegmentName = null;
+    }
+  }
+
+  /**
+   * Open the next segment file for the specified month.
+   * <p/>
+   * Existing segment files are never appended to after they have been closed, which ensures that
+   * a partially written record can only ever appear at the end of a segment file.
+   *
+   * @param month the month
+   */
+  private void openNextSegment(YearMonth month)
+    throws IOException
+  {
+    closeCurrentSegment();
+
+    String monthPrefix = SEGMENT_PREFIX + MONTH_FORMATTER.format(month) + "-";
+
+    int sequence = 0;
+
+    File[] segmentFiles = directory.listFiles((dir, name) -> name.startsWith(monthPrefix)
+        && name.endsWith(SEGMENT_SUFFIX));
+
+    if (segmentFiles != null)
+    {
+      for (File segmentFile : segmentFiles)
+      {
+        String name = segmentFile.getName();
+
+        try
+        {
+          sequence = Math.max(sequence, Integer.parseInt(name.substring(monthPrefix.length(),
+              name.length() - SEGMENT_SUFFIX.length())));
+        }
+        catch (NumberFormatException ignored) {}
+      }
+    }
+
+    String segmentName = String.format("%s%06d%s", monthPrefix, sequence + 1, SEGMENT_SUFFIX);
+
+    currentSegment = new RandomAccessFile(new File(directory, segmentName), "rw").getChannel();
+    currentSegmentMonth = month;
+    currentSegmentName = segmentName;
+  }
+
+  /**
+   * The <code>Location</code> class holds the location of the data for an archived message in
+   * the segment files.
+   */
+  public static class Location
+    implements Serializable
+  {
+    private static final long serialVersionUID = 1000000;
+
+    /**
+     * The offset of the record containing the data for the archived message in the segment file.
+     */
+    private long offset;
+
+    /**
+     * The name of the segment file containing the data for the archived message.
+     */
+    private String segment;
+
+    /**
+     * Constructs a new <code>Location</code>.
+     *
+     * @param segment the name of the segment file containing the data for the archived message
+     * @param offset  the offset of the record containing the data for the archived message in the
+     *                segment file
+     */
+    public Location(String segment, long offset)
+    {
+      this.segment = segment;
+      this.offset = offset;
+    }
+
+    /**
+     * Returns the offset of the record containing the data for the archived message in the
+     * segment file.
+     *
+     * @return the offset of the record containing the data for the archived message in the
+     *         segment file
+     */
+    public long getOffset()
+    {
+      return offset;
+    }
+
+    /**
+     * Returns the name of the segment file containing the data for the archived message.
+     *
+     * @return the name of the segment file containing the data for the archived message
+     */
+    public String getSegment()
+    {
+      return segment;
+    }
+  }
+}
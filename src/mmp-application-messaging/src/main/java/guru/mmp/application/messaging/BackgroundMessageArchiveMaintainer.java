@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.messaging;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>BackgroundMessageArchiveMaintainer</code> class implements the Background Message
+ * Archive Maintainer, which creates the archived message partitions ahead of time and deletes the
+ * archived messages that have exceeded the retention period.
+ *
+ * @author Marcus Portmann
+ */
+@Service
+@SuppressWarnings("unused")
+public class BackgroundMessageArchiveMaintainer
+{
+  /* Logger */
+  private static Logger logger = LoggerFactory.getLogger(BackgroundMessageArchiveMaintainer.class);
+
+  /* Messaging Service */
+  @Inject
+  private IMessagingService messagingService;
+
+  /**
+   * Initialise the Background Message Archive Maintainer.
+   */
+  @PostConstruct
+  public void init()
+  {
+    logger.info("Initialising the Background Message Archive Maintainer");
+
+    if (messagingService == null)
+    {
+      logger.error("Failed to initialise the Background Message Archive Maintainer: "
+          + "The Messaging Service was NOT injected");
+    }
+  }
+
+  /**
+   * Maintain the message archive.
+   */
+  @Scheduled(cron = "0 0 * * * *")
+  @Async("messagingTaskExecutor")
+  void maintainMessageArchive()
+  {
+    try
+    {
+      messagingService.maintainMessageArchive();
+    }
+    catch (Throwable e)
+    {
+      logger.error("Failed to maintain the message archive", e);
+    }
+  }
+}
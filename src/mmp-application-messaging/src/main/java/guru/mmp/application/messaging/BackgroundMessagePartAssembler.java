@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.messaging;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.executor.ApplicationTaskExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.List;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>BackgroundMessagePartAssembler</code> class implements the Background Message Part
+ * Assembler.
+ * <p/>
+ * The Background Message Part Assembler assembles messages from their constituent message parts
+ * on the <b>messagingTaskExecutor</b> task executor, so that the remote device that sent a message
+ * part does not have to wait for the message to be assembled, verified, decrypted and queued for
+ * processing.
+ * <p/>
+ * By default, when the assembly queue is full the assembly is performed on the thread that queued
+ * the message part. This applies back pressure to the remote devices instead of discarding work.
+ * <p/>
+ * Since the assembly queue is held in memory, the messages whose parts have all been queued for
+ * assembly but which have not been assembled, e.g. because the application was restarted or the
+ * assembly failed, are queued for assembly again on startup and periodically thereafter.
+ *
+ * @author Marcus Portmann
+ */
+@Service
+@SuppressWarnings("unused")
+public class BackgroundMessagePartAssembler
+{
+  /**
+   * The maximum number of messages that have not been assembled to queue for assembly at a time.
+   */
+  private static final int MAXIMUM_UNASSEMBLED_MESSAGES = 100;
+
+  /* Logger */
+  private static Logger logger = LoggerFactory.getLogger(BackgroundMessagePartAssembler.class);
+
+  /**
+   * The task executor responsible for assembling messages.
+   */
+  @Inject
+  @Named("messagingTaskExecutor")
+  private ApplicationTaskExecutor assemblyExecutor;
+
+  /* Messaging Service */
+  @Inject
+  private IMessagingService messagingService;
+
+  /**
+   * Queue the message for assembly if all of its parts have been queued for assembly.
+   * <p/>
+   * This method returns immediately unless the assembly queue is full.
+   *
+   * @param messagePart the message part that was queued for assembly
+   */
+  public void assembleMessage(MessagePart messagePart)
+  {
+    assemblyExecutor.execute(() ->
+        {
+          try
+          {
+            messagingService.assembleMessage(messagePart);
+          }
+          catch (Throwable e)
+          {
+            logger.error(String.format("Failed to assemble the parts for the message (%s)",
+                messagePart.getMessageId()), e);
+          }
+        }
+        );
+  }
+
+  /**
+   * Queue the messages whose parts have all been queued for assembly, but which have not been
+   * assembled, for assembly again.
+   * <p/>
+   * This method is invoked when the Background Message Part Assembler is initialised and by a
+   * scheduled task.
+   */
+  @Scheduled(cron = "0 * * * * *")
+  public void assembleUnassembledMessages()
+  {
+    try
+    {
+      List<MessagePart> messageParts = messagingService.getMessagePartsForUnassembledMessages(
+          MAXIMUM_UNASSEMBLED_MESSAGES);
+
+      for (MessagePart messagePart : messageParts)
+      {
+        logger.warn(String.format("Queueing the message (%s) that has not been assembled for "
+            + "assembly", messagePart.getMessageId()));
+
+        assembleMessage(messagePart);
+      }
+    }
+    catch (Throwable e)
+    {
+      logger.error("Failed to queue the messages that have not been assembled for assembly", e);
+    }
+  }
+
+  /**
+   * Returns the number of message parts waiting to be assembled.
+   *
+   * @return the number of message parts waiting to be assembled
+   */
+  public int getAssemblyQueueLength()
+  {
+    return assemblyExecutor.getQueueSize();
+  }
+
+  /**
+   * Initialise the Background Message Part Assembler.
+   */
+  @PostConstruct
+  public void init()
+  {
+    logger.info("Initialising the Background Message Part Assembler");
+
+    if (messagingService != null)
+    {
+      assembleUnassembledMessages();
+    }
+    else
+    {
+      logger.error("Failed to initialise the Background Message Part Assembler: "
+          + "The Messaging Service was NOT injected");
+    }
+  }
+}
@@ -20,18 +20,27 @@ package guru.mmp.application.messaging;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 //~--- JDK imports ------------------------------------------------------------
 
 /**
  * The <code>BackgroundMessageProcessor</code> class implements the Background Message Processor.
+ * <p/>
+ * The Background Message Processor uses a pool of worker threads to process the messages queued
+ * for processing. Each worker claims a batch of messages at a time. Idle workers are woken up
+ * immediately when a message is queued for processing on this node. They also poll periodically
+ * to pick up messages queued on other nodes and messages whose processing must be retried.
  *
  * @author Marcus Portmann
  */
@@ -39,9 +48,51 @@ import javax.inject.Inject;
 @SuppressWarnings("unused")
 public class BackgroundMessageProcessor
 {
+  /**
+   * The maximum amount of time in milliseconds an idle worker will wait before checking for
+   * messages queued for processing.
+   */
+  private static final long IDLE_WORKER_POLL_INTERVAL = 15000L;
+
+  /**
+   * The amount of time in milliseconds a worker will pause after failing to retrieve the messages
+   * queued for processing.
+   */
+  private static final long RETRIEVAL_FAILURE_PAUSE = 5000L;
+
   /* Logger */
   private static Logger logger = LoggerFactory.getLogger(BackgroundMessageProcessor.class);
 
+  /**
+   * The lock used to coordinate the workers waiting for messages to process.
+   */
+  private final ReentrantLock workersLock = new ReentrantLock();
+
+  /**
+   * The condition used to signal idle workers that messages have been queued for processing.
+   */
+  private final Condition messagesQueued = workersLock.newCondition();
+
+  /**
+   * The workers responsible for processing the messages queued for processing.
+   */
+  private final List<Thread> workers = new ArrayList<>();
+
+  /**
+   * The number of workers.
+   */
+  private int numberOfWorkers;
+
+  /**
+   * The number of signals that have not yet been consumed by an idle worker.
+   */
+  private int pendingSignals;
+
+  /**
+   * Is the Background Message Processor running?
+   */
+  private volatile boolean isRunning;
+
   /* Messaging Service */
   @Inject
   private IMessagingService messagingService;
@@ -71,6 +122,25 @@ public class BackgroundMessageProcessor
       {
         logger.error("Failed to reset the message locks for the messages being processed", e);
       }
+
+      // Start the workers
+      isRunning = true;
+
+      numberOfWorkers = messagingService.getNumberOfProcessingThreads();
+
+      for (int i = 0; i < numberOfWorkers; i++)
+      {
+        Thread worker = new Thread(this::runWorker, "Background Message Processor Worker "
+            + (i + 1));
+
+        worker.setDaemon(true);
+        worker.start();
+
+        workers.add(worker);
+      }
+
+      logger.info(String.format("Started %d Background Message Processor worker(s)",
+          numberOfWorkers));
     }
     else
     {
@@ -80,103 +150,233 @@ public class BackgroundMessageProcessor
   }
 
   /**
-   * Process the messages.
+   * Wake up an idle worker to process the messages queued for processing.
+   * <p/>
+   * This method does not block. It is invoked by the Messaging Service when a message is queued
+   * for processing and by a scheduled task as a safety net.
    */
   @Scheduled(cron = "0 * * * * *")
-  @Async
   public void processMessages()
   {
-    Message message;
+    signalWorker();
+  }
+
+  /**
+   * Shutdown the Background Message Processor.
+   */
+  @PreDestroy
+  public void shutdown()
+  {
+    isRunning = false;
+
+    workersLock.lock();
+
+    try
+    {
+      messagesQueued.signalAll();
+    }
+    finally
+    {
+      workersLock.unlock();
+    }
 
-    while (true)
+    for (Thread worker : workers)
     {
-      // Retrieve the next message queued for processing
       try
       {
-        message = messagingService.getNextMessageQueuedForProcessing();
+        worker.join(RETRIEVAL_FAILURE_PAUSE);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
 
-        if (message == null)
-        {
-          if (logger.isDebugEnabled())
-          {
-            logger.debug("No messages queued for processing");
-          }
+        return;
+      }
+    }
 
-          return;
-        }
+    workers.clear();
+  }
+
+  /**
+   * Process the message.
+   *
+   * @param message the message to process
+   */
+  private void processMessage(Message message)
+  {
+    try
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug(String.format("Processing the queued message (%s)%s  %s", message.getId(),
+            System.getProperty("line.separator"), message.toString()));
       }
-      catch (Throwable e)
+
+      Message responseMessage = messagingService.processMessage(message);
+
+      if (responseMessage != null)
       {
-        logger.error("Failed to retrieve the next message queued for processing", e);
+        messagingService.queueMessageForDownload(responseMessage);
+      }
 
-        return;
+      // Remove the processed message from the queue
+      messagingService.deleteMessage(message);
+    }
+    catch (Throwable e)
+    {
+      logger.error(String.format("Failed to process the queued message (%s)", message.getId()),
+          e);
+
+      // Increment the processing attempts for the message
+      try
+      {
+        messagingService.incrementMessageProcessingAttempts(message);
+
+        message.setProcessAttempts(message.getProcessAttempts() + 1);
+      }
+      catch (Throwable f)
+      {
+        logger.error(String.format(
+            "Failed to increment the processing attempts for the queued message (%s)",
+            message.getId()), f);
       }
 
-      // Process the asynchronous message
       try
       {
-        if (logger.isDebugEnabled())
+        /*
+         * If the message has exceeded the maximum number of processing attempts then unlock it
+         * and set its status to "Failed" otherwise unlock it and set its status to
+         * "QueuedForProcessing".
+         */
+        if (message.getProcessAttempts() >= messagingService.getMaximumProcessingAttempts())
         {
-          logger.debug(String.format("Processing the queued message (%s)%s  %s", message.getId(),
-              System.getProperty("line.separator"), message.toString()));
-        }
-
-        Message responseMessage = messagingService.processMessage(message);
+          logger.warn(String.format(
+              "The queued message (%s) has exceeded the maximum number of processing attempts "
+              + "and will be marked as \"Failed\"", message.getId()));
 
-        if (responseMessage != null)
+          messagingService.unlockMessage(message, Message.Status.FAILED);
+        }
+        else
         {
-          messagingService.queueMessageForDownload(responseMessage);
+          messagingService.unlockMessage(message, Message.Status.QUEUED_FOR_PROCESSING);
         }
+      }
+      catch (Throwable f)
+      {
+        logger.error(String.format(
+            "Failed to unlock and set the status for the queued message (%s)", message.getId()),
+            f);
+      }
+    }
+  }
+
+  /**
+   * The main loop for a worker.
+   * <p/>
+   * The worker repeatedly claims and processes batches of messages until no more messages are
+   * queued for processing, at which point it waits to be signalled or for the idle poll interval
+   * to elapse.
+   */
+  private void runWorker()
+  {
+    while (isRunning)
+    {
+      List<Message> messages;
 
-        // Remove the processed message from the queue
-        messagingService.deleteMessage(message);
+      // Retrieve the next batch of messages queued for processing
+      try
+      {
+        messages = messagingService.getNextMessagesQueuedForProcessing();
       }
       catch (Throwable e)
       {
-        logger.error(String.format("Failed to process the queued message (%s)", message.getId()),
-            e);
+        logger.error("Failed to retrieve the next messages queued for processing", e);
 
-        // Increment the processing attempts for the message
-        try
-        {
-          messagingService.incrementMessageProcessingAttempts(message);
+        waitForSignal(RETRIEVAL_FAILURE_PAUSE);
 
-          message.setProcessAttempts(message.getProcessAttempts() + 1);
-        }
-        catch (Throwable f)
-        {
-          logger.error(String.format(
-              "Failed to increment the processing attempts for the queued message (%s)",
-              message.getId()), f);
-        }
+        continue;
+      }
 
-        try
-        {
-          /*
-           * If the message has exceeded the maximum number of processing attempts then unlock it
-           * and set its status to "Failed" otherwise unlock it and set its status to
-           * "QueuedForProcessing".
-           */
-          if (message.getProcessAttempts() >= messagingService.getMaximumProcessingAttempts())
-          {
-            logger.warn(String.format(
-                "The queued message (%s) has exceeded the maximum number of processing attempts "
-                + "and will be marked as \"Failed\"", message.getId()));
-
-            messagingService.unlockMessage(message, Message.Status.FAILED);
-          }
-          else
-          {
-            messagingService.unlockMessage(message, Message.Status.QUEUED_FOR_PROCESSING);
-          }
-        }
-        catch (Throwable f)
+      if (messages.isEmpty())
+      {
+        if (logger.isDebugEnabled())
         {
-          logger.error(String.format(
-              "Failed to unlock and set the status for the queued message (%s)", message.getId()),
-              f);
+          logger.debug("No messages queued for processing");
         }
+
+        waitForSignal(IDLE_WORKER_POLL_INTERVAL);
+
+        continue;
       }
+
+      /*
+       * If there may be more messages queued for processing then wake up another idle worker so
+       * that the backlog is processed in parallel.
+       */
+      signalWorker();
+
+      for (Message message : messages)
+      {
+        processMessage(message);
+      }
+    }
+  }
+
+  /**
+   * Signal an idle worker that messages have been queued for processing.
+   */
+  private void signalWorker()
+  {
+    workersLock.lock();
+
+    try
+    {
+      if (pendingSignals < numberOfWorkers)
+      {
+        pendingSignals++;
+      }
+
+      messagesQueued.signal();
+    }
+    finally
+    {
+      workersLock.unlock();
+    }
+  }
+
+  /**
+   * Wait until this worker is signalled that messages have been queued for processing or the
+   * specified timeout elapses.
+   *
+   * @param timeout the maximum amount of time in milliseconds to wait
+   */
+  private void waitForSignal(long timeout)
+  {
+    workersLock.lock();
+
+    try
+    {
+      long nanosRemaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+      while (isRunning && (pendingSignals == 0) && (nanosRemaining > 0))
+      {
+        nanosRemaining = messagesQueued.awaitNanos(nanosRemaining);
+      }
+
+      if (pendingSignals > 0)
+      {
+        pendingSignals--;
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+
+      isRunning = false;
+    }
+    finally
+    {
+      workersLock.unlock();
     }
   }
 }
@@ -20,6 +20,8 @@ package guru.mmp.application.messaging;
 
 import guru.mmp.common.persistence.DAOException;
 
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.UUID;
 
@@ -49,9 +51,24 @@ public interface IMessagingDAO
   /**
    * Archive the message in the database.
    *
-   * @param message the <code>Message</code> instance containing the information for the message
+   * @param message      the <code>Message</code> instance containing the information for the
+   *                     message
+   * @param archived     the date and time the message was archived, which determines the archived
+   *                     message partition the message is stored in
+   * @param dataLocation the location of the data for the message if it has been stored in the
+   *                     archived message data store or <code>null</code> if the data for the
+   *                     message should be stored in the database
+   */
+  void archiveMessage(Message message, LocalDateTime archived,
+      ArchivedMessageDataStore.Location dataLocation)
+    throws DAOException;
+
+  /**
+   * Create the archived message partition for the specified month if it does not already exist.
+   *
+   * @param month the month
    */
-  void archiveMessage(Message message)
+  void createArchivedMessagePartition(YearMonth month)
     throws DAOException;
 
   /**
@@ -80,6 +97,18 @@ public interface IMessagingDAO
   void createMessagePart(MessagePart messagePart)
     throws DAOException;
 
+  /**
+   * Delete the archived messages for the months before the specified month.
+   * <p/>
+   * Where the database supports partitioning the archived message partitions for the months are
+   * dropped or truncated instead of deleting the individual archived messages. Any archived
+   * messages for the months that are stored outside the partitions are deleted individually.
+   *
+   * @param month the month
+   */
+  void deleteArchivedMessagesBefore(YearMonth month)
+    throws DAOException;
+
   /**
    * Delete the message.
    *
@@ -104,6 +133,37 @@ public interface IMessagingDAO
   void deleteMessagePartsForMessage(UUID messageId)
     throws DAOException;
 
+  /**
+   * Retrieve the archived message.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the message
+   *
+   * @return the archived message, including the data for the message if it is stored in the
+   *         database, or <code>null</code> if the archived message could not be found
+   */
+  ArchivedMessage getArchivedMessage(UUID id)
+    throws DAOException;
+
+  /**
+   * Retrieve the archived messages, excluding their data, matching the specified criteria ordered
+   * from the most recently archived.
+   *
+   * @param username                the optional username identifying the user associated with the
+   *                                messages
+   * @param deviceId                the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the device the messages originated from
+   * @param typeId                  the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the type of message
+   * @param from                    the date and time from which the messages were archived
+   * @param to                      the date and time before which the messages were archived
+   * @param maximumNumberOfMessages the maximum number of archived messages to retrieve
+   *
+   * @return the archived messages matching the specified criteria
+   */
+  List<ArchivedMessage> getArchivedMessages(String username, UUID deviceId, UUID typeId,
+      LocalDateTime from, LocalDateTime to, int maximumNumberOfMessages)
+    throws DAOException;
+
   /**
    * Retrieve the error report.
    *
@@ -135,6 +195,22 @@ public interface IMessagingDAO
   Message getMessage(UUID id)
     throws DAOException;
 
+  /**
+   * Retrieve the first message part for each message whose message parts have all been queued
+   * for assembly but which has not been assembled.
+   *
+   * @param assemblyRetryDelay      the delay in milliseconds after the message parts for a message
+   *                                were last updated before the message can be assembled again
+   * @param maximumNumberOfMessages the maximum number of messages to retrieve the first message
+   *                                part for
+   *
+   * @return the first message part for each message whose message parts have all been queued for
+   *         assembly but which has not been assembled
+   */
+  List<MessagePart> getMessagePartsForUnassembledMessages(int assemblyRetryDelay,
+      int maximumNumberOfMessages)
+    throws DAOException;
+
   /**
    * Retrieve the message parts queued for assembly for the message.
    *
@@ -203,6 +279,26 @@ public interface IMessagingDAO
   Message getNextMessageQueuedForProcessing(int processingRetryDelay, String lockName)
     throws DAOException;
 
+  /**
+   * Retrieve the next batch of messages that have been queued for processing.
+   * <p/>
+   * The messages will be locked to prevent duplicate processing. Messages that are already locked
+   * by another transaction are skipped where the database supports it, so that multiple
+   * processors can claim batches of messages concurrently without blocking each other.
+   *
+   * @param maximumNumberOfMessages the maximum number of messages to retrieve
+   * @param processingRetryDelay    the delay in milliseconds between successive attempts to
+   *                                process a message
+   * @param lockName                the name of the lock that should be applied to the messages
+   *                                queued for processing when they are retrieved
+   *
+   * @return the next batch of messages that have been queued for processing, which will be empty
+   *         if no messages are currently queued for processing
+   */
+  List<Message> getNextMessagesQueuedForProcessing(int maximumNumberOfMessages,
+      int processingRetryDelay, String lockName)
+    throws DAOException;
+
   /**
    * Returns the total number of error reports in the database.
    *
@@ -274,4 +370,14 @@ public interface IMessagingDAO
    */
   void unlockMessage(UUID id, Message.Status status)
     throws DAOException;
+
+  /**
+   * Unlock a locked message part.
+   *
+   * @param id     the Universally Unique Identifier (UUID) used to uniquely identify the message
+   *               part
+   * @param status the new status for the unlocked message part
+   */
+  void unlockMessagePart(UUID id, MessagePart.Status status)
+    throws DAOException;
 }
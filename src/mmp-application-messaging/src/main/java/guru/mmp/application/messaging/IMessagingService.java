@@ -18,6 +18,7 @@ package guru.mmp.application.messaging;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -37,6 +38,15 @@ public interface IMessagingService
   void archiveMessage(Message message)
     throws MessagingException;
 
+  /**
+   * Assemble the message from its constituent parts if all the parts for the message have been
+   * queued for assembly.
+   *
+   * @param messagePart the message part that was queued for assembly
+   */
+  void assembleMessage(MessagePart messagePart)
+    throws MessagingException;
+
   /**
    * Returns <code>true</code> if the message processor is capable of processing the specified
    * message or <code>false</code> otherwise.
@@ -127,6 +137,37 @@ public interface IMessagingService
   boolean encryptMessage(Message message)
     throws MessagingException;
 
+  /**
+   * Retrieve the data for the archived message.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the message
+   *
+   * @return the data for the archived message or <code>null</code> if the archived message could
+   *         not be found
+   */
+  byte[] getArchivedMessageData(UUID id)
+    throws MessagingException;
+
+  /**
+   * Retrieve the archived messages, excluding their data, matching the specified criteria ordered
+   * from the most recently archived.
+   *
+   * @param username                the optional username identifying the user associated with the
+   *                                messages
+   * @param deviceId                the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the device the messages originated from
+   * @param typeId                  the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the type of message
+   * @param from                    the date and time from which the messages were archived
+   * @param to                      the date and time before which the messages were archived
+   * @param maximumNumberOfMessages the maximum number of archived messages to retrieve
+   *
+   * @return the archived messages matching the specified criteria
+   */
+  List<ArchivedMessage> getArchivedMessages(String username, UUID deviceId, UUID typeId,
+      LocalDateTime from, LocalDateTime to, int maximumNumberOfMessages)
+    throws MessagingException;
+
   /**
    * Retrieve the error report.
    *
@@ -166,6 +207,23 @@ public interface IMessagingService
   Message getMessage(UUID id)
     throws MessagingException;
 
+  /**
+   * Retrieve the first message part for each message whose message parts have all been queued for
+   * assembly but which has not been assembled, e.g. because the application was restarted before
+   * the message was assembled or the assembly failed.
+   * <p/>
+   * Only the messages whose message parts have not been updated within the delay given by the
+   * <b>MessagingService.AssemblyRetryDelay</b> configuration value are included.
+   *
+   * @param maximumNumberOfMessages the maximum number of messages to retrieve the first message
+   *                                part for
+   *
+   * @return the first message part for each message whose message parts have all been queued for
+   *         assembly but which has not been assembled
+   */
+  List<MessagePart> getMessagePartsForUnassembledMessages(int maximumNumberOfMessages)
+    throws MessagingException;
+
   /**
    * Get the message parts for a user that have been queued for download by a particular remote
    * device.
@@ -219,6 +277,19 @@ public interface IMessagingService
   Message getNextMessageQueuedForProcessing()
     throws MessagingException;
 
+  /**
+   * Retrieve the next batch of messages that have been queued for processing.
+   * <p/>
+   * The messages will be locked to prevent duplicate processing. The maximum number of messages
+   * retrieved is determined by the <b>MessagingService.ProcessingBatchSize</b> configuration
+   * value.
+   *
+   * @return the next batch of messages that have been queued for processing, which will be empty
+   *         if no messages are currently queued for processing
+   */
+  List<Message> getNextMessagesQueuedForProcessing()
+    throws MessagingException;
+
   /**
    * Returns the total number of error reports.
    *
@@ -227,6 +298,33 @@ public interface IMessagingService
   int getNumberOfErrorReports()
     throws MessagingException;
 
+  /**
+   * Returns the number of threads the Background Message Processor should use to process the
+   * messages queued for processing.
+   *
+   * @return the number of threads the Background Message Processor should use to process the
+   *         messages queued for processing
+   */
+  int getNumberOfProcessingThreads();
+
+  /**
+   * Returns the number of times a user-device encryption key was found in the cache of derived
+   * user-device encryption keys.
+   *
+   * @return the number of times a user-device encryption key was found in the cache of derived
+   *         user-device encryption keys
+   */
+  long getUserDeviceEncryptionKeyCacheHits();
+
+  /**
+   * Returns the number of times a user-device encryption key was not found in the cache of
+   * derived user-device encryption keys and had to be derived.
+   *
+   * @return the number of times a user-device encryption key was not found in the cache of
+   *         derived user-device encryption keys and had to be derived
+   */
+  long getUserDeviceEncryptionKeyCacheMisses();
+
   /**
    * Increment the processing attempts for the message.
    *
@@ -276,6 +374,14 @@ public interface IMessagingService
    */
   boolean isSynchronousMessage(Message message);
 
+  /**
+   * Maintain the message archive by creating the archived message partitions for the current and
+   * next months and deleting the archived messages, and the data for the archived messages stored
+   * in the archived message data store, that have exceeded the retention period.
+   */
+  void maintainMessageArchive()
+    throws MessagingException;
+
   /**
    * Process the message.
    *
@@ -304,6 +410,9 @@ public interface IMessagingService
 
   /**
    * Queue the specified message part for assembly.
+   * <p/>
+   * The message part is persisted and then handed off to the Background Message Part Assembler,
+   * which assembles the message asynchronously once all its parts have been queued for assembly.
    *
    * @param messagePart the message part to queue
    */
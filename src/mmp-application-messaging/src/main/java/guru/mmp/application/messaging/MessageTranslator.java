@@ -40,6 +40,20 @@ import java.util.UUID;
  */
 public class MessageTranslator
 {
+  private static ThreadLocal<Cipher> threadLocalCipher = ThreadLocal.withInitial(() ->
+      {
+        try
+        {
+          return Cipher.getInstance(CryptoUtils.AES_TRANSFORMATION_NAME);
+        }
+        catch (Throwable e)
+        {
+          throw new RuntimeException(String.format("Failed to initialise the %s cipher",
+              CryptoUtils.AES_TRANSFORMATION_NAME), e);
+        }
+      }
+      );
+
   private static ThreadLocal<MessageDigest> threadLocalMessageDigest = ThreadLocal.withInitial(
       () ->
       {
@@ -120,7 +134,7 @@ public class MessageTranslator
     {
       SecretKey secretKey = new SecretKeySpec(encryptionKey, CryptoUtils.AES_KEY_SPEC);
       IvParameterSpec iv = new IvParameterSpec(encryptionIV);
-      Cipher cipher = Cipher.getInstance(CryptoUtils.AES_TRANSFORMATION_NAME);
+      Cipher cipher = threadLocalCipher.get();
 
       cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
 
@@ -154,7 +168,7 @@ public class MessageTranslator
     {
       SecretKey secretKey = new SecretKeySpec(encryptionKey, CryptoUtils.AES_KEY_SPEC);
       IvParameterSpec iv = new IvParameterSpec(encryptionIV);
-      Cipher cipher = Cipher.getInstance(CryptoUtils.AES_TRANSFORMATION_NAME);
+      Cipher cipher = threadLocalCipher.get();
 
       cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
 
@@ -21,6 +21,7 @@ package guru.mmp.application.messaging;
 import guru.mmp.application.messaging.Message.Priority;
 import guru.mmp.application.messaging.Message.Status;
 import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.DAOUtil;
 import guru.mmp.common.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,13 +30,19 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -49,9 +56,31 @@ import java.util.UUID;
 public class MessagingDAO
   implements IMessagingDAO
 {
+  /**
+   * The formatter for the month suffix of the names of the archived message partitions.
+   */
+  private static final DateTimeFormatter ARCHIVED_MESSAGE_PARTITION_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyyMM");
+
+  /**
+   * The columns retrieved for an archived message excluding the data for the message.
+   */
+  private static final String ARCHIVED_MESSAGE_COLUMNS = "AM.ID, AM.USERNAME, AM.DEVICE_ID, "
+      + "AM.TYPE_ID, AM.CORRELATION_ID, AM.CREATED, AM.ARCHIVED, AM.DATA_SEGMENT, AM.DATA_OFFSET";
+
   /* Logger */
   private static final Logger logger = LoggerFactory.getLogger(MessagingDAO.class);
 
+  /**
+   * The months for the archived message partitions that are known to exist.
+   */
+  private Set<YearMonth> archivedMessagePartitions = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The name of the database product, which determines how the archived messages are partitioned.
+   */
+  private String databaseProductName;
+
   /**
    * The data source used to provide connections to the database.
    */
@@ -59,6 +88,12 @@ public class MessagingDAO
   @Qualifier("applicationDataSource")
   private DataSource dataSource;
 
+  /**
+   * The SQL statement used to retrieve and lock the next batch of messages queued for processing,
+   * which varies according to the row-locking capabilities of the database.
+   */
+  private String getNextMessagesForProcessingSQL;
+
   /**
    * Constructs a new <code>MessagingDAO</code>.
    */
@@ -101,32 +136,61 @@ public class MessagingDAO
   /**
    * Archive the message in the database.
    *
-   * @param message the <code>Message</code> instance containing the information for the message
+   * @param message      the <code>Message</code> instance containing the information for the
+   *                     message
+   * @param archived     the date and time the message was archived, which determines the archived
+   *                     message partition the message is stored in
+   * @param dataLocation the location of the data for the message if it has been stored in the
+   *                     archived message data store or <code>null</code> if the data for the
+   *                     message should be stored in the database
    */
-  public void archiveMessage(Message message)
+  public void archiveMessage(Message message, LocalDateTime archived,
+      ArchivedMessageDataStore.Location dataLocation)
     throws DAOException
   {
-    String archiveMessageSQL = "INSERT INTO MESSAGING.ARCHIVED_MESSAGES "
-        + "(ID, USERNAME, DEVICE_ID, TYPE_ID, CORRELATION_ID, CREATED, ARCHIVED, DATA) "
-        + "VALUES (?, ?, ?, ?, ?," + " ?, ?, ?)";
+    YearMonth month = YearMonth.from(archived);
 
-    try (Connection connection = dataSource.getConnection();
-      PreparedStatement statement = connection.prepareStatement(archiveMessageSQL))
+    String archiveMessageSQL = "INSERT INTO " + getArchivedMessagePartitionTable(month)
+        + " (ID, USERNAME, DEVICE_ID, TYPE_ID, CORRELATION_ID, CREATED, ARCHIVED, DATA, "
+        + "DATA_SEGMENT, DATA_OFFSET) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    try
     {
-      statement.setObject(1, message.getId());
-      statement.setString(2, message.getUsername());
-      statement.setObject(3, message.getDeviceId());
-      statement.setObject(4, message.getTypeId());
-      statement.setObject(5, message.getCorrelationId());
-      statement.setTimestamp(6, Timestamp.valueOf(message.getCreated()));
-      statement.setTimestamp(7, Timestamp.valueOf(LocalDateTime.now()));
-      statement.setBytes(8, message.getData());
+      if (!archivedMessagePartitions.contains(month))
+      {
+        createArchivedMessagePartition(month);
+      }
 
-      if (statement.executeUpdate() != 1)
+      try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(archiveMessageSQL))
       {
-        throw new DAOException(String.format(
-            "No rows were affected as a result of executing the SQL statement (%s)",
-            archiveMessageSQL));
+        statement.setObject(1, message.getId());
+        statement.setString(2, message.getUsername());
+        statement.setObject(3, message.getDeviceId());
+        statement.setObject(4, message.getTypeId());
+        statement.setObject(5, message.getCorrelationId());
+        statement.setTimestamp(6, Timestamp.valueOf(message.getCreated()));
+        statement.setTimestamp(7, Timestamp.valueOf(archived));
+
+        if (dataLocation == null)
+        {
+          statement.setBytes(8, message.getData());
+          statement.setNull(9, Types.VARCHAR);
+          statement.setNull(10, Types.BIGINT);
+        }
+        else
+        {
+          statement.setNull(8, Types.VARBINARY);
+          statement.setString(9, dataLocation.getSegment());
+          statement.setLong(10, dataLocation.getOffset());
+        }
+
+        if (statement.executeUpdate() != 1)
+        {
+          throw new DAOException(String.format(
+              "No rows were affected as a result of executing the SQL statement (%s)",
+              archiveMessageSQL));
+        }
       }
     }
     catch (Throwable e)
@@ -136,6 +200,75 @@ public class MessagingDAO
     }
   }
 
+  /**
+   * Create the archived message partition for the specified month if it does not already exist.
+   * <p/>
+   * On PostgreSQL each partition is a table inheriting from MESSAGING.ARCHIVED_MESSAGES with a
+   * check constraint on the ARCHIVED column, which allows partitions to be excluded when querying
+   * and dropped when they expire. On SQL Server the boundaries for the month are added to the
+   * partition function for the MESSAGING.ARCHIVED_MESSAGES table. Other databases store all the
+   * archived messages in the MESSAGING.ARCHIVED_MESSAGES table.
+   *
+   * @param month the month
+   */
+  public void createArchivedMessagePartition(YearMonth month)
+    throws DAOException
+  {
+    try (Connection connection = dataSource.getConnection();
+      Statement statement = connection.createStatement())
+    {
+      switch (databaseProductName)
+      {
+        case "PostgreSQL":
+
+          String partitionTable = getArchivedMessagePartitionTable(month);
+          String partitionSuffix = ARCHIVED_MESSAGE_PARTITION_FORMATTER.format(month);
+
+          statement.execute(String.format("CREATE TABLE IF NOT EXISTS %s (PRIMARY KEY (ID), "
+              + "CHECK (ARCHIVED >= '%s' AND ARCHIVED < '%s'), FOREIGN KEY (TYPE_ID) REFERENCES "
+              + "MESSAGING.MESSAGE_TYPES(ID)) INHERITS (MESSAGING.ARCHIVED_MESSAGES)",
+              partitionTable, month.atDay(1), month.plusMonths(1).atDay(1)));
+
+          for (String column : new String[] { "USERNAME", "DEVICE_ID", "TYPE_ID" })
+          {
+            statement.execute(String.format(
+                "CREATE INDEX IF NOT EXISTS ARCHIVED_MESSAGES_%s_%s_IX ON %s (%s, ARCHIVED)",
+                partitionSuffix, column, partitionTable, column));
+          }
+
+          break;
+
+        case "Microsoft SQL Server":
+
+          for (LocalDate boundary : new LocalDate[] { month.atDay(1), month.plusMonths(1).atDay(
+              1) })
+          {
+            if (!getArchivedMessagePartitionBoundaries(connection).contains(boundary))
+            {
+              statement.execute("ALTER PARTITION SCHEME ARCHIVED_MESSAGES_PS NEXT USED [PRIMARY]");
+              statement.execute(String.format(
+                  "ALTER PARTITION FUNCTION ARCHIVED_MESSAGES_PF() SPLIT RANGE ('%sT00:00:00')",
+                  boundary));
+            }
+          }
+
+          break;
+
+        default:
+
+          break;
+      }
+
+      archivedMessagePartitions.add(month);
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to create the archived message partition for the month (%s) in the database",
+          month), e);
+    }
+  }
+
   /**
    * Create the entry for the error report in the database.
    *
@@ -303,6 +436,132 @@ public class MessagingDAO
     }
   }
 
+  /**
+   * Delete the archived messages for the months before the specified month.
+   * <p/>
+   * Where the database supports partitioning the archived message partitions for the months are
+   * dropped or truncated instead of deleting the individual archived messages. Any archived
+   * messages for the months that are stored outside the partitions are deleted individually.
+   *
+   * @param month the month
+   */
+  public void deleteArchivedMessagesBefore(YearMonth month)
+    throws DAOException
+  {
+    try (Connection connection = dataSource.getConnection();
+      Statement statement = connection.createStatement())
+    {
+      switch (databaseProductName)
+      {
+        case "PostgreSQL":
+
+          List<YearMonth> expiredPartitions = new ArrayList<>();
+
+          try (ResultSet rs = statement.executeQuery(
+              "SELECT C.RELNAME FROM PG_CATALOG.PG_INHERITS I "
+              + "INNER JOIN PG_CATALOG.PG_CLASS C ON I.INHRELID = C.OID "
+              + "INNER JOIN PG_CATALOG.PG_CLASS P ON I.INHPARENT = P.OID "
+              + "INNER JOIN PG_CATALOG.PG_NAMESPACE N ON P.RELNAMESPACE = N.OID "
+              + "WHERE N.NSPNAME = 'messaging' AND P.RELNAME = 'archived_messages'"))
+          {
+            while (rs.next())
+            {
+              String partitionTable = rs.getString(1);
+
+              YearMonth partitionMonth = YearMonth.parse(partitionTable.substring(
+                  partitionTable.length() - 6), ARCHIVED_MESSAGE_PARTITION_FORMATTER);
+
+              if (partitionMonth.isBefore(month))
+              {
+                expiredPartitions.add(partitionMonth);
+              }
+            }
+          }
+
+          for (YearMonth expiredPartition : expiredPartitions)
+          {
+            archivedMessagePartitions.remove(expiredPartition);
+
+            statement.execute("DROP TABLE IF EXISTS " + getArchivedMessagePartitionTable(
+                expiredPartition));
+          }
+
+          /*
+           * Delete the expired archived messages stored in the parent table, e.g. the messages
+           * archived before the table was partitioned.
+           */
+          try (PreparedStatement deleteStatement = connection.prepareStatement(
+              "DELETE FROM ONLY MESSAGING.ARCHIVED_MESSAGES WHERE ARCHIVED < ?"))
+          {
+            deleteStatement.setTimestamp(1, Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+
+            deleteStatement.executeUpdate();
+          }
+
+          break;
+
+        case "Microsoft SQL Server":
+
+          int partitionNumber;
+
+          try (PreparedStatement partitionNumberStatement = connection.prepareStatement(
+              "SELECT $PARTITION.ARCHIVED_MESSAGES_PF(?)"))
+          {
+            partitionNumberStatement.setTimestamp(1, Timestamp.valueOf(month.atDay(1)
+                .atStartOfDay()));
+
+            try (ResultSet rs = partitionNumberStatement.executeQuery())
+            {
+              rs.next();
+
+              partitionNumber = rs.getInt(1);
+            }
+          }
+
+          // Truncate the partitions holding the archived messages before the month
+          if (partitionNumber > 1)
+          {
+            statement.execute(String.format(
+                "TRUNCATE TABLE MESSAGING.ARCHIVED_MESSAGES WITH (PARTITIONS (1 TO %d))",
+                partitionNumber - 1));
+          }
+
+          // Remove the boundaries for the truncated partitions
+          for (LocalDate boundary : getArchivedMessagePartitionBoundaries(connection))
+          {
+            if (boundary.isBefore(month.atDay(1)))
+            {
+              archivedMessagePartitions.remove(YearMonth.from(boundary));
+
+              statement.execute(String.format(
+                  "ALTER PARTITION FUNCTION ARCHIVED_MESSAGES_PF() MERGE RANGE ('%sT00:00:00')",
+                  boundary));
+            }
+          }
+
+          break;
+
+        default:
+
+          try (PreparedStatement deleteStatement = connection.prepareStatement(
+              "DELETE FROM MESSAGING.ARCHIVED_MESSAGES WHERE ARCHIVED < ?"))
+          {
+            deleteStatement.setTimestamp(1, Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+
+            deleteStatement.executeUpdate();
+          }
+
+          break;
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to delete the archived messages before the month (%s) in the database", month),
+          e);
+    }
+  }
+
   /**
    * Delete the message.
    *
@@ -375,6 +634,132 @@ public class MessagingDAO
     }
   }
 
+  /**
+   * Retrieve the archived message.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the message
+   *
+   * @return the archived message, including the data for the message if it is stored in the
+   *         database, or <code>null</code> if the archived message could not be found
+   */
+  public ArchivedMessage getArchivedMessage(UUID id)
+    throws DAOException
+  {
+    String getArchivedMessageSQL = "SELECT " + ARCHIVED_MESSAGE_COLUMNS + ", AM.DATA FROM "
+        + "MESSAGING.ARCHIVED_MESSAGES AM WHERE AM.ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(getArchivedMessageSQL))
+    {
+      statement.setObject(1, id);
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        if (rs.next())
+        {
+          return buildArchivedMessageFromResultSet(rs, true);
+        }
+        else
+        {
+          return null;
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the archived message (%s) from the database", id), e);
+    }
+  }
+
+  /**
+   * Retrieve the archived messages, excluding their data, matching the specified criteria ordered
+   * from the most recently archived.
+   * <p/>
+   * The archived date and time range restricts the search to the archived message partitions for
+   * the months in the range.
+   *
+   * @param username                the optional username identifying the user associated with the
+   *                                messages
+   * @param deviceId                the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the device the messages originated from
+   * @param typeId                  the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the type of message
+   * @param from                    the date and time from which the messages were archived
+   * @param to                      the date and time before which the messages were archived
+   * @param maximumNumberOfMessages the maximum number of archived messages to retrieve
+   *
+   * @return the archived messages matching the specified criteria
+   */
+  public List<ArchivedMessage> getArchivedMessages(String username, UUID deviceId, UUID typeId,
+      LocalDateTime from, LocalDateTime to, int maximumNumberOfMessages)
+    throws DAOException
+  {
+    StringBuilder getArchivedMessagesSQL = new StringBuilder("SELECT ").append(
+        ARCHIVED_MESSAGE_COLUMNS).append(" FROM MESSAGING.ARCHIVED_MESSAGES AM WHERE "
+        + "AM.ARCHIVED >= ? AND AM.ARCHIVED < ?");
+
+    if (!StringUtil.isNullOrEmpty(username))
+    {
+      getArchivedMessagesSQL.append(" AND AM.USERNAME = ?");
+    }
+
+    if (deviceId != null)
+    {
+      getArchivedMessagesSQL.append(" AND AM.DEVICE_ID = ?");
+    }
+
+    if (typeId != null)
+    {
+      getArchivedMessagesSQL.append(" AND AM.TYPE_ID = ?");
+    }
+
+    getArchivedMessagesSQL.append(" ORDER BY AM.ARCHIVED DESC");
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(
+          getArchivedMessagesSQL.toString()))
+    {
+      statement.setMaxRows(maximumNumberOfMessages);
+
+      int parameterIndex = 1;
+
+      statement.setTimestamp(parameterIndex++, Timestamp.valueOf(from));
+      statement.setTimestamp(parameterIndex++, Timestamp.valueOf(to));
+
+      if (!StringUtil.isNullOrEmpty(username))
+      {
+        statement.setString(parameterIndex++, username);
+      }
+
+      if (deviceId != null)
+      {
+        statement.setObject(parameterIndex++, deviceId);
+      }
+
+      if (typeId != null)
+      {
+        statement.setObject(parameterIndex, typeId);
+      }
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        List<ArchivedMessage> archivedMessages = new ArrayList<>();
+
+        while (rs.next())
+        {
+          archivedMessages.add(buildArchivedMessageFromResultSet(rs, false));
+        }
+
+        return archivedMessages;
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException("Failed to retrieve the archived messages from the database", e);
+    }
+  }
+
   /**
    * Retrieve the error report.
    *
@@ -492,6 +877,66 @@ public class MessagingDAO
     }
   }
 
+  /**
+   * Retrieve the first message part for each message whose message parts have all been queued
+   * for assembly but which has not been assembled.
+   * <p/>
+   * The message parts are NOT locked. The message parts for a message are only returned if none of
+   * them have been updated within the assembly retry delay, so that a message that is currently
+   * being assembled, or that has only just been queued for assembly, is not returned.
+   *
+   * @param assemblyRetryDelay      the delay in milliseconds after the message parts for a message
+   *                                were last updated before the message can be assembled again
+   * @param maximumNumberOfMessages the maximum number of messages to retrieve the first message
+   *                                part for
+   *
+   * @return the first message part for each message whose message parts have all been queued for
+   *         assembly but which has not been assembled
+   */
+  public List<MessagePart> getMessagePartsForUnassembledMessages(int assemblyRetryDelay,
+      int maximumNumberOfMessages)
+    throws DAOException
+  {
+    String getMessagePartsForUnassembledMessagesSQL = "SELECT MP.ID, MP.PART_NO, "
+        + "MP.TOTAL_PARTS, MP.SEND_ATTEMPTS, MP.DOWNLOAD_ATTEMPTS, MP.STATUS, MP.PERSISTED, "
+        + "MP.UPDATED, MP.MSG_ID, MP.MSG_USERNAME, MP.MSG_DEVICE_ID, MP.MSG_TYPE_ID, "
+        + "MP.MSG_CORRELATION_ID, MP.MSG_PRIORITY, MP.MSG_CREATED, MP.MSG_DATA_HASH, "
+        + "MP.MSG_ENCRYPTION_IV, MP.MSG_CHECKSUM, MP.LOCK_NAME, MP.DATA "
+        + "FROM MESSAGING.MESSAGE_PARTS MP WHERE MP.STATUS=? AND MP.PART_NO=1 AND "
+        + "(SELECT COUNT(QMP.ID) FROM MESSAGING.MESSAGE_PARTS QMP WHERE QMP.MSG_ID=MP.MSG_ID "
+        + "AND QMP.STATUS=? AND COALESCE(QMP.UPDATED, QMP.PERSISTED)<?)=MP.TOTAL_PARTS "
+        + "ORDER BY COALESCE(MP.UPDATED, MP.PERSISTED) FETCH FIRST %d ROWS ONLY";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(String.format(
+          getMessagePartsForUnassembledMessagesSQL, maximumNumberOfMessages)))
+    {
+      Timestamp updatedBefore = new Timestamp(System.currentTimeMillis() - assemblyRetryDelay);
+
+      statement.setInt(1, MessagePart.Status.QUEUED_FOR_ASSEMBLY.getCode());
+      statement.setInt(2, MessagePart.Status.QUEUED_FOR_ASSEMBLY.getCode());
+      statement.setTimestamp(3, updatedBefore);
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        List<MessagePart> messageParts = new ArrayList<>();
+
+        while (rs.next())
+        {
+          messageParts.add(buildMessagePartFromResultSet(rs));
+        }
+
+        return messageParts;
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(
+          "Failed to retrieve the message parts for the messages that have not been assembled "
+          + "from the database", e);
+    }
+  }
+
   /**
    * Retrieve the message parts queued for assembly for the message.
    *
@@ -535,22 +980,32 @@ public class MessagingDAO
           }
         }
 
-        for (MessagePart messagePart : messageParts)
+        if (messageParts.isEmpty())
         {
-          LocalDateTime updated = LocalDateTime.now();
+          return messageParts;
+        }
 
-          messagePart.setStatus(MessagePart.Status.ASSEMBLING);
-          messagePart.setLockName(lockName);
-          messagePart.setUpdated(updated);
+        // Lock all the message parts for assembly using a single batch update
+        try (PreparedStatement updateStatement = connection.prepareStatement(lockMessagePartSQL))
+        {
+          LocalDateTime updated = LocalDateTime.now();
 
-          try (PreparedStatement updateStatement = connection.prepareStatement(lockMessagePartSQL))
+          for (MessagePart messagePart : messageParts)
           {
+            messagePart.setStatus(MessagePart.Status.ASSEMBLING);
+            messagePart.setLockName(lockName);
+            messagePart.setUpdated(updated);
+
             updateStatement.setInt(1, MessagePart.Status.ASSEMBLING.getCode());
             updateStatement.setString(2, lockName);
             updateStatement.setTimestamp(3, Timestamp.valueOf(updated));
             updateStatement.setObject(4, messagePart.getId());
+            updateStatement.addBatch();
+          }
 
-            if (updateStatement.executeUpdate() != 1)
+          for (int updateCount : updateStatement.executeBatch())
+          {
+            if ((updateCount != 1) && (updateCount != Statement.SUCCESS_NO_INFO))
             {
               throw new DAOException(String.format(
                   "No rows were affected as a result of executing the SQL statement (%s)",
@@ -925,6 +1380,106 @@ public class MessagingDAO
     }
   }
 
+  /**
+   * Retrieve the next batch of messages that have been queued for processing.
+   * <p/>
+   * The messages will be locked to prevent duplicate processing. Messages that are already locked
+   * by another transaction are skipped where the database supports it, so that multiple
+   * processors can claim batches of messages concurrently without blocking each other.
+   *
+   * @param maximumNumberOfMessages the maximum number of messages to retrieve
+   * @param processingRetryDelay    the delay in milliseconds between successive attempts to
+   *                                process a message
+   * @param lockName                the name of the lock that should be applied to the messages
+   *                                queued for processing when they are retrieved
+   *
+   * @return the next batch of messages that have been queued for processing, which will be empty
+   *         if no messages are currently queued for processing
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public List<Message> getNextMessagesQueuedForProcessing(int maximumNumberOfMessages,
+      int processingRetryDelay, String lockName)
+    throws DAOException
+  {
+    String lockMessageSQL = "UPDATE MESSAGING.MESSAGES SET STATUS=?, LOCK_NAME=?, UPDATED=? "
+        + "WHERE ID=? AND STATUS=?";
+
+    try
+    {
+      List<Message> messages = new ArrayList<>();
+
+      try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(String.format(
+            getNextMessagesForProcessingSQL, maximumNumberOfMessages)))
+      {
+        Timestamp processedBefore = new Timestamp(System.currentTimeMillis()
+            - processingRetryDelay);
+
+        statement.setInt(1, Message.Status.QUEUED_FOR_PROCESSING.getCode());
+        statement.setTimestamp(2, processedBefore);
+
+        try (ResultSet rs = statement.executeQuery())
+        {
+          while (rs.next())
+          {
+            messages.add(buildMessageFromResultSet(rs));
+          }
+        }
+
+        if (messages.size() == 0)
+        {
+          return messages;
+        }
+
+        LocalDateTime updated = LocalDateTime.now();
+
+        try (PreparedStatement updateStatement = connection.prepareStatement(lockMessageSQL))
+        {
+          for (Message message : messages)
+          {
+            updateStatement.setInt(1, Message.Status.PROCESSING.getCode());
+            updateStatement.setString(2, lockName);
+            updateStatement.setTimestamp(3, Timestamp.valueOf(updated));
+            updateStatement.setObject(4, message.getId());
+            updateStatement.setInt(5, Message.Status.QUEUED_FOR_PROCESSING.getCode());
+            updateStatement.addBatch();
+          }
+
+          int[] updateCounts = updateStatement.executeBatch();
+
+          /*
+           * Only return the messages we actually managed to lock. On databases that do not support
+           * skipping locked rows a message may have been claimed by another processor between the
+           * SELECT and the UPDATE.
+           */
+          List<Message> lockedMessages = new ArrayList<>(messages.size());
+
+          for (int i = 0; i < messages.size(); i++)
+          {
+            if ((updateCounts[i] == 1) || (updateCounts[i] == Statement.SUCCESS_NO_INFO))
+            {
+              Message message = messages.get(i);
+
+              message.setStatus(Message.Status.PROCESSING);
+              message.setLockName(lockName);
+              message.setUpdated(updated);
+
+              lockedMessages.add(message);
+            }
+          }
+
+          return lockedMessages;
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the next %d messages that have been queued for processing from the "
+          + "database", maximumNumberOfMessages), e);
+    }
+  }
+
   /**
    * Returns the total number of error reports in the database.
    *
@@ -996,6 +1551,35 @@ public class MessagingDAO
     }
   }
 
+  /**
+   * Initialise the <code>MessagingDAO</code> instance.
+   */
+  @PostConstruct
+  public void init()
+    throws DAOException
+  {
+    String getNextMessagesForProcessingColumnsSQL = "M.ID, M.USERNAME, M.DEVICE_ID, M.TYPE_ID, "
+        + "M.CORRELATION_ID, M.PRIORITY, M.STATUS, M.CREATED, M.PERSISTED, M.UPDATED, "
+        + "M.SEND_ATTEMPTS, M.PROCESS_ATTEMPTS, M.DOWNLOAD_ATTEMPTS, M.LOCK_NAME, "
+        + "M.LAST_PROCESSED, M.DATA";
+
+    String getNextMessagesForProcessingWhereSQL = "WHERE M.STATUS=? AND (M.LAST_PROCESSED<? OR "
+        + "M.LAST_PROCESSED IS NULL)";
+
+    try (Connection connection = dataSource.getConnection())
+    {
+      databaseProductName = connection.getMetaData().getDatabaseProductName();
+
+      getNextMessagesForProcessingSQL = DAOUtil.getClaimNextRowsSQL(connection,
+          getNextMessagesForProcessingColumnsSQL, "MESSAGING.MESSAGES M",
+          getNextMessagesForProcessingWhereSQL, "M.UPDATED");
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException("Failed to initialise the MessagingDAO instance", e);
+    }
+  }
+
   /**
    * Has the message already been archived?
    *
@@ -1300,6 +1884,55 @@ public class MessagingDAO
     }
   }
 
+  /**
+   * Unlock a locked message part.
+   *
+   * @param id     the Universally Unique Identifier (UUID) used to uniquely identify the message
+   *               part
+   * @param status the new status for the unlocked message part
+   */
+  public void unlockMessagePart(UUID id, MessagePart.Status status)
+    throws DAOException
+  {
+    String unlockMessagePartSQL =
+        "UPDATE MESSAGING.MESSAGE_PARTS SET STATUS=?, UPDATED=?, LOCK_NAME=NULL WHERE ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(unlockMessagePartSQL))
+    {
+      statement.setInt(1, status.getCode());
+      statement.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+      statement.setObject(3, id);
+
+      if (statement.executeUpdate() != 1)
+      {
+        throw new DAOException(String.format(
+            "No rows were affected as a result of executing the SQL statement (%s)",
+            unlockMessagePartSQL));
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to unlock and set the status for the message part (%s) to (%s) in the database",
+          id, status.toString()), e);
+    }
+  }
+
+  private ArchivedMessage buildArchivedMessageFromResultSet(ResultSet rs, boolean includeData)
+    throws SQLException
+  {
+    String dataSegment = rs.getString(8);
+
+    return new ArchivedMessage(UUID.fromString(rs.getString(1)), rs.getString(2), UUID.fromString(
+        rs.getString(3)), UUID.fromString(rs.getString(4)), UUID.fromString(rs.getString(5)),
+        rs.getTimestamp(6).toLocalDateTime(), rs.getTimestamp(7).toLocalDateTime(), includeData
+        ? rs.getBytes(10)
+        : null, (dataSegment == null)
+        ? null
+        : new ArchivedMessageDataStore.Location(dataSegment, rs.getLong(9)));
+  }
+
   private ErrorReport buildErrorReportFromResultSet(ResultSet rs)
     throws SQLException
   {
@@ -1361,40 +1994,49 @@ public class MessagingDAO
             18), rs.getString(19), rs.getBytes(20));
   }
 
-///**
-// * Unlock a locked message part.
-// *
-// * @param id     the Universally Unique Identifier (UUID) used to uniquely identify the message
-// *               part
-// * @param status the new status for the unlocked message part
-// */
-//public void unlockMessagePart(UUID id, MessagePart.Status status)
-//  throws DAOException
-//{
-// unlockMessagePartSQL
-// unlockMessagePartSQL = "UPDATE " + schemaPrefix + "MESSAGE_PARTS MP "
-// + "SET STATUS=?, UPDATED=?, LOCK_NAME=NULL WHERE MP.ID=?";
-//
-//  try (Connection connection = applicationDataSource.getConnection();
-//    PreparedStatement statement = connection.prepareStatement(unlockMessagePartSQL))
-//  {
-//    statement.setInt(1, status.getCode());
-//    statement.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
-//    statement.setObject(3, id);
-//
-//    if (statement.executeUpdate() != 1)
-//    {
-//      throw new DAOException(String.format(
-//          "No rows were affected as a result of executing the SQL statement (%s)",
-//          unlockMessagePartSQL));
-//    }
-//  }
-//  catch (Throwable e)
-//  {
-//    throw new DAOException(String.format(
-//        "Failed to unlock and set the status for the message part (%s) to (%s) in the database",
-//        id, status.toString()), e);
-//  }
-//}
+  /**
+   * Returns the boundaries for the SQL Server partition function used to partition the archived
+   * messages.
+   *
+   * @param connection the database connection
+   *
+   * @return the boundaries for the SQL Server partition function used to partition the archived
+   *         messages
+   */
+  private List<LocalDate> getArchivedMessagePartitionBoundaries(Connection connection)
+    throws SQLException
+  {
+    String getArchivedMessagePartitionBoundariesSQL = "SELECT CAST(PRV.VALUE AS DATETIME) FROM "
+        + "SYS.PARTITION_RANGE_VALUES PRV INNER JOIN SYS.PARTITION_FUNCTIONS PF "
+        + "ON PRV.FUNCTION_ID = PF.FUNCTION_ID WHERE PF.NAME = 'ARCHIVED_MESSAGES_PF' "
+        + "ORDER BY PRV.BOUNDARY_ID";
+
+    try (Statement statement = connection.createStatement();
+      ResultSet rs = statement.executeQuery(getArchivedMessagePartitionBoundariesSQL))
+    {
+      List<LocalDate> boundaries = new ArrayList<>();
 
+      while (rs.next())
+      {
+        boundaries.add(rs.getTimestamp(1).toLocalDateTime().toLocalDate());
+      }
+
+      return boundaries;
+    }
+  }
+
+  /**
+   * Returns the name of the table the archived messages for the specified month are inserted
+   * into.
+   *
+   * @param month the month
+   *
+   * @return the name of the table the archived messages for the specified month are inserted into
+   */
+  private String getArchivedMessagePartitionTable(YearMonth month)
+  {
+    return "PostgreSQL".equals(databaseProductName)
+        ? "MESSAGING.ARCHIVED_MESSAGES_" + ARCHIVED_MESSAGE_PARTITION_FORMATTER.format(month)
+        : "MESSAGING.ARCHIVED_MESSAGES";
+  }
 }
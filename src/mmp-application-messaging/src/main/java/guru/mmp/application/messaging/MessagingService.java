@@ -20,6 +20,7 @@ package guru.mmp.application.messaging;
 
 import guru.mmp.application.Debug;
 import guru.mmp.application.configuration.IConfigurationService;
+import guru.mmp.application.configuration.IntegerConfigurationListener;
 import guru.mmp.application.messaging.MessagePart.Status;
 import guru.mmp.application.messaging.handler.IMessageHandler;
 import guru.mmp.application.messaging.handler.MessageHandlerConfig;
@@ -39,6 +40,7 @@ import org.w3c.dom.Element;
 import org.xml.sax.InputSource;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
@@ -46,13 +48,14 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.inject.Inject;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.net.URL;
 import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.*;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -88,8 +91,32 @@ public class MessagingService
   /* The AES encryption master key used to derive the device/user specific encryption keys. */
   private byte[] aesEncryptionMasterKey;
 
+  /**
+   * The delay in milliseconds after the message parts for a message were last updated before the
+   * message is queued for assembly again if it has not been assembled.
+   */
+  private volatile int assemblyRetryDelay;
+
+  /**
+   * The store for the data for large archived messages or <code>null</code> if the data for all
+   * archived messages is stored in the database.
+   */
+  private ArchivedMessageDataStore archivedMessageDataStore;
+
+  /**
+   * The minimum size in bytes of the data for an archived message before it is stored in the
+   * archived message data store.
+   */
+  private int archivedMessageDataStoreThreshold;
+
+  /**
+   * The number of months before the current month for which archived messages are retained or 0
+   * if archived messages are retained indefinitely.
+   */
+  private int archivedMessageRetentionMonths;
+
   /* The maximum number of times processing will be attempted for a message. */
-  private int maximumProcessingAttempts;
+  private volatile int maximumProcessingAttempts;
 
   /* The message handlers */
   private Map<UUID, IMessageHandler> messageHandlers;
@@ -105,7 +132,32 @@ public class MessagingService
   private IMessagingDAO messagingDAO;
 
   /* The delay in milliseconds to wait before re-attempting to process a message. */
-  private int processingRetryDelay;
+  private volatile int processingRetryDelay;
+
+  /* The maximum number of messages to retrieve and lock when processing messages. */
+  private volatile int processingBatchSize;
+
+  /* The number of threads used by the Background Message Processor to process messages. */
+  private int numberOfProcessingThreads;
+
+  /* The cache of derived user-device encryption keys. */
+  private UserDeviceEncryptionKeyCache userDeviceEncryptionKeyCache;
+
+  /* The ciphers used to derive the user-device encryption keys. */
+  private ThreadLocal<Cipher> threadLocalUserDeviceEncryptionKeyCipher = ThreadLocal.withInitial(
+      () ->
+      {
+        try
+        {
+          return Cipher.getInstance("AES/CFB/NoPadding");
+        }
+        catch (Throwable e)
+        {
+          throw new RuntimeException(
+              "Failed to initialise the cipher used to derive the user-device encryption keys", e);
+        }
+      }
+      );
 
   /* Configuration Service */
   @Inject
@@ -129,7 +181,19 @@ public class MessagingService
     {
       if (isArchivableMessage(message))
       {
-        messagingDAO.archiveMessage(message);
+        LocalDateTime archived = LocalDateTime.now();
+
+        ArchivedMessageDataStore.Location dataLocation = null;
+
+        // Store the data for large messages in the archived message data store
+        if ((archivedMessageDataStore != null) && (message.getData() != null)
+            && (message.getData().length >= archivedMessageDataStoreThreshold))
+        {
+          dataLocation = archivedMessageDataStore.write(YearMonth.from(archived),
+              message.getData());
+        }
+
+        messagingDAO.archiveMessage(message, archived, dataLocation);
       }
     }
     catch (Throwable e)
@@ -139,6 +203,171 @@ public class MessagingService
     }
   }
 
+  /**
+   * Assemble the message from its constituent parts if all the parts for the message have been
+   * queued for assembly.
+   * <p/>
+   * The message parts are retrieved in order and copied directly into a buffer sized to hold the
+   * reconstructed message data, with the checksum being updated as each message part is copied.
+   * Once the checksum has been verified the message is decrypted and queued for processing.
+   *
+   * @param messagePart the message part that was queued for assembly
+   */
+  public void assembleMessage(MessagePart messagePart)
+    throws MessagingException
+  {
+    List<MessagePart> messageParts = null;
+
+    boolean isMessageQueuedForProcessing = false;
+
+    try
+    {
+      // Check whether all the parts for the message have been queued for assembly
+      if (!messagingDAO.allPartsQueuedForMessage(messagePart.getMessageId(),
+          messagePart.getTotalParts()))
+      {
+        return;
+      }
+
+      // Retrieve the message parts queued for assembly
+      messageParts = messagingDAO.getMessagePartsQueuedForAssembly(
+          messagePart.getMessageId(), instanceName);
+
+      /*
+       * If some or all of the message parts have already been locked for assembly by another
+       * thread then stop here, returning any message parts we did lock to the assembly queue so
+       * they are not left locked when the other thread also finds that it could not lock all the
+       * message parts.
+       */
+      if (messageParts.size() != messagePart.getTotalParts())
+      {
+        if (logger.isDebugEnabled())
+        {
+          logger.debug(String.format(
+              "Skipping the assembly of the message (%s) since %d of its %d message parts are "
+              + "queued for assembly", messagePart.getMessageId(), messageParts.size(),
+              messagePart.getTotalParts()));
+        }
+
+        for (MessagePart lockedMessagePart : messageParts)
+        {
+          messagingDAO.unlockMessagePart(lockedMessagePart.getId(),
+              MessagePart.Status.QUEUED_FOR_ASSEMBLY);
+        }
+
+        return;
+      }
+
+      // Assemble the message from its constituent parts
+      int reconstructedDataLength = 0;
+
+      for (MessagePart tmpMessagePart : messageParts)
+      {
+        reconstructedDataLength += tmpMessagePart.getData().length;
+      }
+
+      byte[] reconstructedData = new byte[reconstructedDataLength];
+
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+
+      int offset = 0;
+
+      for (MessagePart tmpMessagePart : messageParts)
+      {
+        byte[] messagePartData = tmpMessagePart.getData();
+
+        messageDigest.update(messagePartData);
+
+        System.arraycopy(messagePartData, 0, reconstructedData, offset, messagePartData.length);
+
+        offset += messagePartData.length;
+
+        // Release the data for the message part since it has been copied
+        tmpMessagePart.setData(null);
+      }
+
+      // Check that the reconstructed message data is valid
+      String messageChecksum = Base64.encodeBytes(messageDigest.digest());
+
+      if (!messageChecksum.equals(messagePart.getMessageChecksum()))
+      {
+        // Delete the message parts
+        messagingDAO.deleteMessagePartsForMessage(messagePart.getMessageId());
+
+        logger.error(String.format(
+            "Failed to verify the checksum for the reconstructed message (%s) with type (%s) "
+            + "from the user (%s) and device (%s). Found %d bytes of message data with the hash "
+            + "(%s) that was reconstructed from %d message parts. The message will NOT be processed",
+            messagePart.getMessageId(), messagePart.getMessageTypeId(),
+            messagePart.getMessageUsername(), messagePart.getMessageDeviceId(),
+            reconstructedData.length, messageChecksum, messageParts.size()));
+
+        writeInvalidMessageToDebugDirectory(messagePart, reconstructedData, messageChecksum,
+            messageParts.size());
+
+        return;
+      }
+
+      Message message = new Message(messagePart.getMessageId(), messagePart.getMessageUsername(),
+          messagePart.getMessageDeviceId(), messagePart.getMessageTypeId(),
+          messagePart.getMessageCorrelationId(), messagePart.getMessagePriority(), Message.Status
+          .INITIALISED, messagePart.getMessageCreated(), null, null, 0, 0, 0, null, null,
+          reconstructedData, messagePart.getMessageDataHash(),
+          messagePart.getMessageEncryptionIV());
+
+      if (decryptMessage(message))
+      {
+        queueMessageForProcessing(message);
+
+        isMessageQueuedForProcessing = true;
+      }
+      else
+      {
+        // Delete the message parts
+        messagingDAO.deleteMessagePartsForMessage(messagePart.getMessageId());
+
+        logger.error(String.format(
+            "Failed to decrypt the reconstructed message (%s) with type (%s) from the user (%s) "
+            + "and device (%s). Found %d bytes of message data with the hash (%s) that was "
+            + "reconstructed from %d message parts. The message will NOT be processed",
+            messagePart.getMessageId(), messagePart.getMessageTypeId(),
+            messagePart.getMessageUsername(), messagePart.getMessageDeviceId(),
+            reconstructedData.length, messageChecksum, messageParts.size()));
+
+        writeInvalidMessageToDebugDirectory(messagePart, reconstructedData, messageChecksum,
+            messageParts.size());
+
+        return;
+      }
+
+      // Delete the message parts
+      messagingDAO.deleteMessagePartsForMessage(messagePart.getMessageId());
+    }
+    catch (Exception e)
+    {
+      /*
+       * Return the message parts we locked to the assembly queue, unless the message has already
+       * been queued for processing, so that the assembly of the message is retried by the
+       * Background Message Part Assembler.
+       */
+      if ((messageParts != null) && (!isMessageQueuedForProcessing))
+      {
+        for (MessagePart lockedMessagePart : messageParts)
+        {
+          try
+          {
+            messagingDAO.unlockMessagePart(lockedMessagePart.getId(),
+                MessagePart.Status.QUEUED_FOR_ASSEMBLY);
+          }
+          catch (Throwable ignored) {}
+        }
+      }
+
+      throw new MessagingException(String.format(
+          "Failed to assemble the parts for the message (%s)", messagePart.getMessageId()), e);
+    }
+  }
+
   /**
    * Returns <code>true</code> if the Messaging Service is capable of processing the specified
    * message or <code>false</code> otherwise.
@@ -206,7 +435,6 @@ public class MessagingService
       return true;
     }
 
-    // TODO: Cache this key...
     byte[] userEncryptionKey = deriveUserDeviceEncryptionKey(message.getUsername(),
         message.getDeviceId());
 
@@ -319,6 +547,9 @@ public class MessagingService
 
   /**
    * Derive the user-device encryption key.
+   * <p/>
+   * The derived user-device encryption keys are cached, up to the maximum size configured for
+   * the cache, until they expire.
    *
    * @param username the username uniquely identifying the user e.g. test1
    * @param deviceId the Universally Unique Identifier (UUID) used to uniquely identify the device
@@ -328,6 +559,13 @@ public class MessagingService
   public byte[] deriveUserDeviceEncryptionKey(String username, UUID deviceId)
     throws MessagingException
   {
+    byte[] userDeviceEncryptionKey = userDeviceEncryptionKeyCache.get(username, deviceId);
+
+    if (userDeviceEncryptionKey != null)
+    {
+      return userDeviceEncryptionKey;
+    }
+
     try
     {
       String password = deviceId.toString() + username.toLowerCase();
@@ -337,11 +575,15 @@ public class MessagingService
       SecretKey secretKey = new SecretKeySpec(aesEncryptionMasterKey, CryptoUtils.AES_KEY_SPEC);
       IvParameterSpec iv = new IvParameterSpec(
           AES_USER_DEVICE_ENCRYPTION_KEY_GENERATION_ENCRYPTION_IV);
-      Cipher cipher = Cipher.getInstance("AES/CFB/NoPadding");
+      Cipher cipher = threadLocalUserDeviceEncryptionKeyCipher.get();
 
       cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
 
-      return cipher.doFinal(key);
+      userDeviceEncryptionKey = cipher.doFinal(key);
+
+      userDeviceEncryptionKeyCache.put(username, deviceId, userDeviceEncryptionKey);
+
+      return userDeviceEncryptionKey;
     }
     catch (Throwable e)
     {
@@ -368,7 +610,6 @@ public class MessagingService
       return true;
     }
 
-    // TODO: Cache this key...
     byte[] userEncryptionKey = deriveUserDeviceEncryptionKey(message.getUsername(),
         message.getDeviceId());
 
@@ -412,6 +653,77 @@ public class MessagingService
     }
   }
 
+  /**
+   * Retrieve the data for the archived message.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the message
+   *
+   * @return the data for the archived message or <code>null</code> if the archived message could
+   *         not be found
+   */
+  public byte[] getArchivedMessageData(UUID id)
+    throws MessagingException
+  {
+    try
+    {
+      ArchivedMessage archivedMessage = messagingDAO.getArchivedMessage(id);
+
+      if (archivedMessage == null)
+      {
+        return null;
+      }
+      else if (archivedMessage.getDataLocation() == null)
+      {
+        return archivedMessage.getData();
+      }
+      else if (archivedMessageDataStore == null)
+      {
+        throw new MessagingException(
+            "The data is stored in the archived message data store, which is not configured");
+      }
+      else
+      {
+        return archivedMessageDataStore.read(archivedMessage.getDataLocation());
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new MessagingException(String.format(
+          "Failed to retrieve the data for the archived message (%s)", id), e);
+    }
+  }
+
+  /**
+   * Retrieve the archived messages, excluding their data, matching the specified criteria ordered
+   * from the most recently archived.
+   *
+   * @param username                the optional username identifying the user associated with the
+   *                                messages
+   * @param deviceId                the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the device the messages originated from
+   * @param typeId                  the optional Universally Unique Identifier (UUID) used to
+   *                                uniquely identify the type of message
+   * @param from                    the date and time from which the messages were archived
+   * @param to                      the date and time before which the messages were archived
+   * @param maximumNumberOfMessages the maximum number of archived messages to retrieve
+   *
+   * @return the archived messages matching the specified criteria
+   */
+  public List<ArchivedMessage> getArchivedMessages(String username, UUID deviceId, UUID typeId,
+      LocalDateTime from, LocalDateTime to, int maximumNumberOfMessages)
+    throws MessagingException
+  {
+    try
+    {
+      return messagingDAO.getArchivedMessages(username, deviceId, typeId, from, to,
+          maximumNumberOfMessages);
+    }
+    catch (Throwable e)
+    {
+      throw new MessagingException("Failed to retrieve the archived messages", e);
+    }
+  }
+
   /**
    * Retrieve the error report.
    *
@@ -485,6 +797,35 @@ public class MessagingService
     }
   }
 
+  /**
+   * Retrieve the first message part for each message whose message parts have all been queued for
+   * assembly but which has not been assembled, e.g. because the application was restarted before
+   * the message was assembled or the assembly failed.
+   * <p/>
+   * Only the messages whose message parts have not been updated within the delay given by the
+   * <b>MessagingService.AssemblyRetryDelay</b> configuration value are included.
+   *
+   * @param maximumNumberOfMessages the maximum number of messages to retrieve the first message
+   *                                part for
+   *
+   * @return the first message part for each message whose message parts have all been queued for
+   *         assembly but which has not been assembled
+   */
+  public List<MessagePart> getMessagePartsForUnassembledMessages(int maximumNumberOfMessages)
+    throws MessagingException
+  {
+    try
+    {
+      return messagingDAO.getMessagePartsForUnassembledMessages(assemblyRetryDelay,
+          maximumNumberOfMessages);
+    }
+    catch (Throwable e)
+    {
+      throw new MessagingException(
+          "Failed to retrieve the message parts for the messages that have not been assembled", e);
+    }
+  }
+
   /**
    * Get the message parts for a user that have been queued for download by a particular remote
    * device.
@@ -610,6 +951,31 @@ public class MessagingService
     }
   }
 
+  /**
+   * Retrieve the next batch of messages that have been queued for processing.
+   * <p/>
+   * The messages will be locked to prevent duplicate processing. The maximum number of messages
+   * retrieved is determined by the <b>MessagingService.ProcessingBatchSize</b> configuration
+   * value.
+   *
+   * @return the next batch of messages that have been queued for processing, which will be empty
+   *         if no messages are currently queued for processing
+   */
+  public List<Message> getNextMessagesQueuedForProcessing()
+    throws MessagingException
+  {
+    try
+    {
+      return messagingDAO.getNextMessagesQueuedForProcessing(processingBatchSize,
+          processingRetryDelay, instanceName);
+    }
+    catch (Throwable e)
+    {
+      throw new MessagingException("Failed to retrieve the next messages queued for processing",
+          e);
+    }
+  }
+
   /**
    * Returns the total number of error reports.
    *
@@ -628,6 +994,42 @@ public class MessagingService
     }
   }
 
+  /**
+   * Returns the number of threads the Background Message Processor should use to process the
+   * messages queued for processing.
+   *
+   * @return the number of threads the Background Message Processor should use to process the
+   *         messages queued for processing
+   */
+  public int getNumberOfProcessingThreads()
+  {
+    return numberOfProcessingThreads;
+  }
+
+  /**
+   * Returns the number of times a user-device encryption key was found in the cache of derived
+   * user-device encryption keys.
+   *
+   * @return the number of times a user-device encryption key was found in the cache of derived
+   *         user-device encryption keys
+   */
+  public long getUserDeviceEncryptionKeyCacheHits()
+  {
+    return userDeviceEncryptionKeyCache.getHits();
+  }
+
+  /**
+   * Returns the number of times a user-device encryption key was not found in the cache of
+   * derived user-device encryption keys and had to be derived.
+   *
+   * @return the number of times a user-device encryption key was not found in the cache of
+   *         derived user-device encryption keys and had to be derived
+   */
+  public long getUserDeviceEncryptionKeyCacheMisses()
+  {
+    return userDeviceEncryptionKeyCache.getMisses();
+  }
+
   /**
    * Increment the processing attempts for the message.
    *
@@ -662,6 +1064,21 @@ public class MessagingService
       // Initialise the configuration for the Messaging Service
       initConfiguration();
 
+      // Apply the changes to the configuration made by this or another application instance
+      IntegerConfigurationListener configurationListener = new IntegerConfigurationListener(
+          "Messaging Service");
+
+      configurationListener.bind("MessagingService.AssemblyRetryDelay",
+          value -> assemblyRetryDelay = value);
+      configurationListener.bind("MessagingService.ProcessingRetryDelay",
+          value -> processingRetryDelay = value);
+      configurationListener.bind("MessagingService.MaximumProcessingAttempts",
+          value -> maximumProcessingAttempts = value);
+      configurationListener.bind("MessagingService.ProcessingBatchSize",
+          value -> processingBatchSize = Math.max(1, value));
+
+      configurationService.addConfigurationListener("MessagingService.", configurationListener);
+
       // Read the messaging configuration
       readMessagingConfig();
 
@@ -735,6 +1152,40 @@ public class MessagingService
     return isSynchronousMessage(message.getTypeId());
   }
 
+  /**
+   * Maintain the message archive by creating the archived message partitions for the current and
+   * next months and deleting the archived messages, and the data for the archived messages stored
+   * in the archived message data store, that have exceeded the retention period.
+   */
+  public void maintainMessageArchive()
+    throws MessagingException
+  {
+    try
+    {
+      YearMonth currentMonth = YearMonth.now();
+
+      // Create the partitions ahead of time so they do not need to be created when archiving
+      messagingDAO.createArchivedMessagePartition(currentMonth);
+      messagingDAO.createArchivedMessagePartition(currentMonth.plusMonths(1));
+
+      if (archivedMessageRetentionMonths > 0)
+      {
+        YearMonth retentionMonth = currentMonth.minusMonths(archivedMessageRetentionMonths);
+
+        messagingDAO.deleteArchivedMessagesBefore(retentionMonth);
+
+        if (archivedMessageDataStore != null)
+        {
+          archivedMessageDataStore.deleteSegmentsBefore(retentionMonth);
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new MessagingException("Failed to maintain the message archive", e);
+    }
+  }
+
   /**
    * Process the message.
    *
@@ -903,7 +1354,7 @@ public class MessagingService
       logger.debug(message.toString());
     }
 
-    // Inform the Background Message Processor that a new message has been queued for processing
+    // Wake up the Background Message Processor to process the newly queued message
     try
     {
       applicationContext.getBean(BackgroundMessageProcessor.class).processMessages();
@@ -950,219 +1401,21 @@ public class MessagingService
           "Failed to queue the message part (%s) for assembly", messagePart.getId()), e);
     }
 
-    // TODO: MOVE TO BACKGROUND THREAD RATHER TO PREVENT MOBILE DEVICE WAITING FOR THIS - MARCUS
-
     /*
-     * Check whether all the parts for the message have been queued for assembly and if so
-     * assemble the message.
+     * Hand the message part off to the Background Message Part Assembler, which will assemble the
+     * message if all its parts have now been queued for assembly. This allows the remote device
+     * to receive an acknowledgement as soon as the message part has been persisted.
      */
     try
     {
-      // Check whether all the parts for the message have been queued for assembly
-      if (messagingDAO.allPartsQueuedForMessage(messagePart.getMessageId(),
-          messagePart.getTotalParts()))
-      {
-        // Retrieve the message parts queued for assembly
-        List<MessagePart> messageParts = messagingDAO.getMessagePartsQueuedForAssembly(
-            messagePart.getMessageId(), instanceName);
-
-        // Assemble the message from its constituent parts
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        for (MessagePart tmpMessagePart : messageParts)
-        {
-          baos.write(tmpMessagePart.getData());
-        }
-
-        byte[] reconstructedData = baos.toByteArray();
-
-        // Check that the reconstructed message data is valid
-        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-
-        messageDigest.update(reconstructedData);
-
-        String messageChecksum = Base64.encodeBytes(messageDigest.digest());
-
-        if (!messageChecksum.equals(messagePart.getMessageChecksum()))
-        {
-          // Delete the message parts
-          messagingDAO.deleteMessagePartsForMessage(messagePart.getMessageId());
-
-          logger.error(String.format(
-              "Failed to verify the checksum for the reconstructed message (%s) with type (%s) "
-              + "from the user (%s) and device (%s). Found %d bytes of message data with the hash "
-              + "(%s) that was reconstructed from %d message parts. The message will NOT be processed",
-              messagePart.getMessageId(), messagePart.getMessageTypeId(),
-              messagePart.getMessageUsername(), messagePart.getMessageDeviceId(), reconstructedData
-              .length, messageChecksum, messageParts.size()));
-
-          String messagingDebugDirectory = getMessagingDebugDirectory();
-
-          if (!StringUtil.isNullOrEmpty(messagingDebugDirectory))
-          {
-            FileOutputStream invalidMessageDataOut = null;
-            PrintWriter invalidMessageInfoWriter = null;
-
-            try
-            {
-              String invalidMessageDataFilename = messagingDebugDirectory + File.separator
-                  + messagePart.getMessageId() + ".data";
-
-              invalidMessageDataOut = new FileOutputStream(new File(invalidMessageDataFilename));
-
-              invalidMessageDataOut.write(reconstructedData);
-              invalidMessageDataOut.flush();
-
-              String invalidMessageInfoFilename = messagingDebugDirectory + File.separator
-                  + messagePart.getMessageId() + ".info";
-
-              invalidMessageInfoWriter = new PrintWriter(new FileOutputStream(new File(
-                  invalidMessageInfoFilename)));
-
-              invalidMessageInfoWriter.println("ID: " + messagePart.getMessageId());
-              invalidMessageInfoWriter.println("Type ID: " + messagePart.getMessageTypeId());
-              invalidMessageInfoWriter.println("User: " + messagePart.getMessageUsername());
-              invalidMessageInfoWriter.println("Device ID: " + messagePart.getMessageDeviceId());
-              invalidMessageInfoWriter.println("Correlation ID: "
-                  + messagePart.getMessageCorrelationId());
-              invalidMessageInfoWriter.println("Data Hash: " + messagePart.getMessageDataHash());
-              invalidMessageInfoWriter.println("Checksum: " + messagePart.getMessageChecksum());
-              invalidMessageInfoWriter.println("Parts: " + messageParts.size());
-              invalidMessageInfoWriter.println("Reconstructucted Checksum: " + messageChecksum);
-              invalidMessageInfoWriter.println("Size: " + reconstructedData.length);
-
-              invalidMessageInfoWriter.flush();
-            }
-            catch (Throwable e)
-            {
-              logger.error(String.format(
-                  "Failed to write the invalid message to the messaging debug directory (%s): %s",
-                  messagingDebugDirectory, e.getMessage()), e);
-            }
-            finally
-            {
-              try
-              {
-                if (invalidMessageDataOut != null)
-                {
-                  invalidMessageDataOut.close();
-                }
-              }
-              catch (Throwable ignored) {}
-
-              try
-              {
-                if (invalidMessageInfoWriter != null)
-                {
-                  invalidMessageInfoWriter.close();
-                }
-              }
-              catch (Throwable ignored) {}
-            }
-          }
-
-          return;
-        }
-
-        Message message = new Message(messagePart.getMessageId(), messagePart.getMessageUsername(),
-            messagePart.getMessageDeviceId(), messagePart.getMessageTypeId(),
-            messagePart.getMessageCorrelationId(), messagePart.getMessagePriority(), Message.Status
-            .INITIALISED, messagePart.getMessageCreated(), null, null, 0, 0, 0, null, null,
-            reconstructedData, messagePart.getMessageDataHash(),
-            messagePart.getMessageEncryptionIV());
-
-        if (decryptMessage(message))
-        {
-          queueMessageForProcessing(message);
-        }
-        else
-        {
-          // Delete the message parts
-          messagingDAO.deleteMessagePartsForMessage(messagePart.getMessageId());
-
-          logger.error(String.format(
-              "Failed to decrypt the reconstructed message (%s) with type (%s) from the user (%s) "
-              + "and device (%s). Found %d bytes of message data with the hash (%s) that was "
-              + "reconstructed from %d message parts. The message will NOT be processed",
-              messagePart.getMessageId(), messagePart.getMessageTypeId(),
-              messagePart.getMessageUsername(), messagePart.getMessageDeviceId(), reconstructedData
-              .length, messageChecksum, messageParts.size()));
-
-          String messagingDebugDirectory = getMessagingDebugDirectory();
-
-          if (!StringUtil.isNullOrEmpty(messagingDebugDirectory))
-          {
-            FileOutputStream invalidMessageDataOut = null;
-            PrintWriter invalidMessageInfoWriter = null;
-
-            try
-            {
-              String invalidMessageDataFilename = messagingDebugDirectory + File.separator
-                  + messagePart.getMessageId() + ".data";
-
-              invalidMessageDataOut = new FileOutputStream(new File(invalidMessageDataFilename));
-
-              invalidMessageDataOut.write(reconstructedData);
-              invalidMessageDataOut.flush();
-
-              String invalidMessageInfoFilename = messagingDebugDirectory + File.separator
-                  + messagePart.getMessageId() + ".info";
-
-              invalidMessageInfoWriter = new PrintWriter(new FileOutputStream(new File(
-                  invalidMessageInfoFilename)));
-
-              invalidMessageInfoWriter.println("ID: " + messagePart.getMessageId());
-              invalidMessageInfoWriter.println("Type ID: " + messagePart.getMessageTypeId());
-              invalidMessageInfoWriter.println("User: " + messagePart.getMessageUsername());
-              invalidMessageInfoWriter.println("Device ID: " + messagePart.getMessageDeviceId());
-              invalidMessageInfoWriter.println("Correlation ID: "
-                  + messagePart.getMessageCorrelationId());
-              invalidMessageInfoWriter.println("Checksum: " + messagePart.getMessageChecksum());
-              invalidMessageInfoWriter.println("Parts: " + messageParts.size());
-              invalidMessageInfoWriter.println("Reconstructucted Checksum: " + messageChecksum);
-              invalidMessageInfoWriter.println("Size: " + reconstructedData.length);
-
-              invalidMessageInfoWriter.flush();
-            }
-            catch (Throwable e)
-            {
-              logger.error(String.format(
-                  "Failed to write the invalid message to the messaging debug directory (%s): %s",
-                  messagingDebugDirectory, e.getMessage()), e);
-            }
-            finally
-            {
-              try
-              {
-                if (invalidMessageDataOut != null)
-                {
-                  invalidMessageDataOut.close();
-                }
-              }
-              catch (Throwable ignored) {}
-
-              try
-              {
-                if (invalidMessageInfoWriter != null)
-                {
-                  invalidMessageInfoWriter.close();
-                }
-              }
-              catch (Throwable ignored) {}
-            }
-          }
-
-          return;
-        }
-
-        // Delete the message parts
-        messagingDAO.deleteMessagePartsForMessage(messagePart.getMessageId());
-      }
+      applicationContext.getBean(BackgroundMessagePartAssembler.class).assembleMessage(
+          messagePart);
     }
-    catch (Exception e)
+    catch (Throwable e)
     {
       throw new MessagingException(String.format(
-          "Failed to assemble the parts for the message (%s)", messagePart.getMessageId()), e);
+          "Failed to queue the parts for the message (%s) for assembly",
+          messagePart.getMessageId()), e);
     }
   }
 
@@ -1222,6 +1475,18 @@ public class MessagingService
     }
   }
 
+  /**
+   * Shutdown the Messaging Service.
+   */
+  @PreDestroy
+  public void shutdown()
+  {
+    if (archivedMessageDataStore != null)
+    {
+      archivedMessageDataStore.close();
+    }
+  }
+
   /**
    * Unlock the message.
    *
@@ -1258,6 +1523,13 @@ public class MessagingService
             "m/4Wu7iHTCBVu0Bb1JojAhzWQtA5cWIzbWY2YjhmOGE="), "The AES encryption master key");
       }
 
+      if (!configurationService.keyExists("MessagingService.AssemblyRetryDelay"))
+      {
+        configurationService.setValue("MessagingService.AssemblyRetryDelay", 60000,
+            "The delay in milliseconds after which a message whose parts have all been queued for "
+            + "assembly is queued for assembly again if it has not been assembled");
+      }
+
       if (!configurationService.keyExists("MessagingService.ProcessingRetryDelay"))
       {
         configurationService.setValue("MessagingService.ProcessingRetryDelay", 60000,
@@ -1270,14 +1542,94 @@ public class MessagingService
             "The maximum number of attempts to process a message");
       }
 
+      if (!configurationService.keyExists("MessagingService.ProcessingBatchSize"))
+      {
+        configurationService.setValue("MessagingService.ProcessingBatchSize", 10,
+            "The maximum number of messages to retrieve and lock at a time for processing");
+      }
+
+      if (!configurationService.keyExists("MessagingService.ProcessingThreads"))
+      {
+        configurationService.setValue("MessagingService.ProcessingThreads", 4,
+            "The number of threads used to process the messages queued for processing");
+      }
+
+      if (!configurationService.keyExists("MessagingService.UserDeviceEncryptionKeyCacheSize"))
+      {
+        configurationService.setValue("MessagingService.UserDeviceEncryptionKeyCacheSize", 10000,
+            "The maximum number of derived user-device encryption keys to cache");
+      }
+
+      if (!configurationService.keyExists("MessagingService.UserDeviceEncryptionKeyCacheExpiry"))
+      {
+        configurationService.setValue("MessagingService.UserDeviceEncryptionKeyCacheExpiry",
+            3600, "The number of seconds after which a cached user-device encryption key expires");
+      }
+
+      if (!configurationService.keyExists("MessagingService.ArchivedMessageRetentionMonths"))
+      {
+        configurationService.setValue("MessagingService.ArchivedMessageRetentionMonths", 0,
+            "The number of months before the current month for which archived messages are "
+            + "retained or 0 to retain archived messages indefinitely");
+      }
+
+      if (!configurationService.keyExists("MessagingService.ArchivedMessageDataDirectory"))
+      {
+        configurationService.setValue("MessagingService.ArchivedMessageDataDirectory", "",
+            "The directory used to store the data for large archived messages or blank to store "
+            + "the data for all archived messages in the database");
+      }
+
+      if (!configurationService.keyExists("MessagingService.ArchivedMessageDataThreshold"))
+      {
+        configurationService.setValue("MessagingService.ArchivedMessageDataThreshold", 65536,
+            "The minimum size in bytes of the data for an archived message before it is stored in "
+            + "the archived message data directory");
+      }
+
+      if (!configurationService.keyExists("MessagingService.ArchivedMessageDataSegmentSize"))
+      {
+        configurationService.setValue("MessagingService.ArchivedMessageDataSegmentSize",
+            268435456, "The maximum size in bytes of the segment files in the archived message "
+            + "data directory");
+      }
+
       aesEncryptionMasterKey = configurationService.getBinary(
           "MessagingService.AESEncryptionMasterKey");
 
+      assemblyRetryDelay = configurationService.getInteger("MessagingService.AssemblyRetryDelay");
+
       processingRetryDelay = configurationService.getInteger(
           "MessagingService.ProcessingRetryDelay");
 
       maximumProcessingAttempts = configurationService.getInteger(
           "MessagingService.MaximumProcessingAttempts");
+
+      processingBatchSize = Math.max(1, configurationService.getInteger(
+          "MessagingService.ProcessingBatchSize"));
+
+      numberOfProcessingThreads = Math.max(1, configurationService.getInteger(
+          "MessagingService.ProcessingThreads"));
+
+      archivedMessageRetentionMonths = Math.max(0, configurationService.getInteger(
+          "MessagingService.ArchivedMessageRetentionMonths"));
+
+      archivedMessageDataStoreThreshold = configurationService.getInteger(
+          "MessagingService.ArchivedMessageDataThreshold");
+
+      String archivedMessageDataDirectory = configurationService.getString(
+          "MessagingService.ArchivedMessageDataDirectory");
+
+      if (!StringUtil.isNullOrEmpty(archivedMessageDataDirectory))
+      {
+        archivedMessageDataStore = new ArchivedMessageDataStore(new File(
+            archivedMessageDataDirectory), configurationService.getInteger(
+            "MessagingService.ArchivedMessageDataSegmentSize"));
+      }
+
+      userDeviceEncryptionKeyCache = new UserDeviceEncryptionKeyCache(
+          configurationService.getInteger("MessagingService.UserDeviceEncryptionKeyCacheSize"),
+          configurationService.getInteger("MessagingService.UserDeviceEncryptionKeyCacheExpiry"));
     }
     catch (Throwable e)
     {
@@ -1510,4 +1862,58 @@ public class MessagingService
       throw new MessagingException("Failed to read the messaging configuration", e);
     }
   }
+
+  /**
+   * Write the information for a reconstructed message that could not be verified or decrypted to
+   * the messaging debug directory if it exists.
+   *
+   * @param messagePart       the message part that triggered the assembly of the message
+   * @param reconstructedData the reconstructed message data
+   * @param messageChecksum   the checksum for the reconstructed message data
+   * @param numberOfParts     the number of message parts the message was reconstructed from
+   */
+  private void writeInvalidMessageToDebugDirectory(MessagePart messagePart,
+      byte[] reconstructedData, String messageChecksum, int numberOfParts)
+  {
+    String messagingDebugDirectory = getMessagingDebugDirectory();
+
+    if (StringUtil.isNullOrEmpty(messagingDebugDirectory))
+    {
+      return;
+    }
+
+    String invalidMessageDataFilename = messagingDebugDirectory + File.separator
+        + messagePart.getMessageId() + ".data";
+
+    String invalidMessageInfoFilename = messagingDebugDirectory + File.separator
+        + messagePart.getMessageId() + ".info";
+
+    try (FileOutputStream invalidMessageDataOut = new FileOutputStream(new File(
+        invalidMessageDataFilename));
+      PrintWriter invalidMessageInfoWriter = new PrintWriter(new FileOutputStream(new File(
+          invalidMessageInfoFilename))))
+    {
+      invalidMessageDataOut.write(reconstructedData);
+      invalidMessageDataOut.flush();
+
+      invalidMessageInfoWriter.println("ID: " + messagePart.getMessageId());
+      invalidMessageInfoWriter.println("Type ID: " + messagePart.getMessageTypeId());
+      invalidMessageInfoWriter.println("User: " + messagePart.getMessageUsername());
+      invalidMessageInfoWriter.println("Device ID: " + messagePart.getMessageDeviceId());
+      invalidMessageInfoWriter.println("Correlation ID: " + messagePart.getMessageCorrelationId());
+      invalidMessageInfoWriter.println("Data Hash: " + messagePart.getMessageDataHash());
+      invalidMessageInfoWriter.println("Checksum: " + messagePart.getMessageChecksum());
+      invalidMessageInfoWriter.println("Parts: " + numberOfParts);
+      invalidMessageInfoWriter.println("Reconstructucted Checksum: " + messageChecksum);
+      invalidMessageInfoWriter.println("Size: " + reconstructedData.length);
+
+      invalidMessageInfoWriter.flush();
+    }
+    catch (Throwable e)
+    {
+      logger.error(String.format(
+          "Failed to write the invalid message to the messaging debug directory (%s): %s",
+          messagingDebugDirectory, e.getMessage()), e);
+    }
+  }
 }
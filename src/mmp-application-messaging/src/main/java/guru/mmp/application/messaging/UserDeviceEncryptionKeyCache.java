@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.messaging;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>UserDeviceEncryptionKeyCache</code> class implements a bounded cache of the
+ * user-device encryption keys derived by the Messaging Service, indexed by the username and the
+ * device ID.
+ * <p/>
+ * Entries are evicted in least-recently-used order once the cache reaches its maximum size and
+ * are expired a fixed period of time after they were added to the cache.
+ *
+ * @author Marcus Portmann
+ */
+public class UserDeviceEncryptionKeyCache
+{
+  /* The cache entries in access order. */
+  private final LinkedHashMap<Key, Entry> entries;
+
+  /* The number of milliseconds after which a cache entry will expire. */
+  private final long expiryPeriod;
+
+  /* The number of cache hits. */
+  private final AtomicLong hits = new AtomicLong();
+
+  /* The maximum number of entries in the cache. */
+  private final int maximumSize;
+
+  /* The number of cache misses. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Constructs a new <code>UserDeviceEncryptionKeyCache</code>.
+   *
+   * @param maximumSize  the maximum number of entries in the cache
+   * @param expiryPeriod the number of seconds after which a cache entry will expire
+   */
+  public UserDeviceEncryptionKeyCache(int maximumSize, int expiryPeriod)
+  {
+    this.maximumSize = Math.max(1, maximumSize);
+    this.expiryPeriod = expiryPeriod * 1000L;
+
+    this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+      {
+        return size() > UserDeviceEncryptionKeyCache.this.maximumSize;
+      }
+    };
+  }
+
+  /**
+   * Remove all entries from the cache.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+  }
+
+  /**
+   * Returns the cached user-device encryption key for the specified user and device or
+   * <code>null</code> if no valid cache entry exists.
+   *
+   * @param username the username identifying the user
+   * @param deviceId the Universally Unique Identifier (UUID) used to uniquely identify the device
+   *
+   * @return the cached user-device encryption key or <code>null</code> if no valid cache entry
+   *         exists
+   */
+  public byte[] get(String username, UUID deviceId)
+  {
+    Key key = new Key(username, deviceId);
+
+    synchronized (this)
+    {
+      Entry entry = entries.get(key);
+
+      if (entry != null)
+      {
+        if ((System.currentTimeMillis() - entry.created) < expiryPeriod)
+        {
+          hits.incrementAndGet();
+
+          return entry.encryptionKey;
+        }
+
+        entries.remove(key);
+      }
+    }
+
+    misses.incrementAndGet();
+
+    return null;
+  }
+
+  /**
+   * Returns the number of cache hits.
+   *
+   * @return the number of cache hits
+   */
+  public long getHits()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of cache misses.
+   *
+   * @return the number of cache misses
+   */
+  public long getMisses()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Add the user-device encryption key for the specified user and device to the cache.
+   *
+   * @param username      the username identifying the user
+   * @param deviceId      the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      device
+   * @param encryptionKey the user-device encryption key
+   */
+  public void put(String username, UUID deviceId, byte[] encryptionKey)
+  {
+    Key key = new Key(username, deviceId);
+
+    synchronized (this)
+    {
+      entries.put(key, new Entry(encryptionKey));
+    }
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   *
+   * @return the number of entries in the cache
+   */
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * The <code>Entry</code> class holds a cached user-device encryption key and the time it was
+   * added to the cache.
+   */
+  private static class Entry
+  {
+    /* The time in milliseconds the entry was added to the cache. */
+    private final long created;
+
+    /* The user-device encryption key. */
+    private final byte[] encryptionKey;
+
+    /**
+     * Constructs a new <code>Entry</code>.
+     *
+     * @param encryptionKey the user-device encryption key
+     */
+    Entry(byte[] encryptionKey)
+    {
+      this.encryptionKey = encryptionKey;
+      this.created = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * The <code>Key</code> class uniquely identifies a cached user-device encryption key using the
+   * case-insensitive username and the device ID.
+   */
+  private static class Key
+  {
+    /* The Universally Unique Identifier (UUID) used to uniquely identify the device. */
+    private final UUID deviceId;
+
+    /* The lowercase username identifying the user. */
+    private final String username;
+
+    /**
+     * Constructs a new <code>Key</code>.
+     *
+     * @param username the username identifying the user
+     * @param deviceId the Universally Unique Identifier (UUID) used to uniquely identify the
+     *                 device
+     */
+    Key(String username, UUID deviceId)
+    {
+      this.username = username.toLowerCase();
+      this.deviceId = deviceId;
+    }
+
+    /**
+     * Indicates whether some other object is "equal to" this one.
+     *
+     * @param object the reference object with which to compare
+     *
+     * @return <code>true</code> if this object is the same as the object argument otherwise
+     *         <code>false</code>
+     */
+    @Override
+    public boolean equals(Object object)
+    {
+      if (this == object)
+      {
+        return true;
+      }
+
+      if ((object == null) || (getClass() != object.getClass()))
+      {
+        return false;
+      }
+
+      Key other = (Key) object;
+
+      return username.equals(other.username) && deviceId.equals(other.deviceId);
+    }
+
+    /**
+     * Returns a hash code value for the object.
+     *
+     * @return a hash code value for the object
+     */
+    @Override
+    public int hashCode()
+    {
+      return (31 * username.hashCode()) + deviceId.hashCode();
+    }
+  }
+}
@@ -356,7 +356,8 @@ public class SystemMessageHandler extends MessageHandler
 
       try
       {
-        CodeCategory codeCategory = codesService.getCodeCategory(requestData.getId(), true);
+        CodeCategory codeCategory = codesService.getCodeCategory(requestData.getId(),
+            requestData.getLastRetrieved(), requestData.getReturnCodesIfCurrent());
 
         if (codeCategory != null)
         {
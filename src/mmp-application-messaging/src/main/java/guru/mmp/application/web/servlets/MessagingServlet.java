@@ -33,7 +33,6 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
@@ -742,28 +741,33 @@ public class MessagingServlet extends HttpServlet
   private Document readRequestDocument(HttpServletRequest request)
     throws ServletException
   {
-    // Read the request data
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    /*
+     * Parse the request document directly from the request input stream rather than first
+     * reading the entire request into memory.
+     */
     ServletInputStream in = null;
 
     try
     {
       in = request.getInputStream();
 
-      byte[] readBuffer = new byte[2048];
-
-      int numberOfBytesRead;
+      Parser parser = new Parser();
 
-      while ((numberOfBytesRead = in.read(readBuffer)) != -1)
-      {
-        baos.write(readBuffer, 0, numberOfBytesRead);
-      }
+      return parser.parse(in);
     }
-    catch (Throwable e)
+    catch (IOException e)
     {
-      // A network error means that the document could not be read so stop here
+      /*
+       * A network error means that the document could not be read so stop here. A truncated or
+       * malformed document results in a ParserException instead.
+       */
       return null;
     }
+    catch (Throwable e)
+    {
+      throw new ServletException(
+          "Failed to parse the WBXML request document from the HTTP servlet request", e);
+    }
     finally
     {
       try
@@ -775,18 +779,6 @@ public class MessagingServlet extends HttpServlet
       }
       catch (Throwable ignored) {}
     }
-
-    try
-    {
-      Parser parser = new Parser();
-
-      return parser.parse(baos.toByteArray());
-    }
-    catch (Throwable e)
-    {
-      throw new ServletException(
-          "Failed to parse the WBXML request document from the HTTP servlet request", e);
-    }
   }
 
   /**
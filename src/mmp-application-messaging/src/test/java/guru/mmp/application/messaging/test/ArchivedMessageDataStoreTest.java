@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.messaging.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.messaging.ArchivedMessageDataStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>ArchivedMessageDataStoreTest</code> class contains the implementation of the JUnit
+ * tests for the <code>ArchivedMessageDataStore</code> class.
+ *
+ * @author Marcus Portmann
+ */
+public class ArchivedMessageDataStoreTest
+{
+  /**
+   * The temporary folder used to store the segment files.
+   */
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  /**
+   * Test writing the data for archived messages, rolling over to new segment files and deleting
+   * the segment files that have exceeded the retention period.
+   */
+  @Test
+  public void archivedMessageDataStoreTest()
+    throws Exception
+  {
+    File directory = temporaryFolder.newFolder();
+
+    ArchivedMessageDataStore archivedMessageDataStore = new ArchivedMessageDataStore(directory,
+        64 * 1024);
+
+    Random random = new Random(1);
+
+    YearMonth previousMonth = YearMonth.now().minusMonths(1);
+    YearMonth currentMonth = YearMonth.now();
+
+    List<byte[]> data = new ArrayList<>();
+    List<ArchivedMessageDataStore.Location> locations = new ArrayList<>();
+
+    for (int i = 0; i < 100; i++)
+    {
+      // Random data does not compress which forces the segment files to roll over
+      byte[] messageData = new byte[1024 + random.nextInt(4096)];
+
+      random.nextBytes(messageData);
+
+      data.add(messageData);
+      locations.add(archivedMessageDataStore.write((i < 50)
+          ? previousMonth
+          : currentMonth, messageData));
+    }
+
+    assertNotEquals("The segment files did not roll over", locations.get(50).getSegment(),
+        locations.get(99).getSegment());
+
+    for (int i = 0; i < data.size(); i++)
+    {
+      assertArrayEquals(String.format("The data for archived message %d is incorrect", i),
+          data.get(i), archivedMessageDataStore.read(locations.get(i)));
+    }
+
+    int numberOfSegments = directory.list().length;
+
+    int numberOfSegmentsDeleted = archivedMessageDataStore.deleteSegmentsBefore(currentMonth);
+
+    assertEquals("The segment files for the previous month were not deleted", numberOfSegments
+        - numberOfSegmentsDeleted, directory.list().length);
+
+    for (int i = 50; i < data.size(); i++)
+    {
+      assertArrayEquals(String.format("The data for archived message %d is incorrect", i),
+          data.get(i), archivedMessageDataStore.read(locations.get(i)));
+    }
+
+    archivedMessageDataStore.close();
+  }
+}
@@ -18,10 +18,21 @@ package guru.mmp.application.messaging.test;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.application.configuration.IConfigurationService;
+import guru.mmp.application.messaging.ArchivedMessage;
+import guru.mmp.application.messaging.BackgroundMessagePartAssembler;
+import guru.mmp.application.messaging.IMessagingDAO;
 import guru.mmp.application.messaging.IMessagingService;
+import guru.mmp.application.messaging.Message;
+import guru.mmp.application.messaging.MessagePart;
+import guru.mmp.application.messaging.MessageTranslator;
+import guru.mmp.application.messaging.messages.AnotherTestRequestData;
 import guru.mmp.application.test.TestClassRunner;
+import guru.mmp.common.util.Base64;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
@@ -29,6 +40,19 @@ import org.springframework.test.context.support.DirtiesContextTestExecutionListe
 import org.springframework.test.context.transaction.TransactionalTestExecutionListener;
 
 import javax.inject.Inject;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -45,10 +69,339 @@ import javax.inject.Inject;
     DirtiesContextTestExecutionListener.class, TransactionalTestExecutionListener.class })
 public class MessagingServiceTest
 {
+  private static final UUID DEVICE_ID = UUID.randomUUID();
+  private static final String USERNAME = "Administrator";
+
+  /**
+   * The assembly retry delay used to retrieve the messages created by the tests that have not been
+   * assembled, which is negative so that the messages are retrieved even though their parts have
+   * just been queued for assembly.
+   */
+  private static final int ASSEMBLY_RETRY_DELAY = -60000;
+
+  /**
+   * The description for the <b>MessagingService.AssemblyRetryDelay</b> configuration value.
+   */
+  private static final String ASSEMBLY_RETRY_DELAY_DESCRIPTION = "The delay in milliseconds after "
+      + "which a message whose parts have all been queued for assembly is queued for assembly "
+      + "again if it has not been assembled";
+
+  /**
+   * The processing retry delay used to claim the messages created by the tests, which is negative
+   * so that the messages are claimed even though they have just been processed.
+   */
+  private static final int CLAIM_PROCESSING_RETRY_DELAY = -60000;
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(MessagingServiceTest.class);
+
+  /* Background Message Part Assembler */
+  @Inject
+  private BackgroundMessagePartAssembler backgroundMessagePartAssembler;
+
+  /* Configuration Service */
+  @Inject
+  private IConfigurationService configurationService;
+
+  /* Messaging DAO */
+  @Inject
+  private IMessagingDAO messagingDAO;
+
   /* Messaging Service */
   @Inject
   private IMessagingService messagingService;
 
+  /**
+   * Test archiving messages and searching for the archived messages.
+   */
+  @Test
+  public void archivedMessagesTest()
+    throws Exception
+  {
+    UUID deviceId = UUID.randomUUID();
+
+    MessageTranslator messageTranslator = new MessageTranslator(USERNAME, deviceId);
+
+    List<Message> messages = new ArrayList<>();
+
+    for (int i = 0; i < 10; i++)
+    {
+      Message message = messageTranslator.toMessage(new AnotherTestRequestData("Test Value " + i,
+          ("Test Data " + i).getBytes()));
+
+      messagingService.archiveMessage(message);
+
+      assertTrue(messagingService.isMessageArchived(message));
+
+      messages.add(message);
+    }
+
+    messagingService.maintainMessageArchive();
+
+    LocalDateTime now = LocalDateTime.now();
+
+    List<ArchivedMessage> archivedMessages = messagingService.getArchivedMessages(USERNAME,
+        deviceId, AnotherTestRequestData.MESSAGE_TYPE_ID, now.minusHours(1), now.plusHours(1),
+        100);
+
+    assertEquals("The correct number of archived messages was not retrieved", messages.size(),
+        archivedMessages.size());
+
+    for (ArchivedMessage archivedMessage : archivedMessages)
+    {
+      assertEquals(deviceId, archivedMessage.getDeviceId());
+      assertNull(archivedMessage.getData());
+    }
+
+    assertEquals("The maximum number of archived messages was not applied", 5,
+        messagingService.getArchivedMessages(null, deviceId, null, now.minusHours(1),
+        now.plusHours(1), 5).size());
+
+    assertEquals("Archived messages were found outside the archived date range", 0,
+        messagingService.getArchivedMessages(USERNAME, deviceId, null, now.minusHours(2),
+        now.minusHours(1), 100).size());
+
+    for (Message message : messages)
+    {
+      assertArrayEquals("The data for the archived message is incorrect", message.getData(),
+          messagingService.getArchivedMessageData(message.getId()));
+    }
+
+    assertNull(messagingService.getArchivedMessageData(UUID.randomUUID()));
+  }
+
+  /**
+   * Test that the message parts locked for assembly are returned to the assembly queue when some
+   * of the message parts for the message have already been locked by another thread.
+   */
+  @Test
+  public void assembleMessageWithPartiallyLockedPartsTest()
+    throws Exception
+  {
+    int numberOfParts = 3;
+
+    Message message = new MessageTranslator(USERNAME, DEVICE_ID).toMessage(
+        new AnotherTestRequestData("Test Value", "Test Data".getBytes()), UUID.randomUUID());
+
+    List<MessagePart> messageParts = new ArrayList<>();
+
+    for (int i = 0; i < numberOfParts; i++)
+    {
+      MessagePart messagePart = new MessagePart(i + 1, numberOfParts, message.getId(),
+          message.getUsername(), message.getDeviceId(), message.getTypeId(),
+          message.getCorrelationId(), message.getPriority(), message.getCreated(),
+          message.getDataHash(), message.getEncryptionIV(), "Checksum", message.getData());
+
+      // The first message part has already been locked for assembly by another thread
+      messagePart.setStatus((i == 0)
+          ? MessagePart.Status.ASSEMBLING
+          : MessagePart.Status.QUEUED_FOR_ASSEMBLY);
+
+      messagingDAO.createMessagePart(messagePart);
+
+      messageParts.add(messagePart);
+    }
+
+    try
+    {
+      messagingService.assembleMessage(messageParts.get(numberOfParts - 1));
+
+      assertEquals("The locked message parts were not returned to the assembly queue",
+          numberOfParts - 1, messagingDAO.getMessagePartsQueuedForAssembly(message.getId(),
+          "Test").size());
+    }
+    finally
+    {
+      messagingDAO.deleteMessagePartsForMessage(message.getId());
+    }
+  }
+
+  /**
+   * Test that a message whose parts have all been queued for assembly, but which was not
+   * assembled, e.g. because the application was restarted before the message was assembled, is
+   * assembled by the Background Message Part Assembler and that a message whose parts have not
+   * all been queued for assembly is ignored.
+   */
+  @Test
+  public void assembleUnassembledMessagesTest()
+    throws Exception
+  {
+    MessageTranslator messageTranslator = new MessageTranslator(USERNAME, DEVICE_ID);
+
+    Message message = messageTranslator.toMessage(new AnotherTestRequestData("Test Value",
+        "Test Data".getBytes()), UUID.randomUUID());
+
+    Message incompleteMessage = messageTranslator.toMessage(new AnotherTestRequestData(
+        "Test Value", "Test Data".getBytes()), UUID.randomUUID());
+
+    try
+    {
+      createMessagePartsQueuedForAssembly(message, 2, 2);
+      createMessagePartsQueuedForAssembly(incompleteMessage, 2, 1);
+
+      assertFalse("The message that has just been queued for assembly was retrieved",
+          containsMessage(messagingDAO.getMessagePartsForUnassembledMessages(60000, 1000),
+          message));
+
+      List<MessagePart> messageParts = messagingDAO.getMessagePartsForUnassembledMessages(
+          ASSEMBLY_RETRY_DELAY, 1000);
+
+      assertTrue("The message that has not been assembled was not retrieved", containsMessage(
+          messageParts, message));
+      assertFalse("The message whose parts have not all been queued for assembly was retrieved",
+          containsMessage(messageParts, incompleteMessage));
+
+      configurationService.setValue("MessagingService.AssemblyRetryDelay", ASSEMBLY_RETRY_DELAY,
+          ASSEMBLY_RETRY_DELAY_DESCRIPTION);
+
+      backgroundMessagePartAssembler.assembleUnassembledMessages();
+
+      // Wait for the message parts to be deleted once the message has been assembled
+      long started = System.currentTimeMillis();
+
+      while ((!messagingDAO.allPartsQueuedForMessage(message.getId(), 0))
+          && ((System.currentTimeMillis() - started) < 10000L))
+      {
+        Thread.sleep(10L);
+      }
+
+      assertTrue("The message that has not been assembled was not assembled",
+          messagingDAO.allPartsQueuedForMessage(message.getId(), 0));
+      assertTrue("The message whose parts have not all been queued for assembly was assembled",
+          messagingDAO.allPartsQueuedForMessage(incompleteMessage.getId(), 1));
+    }
+    finally
+    {
+      configurationService.setValue("MessagingService.AssemblyRetryDelay", 60000,
+          ASSEMBLY_RETRY_DELAY_DESCRIPTION);
+
+      messagingDAO.deleteMessagePartsForMessage(message.getId());
+      messagingDAO.deleteMessagePartsForMessage(incompleteMessage.getId());
+      messagingService.deleteMessage(message.getId());
+    }
+  }
+
+  /**
+   * Test the throughput of the Background Message Processor when processing a burst of
+   * asynchronous messages queued for processing.
+   * <p/>
+   * The messages must be processed as soon as they are queued rather than on the next scheduled
+   * run of the Background Message Processor.
+   */
+  @Test
+  public void backgroundMessageProcessingThroughputTest()
+    throws Exception
+  {
+    int numberOfMessages = 200;
+
+    MessageTranslator messageTranslator = new MessageTranslator(USERNAME, DEVICE_ID);
+
+    List<UUID> messageIds = new ArrayList<>();
+
+    long started = System.currentTimeMillis();
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      Message requestMessage = messageTranslator.toMessage(new AnotherTestRequestData(
+          "Test Value " + i, ("Test Data " + i).getBytes()), UUID.randomUUID());
+
+      messagingService.queueMessageForProcessing(requestMessage);
+
+      messageIds.add(requestMessage.getId());
+    }
+
+    long queued = System.currentTimeMillis();
+
+    // Wait for the Background Message Processor to process all the messages
+    for (UUID messageId : messageIds)
+    {
+      while ((messagingService.getMessage(messageId) != null)
+          && ((System.currentTimeMillis() - started) < 30000L))
+      {
+        Thread.sleep(10L);
+      }
+    }
+
+    long processed = System.currentTimeMillis();
+
+    for (UUID messageId : messageIds)
+    {
+      assertTrue(String.format("The message (%s) was not processed", messageId),
+          messagingService.getMessage(messageId) == null);
+    }
+
+    logger.info(String.format("Queued %d messages in %d ms and processed them within %d ms using "
+        + "%d thread(s) (%.1f messages/second)", numberOfMessages, queued - started,
+        processed - started, messagingService.getNumberOfProcessingThreads(), (numberOfMessages
+        * 1000.0) / Math.max(1L, processed - started)));
+  }
+
+  /**
+   * Compare the number of messages per second that can be claimed for processing one at a time,
+   * which is how the Background Message Processor previously retrieved messages, with the number
+   * claimed per second in batches, and check that both claim every message exactly once.
+   * <p/>
+   * The rates are only logged since they depend on the load on the machine running the test.
+   */
+  @Test
+  public void claimMessagesForProcessingTest()
+    throws Exception
+  {
+    int numberOfMessages = 200;
+    int batchSize = 20;
+
+    List<UUID> messageIds = createMessagesToClaim(numberOfMessages);
+
+    long started = System.nanoTime();
+
+    Set<UUID> claimedMessageIds = new HashSet<>();
+
+    Message message;
+
+    while ((message = messagingDAO.getNextMessageQueuedForProcessing(
+        CLAIM_PROCESSING_RETRY_DELAY, "Claim Test")) != null)
+    {
+      claimMessage(message, messageIds, claimedMessageIds);
+    }
+
+    double singleClaimRate = numberOfMessages / ((System.nanoTime() - started) / 1000000000.0);
+
+    assertEquals("The correct number of messages was not claimed one at a time", numberOfMessages,
+        claimedMessageIds.size());
+
+    deleteMessages(messageIds);
+
+    messageIds = createMessagesToClaim(numberOfMessages);
+
+    started = System.nanoTime();
+
+    claimedMessageIds.clear();
+
+    List<Message> messages;
+
+    while (!(messages = messagingDAO.getNextMessagesQueuedForProcessing(batchSize,
+        CLAIM_PROCESSING_RETRY_DELAY, "Claim Test")).isEmpty())
+    {
+      assertTrue("Too many messages were claimed in a batch", messages.size() <= batchSize);
+
+      for (Message batchMessage : messages)
+      {
+        claimMessage(batchMessage, messageIds, claimedMessageIds);
+      }
+    }
+
+    double batchClaimRate = numberOfMessages / ((System.nanoTime() - started) / 1000000000.0);
+
+    assertEquals("The correct number of messages was not claimed in batches", numberOfMessages,
+        claimedMessageIds.size());
+
+    deleteMessages(messageIds);
+
+    logger.info(String.format("Claimed %d messages for processing at %.0f messages/second one "
+        + "at a time and %.0f messages/second in batches of %d", numberOfMessages,
+        singleClaimRate, batchClaimRate, batchSize));
+  }
+
   /**
    * Test.
    */
@@ -58,6 +411,186 @@ public class MessagingServiceTest
   {
     messagingService.getMaximumProcessingAttempts();
   }
+
+  /**
+   * Test the caching of the derived user-device encryption keys and compare the per-message
+   * cost of encrypting and decrypting messages using derived and cached keys.
+   */
+  @Test
+  public void userDeviceEncryptionKeyCacheTest()
+    throws Exception
+  {
+    int numberOfMessages = 1000;
+
+    MessageTranslator messageTranslator = new MessageTranslator(USERNAME, DEVICE_ID);
+
+    // Warm up the ciphers and message digests used by the Messaging Service
+    for (int i = 0; i < 100; i++)
+    {
+      messagingService.deriveUserDeviceEncryptionKey(USERNAME, UUID.randomUUID());
+    }
+
+    // Measure the cost of encrypting and decrypting messages when the key must be derived
+    long started = System.nanoTime();
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      MessageTranslator uncachedMessageTranslator = new MessageTranslator(USERNAME,
+          UUID.randomUUID());
+
+      Message message = uncachedMessageTranslator.toMessage(new AnotherTestRequestData(
+          "Test Value " + i, ("Test Data " + i).getBytes()));
+
+      assertTrue(messagingService.encryptMessage(message));
+      assertTrue(messagingService.decryptMessage(message));
+    }
+
+    long derivedKeyCost = System.nanoTime() - started;
+
+    // Measure the cost of encrypting and decrypting messages when the key is cached
+    byte[] userDeviceEncryptionKey = messagingService.deriveUserDeviceEncryptionKey(USERNAME,
+        DEVICE_ID);
+
+    long hits = messagingService.getUserDeviceEncryptionKeyCacheHits();
+    long misses = messagingService.getUserDeviceEncryptionKeyCacheMisses();
+
+    started = System.nanoTime();
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      Message message = messageTranslator.toMessage(new AnotherTestRequestData("Test Value " + i,
+          ("Test Data " + i).getBytes()));
+
+      assertTrue(messagingService.encryptMessage(message));
+      assertTrue(messagingService.decryptMessage(message));
+    }
+
+    long cachedKeyCost = System.nanoTime() - started;
+
+    assertTrue("The user-device encryption keys were not retrieved from the cache",
+        (messagingService.getUserDeviceEncryptionKeyCacheHits() - hits) >= (2 * numberOfMessages));
+    assertEquals("The user-device encryption keys were unexpectedly derived", misses,
+        messagingService.getUserDeviceEncryptionKeyCacheMisses());
+    assertArrayEquals("The cached user-device encryption key is not the derived key",
+        userDeviceEncryptionKey, messagingService.deriveUserDeviceEncryptionKey(
+        USERNAME.toLowerCase(), DEVICE_ID));
+
+    logger.info(String.format("Encrypted and decrypted %d messages in %d ms using derived keys "
+        + "(%.1f us/message) and in %d ms using cached keys (%.1f us/message)", numberOfMessages,
+        derivedKeyCost / 1000000L, (derivedKeyCost / 1000.0) / numberOfMessages, cachedKeyCost
+        / 1000000L, (cachedKeyCost / 1000.0) / numberOfMessages));
+  }
+
+  private void claimMessage(Message message, List<UUID> messageIds, Set<UUID> claimedMessageIds)
+    throws Exception
+  {
+    if (messageIds.contains(message.getId()))
+    {
+      assertEquals("The claimed message is not being processed", Message.Status.PROCESSING,
+          message.getStatus());
+      assertTrue(String.format("The message (%s) was claimed more than once", message.getId()),
+          claimedMessageIds.add(message.getId()));
+    }
+    else
+    {
+      // Release a message queued by another test so it can still be processed
+      messagingDAO.unlockMessage(message.getId(), Message.Status.QUEUED_FOR_PROCESSING);
+    }
+  }
+
+  private boolean containsMessage(List<MessagePart> messageParts, Message message)
+  {
+    for (MessagePart messagePart : messageParts)
+    {
+      if (messagePart.getMessageId().equals(message.getId()))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Create the message parts queued for assembly for the message.
+   *
+   * @param message       the message
+   * @param totalParts    the total number of parts for the message
+   * @param numberOfParts the number of message parts to create
+   */
+  private void createMessagePartsQueuedForAssembly(Message message, int totalParts,
+      int numberOfParts)
+    throws Exception
+  {
+    String messageChecksum = Base64.encodeBytes(MessageDigest.getInstance("SHA-256").digest(
+        message.getData()));
+
+    int partSize = (message.getData().length + totalParts - 1) / totalParts;
+
+    for (int i = 0; i < numberOfParts; i++)
+    {
+      int offset = i * partSize;
+
+      byte[] messagePartData = new byte[Math.min(partSize, message.getData().length - offset)];
+
+      System.arraycopy(message.getData(), offset, messagePartData, 0, messagePartData.length);
+
+      MessagePart messagePart = new MessagePart(i + 1, totalParts, message.getId(),
+          message.getUsername(), message.getDeviceId(), message.getTypeId(),
+          message.getCorrelationId(), message.getPriority(), message.getCreated(),
+          message.getDataHash(), message.getEncryptionIV(), messageChecksum, messagePartData);
+
+      messagePart.setStatus(MessagePart.Status.QUEUED_FOR_ASSEMBLY);
+
+      messagingDAO.createMessagePart(messagePart);
+    }
+  }
+
+  /**
+   * Create the messages queued for processing that will be claimed by a test.
+   * <p/>
+   * The processing attempts for the messages are incremented, which marks them as just
+   * processed, so that the Background Message Processor does not claim them until the processing
+   * retry delay has elapsed. The test claims them using a negative processing retry delay.
+   *
+   * @param numberOfMessages the number of messages to create
+   *
+   * @return the IDs for the messages
+   */
+  private List<UUID> createMessagesToClaim(int numberOfMessages)
+    throws Exception
+  {
+    MessageTranslator messageTranslator = new MessageTranslator(USERNAME, DEVICE_ID);
+
+    List<UUID> messageIds = new ArrayList<>();
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      Message message = messageTranslator.toMessage(new AnotherTestRequestData("Test Value " + i,
+          ("Test Data " + i).getBytes()), UUID.randomUUID());
+
+      message.setStatus(Message.Status.QUEUED_FOR_PROCESSING);
+
+      messagingDAO.createMessage(message);
+      messagingDAO.incrementMessageProcessingAttempts(message);
+
+      messageIds.add(message.getId());
+    }
+
+    return messageIds;
+  }
+
+  private void deleteMessages(List<UUID> messageIds)
+    throws Exception
+  {
+    for (UUID messageId : messageIds)
+    {
+      messagingDAO.deleteMessage(messageId);
+
+      assertNull(String.format("The claimed message (%s) was not deleted", messageId),
+          messagingService.getMessage(messageId));
+    }
+  }
 }
 
 
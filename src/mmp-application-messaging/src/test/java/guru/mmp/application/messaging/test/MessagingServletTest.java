@@ -288,6 +288,31 @@ public class MessagingServletTest
     assertEquals("Test Value", responseData.getTestValue());
   }
 
+  /**
+   * Test that a truncated WBXML request document is rejected with an error response.
+   */
+  @Test
+  public void truncatedRequestTest()
+    throws Exception
+  {
+    MessageDownloadRequest messageDownloadRequest = new MessageDownloadRequest(DEVICE_ID,
+        USERNAME);
+
+    byte[] requestData = messageDownloadRequest.toWBXML();
+
+    byte[] truncatedRequestData = new byte[requestData.length / 2];
+
+    System.arraycopy(requestData, 0, truncatedRequestData, 0, truncatedRequestData.length);
+
+    InvocationContext invocationContext = getMessagingServletInvocationContext(
+        truncatedRequestData);
+
+    invocationContext.getServlet().service(invocationContext.getRequest(),
+        invocationContext.getResponse());
+
+    assertEquals(500, invocationContext.getServletResponse().getResponseCode());
+  }
+
   private byte[] authenticateUser(String username, String password, UUID deviceId)
     throws Exception
   {
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.web.servlets;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.reporting.IReportingService;
+import guru.mmp.application.reporting.ReportFormat;
+import guru.mmp.application.reporting.ReportJob;
+import guru.mmp.application.reporting.ReportType;
+import guru.mmp.application.web.WebSession;
+import guru.mmp.application.web.template.TemplateReportingSecurity;
+import guru.mmp.common.util.StringUtil;
+import org.apache.wicket.injection.Injector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>ReportJobServlet</code> class implements the servlet used to submit report jobs, which
+ * create reports asynchronously, poll their status and download their results.
+ * <p/>
+ * A report job is submitted by passing the <code>viewReportParametersId</code> parameter, and
+ * optionally the <code>format</code> parameter, which returns HTTP 202 (Accepted) with the ID of
+ * the report job. The report job is polled by passing the <code>reportJobId</code> parameter,
+ * which returns HTTP 202 (Accepted) while the report job is queued or executing, the report once
+ * the report job has completed or HTTP 500 (Internal Server Error) if the report job failed. An
+ * invalid <code>reportJobId</code> or <code>format</code> parameter returns HTTP 400 (Bad
+ * Request).
+ *
+ * @author Marcus Portmann
+ */
+public class ReportJobServlet extends HttpServlet
+{
+  /**
+   * The number of seconds a client should wait before polling a report job again.
+   */
+  private static final String RETRY_AFTER = "5";
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(ReportJobServlet.class);
+  private static final long serialVersionUID = 1000000;
+
+  /**
+   * The real path to the WEB-INF/report folder where the local Jasper reports are stored.
+   */
+  private String localReportFolderPath;
+
+  /* Reporting Service */
+  @Inject
+  private IReportingService reportingService;
+
+  /**
+   * @see HttpServlet#HttpServlet()
+   */
+  public ReportJobServlet()
+  {
+    super();
+
+    Injector.get().inject(this);
+  }
+
+  /**
+   * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
+   */
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
+  {
+    WebSession webSession = WebSession.exists()
+        ? (WebSession) WebSession.get()
+        : null;
+
+    if ((webSession == null)
+        || (!webSession.hasAcccessToFunction(TemplateReportingSecurity.FUNCTION_CODE_VIEW_REPORT)))
+    {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+      return;
+    }
+
+    String reportJobId = request.getParameter("reportJobId");
+    String viewReportParametersId = request.getParameter("viewReportParametersId");
+
+    try
+    {
+      if (!StringUtil.isNullOrEmpty(reportJobId))
+      {
+        UUID parsedReportJobId = parseReportJobId(reportJobId);
+
+        if (parsedReportJobId == null)
+        {
+          response.sendError(HttpServletResponse.SC_BAD_REQUEST, String.format(
+              "Invalid report job ID (%s)", reportJobId));
+
+          return;
+        }
+
+        pollReportJob(webSession, parsedReportJobId, response);
+      }
+      else if (!StringUtil.isNullOrEmpty(viewReportParametersId))
+      {
+        String format = request.getParameter("format");
+
+        ReportFormat reportFormat = parseReportFormat(format);
+
+        if (reportFormat == null)
+        {
+          response.sendError(HttpServletResponse.SC_BAD_REQUEST, String.format(
+              "Invalid report format (%s)", format));
+
+          return;
+        }
+
+        submitReportJob(webSession, viewReportParametersId, reportFormat, response);
+      }
+      else
+      {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      }
+    }
+    catch (Throwable e)
+    {
+      logger.error("Failed to process the report job request", e);
+
+      if (!response.isCommitted())
+      {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      }
+    }
+  }
+
+  /**
+   * @see HttpServlet#doPost(HttpServletRequest request, HttpServletResponse response)
+   */
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
+  {
+    doGet(request, response);
+  }
+
+  private String getLocalReportFolderPath()
+  {
+    if (localReportFolderPath == null)
+    {
+      localReportFolderPath = getServletContext().getRealPath("WEB-INF/report") + "/";
+    }
+
+    return localReportFolderPath;
+  }
+
+  /**
+   * Returns the report format for the <code>format</code> parameter.
+   *
+   * @param format the <code>format</code> parameter
+   *
+   * @return the report format, which is PDF if the parameter was not specified, or
+   *         <code>null</code> if the parameter does not specify a valid report format
+   */
+  private ReportFormat parseReportFormat(String format)
+  {
+    if (StringUtil.isNullOrEmpty(format))
+    {
+      return ReportFormat.PDF;
+    }
+
+    try
+    {
+      return ReportFormat.valueOf(format.toUpperCase());
+    }
+    catch (IllegalArgumentException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the Universally Unique Identifier (UUID) for the <code>reportJobId</code> parameter.
+   *
+   * @param reportJobId the <code>reportJobId</code> parameter
+   *
+   * @return the Universally Unique Identifier (UUID) for the report job or <code>null</code> if the
+   *         parameter is not a valid UUID
+   */
+  private UUID parseReportJobId(String reportJobId)
+  {
+    try
+    {
+      return UUID.fromString(reportJobId);
+    }
+    catch (IllegalArgumentException e)
+    {
+      return null;
+    }
+  }
+
+  private void pollReportJob(WebSession webSession, UUID reportJobId,
+      HttpServletResponse response)
+    throws Exception
+  {
+    ReportJob reportJob = reportingService.getReportJob(reportJobId);
+
+    // Only the user that submitted the report job may retrieve it
+    if ((reportJob == null) || (!reportJob.getUsername().equals(webSession.getUsername())))
+    {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+
+      return;
+    }
+
+    switch (reportJob.getStatus())
+    {
+      case COMPLETED:
+        response.addHeader("content-disposition", "filename=" + reportJob.getName() + "."
+            + reportJob.getFormat().getExtension());
+        response.addHeader("Accept-Ranges", "none");
+
+        response.setContentType(reportJob.getFormat().getContentType());
+
+        reportingService.writeReportJobResult(reportJobId, response.getOutputStream());
+
+        break;
+
+      case FAILED:
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, String.format(
+            "The report job (%s) failed", reportJobId));
+
+        break;
+
+      default:
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.addHeader("Retry-After", RETRY_AFTER);
+        response.setContentType("text/plain");
+
+        response.getWriter().write(reportJob.getStatus().getName());
+
+        break;
+    }
+  }
+
+  private void submitReportJob(WebSession webSession, String viewReportParametersId,
+      ReportFormat reportFormat, HttpServletResponse response)
+    throws Exception
+  {
+    try
+    {
+      ViewReportParameters viewReportParameters = webSession.getViewReportParameters(
+          viewReportParametersId);
+
+      // Only reports stored in the database can be created using a report job
+      if ((viewReportParameters == null)
+          || (viewReportParameters.getReportType() != ReportType.DATABASE))
+      {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+
+        return;
+      }
+
+      Map<String, Object> parameters = new HashMap<>();
+
+      parameters.put("SUBREPORT_DIR", getLocalReportFolderPath());
+      parameters.putAll(viewReportParameters.getReportParameters());
+
+      ReportJob reportJob = reportingService.submitReportJob(UUID.fromString(
+          viewReportParameters.getReportFileNameOrId()), parameters, reportFormat,
+          webSession.getUsername());
+
+      response.setStatus(HttpServletResponse.SC_ACCEPTED);
+      response.addHeader("Location", "reportJob?reportJobId=" + reportJob.getId());
+      response.setContentType("text/plain");
+
+      response.getWriter().write(reportJob.getId().toString());
+    }
+    finally
+    {
+      webSession.removeViewReportParameters(viewReportParametersId);
+    }
+  }
+}
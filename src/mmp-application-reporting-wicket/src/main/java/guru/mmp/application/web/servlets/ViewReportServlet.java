@@ -20,15 +20,14 @@ package guru.mmp.application.web.servlets;
 
 import guru.mmp.application.reporting.IReportingDAO;
 import guru.mmp.application.reporting.IReportingService;
-import guru.mmp.application.reporting.ReportDefinition;
+import guru.mmp.application.reporting.ReportFormat;
 import guru.mmp.application.reporting.ReportType;
 import guru.mmp.application.web.WebSession;
 import guru.mmp.application.web.template.TemplateReportingSecurity;
 import guru.mmp.common.util.ResourceUtil;
 import guru.mmp.common.util.StringUtil;
-import net.sf.jasperreports.engine.JasperExportManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
 import org.apache.wicket.injection.Injector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,11 +37,14 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -62,6 +64,11 @@ public class ViewReportServlet extends HttpServlet
    */
   private String localReportFolderPath;
 
+  /**
+   * The compiled local report templates keyed by file name.
+   */
+  private Map<String, LocalReport> localReports = new ConcurrentHashMap<>();
+
   /* Reporting DAO */
   @Inject
   private IReportingDAO reportingDAO;
@@ -132,21 +139,16 @@ public class ViewReportServlet extends HttpServlet
                     parameters.put(reportParameter.getKey(), reportParameter.getValue());
                   }
 
-                  // Generate the report
-                  JasperPrint jasperPrint = JasperFillManager.fillReport(new ByteArrayInputStream(
-                      getLocalReportTemplate(viewReportParameters.getReportFileNameOrId())),
-                      parameters, connection);
-
                   response.addHeader("content-disposition", "filename="
                       + viewReportParameters.getReportName() + ".pdf");
                   response.addHeader("Accept-Ranges", "none");
 
-                  response.setContentType("application/pdf");
+                  response.setContentType(ReportFormat.PDF.getContentType());
 
-                  OutputStream out = response.getOutputStream();
-
-                  out.write(JasperExportManager.exportReportToPdf(jasperPrint));
-                  out.flush();
+                  // Generate the report and stream it to the client
+                  reportingService.createReport(getLocalReport(
+                      viewReportParameters.getReportFileNameOrId()), parameters, connection,
+                      ReportFormat.PDF, response.getOutputStream());
 
                   return;
                 }
@@ -155,10 +157,10 @@ public class ViewReportServlet extends HttpServlet
               // Database Report
               else if (viewReportParameters.getReportType() == ReportType.DATABASE)
               {
-                ReportDefinition reportDefinition = reportingService.getReportDefinition(
-                    UUID.fromString(viewReportParameters.getReportFileNameOrId()));
+                JasperReport jasperReport = reportingService.getCompiledReport(UUID.fromString(
+                    viewReportParameters.getReportFileNameOrId()));
 
-                if (reportDefinition != null)
+                if (jasperReport != null)
                 {
                   try (Connection connection = reportingDAO.getDataSource().getConnection())
                   {
@@ -173,20 +175,15 @@ public class ViewReportServlet extends HttpServlet
                       parameters.put(reportParameter.getKey(), reportParameter.getValue());
                     }
 
-                    // Generate the report
-                    JasperPrint jasperPrint = JasperFillManager.fillReport(new ByteArrayInputStream(
-                        reportDefinition.getTemplate()), parameters, connection);
-
                     response.addHeader("content-disposition", "filename="
                         + viewReportParameters.getReportName() + ".pdf");
                     response.addHeader("Accept-Ranges", "none");
 
-                    response.setContentType("application/pdf");
-
-                    OutputStream out = response.getOutputStream();
+                    response.setContentType(ReportFormat.PDF.getContentType());
 
-                    out.write(JasperExportManager.exportReportToPdf(jasperPrint));
-                    out.flush();
+                    // Generate the report and stream it to the client
+                    reportingService.createReport(jasperReport, parameters, connection,
+                        ReportFormat.PDF, response.getOutputStream());
 
                     return;
                   }
@@ -266,63 +263,62 @@ public class ViewReportServlet extends HttpServlet
     return localReportFolderPath;
   }
 
-  private byte[] getLocalReportTemplate(String reportFileName)
+  private JasperReport getLocalReport(String reportFileName)
     throws ServletException
   {
-    // TODO: Cache report templates
-
-    byte[] reportTemplate = null;
-
-    InputStream is = null;
-
     try
     {
-      String localReportPath = getLocalReportFolderPath() + reportFileName;
-
-      File file = new File(localReportPath);
+      File file = new File(getLocalReportFolderPath() + reportFileName);
 
       if (!file.exists())
       {
         throw new ServletException(String.format("The local report template (%s) does not exist",
-            localReportPath));
+            file.getPath()));
       }
 
-      is = new FileInputStream(localReportPath);
+      long lastModified = file.lastModified();
 
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      LocalReport localReport = localReports.get(reportFileName);
 
-      byte[] buffer = new byte[4096];
-      int numberOfBytesRead;
-
-      while ((numberOfBytesRead = is.read(buffer)) != -1)
+      if ((localReport == null) || (localReport.lastModified != lastModified))
       {
-        baos.write(buffer, 0, numberOfBytesRead);
+        localReport = new LocalReport((JasperReport) JRLoader.loadObject(file), lastModified);
+
+        localReports.put(reportFileName, localReport);
       }
 
-      reportTemplate = baos.toByteArray();
+      return localReport.jasperReport;
+    }
+    catch (ServletException e)
+    {
+      throw e;
     }
     catch (Throwable e)
     {
       throw new ServletException(String.format("Failed to load the local report template (%s)",
           reportFileName), e);
     }
-    finally
+  }
+
+  /**
+   * The <code>LocalReport</code> class holds a compiled local report template and the time the
+   * template file was last modified, which is used to detect when the template has changed.
+   */
+  private static class LocalReport
+  {
+    private JasperReport jasperReport;
+    private long lastModified;
+
+    /**
+     * Constructs a new <code>LocalReport</code>.
+     *
+     * @param jasperReport the compiled local report template
+     * @param lastModified the time the template file was last modified
+     */
+    LocalReport(JasperReport jasperReport, long lastModified)
     {
-      try
-      {
-        if (is != null)
-        {
-          is.close();
-        }
-      }
-      catch (Throwable e)
-      {
-        logger.error(String.format(
-            "Failed to close the input stream while loading the local report template (%s)",
-            reportFileName), e);
-      }
+      this.jasperReport = jasperReport;
+      this.lastModified = lastModified;
     }
-
-    return reportTemplate;
   }
 }
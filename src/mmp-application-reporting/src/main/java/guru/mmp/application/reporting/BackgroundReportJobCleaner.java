@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.reporting;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>BackgroundReportJobCleaner</code> class implements the Background Report Job Cleaner,
+ * which deletes the report jobs and their results once they have expired.
+ *
+ * @author Marcus Portmann
+ */
+@Service
+@SuppressWarnings("unused")
+public class BackgroundReportJobCleaner
+{
+  /* Logger */
+  private static Logger logger = LoggerFactory.getLogger(BackgroundReportJobCleaner.class);
+
+  /* Reporting Service */
+  @Inject
+  private IReportingService reportingService;
+
+  /**
+   * Initialise the Background Report Job Cleaner.
+   */
+  @PostConstruct
+  public void init()
+  {
+    logger.info("Initialising the Background Report Job Cleaner");
+
+    if (reportingService == null)
+    {
+      logger.error("Failed to initialise the Background Report Job Cleaner: "
+          + "The Reporting Service was NOT injected");
+    }
+  }
+
+  /**
+   * Delete the expired report jobs.
+   */
+  @Scheduled(cron = "0 * * * * *")
+  @Async("reportingTaskExecutor")
+  void deleteExpiredReportJobs()
+  {
+    try
+    {
+      int numberOfExpiredReportJobs = reportingService.deleteExpiredReportJobs();
+
+      if (logger.isDebugEnabled())
+      {
+        logger.debug(String.format("Deleted %d expired report job(s)", numberOfExpiredReportJobs));
+      }
+    }
+    catch (Throwable e)
+    {
+      logger.error("Failed to delete the expired report jobs", e);
+    }
+  }
+}
@@ -18,8 +18,10 @@ package guru.mmp.application.reporting;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import net.sf.jasperreports.engine.JasperReport;
 import org.w3c.dom.Document;
 
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +43,52 @@ public interface IReportingService
    */
   String SYSTEM_USERNAME = "SYSTEM";
 
+  /**
+   * Create the report using a connection retrieved from the application data source and write it
+   * to the output stream in the specified format.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   * @param parameters   the parameters for the report
+   * @param format       the format for the report
+   * @param out          the output stream the report will be written to
+   */
+  void createReport(UUID definitionId, Map<String, Object> parameters, ReportFormat format,
+      OutputStream out)
+    throws ReportingServiceException;
+
+  /**
+   * Create the report and write it to the output stream in the specified format.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   * @param parameters   the parameters for the report
+   * @param connection   the database connection used to retrieve the report data
+   * @param format       the format for the report
+   * @param out          the output stream the report will be written to
+   */
+  void createReport(UUID definitionId, Map<String, Object> parameters, Connection connection,
+      ReportFormat format, OutputStream out)
+    throws ReportingServiceException;
+
+  /**
+   * Create the report using the compiled JasperReports template and write it to the output stream
+   * in the specified format.
+   * <p/>
+   * If virtualization is enabled the pages of the filled report are swapped out to a file once
+   * the maximum number of pages held in memory is reached, which bounds the heap used to fill
+   * large reports.
+   *
+   * @param jasperReport the compiled JasperReports template for the report
+   * @param parameters   the parameters for the report
+   * @param connection   the database connection used to retrieve the report data
+   * @param format       the format for the report
+   * @param out          the output stream the report will be written to
+   */
+  void createReport(JasperReport jasperReport, Map<String, Object> parameters,
+      Connection connection, ReportFormat format, OutputStream out)
+    throws ReportingServiceException;
+
   /**
    * Create a PDF for the report using a connection retrieved from the application data source.
    *
@@ -79,6 +127,18 @@ public interface IReportingService
   byte[] createReportPDF(UUID definitionId, Map<String, Object> parameters, Document document)
     throws ReportingServiceException;
 
+  /**
+   * Delete the report jobs, and their results, that completed or failed longer ago than the
+   * report job result expiry.
+   * <p/>
+   * Result files that do not belong to a known report job, e.g. because they were left behind
+   * when the application was restarted, are also deleted once they have expired.
+   *
+   * @return the number of report jobs that were deleted
+   */
+  int deleteExpiredReportJobs()
+    throws ReportingServiceException;
+
   /**
    * Delete the existing report definition.
    *
@@ -88,6 +148,34 @@ public interface IReportingService
   void deleteReportDefinition(UUID id)
     throws ReportingServiceException;
 
+  /**
+   * Delete the report job and its result.
+   * <p/>
+   * If the report job is queued it will not be executed and if it is executing its result will be
+   * discarded when it finishes.
+   *
+   * @param reportJobId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                    report job
+   */
+  void deleteReportJob(UUID reportJobId)
+    throws ReportingServiceException;
+
+  /**
+   * Retrieve the compiled JasperReports template for the report definition.
+   * <p/>
+   * The compiled templates are cached so that the template does not have to be retrieved from the
+   * database and deserialized every time the report is created. The cached template is discarded
+   * when the report definition is saved or deleted.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   *
+   * @return the compiled JasperReports template for the report definition or <code>null</code> if
+   *         the report definition could not be found
+   */
+  JasperReport getCompiledReport(UUID definitionId)
+    throws ReportingServiceException;
+
   /**
    * Returns the real path to the folder where the local Jasper reports are stored.
    *
@@ -142,6 +230,34 @@ public interface IReportingService
   List<ReportDefinition> getReportDefinitions()
     throws ReportingServiceException;
 
+  /**
+   * Retrieve the report job.
+   *
+   * @param reportJobId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                    report job
+   *
+   * @return the report job or <code>null</code> if the report job could not be found
+   */
+  ReportJob getReportJob(UUID reportJobId);
+
+  /**
+   * Returns the path to the directory where the pages of large reports are swapped out to while
+   * the reports are being filled.
+   *
+   * @return the path to the directory where the pages of large reports are swapped out to while
+   *         the reports are being filled
+   */
+  String getVirtualizerDirectory();
+
+  /**
+   * Returns the maximum number of pages of a report that are held in memory while the report is
+   * being filled before pages are swapped out to a file.
+   *
+   * @return the maximum number of pages of a report that are held in memory while the report is
+   *         being filled or zero if virtualization is disabled
+   */
+  int getVirtualizerMaxSize();
+
   /**
    * Check whether the report definition exists.
    *
@@ -174,4 +290,89 @@ public interface IReportingService
    *                              stored
    */
   void setLocalReportFolderPath(String localReportFolderPath);
+
+  /**
+   * Set the maximum number of report jobs for the same report definition that can execute at the
+   * same time.
+   *
+   * @param maximumConcurrentReportJobsPerDefinition the maximum number of report jobs for the same
+   *                                                 report definition that can execute at the
+   *                                                 same time
+   */
+  void setMaximumConcurrentReportJobsPerDefinition(int maximumConcurrentReportJobsPerDefinition);
+
+  /**
+   * Set the maximum number of report jobs that can be queued waiting for execution.
+   *
+   * @param maximumQueuedReportJobs the maximum number of report jobs that can be queued waiting
+   *                                for execution
+   */
+  void setMaximumQueuedReportJobs(int maximumQueuedReportJobs);
+
+  /**
+   * Set the path to the directory where the results of report jobs are stored.
+   *
+   * @param reportJobResultDirectory the path to the directory where the results of report jobs
+   *                                 are stored
+   */
+  void setReportJobResultDirectory(String reportJobResultDirectory);
+
+  /**
+   * Set the number of minutes the result of a completed or failed report job is kept before it
+   * expires and is deleted.
+   *
+   * @param reportJobResultExpiry the number of minutes the result of a completed or failed report
+   *                              job is kept before it expires and is deleted
+   */
+  void setReportJobResultExpiry(int reportJobResultExpiry);
+
+  /**
+   * Set the path to the directory where the pages of large reports are swapped out to while the
+   * reports are being filled.
+   *
+   * @param virtualizerDirectory the path to the directory where the pages of large reports are
+   *                             swapped out to while the reports are being filled
+   */
+  void setVirtualizerDirectory(String virtualizerDirectory);
+
+  /**
+   * Set the maximum number of pages of a report that are held in memory while the report is being
+   * filled before pages are swapped out to a file.
+   *
+   * @param virtualizerMaxSize the maximum number of pages of a report that are held in memory
+   *                           while the report is being filled or zero to disable virtualization
+   */
+  void setVirtualizerMaxSize(int virtualizerMaxSize);
+
+  /**
+   * Submit a report job that creates the report asynchronously and stores the result so that it
+   * can be retrieved using <code>writeReportJobResult()</code> once the report job has completed.
+   * <p/>
+   * Report jobs are executed by a bounded pool of worker threads, each of which holds a
+   * connection from the application data source only while it is creating a report. At most
+   * <code>maximumConcurrentReportJobsPerDefinition</code> report jobs for the same report
+   * definition execute at the same time and the remaining report jobs for the report definition
+   * wait until one of these report jobs finishes.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   * @param parameters   the parameters for the report
+   * @param format       the format for the report
+   * @param username     the username identifying the user submitting the report job
+   *
+   * @return the report job
+   */
+  ReportJob submitReportJob(UUID definitionId, Map<String, Object> parameters,
+      ReportFormat format, String username)
+    throws ReportingServiceException;
+
+  /**
+   * Write the result of the completed report job to the output stream.
+   *
+   * @param reportJobId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                    report job
+   * @param out         the output stream the result of the report job will be written to
+   */
+  void writeReportJobResult(UUID reportJobId, OutputStream out)
+    throws ReportingServiceException;
 }
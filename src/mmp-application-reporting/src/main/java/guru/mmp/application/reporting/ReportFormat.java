@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.reporting;
+
+/**
+ * The <code>ReportFormat</code> enumeration defines the formats a report can be exported to.
+ *
+ * @author Marcus Portmann
+ */
+public enum ReportFormat
+{
+  PDF("application/pdf", "pdf", "PDF"), XLSX(
+      "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx", "Excel");
+
+  private String contentType;
+  private String extension;
+  private String name;
+
+  ReportFormat(String contentType, String extension, String name)
+  {
+    this.contentType = contentType;
+    this.extension = extension;
+    this.name = name;
+  }
+
+  /**
+   * Returns the MIME content type for the report format.
+   *
+   * @return the MIME content type for the report format
+   */
+  public String getContentType()
+  {
+    return contentType;
+  }
+
+  /**
+   * Returns the file extension for the report format.
+   *
+   * @return the file extension for the report format
+   */
+  public String getExtension()
+  {
+    return extension;
+  }
+
+  /**
+   * Returns the name of the report format.
+   *
+   * @return the name of the report format
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Return the string representation of the <code>ReportFormat</code> enumeration value.
+   *
+   * @return the string representation of the <code>ReportFormat</code> enumeration value
+   */
+  public String toString()
+  {
+    return name;
+  }
+}
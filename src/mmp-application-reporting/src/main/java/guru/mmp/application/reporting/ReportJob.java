@@ -0,0 +1,347 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.reporting;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The <code>ReportJob</code> class holds the information for a report job, which creates a report
+ * asynchronously and stores the result so that it can be downloaded once the job has completed.
+ *
+ * @author Marcus Portmann
+ */
+public class ReportJob
+  implements Serializable
+{
+  private static final long serialVersionUID = 1000000;
+
+  /**
+   * The date and time the report job completed or failed.
+   */
+  private LocalDateTime completed;
+
+  /**
+   * The Universally Unique Identifier (UUID) used to uniquely identify the report definition for
+   * the report job.
+   */
+  private UUID definitionId;
+
+  /**
+   * The format for the report created by the report job.
+   */
+  private ReportFormat format;
+
+  /**
+   * The Universally Unique Identifier (UUID) used to uniquely identify the report job.
+   */
+  private UUID id;
+
+  /**
+   * The error message for the report job if the report job failed.
+   */
+  private String message;
+
+  /**
+   * The name of the report.
+   */
+  private String name;
+
+  /**
+   * The status of the report job.
+   */
+  private Status status;
+
+  /**
+   * The date and time the report job was submitted.
+   */
+  private LocalDateTime submitted;
+
+  /**
+   * The username identifying the user that submitted the report job.
+   */
+  private String username;
+
+  /**
+   * Constructs a new <code>ReportJob</code>.
+   */
+  public ReportJob() {}
+
+  /**
+   * Constructs a new <code>ReportJob</code>.
+   *
+   * @param id           the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report job
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition for the report job
+   * @param name         the name of the report
+   * @param format       the format for the report created by the report job
+   * @param username     the username identifying the user that submitted the report job
+   * @param status       the status of the report job
+   * @param submitted    the date and time the report job was submitted
+   * @param completed    the date and time the report job completed or failed
+   * @param message      the error message for the report job if the report job failed
+   */
+  public ReportJob(UUID id, UUID definitionId, String name, ReportFormat format, String username,
+      Status status, LocalDateTime submitted, LocalDateTime completed, String message)
+  {
+    this.id = id;
+    this.definitionId = definitionId;
+    this.name = name;
+    this.format = format;
+    this.username = username;
+    this.status = status;
+    this.submitted = submitted;
+    this.completed = completed;
+    this.message = message;
+  }
+
+  /**
+   * Returns the date and time the report job completed or failed.
+   *
+   * @return the date and time the report job completed or failed
+   */
+  public LocalDateTime getCompleted()
+  {
+    return completed;
+  }
+
+  /**
+   * Returns the Universally Unique Identifier (UUID) used to uniquely identify the report
+   * definition for the report job.
+   *
+   * @return the Universally Unique Identifier (UUID) used to uniquely identify the report
+   *         definition for the report job
+   */
+  public UUID getDefinitionId()
+  {
+    return definitionId;
+  }
+
+  /**
+   * Returns the format for the report created by the report job.
+   *
+   * @return the format for the report created by the report job
+   */
+  public ReportFormat getFormat()
+  {
+    return format;
+  }
+
+  /**
+   * Returns the Universally Unique Identifier (UUID) used to uniquely identify the report job.
+   *
+   * @return the Universally Unique Identifier (UUID) used to uniquely identify the report job
+   */
+  public UUID getId()
+  {
+    return id;
+  }
+
+  /**
+   * Returns the error message for the report job if the report job failed.
+   *
+   * @return the error message for the report job if the report job failed
+   */
+  public String getMessage()
+  {
+    return message;
+  }
+
+  /**
+   * Returns the name of the report.
+   *
+   * @return the name of the report
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Returns the status of the report job.
+   *
+   * @return the status of the report job
+   */
+  public Status getStatus()
+  {
+    return status;
+  }
+
+  /**
+   * Returns the date and time the report job was submitted.
+   *
+   * @return the date and time the report job was submitted
+   */
+  public LocalDateTime getSubmitted()
+  {
+    return submitted;
+  }
+
+  /**
+   * Returns the username identifying the user that submitted the report job.
+   *
+   * @return the username identifying the user that submitted the report job
+   */
+  public String getUsername()
+  {
+    return username;
+  }
+
+  /**
+   * Set the date and time the report job completed or failed.
+   *
+   * @param completed the date and time the report job completed or failed
+   */
+  public void setCompleted(LocalDateTime completed)
+  {
+    this.completed = completed;
+  }
+
+  /**
+   * Set the Universally Unique Identifier (UUID) used to uniquely identify the report definition
+   * for the report job.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition for the report job
+   */
+  public void setDefinitionId(UUID definitionId)
+  {
+    this.definitionId = definitionId;
+  }
+
+  /**
+   * Set the format for the report created by the report job.
+   *
+   * @param format the format for the report created by the report job
+   */
+  public void setFormat(ReportFormat format)
+  {
+    this.format = format;
+  }
+
+  /**
+   * Set the Universally Unique Identifier (UUID) used to uniquely identify the report job.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the report job
+   */
+  public void setId(UUID id)
+  {
+    this.id = id;
+  }
+
+  /**
+   * Set the error message for the report job if the report job failed.
+   *
+   * @param message the error message for the report job if the report job failed
+   */
+  public void setMessage(String message)
+  {
+    this.message = message;
+  }
+
+  /**
+   * Set the name of the report.
+   *
+   * @param name the name of the report
+   */
+  public void setName(String name)
+  {
+    this.name = name;
+  }
+
+  /**
+   * Set the status of the report job.
+   *
+   * @param status the status of the report job
+   */
+  public void setStatus(Status status)
+  {
+    this.status = status;
+  }
+
+  /**
+   * Set the date and time the report job was submitted.
+   *
+   * @param submitted the date and time the report job was submitted
+   */
+  public void setSubmitted(LocalDateTime submitted)
+  {
+    this.submitted = submitted;
+  }
+
+  /**
+   * Set the username identifying the user that submitted the report job.
+   *
+   * @param username the username identifying the user that submitted the report job
+   */
+  public void setUsername(String username)
+  {
+    this.username = username;
+  }
+
+  /**
+   * The enumeration giving the possible statuses for a report job.
+   */
+  public enum Status
+  {
+    QUEUED(1, "Queued"), EXECUTING(2, "Executing"), COMPLETED(3, "Completed"), FAILED(4,
+        "Failed");
+
+    private int code;
+    private String name;
+
+    Status(int code, String name)
+    {
+      this.code = code;
+      this.name = name;
+    }
+
+    /**
+     * Returns the numeric code value identifying the status.
+     *
+     * @return the numeric code value identifying the status
+     */
+    public int getCode()
+    {
+      return code;
+    }
+
+    /**
+     * Returns the name of the status.
+     *
+     * @return the name of the status
+     */
+    public String getName()
+    {
+      return name;
+    }
+
+    /**
+     * Return the string representation of the <code>Status</code> enumeration value.
+     *
+     * @return the string representation of the <code>Status</code> enumeration value
+     */
+    public String toString()
+    {
+      return name;
+    }
+  }
+}
@@ -18,23 +18,35 @@ package guru.mmp.application.reporting;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.application.executor.ApplicationTaskExecutor;
 import guru.mmp.common.util.StringUtil;
-import net.sf.jasperreports.engine.JRParameter;
-import net.sf.jasperreports.engine.JasperExportManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.*;
+import net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
 import net.sf.jasperreports.engine.query.JRXPathQueryExecuterFactory;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.export.SimpleXlsxReportConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 import org.w3c.dom.Document;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-import java.io.ByteArrayInputStream;
+import javax.inject.Named;
+import java.io.*;
+import java.nio.file.Files;
 import java.sql.Connection;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -47,117 +59,301 @@ import java.util.*;
 public class ReportingService
   implements IReportingService
 {
+  /**
+   * The default maximum number of report jobs for the same report definition that can execute at
+   * the same time.
+   */
+  public static final int DEFAULT_MAXIMUM_CONCURRENT_REPORT_JOBS_PER_DEFINITION = 2;
+
+  /**
+   * The default maximum number of report jobs that can be queued waiting for execution.
+   */
+  public static final int DEFAULT_MAXIMUM_QUEUED_REPORT_JOBS = 100;
+
+  /**
+   * The default number of minutes the result of a completed or failed report job is kept before
+   * it expires and is deleted.
+   */
+  public static final int DEFAULT_REPORT_JOB_RESULT_EXPIRY = 60;
+
+  /**
+   * The default maximum number of pages of a report that are held in memory while the report is
+   * being filled before pages are swapped out to a file.
+   */
+  public static final int DEFAULT_VIRTUALIZER_MAX_SIZE = 100;
+
+  /**
+   * The name of the directory, under the temporary directory, where the results of report jobs
+   * are stored if no result directory has been set.
+   */
+  private static final String DEFAULT_REPORT_JOB_RESULT_DIRECTORY = "mmp-report-jobs";
+
+  /**
+   * The size in bytes of the blocks in the swap file used to hold the pages of large reports.
+   */
+  private static final int VIRTUALIZER_BLOCK_SIZE = 4096;
+
+  /**
+   * The minimum number of blocks the swap file used to hold the pages of large reports grows by.
+   */
+  private static final int VIRTUALIZER_MIN_GROW_COUNT = 100;
+
   /* Logger */
   private static final Logger logger = LoggerFactory.getLogger(ReportingService.class);
 
+  /**
+   * The cache of compiled JasperReports templates for the report definitions.
+   */
+  private Map<UUID, JasperReport> compiledReportCache = new ConcurrentHashMap<>();
+
+  /**
+   * The number of times a compiled template has been evicted because its report definition was
+   * saved or deleted. The template for a report definition is deserialized outside of any lock,
+   * so <code>getCompiledReport()</code> compares this counter before and after it caches the
+   * template and evicts the template again if a report definition was saved or deleted in the
+   * meantime. A single counter is shared by all the report definitions because they are seldom
+   * changed, so the occasional unnecessary eviction of an unrelated template is cheap.
+   */
+  private AtomicLong compiledReportCacheVersion = new AtomicLong();
+
   /* The real path to the folder where the local Jasper reports are stored. */
   private String localReportFolderPath;
 
+  /**
+   * The maximum number of report jobs for the same report definition that can execute at the same
+   * time.
+   */
+  private int maximumConcurrentReportJobsPerDefinition =
+      DEFAULT_MAXIMUM_CONCURRENT_REPORT_JOBS_PER_DEFINITION;
+
+  /**
+   * The maximum number of report jobs that can be queued waiting for execution.
+   */
+  private int maximumQueuedReportJobs = DEFAULT_MAXIMUM_QUEUED_REPORT_JOBS;
+
+  /**
+   * The number of executing report jobs for each report definition.
+   * <p/>
+   * Access is guarded by <code>reportJobLock</code>.
+   */
+  private Map<UUID, Integer> numberOfExecutingReportJobs = new HashMap<>();
+
+  /**
+   * The number of report jobs queued waiting for execution.
+   * <p/>
+   * Access is guarded by <code>reportJobLock</code>.
+   */
+  private int numberOfQueuedReportJobs;
+
+  /**
+   * The report jobs for each report definition that are waiting for one of the other report jobs
+   * for the report definition to finish because the maximum number of concurrent report jobs for
+   * the report definition has been reached.
+   * <p/>
+   * Access is guarded by <code>reportJobLock</code>.
+   */
+  private Map<UUID, Deque<ReportJobTask>> pendingReportJobs = new HashMap<>();
+
+  /**
+   * The task executor responsible for executing report jobs.
+   */
+  @Inject
+  @Named("reportingTaskExecutor")
+  private ApplicationTaskExecutor reportJobExecutor;
+
+  /**
+   * The lock used to coordinate the dispatching of report jobs.
+   */
+  private final Object reportJobLock = new Object();
+
+  /**
+   * The path to the directory where the results of report jobs are stored.
+   */
+  private String reportJobResultDirectory;
+
+  /**
+   * The number of minutes the result of a completed or failed report job is kept before it
+   * expires and is deleted.
+   */
+  private int reportJobResultExpiry = DEFAULT_REPORT_JOB_RESULT_EXPIRY;
+
+  /**
+   * The report jobs that have been submitted and have not expired or been deleted.
+   */
+  private Map<UUID, ReportJobTask> reportJobs = new ConcurrentHashMap<>();
+
   /* Reporting DAO */
   @Inject
   private IReportingDAO reportingDAO;
 
+  /**
+   * The path to the directory where the pages of large reports are swapped out to while the
+   * reports are being filled.
+   */
+  private String virtualizerDirectory;
+
+  /**
+   * The maximum number of pages of a report that are held in memory while the report is being
+   * filled before pages are swapped out to a file or zero if virtualization is disabled.
+   */
+  private int virtualizerMaxSize = DEFAULT_VIRTUALIZER_MAX_SIZE;
+
   /**
    * Constructs a new <code>ReportingService</code>.
    */
   public ReportingService() {}
 
   /**
-   * Create a PDF for the report using a connection retrieved from the application data source.
+   * Create the report using a connection retrieved from the application data source and write it
+   * to the output stream in the specified format.
    *
    * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
    *                     report definition
    * @param parameters   the parameters for the report
-   *
-   * @return the PDF data for the report
+   * @param format       the format for the report
+   * @param out          the output stream the report will be written to
    */
-  public byte[] createReportPDF(UUID definitionId, Map<String, Object> parameters)
+  public void createReport(UUID definitionId, Map<String, Object> parameters, ReportFormat format,
+      OutputStream out)
     throws ReportingServiceException
   {
     try (Connection connection = reportingDAO.getDataSource().getConnection())
     {
-      ReportDefinition reportDefinition = getReportDefinition(definitionId);
-
-      if (reportDefinition == null)
-      {
-        throw new ReportingServiceException("Failed to find the report definition (" + definitionId
-            + ")");
-      }
-
-      Map<String, Object> localParameters = new HashMap<>();
-
-      if (StringUtil.isNullOrEmpty(getLocalReportFolderPath()))
-      {
-        localParameters.put("SUBREPORT_DIR", getLocalReportFolderPath());
-      }
-
-      for (String name : parameters.keySet())
-      {
-        localParameters.put(name, parameters.get(name));
-      }
-
-      JasperPrint jasperPrint = JasperFillManager.fillReport(new ByteArrayInputStream(
-          reportDefinition.getTemplate()), localParameters, connection);
-
-      return JasperExportManager.exportReportToPdf(jasperPrint);
+      createReport(definitionId, parameters, connection, format, out);
+    }
+    catch (ReportingServiceException e)
+    {
+      throw e;
     }
     catch (Throwable e)
     {
       throw new ReportingServiceException(String.format(
-          "Failed to create the PDF for the report using the report definintion (%s)",
+          "Failed to create the %s for the report using the report definintion (%s)", format,
           definitionId), e);
     }
   }
 
   /**
-   * Create a PDF for the report.
+   * Create the report and write it to the output stream in the specified format.
    *
    * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
    *                     report definition
    * @param parameters   the parameters for the report
    * @param connection   the database connection used to retrieve the report data
+   * @param format       the format for the report
+   * @param out          the output stream the report will be written to
+   */
+  public void createReport(UUID definitionId, Map<String, Object> parameters,
+      Connection connection, ReportFormat format, OutputStream out)
+    throws ReportingServiceException
+  {
+    JasperReport jasperReport = getCompiledReport(definitionId);
+
+    if (jasperReport == null)
+    {
+      throw new ReportingServiceException(String.format(
+          "Failed to find the report definition (%s)", definitionId));
+    }
+
+    createReport(jasperReport, getReportParameters(parameters), connection, format, out);
+  }
+
+  /**
+   * Create the report using the compiled JasperReports template and write it to the output stream
+   * in the specified format.
+   * <p/>
+   * If virtualization is enabled the pages of the filled report are swapped out to a file once
+   * the maximum number of pages held in memory is reached, which bounds the heap used to fill
+   * large reports.
    *
-   * @return the PDF data for the report
+   * @param jasperReport the compiled JasperReports template for the report
+   * @param parameters   the parameters for the report
+   * @param connection   the database connection used to retrieve the report data
+   * @param format       the format for the report
+   * @param out          the output stream the report will be written to
    */
-  public byte[] createReportPDF(UUID definitionId, Map<String, Object> parameters,
-      Connection connection)
+  public void createReport(JasperReport jasperReport, Map<String, Object> parameters,
+      Connection connection, ReportFormat format, OutputStream out)
     throws ReportingServiceException
   {
+    JRSwapFileVirtualizer virtualizer = createVirtualizer();
+
     try
     {
-      ReportDefinition reportDefinition = getReportDefinition(definitionId);
+      Map<String, Object> localParameters = new HashMap<>(parameters);
 
-      if (reportDefinition == null)
+      if (virtualizer != null)
       {
-        throw new ReportingServiceException(String.format(
-            "Failed to find the report definition (%s)", definitionId));
+        localParameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
       }
 
-      Map<String, Object> localParameters = new HashMap<>();
+      JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, localParameters,
+          connection);
 
-      if (StringUtil.isNullOrEmpty(getLocalReportFolderPath()))
+      if (virtualizer != null)
       {
-        localParameters.put("SUBREPORT_DIR", getLocalReportFolderPath());
+        // No further pages will be added so the swapped out pages no longer need to be writable
+        virtualizer.setReadOnly(true);
       }
 
-      for (String name : parameters.keySet())
-      {
-        localParameters.put(name, parameters.get(name));
-      }
-
-      JasperPrint jasperPrint = JasperFillManager.fillReport(new ByteArrayInputStream(
-          reportDefinition.getTemplate()), localParameters, connection);
+      exportReport(jasperPrint, format, out);
 
-      return JasperExportManager.exportReportToPdf(jasperPrint);
+      out.flush();
     }
     catch (Throwable e)
     {
       throw new ReportingServiceException(String.format(
-          "Failed to create the PDF for the report using the report definintion (%s)",
-          definitionId), e);
+          "Failed to create the %s for the report (%s)", format, jasperReport.getName()), e);
+    }
+    finally
+    {
+      if (virtualizer != null)
+      {
+        virtualizer.cleanup();
+      }
     }
   }
 
+  /**
+   * Create a PDF for the report using a connection retrieved from the application data source.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   * @param parameters   the parameters for the report
+   *
+   * @return the PDF data for the report
+   */
+  public byte[] createReportPDF(UUID definitionId, Map<String, Object> parameters)
+    throws ReportingServiceException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    createReport(definitionId, parameters, ReportFormat.PDF, out);
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Create a PDF for the report.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   * @param parameters   the parameters for the report
+   * @param connection   the database connection used to retrieve the report data
+   *
+   * @return the PDF data for the report
+   */
+  public byte[] createReportPDF(UUID definitionId, Map<String, Object> parameters,
+      Connection connection)
+    throws ReportingServiceException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    createReport(definitionId, parameters, connection, ReportFormat.PDF, out);
+
+    return out.toByteArray();
+  }
+
   /**
    * Create a PDF for the report.
    *
@@ -172,16 +368,20 @@ public class ReportingService
       Document document)
     throws ReportingServiceException
   {
+    JRSwapFileVirtualizer virtualizer = null;
+
     try
     {
-      ReportDefinition reportDefinition = getReportDefinition(definitionId);
+      JasperReport jasperReport = getCompiledReport(definitionId);
 
-      if (reportDefinition == null)
+      if (jasperReport == null)
       {
         throw new ReportingServiceException(String.format(
             "Failed to find the report definition (%s)", definitionId));
       }
 
+      virtualizer = createVirtualizer();
+
       Map<String, Object> localParameters = new HashMap<>();
 
       localParameters.put(JRXPathQueryExecuterFactory.PARAMETER_XML_DATA_DOCUMENT, document);
@@ -190,19 +390,21 @@ public class ReportingService
       localParameters.put(JRXPathQueryExecuterFactory.XML_LOCALE, Locale.ENGLISH);
       localParameters.put(JRParameter.REPORT_LOCALE, Locale.US);
 
-      if (StringUtil.isNullOrEmpty(getLocalReportFolderPath()))
+      localParameters.putAll(getReportParameters(parameters));
+
+      if (virtualizer != null)
       {
-        localParameters.put("SUBREPORT_DIR", getLocalReportFolderPath());
+        localParameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
       }
 
-      for (String name : parameters.keySet())
+      JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, localParameters);
+
+      if (virtualizer != null)
       {
-        localParameters.put(name, parameters.get(name));
+        // No further pages will be added so the swapped out pages no longer need to be writable
+        virtualizer.setReadOnly(true);
       }
 
-      JasperPrint jasperPrint = JasperFillManager.fillReport(new ByteArrayInputStream(
-          reportDefinition.getTemplate()), localParameters);
-
       return JasperExportManager.exportReportToPdf(jasperPrint);
     }
     catch (Throwable e)
@@ -211,6 +413,75 @@ public class ReportingService
           "Failed to create the PDF for the report using the report definintion (%s)",
           definitionId), e);
     }
+    finally
+    {
+      if (virtualizer != null)
+      {
+        virtualizer.cleanup();
+      }
+    }
+  }
+
+  /**
+   * Delete the report jobs, and their results, that completed or failed longer ago than the
+   * report job result expiry.
+   * <p/>
+   * Result files that do not belong to a known report job, e.g. because they were left behind
+   * when the application was restarted, are also deleted once they have expired.
+   *
+   * @return the number of report jobs that were deleted
+   */
+  public int deleteExpiredReportJobs()
+    throws ReportingServiceException
+  {
+    try
+    {
+      LocalDateTime expired = LocalDateTime.now().minusMinutes(reportJobResultExpiry);
+
+      int numberOfExpiredReportJobs = 0;
+
+      for (ReportJobTask reportJobTask : reportJobs.values())
+      {
+        LocalDateTime completed = reportJobTask.completed;
+
+        if ((completed != null) && completed.isBefore(expired))
+        {
+          deleteReportJob(reportJobTask.id);
+
+          numberOfExpiredReportJobs++;
+        }
+      }
+
+      File[] resultFiles = getReportJobResultDirectory().listFiles();
+
+      if (resultFiles != null)
+      {
+        long expiredMillis = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(
+            reportJobResultExpiry);
+
+        Set<String> resultFileNames = new HashSet<>();
+
+        for (ReportJobTask reportJobTask : reportJobs.values())
+        {
+          resultFileNames.add(reportJobTask.resultFile.getName());
+        }
+
+        for (File resultFile : resultFiles)
+        {
+          if ((!resultFileNames.contains(resultFile.getName()))
+              && (resultFile.lastModified() < expiredMillis))
+          {
+            Files.deleteIfExists(resultFile.toPath());
+          }
+        }
+      }
+
+      return numberOfExpiredReportJobs;
+    }
+    catch (Throwable e)
+    {
+      throw new ReportingServiceException("Failed to delete the expired report jobs", e);
+    }
   }
 
   /**
@@ -225,6 +496,8 @@ public class ReportingService
     try
     {
       reportingDAO.deleteReportDefinition(id);
+
+      invalidateCompiledReport(id);
     }
     catch (Throwable e)
     {
@@ -233,6 +506,93 @@ public class ReportingService
     }
   }
 
+  /**
+   * Delete the report job and its result.
+   * <p/>
+   * If the report job is queued it will not be executed and if it is executing its result will be
+   * discarded when it finishes.
+   *
+   * @param reportJobId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                    report job
+   */
+  public void deleteReportJob(UUID reportJobId)
+    throws ReportingServiceException
+  {
+    try
+    {
+      ReportJobTask reportJobTask = reportJobs.remove(reportJobId);
+
+      if (reportJobTask != null)
+      {
+        Files.deleteIfExists(reportJobTask.resultFile.toPath());
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new ReportingServiceException(String.format("Failed to delete the report job (%s)",
+          reportJobId), e);
+    }
+  }
+
+  /**
+   * Retrieve the compiled JasperReports template for the report definition.
+   * <p/>
+   * The compiled templates are cached so that the template does not have to be retrieved from the
+   * database and deserialized every time the report is created. The cached template is discarded
+   * when the report definition is saved or deleted.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   *
+   * @return the compiled JasperReports template for the report definition or <code>null</code> if
+   *         the report definition could not be found
+   */
+  public JasperReport getCompiledReport(UUID definitionId)
+    throws ReportingServiceException
+  {
+    try
+    {
+      JasperReport jasperReport = compiledReportCache.get(definitionId);
+
+      if (jasperReport != null)
+      {
+        return jasperReport;
+      }
+
+      long version = compiledReportCacheVersion.get();
+
+      ReportDefinition reportDefinition = reportingDAO.getReportDefinition(definitionId);
+
+      if (reportDefinition == null)
+      {
+        return null;
+      }
+
+      jasperReport = (JasperReport) JRLoader.loadObject(new ByteArrayInputStream(
+          reportDefinition.getTemplate()));
+
+      compiledReportCache.put(definitionId, jasperReport);
+
+      /*
+       * If a report definition was saved or deleted while the template was being loaded then the
+       * template may be stale and the eviction may have happened before it was cached, so evict
+       * it here instead.
+       */
+      if (compiledReportCacheVersion.get() != version)
+      {
+        compiledReportCache.remove(definitionId, jasperReport);
+      }
+
+      return jasperReport;
+    }
+    catch (Throwable e)
+    {
+      throw new ReportingServiceException(String.format(
+          "Failed to retrieve the compiled template for the report definition (%s)",
+          definitionId), e);
+    }
+  }
+
   /**
    * Returns the real path to the folder where the local Jasper reports are stored.
    *
@@ -343,6 +703,49 @@ public class ReportingService
     }
   }
 
+  /**
+   * Retrieve the report job.
+   *
+   * @param reportJobId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                    report job
+   *
+   * @return the report job or <code>null</code> if the report job could not be found
+   */
+  public ReportJob getReportJob(UUID reportJobId)
+  {
+    ReportJobTask reportJobTask = reportJobs.get(reportJobId);
+
+    return (reportJobTask == null)
+        ? null
+        : reportJobTask.toReportJob();
+  }
+
+  /**
+   * Returns the path to the directory where the pages of large reports are swapped out to while
+   * the reports are being filled.
+   *
+   * @return the path to the directory where the pages of large reports are swapped out to while
+   *         the reports are being filled
+   */
+  public String getVirtualizerDirectory()
+  {
+    return StringUtil.isNullOrEmpty(virtualizerDirectory)
+        ? System.getProperty("java.io.tmpdir")
+        : virtualizerDirectory;
+  }
+
+  /**
+   * Returns the maximum number of pages of a report that are held in memory while the report is
+   * being filled before pages are swapped out to a file.
+   *
+   * @return the maximum number of pages of a report that are held in memory while the report is
+   *         being filled or zero if virtualization is disabled
+   */
+  public int getVirtualizerMaxSize()
+  {
+    return virtualizerMaxSize;
+  }
+
   /**
    * Initialise the Reporting Service.
    */
@@ -409,6 +812,8 @@ public class ReportingService
         reportingDAO.createReportDefinition(reportDefinition);
       }
 
+      invalidateCompiledReport(reportDefinition.getId());
+
       return reportDefinition;
     }
     catch (Throwable e)
@@ -429,9 +834,476 @@ public class ReportingService
     this.localReportFolderPath = localReportFolderPath;
   }
 
+  /**
+   * Set the maximum number of report jobs for the same report definition that can execute at the
+   * same time.
+   *
+   * @param maximumConcurrentReportJobsPerDefinition the maximum number of report jobs for the same
+   *                                                 report definition that can execute at the
+   *                                                 same time
+   */
+  public void setMaximumConcurrentReportJobsPerDefinition(
+      int maximumConcurrentReportJobsPerDefinition)
+  {
+    this.maximumConcurrentReportJobsPerDefinition = maximumConcurrentReportJobsPerDefinition;
+  }
+
+  /**
+   * Set the maximum number of report jobs that can be queued waiting for execution.
+   *
+   * @param maximumQueuedReportJobs the maximum number of report jobs that can be queued waiting
+   *                                for execution
+   */
+  public void setMaximumQueuedReportJobs(int maximumQueuedReportJobs)
+  {
+    this.maximumQueuedReportJobs = maximumQueuedReportJobs;
+  }
+
+  /**
+   * Set the path to the directory where the results of report jobs are stored.
+   *
+   * @param reportJobResultDirectory the path to the directory where the results of report jobs
+   *                                 are stored
+   */
+  public void setReportJobResultDirectory(String reportJobResultDirectory)
+  {
+    this.reportJobResultDirectory = reportJobResultDirectory;
+  }
+
+  /**
+   * Set the number of minutes the result of a completed or failed report job is kept before it
+   * expires and is deleted.
+   *
+   * @param reportJobResultExpiry the number of minutes the result of a completed or failed report
+   *                              job is kept before it expires and is deleted
+   */
+  public void setReportJobResultExpiry(int reportJobResultExpiry)
+  {
+    this.reportJobResultExpiry = reportJobResultExpiry;
+  }
+
+  /**
+   * Set the path to the directory where the pages of large reports are swapped out to while the
+   * reports are being filled.
+   *
+   * @param virtualizerDirectory the path to the directory where the pages of large reports are
+   *                             swapped out to while the reports are being filled
+   */
+  public void setVirtualizerDirectory(String virtualizerDirectory)
+  {
+    this.virtualizerDirectory = virtualizerDirectory;
+  }
+
+  /**
+   * Set the maximum number of pages of a report that are held in memory while the report is being
+   * filled before pages are swapped out to a file.
+   *
+   * @param virtualizerMaxSize the maximum number of pages of a report that are held in memory
+   *                           while the report is being filled or zero to disable virtualization
+   */
+  public void setVirtualizerMaxSize(int virtualizerMaxSize)
+  {
+    this.virtualizerMaxSize = virtualizerMaxSize;
+  }
+
+  /**
+   * Submit a report job that creates the report asynchronously and stores the result so that it
+   * can be retrieved using <code>writeReportJobResult()</code> once the report job has completed.
+   * <p/>
+   * Report jobs are executed by a bounded pool of worker threads, each of which holds a
+   * connection from the application data source only while it is creating a report. At most
+   * <code>maximumConcurrentReportJobsPerDefinition</code> report jobs for the same report
+   * definition execute at the same time and the remaining report jobs for the report definition
+   * wait until one of these report jobs finishes.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   * @param parameters   the parameters for the report
+   * @param format       the format for the report
+   * @param username     the username identifying the user submitting the report job
+   *
+   * @return the report job
+   */
+  public ReportJob submitReportJob(UUID definitionId, Map<String, Object> parameters,
+      ReportFormat format, String username)
+    throws ReportingServiceException
+  {
+    ReportDefinitionSummary reportDefinitionSummary = getReportDefinitionSummary(definitionId);
+
+    if (reportDefinitionSummary == null)
+    {
+      throw new ReportingServiceException(String.format(
+          "Failed to find the report definition (%s)", definitionId));
+    }
+
+    try
+    {
+      File resultDirectory = getReportJobResultDirectory();
+
+      Files.createDirectories(resultDirectory.toPath());
+
+      UUID reportJobId = UUID.randomUUID();
+
+      ReportJobTask reportJobTask = new ReportJobTask(reportJobId, definitionId,
+          reportDefinitionSummary.getName(), new HashMap<>(parameters), format, username,
+          new File(resultDirectory, reportJobId + "." + format.getExtension()));
+
+      synchronized (reportJobLock)
+      {
+        if (numberOfQueuedReportJobs >= maximumQueuedReportJobs)
+        {
+          throw new ReportingServiceException(String.format(
+              "The maximum number of queued report jobs (%d) has been reached",
+              maximumQueuedReportJobs));
+        }
+
+        reportJobs.put(reportJobId, reportJobTask);
+
+        numberOfQueuedReportJobs++;
+
+        int numberOfExecutingReportJobsForDefinition = numberOfExecutingReportJobs.getOrDefault(
+            definitionId, 0);
+
+        if (numberOfExecutingReportJobsForDefinition < maximumConcurrentReportJobsPerDefinition)
+        {
+          numberOfExecutingReportJobs.put(definitionId,
+              numberOfExecutingReportJobsForDefinition + 1);
+
+          try
+          {
+            reportJobExecutor.execute(reportJobTask);
+          }
+          catch (TaskRejectedException e)
+          {
+            reportJobs.remove(reportJobId);
+
+            numberOfQueuedReportJobs--;
+
+            releaseExecutionSlot(definitionId);
+
+            throw new ReportingServiceException(String.format(
+                "Failed to queue the report job for the report definition (%s) for execution",
+                definitionId), e);
+          }
+        }
+        else
+        {
+          pendingReportJobs.computeIfAbsent(definitionId, key -> new ArrayDeque<>()).add(
+              reportJobTask);
+        }
+      }
+
+      return reportJobTask.toReportJob();
+    }
+    catch (ReportingServiceException e)
+    {
+      throw e;
+    }
+    catch (Throwable e)
+    {
+      throw new ReportingServiceException(String.format(
+          "Failed to submit the report job for the report definition (%s)", definitionId), e);
+    }
+  }
+
+  /**
+   * Write the result of the completed report job to the output stream.
+   *
+   * @param reportJobId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                    report job
+   * @param out         the output stream the result of the report job will be written to
+   */
+  public void writeReportJobResult(UUID reportJobId, OutputStream out)
+    throws ReportingServiceException
+  {
+    ReportJobTask reportJobTask = reportJobs.get(reportJobId);
+
+    if (reportJobTask == null)
+    {
+      throw new ReportingServiceException(String.format("Failed to find the report job (%s)",
+          reportJobId));
+    }
+
+    if (reportJobTask.status != ReportJob.Status.COMPLETED)
+    {
+      throw new ReportingServiceException(String.format(
+          "The report job (%s) has not completed (%s)", reportJobId, reportJobTask.status));
+    }
+
+    try
+    {
+      Files.copy(reportJobTask.resultFile.toPath(), out);
+
+      out.flush();
+    }
+    catch (Throwable e)
+    {
+      throw new ReportingServiceException(String.format(
+          "Failed to write the result of the report job (%s)", reportJobId), e);
+    }
+  }
+
+  private JRSwapFileVirtualizer createVirtualizer()
+  {
+    if (virtualizerMaxSize <= 0)
+    {
+      return null;
+    }
+
+    return new JRSwapFileVirtualizer(virtualizerMaxSize, new JRSwapFile(getVirtualizerDirectory(),
+        VIRTUALIZER_BLOCK_SIZE, VIRTUALIZER_MIN_GROW_COUNT), true);
+  }
+
+  private void exportReport(JasperPrint jasperPrint, ReportFormat format, OutputStream out)
+    throws JRException
+  {
+    switch (format)
+    {
+      case PDF:
+        JasperExportManager.exportReportToPdfStream(jasperPrint, out);
+
+        break;
+
+      case XLSX:
+        JRXlsxExporter exporter = new JRXlsxExporter();
+
+        SimpleXlsxReportConfiguration reportConfiguration = new SimpleXlsxReportConfiguration();
+
+        reportConfiguration.setDetectCellType(Boolean.TRUE);
+        reportConfiguration.setOnePagePerSheet(Boolean.FALSE);
+        reportConfiguration.setWhitePageBackground(Boolean.TRUE);
+
+        exporter.setConfiguration(reportConfiguration);
+        exporter.setExporterInput(new SimpleExporterInput(jasperPrint));
+        exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+
+        exporter.exportReport();
+
+        break;
+
+      default:
+        throw new JRException(String.format("Unsupported report format (%s)", format));
+    }
+  }
+
+  private File getReportJobResultDirectory()
+  {
+    return StringUtil.isNullOrEmpty(reportJobResultDirectory)
+        ? new File(System.getProperty("java.io.tmpdir"), DEFAULT_REPORT_JOB_RESULT_DIRECTORY)
+        : new File(reportJobResultDirectory);
+  }
+
+  private Map<String, Object> getReportParameters(Map<String, Object> parameters)
+  {
+    Map<String, Object> localParameters = new HashMap<>();
+
+    if (StringUtil.isNullOrEmpty(getLocalReportFolderPath()))
+    {
+      localParameters.put("SUBREPORT_DIR", getLocalReportFolderPath());
+    }
+
+    localParameters.putAll(parameters);
+
+    return localParameters;
+  }
+
   /**
    * Initialise the configuration for the Reporting Service.
    */
   private void initConfiguration()
     throws ReportingServiceException {}
+
+  private void invalidateCompiledReport(UUID definitionId)
+  {
+    compiledReportCacheVersion.incrementAndGet();
+
+    compiledReportCache.remove(definitionId);
+  }
+
+  /**
+   * Release an execution slot for the report definition.
+   * <p/>
+   * Must be invoked while holding <code>reportJobLock</code>.
+   *
+   * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                     report definition
+   */
+  private void releaseExecutionSlot(UUID definitionId)
+  {
+    numberOfExecutingReportJobs.computeIfPresent(definitionId,
+        (key, numberOfExecutingReportJobsForDefinition) ->
+        (numberOfExecutingReportJobsForDefinition > 1)
+        ? numberOfExecutingReportJobsForDefinition - 1
+        : null);
+  }
+
+  private void reportJobFinished(ReportJobTask reportJobTask)
+  {
+    synchronized (reportJobLock)
+    {
+      Deque<ReportJobTask> pendingReportJobsForDefinition = pendingReportJobs.get(
+          reportJobTask.definitionId);
+
+      ReportJobTask nextReportJobTask = null;
+
+      while ((pendingReportJobsForDefinition != null) && (nextReportJobTask == null)
+          && (!pendingReportJobsForDefinition.isEmpty()))
+      {
+        nextReportJobTask = pendingReportJobsForDefinition.poll();
+
+        // Skip the report jobs that were deleted while they were waiting
+        if (!reportJobs.containsKey(nextReportJobTask.id))
+        {
+          numberOfQueuedReportJobs--;
+
+          nextReportJobTask = null;
+        }
+      }
+
+      if ((pendingReportJobsForDefinition != null) && pendingReportJobsForDefinition.isEmpty())
+      {
+        pendingReportJobs.remove(reportJobTask.definitionId);
+      }
+
+      if (nextReportJobTask != null)
+      {
+        // Hand the execution slot for the report definition over to the next report job
+        try
+        {
+          reportJobExecutor.execute(nextReportJobTask);
+        }
+        catch (TaskRejectedException e)
+        {
+          logger.error(String.format("Failed to queue the report job (%s) for the report "
+              + "definition (%s) for execution", nextReportJobTask.id, reportJobTask.definitionId),
+              e);
+
+          numberOfQueuedReportJobs--;
+
+          nextReportJobTask.message = e.getMessage();
+          nextReportJobTask.completed = LocalDateTime.now();
+          nextReportJobTask.status = ReportJob.Status.FAILED;
+
+          releaseExecutionSlot(reportJobTask.definitionId);
+        }
+      }
+      else
+      {
+        releaseExecutionSlot(reportJobTask.definitionId);
+      }
+    }
+  }
+
+  /**
+   * The <code>ReportJobTask</code> class creates the report for a report job and holds the
+   * execution state of the report job.
+   */
+  private class ReportJobTask
+    implements Runnable
+  {
+    private volatile LocalDateTime completed;
+    private UUID definitionId;
+    private ReportFormat format;
+    private UUID id;
+    private volatile String message;
+    private String name;
+    private Map<String, Object> parameters;
+    private File resultFile;
+    private volatile ReportJob.Status status;
+    private LocalDateTime submitted;
+    private String username;
+
+    /**
+     * Constructs a new <code>ReportJobTask</code>.
+     *
+     * @param id           the Universally Unique Identifier (UUID) used to uniquely identify the
+     *                     report job
+     * @param definitionId the Universally Unique Identifier (UUID) used to uniquely identify the
+     *                     report definition for the report job
+     * @param name         the name of the report
+     * @param parameters   the parameters for the report
+     * @param format       the format for the report
+     * @param username     the username identifying the user that submitted the report job
+     * @param resultFile   the file the result of the report job is written to
+     */
+    ReportJobTask(UUID id, UUID definitionId, String name, Map<String, Object> parameters,
+        ReportFormat format, String username, File resultFile)
+    {
+      this.id = id;
+      this.definitionId = definitionId;
+      this.name = name;
+      this.parameters = parameters;
+      this.format = format;
+      this.username = username;
+      this.resultFile = resultFile;
+      this.status = ReportJob.Status.QUEUED;
+      this.submitted = LocalDateTime.now();
+    }
+
+    /**
+     * Create the report for the report job and write it to the result file.
+     */
+    @Override
+    public void run()
+    {
+      synchronized (reportJobLock)
+      {
+        numberOfQueuedReportJobs--;
+      }
+
+      try
+      {
+        // Do not execute report jobs that were deleted while they were queued
+        if (!reportJobs.containsKey(id))
+        {
+          return;
+        }
+
+        status = ReportJob.Status.EXECUTING;
+
+        try (Connection connection = reportingDAO.getDataSource().getConnection();
+          OutputStream out = new BufferedOutputStream(new FileOutputStream(resultFile)))
+        {
+          createReport(definitionId, parameters, connection, format, out);
+        }
+
+        completed = LocalDateTime.now();
+        status = ReportJob.Status.COMPLETED;
+      }
+      catch (Throwable e)
+      {
+        logger.error(String.format("Failed to execute the report job (%s) for the report "
+            + "definition (%s)", id, definitionId), e);
+
+        resultFile.delete();
+
+        message = e.getMessage();
+        completed = LocalDateTime.now();
+        status = ReportJob.Status.FAILED;
+      }
+      finally
+      {
+        // Discard the result if the report job was deleted while it was executing
+        if (!reportJobs.containsKey(id))
+        {
+          resultFile.delete();
+        }
+
+        reportJobFinished(this);
+      }
+    }
+
+    /**
+     * Returns the report job for the current execution state.
+     *
+     * @return the report job for the current execution state
+     */
+    ReportJob toReportJob()
+    {
+      ReportJob.Status currentStatus = status;
+
+      return new ReportJob(id, definitionId, name, format, username, currentStatus, submitted,
+          completed, message);
+    }
+  }
 }
@@ -21,9 +21,15 @@ package guru.mmp.application.test;
 import guru.mmp.application.reporting.IReportingService;
 import guru.mmp.application.reporting.ReportDefinition;
 import guru.mmp.application.reporting.ReportDefinitionSummary;
+import guru.mmp.application.reporting.ReportFormat;
+import guru.mmp.application.reporting.ReportJob;
 import guru.mmp.common.util.ResourceUtil;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestExecutionListeners;
@@ -33,10 +39,20 @@ import org.springframework.test.context.transaction.TransactionalTestExecutionLi
 
 import javax.inject.Inject;
 import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.Callable;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -52,6 +68,8 @@ import static org.junit.Assert.assertEquals;
     DirtiesContextTestExecutionListener.class, TransactionalTestExecutionListener.class })
 public class ReportingServiceTest
 {
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(ReportingServiceTest.class);
   private static int reportDefinitionCount;
   @Inject
   private IReportingService reportingService;
@@ -63,6 +81,36 @@ public class ReportingServiceTest
   @Qualifier("applicationDataSource")
   private DataSource dataSource;
 
+  /**
+   * Test the compiled report cache functionality.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void compiledReportCacheTest()
+    throws Exception
+  {
+    ReportDefinition reportDefinition = getTestReportDefinitionDetails();
+
+    reportingService.saveReportDefinition(reportDefinition);
+
+    JasperReport jasperReport = reportingService.getCompiledReport(reportDefinition.getId());
+
+    assertNotNull("The compiled report was not retrieved", jasperReport);
+    assertSame("The cached compiled report was not retrieved", jasperReport,
+        reportingService.getCompiledReport(reportDefinition.getId()));
+
+    reportingService.saveReportDefinition(reportDefinition);
+
+    assertNotSame("The cached compiled report was not invalidated when the report definition was "
+        + "saved", jasperReport, reportingService.getCompiledReport(reportDefinition.getId()));
+
+    reportingService.deleteReportDefinition(reportDefinition.getId());
+
+    assertNull("The compiled report for the deleted report definition was retrieved",
+        reportingService.getCompiledReport(reportDefinition.getId()));
+  }
+
   /**
    * Test the create report PDF functionality.
    *
@@ -86,6 +134,67 @@ public class ReportingServiceTest
     reportingService.deleteReportDefinition(reportDefinition.getId());
   }
 
+  /**
+   * Compare the peak heap usage when creating a PDF for a report with 100000 rows in memory with
+   * the peak heap usage when the report is virtualized and streamed.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void largeReportHeapUsageTest()
+    throws Exception
+  {
+    ReportDefinition reportDefinition = getTestReportDefinitionDetails(
+        "TEST.LARGE_REPORT_TEST_DATA");
+
+    reportingService.saveReportDefinition(reportDefinition);
+
+    Map<String, Object> parameters = new HashMap<>();
+
+    int virtualizerMaxSize = reportingService.getVirtualizerMaxSize();
+
+    try (Connection connection = dataSource.getConnection())
+    {
+      createTestDataTable(connection, "TEST.LARGE_REPORT_TEST_DATA", 100000);
+
+      reportingService.setVirtualizerMaxSize(0);
+
+      long inMemoryPeakHeapUsage = getPeakHeapUsage(() -> reportingService.createReportPDF(
+          reportDefinition.getId(), parameters, connection));
+
+      reportingService.setVirtualizerMaxSize(virtualizerMaxSize);
+
+      CountingOutputStream out = new CountingOutputStream();
+
+      long streamedPeakHeapUsage = getPeakHeapUsage(() ->
+          {
+            reportingService.createReport(reportDefinition.getId(), parameters, connection,
+                ReportFormat.PDF, out);
+
+            return null;
+          }
+          );
+
+      assertTrue("The streamed PDF for the report was empty", out.numberOfBytes > 0);
+
+      logger.info(String.format(
+          "Peak heap usage creating a %d byte PDF for a report with 100000 rows: %d MB in memory, "
+          + "%d MB virtualized and streamed", out.numberOfBytes, inMemoryPeakHeapUsage / 1048576,
+          streamedPeakHeapUsage / 1048576));
+    }
+    finally
+    {
+      try (Connection connection = dataSource.getConnection())
+      {
+        dropTestDataTable(connection, "TEST.LARGE_REPORT_TEST_DATA");
+      }
+
+      reportingService.setVirtualizerMaxSize(virtualizerMaxSize);
+
+      reportingService.deleteReportDefinition(reportDefinition.getId());
+    }
+  }
+
   /**
    * Test the report definition functionality.
    *
@@ -158,6 +267,154 @@ public class ReportingServiceTest
         null, retrievedReportDefinition);
   }
 
+  /**
+   * Test the report job functionality.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void reportJobTest()
+    throws Exception
+  {
+    ReportDefinition reportDefinition = getTestReportDefinitionDetails(
+        "TEST.REPORT_JOB_TEST_DATA");
+
+    reportingService.saveReportDefinition(reportDefinition);
+
+    try (Connection connection = dataSource.getConnection())
+    {
+      createTestDataTable(connection, "TEST.REPORT_JOB_TEST_DATA", 100);
+    }
+
+    try
+    {
+      ReportJob reportJob = reportingService.submitReportJob(reportDefinition.getId(),
+          new HashMap<>(), ReportFormat.PDF, "Administrator");
+
+      assertEquals("The report definition ID for the report job does not match",
+          reportDefinition.getId(), reportJob.getDefinitionId());
+      assertEquals("The name for the report job does not match", reportDefinition.getName(),
+          reportJob.getName());
+
+      long timeout = System.currentTimeMillis() + 30000;
+
+      while ((reportJob.getStatus() == ReportJob.Status.QUEUED)
+          || (reportJob.getStatus() == ReportJob.Status.EXECUTING))
+      {
+        assertTrue("The report job did not complete in time",
+            System.currentTimeMillis() < timeout);
+
+        Thread.sleep(100);
+
+        reportJob = reportingService.getReportJob(reportJob.getId());
+      }
+
+      assertEquals(String.format("The report job did not complete successfully (%s)",
+          reportJob.getMessage()), ReportJob.Status.COMPLETED, reportJob.getStatus());
+      assertNotNull("The completion time for the report job was not set",
+          reportJob.getCompleted());
+
+      CountingOutputStream out = new CountingOutputStream();
+
+      reportingService.writeReportJobResult(reportJob.getId(), out);
+
+      assertTrue("The result of the report job was empty", out.numberOfBytes > 0);
+
+      reportingService.deleteReportJob(reportJob.getId());
+
+      assertNull("The report job that should have been deleted was retrieved",
+          reportingService.getReportJob(reportJob.getId()));
+    }
+    finally
+    {
+      try (Connection connection = dataSource.getConnection())
+      {
+        dropTestDataTable(connection, "TEST.REPORT_JOB_TEST_DATA");
+      }
+
+      reportingService.deleteReportDefinition(reportDefinition.getId());
+    }
+  }
+
+  /**
+   * Create and populate a private copy of the TEST.TEST_DATA table, which allows a test to control
+   * the data for a report without modifying the data shared with the other tests.
+   *
+   * @param connection   the database connection
+   * @param tableName    the qualified name of the table
+   * @param numberOfRows the number of rows to insert
+   */
+  private static void createTestDataTable(Connection connection, String tableName,
+      int numberOfRows)
+    throws Exception
+  {
+    try (Statement statement = connection.createStatement())
+    {
+      statement.execute("CREATE TABLE " + tableName + " (ID INTEGER NOT NULL, "
+          + "NAME VARCHAR(100) NOT NULL, VALUE VARCHAR(100) NOT NULL, PRIMARY KEY (ID))");
+    }
+
+    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + tableName
+        + " (ID, NAME, VALUE) VALUES (?, ?, ?)"))
+    {
+      for (int i = 1; i <= numberOfRows; i++)
+      {
+        statement.setInt(1, i);
+        statement.setString(2, String.format("Test Name %06d", i));
+        statement.setString(3, "Test Value " + i);
+        statement.addBatch();
+
+        if ((i % 1000) == 0)
+        {
+          statement.executeBatch();
+        }
+      }
+
+      statement.executeBatch();
+    }
+  }
+
+  private static void dropTestDataTable(Connection connection, String tableName)
+    throws Exception
+  {
+    try (Statement statement = connection.createStatement())
+    {
+      statement.execute("DROP TABLE IF EXISTS " + tableName);
+    }
+  }
+
+  private static long getPeakHeapUsage(Callable<?> callable)
+    throws Exception
+  {
+    List<MemoryPoolMXBean> heapMemoryPools = new ArrayList<>();
+
+    for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans())
+    {
+      if (memoryPool.getType() == MemoryType.HEAP)
+      {
+        heapMemoryPools.add(memoryPool);
+      }
+    }
+
+    System.gc();
+
+    for (MemoryPoolMXBean memoryPool : heapMemoryPools)
+    {
+      memoryPool.resetPeakUsage();
+    }
+
+    callable.call();
+
+    long peakHeapUsage = 0;
+
+    for (MemoryPoolMXBean memoryPool : heapMemoryPools)
+    {
+      peakHeapUsage += memoryPool.getPeakUsage().getUsed();
+    }
+
+    return peakHeapUsage;
+  }
+
   private static synchronized ReportDefinition getTestReportDefinitionDetails()
     throws Exception
   {
@@ -174,6 +431,33 @@ public class ReportingServiceTest
     return reportDefinition;
   }
 
+  /**
+   * Returns the details for a test report definition whose template has been compiled to retrieve
+   * the report data from the specified table instead of the TEST.TEST_DATA table.
+   *
+   * @param tableName the qualified name of the table containing the report data
+   *
+   * @return the details for the test report definition
+   */
+  private static ReportDefinition getTestReportDefinitionDetails(String tableName)
+    throws Exception
+  {
+    ReportDefinition reportDefinition = getTestReportDefinitionDetails();
+
+    String testReportSource = new String(ResourceUtil.getClasspathResource(
+        "guru/mmp/application/test/TestReport.jrxml"), StandardCharsets.UTF_8);
+
+    ByteArrayOutputStream testReportTemplate = new ByteArrayOutputStream();
+
+    JasperCompileManager.compileReportToStream(new ByteArrayInputStream(
+        testReportSource.replace("TEST.TEST_DATA", tableName).getBytes(StandardCharsets.UTF_8)),
+        testReportTemplate);
+
+    reportDefinition.setTemplate(testReportTemplate.toByteArray());
+
+    return reportDefinition;
+  }
+
   private void compareReportDefinitionToReportDefinitionSummary(ReportDefinition reportDefinition,
       ReportDefinitionSummary reportDefinitionSummary)
   {
@@ -193,4 +477,37 @@ public class ReportingServiceTest
     assertEquals("The template values for the two report definitions do not match", true,
         Arrays.equals(reportDefinition1.getTemplate(), reportDefinition2.getTemplate()));
   }
+
+  /**
+   * The <code>CountingOutputStream</code> class implements an output stream that discards the
+   * data written to it and counts the number of bytes.
+   */
+  private static class CountingOutputStream extends OutputStream
+  {
+    private long numberOfBytes;
+
+    /**
+     * Writes the specified byte to this output stream.
+     *
+     * @param b the byte
+     */
+    @Override
+    public void write(int b)
+    {
+      numberOfBytes++;
+    }
+
+    /**
+     * Writes the bytes from the specified byte array to this output stream.
+     *
+     * @param b   the data
+     * @param off the start offset in the data
+     * @param len the number of bytes to write
+     */
+    @Override
+    public void write(byte[] b, int off, int len)
+    {
+      numberOfBytes += len;
+    }
+  }
 }
@@ -18,23 +18,38 @@ package guru.mmp.application.scheduler;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.application.executor.ApplicationTaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import javax.inject.Named;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 //~--- JDK imports ------------------------------------------------------------
 
 /**
  * The <code>BackgroundJobExecutor</code> class implements the Background Job Executor.
+ * <p/>
+ * A single dispatcher thread keeps the jobs that are due for execution in the near future in a
+ * priority queue ordered by their next execution date and time. The dispatcher sleeps until the
+ * next job is due, claims the jobs that are due in batches and hands them off to a bounded pool
+ * of threads that execute the jobs. The dispatcher only claims as many jobs as the pool can
+ * accept, so that jobs are left in the database rather than rejected when the pool is saturated.
+ * <p/>
+ * The pool is the <b>schedulerTaskExecutor</b> task executor, which is configured using the
+ * <b>application.taskExecutors.scheduler</b> properties. By default it executes a job on the
+ * dispatcher thread if it is saturated, which applies backpressure instead of rejecting the job.
  *
  * @author Marcus Portmann
  */
@@ -42,116 +57,335 @@ import java.util.concurrent.TimeUnit;
 @SuppressWarnings("unused")
 public class BackgroundJobExecutor
 {
+  /**
+   * The interval in milliseconds at which the dispatcher schedules any unscheduled jobs and
+   * reloads the jobs that are due for execution from the database. This is also how far ahead the
+   * dispatcher looks when loading the jobs that are due for execution.
+   */
+  private static final long DISPATCHER_REFRESH_INTERVAL = 15000L;
+
+  /**
+   * The amount of time in milliseconds the dispatcher will pause after failing to retrieve the
+   * jobs scheduled for execution.
+   */
+  private static final long RETRIEVAL_FAILURE_PAUSE = 5000L;
+
   /* Logger */
   private static Logger logger = LoggerFactory.getLogger(BackgroundJobExecutor.class);
 
   /**
-   * The default number of threads to start initially to process jobs.
+   * The lock used to coordinate the dispatcher with the threads executing jobs.
    */
-  private static final int DEFAULT_INITIAL_PROCESSING_THREADS = 1;
+  private final ReentrantLock dispatcherLock = new ReentrantLock();
 
   /**
-   * The default maximum number of threads to create to process jobs.
+   * The condition used to wake up the dispatcher.
    */
-  private static final int DEFAULT_MAXIMUM_PROCESSING_THREADS = 10;
+  private final Condition dispatcherSignalled = dispatcherLock.newCondition();
 
   /**
-   * The default number of minutes an idle processing thread should be kept alive.
+   * The jobs that are due for execution in the near future ordered by their next execution date
+   * and time. This queue is only accessed by the dispatcher thread.
    */
-  private static final int DEFAULT_IDLE_PROCESSING_THREADS_KEEP_ALIVE_TIME = 5;
+  private final PriorityQueue<Job> scheduledJobs = new PriorityQueue<>(Comparator.comparing(
+      Job::getNextExecution));
 
   /**
-   * The default maximum number of jobs to queue for processing if no processing threads are
-   * available.
+   * Has the dispatcher been signalled?
    */
-  private static final int DEFAULT_MAXIMUM_PROCESSING_QUEUE_LENGTH = 100;
+  private boolean isDispatcherSignalled;
+
+  /**
+   * Is the dispatcher waiting for capacity to become available in the job processor?
+   */
+  private volatile boolean isWaitingForCapacity;
+
+  /**
+   * Is the Background Job Executor running?
+   */
+  private volatile boolean isRunning;
+
+  /**
+   * The thread responsible for dispatching the jobs scheduled for execution.
+   */
+  private Thread dispatcher;
+
+  /**
+   * The task executor responsible for processing jobs.
+   */
+  @Inject
+  @Named("schedulerTaskExecutor")
+  private ApplicationTaskExecutor jobProcessor;
 
   /* Scheduler Service */
   @Inject
   private ISchedulerService schedulerService;
 
   /**
-   * The executor responsible for processing jobs.
+   * Wake up the dispatcher to execute the jobs that are scheduled for execution.
+   * <p/>
+   * This method does not block. It is invoked by a scheduled task as a safety net.
    */
-  private Executor jobProcessor;
+  @Scheduled(cron = "0 * * * * *")
+  public void executeJobs()
+  {
+    signalDispatcher();
+  }
 
   /**
-   * Execute the jobs.
+   * Initialise the Background Job Executor.
    */
-  @Scheduled(cron = "0 * * * * *")
-  public void executeJobs()
+  @PostConstruct
+  public void init()
   {
-    Job job;
+    logger.info("Initialising the Background Job Executor");
 
-    if (schedulerService == null)
+    if (schedulerService != null)
     {
-      return;
+      /*
+       * Reset any locks for jobs that were previously being executed.
+       */
+      try
+      {
+        logger.info("Resetting the locks for the jobs being executed");
+
+        schedulerService.resetJobLocks(Job.Status.EXECUTING, Job.Status.SCHEDULED);
+      }
+      catch (Throwable e)
+      {
+        logger.error("Failed to reset the locks for the jobs being executed", e);
+      }
+
+      // Start the dispatcher
+      isRunning = true;
+
+      dispatcher = new Thread(this::runDispatcher, "Background Job Executor Dispatcher");
+      dispatcher.setDaemon(true);
+      dispatcher.start();
+    }
+    else
+    {
+      logger.error("Failed to initialise the Background Job Executor: "
+          + "The Scheduler Service was NOT injected");
     }
+  }
+
+  /**
+   * Shutdown the Background Job Executor.
+   */
+  @PreDestroy
+  public void shutdown()
+  {
+    isRunning = false;
 
-    while (true)
+    signalDispatcher();
+
+    if (dispatcher != null)
     {
-      // Retrieve the next job scheduled for execution
       try
       {
-        job = schedulerService.getNextJobScheduledForExecution();
+        dispatcher.join(RETRIEVAL_FAILURE_PAUSE);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
 
-        if (job == null)
-        {
-          if (logger.isDebugEnabled())
-          {
-            logger.debug("No jobs scheduled for execution");
-          }
+      dispatcher = null;
+    }
+  }
 
-          // Schedule any unscheduled jobs
-          while (schedulerService.scheduleNextUnscheduledJobForExecution()) {}
+  /**
+   * Claim the jobs that are due for execution in batches and hand them off to the job processor.
+   * <p/>
+   * No more jobs are claimed than the job processor can accept.
+   *
+   * @return <code>true</code> if the job processor was saturated and there may be more jobs due
+   *         for execution or <code>false</code> otherwise
+   */
+  private boolean dispatchJobs()
+    throws SchedulerServiceException
+  {
+    while (isRunning)
+    {
+      int capacity = getAvailableCapacity();
 
-          return;
-        }
+      if (capacity <= 0)
+      {
+        return true;
       }
-      catch (Throwable e)
+
+      List<Job> jobs = schedulerService.getNextJobsScheduledForExecution(capacity);
+
+      for (Job job : jobs)
       {
-        logger.error("Failed to retrieve the next job scheduled for execution", e);
+        if (logger.isDebugEnabled())
+        {
+          logger.debug(String.format("Dispatching the job (%s) for execution", job.getId()));
+        }
 
-        return;
+        jobProcessor.execute(() ->
+            {
+              try
+              {
+                new JobExecutor(schedulerService, job).run();
+              }
+              finally
+              {
+                if (isWaitingForCapacity)
+                {
+                  signalDispatcher();
+                }
+              }
+            }
+            );
       }
 
-      jobProcessor.execute(new JobExecutor(schedulerService, job));
+      if (jobs.size() < capacity)
+      {
+        return false;
+      }
     }
+
+    return false;
   }
 
   /**
-   * Initialise the Background Job Executor.
+   * Returns the number of jobs the job processor can accept without queueing beyond its limit.
+   *
+   * @return the number of jobs the job processor can accept without queueing beyond its limit
    */
-  @PostConstruct
-  public void init()
+  private int getAvailableCapacity()
   {
-    logger.info("Initialising the Background Job Executor");
+    return (jobProcessor.getMaxPoolSize() - jobProcessor.getActiveCount())
+        + jobProcessor.getRemainingQueueCapacity();
+  }
 
-    if (schedulerService != null)
+  /**
+   * Reload the jobs that are due for execution before the specified date and time.
+   *
+   * @param before the date and time before which the jobs are due for execution
+   */
+  private void refreshScheduledJobs(long before)
+    throws SchedulerServiceException
+  {
+    List<Job> jobs = schedulerService.getJobsScheduledForExecutionBefore(new Date(before));
+
+    scheduledJobs.clear();
+
+    for (Job job : jobs)
     {
-      // Initialise the job processor
-      this.jobProcessor = new ThreadPoolExecutor(DEFAULT_INITIAL_PROCESSING_THREADS,
-          DEFAULT_MAXIMUM_PROCESSING_THREADS, DEFAULT_IDLE_PROCESSING_THREADS_KEEP_ALIVE_TIME,
-          TimeUnit.MINUTES, new LinkedBlockingQueue<>(DEFAULT_MAXIMUM_PROCESSING_QUEUE_LENGTH));
+      if (job.getNextExecution() != null)
+      {
+        scheduledJobs.add(job);
+      }
+    }
+  }
 
-      /*
-       * Reset any locks for jobs that were previously being executed.
-       */
+  /**
+   * The main loop for the dispatcher.
+   * <p/>
+   * The dispatcher periodically schedules any unscheduled jobs and reloads the jobs that are due
+   * for execution in the near future. It then waits until the next job is due, the refresh
+   * interval elapses or it is signalled, and claims the jobs that are due for execution.
+   */
+  private void runDispatcher()
+  {
+    long nextRefresh = 0;
+
+    while (isRunning)
+    {
       try
       {
-        logger.info("Resetting the locks for the jobs being executed");
+        long currentTime = System.currentTimeMillis();
 
-        schedulerService.resetJobLocks(Job.Status.EXECUTING, Job.Status.SCHEDULED);
+        if (currentTime >= nextRefresh)
+        {
+          schedulerService.scheduleUnscheduledJobsForExecution();
+
+          nextRefresh = currentTime + DISPATCHER_REFRESH_INTERVAL;
+
+          refreshScheduledJobs(nextRefresh);
+        }
+
+        // Remove the jobs that are now due from the queue, they are claimed below
+        while ((!scheduledJobs.isEmpty())
+            && (scheduledJobs.peek().getNextExecution().getTime() <= currentTime))
+        {
+          scheduledJobs.poll();
+        }
+
+        isWaitingForCapacity = dispatchJobs();
       }
       catch (Throwable e)
       {
-        logger.error("Failed to reset the locks for the jobs being executed", e);
+        logger.error("Failed to dispatch the jobs scheduled for execution", e);
+
+        waitForSignal(RETRIEVAL_FAILURE_PAUSE);
+
+        continue;
       }
+
+      long wakeUpTime = nextRefresh;
+
+      if ((!isWaitingForCapacity) && (!scheduledJobs.isEmpty()))
+      {
+        wakeUpTime = Math.min(wakeUpTime, scheduledJobs.peek().getNextExecution().getTime());
+      }
+
+      waitForSignal(Math.max(1, wakeUpTime - System.currentTimeMillis()));
     }
-    else
+  }
+
+  /**
+   * Signal the dispatcher that jobs may be due for execution or that capacity has become
+   * available in the job processor.
+   */
+  private void signalDispatcher()
+  {
+    dispatcherLock.lock();
+
+    try
     {
-      logger.error("Failed to initialise the Background Job Executor: "
-          + "The Scheduler Service was NOT injected");
+      isDispatcherSignalled = true;
+
+      dispatcherSignalled.signal();
+    }
+    finally
+    {
+      dispatcherLock.unlock();
+    }
+  }
+
+  /**
+   * Wait until the dispatcher is signalled or the specified timeout elapses.
+   *
+   * @param timeout the maximum amount of time in milliseconds to wait
+   */
+  private void waitForSignal(long timeout)
+  {
+    dispatcherLock.lock();
+
+    try
+    {
+      long nanosRemaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+      while (isRunning && (!isDispatcherSignalled) && (nanosRemaining > 0))
+      {
+        nanosRemaining = dispatcherSignalled.awaitNanos(nanosRemaining);
+      }
+
+      isDispatcherSignalled = false;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+
+      isRunning = false;
+    }
+    finally
+    {
+      dispatcherLock.unlock();
     }
   }
 }
@@ -22,6 +22,7 @@ import guru.mmp.common.persistence.DAOException;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -86,6 +87,17 @@ public interface ISchedulerDAO
   List<Job> getJobs()
     throws DAOException;
 
+  /**
+   * Retrieve the jobs that are scheduled for execution before the specified date and time.
+   *
+   * @param before the date and time before which the jobs are scheduled for execution
+   *
+   * @return the jobs that are scheduled for execution before the specified date and time ordered
+   *         by their next execution date and time
+   */
+  List<Job> getJobsScheduledForExecutionBefore(Date before)
+    throws DAOException;
+
   /**
    * Retrieve the next job that is scheduled for execution.
    * <p/>
@@ -102,6 +114,24 @@ public interface ISchedulerDAO
   Job getNextJobScheduledForExecution(int executionRetryDelay, String lockName)
     throws DAOException;
 
+  /**
+   * Retrieve the next batch of jobs that are scheduled for execution.
+   * <p/>
+   * The jobs will be locked to prevent duplicate processing.
+   *
+   * @param maximumNumberOfJobs the maximum number of jobs to retrieve
+   * @param executionRetryDelay the delay in milliseconds between successive attempts to execute
+   *                            a job
+   * @param lockName            the name of the lock that should be applied to the jobs scheduled
+   *                            for execution when they are retrieved
+   *
+   * @return the next batch of jobs that are scheduled for execution, which will be empty if no
+   *         jobs are currently scheduled for execution
+   */
+  List<Job> getNextJobsScheduledForExecution(int maximumNumberOfJobs, int executionRetryDelay,
+      String lockName)
+    throws DAOException;
+
   /**
    * Retrieve the number of filtered jobs.
    *
@@ -178,6 +208,14 @@ public interface ISchedulerDAO
   boolean scheduleNextUnscheduledJobForExecution()
     throws DAOException;
 
+  /**
+   * Schedule all the unscheduled jobs for execution.
+   *
+   * @return the number of unscheduled jobs that were processed
+   */
+  int scheduleUnscheduledJobsForExecution()
+    throws DAOException;
+
   /**
    * Set the status for the job.
    *
@@ -18,6 +18,7 @@ package guru.mmp.application.scheduler;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -92,6 +93,17 @@ public interface ISchedulerService
   List<Job> getJobs()
     throws SchedulerServiceException;
 
+  /**
+   * Retrieve the jobs that are scheduled for execution before the specified date and time.
+   *
+   * @param before the date and time before which the jobs are scheduled for execution
+   *
+   * @return the jobs that are scheduled for execution before the specified date and time ordered
+   *         by their next execution date and time
+   */
+  List<Job> getJobsScheduledForExecutionBefore(Date before)
+    throws SchedulerServiceException;
+
   /**
    * Returns the maximum number of times execution will be attempted for a job.
    *
@@ -110,6 +122,19 @@ public interface ISchedulerService
   Job getNextJobScheduledForExecution()
     throws SchedulerServiceException;
 
+  /**
+   * Retrieve the next batch of jobs that are scheduled for execution.
+   * <p/>
+   * The jobs will be locked to prevent duplicate processing.
+   *
+   * @param maximumNumberOfJobs the maximum number of jobs to retrieve
+   *
+   * @return the next batch of jobs that are scheduled for execution, which will be empty if no
+   *         jobs are currently scheduled for execution
+   */
+  List<Job> getNextJobsScheduledForExecution(int maximumNumberOfJobs)
+    throws SchedulerServiceException;
+
   /**
    * Retrieve the number of filtered jobs.
    *
@@ -175,6 +200,14 @@ public interface ISchedulerService
   boolean scheduleNextUnscheduledJobForExecution()
     throws SchedulerServiceException;
 
+  /**
+   * Schedule all the unscheduled jobs for execution.
+   *
+   * @return the number of unscheduled jobs that were processed
+   */
+  int scheduleUnscheduledJobsForExecution()
+    throws SchedulerServiceException;
+
   /**
    * Unlock a locked job.
    *
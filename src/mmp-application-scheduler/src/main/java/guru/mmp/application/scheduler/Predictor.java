@@ -18,10 +18,16 @@ package guru.mmp.application.scheduler;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.util.Calendar;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The <code>Predictor</code> class provides the capability to predict when a scheduling pattern
@@ -39,6 +45,11 @@ import java.util.TimeZone;
  *  System.out.println(p.nextMatchingDate());
  * }
  * </pre>
+ * <p/>
+ * The next matching moment is calculated by jumping directly to the next matching month, day,
+ * hour and minute using the bitsets of the compiled scheduling pattern, rather than advancing a
+ * minute at a time. A predictor can be shared between threads without locking. Each call to
+ * {@link #nextMatchingTime()} returns a different matching moment.
  *
  * @author Carlo Pelliccia
  * @author Marcus Portmann
@@ -47,19 +58,25 @@ import java.util.TimeZone;
 public class Predictor
 {
   /**
-   * The time zone for the prediction.
+   * The maximum number of years to search for the next matching moment. The Gregorian calendar
+   * repeats every 400 years so a pattern that does not match within this period will never match.
    */
-  private TimeZone timeZone = TimeZone.getDefault();
+  private static final int MAXIMUM_YEARS_TO_SEARCH = 400;
 
   /**
    * The scheduling pattern on which the predictor works.
    */
-  private SchedulingPattern schedulingPattern;
+  private final SchedulingPattern schedulingPattern;
 
   /**
    * The start time for the next prediction.
    */
-  private long time;
+  private final AtomicLong time;
+
+  /**
+   * The ID of the time zone for the prediction.
+   */
+  private volatile ZoneId zoneId = ZoneId.systemDefault();
 
   /**
    * Constructs a new <code>SchedulingPattern</code>.
@@ -104,7 +121,7 @@ public class Predictor
   public Predictor(SchedulingPattern schedulingPattern, long start)
   {
     this.schedulingPattern = schedulingPattern;
-    this.time = (start / (1000 * 60)) * 1000 * 60;
+    this.time = new AtomicLong((start / (1000 * 60)) * 1000 * 60);
   }
 
   /**
@@ -133,7 +150,7 @@ public class Predictor
     throws InvalidSchedulingPatternException
   {
     this.schedulingPattern = new SchedulingPattern(schedulingPattern);
-    this.time = (start / (1000 * 60)) * 1000 * 60;
+    this.time = new AtomicLong((start / (1000 * 60)) * 1000 * 60);
   }
 
   /**
@@ -141,7 +158,7 @@ public class Predictor
    *
    * @return the next matching moment as a {@link Date} object
    */
-  public synchronized Date nextMatchingDate()
+  public Date nextMatchingDate()
   {
     return new Date(nextMatchingTime());
   }
@@ -151,217 +168,207 @@ public class Predictor
    *
    * @return the next matching moment as a milliseconds value
    */
-  public synchronized long nextMatchingTime()
+  public long nextMatchingTime()
   {
-    // Go a minute ahead.
-    time += 60000;
-
-    // Is it matching?
-    if (schedulingPattern.match(time))
+    for (;;)
     {
-      return time;
+      long currentTime = time.get();
+
+      long nextTime = nextMatchingTime(zoneId, currentTime);
+
+      if (time.compareAndSet(currentTime, nextTime))
+      {
+        return nextTime;
+      }
     }
+  }
 
-    // Go through the matcher groups.
-    int size = schedulingPattern.matcherSize;
-    long[] times = new long[size];
+  /**
+   * Set the time zone for predictions.
+   *
+   * @param timeZone the time zone to user for predictions
+   */
+  public void setTimeZone(TimeZone timeZone)
+  {
+    this.zoneId = timeZone.toZoneId();
+  }
 
-    for (int k = 0; k < size; k++)
+  /**
+   * Returns the first moment after the specified time that matches the pattern with the specified
+   * index.
+   *
+   * @param index  the index of the pattern
+   * @param zoneId the ID of the time zone for the prediction
+   * @param after  the time as a milliseconds value
+   *
+   * @return the first moment after the specified time that matches the pattern as a milliseconds
+   *         value or <code>Long.MAX_VALUE</code> if the pattern never matches
+   */
+  private long nextMatchingTime(int index, ZoneId zoneId, long after)
+  {
+    long minuteBits = schedulingPattern.minuteBits[index];
+    long hourBits = schedulingPattern.hourBits[index];
+    long dayOfMonthBits = schedulingPattern.dayOfMonthBits[index];
+    long monthBits = schedulingPattern.monthBits[index];
+    long dayOfWeekBits = schedulingPattern.dayOfWeekBits[index];
+
+    // Start from the minute after the specified time
+    ZonedDateTime start = Instant.ofEpochMilli(((after / 60000) * 60000) + 60000).atZone(zoneId);
+
+    int year = start.getYear();
+    int month = start.getMonthValue();
+    int dayOfMonth = start.getDayOfMonth();
+    int hour = start.getHour();
+    int minute = start.getMinute();
+
+    int maximumYear = year + MAXIMUM_YEARS_TO_SEARCH;
+
+    while (year <= maximumYear)
     {
-      // Ok, split the time!
-      GregorianCalendar c = new GregorianCalendar();
-
-      c.setTimeInMillis(time);
-      c.setTimeZone(timeZone);
-
-      int minute = c.get(Calendar.MINUTE);
-      int hour = c.get(Calendar.HOUR_OF_DAY);
-      int dayOfMonth = c.get(Calendar.DAY_OF_MONTH);
-      int month = c.get(Calendar.MONTH);
-      int year = c.get(Calendar.YEAR);
-
-      // Gets the matchers.
-      ValueMatcher minuteMatcher = schedulingPattern.minuteMatchers.get(k);
-      ValueMatcher hourMatcher = schedulingPattern.hourMatchers.get(k);
-      ValueMatcher dayOfMonthMatcher = schedulingPattern.dayOfMonthMatchers.get(k);
-      ValueMatcher dayOfWeekMatcher = schedulingPattern.dayOfWeekMatchers.get(k);
-      ValueMatcher monthMatcher = schedulingPattern.monthMatchers.get(k);
-
-      for (;;)
-      {          // day of week
-        for (;;)
-        {        // month
-          for (;;)
-          {      // day of month
-            for (;;)
-            {    // hour
-              for (;;)
-              {  // minutes
-                if (minuteMatcher.match(minute))
-                {
-                  break;
-                }
-                else
-                {
-                  minute++;
-
-                  if (minute > 59)
-                  {
-                    minute = 0;
-                    hour++;
-                  }
-                }
-              }
-
-              if (hour > 23)
-              {
-                hour = 0;
-                dayOfMonth++;
-              }
-
-              if (hourMatcher.match(hour))
-              {
-                break;
-              }
-              else
-              {
-                hour++;
-                minute = 0;
-              }
-            }
-
-            if (dayOfMonth > 31)
-            {
-              dayOfMonth = 1;
-              month++;
-            }
-
-            if (month > Calendar.DECEMBER)
-            {
-              month = Calendar.JANUARY;
-              year++;
-            }
-
-            if (dayOfMonthMatcher instanceof DayOfMonthValueMatcher)
-            {
-              DayOfMonthValueMatcher aux = (DayOfMonthValueMatcher) dayOfMonthMatcher;
-
-              if (aux.match(dayOfMonth, month + 1, c.isLeapYear(year)))
-              {
-                break;
-              }
-              else
-              {
-                dayOfMonth++;
-                hour = 0;
-                minute = 0;
-              }
-            }
-            else if (dayOfMonthMatcher.match(dayOfMonth))
-            {
-              break;
-            }
-            else
-            {
-              dayOfMonth++;
-              hour = 0;
-              minute = 0;
-            }
-          }
-
-          if (monthMatcher.match(month + 1))
-          {
-            break;
-          }
-          else
-          {
-            month++;
-            dayOfMonth = 1;
-            hour = 0;
-            minute = 0;
-          }
-        }
+      // Find the next matching month
+      int nextMonth = SchedulingPattern.nextSetBit(monthBits, month);
 
-        // Is this ok?
-        c = new GregorianCalendar();
-        c.setTimeZone(timeZone);
-        c.set(Calendar.MINUTE, minute);
-        c.set(Calendar.HOUR_OF_DAY, hour);
-        c.set(Calendar.DAY_OF_MONTH, dayOfMonth);
-        c.set(Calendar.MONTH, month);
-        c.set(Calendar.YEAR, year);
-
-        // Day-of-month/month/year compatibility check.
-        int oldDayOfMonth = dayOfMonth;
-        int oldMonth = month;
-        int oldYear = year;
-
-        dayOfMonth = c.get(Calendar.DAY_OF_MONTH);
-        month = c.get(Calendar.MONTH);
-        year = c.get(Calendar.YEAR);
-
-        if ((month != oldMonth) || (dayOfMonth != oldDayOfMonth) || (year != oldYear))
-        {
-          // Take another spin!
-          continue;
-        }
+      if (nextMonth == -1)
+      {
+        year++;
+        month = 1;
+        dayOfMonth = 1;
+        hour = 0;
+        minute = 0;
+
+        continue;
+      }
+      else if (nextMonth != month)
+      {
+        month = nextMonth;
+        dayOfMonth = 1;
+        hour = 0;
+        minute = 0;
+      }
 
-        // Day of week.
-        int dayOfWeek = c.get(Calendar.DAY_OF_WEEK);
+      // Find the next matching day in the month
+      int lengthOfMonth = Month.of(month).length(Year.isLeap(year));
+
+      DayOfWeek firstDayOfWeek = LocalDate.of(year, month, 1).getDayOfWeek();
+
+      int nextDayOfMonth = -1;
+
+      for (int i = dayOfMonth; i <= lengthOfMonth; i++)
+      {
+        int dayOfWeek = (firstDayOfWeek.getValue() + i - 1) % 7;
 
-        if (dayOfWeekMatcher.match(dayOfWeek - 1))
+        if (SchedulingPattern.isSet(dayOfWeekBits, dayOfWeek)
+            && SchedulingPattern.matchDayOfMonth(dayOfMonthBits, i, lengthOfMonth))
         {
+          nextDayOfMonth = i;
+
           break;
         }
-        else
+      }
+
+      if (nextDayOfMonth == -1)
+      {
+        month++;
+        dayOfMonth = 1;
+        hour = 0;
+        minute = 0;
+
+        if (month > 12)
         {
-          dayOfMonth++;
-          hour = 0;
-          minute = 0;
-
-          if (dayOfMonth > 31)
-          {
-            dayOfMonth = 1;
-            month++;
-
-            if (month > Calendar.DECEMBER)
-            {
-              month = Calendar.JANUARY;
-              year++;
-            }
-          }
+          year++;
+          month = 1;
         }
+
+        continue;
+      }
+      else if (nextDayOfMonth != dayOfMonth)
+      {
+        dayOfMonth = nextDayOfMonth;
+        hour = 0;
+        minute = 0;
       }
 
-      // Seems it matches!
-      times[k] = (c.getTimeInMillis() / (1000 * 60)) * 1000 * 60;
-    }
+      // Find the next matching hour in the day
+      int nextHour = SchedulingPattern.nextSetBit(hourBits, hour);
+
+      if (nextHour == -1)
+      {
+        dayOfMonth++;
+        hour = 0;
+        minute = 0;
 
-    // Which one?
-    long min = Long.MAX_VALUE;
+        continue;
+      }
+      else if (nextHour != hour)
+      {
+        hour = nextHour;
+        minute = 0;
+      }
 
-    for (int k = 0; k < size; k++)
-    {
-      if (times[k] < min)
+      // Find the next matching minute in the hour
+      int nextMinute = SchedulingPattern.nextSetBit(minuteBits, minute);
+
+      if (nextMinute == -1)
       {
-        min = times[k];
+        hour++;
+        minute = 0;
+
+        continue;
       }
-    }
 
-    // Updates the object current time value.
-    time = min;
+      minute = nextMinute;
+
+      /*
+       * Convert the local date and time to a moment in time. A local time in a daylight saving
+       * gap is moved forward by the length of the gap. If the local time is repeated because of a
+       * daylight saving overlap, the later occurrence is used when the earlier one has passed.
+       */
+      ZonedDateTime candidate = ZonedDateTime.of(year, month, dayOfMonth, hour, minute, 0, 0,
+          zoneId);
+
+      long candidateTime = candidate.toInstant().toEpochMilli();
 
-    // Here it is.
-    return time;
+      if (candidateTime <= after)
+      {
+        candidateTime = candidate.withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+      }
+
+      if (candidateTime > after)
+      {
+        return candidateTime;
+      }
+
+      minute++;
+    }
+
+    return Long.MAX_VALUE;
   }
 
   /**
-   * Set the time zone for predictions.
+   * Returns the first moment after the specified time that matches the scheduling pattern.
    *
-   * @param timeZone the time zone to user for predictions
+   * @param zoneId the ID of the time zone for the prediction
+   * @param after  the time as a milliseconds value
+   *
+   * @return the first moment after the specified time that matches the scheduling pattern as a
+   *         milliseconds value
    */
-  public void setTimeZone(TimeZone timeZone)
+  private long nextMatchingTime(ZoneId zoneId, long after)
   {
-    this.timeZone = timeZone;
+    long nextTime = Long.MAX_VALUE;
+
+    for (int i = 0; i < schedulingPattern.matcherSize; i++)
+    {
+      nextTime = Math.min(nextTime, nextMatchingTime(i, zoneId, after));
+    }
+
+    if (nextTime == Long.MAX_VALUE)
+    {
+      throw new RuntimeException(String.format(
+          "The scheduling pattern (%s) does not match any time in the next %d years",
+          schedulingPattern, MAXIMUM_YEARS_TO_SEARCH));
+    }
+
+    return nextTime;
   }
 }
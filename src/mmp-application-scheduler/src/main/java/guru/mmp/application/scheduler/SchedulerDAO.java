@@ -19,6 +19,7 @@ package guru.mmp.application.scheduler;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.DAOUtil;
 import guru.mmp.common.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +29,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import java.sql.*;
@@ -58,6 +60,9 @@ public class SchedulerDAO
   @Qualifier("applicationDataSource")
   private DataSource dataSource;
 
+  /* The SQL used to retrieve the next batch of jobs scheduled for execution. */
+  private String getNextJobsScheduledForExecutionSQL;
+
   /**
    * Create the entry for the job in the database.
    *
@@ -281,6 +286,49 @@ public class SchedulerDAO
     }
   }
 
+  /**
+   * Retrieve the jobs that are scheduled for execution before the specified date and time.
+   *
+   * @param before the date and time before which the jobs are scheduled for execution
+   *
+   * @return the jobs that are scheduled for execution before the specified date and time ordered
+   *         by their next execution date and time
+   */
+  public List<Job> getJobsScheduledForExecutionBefore(Date before)
+    throws DAOException
+  {
+    String getJobsScheduledForExecutionBeforeSQL =
+        "SELECT J.ID, J.NAME, J.SCHEDULING_PATTERN, J.JOB_CLASS, J.IS_ENABLED, J.STATUS, "
+        + "J.EXECUTION_ATTEMPTS, J.LOCK_NAME, J.LAST_EXECUTED, J.NEXT_EXECUTION, J.UPDATED FROM "
+        + "SCHEDULER.JOBS J WHERE J.STATUS=? AND J.NEXT_EXECUTION < ? ORDER BY J.NEXT_EXECUTION";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(
+          getJobsScheduledForExecutionBeforeSQL))
+    {
+      statement.setInt(1, Job.Status.SCHEDULED.getCode());
+      statement.setTimestamp(2, new Timestamp(before.getTime()));
+
+      List<Job> jobs = new ArrayList<>();
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        while (rs.next())
+        {
+          jobs.add(getJob(rs));
+        }
+      }
+
+      return jobs;
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the jobs scheduled for execution before (%s) from the database",
+          before), e);
+    }
+  }
+
   /**
    * Retrieve the next job that is scheduled for execution.
    * <p/>
@@ -361,6 +409,105 @@ public class SchedulerDAO
     }
   }
 
+  /**
+   * Retrieve the next batch of jobs that are scheduled for execution.
+   * <p/>
+   * The jobs will be locked to prevent duplicate processing. Jobs that are already locked by
+   * another transaction are skipped where the database supports it.
+   *
+   * @param maximumNumberOfJobs the maximum number of jobs to retrieve
+   * @param executionRetryDelay the delay in milliseconds between successive attempts to execute
+   *                            a job
+   * @param lockName            the name of the lock that should be applied to the jobs scheduled
+   *                            for execution when they are retrieved
+   *
+   * @return the next batch of jobs that are scheduled for execution, which will be empty if no
+   *         jobs are currently scheduled for execution
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public List<Job> getNextJobsScheduledForExecution(int maximumNumberOfJobs,
+      int executionRetryDelay, String lockName)
+    throws DAOException
+  {
+    String lockJobSQL =
+        "UPDATE SCHEDULER.JOBS SET STATUS=?, LOCK_NAME=?, UPDATED=? WHERE ID=? AND STATUS=?";
+
+    try
+    {
+      List<Job> jobs = new ArrayList<>();
+
+      try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(String.format(
+            getNextJobsScheduledForExecutionSQL, maximumNumberOfJobs)))
+      {
+        long currentTime = System.currentTimeMillis();
+
+        statement.setInt(1, Job.Status.SCHEDULED.getCode());
+        statement.setTimestamp(2, new Timestamp(currentTime - executionRetryDelay));
+        statement.setTimestamp(3, new Timestamp(currentTime));
+
+        try (ResultSet rs = statement.executeQuery())
+        {
+          while (rs.next())
+          {
+            jobs.add(getJob(rs));
+          }
+        }
+
+        if (jobs.size() == 0)
+        {
+          return jobs;
+        }
+
+        Timestamp updated = new Timestamp(System.currentTimeMillis());
+
+        try (PreparedStatement updateStatement = connection.prepareStatement(lockJobSQL))
+        {
+          for (Job job : jobs)
+          {
+            updateStatement.setInt(1, Job.Status.EXECUTING.getCode());
+            updateStatement.setString(2, lockName);
+            updateStatement.setTimestamp(3, updated);
+            updateStatement.setObject(4, job.getId());
+            updateStatement.setInt(5, Job.Status.SCHEDULED.getCode());
+            updateStatement.addBatch();
+          }
+
+          int[] updateCounts = updateStatement.executeBatch();
+
+          /*
+           * Only return the jobs we actually managed to lock. On databases that do not support
+           * skipping locked rows a job may have been claimed by another scheduler between the
+           * SELECT and the UPDATE.
+           */
+          List<Job> lockedJobs = new ArrayList<>(jobs.size());
+
+          for (int i = 0; i < jobs.size(); i++)
+          {
+            if ((updateCounts[i] == 1) || (updateCounts[i] == Statement.SUCCESS_NO_INFO))
+            {
+              Job job = jobs.get(i);
+
+              job.setStatus(Job.Status.EXECUTING);
+              job.setLockName(lockName);
+              job.setUpdated(updated);
+
+              lockedJobs.add(job);
+            }
+          }
+
+          return lockedJobs;
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the next %d jobs that have been scheduled for execution from the "
+          + "database", maximumNumberOfJobs), e);
+    }
+  }
+
   /**
    * Retrieve the number of filtered jobs.
    *
@@ -506,6 +653,33 @@ public class SchedulerDAO
     }
   }
 
+  /**
+   * Initialise the <code>SchedulerDAO</code> instance.
+   */
+  @PostConstruct
+  public void init()
+    throws DAOException
+  {
+    String getNextJobsScheduledForExecutionColumnsSQL =
+        "J.ID, J.NAME, J.SCHEDULING_PATTERN, J.JOB_CLASS, J.IS_ENABLED, J.STATUS, "
+        + "J.EXECUTION_ATTEMPTS, J.LOCK_NAME, J.LAST_EXECUTED, J.NEXT_EXECUTION, J.UPDATED";
+
+    String getNextJobsScheduledForExecutionWhereSQL =
+        "WHERE J.STATUS=? AND ((J.EXECUTION_ATTEMPTS=0) OR "
+        + "((J.EXECUTION_ATTEMPTS>0) AND (J.LAST_EXECUTED<?))) AND J.NEXT_EXECUTION <= ?";
+
+    try (Connection connection = dataSource.getConnection())
+    {
+      getNextJobsScheduledForExecutionSQL = DAOUtil.getClaimNextRowsSQL(connection,
+          getNextJobsScheduledForExecutionColumnsSQL, "SCHEDULER.JOBS J",
+          getNextJobsScheduledForExecutionWhereSQL, "J.NEXT_EXECUTION");
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException("Failed to initialise the SchedulerDAO instance", e);
+    }
+  }
+
   /**
    * Lock a job.
    *
@@ -675,6 +849,121 @@ public class SchedulerDAO
     }
   }
 
+  /**
+   * Schedule all the unscheduled jobs for execution.
+   * <p/>
+   * Unscheduled jobs whose next execution date and time cannot be determined will be marked as
+   * FAILED.
+   *
+   * @return the number of unscheduled jobs that were processed
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public int scheduleUnscheduledJobsForExecution()
+    throws DAOException
+  {
+    String getUnscheduledJobsSQL =
+        "SELECT J.ID, J.NAME, J.SCHEDULING_PATTERN, J.JOB_CLASS, J.IS_ENABLED, J.STATUS, "
+        + "J.EXECUTION_ATTEMPTS, J.LOCK_NAME, J.LAST_EXECUTED, J.NEXT_EXECUTION, J.UPDATED FROM "
+        + "SCHEDULER.JOBS J WHERE J.IS_ENABLED = TRUE AND J.STATUS = 0 FOR UPDATE";
+
+    String scheduleJobSQL =
+        "UPDATE SCHEDULER.JOBS SET STATUS=1, EXECUTION_ATTEMPTS=0, NEXT_EXECUTION=?, UPDATED=? "
+        + "WHERE ID=? AND STATUS=0";
+
+    String failJobSQL = "UPDATE SCHEDULER.JOBS SET STATUS=? WHERE ID=? AND STATUS=0";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(getUnscheduledJobsSQL))
+    {
+      List<Job> unscheduledJobs = new ArrayList<>();
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        while (rs.next())
+        {
+          unscheduledJobs.add(getJob(rs));
+        }
+      }
+
+      if (unscheduledJobs.size() == 0)
+      {
+        return 0;
+      }
+
+      long currentTime = System.currentTimeMillis();
+
+      try (PreparedStatement scheduleStatement = connection.prepareStatement(scheduleJobSQL);
+        PreparedStatement failStatement = connection.prepareStatement(failJobSQL))
+      {
+        int numberOfJobsToSchedule = 0;
+        int numberOfJobsToFail = 0;
+
+        for (Job job : unscheduledJobs)
+        {
+          Date nextExecution = null;
+
+          try
+          {
+            Predictor predictor = new Predictor(job.getSchedulingPattern(), currentTime);
+
+            nextExecution = predictor.nextMatchingDate();
+          }
+          catch (Throwable e)
+          {
+            logger.error(String.format(
+                "The next execution date could not be determined for the unscheduled job (%s) "
+                + "with the scheduling pattern (%s): The job will be marked as FAILED",
+                job.getId(), job.getSchedulingPattern()), e);
+          }
+
+          if (nextExecution == null)
+          {
+            failStatement.setInt(1, Job.Status.FAILED.getCode());
+            failStatement.setObject(2, job.getId());
+            failStatement.addBatch();
+
+            numberOfJobsToFail++;
+          }
+          else
+          {
+            if (logger.isDebugEnabled())
+            {
+              logger.debug(String.format(
+                  "Scheduling the unscheduled job (%s) for execution at (%s)", job.getId(),
+                  nextExecution));
+            }
+
+            scheduleStatement.setTimestamp(1, new Timestamp(nextExecution.getTime()));
+            scheduleStatement.setTimestamp(2, new Timestamp(currentTime));
+            scheduleStatement.setObject(3, job.getId());
+            scheduleStatement.addBatch();
+
+            numberOfJobsToSchedule++;
+          }
+        }
+
+        if (numberOfJobsToSchedule > 0)
+        {
+          scheduleStatement.executeBatch();
+        }
+
+        if (numberOfJobsToFail > 0)
+        {
+          failStatement.executeBatch();
+        }
+      }
+
+      logger.info(String.format("Processed %d unscheduled job(s) for execution",
+          unscheduledJobs.size()));
+
+      return unscheduledJobs.size();
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException("Failed to schedule the unscheduled jobs for execution", e);
+    }
+  }
+
   /**
    * Set the status for the job.
    *
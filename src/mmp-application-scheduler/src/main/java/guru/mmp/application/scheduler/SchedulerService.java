@@ -19,6 +19,7 @@ package guru.mmp.application.scheduler;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.application.configuration.IConfigurationService;
+import guru.mmp.application.configuration.IntegerConfigurationListener;
 import guru.mmp.application.util.ServiceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +29,7 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,12 +65,12 @@ public class SchedulerService
   /*
    * The delay in milliseconds between successive attempts to execute a job.
    */
-  private int jobExecutionRetryDelay;
+  private volatile int jobExecutionRetryDelay;
 
   /*
    * The maximum number of times execution will be attempted for a job.
    */
-  private int maximumJobExecutionAttempts;
+  private volatile int maximumJobExecutionAttempts;
 
   /* Configuration Service */
   @Inject
@@ -266,6 +268,28 @@ public class SchedulerService
     }
   }
 
+  /**
+   * Retrieve the jobs that are scheduled for execution before the specified date and time.
+   *
+   * @param before the date and time before which the jobs are scheduled for execution
+   *
+   * @return the jobs that are scheduled for execution before the specified date and time ordered
+   *         by their next execution date and time
+   */
+  public List<Job> getJobsScheduledForExecutionBefore(Date before)
+    throws SchedulerServiceException
+  {
+    try
+    {
+      return jobDAO.getJobsScheduledForExecutionBefore(before);
+    }
+    catch (Throwable e)
+    {
+      throw new SchedulerServiceException(String.format(
+          "Failed to retrieve the jobs scheduled for execution before (%s)", before), e);
+    }
+  }
+
   /**
    * Returns the maximum number of times execution will be attempted for a job.
    *
@@ -298,6 +322,32 @@ public class SchedulerService
     }
   }
 
+  /**
+   * Retrieve the next batch of jobs that are scheduled for execution.
+   * <p/>
+   * The jobs will be locked to prevent duplicate processing.
+   *
+   * @param maximumNumberOfJobs the maximum number of jobs to retrieve
+   *
+   * @return the next batch of jobs that are scheduled for execution, which will be empty if no
+   *         jobs are currently scheduled for execution
+   */
+  public List<Job> getNextJobsScheduledForExecution(int maximumNumberOfJobs)
+    throws SchedulerServiceException
+  {
+    try
+    {
+      return jobDAO.getNextJobsScheduledForExecution(maximumNumberOfJobs, jobExecutionRetryDelay,
+          instanceName);
+    }
+    catch (Throwable e)
+    {
+      throw new SchedulerServiceException(String.format(
+          "Failed to retrieve the next %d jobs that have been scheduled for execution",
+          maximumNumberOfJobs), e);
+    }
+  }
+
   /**
    * Retrieve the number of filtered jobs.
    *
@@ -386,6 +436,17 @@ public class SchedulerService
     {
       // Initialise the configuration for the Scheduler Service
       initConfiguration();
+
+      // Apply the changes to the configuration made by this or another application instance
+      IntegerConfigurationListener configurationListener = new IntegerConfigurationListener(
+          "Scheduler Service");
+
+      configurationListener.bind("SchedulerService.JobExecutionRetryDelay",
+          value -> jobExecutionRetryDelay = value);
+      configurationListener.bind("SchedulerService.MaximumJobExecutionAttempts",
+          value -> maximumJobExecutionAttempts = value);
+
+      configurationService.addConfigurationListener("SchedulerService.", configurationListener);
     }
     catch (Throwable e)
     {
@@ -458,6 +519,25 @@ public class SchedulerService
     }
   }
 
+  /**
+   * Schedule all the unscheduled jobs for execution.
+   *
+   * @return the number of unscheduled jobs that were processed
+   */
+  public int scheduleUnscheduledJobsForExecution()
+    throws SchedulerServiceException
+  {
+    try
+    {
+      return jobDAO.scheduleUnscheduledJobsForExecution();
+    }
+    catch (Throwable e)
+    {
+      throw new SchedulerServiceException("Failed to schedule the unscheduled jobs for execution",
+          e);
+    }
+  }
+
   /**
    * Unlock a locked job.
    *
@@ -18,7 +18,13 @@ package guru.mmp.application.scheduler;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.util.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.TimeZone;
 
 /**
  * The <code>SchedulingPattern</code> class supports a UNIX crontab-like pattern is a string split
@@ -139,6 +145,11 @@ import java.util.*;
  * This pattern causes a job to be launched every day at 05:00, 10:08 and
  * 17:22.
  * </p>
+ * <p>
+ * Each field of each pattern is compiled into a bitset when the pattern is parsed, so that
+ * matching a timestamp only requires a few bitwise operations. Instances are immutable and can be
+ * shared between threads.
+ * </p>
  *
  * @author Carlo Pelliccia
  * @author Marcus Portmann
@@ -171,34 +182,43 @@ public class SchedulingPattern
   private static final ValueParser MONTH_VALUE_PARSER = new MonthValueParser();
 
   /**
-   * The ValueMatcher list for the "day of month" field.
+   * The bit used to indicate that the last day of the month matches in the bitsets for the
+   * "day of month" field.
    */
-  protected List<ValueMatcher> dayOfMonthMatchers = new ArrayList<>();
+  static final int LAST_DAY_OF_MONTH = 32;
 
   /**
-   * The ValueMatcher list for the "day of week" field.
+   * The bitsets for the "day of month" field, one per pattern, where bit n is set if day n of
+   * the month matches and bit 32 is set if the last day of the month matches.
    */
-  protected List<ValueMatcher> dayOfWeekMatchers = new ArrayList<>();
+  final long[] dayOfMonthBits;
 
   /**
-   * The ValueMatcher list for the "hour" field.
+   * The bitsets for the "day of week" field, one per pattern, where bit n is set if day n of the
+   * week matches with 0 being Sunday.
    */
-  protected List<ValueMatcher> hourMatchers = new ArrayList<>();
+  final long[] dayOfWeekBits;
 
   /**
-   * How many matcher groups in this pattern?
+   * The bitsets for the "hour" field, one per pattern, where bit n is set if hour n matches.
    */
-  protected int matcherSize = 0;
+  final long[] hourBits;
 
   /**
-   * The ValueMatcher list for the "minute" field.
+   * How many patterns were combined into this pattern using the pipe character?
    */
-  protected List<ValueMatcher> minuteMatchers = new ArrayList<>();
+  final int matcherSize;
 
   /**
-   * The ValueMatcher list for the "month" field.
+   * The bitsets for the "minute" field, one per pattern, where bit n is set if minute n matches.
    */
-  protected List<ValueMatcher> monthMatchers = new ArrayList<>();
+  final long[] minuteBits;
+
+  /**
+   * The bitsets for the "month" field, one per pattern, where bit n is set if month n matches with
+   * 1 being January.
+   */
+  final long[] monthBits;
 
   /**
    * The pattern as a string.
@@ -225,7 +245,14 @@ public class SchedulingPattern
           pattern));
     }
 
-    while (st1.hasMoreTokens())
+    this.matcherSize = st1.countTokens();
+    this.minuteBits = new long[matcherSize];
+    this.hourBits = new long[matcherSize];
+    this.dayOfMonthBits = new long[matcherSize];
+    this.monthBits = new long[matcherSize];
+    this.dayOfWeekBits = new long[matcherSize];
+
+    for (int i = 0; i < matcherSize; i++)
     {
       String localPattern = st1.nextToken();
       StringTokenizer st2 = new StringTokenizer(localPattern, " \t");
@@ -238,7 +265,7 @@ public class SchedulingPattern
 
       try
       {
-        minuteMatchers.add(buildValueMatcher(st2.nextToken(), MINUTE_VALUE_PARSER));
+        minuteBits[i] = buildBits(st2.nextToken(), MINUTE_VALUE_PARSER);
       }
       catch (Exception e)
       {
@@ -249,7 +276,7 @@ public class SchedulingPattern
 
       try
       {
-        hourMatchers.add(buildValueMatcher(st2.nextToken(), HOUR_VALUE_PARSER));
+        hourBits[i] = buildBits(st2.nextToken(), HOUR_VALUE_PARSER);
       }
       catch (Exception e)
       {
@@ -259,7 +286,7 @@ public class SchedulingPattern
 
       try
       {
-        dayOfMonthMatchers.add(buildValueMatcher(st2.nextToken(), DAY_OF_MONTH_VALUE_PARSER));
+        dayOfMonthBits[i] = buildBits(st2.nextToken(), DAY_OF_MONTH_VALUE_PARSER);
       }
       catch (Exception e)
       {
@@ -270,7 +297,7 @@ public class SchedulingPattern
 
       try
       {
-        monthMatchers.add(buildValueMatcher(st2.nextToken(), MONTH_VALUE_PARSER));
+        monthBits[i] = buildBits(st2.nextToken(), MONTH_VALUE_PARSER);
       }
       catch (Exception e)
       {
@@ -281,7 +308,7 @@ public class SchedulingPattern
 
       try
       {
-        dayOfWeekMatchers.add(buildValueMatcher(st2.nextToken(), DAY_OF_WEEK_VALUE_PARSER));
+        dayOfWeekBits[i] = buildBits(st2.nextToken(), DAY_OF_WEEK_VALUE_PARSER);
       }
       catch (Exception e)
       {
@@ -289,8 +316,6 @@ public class SchedulingPattern
             "Invalid pattern \"%s\". Error parsing days of week field: %s", localPattern,
             e.getMessage()));
       }
-
-      matcherSize++;
     }
   }
 
@@ -328,7 +353,7 @@ public class SchedulingPattern
    */
   public boolean match(long timestamp)
   {
-    return match(TimeZone.getDefault(), timestamp);
+    return match(ZoneId.systemDefault(), timestamp);
   }
 
   /**
@@ -343,35 +368,33 @@ public class SchedulingPattern
    */
   public boolean match(TimeZone timezone, long timestamp)
   {
-    GregorianCalendar gc = new GregorianCalendar();
+    return match(timezone.toZoneId(), timestamp);
+  }
 
-    gc.setTimeInMillis(timestamp);
-    gc.setTimeZone(timezone);
+  /**
+   * Returns <code>true</code> if the EPOCH timestamp in milliseconds matches the pattern,
+   * according to the given time zone.
+   *
+   * @param zoneId    the ID of the time zone
+   * @param timestamp the EPOCH timestamp in milliseconds
+   *
+   * @return <code>true</code> if the given timestamp matches the pattern or <code>false</code>
+   * otherwise
+   */
+  public boolean match(ZoneId zoneId, long timestamp)
+  {
+    ZonedDateTime dateTime = Instant.ofEpochMilli(timestamp).atZone(zoneId);
 
-    int minute = gc.get(Calendar.MINUTE);
-    int hour = gc.get(Calendar.HOUR_OF_DAY);
-    int dayOfMonth = gc.get(Calendar.DAY_OF_MONTH);
-    int month = gc.get(Calendar.MONTH) + 1;
-    int dayOfWeek = gc.get(Calendar.DAY_OF_WEEK) - 1;
-    int year = gc.get(Calendar.YEAR);
+    int dayOfWeek = dateTime.getDayOfWeek().getValue() % 7;
 
     for (int i = 0; i < matcherSize; i++)
     {
-      ValueMatcher minuteMatcher = minuteMatchers.get(i);
-      ValueMatcher hourMatcher = hourMatchers.get(i);
-      ValueMatcher dayOfMonthMatcher = dayOfMonthMatchers.get(i);
-      ValueMatcher monthMatcher = monthMatchers.get(i);
-      ValueMatcher dayOfWeekMatcher = dayOfWeekMatchers.get(i);
-      boolean eval = minuteMatcher.match(minute)
-          && hourMatcher.match(hour)
-          && ((dayOfMonthMatcher instanceof DayOfMonthValueMatcher)
-          ? ((DayOfMonthValueMatcher) dayOfMonthMatcher).match(dayOfMonth, month, gc.isLeapYear(
-              year))
-          : dayOfMonthMatcher.match(dayOfMonth))
-          && monthMatcher.match(month)
-          && dayOfWeekMatcher.match(dayOfWeek);
-
-      if (eval)
+      if (isSet(minuteBits[i], dateTime.getMinute())
+          && isSet(hourBits[i], dateTime.getHour())
+          && isSet(monthBits[i], dateTime.getMonthValue())
+          && isSet(dayOfWeekBits[i], dayOfWeek)
+          && matchDayOfMonth(dayOfMonthBits[i], dateTime.getDayOfMonth(),
+              dateTime.toLocalDate().lengthOfMonth()))
       {
         return true;
       }
@@ -390,6 +413,58 @@ public class SchedulingPattern
     return asString;
   }
 
+  /**
+   * Returns <code>true</code> if the bit at the specified index is set in the bitset.
+   *
+   * @param bits  the bitset
+   * @param index the index of the bit
+   *
+   * @return <code>true</code> if the bit at the specified index is set in the bitset or
+   *         <code>false</code> otherwise
+   */
+  static boolean isSet(long bits, int index)
+  {
+    return (bits & (1L << index)) != 0;
+  }
+
+  /**
+   * Returns <code>true</code> if the day of the month matches the bitset for the "day of month"
+   * field taking the last-day-of-month setting into account.
+   *
+   * @param bits          the bitset for the "day of month" field
+   * @param dayOfMonth    the day of the month
+   * @param lengthOfMonth the number of days in the month
+   *
+   * @return <code>true</code> if the day of the month matches or <code>false</code> otherwise
+   */
+  static boolean matchDayOfMonth(long bits, int dayOfMonth, int lengthOfMonth)
+  {
+    return isSet(bits, dayOfMonth)
+        || ((dayOfMonth == lengthOfMonth) && isSet(bits, LAST_DAY_OF_MONTH));
+  }
+
+  /**
+   * Returns the index of the next bit set in the bitset at or after the specified index.
+   *
+   * @param bits      the bitset
+   * @param fromIndex the index to start searching from
+   *
+   * @return the index of the next bit set or -1 if there is no such bit
+   */
+  static int nextSetBit(long bits, int fromIndex)
+  {
+    if (fromIndex >= Long.SIZE)
+    {
+      return -1;
+    }
+
+    long remainingBits = bits & (-1L << fromIndex);
+
+    return (remainingBits == 0)
+        ? -1
+        : Long.numberOfTrailingZeros(remainingBits);
+  }
+
   /**
    * This utility method changes an alias to an integer value.
    *
@@ -416,24 +491,31 @@ public class SchedulingPattern
   }
 
   /**
-   * A <code>ValueMatcher</code> utility builder.
+   * Build the bitset for a field of the pattern.
    *
-   * @param str    the pattern part for the <code>ValueMatcher</code> creation
+   * @param str    the pattern part for the field
    * @param parser the parser used to parse the values
    *
-   * @return the requested <code>ValueMatcher</code>
+   * @return the bitset where bit n is set if the value n matches
    *
    * @throws Exception
    */
-  private ValueMatcher buildValueMatcher(String str, ValueParser parser)
+  private long buildBits(String str, ValueParser parser)
     throws Exception
   {
     if ((str.length() == 1) && str.equals("*"))
     {
-      return new AlwaysTrueValueMatcher();
+      long bits = 0;
+
+      for (int i = parser.getMinValue(); i <= parser.getMaxValue(); i++)
+      {
+        bits |= 1L << i;
+      }
+
+      return bits;
     }
 
-    List<Integer> values = new ArrayList<>();
+    long bits = 0;
     StringTokenizer st = new StringTokenizer(str, ",");
 
     while (st.hasMoreTokens())
@@ -453,26 +535,16 @@ public class SchedulingPattern
 
       for (Integer value : local)
       {
-        if (!values.contains(value))
-        {
-          values.add(value);
-        }
+        bits |= 1L << value;
       }
     }
 
-    if (values.size() == 0)
+    if (bits == 0)
     {
       throw new Exception(String.format("Invalid field \"%s\"", str));
     }
 
-    if (parser == DAY_OF_MONTH_VALUE_PARSER)
-    {
-      return new DayOfMonthValueMatcher(values);
-    }
-    else
-    {
-      return new IntArrayValueMatcher(values);
-    }
+    return bits;
   }
 
   /**
@@ -22,6 +22,7 @@ import guru.mmp.application.scheduler.ISchedulerService;
 import guru.mmp.application.scheduler.Job;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
@@ -29,10 +30,19 @@ import org.springframework.test.context.support.DirtiesContextTestExecutionListe
 import org.springframework.test.context.transaction.TransactionalTestExecutionListener;
 
 import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -55,6 +65,110 @@ public class SchedulerServiceTest
   @Inject
   private ISchedulerService schedulerService;
 
+  /**
+   * The data source used to provide connections to the application database.
+   */
+  @Inject
+  @Qualifier("applicationDataSource")
+  private DataSource dataSource;
+
+  /**
+   * Test the batch scheduling and claiming of the jobs scheduled for execution.
+   */
+  @Test
+  public void jobBatchExecutionTest()
+    throws Exception
+  {
+    int numberOfJobs = 25;
+
+    Set<UUID> jobIds = new HashSet<>();
+
+    for (int i = 0; i < numberOfJobs; i++)
+    {
+      Job job = getTestJobDetails();
+
+      schedulerService.createJob(job);
+
+      jobIds.add(job.getId());
+    }
+
+    assertTrue("The unscheduled jobs were not scheduled",
+        schedulerService.scheduleUnscheduledJobsForExecution() >= numberOfJobs);
+
+    for (Job unscheduledJob : schedulerService.getUnscheduledJobs())
+    {
+      if (jobIds.contains(unscheduledJob.getId()))
+      {
+        fail(String.format("The job (%s) was retrieved incorrectly as an unscheduled job",
+            unscheduledJob.getId()));
+      }
+    }
+
+    // Make the jobs due for execution
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(
+          "UPDATE SCHEDULER.JOBS SET NEXT_EXECUTION=? WHERE ID=?"))
+    {
+      for (UUID jobId : jobIds)
+      {
+        statement.setTimestamp(1, new Timestamp(System.currentTimeMillis() - 60000L));
+        statement.setObject(2, jobId);
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+    }
+
+    int numberOfDueJobs = 0;
+
+    for (Job scheduledJob : schedulerService.getJobsScheduledForExecutionBefore(new Date()))
+    {
+      if (jobIds.contains(scheduledJob.getId()))
+      {
+        numberOfDueJobs++;
+      }
+    }
+
+    assertEquals("The correct number of jobs due for execution was not retrieved", numberOfJobs,
+        numberOfDueJobs);
+
+    // Claim the jobs in batches
+    List<Job> claimedJobs = new ArrayList<>();
+
+    List<Job> jobs;
+
+    while (!(jobs = schedulerService.getNextJobsScheduledForExecution(10)).isEmpty())
+    {
+      assertTrue("Too many jobs were claimed", jobs.size() <= 10);
+
+      for (Job job : jobs)
+      {
+        assertEquals("The status for the claimed job (" + job.getId() + ") is incorrect",
+            Job.Status.EXECUTING, schedulerService.getJob(job.getId()).getStatus());
+      }
+
+      claimedJobs.addAll(jobs);
+    }
+
+    Set<UUID> claimedJobIds = new HashSet<>();
+
+    for (Job claimedJob : claimedJobs)
+    {
+      if (!claimedJobIds.add(claimedJob.getId()))
+      {
+        fail(String.format("The job (%s) was claimed more than once", claimedJob.getId()));
+      }
+    }
+
+    assertTrue("Not all the jobs due for execution were claimed", claimedJobIds.containsAll(
+        jobIds));
+
+    for (Job claimedJob : claimedJobs)
+    {
+      schedulerService.unlockJob(claimedJob.getId(), Job.Status.SCHEDULED);
+    }
+  }
+
   /**
    * Test the execute job functionality.
    * @Test
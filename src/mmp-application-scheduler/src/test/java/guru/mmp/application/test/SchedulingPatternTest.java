@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.scheduler.Predictor;
+import guru.mmp.application.scheduler.SchedulingPattern;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>SchedulingPatternTest</code> class contains the implementation of the JUnit tests for
+ * the <code>SchedulingPattern</code> and <code>Predictor</code> classes.
+ *
+ * @author Marcus Portmann
+ */
+public class SchedulingPatternTest
+{
+  /**
+   * A corpus of realistic crontab patterns.
+   */
+  private static final String[] PATTERNS =
+  {
+    "* * * * *", "5 * * * *", "*/5 * * * *", "*/15 9-17 * * mon-fri",
+    "0 3 * jan-jun,sep-dec mon-fri", "59 11 * * 1-5", "0 0 1 * *", "0 0 L * *", "30 23 L * *", "0 12 1,15 * *", "3-18/5 * * * *",
+    "0 5 * * *|8 10 * * *|22 17 * * *", "0 0 * * sun", "0 2 * * 6", "0 0 1 1 *", "0 0 29 2 *",
+    "* 12 10-16/2 * *", "* 12 1-15,17,20-25 * *", "0 22 * * 1-5", "45 4 1,10,22 * *",
+    "0 */2 * * *", "15 14 1 * *", "0 0 13 * fri", "0 9-17/2 * * mon,wed,fri", "20 0-23/4 * * *"
+  };
+
+  /**
+   * The time zone used for the tests.
+   */
+  private static final ZoneId UTC = ZoneOffset.UTC;
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(SchedulingPatternTest.class);
+
+  /**
+   * Test the match functionality.
+   */
+  @Test
+  public void matchTest()
+    throws Exception
+  {
+    assertMatch("5 * * * *", "2024-03-14T00:05Z", true);
+    assertMatch("5 * * * *", "2024-03-14T00:06Z", false);
+    assertMatch("*/15 9-17 * * mon-fri", "2024-03-14T17:45Z", true);
+    assertMatch("*/15 9-17 * * mon-fri", "2024-03-16T10:00Z", false);
+    assertMatch("0 0 L * *", "2024-02-29T00:00Z", true);
+    assertMatch("0 0 L * *", "2023-02-28T00:00Z", true);
+    assertMatch("0 0 L * *", "2024-02-28T00:00Z", false);
+    assertMatch("0 0 * * 7", "2024-03-17T00:00Z", true);
+    assertMatch("0 5 * * *|8 10 * * *|22 17 * * *", "2024-03-14T10:08Z", true);
+    assertMatch("0 5 * * *|8 10 * * *|22 17 * * *", "2024-03-14T10:09Z", false);
+    assertMatch("0 3 * jan-jun,sep-dec mon-fri", "2024-08-01T00:03Z", false);
+    assertMatch("0 3 * jan-jun,sep-dec mon-fri", "2024-09-02T03:00Z", true);
+  }
+
+  /**
+   * Test that the predictor is thread-safe and never returns the same moment twice when shared
+   * between threads.
+   */
+  @Test
+  public void predictorConcurrencyTest()
+    throws Exception
+  {
+    Predictor predictor = new Predictor("*/5 * * * *", toMillis("2024-01-01T00:00Z"));
+
+    Set<Long> times = ConcurrentHashMap.newKeySet();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try
+    {
+      Future<?>[] futures = new Future<?>[4];
+
+      for (int i = 0; i < futures.length; i++)
+      {
+        futures[i] = executor.submit(() ->
+            {
+              for (int j = 0; j < 2500; j++)
+              {
+                assertTrue("The same moment was predicted more than once", times.add(
+                    predictor.nextMatchingTime()));
+              }
+            }
+            );
+      }
+
+      for (Future<?> future : futures)
+      {
+        future.get();
+      }
+    }
+    finally
+    {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    assertEquals("The correct number of moments was not predicted", 10000, times.size());
+  }
+
+  /**
+   * Test that the predictor returns the same moments as checking every minute using the
+   * scheduling pattern.
+   */
+  @Test
+  public void predictorTest()
+    throws Exception
+  {
+    long start = toMillis("2024-02-27T22:58Z");
+
+    for (String pattern : PATTERNS)
+    {
+      SchedulingPattern schedulingPattern = new SchedulingPattern(pattern);
+
+      Predictor predictor = new Predictor(schedulingPattern, start);
+
+      predictor.setTimeZone(TimeZone.getTimeZone(UTC));
+
+      long expected = start;
+
+      for (int i = 0; i < 5; i++)
+      {
+        do
+        {
+          expected += 60000;
+        }
+        while (!schedulingPattern.match(UTC, expected));
+
+        assertEquals(String.format("The prediction %d for the pattern (%s) is incorrect", i,
+            pattern), expected, predictor.nextMatchingTime());
+      }
+    }
+
+    // Make sure a pattern that never matches is detected
+    try
+    {
+      new Predictor("0 0 30 2 *").nextMatchingTime();
+
+      assertFalse("A prediction was made for a pattern that never matches", true);
+    }
+    catch (RuntimeException ignored) {}
+  }
+
+  /**
+   * Measure the throughput of matching and predicting over the corpus of patterns.
+   */
+  @Test
+  public void throughputTest()
+    throws Exception
+  {
+    SchedulingPattern[] schedulingPatterns = new SchedulingPattern[PATTERNS.length];
+
+    for (int i = 0; i < PATTERNS.length; i++)
+    {
+      schedulingPatterns[i] = new SchedulingPattern(PATTERNS[i]);
+    }
+
+    long start = toMillis("2024-01-01T00:00Z");
+
+    // Match every minute of a week against every pattern
+    int numberOfMatches = 0;
+    int numberOfMatchCalls = 0;
+
+    long startTime = System.nanoTime();
+
+    for (SchedulingPattern schedulingPattern : schedulingPatterns)
+    {
+      for (long time = start; time < start + (7L * 24 * 60 * 60000); time += 60000)
+      {
+        if (schedulingPattern.match(UTC, time))
+        {
+          numberOfMatches++;
+        }
+
+        numberOfMatchCalls++;
+      }
+    }
+
+    long matchElapsed = System.nanoTime() - startTime;
+
+    // Predict 10,000 steps ahead for every pattern
+    int numberOfPredictions = 0;
+
+    startTime = System.nanoTime();
+
+    for (SchedulingPattern schedulingPattern : schedulingPatterns)
+    {
+      Predictor predictor = new Predictor(schedulingPattern, start);
+
+      predictor.setTimeZone(TimeZone.getTimeZone(UTC));
+
+      for (int i = 0; i < 10000; i++)
+      {
+        predictor.nextMatchingTime();
+
+        numberOfPredictions++;
+      }
+    }
+
+    long predictElapsed = System.nanoTime() - startTime;
+
+    assertTrue("No matches were found", numberOfMatches > 0);
+
+    logger.info(String.format("Performed %d matches in %d ms (%.0f ns/match)",
+        numberOfMatchCalls, matchElapsed / 1000000, ((double) matchElapsed) / numberOfMatchCalls));
+    logger.info(String.format("Performed %d predictions in %d ms (%.0f ns/prediction)",
+        numberOfPredictions, predictElapsed / 1000000, ((double) predictElapsed)
+        / numberOfPredictions));
+  }
+
+  private void assertMatch(String pattern, String dateTime, boolean expected)
+    throws Exception
+  {
+    assertEquals(String.format("The pattern (%s) was not matched correctly against (%s)",
+        pattern, dateTime), expected, new SchedulingPattern(pattern).match(UTC, toMillis(
+        dateTime)));
+  }
+
+  private long toMillis(String dateTime)
+  {
+    return ZonedDateTime.parse(dateTime).toInstant().toEpochMilli();
+  }
+}
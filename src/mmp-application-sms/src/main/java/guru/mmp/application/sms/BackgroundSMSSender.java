@@ -30,6 +30,9 @@ import javax.inject.Inject;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The <code>BackgroundSMSSender</code> class implements the Background SMS Sender.
  *
@@ -80,21 +83,24 @@ public class BackgroundSMSSender
 
   /**
    * Send the SMSs.
+   * <p/>
+   * The SMSs queued for sending are retrieved in batches and each batch is sent using a single
+   * request to the MyMobileAPI service.
    */
   @Scheduled(cron = "0 * * * * *")
-  @Async
+  @Async("smsTaskExecutor")
   void sendSMSs()
   {
-    SMS sms;
+    List<SMS> smss;
 
     while (true)
     {
-      // Retrieve the next SMS queued for sending
+      // Retrieve the next batch of SMSs queued for sending
       try
       {
-        sms = smsService.getNextSMSQueuedForSending();
+        smss = smsService.getNextSMSsQueuedForSending();
 
-        if (sms == null)
+        if (smss.isEmpty())
         {
           if (logger.isDebugEnabled())
           {
@@ -106,69 +112,86 @@ public class BackgroundSMSSender
       }
       catch (Throwable e)
       {
-        logger.error("Failed to retrieve the next SMS queued for sending", e);
+        logger.error("Failed to retrieve the next SMSs queued for sending", e);
 
         return;
       }
 
-      // Send the SMS
+      // Send the batch of SMSs
       try
       {
         if (logger.isDebugEnabled())
         {
-          logger.debug(String.format("Sending the queued SMS (%d)", sms.getId()));
+          logger.debug(String.format("Sending a batch of %d queued SMSs", smss.size()));
         }
 
-        if (smsService.sendSMSSynchronously(sms.getId(), sms.getMobileNumber(), sms.getMessage()))
+        if (smsService.sendSMSsSynchronously(smss))
         {
-          // Delete the SMS
-          smsService.deleteSMS(sms.getId());
+          // Delete the SMSs
+          smsService.deleteSMSs(smss);
         }
         else
         {
-          // Unlock the SMS and mark it as failed
-          smsService.unlockSMS(sms.getId(), SMS.Status.FAILED);
+          // Unlock the SMSs and mark them as failed
+          smsService.unlockSMSs(smss, SMS.Status.FAILED);
         }
       }
       catch (Throwable e)
       {
-        logger.error(String.format("Failed to send the queued SMS (%d)", sms.getId()), e);
+        logger.error(String.format("Failed to send the batch of %d queued SMSs", smss.size()), e);
 
-        // Increment the send attempts for the SMS
+        // Increment the send attempts for the SMSs
         try
         {
-          smsService.incrementSMSSendAttempts(sms);
+          smsService.incrementSMSSendAttempts(smss);
         }
         catch (Throwable f)
         {
           logger.error(String.format(
-              "Failed to increment the send attempts for the queued SMS (%d)", sms.getId()), f);
+              "Failed to increment the send attempts for the batch of %d queued SMSs",
+              smss.size()), f);
         }
 
         try
         {
           /*
-           * If the SMS has exceeded the maximum number of processing attempts then unlock it
-           * and set its status to "Failed" otherwise unlock it and set its status to
-           * "QueuedForSending".
+           * If a SMS has exceeded the maximum number of send attempts then unlock it and set its
+           * status to "Failed" otherwise unlock it and set its status to "QueuedForSending".
            */
-          if (sms.getSendAttempts() >= smsService.getMaximumSendAttempts())
+          List<SMS> failedSMSs = new ArrayList<>();
+          List<SMS> retrySMSs = new ArrayList<>();
+
+          for (SMS sms : smss)
           {
-            logger.warn(String.format(
-                "The queued SMS (%d) has exceeded the maximum number of send attempts and will be "
-                + "marked as \"Failed\"", sms.getId()));
+            if (sms.getSendAttempts() >= smsService.getMaximumSendAttempts())
+            {
+              logger.warn(String.format(
+                  "The queued SMS (%d) has exceeded the maximum number of send attempts and will "
+                  + "be marked as \"Failed\"", sms.getId()));
+
+              failedSMSs.add(sms);
+            }
+            else
+            {
+              retrySMSs.add(sms);
+            }
+          }
 
-            smsService.unlockSMS(sms.getId(), SMS.Status.FAILED);
+          if (!failedSMSs.isEmpty())
+          {
+            smsService.unlockSMSs(failedSMSs, SMS.Status.FAILED);
           }
-          else
+
+          if (!retrySMSs.isEmpty())
           {
-            smsService.unlockSMS(sms.getId(), SMS.Status.QUEUED_FOR_SENDING);
+            smsService.unlockSMSs(retrySMSs, SMS.Status.QUEUED_FOR_SENDING);
           }
         }
         catch (Throwable f)
         {
-          logger.error(String.format("Failed to unlock and set the status for the queued SMS (%d)",
-              sms.getId()), f);
+          logger.error(String.format(
+              "Failed to unlock and set the status for the batch of %d queued SMSs", smss.size()),
+              f);
         }
       }
     }
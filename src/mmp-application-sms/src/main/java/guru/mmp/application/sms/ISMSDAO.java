@@ -20,6 +20,8 @@ package guru.mmp.application.sms;
 
 import guru.mmp.common.persistence.DAOException;
 
+import java.util.List;
+
 /**
  * The <code>ISMSDAO</code> interface defines the persistence operations for the SMS infrastructure.
  *
@@ -43,6 +45,14 @@ public interface ISMSDAO
   void deleteSMS(long id)
     throws DAOException;
 
+  /**
+   * Delete the existing SMSs.
+   *
+   * @param smss the SMSs to delete
+   */
+  void deleteSMSs(List<SMS> smss)
+    throws DAOException;
+
   /**
    * Retrieve the next SMS that has been queued for sending.
    * <p/>
@@ -58,6 +68,24 @@ public interface ISMSDAO
   SMS getNextSMSQueuedForSending(int sendRetryDelay, String lockName)
     throws DAOException;
 
+  /**
+   * Retrieve the next batch of SMSs that have been queued for sending.
+   * <p/>
+   * The SMSs will be locked to prevent duplicate sending.
+   *
+   * @param maximumNumberOfSMSs the maximum number of SMSs to retrieve
+   * @param sendRetryDelay      the delay in milliseconds to wait before re-attempting to send a
+   *                            SMS
+   * @param lockName            the name of the lock that should be applied to the SMSs queued for
+   *                            sending when they are retrieved
+   *
+   * @return the next batch of SMSs that have been queued for sending, which will be empty if no
+   *         SMSs are currently queued for sending
+   */
+  List<SMS> getNextSMSsQueuedForSending(int maximumNumberOfSMSs, int sendRetryDelay,
+      String lockName)
+    throws DAOException;
+
   /**
    * Retrieve the SMS.
    *
@@ -76,6 +104,14 @@ public interface ISMSDAO
   void incrementSMSSendAttempts(SMS sms)
     throws DAOException;
 
+  /**
+   * Increment the send attempts for the SMSs.
+   *
+   * @param smss the SMSs whose send attempts should be incremented
+   */
+  void incrementSMSSendAttempts(List<SMS> smss)
+    throws DAOException;
+
   /**
    * Reset the SMS locks.
    *
@@ -103,4 +139,13 @@ public interface ISMSDAO
    */
   void unlockSMS(long id, SMS.Status status)
     throws DAOException;
+
+  /**
+   * Unlock the SMSs.
+   *
+   * @param smss   the SMSs to unlock
+   * @param status the new status for the unlocked SMSs
+   */
+  void unlockSMSs(List<SMS> smss, SMS.Status status)
+    throws DAOException;
 }
@@ -16,6 +16,10 @@
 
 package guru.mmp.application.sms;
 
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.List;
+
 /**
  * The <code>ISMSService</code> interface defines the functionality provided by an SMS Service
  * implementation.
@@ -33,6 +37,14 @@ public interface ISMSService
   void deleteSMS(long id)
     throws SMSServiceException;
 
+  /**
+   * Delete the existing SMSs.
+   *
+   * @param smss the SMSs to delete
+   */
+  void deleteSMSs(List<SMS> smss)
+    throws SMSServiceException;
+
   /**
    * Returns the maximum number of send attempts for a SMS.
    *
@@ -51,6 +63,18 @@ public interface ISMSService
   SMS getNextSMSQueuedForSending()
     throws SMSServiceException;
 
+  /**
+   * Retrieve the next batch of SMSs that have been queued for sending.
+   * <p/>
+   * The SMSs will be locked to prevent duplicate sending. The maximum number of SMSs retrieved is
+   * determined by the <b>SMSService.SendBatchSize</b> configuration value.
+   *
+   * @return the next batch of SMSs that have been queued for sending, which will be empty if no
+   *         SMSs are currently queued for sending
+   */
+  List<SMS> getNextSMSsQueuedForSending()
+    throws SMSServiceException;
+
   /**
    * Returns the number of SMS credits remaining.
    *
@@ -77,6 +101,14 @@ public interface ISMSService
   void incrementSMSSendAttempts(SMS sms)
     throws SMSServiceException;
 
+  /**
+   * Increment the send attempts for the SMSs.
+   *
+   * @param smss the SMSs whose send attempts should be incremented
+   */
+  void incrementSMSSendAttempts(List<SMS> smss)
+    throws SMSServiceException;
+
   /**
    * Reset the SMS locks.
    *
@@ -111,6 +143,18 @@ public interface ISMSService
   boolean sendSMSSynchronously(long smsId, String mobileNumber, String message)
     throws SMSServiceException;
 
+  /**
+   * Send the SMSs synchronously using a single request to the MyMobileAPI service.
+   * <p/>
+   * NOTE: This will NOT queue the SMSs for sending. The SMSs will actually be sent synchronously.
+   *
+   * @param smss the SMSs to send
+   *
+   * @return <code>true</code> if the SMSs were sent successfully or <code>false</code> otherwise
+   */
+  boolean sendSMSsSynchronously(List<SMS> smss)
+    throws SMSServiceException;
+
   /**
    * Set the status for the SMS.
    *
@@ -128,4 +172,13 @@ public interface ISMSService
    */
   void unlockSMS(long id, SMS.Status status)
     throws SMSServiceException;
+
+  /**
+   * Unlock the SMSs.
+   *
+   * @param smss   the SMSs to unlock
+   * @param status the new status for the unlocked SMSs
+   */
+  void unlockSMSs(List<SMS> smss, SMS.Status status)
+    throws SMSServiceException;
 }
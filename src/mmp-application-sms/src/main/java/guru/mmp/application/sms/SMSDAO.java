@@ -21,6 +21,7 @@ package guru.mmp.application.sms;
 import guru.mmp.application.persistence.IDGenerator;
 import guru.mmp.application.sms.SMS.Status;
 import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.DAOUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,9 +30,12 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -61,6 +65,9 @@ public class SMSDAO
   @Inject
   private IDGenerator idGenerator;
 
+  /* The SQL used to retrieve the next batch of SMSs queued for sending. */
+  private String getNextSMSsQueuedForSendingSQL;
+
   /**
    * Constructs a new <code>SMSDAO</code>.
    */
@@ -126,6 +133,36 @@ public class SMSDAO
     }
   }
 
+  /**
+   * Delete the existing SMSs.
+   * <p/>
+   * The SMSs are deleted using a single JDBC batch update.
+   *
+   * @param smss the SMSs to delete
+   */
+  public void deleteSMSs(List<SMS> smss)
+    throws DAOException
+  {
+    String deleteSMSSQL = "DELETE FROM SMS.SMS WHERE ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(deleteSMSSQL))
+    {
+      for (SMS sms : smss)
+      {
+        statement.setLong(1, sms.getId());
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format("Failed to delete the %d SMSs in the database",
+          smss.size()), e);
+    }
+  }
+
   /**
    * Retrieve the next SMS that has been queued for sending.
    * <p/>
@@ -196,6 +233,99 @@ public class SMSDAO
     }
   }
 
+  /**
+   * Retrieve the next batch of SMSs that have been queued for sending.
+   * <p/>
+   * The SMSs will be locked to prevent duplicate sending. SMSs that are already locked by another
+   * transaction are skipped where the database supports it.
+   *
+   * @param maximumNumberOfSMSs the maximum number of SMSs to retrieve
+   * @param sendRetryDelay      the delay in milliseconds to wait before re-attempting to send a
+   *                            SMS
+   * @param lockName            the name of the lock that should be applied to the SMSs queued for
+   *                            sending when they are retrieved
+   *
+   * @return the next batch of SMSs that have been queued for sending, which will be empty if no
+   *         SMSs are currently queued for sending
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public List<SMS> getNextSMSsQueuedForSending(int maximumNumberOfSMSs, int sendRetryDelay,
+      String lockName)
+    throws DAOException
+  {
+    String lockSMSSQL = "UPDATE SMS.SMS SET STATUS=?, LOCK_NAME=? WHERE ID=? AND STATUS=?";
+
+    try
+    {
+      List<SMS> smss = new ArrayList<>();
+
+      try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(String.format(
+            getNextSMSsQueuedForSendingSQL, maximumNumberOfSMSs)))
+      {
+        Timestamp processedBefore = new Timestamp(System.currentTimeMillis() - sendRetryDelay);
+
+        statement.setInt(1, SMS.Status.QUEUED_FOR_SENDING.getCode());
+        statement.setTimestamp(2, processedBefore);
+
+        try (ResultSet rs = statement.executeQuery())
+        {
+          while (rs.next())
+          {
+            smss.add(getSMS(rs));
+          }
+        }
+
+        if (smss.size() == 0)
+        {
+          return smss;
+        }
+
+        try (PreparedStatement updateStatement = connection.prepareStatement(lockSMSSQL))
+        {
+          for (SMS sms : smss)
+          {
+            updateStatement.setInt(1, SMS.Status.SENDING.getCode());
+            updateStatement.setString(2, lockName);
+            updateStatement.setLong(3, sms.getId());
+            updateStatement.setInt(4, SMS.Status.QUEUED_FOR_SENDING.getCode());
+            updateStatement.addBatch();
+          }
+
+          int[] updateCounts = updateStatement.executeBatch();
+
+          /*
+           * Only return the SMSs we actually managed to lock. On databases that do not support
+           * skipping locked rows a SMS may have been claimed by another sender between the SELECT
+           * and the UPDATE.
+           */
+          List<SMS> lockedSMSs = new ArrayList<>(smss.size());
+
+          for (int i = 0; i < smss.size(); i++)
+          {
+            if ((updateCounts[i] == 1) || (updateCounts[i] == Statement.SUCCESS_NO_INFO))
+            {
+              SMS sms = smss.get(i);
+
+              sms.setStatus(SMS.Status.SENDING);
+              sms.setLockName(lockName);
+
+              lockedSMSs.add(sms);
+            }
+          }
+
+          return lockedSMSs;
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the next %d SMSs that have been queued for sending from the database",
+          maximumNumberOfSMSs), e);
+    }
+  }
+
   /**
    * Retrieve the SMS.
    *
@@ -270,6 +400,72 @@ public class SMSDAO
     }
   }
 
+  /**
+   * Increment the send attempts for the SMSs.
+   * <p/>
+   * The send attempts are incremented using a single JDBC batch update.
+   *
+   * @param smss the SMSs whose send attempts should be incremented
+   */
+  public void incrementSMSSendAttempts(List<SMS> smss)
+    throws DAOException
+  {
+    String incrementSMSSendAttemptsSQL =
+        "UPDATE SMS.SMS SET SEND_ATTEMPTS=SEND_ATTEMPTS + 1, LAST_PROCESSED=? WHERE ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(incrementSMSSendAttemptsSQL))
+    {
+      Timestamp currentTime = new Timestamp(System.currentTimeMillis());
+
+      for (SMS sms : smss)
+      {
+        statement.setTimestamp(1, currentTime);
+        statement.setLong(2, sms.getId());
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+
+      for (SMS sms : smss)
+      {
+        sms.setSendAttempts(sms.getSendAttempts() + 1);
+        sms.setLastProcessed(currentTime);
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to increment the send attempts for the %d SMSs in the database", smss.size()),
+          e);
+    }
+  }
+
+  /**
+   * Initialise the <code>SMSDAO</code> instance.
+   */
+  @PostConstruct
+  public void init()
+    throws DAOException
+  {
+    String getNextSMSsQueuedForSendingColumnsSQL =
+        "ID, MOBILE_NUMBER, MESSAGE, STATUS, SEND_ATTEMPTS, LOCK_NAME, LAST_PROCESSED";
+
+    String getNextSMSsQueuedForSendingWhereSQL =
+        "WHERE STATUS=? AND (LAST_PROCESSED<? OR LAST_PROCESSED IS NULL)";
+
+    try (Connection connection = dataSource.getConnection())
+    {
+      getNextSMSsQueuedForSendingSQL = DAOUtil.getClaimNextRowsSQL(connection,
+          getNextSMSsQueuedForSendingColumnsSQL, "SMS.SMS", getNextSMSsQueuedForSendingWhereSQL,
+          "ID");
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException("Failed to initialise the SMSDAO instance", e);
+    }
+  }
+
   /**
    * Reset the SMS locks.
    *
@@ -363,6 +559,39 @@ public class SMSDAO
     }
   }
 
+  /**
+   * Unlock the SMSs.
+   * <p/>
+   * The SMSs are unlocked using a single JDBC batch update.
+   *
+   * @param smss   the SMSs to unlock
+   * @param status the new status for the unlocked SMSs
+   */
+  public void unlockSMSs(List<SMS> smss, SMS.Status status)
+    throws DAOException
+  {
+    String unlockSMSSQL = "UPDATE SMS.SMS SET STATUS=?, LOCK_NAME=NULL WHERE ID=?";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(unlockSMSSQL))
+    {
+      for (SMS sms : smss)
+      {
+        statement.setInt(1, status.getCode());
+        statement.setLong(2, sms.getId());
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to unlock and set the status for the %d SMSs to (%s) in the database",
+          smss.size(), status.toString()), e);
+    }
+  }
+
   private SMS getSMS(ResultSet rs)
     throws SQLException
   {
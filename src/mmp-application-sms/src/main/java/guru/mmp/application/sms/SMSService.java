@@ -22,9 +22,10 @@ import com.mymobileapi.api5.API;
 import com.mymobileapi.api5.APISoap;
 import guru.mmp.application.Debug;
 import guru.mmp.application.configuration.IConfigurationService;
+import guru.mmp.application.configuration.IntegerConfigurationListener;
 import guru.mmp.application.util.ServiceUtil;
 import guru.mmp.common.util.StringUtil;
-import guru.mmp.common.xml.XmlParserErrorHandler;
+import guru.mmp.common.xml.XmlParserPool;
 import guru.mmp.common.xml.XmlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,12 +40,15 @@ import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.ws.BindingProvider;
 import java.io.StringReader;
 import java.net.URL;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -63,6 +67,18 @@ public class SMSService
    */
   private static final int MAXIMUM_SMS_LENGTH = 160;
 
+  /**
+   * The format for the dates in the send data XML.
+   */
+  private static final DateTimeFormatter SEND_DATA_DATE_FORMATTER = DateTimeFormatter.ofPattern(
+      "dd/MMM/yyyy");
+
+  /**
+   * The format for the times in the send data XML.
+   */
+  private static final DateTimeFormatter SEND_DATA_TIME_FORMATTER = DateTimeFormatter.ofPattern(
+      "HH:mm");
+
   /* Logger */
   private static final Logger logger = LoggerFactory.getLogger(SMSService.class);
 
@@ -76,17 +92,32 @@ public class SMSService
   private ApplicationContext applicationContext;
 
   /* The maximum number of times sending will be attempted for a SMS. */
-  private int maximumSendAttempts;
+  private volatile int maximumSendAttempts;
+
+  /**
+   * The MyMobileAPI service created from the MyMobileAPI WSDL, which is shared by all the proxies
+   * for the MyMobileAPI service.
+   */
+  private API myMobileAPI;
   private String myMobileAPIEndPoint;
   private String myMobileAPIPassword;
+
+  /**
+   * The idle proxies for the MyMobileAPI service, which are reused to avoid creating a new proxy
+   * for every request.
+   */
+  private Queue<APISoap> myMobileAPIServices = new ConcurrentLinkedQueue<>();
   private String myMobileAPIUsername;
 
+  /* The maximum number of SMSs to retrieve and send at a time. */
+  private volatile int sendBatchSize;
+
   /* Configuration Service */
   @Inject
   private IConfigurationService configurationService;
 
   /* The delay in milliseconds to wait before re-attempting to send a SMS. */
-  private int sendRetryDelay;
+  private volatile int sendRetryDelay;
 
   /* SMS DAO */
   @Inject
@@ -110,6 +141,25 @@ public class SMSService
     }
   }
 
+  /**
+   * Delete the existing SMSs.
+   *
+   * @param smss the SMSs to delete
+   */
+  public void deleteSMSs(List<SMS> smss)
+    throws SMSServiceException
+  {
+    try
+    {
+      smsDAO.deleteSMSs(smss);
+    }
+    catch (Throwable e)
+    {
+      throw new SMSServiceException(String.format("Failed to delete the %d SMSs", smss.size()),
+          e);
+    }
+  }
+
   /**
    * Returns the maximum number of send attempts for a SMS.
    *
@@ -141,6 +191,28 @@ public class SMSService
     }
   }
 
+  /**
+   * Retrieve the next batch of SMSs that have been queued for sending.
+   * <p/>
+   * The SMSs will be locked to prevent duplicate sending.
+   *
+   * @return the next batch of SMSs that have been queued for sending, which will be empty if no
+   *         SMSs are currently queued for sending
+   */
+  public List<SMS> getNextSMSsQueuedForSending()
+    throws SMSServiceException
+  {
+    try
+    {
+      return smsDAO.getNextSMSsQueuedForSending(sendBatchSize, sendRetryDelay, instanceName);
+    }
+    catch (Throwable e)
+    {
+      throw new SMSServiceException(String.format(
+          "Failed to retrieve the next %d SMSs queued for sending", sendBatchSize), e);
+    }
+  }
+
   /**
    * Returns the number of SMS credits remaining.
    *
@@ -153,7 +225,16 @@ public class SMSService
     {
       APISoap myMobileAPIService = getMyMobileAPIService();
 
-      String apiResultXml = myMobileAPIService.creditsSTR(myMobileAPIUsername, myMobileAPIPassword);
+      String apiResultXml;
+
+      try
+      {
+        apiResultXml = myMobileAPIService.creditsSTR(myMobileAPIUsername, myMobileAPIPassword);
+      }
+      finally
+      {
+        releaseMyMobileAPIService(myMobileAPIService);
+      }
 
       Element apiResultElement = parseAPIResultXML(apiResultXml);
 
@@ -212,6 +293,25 @@ public class SMSService
     }
   }
 
+  /**
+   * Increment the send attempts for the SMSs.
+   *
+   * @param smss the SMSs whose send attempts should be incremented
+   */
+  public void incrementSMSSendAttempts(List<SMS> smss)
+    throws SMSServiceException
+  {
+    try
+    {
+      smsDAO.incrementSMSSendAttempts(smss);
+    }
+    catch (Throwable e)
+    {
+      throw new SMSServiceException(String.format(
+          "Failed to increment the send attempts for the %d SMSs", smss.size()), e);
+    }
+  }
+
   /**
    * Initialise the SMS Service.
    */
@@ -224,6 +324,19 @@ public class SMSService
     {
       // Initialise the configuration for the SMS Service
       initConfiguration();
+
+      // Apply the changes to the configuration made by this or another application instance
+      IntegerConfigurationListener configurationListener = new IntegerConfigurationListener(
+          "SMS Service");
+
+      configurationListener.bind("SMSService.SendRetryDelay",
+          value -> sendRetryDelay = value);
+      configurationListener.bind("SMSService.MaximumSendAttempts",
+          value -> maximumSendAttempts = value);
+      configurationListener.bind("SMSService.SendBatchSize",
+          value -> sendBatchSize = Math.max(1, value));
+
+      configurationService.addConfigurationListener("SMSService.", configurationListener);
     }
     catch (Throwable e)
     {
@@ -301,13 +414,6 @@ public class SMSService
         return true;
       }
 
-      mobileNumber = formatMobileNumber(mobileNumber);
-
-      if (message.length() > MAXIMUM_SMS_LENGTH)
-      {
-        message = message.substring(0, MAXIMUM_SMS_LENGTH);
-      }
-
       if (logger.isDebugEnabled())
       {
         logger.debug(String.format("Attempting to send a SMS using the mobile number (%s)",
@@ -323,100 +429,105 @@ public class SMSService
         return true;
       }
 
-      String sendXML = buildSendDataXml(smsId, mobileNumber, message);
-
-      APISoap myMobileAPIService = getMyMobileAPIService();
-
-      String apiResultXml = myMobileAPIService.sendSTRSTR(myMobileAPIUsername, myMobileAPIPassword,
-          sendXML);
-
-      // Retrieve a document builder instance using the factory
-      DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-
-      builderFactory.setValidating(false);
-      builderFactory.setNamespaceAware(false);
-
-      // Create the document builder
-      DocumentBuilder builder = builderFactory.newDocumentBuilder();
+      StringBuilder sendXML = new StringBuilder();
 
-      builder.setErrorHandler(new XmlParserErrorHandler());
+      appendSendDataSettingsXml(sendXML);
+      appendSendDataEntryXml(sendXML, smsId, mobileNumber, message);
 
-      // Parse the XML
-      InputSource inputSource = new InputSource(new StringReader(apiResultXml));
-      Document document = builder.parse(inputSource);
-      Element apiResultElement = document.getDocumentElement();
+      sendXML.append("</senddata>");
 
-      if (!apiResultElement.getNodeName().equals("api_result"))
+      if (!sendData(sendXML.toString()))
       {
-        throw new RuntimeException("Invalid API result XML: api_result element not found");
+        return false;
       }
 
-      Element callResultElement = XmlUtils.getChildElement(apiResultElement, "call_result");
-
-      if (callResultElement == null)
+      if (logger.isDebugEnabled())
       {
-        throw new RuntimeException("Invalid API result XML: call_result element not found");
+        logger.debug(String.format("Successfully sent a SMS using the mobile number (%s)",
+            mobileNumber));
       }
 
-      Boolean result = XmlUtils.getChildElementBoolean(callResultElement, "result");
+      return true;
+    }
+    catch (Throwable e)
+    {
+      throw new SMSServiceException(String.format(
+          "Failed to send the SMS to the mobile number (%s)", mobileNumber), e);
+    }
+  }
 
-      if (result == null)
-      {
-        throw new RuntimeException("Invalid API result XML: result element not found");
-      }
+  /**
+   * Send the SMSs synchronously using a single request to the MyMobileAPI service.
+   * <p/>
+   * NOTE: This will NOT queue the SMSs for sending. The SMSs will actually be sent synchronously.
+   * SMSs with an empty message are skipped.
+   *
+   * @param smss the SMSs to send
+   *
+   * @return <code>true</code> if the SMSs were sent successfully or <code>false</code> otherwise
+   */
+  public boolean sendSMSsSynchronously(List<SMS> smss)
+    throws SMSServiceException
+  {
+    try
+    {
+      StringBuilder sendXML = new StringBuilder();
 
-      if (!result)
-      {
-        String error = XmlUtils.getChildElementText(callResultElement, "error");
+      appendSendDataSettingsXml(sendXML);
 
-        // If the SMS cannot be sent...
-        if (error.equalsIgnoreCase("No data to send"))
+      int numberOfEntries = 0;
+
+      for (SMS sms : smss)
+      {
+        if (StringUtil.isNullOrEmpty(sms.getMessage()))
         {
-          return false;
+          logger.info(String.format("Failed to send the empty SMS message (%d) to (%s)",
+              sms.getId(), sms.getMobileNumber()));
+
+          continue;
         }
 
-        throw new RuntimeException("The MyMobileAPI service returned an error: "
-            + (StringUtil.isNullOrEmpty(error)
-            ? "UNKNOWN"
-            : error));
+        appendSendDataEntryXml(sendXML, sms.getId(), sms.getMobileNumber(), sms.getMessage());
+
+        numberOfEntries++;
       }
 
-      Element sendInfoElement = XmlUtils.getChildElement(apiResultElement, "send_info");
+      sendXML.append("</senddata>");
 
-      if (sendInfoElement == null)
+      if (numberOfEntries == 0)
       {
-        throw new RuntimeException("Invalid API result XML: send_info element not found");
+        return true;
       }
 
-      int credits;
-
-      try
+      if (logger.isDebugEnabled())
       {
-        credits = Integer.parseInt(XmlUtils.getChildElementText(sendInfoElement, "credits"));
+        logger.debug(String.format("Attempting to send a batch of %d SMSs", numberOfEntries));
       }
-      catch (Throwable e)
+
+      if (Debug.inDebugMode())
       {
-        throw new RuntimeException("Invalid API result XML: "
-            + "Failed to retrieve and parse the value of the credits element", e);
+        logger.info(String.format("Skipping sending of a batch of %d SMSs in DEBUG mode",
+            numberOfEntries));
+
+        return true;
       }
 
-      if (credits < 100)
+      if (!sendData(sendXML.toString()))
       {
-        logger.warn(String.format("There are %d SMS credits remaining", credits));
+        return false;
       }
 
       if (logger.isDebugEnabled())
       {
-        logger.debug(String.format("Successfully sent a SMS using the mobile number (%s)",
-            mobileNumber));
+        logger.debug(String.format("Successfully sent a batch of %d SMSs", numberOfEntries));
       }
 
       return true;
     }
     catch (Throwable e)
     {
-      throw new SMSServiceException(String.format(
-          "Failed to send the SMS to the mobile number (%s)", mobileNumber), e);
+      throw new SMSServiceException(String.format("Failed to send the batch of %d SMSs",
+          smss.size()), e);
     }
   }
 
@@ -460,23 +571,90 @@ public class SMSService
     }
   }
 
-  private String buildSendDataXml(long smsId, String mobileNumber, String message)
+  /**
+   * Unlock the SMSs.
+   *
+   * @param smss   the SMSs to unlock
+   * @param status the new status for the unlocked SMSs
+   */
+  public void unlockSMSs(List<SMS> smss, SMS.Status status)
+    throws SMSServiceException
   {
-    SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MMM/yyyy");
-    SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm");
+    try
+    {
+      smsDAO.unlockSMSs(smss, status);
+    }
+    catch (Throwable e)
+    {
+      throw new SMSServiceException(String.format(
+          "Failed to unlock the %d SMSs and set their status to (%s)", smss.size(),
+          status.getName()), e);
+    }
+  }
+
+  private void appendSendDataEntryXml(StringBuilder buffer, long smsId, String mobileNumber,
+      String message)
+  {
+    mobileNumber = formatMobileNumber(mobileNumber);
 
-    Date now = new Date();
+    if (message.length() > MAXIMUM_SMS_LENGTH)
+    {
+      message = message.substring(0, MAXIMUM_SMS_LENGTH);
+    }
+
+    buffer.append("<entries><numto>");
+    appendXmlText(buffer, mobileNumber);
+    buffer.append("</numto><customerid>").append(smsId).append("</customerid><data1>");
+    appendXmlText(buffer, message);
+    buffer.append("</data1><type>SMS</type></entries>");
+  }
+
+  private void appendSendDataSettingsXml(StringBuilder buffer)
+  {
+    LocalDateTime now = LocalDateTime.now();
+
+    String date = SEND_DATA_DATE_FORMATTER.format(now);
+    String time = SEND_DATA_TIME_FORMATTER.format(now);
 
     // buffer.append("<validityperiod>").append("48").append("</validityperiod>");
 
-    return "<senddata>" + "<settings>" + "<live>True</live>"
-        + "<return_credits>True</return_credits>" + "<default_date>" + dateFormat.format(now)
-        + "</default_date>" + "<default_time>" + timeFormat.format(now) + "</default_time>"
-        + "<default_curdate>" + dateFormat.format(now) + "</default_curdate>" + "<default_curtime>"
-        + timeFormat.format(now) + "</default_curtime>" + "<mo_forwardemail>"
-        + "sms-reply@mmp.guru" + "</mo_forwardemail>" + "</settings>" + "<entries>" + "<numto>"
-        + mobileNumber + "</numto>" + "<customerid>" + smsId + "</customerid>" + "<data1>"
-        + message + "</data1>" + "<type>" + "SMS" + "</type>" + "</entries>" + "</senddata>";
+    buffer.append("<senddata><settings><live>True</live><return_credits>True</return_credits>");
+    buffer.append("<default_date>").append(date).append("</default_date>");
+    buffer.append("<default_time>").append(time).append("</default_time>");
+    buffer.append("<default_curdate>").append(date).append("</default_curdate>");
+    buffer.append("<default_curtime>").append(time).append("</default_curtime>");
+    buffer.append("<mo_forwardemail>sms-reply@mmp.guru</mo_forwardemail></settings>");
+  }
+
+  private void appendXmlText(StringBuilder buffer, String text)
+  {
+    for (int i = 0; i < text.length(); i++)
+    {
+      char ch = text.charAt(i);
+
+      switch (ch)
+      {
+        case '&':
+          buffer.append("&amp;");
+
+          break;
+
+        case '<':
+          buffer.append("&lt;");
+
+          break;
+
+        case '>':
+          buffer.append("&gt;");
+
+          break;
+
+        default:
+          buffer.append(ch);
+
+          break;
+      }
+    }
   }
 
   private String formatMobileNumber(String mobileNumber)
@@ -506,15 +684,32 @@ public class SMSService
     return mobileNumber;
   }
 
+  private synchronized API getMyMobileAPI()
+  {
+    // Create the MyMobileAPI service from the WSDL once and share it between the proxies
+    if (myMobileAPI == null)
+    {
+      URL wsdlLocation = Thread.currentThread().getContextClassLoader().getResource(
+          "META-INF/wsdl/MyMobileAPI.wsdl");
+
+      myMobileAPI = new API(wsdlLocation, new QName("http://www.mymobileapi.com/api5", "API"));
+    }
+
+    return myMobileAPI;
+  }
+
   private APISoap getMyMobileAPIService()
   {
-    // Retrieve the proxy for the MyMobileAPI service
-    URL wsdlLocation = Thread.currentThread().getContextClassLoader().getResource(
-        "META-INF/wsdl/MyMobileAPI.wsdl");
+    // Reuse an idle proxy for the MyMobileAPI service if one is available
+    APISoap apiSoap = myMobileAPIServices.poll();
 
-    API api = new API(wsdlLocation, new QName("http://www.mymobileapi.com/api5", "API"));
+    if (apiSoap != null)
+    {
+      return apiSoap;
+    }
 
-    APISoap apiSoap = api.getAPISoap();
+    // Retrieve the proxy for the MyMobileAPI service
+    apiSoap = getMyMobileAPI().getAPISoap();
 
     BindingProvider bindingProvider = ((BindingProvider) apiSoap);
 
@@ -564,6 +759,12 @@ public class SMSService
             "http://www.mymobileapi.com/api5/api.asmx", "The My Mobile API end point");
       }
 
+      if (!configurationService.keyExists("SMSService.SendBatchSize"))
+      {
+        configurationService.setValue("SMSService.SendBatchSize", 20,
+            "The maximum number of SMSs to retrieve and send at a time");
+      }
+
       sendRetryDelay = configurationService.getInteger("SMSService.SendRetryDelay");
 
       maximumSendAttempts = configurationService.getInteger("SMSService.MaximumSendAttempts");
@@ -573,6 +774,8 @@ public class SMSService
       myMobileAPIPassword = configurationService.getString("SMSService.MyMobileAPIPassword");
 
       myMobileAPIEndPoint = configurationService.getString("SMSService.MyMobileAPIEndPoint");
+
+      sendBatchSize = Math.max(1, configurationService.getInteger("SMSService.SendBatchSize"));
     }
     catch (Throwable e)
     {
@@ -581,30 +784,29 @@ public class SMSService
     }
   }
 
-  private Element parseAPIResultXML(String xml)
+  private Element parseAPIResultDocument(String xml)
+    throws Exception
   {
-    try
-    {
-      // Retrieve a document builder instance using the factory
-      DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+    // Parse the XML using the pooled document builder for the current thread
+    DocumentBuilder builder = XmlParserPool.getDocumentBuilder();
 
-      builderFactory.setValidating(false);
-      builderFactory.setNamespaceAware(false);
+    InputSource inputSource = new InputSource(new StringReader(xml));
+    Document document = builder.parse(inputSource);
+    Element apiResultElement = document.getDocumentElement();
 
-      // Create the document builder
-      DocumentBuilder builder = builderFactory.newDocumentBuilder();
-
-      builder.setErrorHandler(new XmlParserErrorHandler());
+    if (!apiResultElement.getNodeName().equals("api_result"))
+    {
+      throw new RuntimeException("Invalid API result XML: api_result element not found");
+    }
 
-      // Parse the XML
-      InputSource inputSource = new InputSource(new StringReader(xml));
-      Document document = builder.parse(inputSource);
-      Element apiResultElement = document.getDocumentElement();
+    return apiResultElement;
+  }
 
-      if (!apiResultElement.getNodeName().equals("api_result"))
-      {
-        throw new RuntimeException("Invalid API result XML: api_result element not found");
-      }
+  private Element parseAPIResultXML(String xml)
+  {
+    try
+    {
+      Element apiResultElement = parseAPIResultDocument(xml);
 
       Element callResultElement = XmlUtils.getChildElement(apiResultElement, "call_result");
 
@@ -637,4 +839,93 @@ public class SMSService
       throw new RuntimeException("Failed to parse the API result XML", e);
     }
   }
+
+  private void releaseMyMobileAPIService(APISoap apiSoap)
+  {
+    myMobileAPIServices.offer(apiSoap);
+  }
+
+  /**
+   * Send the specified send data XML using the MyMobileAPI service.
+   *
+   * @param sendXML the send data XML
+   *
+   * @return <code>true</code> if the send data was sent successfully or <code>false</code> if
+   *         the MyMobileAPI service indicated that there was no data to send
+   */
+  private boolean sendData(String sendXML)
+    throws Exception
+  {
+    APISoap myMobileAPIService = getMyMobileAPIService();
+
+    String apiResultXml;
+
+    try
+    {
+      apiResultXml = myMobileAPIService.sendSTRSTR(myMobileAPIUsername, myMobileAPIPassword,
+          sendXML);
+    }
+    finally
+    {
+      releaseMyMobileAPIService(myMobileAPIService);
+    }
+
+    Element apiResultElement = parseAPIResultDocument(apiResultXml);
+
+    Element callResultElement = XmlUtils.getChildElement(apiResultElement, "call_result");
+
+    if (callResultElement == null)
+    {
+      throw new RuntimeException("Invalid API result XML: call_result element not found");
+    }
+
+    Boolean result = XmlUtils.getChildElementBoolean(callResultElement, "result");
+
+    if (result == null)
+    {
+      throw new RuntimeException("Invalid API result XML: result element not found");
+    }
+
+    if (!result)
+    {
+      String error = XmlUtils.getChildElementText(callResultElement, "error");
+
+      // If the SMS cannot be sent...
+      if (error.equalsIgnoreCase("No data to send"))
+      {
+        return false;
+      }
+
+      throw new RuntimeException("The MyMobileAPI service returned an error: "
+          + (StringUtil.isNullOrEmpty(error)
+          ? "UNKNOWN"
+          : error));
+    }
+
+    Element sendInfoElement = XmlUtils.getChildElement(apiResultElement, "send_info");
+
+    if (sendInfoElement == null)
+    {
+      throw new RuntimeException("Invalid API result XML: send_info element not found");
+    }
+
+    int credits;
+
+    try
+    {
+      credits = Integer.parseInt(XmlUtils.getChildElementText(sendInfoElement, "credits"));
+    }
+    catch (Throwable e)
+    {
+      throw new RuntimeException("Invalid API result XML: "
+          + "Failed to retrieve and parse the value of the credits element", e);
+    }
+
+    if (credits < 100)
+    {
+      logger.warn(String.format("There are %d SMS credits remaining", credits));
+    }
+
+    return true;
+  }
 }
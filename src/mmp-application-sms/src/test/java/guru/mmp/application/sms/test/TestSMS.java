@@ -20,8 +20,12 @@ package guru.mmp.application.sms.test;
 
 import com.mymobileapi.api5.API;
 import com.mymobileapi.api5.APISoap;
+import com.sun.net.httpserver.HttpServer;
 import guru.mmp.application.configuration.IConfigurationService;
+import guru.mmp.application.sms.ISMSDAO;
 import guru.mmp.application.sms.ISMSService;
+import guru.mmp.application.sms.SMS;
+import guru.mmp.application.sms.SMSService;
 import guru.mmp.application.test.TestClassRunner;
 import guru.mmp.common.util.StringUtil;
 import guru.mmp.common.xml.XmlParserErrorHandler;
@@ -30,6 +34,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
@@ -44,10 +49,20 @@ import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.ws.BindingProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -74,6 +89,115 @@ public class TestSMS
   @Inject
   private IConfigurationService configurationService;
 
+  /* Spring application context */
+  @Inject
+  private ApplicationContext applicationContext;
+
+  /* SMS DAO */
+  @Inject
+  private ISMSDAO smsDAO;
+
+  /**
+   * Test sending batches of SMSs against a local stub for the MyMobileAPI service and compare the
+   * throughput with sending the SMSs one at a time.
+   */
+  @Test
+  public void batchSendSMSThroughputTest()
+    throws Exception
+  {
+    int numberOfSMSs = 200;
+
+    AtomicInteger numberOfRequests = new AtomicInteger();
+    AtomicInteger numberOfEntries = new AtomicInteger();
+
+    HttpServer server = startStubMyMobileAPIService(numberOfRequests, numberOfEntries);
+
+    String myMobileAPIEndPoint = configurationService.getString(
+        "SMSService.MyMobileAPIEndPoint", "http://www.mymobileapi.com/api5/api.asmx");
+
+    try
+    {
+      configurationService.setValue("SMSService.MyMobileAPIEndPoint", String.format(
+          "http://localhost:%d/api5/api.asmx", server.getAddress().getPort()),
+          "The My Mobile API end point");
+
+      /*
+       * Create a separate SMS Service that uses the stub for the MyMobileAPI service so that the
+       * real MyMobileAPI service is never invoked.
+       */
+      SMSService stubSMSService = applicationContext.getAutowireCapableBeanFactory().createBean(
+          SMSService.class);
+
+      // Warm up the proxies for the MyMobileAPI service and the XML parsers
+      stubSMSService.sendSMSSynchronously(0, "0832763107", "Warm up");
+
+      numberOfRequests.set(0);
+      numberOfEntries.set(0);
+
+      // Send the SMSs one at a time
+      long start = System.nanoTime();
+
+      for (int i = 0; i < numberOfSMSs; i++)
+      {
+        assertTrue("Failed to send the SMS", stubSMSService.sendSMSSynchronously(i, "0832763107",
+            "Testing one at a time " + i));
+      }
+
+      long singleElapsed = System.nanoTime() - start;
+
+      assertEquals("The number of requests is incorrect", numberOfSMSs, numberOfRequests.get());
+
+      numberOfRequests.set(0);
+      numberOfEntries.set(0);
+
+      // Queue the SMSs and then send them in batches
+      for (int i = 0; i < numberOfSMSs; i++)
+      {
+        SMS sms = new SMS("0832763107", "Testing in batches <" + i + "> & more");
+
+        sms.setStatus(SMS.Status.QUEUED_FOR_SENDING);
+
+        smsDAO.createSMS(sms);
+      }
+
+      start = System.nanoTime();
+
+      int numberOfSMSsSent = 0;
+
+      List<SMS> smss;
+
+      while (!(smss = stubSMSService.getNextSMSsQueuedForSending()).isEmpty())
+      {
+        assertTrue("Failed to send the batch of SMSs", stubSMSService.sendSMSsSynchronously(
+            smss));
+
+        stubSMSService.deleteSMSs(smss);
+
+        numberOfSMSsSent += smss.size();
+      }
+
+      long batchElapsed = System.nanoTime() - start;
+
+      assertEquals("The number of SMSs sent is incorrect", numberOfSMSs, numberOfSMSsSent);
+      assertEquals("The number of entries sent is incorrect", numberOfSMSs, numberOfEntries.get());
+      assertTrue("The SMSs were not sent in batches", numberOfRequests.get() < numberOfSMSs);
+
+      logger.info(String.format("Sent %d SMSs one at a time in %d ms (%.0f messages/sec)",
+          numberOfSMSs, singleElapsed / 1000000, (numberOfSMSs * 1000000000.0) / singleElapsed));
+      logger.info(String.format(
+          "Sent %d queued SMSs in %d batches in %d ms (%.0f messages/sec)", numberOfSMSs,
+          numberOfRequests.get(), batchElapsed / 1000000, (numberOfSMSs * 1000000000.0)
+          / batchElapsed));
+    }
+    finally
+    {
+      configurationService.setValue("SMSService.MyMobileAPIEndPoint", myMobileAPIEndPoint,
+          "The My Mobile API end point");
+
+      server.stop(0);
+    }
+  }
+
   /**
    * Test the send SMS API functionality.
    *
@@ -245,4 +369,61 @@ public class TestSMS
 
     return apiSoap;
   }
+
+  private HttpServer startStubMyMobileAPIService(AtomicInteger numberOfRequests,
+      AtomicInteger numberOfEntries)
+    throws Exception
+  {
+    String apiResultXml = "&lt;api_result&gt;&lt;call_result&gt;&lt;result&gt;True&lt;/result&gt;"
+        + "&lt;/call_result&gt;&lt;send_info&gt;&lt;credits&gt;1000&lt;/credits&gt;"
+        + "&lt;/send_info&gt;&lt;/api_result&gt;";
+
+    byte[] responseData = ("<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+        + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+        + "<Send_STR_STRResponse xmlns=\"http://www.mymobileapi.com/api5\">"
+        + "<Send_STR_STRResult>" + apiResultXml + "</Send_STR_STRResult>"
+        + "</Send_STR_STRResponse></soap:Body></soap:Envelope>").getBytes(StandardCharsets.UTF_8);
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+    server.createContext("/api5/api.asmx", exchange ->
+        {
+          ByteArrayOutputStream requestData = new ByteArrayOutputStream();
+
+          try (InputStream in = exchange.getRequestBody())
+          {
+            byte[] buffer = new byte[4096];
+            int numberOfBytesRead;
+
+            while ((numberOfBytesRead = in.read(buffer)) != -1)
+            {
+              requestData.write(buffer, 0, numberOfBytesRead);
+            }
+          }
+
+          String request = new String(requestData.toByteArray(), StandardCharsets.UTF_8);
+
+          numberOfRequests.incrementAndGet();
+
+          for (int index = request.indexOf("&lt;entries");
+              index != -1;
+              index = request.indexOf("&lt;entries", index + 1))
+          {
+            numberOfEntries.incrementAndGet();
+          }
+
+          exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+          exchange.sendResponseHeaders(200, responseData.length);
+
+          try (OutputStream out = exchange.getResponseBody())
+          {
+            out.write(responseData);
+          }
+        }
+        );
+
+    server.start();
+
+    return server;
+  }
 }
@@ -57,7 +57,6 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.DependsOn;
-import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.Database;
@@ -100,7 +99,6 @@ import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -574,17 +572,6 @@ public abstract class WebApplication extends org.apache.wicket.protocol.http.Web
     return session;
   }
 
-  /**
-   * Returns the Spring task executor to use for @Async method invocations.
-   *
-   * @return the Spring task executor to use for @Async method invocations
-   */
-  @Bean
-  public Executor taskExecutor()
-  {
-    return new SimpleAsyncTaskExecutor();
-  }
-
   /**
    * Returns the Spring task scheduler.
    *
@@ -108,6 +108,18 @@ public class WebApplicationInitializer
     }
     catch (ClassNotFoundException ignored) {}
 
+    try
+    {
+      Class<? extends Servlet> reportJobServletClass = Thread.currentThread()
+          .getContextClassLoader().loadClass("guru.mmp.application.web.servlets.ReportJobServlet")
+          .asSubclass(Servlet.class);
+
+      ServletRegistration reportJobServlet = servletContext.addServlet("ReportJobServlet",
+          (reportJobServletClass));
+      reportJobServlet.addMapping("/reportJob");
+    }
+    catch (ClassNotFoundException ignored) {}
+
     try
     {
       Class<? extends Servlet> cxfServletClass = Thread.currentThread().getContextClassLoader()
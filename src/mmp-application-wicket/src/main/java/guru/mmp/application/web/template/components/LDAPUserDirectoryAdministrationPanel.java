@@ -272,6 +272,38 @@ public class LDAPUserDirectoryAdministrationPanel extends UserDirectoryAdministr
       maxFilteredGroupsField.setType(String.class);
       maxFilteredGroupsField.setRequired(true);
       add(maxFilteredGroupsField);
+
+      // The "connectionPoolSize" field
+      TextField<String> connectionPoolSizeField = new TextFieldWithFeedback<>(
+          "connectionPoolSize", new PropertyModel<>(userDirectoryModel,
+          "parameters.ConnectionPoolSize"));
+      connectionPoolSizeField.setType(String.class);
+      connectionPoolSizeField.setRequired(true);
+      add(connectionPoolSizeField);
+
+      // The "connectionPoolMaxIdleTime" field
+      TextField<String> connectionPoolMaxIdleTimeField = new TextFieldWithFeedback<>(
+          "connectionPoolMaxIdleTime", new PropertyModel<>(userDirectoryModel,
+          "parameters.ConnectionPoolMaxIdleTime"));
+      connectionPoolMaxIdleTimeField.setType(String.class);
+      connectionPoolMaxIdleTimeField.setRequired(true);
+      add(connectionPoolMaxIdleTimeField);
+
+      // The "connectionPoolValidationInterval" field
+      TextField<String> connectionPoolValidationIntervalField = new TextFieldWithFeedback<>(
+          "connectionPoolValidationInterval", new PropertyModel<>(userDirectoryModel,
+          "parameters.ConnectionPoolValidationInterval"));
+      connectionPoolValidationIntervalField.setType(String.class);
+      connectionPoolValidationIntervalField.setRequired(true);
+      add(connectionPoolValidationIntervalField);
+
+      // The "pooledAuthentication" field
+      TextField<String> pooledAuthenticationField = new TextFieldWithFeedback<>(
+          "pooledAuthentication", new PropertyModel<>(userDirectoryModel,
+          "parameters.PooledAuthentication"));
+      pooledAuthenticationField.setType(String.class);
+      pooledAuthenticationField.setRequired(true);
+      add(pooledAuthenticationField);
     }
     catch (Throwable e)
     {
@@ -436,5 +468,25 @@ public class LDAPUserDirectoryAdministrationPanel extends UserDirectoryAdministr
     {
       parameters.put("MaxFilteredGroups", "100");
     }
+
+    if (!parameters.containsKey("ConnectionPoolSize"))
+    {
+      parameters.put("ConnectionPoolSize", "10");
+    }
+
+    if (!parameters.containsKey("ConnectionPoolMaxIdleTime"))
+    {
+      parameters.put("ConnectionPoolMaxIdleTime", "300000");
+    }
+
+    if (!parameters.containsKey("ConnectionPoolValidationInterval"))
+    {
+      parameters.put("ConnectionPoolValidationInterval", "10000");
+    }
+
+    if (!parameters.containsKey("PooledAuthentication"))
+    {
+      parameters.put("PooledAuthentication", "false");
+    }
   }
 }
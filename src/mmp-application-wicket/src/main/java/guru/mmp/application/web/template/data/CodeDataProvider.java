@@ -19,9 +19,13 @@ package guru.mmp.application.web.template.data;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.application.codes.Code;
+import guru.mmp.application.codes.CodeSortBy;
 import guru.mmp.application.codes.ICodesService;
 import guru.mmp.application.web.WebApplicationException;
-import guru.mmp.application.web.data.InjectableDataProvider;
+import guru.mmp.application.web.data.InjectableSortableDataProvider;
+import guru.mmp.common.persistence.SortDirection;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.model.IModel;
 
 import javax.inject.Inject;
@@ -37,7 +41,7 @@ import java.util.UUID;
  *
  * @author Marcus Portmann
  */
-public class CodeDataProvider extends InjectableDataProvider<Code>
+public class CodeDataProvider extends InjectableSortableDataProvider<Code, CodeSortBy>
 {
   private static final long serialVersionUID = 1000000;
 
@@ -56,7 +60,10 @@ public class CodeDataProvider extends InjectableDataProvider<Code>
    * Hidden default constructor to support CDI.
    */
   @SuppressWarnings("unused")
-  protected CodeDataProvider() {}
+  protected CodeDataProvider()
+  {
+    setSort(CodeSortBy.NAME, SortOrder.ASCENDING);
+  }
 
   /**
    * Constructs a new <code>CodeDataProvider</code>.
@@ -67,6 +74,8 @@ public class CodeDataProvider extends InjectableDataProvider<Code>
   public CodeDataProvider(UUID codeCategoryId)
   {
     this.codeCategoryId = codeCategoryId;
+
+    setSort(CodeSortBy.NAME, SortOrder.ASCENDING);
   }
 
   /**
@@ -90,10 +99,13 @@ public class CodeDataProvider extends InjectableDataProvider<Code>
   {
     try
     {
-      List<Code> allCodes = codesService.getCodesForCodeCategory(codeCategoryId);
+      SortParam<CodeSortBy> sort = getSort();
+
+      // Only retrieve the page of codes being displayed
+      List<Code> codes = codesService.getCodesForCodeCategory(codeCategoryId, sort.getProperty(),
+          SortDirection.fromAscending(sort.isAscending()), (int) first, (int) count);
 
-      return allCodes.subList((int) first, (int) Math.min(first + count, allCodes.size()))
-          .iterator();
+      return codes.iterator();
     }
     catch (Throwable e)
     {
@@ -19,9 +19,13 @@ package guru.mmp.application.web.template.data;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.application.configuration.ConfigurationValue;
+import guru.mmp.application.configuration.ConfigurationValueSortBy;
 import guru.mmp.application.configuration.IConfigurationService;
 import guru.mmp.application.web.WebApplicationException;
-import guru.mmp.application.web.data.InjectableDataProvider;
+import guru.mmp.application.web.data.InjectableSortableDataProvider;
+import guru.mmp.common.persistence.SortDirection;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 
@@ -40,7 +44,7 @@ import java.util.List;
  * @author Marcus Portmann
  */
 public class FilteredConfigurationValueDataProvider
-    extends InjectableDataProvider<ConfigurationValue>
+    extends InjectableSortableDataProvider<ConfigurationValue, ConfigurationValueSortBy>
 {
   private static final long serialVersionUID = 1000000;
 
@@ -56,7 +60,10 @@ public class FilteredConfigurationValueDataProvider
   /**
    * Constructs a new <code>FilteredConfigurationDataProvider</code>.
    */
-  public FilteredConfigurationValueDataProvider() {}
+  public FilteredConfigurationValueDataProvider()
+  {
+    setSort(ConfigurationValueSortBy.KEY, SortOrder.ASCENDING);
+  }
 
   /**
    * @see org.apache.wicket.model.IDetachable#detach()
@@ -89,11 +96,14 @@ public class FilteredConfigurationValueDataProvider
   {
     try
     {
-      List<ConfigurationValue> allConfigurationEntries =
-          configurationService.getFilteredConfigurationValues(filter);
+      SortParam<ConfigurationValueSortBy> sort = getSort();
+
+      // Only retrieve the page of configuration values being displayed
+      List<ConfigurationValue> configurationValues =
+          configurationService.getFilteredConfigurationValues(filter, sort.getProperty(),
+          SortDirection.fromAscending(sort.isAscending()), (int) first, (int) count);
 
-      return allConfigurationEntries.subList((int) first, (int) Math.min(first + count,
-          allConfigurationEntries.size())).iterator();
+      return configurationValues.iterator();
     }
     catch (Throwable e)
     {
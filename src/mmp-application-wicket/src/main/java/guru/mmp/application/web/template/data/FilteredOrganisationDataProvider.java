@@ -20,8 +20,12 @@ package guru.mmp.application.web.template.data;
 
 import guru.mmp.application.security.ISecurityService;
 import guru.mmp.application.security.Organisation;
+import guru.mmp.application.security.OrganisationSortBy;
 import guru.mmp.application.web.WebApplicationException;
-import guru.mmp.application.web.data.InjectableDataProvider;
+import guru.mmp.application.web.data.InjectableSortableDataProvider;
+import guru.mmp.common.persistence.SortDirection;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.model.IModel;
 
 import javax.inject.Inject;
@@ -37,7 +41,8 @@ import java.util.List;
  *
  * @author Marcus Portmann
  */
-public class FilteredOrganisationDataProvider extends InjectableDataProvider<Organisation>
+public class FilteredOrganisationDataProvider
+    extends InjectableSortableDataProvider<Organisation, OrganisationSortBy>
 {
   private static final long serialVersionUID = 1000000;
 
@@ -53,7 +58,10 @@ public class FilteredOrganisationDataProvider extends InjectableDataProvider<Org
   /**
    * Constructs a new <code>FilteredOrganisationDataProvider</code>.
    */
-  public FilteredOrganisationDataProvider() {}
+  public FilteredOrganisationDataProvider()
+  {
+    setSort(OrganisationSortBy.NAME, SortOrder.ASCENDING);
+  }
 
   /**
    * @see org.apache.wicket.model.IDetachable#detach()
@@ -86,10 +94,14 @@ public class FilteredOrganisationDataProvider extends InjectableDataProvider<Org
   {
     try
     {
-      List<Organisation> allOrganisations = securityService.getFilteredOrganisations(filter);
+      SortParam<OrganisationSortBy> sort = getSort();
+
+      // Only retrieve the page of organisations being displayed
+      List<Organisation> organisations = securityService.getFilteredOrganisations(filter,
+          sort.getProperty(), SortDirection.fromAscending(sort.isAscending()), (int) first,
+          (int) count);
 
-      return allOrganisations.subList((int) first, (int) Math.min(first + count,
-          allOrganisations.size())).iterator();
+      return organisations.iterator();
     }
     catch (Throwable e)
     {
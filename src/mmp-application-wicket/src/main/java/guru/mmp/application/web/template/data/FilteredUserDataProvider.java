@@ -20,12 +20,15 @@ package guru.mmp.application.web.template.data;
 
 import guru.mmp.application.security.ISecurityService;
 import guru.mmp.application.security.User;
+import guru.mmp.application.security.UserSortBy;
 import guru.mmp.application.web.WebApplicationException;
-import guru.mmp.application.web.data.InjectableDataProvider;
+import guru.mmp.application.web.data.InjectableSortableDataProvider;
+import guru.mmp.common.persistence.SortDirection;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.model.IModel;
 
 import javax.inject.Inject;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
@@ -39,7 +42,7 @@ import java.util.UUID;
  *
  * @author Marcus Portmann
  */
-public class FilteredUserDataProvider extends InjectableDataProvider<User>
+public class FilteredUserDataProvider extends InjectableSortableDataProvider<User, UserSortBy>
 {
   private static final long serialVersionUID = 1000000;
 
@@ -63,7 +66,10 @@ public class FilteredUserDataProvider extends InjectableDataProvider<User>
    * Hidden default constructor to support CDI.
    */
   @SuppressWarnings("unused")
-  protected FilteredUserDataProvider() {}
+  protected FilteredUserDataProvider()
+  {
+    setSort(UserSortBy.USERNAME, SortOrder.ASCENDING);
+  }
 
   /**
    * Constructs a new <code>UserDataProvider</code>.
@@ -74,6 +80,8 @@ public class FilteredUserDataProvider extends InjectableDataProvider<User>
   public FilteredUserDataProvider(UUID userDirectoryId)
   {
     this.userDirectoryId = userDirectoryId;
+
+    setSort(UserSortBy.USERNAME, SortOrder.ASCENDING);
   }
 
   /**
@@ -107,21 +115,14 @@ public class FilteredUserDataProvider extends InjectableDataProvider<User>
   {
     try
     {
-      List<User> allUsers = securityService.getFilteredUsers(userDirectoryId, filter);
-
-      List<User> users = new ArrayList<>();
-
-      long end = first + count;
+      SortParam<UserSortBy> sort = getSort();
 
-      for (long i = first; ((i < end) && (i < allUsers.size())); i++)
-      {
-        User user = allUsers.get((int) i);
+      // Only retrieve the page of users being displayed instead of all the filtered users
+      List<User> users = securityService.getFilteredUsers(userDirectoryId, filter,
+          sort.getProperty(), SortDirection.fromAscending(sort.isAscending()), (int) first,
+          (int) count);
 
-        if (!user.getUsername().equalsIgnoreCase("Administrator"))
-        {
-          users.add(user);
-        }
-      }
+      users.removeIf(user -> user.getUsername().equalsIgnoreCase("Administrator"));
 
       return users.iterator();
     }
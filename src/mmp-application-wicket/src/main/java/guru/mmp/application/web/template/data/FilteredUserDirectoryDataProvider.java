@@ -21,7 +21,10 @@ package guru.mmp.application.web.template.data;
 import guru.mmp.application.security.ISecurityService;
 import guru.mmp.application.security.UserDirectory;
 import guru.mmp.application.web.WebApplicationException;
-import guru.mmp.application.web.data.InjectableDataProvider;
+import guru.mmp.application.web.data.InjectableSortableDataProvider;
+import guru.mmp.common.persistence.SortDirection;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.model.IModel;
 
 import javax.inject.Inject;
@@ -37,7 +40,8 @@ import java.util.List;
  *
  * @author Marcus Portmann
  */
-public class FilteredUserDirectoryDataProvider extends InjectableDataProvider<UserDirectory>
+public class FilteredUserDirectoryDataProvider
+    extends InjectableSortableDataProvider<UserDirectory, String>
 {
   private static final long serialVersionUID = 1000000;
 
@@ -53,7 +57,10 @@ public class FilteredUserDirectoryDataProvider extends InjectableDataProvider<Us
   /**
    * Constructs a new <code>FilteredUserDirectoryDataProvider</code>.
    */
-  public FilteredUserDirectoryDataProvider() {}
+  public FilteredUserDirectoryDataProvider()
+  {
+    setSort("name", SortOrder.ASCENDING);
+  }
 
   /**
    * @see org.apache.wicket.model.IDetachable#detach()
@@ -86,10 +93,13 @@ public class FilteredUserDirectoryDataProvider extends InjectableDataProvider<Us
   {
     try
     {
-      List<UserDirectory> allUserDirectories = securityService.getFilteredUserDirectories(filter);
+      SortParam<String> sort = getSort();
+
+      // Only retrieve the page of user directories, which are sorted by name, being displayed
+      List<UserDirectory> userDirectories = securityService.getFilteredUserDirectories(filter,
+          SortDirection.fromAscending(sort.isAscending()), (int) first, (int) count);
 
-      return allUserDirectories.subList((int) first, (int) Math.min(first + count,
-          allUserDirectories.size())).iterator();
+      return userDirectories.iterator();
     }
     catch (Throwable e)
     {
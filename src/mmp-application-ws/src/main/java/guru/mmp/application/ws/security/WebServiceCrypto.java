@@ -52,7 +52,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * The <code>WebServiceCrypto</code> class implements the WSS4J crypto operations for
  * a web service.
  */
-class WebServiceCrypto
+public class WebServiceCrypto
   implements Crypto
 {
   /**
@@ -123,7 +123,7 @@ class WebServiceCrypto
    *
    * @param properties the properties used to configure the <code>Crypto</code implementation
    */
-  private WebServiceCrypto(Properties properties)
+  public WebServiceCrypto(Properties properties)
     throws CredentialException, IOException
   {
     this(properties, Loader.getClassLoader(WebServiceCrypto.class));
@@ -135,7 +135,7 @@ class WebServiceCrypto
    * @param properties the properties used to configure the <code>Crypto</code implementation
    * @param loader     the Java class loader
    */
-  private WebServiceCrypto(Properties properties, @SuppressWarnings("unused") ClassLoader loader)
+  public WebServiceCrypto(Properties properties, @SuppressWarnings("unused") ClassLoader loader)
     throws CredentialException, IOException
   {
     Object serviceSecurityContext = properties.get(ServiceSecurityContext.class.getName());
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.ws.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.ws.security.WebServiceSecurityContext;
+import guru.mmp.application.ws.security.WebServiceSecurityHandler;
+import guru.mmp.common.security.context.ApplicationSecurityContext;
+import guru.mmp.common.ws.security.WebServiceClientSecurityHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.security.auth.x500.X500Principal;
+import javax.xml.bind.JAXBContext;
+import javax.xml.namespace.QName;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+import javax.xml.ws.soap.SOAPFaultException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>WebServiceSecurityHandlerTest</code> class contains the implementation of the JUnit
+ * tests that sign and verify SOAP messages using the <code>WebServiceClientSecurityHandler</code>
+ * and <code>WebServiceSecurityHandler</code> classes.
+ * <p/>
+ * The key store used by the tests is generated using the <b>keytool</b> utility and contains the
+ * X.509 key pairs for both the web service and the web service client, so that each trusts the
+ * certificate of the other.
+ *
+ * @author Marcus Portmann
+ */
+public class WebServiceSecurityHandlerTest
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(
+      WebServiceSecurityHandlerTest.class);
+
+  /**
+   * The name of the web service.
+   */
+  private static final String SERVICE_NAME = "WebServiceSecurityHandlerTest";
+
+  /**
+   * The name of the generated key store.
+   */
+  private static final String KEY_STORE_NAME = SERVICE_NAME + ".jks";
+
+  /**
+   * The password for the generated key store and key pairs.
+   */
+  private static final String KEY_STORE_PASSWORD = "Password1";
+
+  /**
+   * The SOAP request sent by the web service client.
+   */
+  private static final String SOAP_REQUEST = "<soapenv:Envelope "
+      + "xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+      + "xmlns:test=\"http://test.mmp.guru\"><soapenv:Header/><soapenv:Body>"
+      + "<test:Echo><test:Message>Hello World</test:Message></test:Echo>"
+      + "</soapenv:Body></soapenv:Envelope>";
+
+  /**
+   * The SOAP response returned by the web service.
+   */
+  private static final String SOAP_RESPONSE = "<soapenv:Envelope "
+      + "xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+      + "xmlns:test=\"http://test.mmp.guru\"><soapenv:Header/><soapenv:Body>"
+      + "<test:EchoResponse><test:Message>Hello World</test:Message></test:EchoResponse>"
+      + "</soapenv:Body></soapenv:Envelope>";
+
+  /**
+   * The value of the catalina.home system property before the tests were run.
+   */
+  private static String previousCatalinaHome;
+
+  /**
+   * The temporary directory containing the generated key store and service security
+   * configuration.
+   */
+  private static Path testDirectory;
+
+  /**
+   * Generate the key store and service security configuration in a temporary directory and
+   * initialise the application security context for the web service client.
+   */
+  @BeforeClass
+  public static void setUp()
+    throws Exception
+  {
+    testDirectory = Files.createTempDirectory(SERVICE_NAME);
+
+    Path certificatesDirectory = Files.createDirectory(testDirectory.resolve("certificates"));
+
+    File keyStoreFile = certificatesDirectory.resolve(KEY_STORE_NAME).toFile();
+
+    generateKeyPair(keyStoreFile, "Service");
+    generateKeyPair(keyStoreFile, "Client");
+
+    Files.write(certificatesDirectory.resolve(SERVICE_NAME + ".ServiceSecurity"), (
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<!DOCTYPE serviceSecurity SYSTEM \"ServiceSecurity.dtd\">\n" + "<serviceSecurity>\n"
+        + "  <keyStoreName>" + KEY_STORE_NAME + "</keyStoreName>\n"
+        + "  <keyStoreAlias>Service</keyStoreAlias>\n"
+        + "  <keyStorePassword>" + KEY_STORE_PASSWORD + "</keyStorePassword>\n"
+        + "</serviceSecurity>\n").getBytes(StandardCharsets.UTF_8));
+
+    /*
+     * The service and application security contexts find the configuration and key store in the
+     * ${catalina.home}/certificates directory.
+     */
+    previousCatalinaHome = System.setProperty("catalina.home", testDirectory.toString());
+
+    ApplicationSecurityContext.getContext().init(KEY_STORE_NAME, "Client", KEY_STORE_PASSWORD);
+  }
+
+  /**
+   * Remove the temporary directory and restore the catalina.home system property.
+   */
+  @AfterClass
+  public static void tearDown()
+    throws IOException
+  {
+    if (previousCatalinaHome == null)
+    {
+      System.clearProperty("catalina.home");
+    }
+    else
+    {
+      System.setProperty("catalina.home", previousCatalinaHome);
+    }
+
+    if (testDirectory != null)
+    {
+      try (Stream<Path> paths = Files.walk(testDirectory))
+      {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+  }
+
+  /**
+   * Test that a request signed by the web service client is verified by the web service and that
+   * the response signed by the web service is verified by the web service client.
+   */
+  @Test
+  public void signAndVerifyTest()
+    throws Exception
+  {
+    MessageFactory messageFactory = MessageFactory.newInstance();
+
+    WebServiceClientSecurityHandler clientHandler = new WebServiceClientSecurityHandler();
+    WebServiceSecurityHandler serviceHandler = new WebServiceSecurityHandler(SERVICE_NAME);
+
+    // Sign the request on the client and verify it on the service
+    byte[] signedRequest = sign(clientHandler, createSOAPMessage(messageFactory,
+        SOAP_REQUEST.getBytes(StandardCharsets.UTF_8)));
+
+    String signedRequestText = new String(signedRequest, StandardCharsets.UTF_8);
+
+    assertTrue("The request was not signed", signedRequestText.contains("SignatureValue"));
+    assertTrue("The request does not contain the client certificate",
+        signedRequestText.contains("BinarySecurityToken"));
+
+    SOAPMessageContext serviceContext = new TestSOAPMessageContext(createSOAPMessage(
+        messageFactory, signedRequest), false);
+
+    assertTrue("The signed request was not verified", serviceHandler.handleMessage(
+        serviceContext));
+
+    X509Certificate clientCertificate = WebServiceSecurityContext.getContext()
+        .getClientCertificate();
+
+    assertNotNull("The client certificate was not saved on the security context",
+        clientCertificate);
+    assertEquals("The incorrect client certificate was saved on the security context",
+        "CN=Client, O=MMP", clientCertificate.getSubjectX500Principal().getName(
+        X500Principal.RFC1779));
+    assertEquals("The body of the verified request was not retained", "Hello World",
+        serviceContext.getMessage().getSOAPBody().getTextContent());
+
+    // Sign the response on the service and verify it on the client
+    byte[] signedResponse = sign(serviceHandler, createSOAPMessage(messageFactory,
+        SOAP_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+
+    SOAPMessageContext clientContext = new TestSOAPMessageContext(createSOAPMessage(
+        messageFactory, signedResponse), false);
+
+    assertTrue("The signed response was not verified", clientHandler.handleMessage(
+        clientContext));
+    assertEquals("The body of the verified response was not retained", "Hello World",
+        clientContext.getMessage().getSOAPBody().getTextContent());
+  }
+
+  /**
+   * Measure the number of SOAP messages per second that can be signed by the web service client
+   * and verified by the web service using the security handlers.
+   */
+  @Test
+  public void signAndVerifyPerformanceTest()
+    throws Exception
+  {
+    int numberOfMessages = 500;
+
+    MessageFactory messageFactory = MessageFactory.newInstance();
+
+    WebServiceClientSecurityHandler clientHandler = new WebServiceClientSecurityHandler();
+    WebServiceSecurityHandler serviceHandler = new WebServiceSecurityHandler(SERVICE_NAME);
+
+    byte[] soapRequestData = SOAP_REQUEST.getBytes(StandardCharsets.UTF_8);
+
+    // Warm up
+    for (int i = 0; i < 100; i++)
+    {
+      signAndVerify(messageFactory, clientHandler, serviceHandler, soapRequestData);
+    }
+
+    long signingTime = 0;
+    long verificationTime = 0;
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      long started = System.nanoTime();
+
+      byte[] signedRequest = sign(clientHandler, createSOAPMessage(messageFactory,
+          soapRequestData));
+
+      long signed = System.nanoTime();
+
+      assertTrue("The signed request was not verified", serviceHandler.handleMessage(
+          new TestSOAPMessageContext(createSOAPMessage(messageFactory, signedRequest), false)));
+
+      signingTime += (signed - started);
+      verificationTime += (System.nanoTime() - signed);
+    }
+
+    logger.info(String.format("Signed %.0f SOAP messages/second using the web service client "
+        + "security handler and verified %.0f SOAP messages/second using the web service "
+        + "security handler", numberOfMessages / (signingTime / 1000000000.0),
+        numberOfMessages / (verificationTime / 1000000000.0)));
+  }
+
+  /**
+   * Test that a request that was modified after it was signed is rejected by the web service.
+   */
+  @Test
+  public void tamperedRequestTest()
+    throws Exception
+  {
+    MessageFactory messageFactory = MessageFactory.newInstance();
+
+    WebServiceClientSecurityHandler clientHandler = new WebServiceClientSecurityHandler();
+    WebServiceSecurityHandler serviceHandler = new WebServiceSecurityHandler(SERVICE_NAME);
+
+    byte[] signedRequest = sign(clientHandler, createSOAPMessage(messageFactory,
+        SOAP_REQUEST.getBytes(StandardCharsets.UTF_8)));
+
+    byte[] tamperedRequest = new String(signedRequest, StandardCharsets.UTF_8).replace(
+        "Hello World", "Goodbye World").getBytes(StandardCharsets.UTF_8);
+
+    try
+    {
+      serviceHandler.handleMessage(new TestSOAPMessageContext(createSOAPMessage(messageFactory,
+          tamperedRequest), false));
+
+      fail("The tampered request was verified");
+    }
+    catch (SOAPFaultException ignored) {}
+  }
+
+  private static SOAPMessage createSOAPMessage(MessageFactory messageFactory, byte[] data)
+    throws Exception
+  {
+    MimeHeaders mimeHeaders = new MimeHeaders();
+
+    mimeHeaders.addHeader("Content-Type", "text/xml; charset=UTF-8");
+
+    return messageFactory.createMessage(mimeHeaders, new ByteArrayInputStream(data));
+  }
+
+  private static void generateKeyPair(File keyStoreFile, String alias)
+    throws Exception
+  {
+    String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator
+        + "keytool";
+
+    Process process = new ProcessBuilder(Arrays.asList(keytool, "-genkeypair", "-alias", alias,
+        "-keyalg", "RSA", "-keysize", "2048", "-validity", "1", "-dname", "CN=" + alias
+        + ", O=MMP", "-storetype", "jks", "-keystore", keyStoreFile.getAbsolutePath(),
+        "-storepass", KEY_STORE_PASSWORD, "-keypass", KEY_STORE_PASSWORD)).redirectErrorStream(
+        true).start();
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    byte[] buffer = new byte[1024];
+    int numberOfBytesRead;
+
+    while ((numberOfBytesRead = process.getInputStream().read(buffer)) != -1)
+    {
+      output.write(buffer, 0, numberOfBytesRead);
+    }
+
+    if (process.waitFor() != 0)
+    {
+      throw new IllegalStateException(String.format(
+          "Failed to generate the key pair (%s) using keytool: %s", alias, output.toString(
+          "UTF-8")));
+    }
+  }
+
+  private static byte[] sign(SOAPHandler<SOAPMessageContext> handler,
+      SOAPMessage message)
+    throws Exception
+  {
+    SOAPMessageContext messageContext = new TestSOAPMessageContext(message, true);
+
+    assertTrue("The message was not signed", handler.handleMessage(messageContext));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    messageContext.getMessage().writeTo(out);
+
+    return out.toByteArray();
+  }
+
+  private static void signAndVerify(MessageFactory messageFactory,
+      WebServiceClientSecurityHandler clientHandler, WebServiceSecurityHandler serviceHandler,
+      byte[] data)
+    throws Exception
+  {
+    byte[] signedRequest = sign(clientHandler, createSOAPMessage(messageFactory, data));
+
+    assertTrue("The signed request was not verified", serviceHandler.handleMessage(
+        new TestSOAPMessageContext(createSOAPMessage(messageFactory, signedRequest), false)));
+  }
+
+  /**
+   * The <code>TestSOAPMessageContext</code> class implements the SOAP message context passed to
+   * the security handlers, which is normally provided by the JAX-WS runtime.
+   */
+  private static class TestSOAPMessageContext extends HashMap<String, Object>
+    implements SOAPMessageContext
+  {
+    private static final long serialVersionUID = 1000000;
+
+    /**
+     * The SOAP message.
+     */
+    private SOAPMessage message;
+
+    /**
+     * Constructs a new <code>TestSOAPMessageContext</code>.
+     *
+     * @param message  the SOAP message
+     * @param outbound is the SOAP message outbound
+     */
+    TestSOAPMessageContext(SOAPMessage message, boolean outbound)
+    {
+      this.message = message;
+
+      put(MessageContext.MESSAGE_OUTBOUND_PROPERTY, outbound);
+    }
+
+    @Override
+    public Object[] getHeaders(QName header, JAXBContext context, boolean allRoles)
+    {
+      return new Object[0];
+    }
+
+    @Override
+    public SOAPMessage getMessage()
+    {
+      return message;
+    }
+
+    @Override
+    public Set<String> getRoles()
+    {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Scope getScope(String name)
+    {
+      return Scope.HANDLER;
+    }
+
+    @Override
+    public void setMessage(SOAPMessage message)
+    {
+      this.message = message;
+    }
+
+    @Override
+    public void setScope(String name, Scope scope) {}
+  }
+}
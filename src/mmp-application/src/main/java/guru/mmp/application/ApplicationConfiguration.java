@@ -18,6 +18,7 @@ package guru.mmp.application;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.application.executor.ApplicationTaskExecutor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.PropertySource;
 
@@ -50,6 +51,11 @@ public class ApplicationConfiguration
    */
   private CacheClusterConfiguration cacheCluster;
 
+  /**
+   * The configuration for the task executors for the application.
+   */
+  private TaskExecutorsConfiguration taskExecutors = new TaskExecutorsConfiguration();
+
   /**
    * Returns the in-memory distributed cache cluster configuration.
    *
@@ -80,6 +86,16 @@ public class ApplicationConfiguration
     return mutualSSL;
   }
 
+  /**
+   * Returns the configuration for the task executors for the application.
+   *
+   * @return the configuration for the task executors for the application
+   */
+  public TaskExecutorsConfiguration getTaskExecutors()
+  {
+    return taskExecutors;
+  }
+
   /**
    * Returns whether mutual SSL has been enabled and web services and RESTful web services should be
    * invoked securely.
@@ -122,6 +138,16 @@ public class ApplicationConfiguration
     this.mutualSSL = mutualSSL;
   }
 
+  /**
+   * Set the configuration for the task executors for the application.
+   *
+   * @param taskExecutors the configuration for the task executors for the application
+   */
+  public void setTaskExecutors(TaskExecutorsConfiguration taskExecutors)
+  {
+    this.taskExecutors = taskExecutors;
+  }
+
   /**
    * The <code>CacheClusterConfiguration</code> class provides access to the distributed in-memory
    * cache cluster configuration.
@@ -918,6 +944,399 @@ public class ApplicationConfiguration
   }
 
 
+  /**
+   * The <code>TaskExecutorConfiguration</code> class provides access to the configuration for a
+   * bounded task executor associated with the application.
+   */
+  public static class TaskExecutorConfiguration
+  {
+    /**
+     * Should the core threads for the task executor time out and terminate when they are idle?
+     */
+    private boolean allowCoreThreadTimeOut;
+
+    /**
+     * The maximum number of seconds to wait for the queued and executing tasks to complete when
+     * the task executor is shutdown.
+     */
+    private int awaitTerminationSeconds = 30;
+
+    /**
+     * The number of threads to keep in the task executor even if they are idle.
+     */
+    private int corePoolSize;
+
+    /**
+     * The number of seconds that threads in excess of the core pool size, or all threads if core
+     * threads are allowed to time out, are kept alive when they are idle.
+     */
+    private int keepAliveSeconds = 60;
+
+    /**
+     * The maximum number of threads for the task executor.
+     */
+    private int maxPoolSize;
+
+    /**
+     * The maximum number of tasks that can be queued waiting for a thread to become available.
+     */
+    private int queueCapacity;
+
+    /**
+     * The policy applied to the tasks submitted when both the threads and the queue for the task
+     * executor are saturated.
+     */
+    private ApplicationTaskExecutor.RejectionPolicy rejectionPolicy;
+
+    /**
+     * Constructs a new <code>TaskExecutorConfiguration</code>.
+     */
+    public TaskExecutorConfiguration() {}
+
+    /**
+     * Constructs a new <code>TaskExecutorConfiguration</code>.
+     *
+     * @param corePoolSize    the number of threads to keep in the task executor even if they are
+     *                        idle
+     * @param maxPoolSize     the maximum number of threads for the task executor
+     * @param queueCapacity   the maximum number of tasks that can be queued waiting for a thread
+     *                        to become available
+     * @param rejectionPolicy the policy applied to the tasks submitted when both the threads and
+     *                        the queue for the task executor are saturated
+     */
+    public TaskExecutorConfiguration(int corePoolSize, int maxPoolSize, int queueCapacity,
+        ApplicationTaskExecutor.RejectionPolicy rejectionPolicy)
+    {
+      this.corePoolSize = corePoolSize;
+      this.maxPoolSize = maxPoolSize;
+      this.queueCapacity = queueCapacity;
+      this.rejectionPolicy = rejectionPolicy;
+    }
+
+    /**
+     * Returns whether the core threads for the task executor time out and terminate when they are
+     * idle.
+     *
+     * @return <code>true</code> if the core threads for the task executor time out and terminate
+     *         when they are idle or <code>false</code> otherwise
+     */
+    public boolean getAllowCoreThreadTimeOut()
+    {
+      return allowCoreThreadTimeOut;
+    }
+
+    /**
+     * Returns the maximum number of seconds to wait for the queued and executing tasks to complete
+     * when the task executor is shutdown.
+     *
+     * @return the maximum number of seconds to wait for the queued and executing tasks to complete
+     *         when the task executor is shutdown
+     */
+    public int getAwaitTerminationSeconds()
+    {
+      return awaitTerminationSeconds;
+    }
+
+    /**
+     * Returns the number of threads to keep in the task executor even if they are idle.
+     *
+     * @return the number of threads to keep in the task executor even if they are idle
+     */
+    public int getCorePoolSize()
+    {
+      return corePoolSize;
+    }
+
+    /**
+     * Returns the number of seconds that threads in excess of the core pool size, or all threads
+     * if core threads are allowed to time out, are kept alive when they are idle.
+     *
+     * @return the number of seconds that threads in excess of the core pool size, or all threads
+     *         if core threads are allowed to time out, are kept alive when they are idle
+     */
+    public int getKeepAliveSeconds()
+    {
+      return keepAliveSeconds;
+    }
+
+    /**
+     * Returns the maximum number of threads for the task executor.
+     *
+     * @return the maximum number of threads for the task executor
+     */
+    public int getMaxPoolSize()
+    {
+      return maxPoolSize;
+    }
+
+    /**
+     * Returns the maximum number of tasks that can be queued waiting for a thread to become
+     * available.
+     *
+     * @return the maximum number of tasks that can be queued waiting for a thread to become
+     *         available
+     */
+    public int getQueueCapacity()
+    {
+      return queueCapacity;
+    }
+
+    /**
+     * Returns the policy applied to the tasks submitted when both the threads and the queue for
+     * the task executor are saturated.
+     *
+     * @return the policy applied to the tasks submitted when both the threads and the queue for
+     *         the task executor are saturated
+     */
+    public ApplicationTaskExecutor.RejectionPolicy getRejectionPolicy()
+    {
+      return rejectionPolicy;
+    }
+
+    /**
+     * Set whether the core threads for the task executor time out and terminate when they are
+     * idle.
+     *
+     * @param allowCoreThreadTimeOut <code>true</code> if the core threads for the task executor
+     *                               time out and terminate when they are idle or
+     *                               <code>false</code> otherwise
+     */
+    public void setAllowCoreThreadTimeOut(boolean allowCoreThreadTimeOut)
+    {
+      this.allowCoreThreadTimeOut = allowCoreThreadTimeOut;
+    }
+
+    /**
+     * Set the maximum number of seconds to wait for the queued and executing tasks to complete
+     * when the task executor is shutdown.
+     *
+     * @param awaitTerminationSeconds the maximum number of seconds to wait for the queued and
+     *                                executing tasks to complete when the task executor is
+     *                                shutdown
+     */
+    public void setAwaitTerminationSeconds(int awaitTerminationSeconds)
+    {
+      this.awaitTerminationSeconds = awaitTerminationSeconds;
+    }
+
+    /**
+     * Set the number of threads to keep in the task executor even if they are idle.
+     *
+     * @param corePoolSize the number of threads to keep in the task executor even if they are idle
+     */
+    public void setCorePoolSize(int corePoolSize)
+    {
+      this.corePoolSize = corePoolSize;
+    }
+
+    /**
+     * Set the number of seconds that threads in excess of the core pool size, or all threads if
+     * core threads are allowed to time out, are kept alive when they are idle.
+     *
+     * @param keepAliveSeconds the number of seconds that threads in excess of the core pool size,
+     *                         or all threads if core threads are allowed to time out, are kept
+     *                         alive when they are idle
+     */
+    public void setKeepAliveSeconds(int keepAliveSeconds)
+    {
+      this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    /**
+     * Set the maximum number of threads for the task executor.
+     *
+     * @param maxPoolSize the maximum number of threads for the task executor
+     */
+    public void setMaxPoolSize(int maxPoolSize)
+    {
+      this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Set the maximum number of tasks that can be queued waiting for a thread to become available.
+     *
+     * @param queueCapacity the maximum number of tasks that can be queued waiting for a thread to
+     *                      become available
+     */
+    public void setQueueCapacity(int queueCapacity)
+    {
+      this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Set the policy applied to the tasks submitted when both the threads and the queue for the
+     * task executor are saturated.
+     *
+     * @param rejectionPolicy the policy applied to the tasks submitted when both the threads and
+     *                        the queue for the task executor are saturated
+     */
+    public void setRejectionPolicy(ApplicationTaskExecutor.RejectionPolicy rejectionPolicy)
+    {
+      this.rejectionPolicy = rejectionPolicy;
+    }
+  }
+
+
+  /**
+   * The <code>TaskExecutorsConfiguration</code> class provides access to the configuration for
+   * the bounded task executors associated with the application.
+   * <p/>
+   * A separate task executor is used for each purpose so that a burst of work for one purpose,
+   * e.g. sending SMSs, cannot starve the threads used for another purpose, e.g. executing
+   * scheduled jobs.
+   */
+  public static class TaskExecutorsConfiguration
+  {
+    /**
+     * The configuration for the default task executor used for @Async method invocations that do
+     * not specify a task executor.
+     */
+    private TaskExecutorConfiguration general = new TaskExecutorConfiguration(2, 8, 100,
+        ApplicationTaskExecutor.RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * The configuration for the task executor used by the messaging infrastructure.
+     */
+    private TaskExecutorConfiguration messaging = new TaskExecutorConfiguration(2, 2, 1000,
+        ApplicationTaskExecutor.RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * The configuration for the task executor used to execute report jobs.
+     */
+    private TaskExecutorConfiguration reporting = new TaskExecutorConfiguration(4, 4, 200,
+        ApplicationTaskExecutor.RejectionPolicy.ABORT);
+
+    /**
+     * The configuration for the task executor used to execute scheduled jobs.
+     */
+    private TaskExecutorConfiguration scheduler = new TaskExecutorConfiguration(10, 10, 100,
+        ApplicationTaskExecutor.RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * The configuration for the task executor used to send SMSs.
+     * <p/>
+     * A single queued task sends all the SMSs queued for sending, so additional requests to send
+     * SMSs are discarded while a task is already queued.
+     */
+    private TaskExecutorConfiguration sms = new TaskExecutorConfiguration(1, 1, 1,
+        ApplicationTaskExecutor.RejectionPolicy.DISCARD);
+
+    /**
+     * Constructs a new <code>TaskExecutorsConfiguration</code>.
+     */
+    public TaskExecutorsConfiguration()
+    {
+      scheduler.setAllowCoreThreadTimeOut(true);
+      scheduler.setKeepAliveSeconds(300);
+    }
+
+    /**
+     * Returns the configuration for the default task executor used for @Async method invocations
+     * that do not specify a task executor.
+     *
+     * @return the configuration for the default task executor used for @Async method invocations
+     *         that do not specify a task executor
+     */
+    public TaskExecutorConfiguration getGeneral()
+    {
+      return general;
+    }
+
+    /**
+     * Returns the configuration for the task executor used by the messaging infrastructure.
+     *
+     * @return the configuration for the task executor used by the messaging infrastructure
+     */
+    public TaskExecutorConfiguration getMessaging()
+    {
+      return messaging;
+    }
+
+    /**
+     * Returns the configuration for the task executor used to execute report jobs.
+     *
+     * @return the configuration for the task executor used to execute report jobs
+     */
+    public TaskExecutorConfiguration getReporting()
+    {
+      return reporting;
+    }
+
+    /**
+     * Returns the configuration for the task executor used to execute scheduled jobs.
+     *
+     * @return the configuration for the task executor used to execute scheduled jobs
+     */
+    public TaskExecutorConfiguration getScheduler()
+    {
+      return scheduler;
+    }
+
+    /**
+     * Returns the configuration for the task executor used to send SMSs.
+     *
+     * @return the configuration for the task executor used to send SMSs
+     */
+    public TaskExecutorConfiguration getSms()
+    {
+      return sms;
+    }
+
+    /**
+     * Set the configuration for the default task executor used for @Async method invocations that
+     * do not specify a task executor.
+     *
+     * @param general the configuration for the default task executor used for @Async method
+     *                invocations that do not specify a task executor
+     */
+    public void setGeneral(TaskExecutorConfiguration general)
+    {
+      this.general = general;
+    }
+
+    /**
+     * Set the configuration for the task executor used by the messaging infrastructure.
+     *
+     * @param messaging the configuration for the task executor used by the messaging
+     *                  infrastructure
+     */
+    public void setMessaging(TaskExecutorConfiguration messaging)
+    {
+      this.messaging = messaging;
+    }
+
+    /**
+     * Set the configuration for the task executor used to execute report jobs.
+     *
+     * @param reporting the configuration for the task executor used to execute report jobs
+     */
+    public void setReporting(TaskExecutorConfiguration reporting)
+    {
+      this.reporting = reporting;
+    }
+
+    /**
+     * Set the configuration for the task executor used to execute scheduled jobs.
+     *
+     * @param scheduler the configuration for the task executor used to execute scheduled jobs
+     */
+    public void setScheduler(TaskExecutorConfiguration scheduler)
+    {
+      this.scheduler = scheduler;
+    }
+
+    /**
+     * Set the configuration for the task executor used to send SMSs.
+     *
+     * @param sms the configuration for the task executor used to send SMSs
+     */
+    public void setSms(TaskExecutorConfiguration sms)
+    {
+      this.sms = sms;
+    }
+  }
+
+
   /**
    * The <code>TrustStoreConfiguration</code> class provides access to configuration for a trust
    * store associated with the application.
@@ -20,6 +20,8 @@ package guru.mmp.application.codes;
 
 import guru.mmp.application.persistence.IDGenerator;
 import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.DAOUtil;
+import guru.mmp.common.persistence.SortDirection;
 import guru.mmp.common.util.StringUtil;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
@@ -657,6 +659,63 @@ public class CodesDAO
     }
   }
 
+  /**
+   * Returns a page of the codes for the code category.
+   *
+   * @param id            the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      code category
+   * @param sortBy        the attribute used to sort the codes
+   * @param sortDirection the direction used to sort the codes
+   * @param offset        the number of codes to skip
+   * @param limit         the maximum number of codes to retrieve or -1 to retrieve all the
+   *                      remaining codes
+   *
+   * @return the page of codes for the code category
+   */
+  @Transactional
+  public List<Code> getCodesForCodeCategory(UUID id, CodeSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws DAOException
+  {
+    try (Connection connection = dataSource.getConnection())
+    {
+      return getCodesForCodeCategory(connection, id, null, sortBy, sortDirection, offset, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the codes for the code category (%s) from the database", id), e);
+    }
+  }
+
+  /**
+   * Returns the page of codes for the code category, sorted by name, that follows the specified
+   * code.
+   *
+   * @param id    the Universally Unique Identifier (UUID) used to uniquely identify the code
+   *              category
+   * @param code  the last code on the previous page or <code>null</code> to retrieve the first
+   *              page
+   * @param limit the maximum number of codes to retrieve
+   *
+   * @return the page of codes for the code category
+   */
+  @Transactional
+  public List<Code> getCodesForCodeCategoryAfter(UUID id, Code code, int limit)
+    throws DAOException
+  {
+    try (Connection connection = dataSource.getConnection())
+    {
+      return getCodesForCodeCategory(connection, id, code, CodeSortBy.NAME,
+          SortDirection.ASCENDING, 0, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the codes for the code category (%s) from the database", id), e);
+    }
+  }
+
   /**
    * Returns the number of code categories.
    *
@@ -986,24 +1045,60 @@ public class CodesDAO
   private List<Code> getCodesForCodeCategory(Connection connection, UUID id)
     throws SQLException
   {
-    String getCodesForCodeCategorySQL = "SELECT C.ID, C.CATEGORY_ID, C.NAME, C.VALUE FROM "
-        + "CODES.CODES C WHERE C.CATEGORY_ID=? ORDER BY C.NAME";
+    return getCodesForCodeCategory(connection, id, null, CodeSortBy.NAME,
+        SortDirection.ASCENDING, 0, -1);
+  }
 
-    try (PreparedStatement statement = connection.prepareStatement(getCodesForCodeCategorySQL))
+  private List<Code> getCodesForCodeCategory(Connection connection, UUID id, Code after,
+      CodeSortBy sortBy, SortDirection sortDirection, int offset, int limit)
+    throws SQLException
+  {
+    List<Code> codes = new ArrayList<>();
+
+    if (limit == 0)
+    {
+      return codes;
+    }
+
+    StringBuilder buffer = new StringBuilder("SELECT C.ID, C.CATEGORY_ID, C.NAME, C.VALUE FROM "
+        + "CODES.CODES C WHERE C.CATEGORY_ID=?");
+
+    if (after != null)
+    {
+      buffer.append(" AND ((C.NAME > ?) OR ((C.NAME = ?) AND (C.ID > ?)))");
+    }
+
+    // Sort by ID within the sort attribute so the order of the pages is deterministic
+    buffer.append(" ORDER BY C.").append(sortBy.column()).append(" ").append(
+        sortDirection.sql());
+
+    if (sortBy != CodeSortBy.ID)
+    {
+      buffer.append(", C.ID ").append(sortDirection.sql());
+    }
+
+    buffer.append(DAOUtil.getPagingClause(offset, limit));
+
+    try (PreparedStatement statement = connection.prepareStatement(buffer.toString()))
     {
       statement.setObject(1, id);
 
-      try (ResultSet rs = statement.executeQuery())
+      if (after != null)
       {
-        List<Code> codes = new ArrayList<>();
+        statement.setString(2, after.getName());
+        statement.setString(3, after.getName());
+        statement.setString(4, after.getId());
+      }
 
+      try (ResultSet rs = statement.executeQuery())
+      {
         while (rs.next())
         {
           codes.add(getCode(rs));
         }
-
-        return codes;
       }
     }
+
+    return codes;
   }
 }
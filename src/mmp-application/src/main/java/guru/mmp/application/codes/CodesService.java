@@ -18,6 +18,8 @@ package guru.mmp.application.codes;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.SortDirection;
 import guru.mmp.common.xml.DtdJarResolver;
 import guru.mmp.common.xml.XmlParserErrorHandler;
 import guru.mmp.common.xml.XmlUtils;
@@ -25,6 +27,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.InputSource;
@@ -35,10 +39,14 @@ import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.ws.BindingProvider;
+import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.net.URL;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -52,6 +60,18 @@ import java.util.stream.Collectors;
 public class CodesService
   implements ICodesService
 {
+  /**
+   * The name of the optional Spring bean for the distributed in-memory cache, provided by the
+   * mmp-application-cache module, that should be used to cache the code categories.
+   */
+  public static final String CODE_CATEGORY_CACHE_BEAN_NAME = "codeCategoryCache";
+
+  /**
+   * The default time to live in milliseconds for the code categories in the code category cache
+   * local to this application instance.
+   */
+  public static final long DEFAULT_LOCAL_CODE_CATEGORY_CACHE_TIME_TO_LIVE = 300000L;
+
   /**
    * The path to the code provider configuration files (META-INF/CodeProviders.xml) on the
    * classpath.
@@ -76,6 +96,39 @@ public class CodesService
    */
   private List<CodeProviderConfig> codeProviderConfigs;
 
+  /**
+   * The cache of code categories, including the codes for local standard code categories, which
+   * is either local to this application instance or shared through the distributed in-memory
+   * cache with the name given by <code>CODE_CATEGORY_CACHE_BEAN_NAME</code>.
+   */
+  private Map<UUID, CodeCategoryCacheEntry> codeCategoryCache;
+
+  /**
+   * The version of the code category cache, which is incremented whenever a code category is
+   * invalidated so that a load that overlaps with the invalidation does not cache stale data.
+   * <p/>
+   * The version is local to this application instance. When the distributed in-memory cache is
+   * used it only guards against invalidations made on this instance, so a load on one instance
+   * that overlaps with an invalidation on another may still cache stale data until the code
+   * category is next invalidated.
+   */
+  private AtomicLong codeCategoryCacheVersion = new AtomicLong();
+
+  /**
+   * Is the code category cache local to this application instance?
+   */
+  private boolean isCodeCategoryCacheLocal;
+
+  /**
+   * The time to live in milliseconds for the code categories in the code category cache local to
+   * this application instance.
+   * <p/>
+   * Changes made on other application instances do not invalidate the local cache, so this
+   * limits how long this instance may return a stale code category.
+   */
+  private volatile long localCodeCategoryCacheTimeToLive =
+      DEFAULT_LOCAL_CODE_CATEGORY_CACHE_TIME_TO_LIVE;
+
   /* Codes DAO */
   @Inject
   private ICodesDAO codesDAO;
@@ -179,6 +232,8 @@ public class CodesService
     try
     {
       codesDAO.createCode(code);
+
+      invalidateCodeCategory(code.getCategoryId());
     }
     catch (Throwable e)
     {
@@ -241,6 +296,8 @@ public class CodesService
     try
     {
       codesDAO.deleteCode(codeCategoryId, id);
+
+      invalidateCodeCategory(codeCategoryId);
     }
     catch (Throwable e)
     {
@@ -260,6 +317,8 @@ public class CodesService
     try
     {
       codesDAO.deleteCodeCategory(id);
+
+      invalidateCodeCategory(id);
     }
     catch (Throwable e)
     {
@@ -358,20 +417,69 @@ public class CodesService
   {
     try
     {
-      CodeCategory codeCategory = codesDAO.getCodeCategory(id);
+      CodeCategoryCacheEntry cacheEntry = getCodeCategoryCacheEntry(id);
 
-      if (codeCategory != null)
+      if (cacheEntry == null)
       {
-        if (codeCategory.getCategoryType() == CodeCategoryType.LOCAL_STANDARD)
-        {
-          if (retrieveCodes)
-          {
-            codeCategory.setCodes(getCodesForCodeCategory(id));
-          }
-        }
+        return null;
       }
 
-      return codeCategory;
+      return copyCodeCategory(cacheEntry.codeCategory, retrieveCodes, true);
+    }
+    catch (Throwable e)
+    {
+      throw new CodesServiceException(String.format("Failed to retrieve the code category (%s)",
+          id), e);
+    }
+  }
+
+  /**
+   * Retrieve the code category taking into account when it was last retrieved.
+   * <p/>
+   * If the local code category has not changed since it was last retrieved, and
+   * <code>returnCodesIfCurrent</code> is <code>false</code>, the code category is returned without
+   * its <b>Standard</b> codes and/or <b>Custom</b> code data.
+   *
+   * @param id                   the Universally Unique Identifier (UUID) used to uniquely identify
+   *                             the code category
+   * @param lastRetrieved        the date and time the code category was last retrieved
+   * @param returnCodesIfCurrent should the <b>Standard</b> codes and/or <b>Custom</b> code
+   *                             data be retrieved even if the code category has not been
+   *                             updated after the date and time specified by the
+   *                             <code>lastRetrieved</code> parameter
+   *
+   * @return the code category or <code>null</code> if the code category could not be found
+   */
+  public CodeCategory getCodeCategory(UUID id, LocalDateTime lastRetrieved,
+      boolean returnCodesIfCurrent)
+    throws CodesServiceException
+  {
+    try
+    {
+      CodeCategoryCacheEntry cacheEntry = getCodeCategoryCacheEntry(id);
+
+      if (cacheEntry == null)
+      {
+        return null;
+      }
+
+      CodeCategoryType categoryType = cacheEntry.codeCategory.getCategoryType();
+
+      /*
+       * The code category is current if it was last retrieved after it was cached, since every
+       * change to the code category or its codes removes it from the cache.
+       */
+      boolean isCurrent = (lastRetrieved != null) && cacheEntry.cached.isBefore(lastRetrieved);
+
+      if (isCurrent
+          && (!returnCodesIfCurrent)
+          && ((categoryType == CodeCategoryType.LOCAL_STANDARD)
+              || (categoryType == CodeCategoryType.LOCAL_CUSTOM)))
+      {
+        return copyCodeCategory(cacheEntry.codeCategory, false, false);
+      }
+
+      return copyCodeCategory(cacheEntry.codeCategory, true, true);
     }
     catch (Throwable e)
     {
@@ -502,6 +610,59 @@ public class CodesService
     }
   }
 
+  /**
+   * Returns a page of the codes for the code category.
+   *
+   * @param id            the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      code category
+   * @param sortBy        the attribute used to sort the codes
+   * @param sortDirection the direction used to sort the codes
+   * @param offset        the number of codes to skip
+   * @param limit         the maximum number of codes to retrieve
+   *
+   * @return the page of codes for the code category
+   */
+  public List<Code> getCodesForCodeCategory(UUID id, CodeSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws CodesServiceException
+  {
+    try
+    {
+      return codesDAO.getCodesForCodeCategory(id, sortBy, sortDirection, offset, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new CodesServiceException(String.format(
+          "Failed to retrieve the codes for the code category (%s)", id), e);
+    }
+  }
+
+  /**
+   * Returns the page of codes for the code category, sorted by name, that follows the specified
+   * code.
+   *
+   * @param id    the Universally Unique Identifier (UUID) used to uniquely identify the code
+   *              category
+   * @param code  the last code on the previous page or <code>null</code> to retrieve the first
+   *              page
+   * @param limit the maximum number of codes to retrieve
+   *
+   * @return the page of codes for the code category
+   */
+  public List<Code> getCodesForCodeCategoryAfter(UUID id, Code code, int limit)
+    throws CodesServiceException
+  {
+    try
+    {
+      return codesDAO.getCodesForCodeCategoryAfter(id, code, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new CodesServiceException(String.format(
+          "Failed to retrieve the codes for the code category (%s)", id), e);
+    }
+  }
+
   /**
    * Returns the number of code categories.
    *
@@ -678,6 +839,8 @@ public class CodesService
 
     codeProviders = new ArrayList<>();
 
+    initCodeCategoryCache();
+
     try
     {
       // Read the codes configuration
@@ -715,6 +878,19 @@ public class CodesService
     }
   }
 
+  /**
+   * Set the time to live in milliseconds for the code categories in the code category cache local
+   * to this application instance.
+   *
+   * @param localCodeCategoryCacheTimeToLive the time to live in milliseconds for the code
+   *                                         categories in the code category cache local to this
+   *                                         application instance
+   */
+  public void setLocalCodeCategoryCacheTimeToLive(long localCodeCategoryCacheTimeToLive)
+  {
+    this.localCodeCategoryCacheTimeToLive = localCodeCategoryCacheTimeToLive;
+  }
+
   /**
    * Update the existing code.
    *
@@ -727,7 +903,11 @@ public class CodesService
   {
     try
     {
-      return codesDAO.updateCode(code);
+      Code updatedCode = codesDAO.updateCode(code);
+
+      invalidateCodeCategory(code.getCategoryId());
+
+      return updatedCode;
     }
     catch (Throwable e)
     {
@@ -755,7 +935,11 @@ public class CodesService
         deleteCachedCodeCategory(codeCategory.getId());
       }
 
-      return codesDAO.updateCodeCategory(codeCategory);
+      CodeCategory updatedCodeCategory = codesDAO.updateCodeCategory(codeCategory);
+
+      invalidateCodeCategory(codeCategory.getId());
+
+      return updatedCodeCategory;
     }
     catch (Throwable e)
     {
@@ -803,6 +987,89 @@ public class CodesService
     }
   }
 
+  /**
+   * Returns a copy of the cached code category so that callers cannot modify the cached data.
+   *
+   * @param codeCategory    the cached code category
+   * @param includeCodes    include the <b>Standard</b> codes for the code category
+   * @param includeCodeData include the <b>Custom</b> code data for the code category
+   *
+   * @return the copy of the cached code category
+   */
+  private CodeCategory copyCodeCategory(CodeCategory codeCategory, boolean includeCodes,
+      boolean includeCodeData)
+  {
+    CodeCategory copy = new CodeCategory(codeCategory.getId(), codeCategory.getCategoryType(),
+        codeCategory.getName(), includeCodeData
+        ? codeCategory.getCodeData()
+        : null, codeCategory.getEndPoint(), codeCategory.getIsEndPointSecure(),
+        codeCategory.getIsCacheable(), codeCategory.getCacheExpiry(), codeCategory.getUpdated());
+
+    if (includeCodes && (codeCategory.getCodes() != null))
+    {
+      copy.setCodes(new ArrayList<>(codeCategory.getCodes()));
+    }
+
+    return copy;
+  }
+
+  /**
+   * Retrieve the cache entry for the code category, loading the code category and, for a local
+   * standard code category, its codes from the database if it has not been cached.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the code category
+   *
+   * @return the cache entry for the code category or <code>null</code> if the code category could
+   *         not be found
+   */
+  private CodeCategoryCacheEntry getCodeCategoryCacheEntry(UUID id)
+    throws DAOException
+  {
+    CodeCategoryCacheEntry cacheEntry = codeCategoryCache.get(id);
+
+    if (cacheEntry != null)
+    {
+      if ((!isCodeCategoryCacheLocal)
+          || cacheEntry.cached.plus(localCodeCategoryCacheTimeToLive, ChronoUnit.MILLIS).isAfter(
+          LocalDateTime.now()))
+      {
+        return cacheEntry;
+      }
+
+      // Remove the expired cache entry unless it has already been replaced by another thread
+      codeCategoryCache.remove(id, cacheEntry);
+    }
+
+    long version = codeCategoryCacheVersion.get();
+
+    // Record when the code category was cached before reading it so that it is never newer
+    LocalDateTime cached = LocalDateTime.now();
+
+    CodeCategory codeCategory = codesDAO.getCodeCategory(id);
+
+    if (codeCategory == null)
+    {
+      return null;
+    }
+
+    if (codeCategory.getCategoryType() == CodeCategoryType.LOCAL_STANDARD)
+    {
+      codeCategory.setCodes(codesDAO.getCodesForCodeCategory(id));
+    }
+
+    cacheEntry = new CodeCategoryCacheEntry(codeCategory, cached);
+
+    codeCategoryCache.put(id, cacheEntry);
+
+    // Discard the cache entry if a code category was invalidated while it was being loaded
+    if (codeCategoryCacheVersion.get() != version)
+    {
+      codeCategoryCache.remove(id);
+    }
+
+    return cacheEntry;
+  }
+
   private CodeCategory getRemoteWebServiceCodeCategory(CodeCategory codeCategory,
       LocalDateTime lastRetrieved, boolean returnCodesIfCurrent)
     throws CodesServiceException
@@ -904,6 +1171,38 @@ public class CodesService
     }
   }
 
+  /**
+   * Initialise the code category cache.
+   * <p/>
+   * If the distributed in-memory cache with the name given by
+   * <code>CODE_CATEGORY_CACHE_BEAN_NAME</code> has been configured then it is used so that changes
+   * made on one application instance are visible on all the others, otherwise a cache local to
+   * this application instance is used.
+   */
+  @SuppressWarnings("unchecked")
+  private void initCodeCategoryCache()
+  {
+    if ((applicationContext != null)
+        && applicationContext.containsBean(CODE_CATEGORY_CACHE_BEAN_NAME))
+    {
+      Object cache = applicationContext.getBean(CODE_CATEGORY_CACHE_BEAN_NAME);
+
+      if (cache instanceof Map)
+      {
+        logger.info("Using the distributed in-memory cache (" + CODE_CATEGORY_CACHE_BEAN_NAME
+            + ") to cache the code categories");
+
+        codeCategoryCache = (Map<UUID, CodeCategoryCacheEntry>) cache;
+        isCodeCategoryCacheLocal = false;
+
+        return;
+      }
+    }
+
+    codeCategoryCache = new ConcurrentHashMap<>();
+    isCodeCategoryCacheLocal = true;
+  }
+
   /**
    * Initialise the code providers.
    */
@@ -948,6 +1247,40 @@ public class CodesService
     }
   }
 
+  /**
+   * Remove the code category from the code category cache.
+   * <p/>
+   * If the code category was changed as part of a transaction then it is only removed once the
+   * transaction commits, so that another thread cannot cache the code category as it was before
+   * the change in the meantime.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the code category
+   *           or <code>null</code> to remove all the code categories
+   */
+  private void invalidateCodeCategory(UUID id)
+  {
+    if ((!TransactionSynchronizationManager.isSynchronizationActive())
+        || (!TransactionSynchronizationManager.isActualTransactionActive()))
+    {
+      removeCodeCategory(id);
+
+      return;
+    }
+
+    TransactionChanges transactionChanges =
+        (TransactionChanges) TransactionSynchronizationManager.getResource(this);
+
+    if (transactionChanges == null)
+    {
+      transactionChanges = new TransactionChanges();
+
+      TransactionSynchronizationManager.bindResource(this, transactionChanges);
+      TransactionSynchronizationManager.registerSynchronization(transactionChanges);
+    }
+
+    transactionChanges.codeCategoryIds.add(id);
+  }
+
   /**
    * Read the code provider configurations from all the <i>META-INF/CodeProviders.xml</i>
    * configuration files that can be found on the classpath.
@@ -1011,4 +1344,98 @@ public class CodesService
       throw new CodesServiceException("Failed to read the code provider configuration files", e);
     }
   }
+
+  /**
+   * Remove the code category from the code category cache immediately.
+   *
+   * @param id the Universally Unique Identifier (UUID) used to uniquely identify the code category
+   *           or <code>null</code> to remove all the code categories
+   */
+  private void removeCodeCategory(UUID id)
+  {
+    codeCategoryCacheVersion.incrementAndGet();
+
+    if (id != null)
+    {
+      codeCategoryCache.remove(id);
+    }
+    else
+    {
+      codeCategoryCache.clear();
+    }
+  }
+
+  /**
+   * The <code>CodeCategoryCacheEntry</code> class holds a code category in the code category
+   * cache along with the date and time it was cached.
+   */
+  private static class CodeCategoryCacheEntry
+    implements Serializable
+  {
+    private static final long serialVersionUID = 1000000;
+
+    /**
+     * The date and time the code category was cached.
+     */
+    private LocalDateTime cached;
+
+    /**
+     * The code category.
+     */
+    private CodeCategory codeCategory;
+
+    /**
+     * Constructs a new <code>CodeCategoryCacheEntry</code>.
+     *
+     * @param codeCategory the code category
+     * @param cached       the date and time the code category was cached
+     */
+    CodeCategoryCacheEntry(CodeCategory codeCategory, LocalDateTime cached)
+    {
+      this.codeCategory = codeCategory;
+      this.cached = cached;
+    }
+  }
+
+  /**
+   * The <code>TransactionChanges</code> class holds the code categories that have been changed as
+   * part of a transaction and removes them from the code category cache when the transaction
+   * commits.
+   */
+  private class TransactionChanges extends TransactionSynchronizationAdapter
+  {
+    /**
+     * The Universally Unique Identifiers (UUIDs) used to uniquely identify the code categories
+     * that have been changed, including <code>null</code> if all the code categories should be
+     * removed.
+     */
+    private Set<UUID> codeCategoryIds = new LinkedHashSet<>();
+
+    @Override
+    public void afterCommit()
+    {
+      for (UUID codeCategoryId : codeCategoryIds)
+      {
+        removeCodeCategory(codeCategoryId);
+      }
+    }
+
+    @Override
+    public void afterCompletion(int status)
+    {
+      TransactionSynchronizationManager.unbindResourceIfPossible(CodesService.this);
+    }
+
+    @Override
+    public void resume()
+    {
+      TransactionSynchronizationManager.bindResource(CodesService.this, this);
+    }
+
+    @Override
+    public void suspend()
+    {
+      TransactionSynchronizationManager.unbindResourceIfPossible(CodesService.this);
+    }
+  }
 }
@@ -19,6 +19,7 @@ package guru.mmp.application.codes;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.SortDirection;
 
 import java.util.List;
 import java.util.UUID;
@@ -179,6 +180,38 @@ public interface ICodesDAO
   List<Code> getCodesForCodeCategory(UUID id)
     throws DAOException;
 
+  /**
+   * Returns a page of the codes for the code category.
+   *
+   * @param id            the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      code category
+   * @param sortBy        the attribute used to sort the codes
+   * @param sortDirection the direction used to sort the codes
+   * @param offset        the number of codes to skip
+   * @param limit         the maximum number of codes to retrieve or -1 to retrieve all the
+   *                      remaining codes
+   *
+   * @return the page of codes for the code category
+   */
+  List<Code> getCodesForCodeCategory(UUID id, CodeSortBy sortBy, SortDirection sortDirection,
+      int offset, int limit)
+    throws DAOException;
+
+  /**
+   * Returns the page of codes for the code category, sorted by name, that follows the specified
+   * code.
+   *
+   * @param id    the Universally Unique Identifier (UUID) used to uniquely identify the code
+   *              category
+   * @param code  the last code on the previous page or <code>null</code> to retrieve the first
+   *              page
+   * @param limit the maximum number of codes to retrieve
+   *
+   * @return the page of codes for the code category
+   */
+  List<Code> getCodesForCodeCategoryAfter(UUID id, Code code, int limit)
+    throws DAOException;
+
   /**
    * Returns the number of code categories.
    *
@@ -16,6 +16,10 @@
 
 package guru.mmp.application.codes;
 
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.persistence.SortDirection;
+
 //~--- JDK imports ------------------------------------------------------------
 
 import java.time.LocalDateTime;
@@ -160,6 +164,26 @@ public interface ICodesService
   CodeCategory getCodeCategory(UUID id, boolean retrieveCodes)
     throws CodesServiceException;
 
+  /**
+   * Retrieve the code category taking into account when it was last retrieved.
+   * <p/>
+   * If the local code category has not changed since it was last retrieved, and
+   * <code>returnCodesIfCurrent</code> is <code>false</code>, the code category is returned without
+   * its <b>Standard</b> codes and/or <b>Custom</b> code data.
+   *
+   * @param id                   the Universally Unique Identifier (UUID) used to uniquely identify
+   *                             the code category
+   * @param lastRetrieved        the date and time the code category was last retrieved
+   * @param returnCodesIfCurrent should the <b>Standard</b> codes and/or <b>Custom</b> code
+   *                             data be retrieved even if the code category has not been
+   *                             updated after the date and time specified by the
+   *                             <code>lastRetrieved</code> parameter
+   *
+   * @return the code category or <code>null</code> if the code category could not be found
+   */
+  CodeCategory getCodeCategory(UUID id, LocalDateTime lastRetrieved, boolean returnCodesIfCurrent)
+    throws CodesServiceException;
+
   /**
    * Retrieve the code category using the specified parameters.
    *
@@ -223,6 +247,37 @@ public interface ICodesService
   List<Code> getCodesForCodeCategory(UUID id)
     throws CodesServiceException;
 
+  /**
+   * Returns a page of the codes for the code category.
+   *
+   * @param id            the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                      code category
+   * @param sortBy        the attribute used to sort the codes
+   * @param sortDirection the direction used to sort the codes
+   * @param offset        the number of codes to skip
+   * @param limit         the maximum number of codes to retrieve
+   *
+   * @return the page of codes for the code category
+   */
+  List<Code> getCodesForCodeCategory(UUID id, CodeSortBy sortBy, SortDirection sortDirection,
+      int offset, int limit)
+    throws CodesServiceException;
+
+  /**
+   * Returns the page of codes for the code category, sorted by name, that follows the specified
+   * code.
+   *
+   * @param id    the Universally Unique Identifier (UUID) used to uniquely identify the code
+   *              category
+   * @param code  the last code on the previous page or <code>null</code> to retrieve the first
+   *              page
+   * @param limit the maximum number of codes to retrieve
+   *
+   * @return the page of codes for the code category
+   */
+  List<Code> getCodesForCodeCategoryAfter(UUID id, Code code, int limit)
+    throws CodesServiceException;
+
   /**
    * Returns the number of code categories.
    *
@@ -19,6 +19,8 @@ package guru.mmp.application.configuration;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.DAOUtil;
+import guru.mmp.common.persistence.SortDirection;
 import guru.mmp.common.util.Base64;
 import guru.mmp.common.util.StringUtil;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -159,33 +161,29 @@ public class ConfigurationDAO
   public List<ConfigurationValue> getFilteredConfigurationValues(String filter)
     throws DAOException
   {
-    String getConfigurationValuesSQL = "SELECT C.\"KEY\", C.VALUE, C.DESCRIPTION FROM "
-        + "CONFIGURATION.CONFIGURATION C ORDER BY C.\"KEY\"";
-
-    String getFilteredConfigurationValuesSQL = "SELECT C.\"KEY\", C.VALUE, C.DESCRIPTION FROM "
-        + "CONFIGURATION.CONFIGURATION C WHERE (UPPER(C.\"KEY\") LIKE ?) ORDER BY C.\"KEY\"";
+    return getFilteredConfigurationValues(filter, ConfigurationValueSortBy.KEY,
+        SortDirection.ASCENDING, 0, -1);
+  }
 
-    try (Connection connection = dataSource.getConnection();
-      PreparedStatement statement = connection.prepareStatement(StringUtil.isNullOrEmpty(filter)
-          ? getConfigurationValuesSQL
-          : getFilteredConfigurationValuesSQL))
+  /**
+   * Retrieve a page of the filtered configuration values.
+   *
+   * @param filter        the filter to apply to the keys for the configuration values
+   * @param sortBy        the attribute used to sort the configuration values
+   * @param sortDirection the direction used to sort the configuration values
+   * @param offset        the number of filtered configuration values to skip
+   * @param limit         the maximum number of filtered configuration values to retrieve or -1
+   *                      to retrieve all the remaining filtered configuration values
+   *
+   * @return the page of filtered configuration values
+   */
+  public List<ConfigurationValue> getFilteredConfigurationValues(String filter,
+      ConfigurationValueSortBy sortBy, SortDirection sortDirection, int offset, int limit)
+    throws DAOException
+  {
+    try
     {
-      if (!StringUtil.isNullOrEmpty(filter))
-      {
-        statement.setString(1, "%" + filter.toUpperCase() + "%");
-      }
-
-      try (ResultSet rs = statement.executeQuery())
-      {
-        List<ConfigurationValue> list = new ArrayList<>();
-
-        while (rs.next())
-        {
-          list.add(new ConfigurationValue(rs.getString(1), rs.getString(2), rs.getString(3)));
-        }
-
-        return list;
-      }
+      return getFilteredConfigurationValues(filter, null, sortBy, sortDirection, offset, limit);
     }
     catch (Throwable e)
     {
@@ -195,6 +193,34 @@ public class ConfigurationDAO
     }
   }
 
+  /**
+   * Retrieve the page of filtered configuration values, sorted by key, that follows the
+   * configuration value with the specified key.
+   *
+   * @param filter the filter to apply to the keys for the configuration values
+   * @param key    the key for the last configuration value on the previous page or
+   *               <code>null</code> to retrieve the first page
+   * @param limit  the maximum number of filtered configuration values to retrieve
+   *
+   * @return the page of filtered configuration values
+   */
+  public List<ConfigurationValue> getFilteredConfigurationValuesAfter(String filter, String key,
+      int limit)
+    throws DAOException
+  {
+    try
+    {
+      return getFilteredConfigurationValues(filter, key, ConfigurationValueSortBy.KEY,
+          SortDirection.ASCENDING, 0, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException(String.format(
+          "Failed to retrieve the configuration values matching the filter (%s) after the key "
+          + "(%s) from the database", filter, key), e);
+    }
+  }
+
   /**
    * Retrieve the <code>Integer</code> configuration value.
    *
@@ -346,6 +372,32 @@ public class ConfigurationDAO
     }
   }
 
+  /**
+   * Retrieve the version of the configuration values, which is incremented each time a
+   * configuration value is set or removed.
+   *
+   * @return the version of the configuration values
+   */
+  public long getVersion()
+    throws DAOException
+  {
+    String getVersionSQL = "SELECT MAX(CV.VERSION) FROM CONFIGURATION.CONFIGURATION_VERSION CV";
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(getVersionSQL);
+      ResultSet rs = statement.executeQuery())
+    {
+      return rs.next()
+          ? rs.getLong(1)
+          : 0;
+    }
+    catch (Throwable e)
+    {
+      throw new DAOException("Failed to retrieve the version of the configuration values from the "
+          + "database", e);
+    }
+  }
+
   /**
    * Check if a configuration value with the specified key exists.
    *
@@ -389,6 +441,8 @@ public class ConfigurationDAO
             "No rows were affected as a result of executing the SQL statement (%s)",
             removeValueSQL));
       }
+
+      incrementVersion(connection);
     }
     catch (Throwable e)
     {
@@ -447,6 +501,8 @@ public class ConfigurationDAO
       {
         createValue(connection, key, stringValue, description);
       }
+
+      incrementVersion(connection);
     }
     catch (Throwable e)
     {
@@ -487,6 +543,92 @@ public class ConfigurationDAO
     }
   }
 
+  private List<ConfigurationValue> getFilteredConfigurationValues(String filter,
+      String afterKey, ConfigurationValueSortBy sortBy, SortDirection sortDirection, int offset,
+      int limit)
+    throws SQLException
+  {
+    List<ConfigurationValue> list = new ArrayList<>();
+
+    if (limit == 0)
+    {
+      return list;
+    }
+
+    StringBuilder buffer = new StringBuilder("SELECT C.\"KEY\", C.VALUE, C.DESCRIPTION FROM "
+        + "CONFIGURATION.CONFIGURATION C WHERE (1=1)");
+
+    if (!StringUtil.isNullOrEmpty(filter))
+    {
+      buffer.append(" AND (UPPER(C.\"KEY\") LIKE ?)");
+    }
+
+    if (afterKey != null)
+    {
+      buffer.append(" AND (C.\"KEY\" > ?)");
+    }
+
+    // Sort by key within the sort attribute so the order of the pages is deterministic
+    buffer.append(" ORDER BY C.").append(sortBy.column()).append(" ").append(
+        sortDirection.sql());
+
+    if (sortBy != ConfigurationValueSortBy.KEY)
+    {
+      buffer.append(", C.\"KEY\" ").append(sortDirection.sql());
+    }
+
+    buffer.append(DAOUtil.getPagingClause(offset, limit));
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(buffer.toString()))
+    {
+      int parameterIndex = 1;
+
+      if (!StringUtil.isNullOrEmpty(filter))
+      {
+        statement.setString(parameterIndex++, "%" + filter.toUpperCase() + "%");
+      }
+
+      if (afterKey != null)
+      {
+        statement.setString(parameterIndex, afterKey);
+      }
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        while (rs.next())
+        {
+          list.add(new ConfigurationValue(rs.getString(1), rs.getString(2), rs.getString(3)));
+        }
+      }
+    }
+
+    return list;
+  }
+
+  private void incrementVersion(Connection connection)
+    throws SQLException
+  {
+    String incrementVersionSQL =
+        "UPDATE CONFIGURATION.CONFIGURATION_VERSION SET VERSION = VERSION + 1";
+
+    String createVersionSQL =
+        "INSERT INTO CONFIGURATION.CONFIGURATION_VERSION (VERSION) VALUES (1)";
+
+    try (PreparedStatement statement = connection.prepareStatement(incrementVersionSQL))
+    {
+      if (statement.executeUpdate() > 0)
+      {
+        return;
+      }
+    }
+
+    try (PreparedStatement statement = connection.prepareStatement(createVersionSQL))
+    {
+      statement.executeUpdate();
+    }
+  }
+
   private boolean keyExists(Connection connection, String key)
     throws SQLException
   {
@@ -18,15 +18,34 @@ package guru.mmp.application.configuration;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.SortDirection;
+import guru.mmp.common.util.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.inject.Inject;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 //~--- JDK imports ------------------------------------------------------------
 
 /**
  * The <code>ConfigurationService</code> class provides the Configuration Service implementation.
+ * <p/>
+ * The configuration values are loaded into an in-memory snapshot the first time they are
+ * retrieved and are then read from the snapshot instead of the database. The snapshot is updated
+ * when a configuration value is set or removed using this service, and is reloaded when the
+ * version of the configuration values in the database shows that they have been changed by
+ * another application instance. The registered listeners are notified of every change to the
+ * snapshot.
+ * <p/>
+ * Configuration values that are set or removed as part of a transaction are only visible to the
+ * transaction until it commits, after which they are published to the snapshot.
  *
  * @author Marcus Portmann
  */
@@ -34,10 +53,39 @@ import java.util.List;
 public class ConfigurationService
   implements IConfigurationService
 {
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(ConfigurationService.class);
+
   /* Configuration DAO */
   @Inject
   private IConfigurationDAO configurationDAO;
 
+  /* The listeners that will be notified when a configuration value is set or removed. */
+  private List<ListenerRegistration> listeners = new CopyOnWriteArrayList<>();
+
+  /*
+   * The snapshot of the configuration values, keyed by the upper-case version of the key, or
+   * <code>null</code> if the configuration values have not been loaded.
+   */
+  private volatile Map<String, ConfigurationValue> values;
+
+  /* The version of the configuration values in the database when the snapshot was loaded. */
+  private volatile long version = -1;
+
+  /**
+   * Add the listener that will be notified when a configuration value, whose key starts with the
+   * specified prefix, is set or removed.
+   *
+   * @param keyPrefix the case-insensitive prefix for the keys for the configuration values the
+   *                  listener should be notified about, e.g. <b>SMSService.</b>, or
+   *                  <code>null</code> to be notified about all the configuration values
+   * @param listener  the listener
+   */
+  public void addConfigurationListener(String keyPrefix, IConfigurationListener listener)
+  {
+    listeners.add(new ListenerRegistration(keyPrefix, listener));
+  }
+
   /**
    * Retrieve the binary configuration value.
    *
@@ -50,7 +98,7 @@ public class ConfigurationService
   {
     try
     {
-      byte[] binaryValue = configurationDAO.getBinary(key);
+      byte[] binaryValue = getBinaryValue(key);
 
       if (binaryValue == null)
       {
@@ -87,12 +135,11 @@ public class ConfigurationService
   {
     try
     {
-      byte[] binaryValue = configurationDAO.getBinary(key);
+      byte[] binaryValue = getBinaryValue(key);
 
       if (binaryValue == null)
       {
-        throw new ConfigurationNotFoundException(String.format(
-            "The binary configuration value with the key (%s) could not be found", key));
+        return defaultValue;
       }
       else
       {
@@ -118,7 +165,11 @@ public class ConfigurationService
   {
     try
     {
-      Boolean booleanValue = configurationDAO.getBoolean(key);
+      String stringValue = getValue(key);
+
+      Boolean booleanValue = (stringValue == null)
+          ? null
+          : Boolean.parseBoolean(stringValue);
 
       if (booleanValue == null)
       {
@@ -155,7 +206,11 @@ public class ConfigurationService
   {
     try
     {
-      Boolean booleanValue = configurationDAO.getBoolean(key);
+      String stringValue = getValue(key);
+
+      Boolean booleanValue = (stringValue == null)
+          ? null
+          : Boolean.parseBoolean(stringValue);
 
       if (booleanValue == null)
       {
@@ -185,7 +240,11 @@ public class ConfigurationService
   {
     try
     {
-      Double doubleValue = configurationDAO.getDouble(key);
+      String stringValue = getValue(key);
+
+      Double doubleValue = (stringValue == null)
+          ? null
+          : Double.parseDouble(stringValue);
 
       if (doubleValue == null)
       {
@@ -222,7 +281,11 @@ public class ConfigurationService
   {
     try
     {
-      Double doubleValue = configurationDAO.getDouble(key);
+      String stringValue = getValue(key);
+
+      Double doubleValue = (stringValue == null)
+          ? null
+          : Double.parseDouble(stringValue);
 
       if (doubleValue == null)
       {
@@ -261,6 +324,60 @@ public class ConfigurationService
     }
   }
 
+  /**
+   * Retrieve a page of the filtered configuration values.
+   *
+   * @param filter        the filter to apply to the keys for the configuration values
+   * @param sortBy        the attribute used to sort the configuration values
+   * @param sortDirection the direction used to sort the configuration values
+   * @param offset        the number of filtered configuration values to skip
+   * @param limit         the maximum number of filtered configuration values to retrieve
+   *
+   * @return the page of filtered configuration values
+   */
+  public List<ConfigurationValue> getFilteredConfigurationValues(String filter,
+      ConfigurationValueSortBy sortBy, SortDirection sortDirection, int offset, int limit)
+    throws ConfigurationException
+  {
+    try
+    {
+      return configurationDAO.getFilteredConfigurationValues(filter, sortBy, sortDirection,
+          offset, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new ConfigurationException(String.format(
+          "Failed to retrieve the configuration values matching the filter (%s)", filter), e);
+    }
+  }
+
+  /**
+   * Retrieve the page of filtered configuration values, sorted by key, that follows the
+   * configuration value with the specified key.
+   *
+   * @param filter the filter to apply to the keys for the configuration values
+   * @param key    the key for the last configuration value on the previous page or
+   *               <code>null</code> to retrieve the first page
+   * @param limit  the maximum number of filtered configuration values to retrieve
+   *
+   * @return the page of filtered configuration values
+   */
+  public List<ConfigurationValue> getFilteredConfigurationValuesAfter(String filter, String key,
+      int limit)
+    throws ConfigurationException
+  {
+    try
+    {
+      return configurationDAO.getFilteredConfigurationValuesAfter(filter, key, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new ConfigurationException(String.format(
+          "Failed to retrieve the configuration values matching the filter (%s) after the key "
+          + "(%s)", filter, key), e);
+    }
+  }
+
   /**
    * Retrieve the <code>Integer</code> configuration value.
    *
@@ -273,7 +390,11 @@ public class ConfigurationService
   {
     try
     {
-      Integer integerValue = configurationDAO.getInteger(key);
+      String stringValue = getValue(key);
+
+      Integer integerValue = (stringValue == null)
+          ? null
+          : Integer.parseInt(stringValue);
 
       if (integerValue == null)
       {
@@ -310,7 +431,11 @@ public class ConfigurationService
   {
     try
     {
-      Integer integerValue = configurationDAO.getInteger(key);
+      String stringValue = getValue(key);
+
+      Integer integerValue = (stringValue == null)
+          ? null
+          : Integer.parseInt(stringValue);
 
       if (integerValue == null)
       {
@@ -340,7 +465,11 @@ public class ConfigurationService
   {
     try
     {
-      Long longValue = configurationDAO.getLong(key);
+      String stringValue = getValue(key);
+
+      Long longValue = (stringValue == null)
+          ? null
+          : Long.parseLong(stringValue);
 
       if (longValue == null)
       {
@@ -377,7 +506,11 @@ public class ConfigurationService
   {
     try
     {
-      Long longValue = configurationDAO.getLong(key);
+      String stringValue = getValue(key);
+
+      Long longValue = (stringValue == null)
+          ? null
+          : Long.parseLong(stringValue);
 
       if (longValue == null)
       {
@@ -429,7 +562,7 @@ public class ConfigurationService
   {
     try
     {
-      String stringValue = configurationDAO.getString(key);
+      String stringValue = getValue(key);
 
       if (stringValue == null)
       {
@@ -466,7 +599,7 @@ public class ConfigurationService
   {
     try
     {
-      String stringValue = configurationDAO.getString(key);
+      String stringValue = getValue(key);
 
       if (stringValue == null)
       {
@@ -497,7 +630,7 @@ public class ConfigurationService
   {
     try
     {
-      return configurationDAO.keyExists(key);
+      return getConfigurationValue(key.toUpperCase()) != null;
     }
     catch (Throwable e)
     {
@@ -506,6 +639,50 @@ public class ConfigurationService
     }
   }
 
+  /**
+   * Reload the configuration values if they have been changed by another application instance
+   * sharing the same database.
+   */
+  @Scheduled(fixedDelay = 10000)
+  public void refresh()
+    throws ConfigurationException
+  {
+    if (values == null)
+    {
+      return;
+    }
+
+    try
+    {
+      long currentVersion = configurationDAO.getVersion();
+
+      if (currentVersion != version)
+      {
+        if (logger.isDebugEnabled())
+        {
+          logger.debug(String.format("Reloading the configuration values after the version of "
+              + "the configuration values changed from %d to %d", version, currentVersion));
+        }
+
+        load(currentVersion);
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new ConfigurationException("Failed to refresh the configuration values", e);
+    }
+  }
+
+  /**
+   * Remove the listener.
+   *
+   * @param listener the listener
+   */
+  public void removeConfigurationListener(IConfigurationListener listener)
+  {
+    listeners.removeIf(registration -> registration.listener == listener);
+  }
+
   /**
    * Remove the configuration value with the specified key.
    *
@@ -517,6 +694,8 @@ public class ConfigurationService
     try
     {
       configurationDAO.removeValue(key);
+
+      updateValue(key.toUpperCase(), null);
     }
     catch (Throwable e)
     {
@@ -538,6 +717,23 @@ public class ConfigurationService
     try
     {
       configurationDAO.setValue(key, value, description);
+
+      String stringValue;
+
+      if (value instanceof String)
+      {
+        stringValue = (String) value;
+      }
+      else if (value instanceof byte[])
+      {
+        stringValue = Base64.encodeBytes((byte[]) value);
+      }
+      else
+      {
+        stringValue = value.toString();
+      }
+
+      updateValue(key.toUpperCase(), new ConfigurationValue(key, stringValue, description));
     }
     catch (Throwable e)
     {
@@ -545,4 +741,271 @@ public class ConfigurationService
           "Failed to set the configuration value with the key (%s)]", key), e);
     }
   }
+
+  private void applyValues(Map<String, ConfigurationValue> newValues)
+  {
+    Map<String, ConfigurationValue> previousValues = values;
+
+    values = Collections.unmodifiableMap(newValues);
+
+    if ((previousValues == null) || listeners.isEmpty())
+    {
+      return;
+    }
+
+    Set<String> keys = new HashSet<>(previousValues.keySet());
+    keys.addAll(newValues.keySet());
+
+    for (String key : keys)
+    {
+      ConfigurationValue previousValue = previousValues.get(key);
+      ConfigurationValue newValue = newValues.get(key);
+
+      if (newValue == null)
+      {
+        notifyListeners(key, previousValue.getKey(), null);
+      }
+      else if ((previousValue == null)
+          || (!Objects.equals(previousValue.getValue(), newValue.getValue())))
+      {
+        notifyListeners(key, newValue.getKey(), newValue.getValue());
+      }
+    }
+  }
+
+  private byte[] getBinaryValue(String key)
+    throws ConfigurationException
+  {
+    String stringValue = getValue(key);
+
+    return (stringValue == null)
+        ? null
+        : Base64.decode(stringValue);
+  }
+
+  /**
+   * Returns the configuration value with the specified upper-case key, taking into account the
+   * configuration values set or removed as part of the current transaction.
+   *
+   * @param upperCaseKey the upper-case key used to uniquely identify the configuration value
+   *
+   * @return the configuration value or <code>null</code> if the configuration value could not be
+   *         found
+   */
+  private ConfigurationValue getConfigurationValue(String upperCaseKey)
+    throws ConfigurationException
+  {
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      TransactionChanges transactionChanges =
+          (TransactionChanges) TransactionSynchronizationManager.getResource(this);
+
+      if ((transactionChanges != null)
+          && transactionChanges.changes.containsKey(upperCaseKey))
+      {
+        return transactionChanges.changes.get(upperCaseKey);
+      }
+    }
+
+    return getValues().get(upperCaseKey);
+  }
+
+  private String getValue(String key)
+    throws ConfigurationException
+  {
+    ConfigurationValue configurationValue = getConfigurationValue(key.toUpperCase());
+
+    return (configurationValue == null)
+        ? null
+        : configurationValue.getValue();
+  }
+
+  private Map<String, ConfigurationValue> getValues()
+    throws ConfigurationException
+  {
+    Map<String, ConfigurationValue> currentValues = values;
+
+    if (currentValues != null)
+    {
+      return currentValues;
+    }
+
+    try
+    {
+      synchronized (this)
+      {
+        if (values == null)
+        {
+          load(configurationDAO.getVersion());
+        }
+
+        return values;
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new ConfigurationException("Failed to load the configuration values", e);
+    }
+  }
+
+  private synchronized void load(long newVersion)
+    throws DAOException
+  {
+    Map<String, ConfigurationValue> newValues = new HashMap<>();
+
+    for (ConfigurationValue configurationValue : configurationDAO.getFilteredConfigurationValues(
+        null))
+    {
+      newValues.put(configurationValue.getKey().toUpperCase(), configurationValue);
+    }
+
+    version = newVersion;
+
+    applyValues(newValues);
+  }
+
+  private void notifyListeners(String upperCaseKey, String key, String value)
+  {
+    for (ListenerRegistration registration : listeners)
+    {
+      if ((registration.keyPrefix == null) || upperCaseKey.startsWith(registration.keyPrefix))
+      {
+        try
+        {
+          registration.listener.configurationValueChanged(key, value);
+        }
+        catch (Throwable e)
+        {
+          logger.error(String.format("Failed to notify the configuration listener (%s) that the "
+              + "configuration value with the key (%s) changed", registration.listener, key), e);
+        }
+      }
+    }
+  }
+
+  private synchronized void replaceValue(String upperCaseKey,
+      ConfigurationValue configurationValue)
+  {
+    if (values == null)
+    {
+      return;
+    }
+
+    Map<String, ConfigurationValue> newValues = new HashMap<>(values);
+
+    if (configurationValue == null)
+    {
+      newValues.remove(upperCaseKey);
+    }
+    else
+    {
+      newValues.put(upperCaseKey, configurationValue);
+    }
+
+    applyValues(newValues);
+  }
+
+  private void updateValue(String upperCaseKey, ConfigurationValue configurationValue)
+  {
+    if ((!TransactionSynchronizationManager.isSynchronizationActive())
+        || (!TransactionSynchronizationManager.isActualTransactionActive()))
+    {
+      replaceValue(upperCaseKey, configurationValue);
+
+      return;
+    }
+
+    /*
+     * If the configuration value was changed as part of a transaction then only publish the change
+     * to the snapshot once the transaction commits, so that the change is not visible to other
+     * threads before then.
+     */
+    TransactionChanges transactionChanges =
+        (TransactionChanges) TransactionSynchronizationManager.getResource(this);
+
+    if (transactionChanges == null)
+    {
+      transactionChanges = new TransactionChanges();
+
+      TransactionSynchronizationManager.bindResource(this, transactionChanges);
+      TransactionSynchronizationManager.registerSynchronization(transactionChanges);
+    }
+
+    transactionChanges.changes.put(upperCaseKey, configurationValue);
+  }
+
+  /**
+   * The <code>ListenerRegistration</code> class holds the information for a listener that will
+   * be notified when a configuration value is set or removed.
+   */
+  private static class ListenerRegistration
+  {
+    /**
+     * The upper-case prefix for the keys for the configuration values the listener should be
+     * notified about or <code>null</code> for all the configuration values.
+     */
+    private String keyPrefix;
+
+    /**
+     * The listener.
+     */
+    private IConfigurationListener listener;
+
+    /**
+     * Constructs a new <code>ListenerRegistration</code>.
+     *
+     * @param keyPrefix the prefix for the keys for the configuration values the listener should
+     *                  be notified about or <code>null</code> for all the configuration values
+     * @param listener  the listener
+     */
+    ListenerRegistration(String keyPrefix, IConfigurationListener listener)
+    {
+      this.keyPrefix = (keyPrefix == null)
+          ? null
+          : keyPrefix.toUpperCase();
+      this.listener = listener;
+    }
+  }
+
+
+  /**
+   * The <code>TransactionChanges</code> class holds the configuration values that have been set
+   * or removed as part of a transaction and publishes them to the snapshot when the transaction
+   * commits.
+   */
+  private class TransactionChanges extends TransactionSynchronizationAdapter
+  {
+    /**
+     * The configuration values that have been set, or <code>null</code> for the configuration
+     * values that have been removed, keyed by the upper-case version of the key.
+     */
+    private Map<String, ConfigurationValue> changes = new LinkedHashMap<>();
+
+    @Override
+    public void afterCommit()
+    {
+      for (Map.Entry<String, ConfigurationValue> change : changes.entrySet())
+      {
+        replaceValue(change.getKey(), change.getValue());
+      }
+    }
+
+    @Override
+    public void afterCompletion(int status)
+    {
+      TransactionSynchronizationManager.unbindResourceIfPossible(ConfigurationService.this);
+    }
+
+    @Override
+    public void resume()
+    {
+      TransactionSynchronizationManager.bindResource(ConfigurationService.this, this);
+    }
+
+    @Override
+    public void suspend()
+    {
+      TransactionSynchronizationManager.unbindResourceIfPossible(ConfigurationService.this);
+    }
+  }
 }
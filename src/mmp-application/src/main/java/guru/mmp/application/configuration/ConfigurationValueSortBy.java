@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.configuration;
+
+/**
+ * The <code>ConfigurationValueSortBy</code> enumeration defines the possible attributes used to
+ * sort configuration values.
+ *
+ * @author Marcus Portmann
+ */
+public enum ConfigurationValueSortBy
+{
+  KEY("\"KEY\"", "Key"), VALUE("VALUE", "Value");
+
+  private String column;
+  private String description;
+
+  ConfigurationValueSortBy(String column, String description)
+  {
+    this.column = column;
+    this.description = description;
+  }
+
+  /**
+   * Returns the name of the database column for the attribute used to sort configuration values.
+   *
+   * @return the name of the database column for the attribute used to sort configuration values
+   */
+  public String column()
+  {
+    return column;
+  }
+
+  /**
+   * Returns the description for the attribute used to sort configuration values.
+   *
+   * @return the description for the attribute used to sort configuration values
+   */
+  public String description()
+  {
+    return description;
+  }
+}
@@ -19,6 +19,7 @@ package guru.mmp.application.configuration;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.common.persistence.DAOException;
+import guru.mmp.common.persistence.SortDirection;
 
 import java.util.List;
 
@@ -75,6 +76,37 @@ public interface IConfigurationDAO
   List<ConfigurationValue> getFilteredConfigurationValues(String filter)
     throws DAOException;
 
+  /**
+   * Retrieve a page of the filtered configuration values.
+   *
+   * @param filter        the filter to apply to the keys for the configuration values
+   * @param sortBy        the attribute used to sort the configuration values
+   * @param sortDirection the direction used to sort the configuration values
+   * @param offset        the number of filtered configuration values to skip
+   * @param limit         the maximum number of filtered configuration values to retrieve or -1
+   *                      to retrieve all the remaining filtered configuration values
+   *
+   * @return the page of filtered configuration values
+   */
+  List<ConfigurationValue> getFilteredConfigurationValues(String filter,
+      ConfigurationValueSortBy sortBy, SortDirection sortDirection, int offset, int limit)
+    throws DAOException;
+
+  /**
+   * Retrieve the page of filtered configuration values, sorted by key, that follows the
+   * configuration value with the specified key.
+   *
+   * @param filter the filter to apply to the keys for the configuration values
+   * @param key    the key for the last configuration value on the previous page or
+   *               <code>null</code> to retrieve the first page
+   * @param limit  the maximum number of filtered configuration values to retrieve
+   *
+   * @return the page of filtered configuration values
+   */
+  List<ConfigurationValue> getFilteredConfigurationValuesAfter(String filter, String key,
+      int limit)
+    throws DAOException;
+
   /**
    * Retrieve the <code>Integer</code> configuration value.
    *
@@ -118,6 +150,15 @@ public interface IConfigurationDAO
   String getString(String key)
     throws DAOException;
 
+  /**
+   * Retrieve the version of the configuration values, which is incremented each time a
+   * configuration value is set or removed.
+   *
+   * @return the version of the configuration values
+   */
+  long getVersion()
+    throws DAOException;
+
   /**
    * Check if a configuration value with the specified key exists.
    *
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.configuration;
+
+/**
+ * The <code>IConfigurationListener</code> interface defines the callback invoked by the
+ * Configuration Service when a configuration value is set or removed, either by this application
+ * instance or by another instance sharing the same database.
+ *
+ * @author Marcus Portmann
+ */
+@FunctionalInterface
+public interface IConfigurationListener
+{
+  /**
+   * Invoked when a configuration value has been set or removed.
+   *
+   * @param key   the key used to uniquely identify the configuration value
+   * @param value the new value for the configuration value or <code>null</code> if the
+   *              configuration value was removed
+   */
+  void configurationValueChanged(String key, String value);
+}
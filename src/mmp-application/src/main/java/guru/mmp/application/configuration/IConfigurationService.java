@@ -16,6 +16,10 @@
 
 package guru.mmp.application.configuration;
 
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.persistence.SortDirection;
+
 //~--- JDK imports ------------------------------------------------------------
 
 import java.util.List;
@@ -29,6 +33,17 @@ import java.util.List;
  */
 public interface IConfigurationService
 {
+  /**
+   * Add the listener that will be notified when a configuration value, whose key starts with the
+   * specified prefix, is set or removed.
+   *
+   * @param keyPrefix the case-insensitive prefix for the keys for the configuration values the
+   *                  listener should be notified about, e.g. <b>SMSService.</b>, or
+   *                  <code>null</code> to be notified about all the configuration values
+   * @param listener  the listener
+   */
+  void addConfigurationListener(String keyPrefix, IConfigurationListener listener);
+
   /**
    * Retrieve the binary configuration value.
    *
@@ -105,6 +120,36 @@ public interface IConfigurationService
   List<ConfigurationValue> getFilteredConfigurationValues(String filter)
     throws ConfigurationException;
 
+  /**
+   * Retrieve a page of the filtered configuration values.
+   *
+   * @param filter        the filter to apply to the keys for the configuration values
+   * @param sortBy        the attribute used to sort the configuration values
+   * @param sortDirection the direction used to sort the configuration values
+   * @param offset        the number of filtered configuration values to skip
+   * @param limit         the maximum number of filtered configuration values to retrieve
+   *
+   * @return the page of filtered configuration values
+   */
+  List<ConfigurationValue> getFilteredConfigurationValues(String filter,
+      ConfigurationValueSortBy sortBy, SortDirection sortDirection, int offset, int limit)
+    throws ConfigurationException;
+
+  /**
+   * Retrieve the page of filtered configuration values, sorted by key, that follows the
+   * configuration value with the specified key.
+   *
+   * @param filter the filter to apply to the keys for the configuration values
+   * @param key    the key for the last configuration value on the previous page or
+   *               <code>null</code> to retrieve the first page
+   * @param limit  the maximum number of filtered configuration values to retrieve
+   *
+   * @return the page of filtered configuration values
+   */
+  List<ConfigurationValue> getFilteredConfigurationValuesAfter(String filter, String key,
+      int limit)
+    throws ConfigurationException;
+
   /**
    * Retrieve the <code>Integer</code> configuration value.
    *
@@ -192,6 +237,20 @@ public interface IConfigurationService
   boolean keyExists(String key)
     throws ConfigurationException;
 
+  /**
+   * Reload the configuration values if they have been changed by another application instance
+   * sharing the same database.
+   */
+  void refresh()
+    throws ConfigurationException;
+
+  /**
+   * Remove the listener.
+   *
+   * @param listener the listener
+   */
+  void removeConfigurationListener(IConfigurationListener listener);
+
   /**
    * Remove the configuration value with the specified key.
    *
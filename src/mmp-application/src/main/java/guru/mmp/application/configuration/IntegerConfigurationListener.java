@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.configuration;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>IntegerConfigurationListener</code> class implements a configuration listener that
+ * applies the new values for integer configuration values to the settings of a service, e.g.
+ * the retry delays, maximum attempts and batch sizes that the service reads when it is
+ * initialised.
+ * <p/>
+ * Removed configuration values are ignored, so the service retains its current setting, and
+ * values that cannot be parsed are logged and ignored.
+ *
+ * @author Marcus Portmann
+ */
+public class IntegerConfigurationListener
+  implements IConfigurationListener
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(
+      IntegerConfigurationListener.class);
+
+  /**
+   * The name of the service the settings are applied to.
+   */
+  private String serviceName;
+
+  /**
+   * The setters for the service settings keyed by the upper-case version of the key for the
+   * configuration value.
+   */
+  private Map<String, IntConsumer> setters = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a new <code>IntegerConfigurationListener</code>.
+   *
+   * @param serviceName the name of the service the settings are applied to
+   */
+  public IntegerConfigurationListener(String serviceName)
+  {
+    this.serviceName = serviceName;
+  }
+
+  /**
+   * Bind the configuration value with the specified key to a service setting.
+   *
+   * @param key    the key used to uniquely identify the configuration value
+   * @param setter the setter that applies the new value to the service setting
+   */
+  public void bind(String key, IntConsumer setter)
+  {
+    setters.put(key.toUpperCase(), setter);
+  }
+
+  /**
+   * Invoked when a configuration value has been set or removed.
+   *
+   * @param key   the key used to uniquely identify the configuration value
+   * @param value the new value for the configuration value or <code>null</code> if the
+   *              configuration value was removed
+   */
+  @Override
+  public void configurationValueChanged(String key, String value)
+  {
+    IntConsumer setter = setters.get(key.toUpperCase());
+
+    if ((setter == null) || (value == null))
+    {
+      return;
+    }
+
+    try
+    {
+      setter.accept(Integer.parseInt(value));
+    }
+    catch (Throwable e)
+    {
+      logger.error(String.format("Failed to apply the new value (%s) for the configuration value "
+          + "with the key (%s) to the %s", value, key, serviceName), e);
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.executor;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.ApplicationConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>ApplicationTaskExecutor</code> class implements a bounded task executor with a fixed
+ * maximum number of threads and a fixed queue capacity, which exposes metrics for the queue depth
+ * and the number of active threads, applies a configurable policy to the tasks that are rejected
+ * when the task executor is saturated and waits for the queued tasks to complete on shutdown.
+ *
+ * @author Marcus Portmann
+ */
+@SuppressWarnings("unused")
+public class ApplicationTaskExecutor extends ThreadPoolTaskExecutor
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(ApplicationTaskExecutor.class);
+
+  /**
+   * The number of tasks that have been rejected because the task executor was saturated.
+   */
+  private final AtomicLong rejectedTaskCount = new AtomicLong();
+
+  /**
+   * The number of tasks that had been rejected when the metrics for the task executor were last
+   * logged.
+   */
+  private long loggedRejectedTaskCount;
+
+  /**
+   * The name of the task executor.
+   */
+  private String name;
+
+  /**
+   * The maximum number of tasks that can be queued waiting for a thread to become available.
+   */
+  private int queueCapacity;
+
+  /**
+   * The policy applied to the tasks submitted when both the threads and the queue for the task
+   * executor are saturated.
+   */
+  private RejectionPolicy rejectionPolicy;
+
+  /**
+   * Constructs a new <code>ApplicationTaskExecutor</code>.
+   *
+   * @param name          the name of the task executor
+   * @param configuration the configuration for the task executor
+   */
+  public ApplicationTaskExecutor(String name,
+      ApplicationConfiguration.TaskExecutorConfiguration configuration)
+  {
+    this.name = name;
+    this.queueCapacity = Math.max(configuration.getQueueCapacity(), 0);
+    this.rejectionPolicy = (configuration.getRejectionPolicy() != null)
+        ? configuration.getRejectionPolicy()
+        : RejectionPolicy.ABORT;
+
+    int maxPoolSize = Math.max(configuration.getMaxPoolSize(), 1);
+
+    setBeanName(name);
+    setThreadNamePrefix(name + "-");
+    setDaemon(true);
+    setCorePoolSize(Math.min(Math.max(configuration.getCorePoolSize(), 0), maxPoolSize));
+    setMaxPoolSize(maxPoolSize);
+    setQueueCapacity(queueCapacity);
+    setKeepAliveSeconds(configuration.getKeepAliveSeconds());
+    setAllowCoreThreadTimeOut(configuration.getAllowCoreThreadTimeOut());
+    setWaitForTasksToCompleteOnShutdown(true);
+    setAwaitTerminationSeconds(configuration.getAwaitTerminationSeconds());
+    setRejectedExecutionHandler(new CountingRejectedExecutionHandler(
+        rejectionPolicy.createRejectedExecutionHandler()));
+  }
+
+  /**
+   * Returns the number of tasks that have completed execution.
+   *
+   * @return the number of tasks that have completed execution
+   */
+  public long getCompletedTaskCount()
+  {
+    return getThreadPoolExecutor().getCompletedTaskCount();
+  }
+
+  /**
+   * Returns the largest number of threads that have simultaneously been in the task executor.
+   *
+   * @return the largest number of threads that have simultaneously been in the task executor
+   */
+  public int getLargestPoolSize()
+  {
+    return getThreadPoolExecutor().getLargestPoolSize();
+  }
+
+  /**
+   * Returns the name of the task executor.
+   *
+   * @return the name of the task executor
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Returns the maximum number of tasks that can be queued waiting for a thread to become
+   * available.
+   *
+   * @return the maximum number of tasks that can be queued waiting for a thread to become
+   *         available
+   */
+  public int getQueueCapacity()
+  {
+    return queueCapacity;
+  }
+
+  /**
+   * Returns the number of tasks queued waiting for a thread to become available.
+   *
+   * @return the number of tasks queued waiting for a thread to become available
+   */
+  public int getQueueSize()
+  {
+    return getThreadPoolExecutor().getQueue().size();
+  }
+
+  /**
+   * Returns the number of tasks that have been rejected because the task executor was saturated.
+   *
+   * @return the number of tasks that have been rejected because the task executor was saturated
+   */
+  public long getRejectedTaskCount()
+  {
+    return rejectedTaskCount.get();
+  }
+
+  /**
+   * Returns the policy applied to the tasks submitted when both the threads and the queue for the
+   * task executor are saturated.
+   *
+   * @return the policy applied to the tasks submitted when both the threads and the queue for the
+   *         task executor are saturated
+   */
+  public RejectionPolicy getRejectionPolicy()
+  {
+    return rejectionPolicy;
+  }
+
+  /**
+   * Returns the number of tasks that can be queued before the queue for the task executor is
+   * full.
+   *
+   * @return the number of tasks that can be queued before the queue for the task executor is full
+   */
+  public int getRemainingQueueCapacity()
+  {
+    return getThreadPoolExecutor().getQueue().remainingCapacity();
+  }
+
+  /**
+   * Log the metrics for the task executor.
+   * <p/>
+   * The metrics are logged at the DEBUG level unless tasks have been rejected since the metrics
+   * were last logged, in which case the metrics are logged at the WARN level. Tasks discarded by
+   * a task executor using the DISCARD rejection policy are counted but do not cause the metrics to
+   * be logged at the WARN level, since the policy is used for task executors where discarding the
+   * tasks submitted while the task executor is saturated is expected, e.g. when the task
+   * executor coalesces repeated requests to process the same work.
+   */
+  public synchronized void logMetrics()
+  {
+    long currentRejectedTaskCount = rejectedTaskCount.get();
+
+    boolean logAtWarnLevel = (rejectionPolicy != RejectionPolicy.DISCARD)
+        && (currentRejectedTaskCount > loggedRejectedTaskCount);
+
+    if (logAtWarnLevel || logger.isDebugEnabled())
+    {
+      String metrics = String.format(
+          "Task executor (%s): %d active thread(s), %d thread(s) (%d largest, %d maximum), "
+          + "%d/%d queued task(s), %d completed task(s), %d rejected task(s) (%s)", name,
+          getActiveCount(), getPoolSize(), getLargestPoolSize(), getMaxPoolSize(), getQueueSize(),
+          queueCapacity, getCompletedTaskCount(), currentRejectedTaskCount, rejectionPolicy);
+
+      if (logAtWarnLevel)
+      {
+        logger.warn(metrics);
+      }
+      else
+      {
+        logger.debug(metrics);
+      }
+    }
+
+    loggedRejectedTaskCount = currentRejectedTaskCount;
+  }
+
+  /**
+   * Shutdown the task executor.
+   * <p/>
+   * No new tasks are accepted and the task executor waits for the queued and executing tasks to
+   * complete. If they do not complete within the configured time the executing tasks are
+   * interrupted and the tasks that are still queued are discarded.
+   */
+  @Override
+  public void shutdown()
+  {
+    if (logger.isDebugEnabled())
+    {
+      logger.debug(String.format("Shutting down the task executor (%s) with %d queued task(s)",
+          name, getQueueSize()));
+    }
+
+    super.shutdown();
+
+    ThreadPoolExecutor threadPoolExecutor = getThreadPoolExecutor();
+
+    if (!threadPoolExecutor.isTerminated())
+    {
+      logger.warn(String.format(
+          "Failed to execute the %d queued task(s) before shutting down the task executor (%s)",
+          threadPoolExecutor.shutdownNow().size(), name));
+    }
+  }
+
+  /**
+   * The enumeration giving the policies that can be applied to the tasks submitted when both the
+   * threads and the queue for a task executor are saturated.
+   */
+  public enum RejectionPolicy
+  {
+    /**
+     * Throw a <code>TaskRejectedException</code> to the code that submitted the task.
+     */
+    ABORT,
+
+    /**
+     * Execute the task on the thread that submitted the task, which slows down the submission of
+     * new tasks.
+     */
+    CALLER_RUNS,
+
+    /**
+     * Silently discard the task.
+     */
+    DISCARD,
+
+    /**
+     * Discard the oldest queued task and queue the task.
+     */
+    DISCARD_OLDEST;
+
+    /**
+     * Create the rejected execution handler that implements the policy.
+     *
+     * @return the rejected execution handler that implements the policy
+     */
+    RejectedExecutionHandler createRejectedExecutionHandler()
+    {
+      switch (this)
+      {
+        case CALLER_RUNS:
+          return new ThreadPoolExecutor.CallerRunsPolicy();
+
+        case DISCARD:
+          return new ThreadPoolExecutor.DiscardPolicy();
+
+        case DISCARD_OLDEST:
+          return new ThreadPoolExecutor.DiscardOldestPolicy();
+
+        default:
+          return new ThreadPoolExecutor.AbortPolicy();
+      }
+    }
+  }
+
+  /**
+   * The <code>CountingRejectedExecutionHandler</code> class implements a rejected execution
+   * handler that counts the rejected tasks before applying the rejection policy for the task
+   * executor.
+   */
+  private class CountingRejectedExecutionHandler
+    implements RejectedExecutionHandler
+  {
+    private RejectedExecutionHandler rejectedExecutionHandler;
+
+    /**
+     * Constructs a new <code>CountingRejectedExecutionHandler</code>.
+     *
+     * @param rejectedExecutionHandler the rejected execution handler that implements the
+     *                                 rejection policy for the task executor
+     */
+    CountingRejectedExecutionHandler(RejectedExecutionHandler rejectedExecutionHandler)
+    {
+      this.rejectedExecutionHandler = rejectedExecutionHandler;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor)
+    {
+      rejectedTaskCount.incrementAndGet();
+
+      rejectedExecutionHandler.rejectedExecution(runnable, executor);
+    }
+  }
+}
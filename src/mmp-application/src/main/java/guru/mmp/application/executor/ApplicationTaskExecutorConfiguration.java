@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.executor;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.ApplicationConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>ApplicationTaskExecutorConfiguration</code> class implements a Spring configuration
+ * class that configures the bounded task executors for the application.
+ * <p/>
+ * The default task executor, named <b>taskExecutor</b>, is used for @Async method invocations
+ * that do not specify a task executor. The <b>messagingTaskExecutor</b>,
+ * <b>smsTaskExecutor</b>, <b>schedulerTaskExecutor</b> and <b>reportingTaskExecutor</b> task
+ * executors are used for the corresponding purposes. The task executors are configured using the
+ * <b>application.taskExecutors</b> properties and the defaults are used if the application
+ * configuration is not available.
+ *
+ * @author Marcus Portmann
+ */
+@Configuration
+public class ApplicationTaskExecutorConfiguration
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(
+      ApplicationTaskExecutorConfiguration.class);
+
+  /**
+   * The task executors that have been created.
+   */
+  private final List<ApplicationTaskExecutor> taskExecutors = new CopyOnWriteArrayList<>();
+
+  /**
+   * The Spring application configuration retrieved from the <b>classpath:application.yml</b> file.
+   */
+  @Inject
+  private ObjectProvider<ApplicationConfiguration> configuration;
+
+  /**
+   * Log the metrics for the task executors.
+   */
+  @Scheduled(cron = "0 * * * * *")
+  public void logTaskExecutorMetrics()
+  {
+    for (ApplicationTaskExecutor taskExecutor : taskExecutors)
+    {
+      try
+      {
+        taskExecutor.logMetrics();
+      }
+      catch (Throwable e)
+      {
+        logger.error(String.format("Failed to log the metrics for the task executor (%s)",
+            taskExecutor.getName()), e);
+      }
+    }
+  }
+
+  /**
+   * Returns the task executor used by the messaging infrastructure.
+   *
+   * @return the task executor used by the messaging infrastructure
+   */
+  @Bean
+  public ApplicationTaskExecutor messagingTaskExecutor()
+  {
+    return createTaskExecutor("messagingTaskExecutor", getTaskExecutorsConfiguration()
+        .getMessaging());
+  }
+
+  /**
+   * Returns the task executor used to execute report jobs.
+   *
+   * @return the task executor used to execute report jobs
+   */
+  @Bean
+  public ApplicationTaskExecutor reportingTaskExecutor()
+  {
+    return createTaskExecutor("reportingTaskExecutor", getTaskExecutorsConfiguration()
+        .getReporting());
+  }
+
+  /**
+   * Returns the task executor used to execute scheduled jobs.
+   *
+   * @return the task executor used to execute scheduled jobs
+   */
+  @Bean
+  public ApplicationTaskExecutor schedulerTaskExecutor()
+  {
+    return createTaskExecutor("schedulerTaskExecutor", getTaskExecutorsConfiguration()
+        .getScheduler());
+  }
+
+  /**
+   * Returns the task executor used to send SMSs.
+   *
+   * @return the task executor used to send SMSs
+   */
+  @Bean
+  public ApplicationTaskExecutor smsTaskExecutor()
+  {
+    return createTaskExecutor("smsTaskExecutor", getTaskExecutorsConfiguration().getSms());
+  }
+
+  /**
+   * Returns the Spring task executor to use for @Async method invocations that do not specify a
+   * task executor.
+   *
+   * @return the Spring task executor to use for @Async method invocations that do not specify a
+   *         task executor
+   */
+  @Bean
+  public ApplicationTaskExecutor taskExecutor()
+  {
+    return createTaskExecutor("taskExecutor", getTaskExecutorsConfiguration().getGeneral());
+  }
+
+  private ApplicationTaskExecutor createTaskExecutor(String name,
+      ApplicationConfiguration.TaskExecutorConfiguration taskExecutorConfiguration)
+  {
+    ApplicationTaskExecutor taskExecutor = new ApplicationTaskExecutor(name,
+        (taskExecutorConfiguration != null)
+        ? taskExecutorConfiguration
+        : new ApplicationConfiguration.TaskExecutorConfiguration());
+
+    logger.info(String.format(
+        "Initialising the task executor (%s) with %d core thread(s), %d maximum thread(s), a "
+        + "queue capacity of %d and the %s rejection policy", name, taskExecutor.getCorePoolSize(),
+        taskExecutor.getMaxPoolSize(), taskExecutor.getQueueCapacity(),
+        taskExecutor.getRejectionPolicy()));
+
+    taskExecutors.add(taskExecutor);
+
+    return taskExecutor;
+  }
+
+  private ApplicationConfiguration.TaskExecutorsConfiguration getTaskExecutorsConfiguration()
+  {
+    ApplicationConfiguration applicationConfiguration = configuration.getIfAvailable();
+
+    if ((applicationConfiguration != null) && (applicationConfiguration.getTaskExecutors() != null))
+    {
+      return applicationConfiguration.getTaskExecutors();
+    }
+    else
+    {
+      return new ApplicationConfiguration.TaskExecutorsConfiguration();
+    }
+  }
+}
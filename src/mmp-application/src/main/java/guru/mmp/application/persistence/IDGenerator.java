@@ -29,7 +29,11 @@ import org.springframework.transaction.support.TransactionTemplate;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -39,12 +43,41 @@ import java.util.UUID;
  * It requires the IDGENERATOR table which must be created under the IDGENERATOR schema within the
  * database. The unique ID will be retrieved using a new transaction while suspending the existing
  * database transaction. This is done to reduce deadlocks and improve performance.
+ * <p>
+ * By default a single ID is reserved in the IDGENERATOR table for every call to
+ * {@link #next(String)}, which results in consecutive IDs but serialises every caller in the
+ * cluster on the row for the entity type. If a block size greater than one is configured, a block
+ * of IDs is reserved for the entity type in a single transaction and the IDs in the block are
+ * handed out from memory without accessing the database. Each application instance reserves its
+ * own blocks, so the IDs are unique across the cluster but are not consecutive, and the unused IDs
+ * in a block are lost when the application instance is stopped.
+ * <p>
+ * Blocks are opt-in, rather than enabled by default, because with more than one application
+ * instance the order of the IDs no longer matches the order in which the entities were created,
+ * and the SMS and event outbox queues rely on that order to send and publish their entries in
+ * sequence.
  *
  * @author Marcus Portmann
  */
 @Repository
 public class IDGenerator
 {
+  /**
+   * The maximum number of attempts to reserve a block of IDs for an entity type whose row in the
+   * IDGENERATOR table is being created concurrently by another application instance.
+   */
+  private static final int MAXIMUM_RESERVE_ATTEMPTS = 3;
+
+  /**
+   * The blocks of IDs that have been reserved for the entity types.
+   */
+  private final Map<String, AtomicReference<IdBlock>> blocks = new ConcurrentHashMap<>();
+
+  /**
+   * The number of IDs to reserve at a time for specific entity types.
+   */
+  private final Map<String, Integer> blockSizes = new ConcurrentHashMap<>();
+
   /**
    * The data source used to provide connections to the application database.
    */
@@ -52,12 +85,36 @@ public class IDGenerator
   @Qualifier("applicationDataSource")
   private DataSource dataSource;
 
+  /**
+   * The number of IDs to reserve at a time for the entity types that do not have a specific block
+   * size, which defaults to one so that the IDs are allocated in the order they are requested.
+   */
+  private volatile int defaultBlockSize = 1;
+
   /**
    * The Transaction Manager.
    */
   @Inject
   private PlatformTransactionManager transactionManager;
 
+  /**
+   * Returns the number of IDs that will be reserved at a time for the entity with the specified
+   * type.
+   *
+   * @param type the type of entity
+   *
+   * @return the number of IDs that will be reserved at a time for the entity with the specified
+   *         type
+   */
+  public int getBlockSize(String type)
+  {
+    Integer blockSize = blockSizes.get(type);
+
+    return (blockSize != null)
+        ? blockSize
+        : defaultBlockSize;
+  }
+
   /**
    * Get the next unique <code>long</code> ID for the entity with the specified type.
    *
@@ -67,57 +124,44 @@ public class IDGenerator
    */
   public long next(String type)
   {
-    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager,
-        new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    int blockSize = getBlockSize(type);
 
-    try
+    if (blockSize <= 1)
     {
-      return transactionTemplate.execute(
-          status ->
-          {
-            try (Connection connection = dataSource.getConnection())
-            {
-              Long id = getCurrentId(connection, type);
+      return reserve(type, 1);
+    }
 
-              if (id == null)
-              {
-                id = 1L;
-                insertId(connection, type, id);
-
-                /*
-                 * TODO: Handle a duplicate row exception caused by the INSERT/UPDATE race
-                 *       condition. This race condition occurs when there is no row for a particular
-                 *       type of entity in the IDGENERATOR table. Assuming we have two different
-                 *       threads that are both attempting to retrieve the next ID for this entity
-                 *       type. When the first thread executes the SELECT FOR UPDATE call, it will
-                 *       not able to lock a row and will then attempt to execute the INSERT. If
-                 *       another thread manages to execute the SELECT FOR UPDATE call before the
-                 *       first thread completes the INSERT then one of the threads will experience a
-                 *       duplicate row exception as they will both attempt to INSERT. The easiest
-                 *       way to prevent this from happening is to pre-populate the IDGENERATOR
-                 *       table with initial IDs.
-                 */
-              }
-              else
-              {
-                id = id + 1L;
-                updateId(connection, type, id);
-              }
+    AtomicReference<IdBlock> blockReference = blocks.computeIfAbsent(type,
+        key -> new AtomicReference<>(new IdBlock(1, 0)));
 
-              return id;
-            }
-            catch (Throwable e)
-            {
-              throw new IDGeneratorException(String.format("Failed to retrieve the new ID for the "
-                  + "entity of type (%s) from the IDGENERATOR table: %s", type, e.getMessage()), e);
-            }
-          }
-          );
+    IdBlock block = blockReference.get();
+
+    long id = block.next.getAndIncrement();
+
+    if (id <= block.last)
+    {
+      return id;
     }
-    catch (TransactionException e)
+
+    synchronized (blockReference)
     {
-      throw new IDGeneratorException(String.format("Failed to retrieve the new ID for the entity "
-          + "of type (%s) from the IDGENERATOR table: %s", type, e.getMessage()), e);
+      // Another thread may have reserved a new block while this thread was waiting
+      block = blockReference.get();
+
+      id = block.next.getAndIncrement();
+
+      if (id <= block.last)
+      {
+        return id;
+      }
+
+      long last = reserve(type, blockSize);
+
+      long first = last - blockSize + 1;
+
+      blockReference.set(new IdBlock(first + 1, last));
+
+      return first;
     }
   }
 
@@ -151,6 +195,29 @@ public class IDGenerator
     return UUID.randomUUID();
   }
 
+  /**
+   * Set the number of IDs to reserve at a time for the entity with the specified type.
+   *
+   * @param type      the type of entity
+   * @param blockSize the number of IDs to reserve at a time for the entity with the specified type
+   */
+  public void setBlockSize(String type, int blockSize)
+  {
+    blockSizes.put(type, blockSize);
+  }
+
+  /**
+   * Set the number of IDs to reserve at a time for the entity types that do not have a specific
+   * block size.
+   *
+   * @param defaultBlockSize the number of IDs to reserve at a time for the entity types that do
+   *                         not have a specific block size
+   */
+  public void setDefaultBlockSize(int defaultBlockSize)
+  {
+    this.defaultBlockSize = defaultBlockSize;
+  }
+
   private Long getCurrentId(Connection connection, String type)
     throws SQLException
   {
@@ -190,6 +257,90 @@ public class IDGenerator
     }
   }
 
+  /**
+   * Reserve the specified number of IDs for the entity with the specified type in the IDGENERATOR
+   * table using a new transaction.
+   *
+   * @param type     the type of entity to reserve the IDs for
+   * @param quantity the number of IDs to reserve
+   *
+   * @return the last ID that was reserved
+   */
+  private long reserve(String type, int quantity)
+  {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager,
+        new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+
+    try
+    {
+      for (int attempt = 1; ; attempt++)
+      {
+        boolean isLastAttempt = (attempt >= MAXIMUM_RESERVE_ATTEMPTS);
+
+        Long reservedId = transactionTemplate.execute(
+            status ->
+            {
+              try (Connection connection = dataSource.getConnection())
+              {
+                Long id = getCurrentId(connection, type);
+
+                if (id == null)
+                {
+                  id = (long) quantity;
+
+                  try
+                  {
+                    insertId(connection, type, id);
+                  }
+                  catch (SQLException e)
+                  {
+                    /*
+                     * If another thread or application instance created the row for the entity
+                     * type after the SELECT FOR UPDATE above then roll back and try again, which
+                     * will lock the row that was created.
+                     */
+                    if ((!isLastAttempt)
+                        && ((e instanceof SQLIntegrityConstraintViolationException)
+                            || ((e.getSQLState() != null) && e.getSQLState().startsWith("23"))))
+                    {
+                      status.setRollbackOnly();
+
+                      return null;
+                    }
+
+                    throw e;
+                  }
+                }
+                else
+                {
+                  id = id + quantity;
+                  updateId(connection, type, id);
+                }
+
+                return id;
+              }
+              catch (Throwable e)
+              {
+                throw new IDGeneratorException(String.format(
+                    "Failed to retrieve the new ID for the entity of type (%s) from the "
+                    + "IDGENERATOR table: %s", type, e.getMessage()), e);
+              }
+            }
+            );
+
+        if (reservedId != null)
+        {
+          return reservedId;
+        }
+      }
+    }
+    catch (TransactionException e)
+    {
+      throw new IDGeneratorException(String.format("Failed to retrieve the new ID for the entity "
+          + "of type (%s) from the IDGENERATOR table: %s", type, e.getMessage()), e);
+    }
+  }
+
   private void updateId(Connection connection, String type, long id)
     throws SQLException
   {
@@ -206,4 +357,35 @@ public class IDGenerator
       }
     }
   }
+
+  /**
+   * The <code>IdBlock</code> class holds a block of IDs that has been reserved for an entity type.
+   * <p/>
+   * A block is never reused once it has been exhausted. A new block is created instead, so a
+   * thread can never combine the counter for one block with the upper bound of another.
+   */
+  private static class IdBlock
+  {
+    /**
+     * The last ID in the block.
+     */
+    final long last;
+
+    /**
+     * The next ID in the block.
+     */
+    final AtomicLong next;
+
+    /**
+     * Constructs a new <code>IdBlock</code>.
+     *
+     * @param next the next ID in the block
+     * @param last the last ID in the block
+     */
+    IdBlock(long next, long last)
+    {
+      this.next = new AtomicLong(next);
+      this.last = last;
+    }
+  }
 }
@@ -16,10 +16,17 @@
 
 package guru.mmp.application.security;
 
-//~--- JDK imports ------------------------------------------------------------
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.persistence.SortDirection;
+import guru.mmp.common.util.BoundedCache;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+
+//~--- JDK imports ------------------------------------------------------------
 
 /**
  * The <code>ISecurityService</code> interface defines the functionality provided by a Security
@@ -190,6 +197,26 @@ public interface ISecurityService
   List<User> findUsers(UUID userDirectoryId, List<Attribute> attributes)
     throws UserDirectoryNotFoundException, InvalidAttributeException, SecurityException;
 
+  /**
+   * Invoke the consumer for each of the filtered users without loading all the filtered users
+   * into memory at once.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param filter          the filter to apply to the users
+   * @param consumer        the consumer to invoke for each of the filtered users
+   */
+  void forEachFilteredUser(UUID userDirectoryId, String filter, Consumer<User> consumer)
+    throws UserDirectoryNotFoundException, SecurityException;
+
+  /**
+   * Returns the statistics for the caches of user directory IDs, authorised function codes,
+   * security group names and security group memberships for users keyed by the name of the cache.
+   *
+   * @return the statistics for the caches keyed by the name of the cache
+   */
+  Map<String, BoundedCache.Statistics> getCacheStatistics();
+
   /**
    * Retrieve the filtered list of organisations.
    *
@@ -200,6 +227,36 @@ public interface ISecurityService
   List<Organisation> getFilteredOrganisations(String filter)
     throws SecurityException;
 
+  /**
+   * Retrieve a page of the filtered list of organisations.
+   *
+   * @param filter        the filter to apply to the organisations
+   * @param sortBy        the attribute used to sort the organisations
+   * @param sortDirection the direction used to sort the organisations
+   * @param offset        the number of filtered organisations to skip
+   * @param limit         the maximum number of filtered organisations to retrieve
+   *
+   * @return the page of the filtered list of organisations
+   */
+  List<Organisation> getFilteredOrganisations(String filter, OrganisationSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws SecurityException;
+
+  /**
+   * Retrieve the page of the filtered list of organisations, sorted by name, that follows the
+   * specified organisation.
+   *
+   * @param filter       the filter to apply to the organisations
+   * @param organisation the last organisation on the previous page or <code>null</code> to
+   *                     retrieve the first page
+   * @param limit        the maximum number of filtered organisations to retrieve
+   *
+   * @return the page of the filtered list of organisations
+   */
+  List<Organisation> getFilteredOrganisationsAfter(String filter, Organisation organisation,
+      int limit)
+    throws SecurityException;
+
   /**
    * Retrieve the filtered list of user directories.
    *
@@ -210,6 +267,35 @@ public interface ISecurityService
   List<UserDirectory> getFilteredUserDirectories(String filter)
     throws SecurityException;
 
+  /**
+   * Retrieve a page of the filtered list of user directories sorted by name.
+   *
+   * @param filter        the filter to apply to the user directories
+   * @param sortDirection the direction used to sort the user directories
+   * @param offset        the number of filtered user directories to skip
+   * @param limit         the maximum number of filtered user directories to retrieve
+   *
+   * @return the page of the filtered list of user directories
+   */
+  List<UserDirectory> getFilteredUserDirectories(String filter, SortDirection sortDirection,
+      int offset, int limit)
+    throws SecurityException;
+
+  /**
+   * Retrieve the page of the filtered list of user directories, sorted by name, that follows the
+   * specified user directory.
+   *
+   * @param filter        the filter to apply to the user directories
+   * @param userDirectory the last user directory on the previous page or <code>null</code> to
+   *                      retrieve the first page
+   * @param limit         the maximum number of filtered user directories to retrieve
+   *
+   * @return the page of the filtered list of user directories
+   */
+  List<UserDirectory> getFilteredUserDirectoriesAfter(String filter, UserDirectory userDirectory,
+      int limit)
+    throws SecurityException;
+
   /**
    * Retrieve the filtered list of users.
    *
@@ -222,6 +308,40 @@ public interface ISecurityService
   List<User> getFilteredUsers(UUID userDirectoryId, String filter)
     throws UserDirectoryNotFoundException, SecurityException;
 
+  /**
+   * Retrieve a page of the filtered list of users.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param filter          the filter to apply to the users
+   * @param sortBy          the attribute used to sort the users
+   * @param sortDirection   the direction used to sort the users
+   * @param offset          the number of filtered users to skip
+   * @param limit           the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  List<User> getFilteredUsers(UUID userDirectoryId, String filter, UserSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws UserDirectoryNotFoundException, SecurityException;
+
+  /**
+   * Retrieve the page of the filtered list of users, sorted by username, that follows the user
+   * with the specified username.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param filter          the filter to apply to the users
+   * @param username        the username for the last user on the previous page or
+   *                        <code>null</code> to retrieve the first page
+   * @param limit           the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  List<User> getFilteredUsersAfter(UUID userDirectoryId, String filter, String username,
+      int limit)
+    throws UserDirectoryNotFoundException, SecurityException;
+
   /**
    * Retrieve the authorised function.
    *
@@ -16,9 +16,14 @@
 
 package guru.mmp.application.security;
 
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.persistence.SortDirection;
+
 //~--- JDK imports ------------------------------------------------------------
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The <code>IUserDirectoryProvider</code> interface defines the functionality provided by a user
@@ -116,6 +121,16 @@ interface IUserDirectory
   List<User> findUsers(List<Attribute> attributes)
     throws InvalidAttributeException, SecurityException;
 
+  /**
+   * Invoke the consumer for each of the filtered users without loading all the filtered users
+   * into memory at once.
+   *
+   * @param filter   the filter to apply to the users
+   * @param consumer the consumer to invoke for each of the filtered users
+   */
+  void forEachFilteredUser(String filter, Consumer<User> consumer)
+    throws SecurityException;
+
   /**
    * Retrieve the filtered list of users.
    *
@@ -126,6 +141,35 @@ interface IUserDirectory
   List<User> getFilteredUsers(String filter)
     throws SecurityException;
 
+  /**
+   * Retrieve a page of the filtered list of users.
+   *
+   * @param filter        the filter to apply to the users
+   * @param sortBy        the attribute used to sort the users
+   * @param sortDirection the direction used to sort the users
+   * @param offset        the number of filtered users to skip
+   * @param limit         the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  List<User> getFilteredUsers(String filter, UserSortBy sortBy, SortDirection sortDirection,
+      int offset, int limit)
+    throws SecurityException;
+
+  /**
+   * Retrieve the page of the filtered list of users, sorted by username, that follows the user
+   * with the specified username.
+   *
+   * @param filter   the filter to apply to the users
+   * @param username the username for the last user on the previous page or <code>null</code> to
+   *                 retrieve the first page
+   * @param limit    the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  List<User> getFilteredUsersAfter(String filter, String username, int limit)
+    throws SecurityException;
+
   /**
    * Retrieve the authorised function codes for the user.
    *
@@ -19,6 +19,8 @@ package guru.mmp.application.security;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.application.persistence.IDGenerator;
+import guru.mmp.common.persistence.DAOUtil;
+import guru.mmp.common.persistence.SortDirection;
 import guru.mmp.common.util.StringUtil;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
@@ -28,6 +30,7 @@ import javax.sql.DataSource;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.function.Consumer;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -763,6 +766,30 @@ public class InternalUserDirectory extends UserDirectoryBase
     }
   }
 
+  /**
+   * Invoke the consumer for each of the filtered users.
+   * <p/>
+   * The users are read from the database one at a time instead of being loaded all at once.
+   *
+   * @param filter   the filter to apply to the users
+   * @param consumer the consumer to invoke for each of the filtered users
+   */
+  public void forEachFilteredUser(String filter, Consumer<User> consumer)
+    throws SecurityException
+  {
+    try
+    {
+      processFilteredUsers(filter, null, UserSortBy.USERNAME, SortDirection.ASCENDING, 0, -1,
+          consumer);
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(String.format(
+          "Failed to process the filtered users for the user directory (%s): %s",
+          getUserDirectoryId(), e.getMessage()), e);
+    }
+  }
+
   /**
    * Retrieve the filtered list of users.
    *
@@ -773,59 +800,69 @@ public class InternalUserDirectory extends UserDirectoryBase
   public List<User> getFilteredUsers(String filter)
     throws SecurityException
   {
-    String getInternalUsersSQL = "SELECT IU.ID, IU.USERNAME, IU.PASSWORD, IU.FIRST_NAME, "
-        + "IU.LAST_NAME, IU.PHONE, IU.MOBILE, IU.EMAIL, IU.PASSWORD_ATTEMPTS, IU.PASSWORD_EXPIRY "
-        + "FROM SECURITY.INTERNAL_USERS IU WHERE IU.USER_DIRECTORY_ID=? ORDER BY IU.USERNAME";
-
-    String getFilteredInternalUsersSQL =
-        "SELECT IU.ID, IU.USERNAME, IU.PASSWORD, IU.FIRST_NAME, IU.LAST_NAME, IU.PHONE, IU.MOBILE, "
-        + "IU.EMAIL, IU.PASSWORD_ATTEMPTS, IU.PASSWORD_EXPIRY FROM SECURITY.INTERNAL_USERS IU "
-        + "WHERE IU.USER_DIRECTORY_ID=? AND " + "((UPPER(IU.USERNAME) LIKE ?) "
-        + "OR (UPPER(IU.FIRST_NAME) LIKE ?) OR (UPPER(IU.LAST_NAME) LIKE ?)) ORDER BY IU.USERNAME";
+    return getFilteredUsers(filter, UserSortBy.USERNAME, SortDirection.ASCENDING, 0,
+        maxFilteredUsers);
+  }
 
-    try (Connection connection = dataSource.getConnection();
-      PreparedStatement statement = connection.prepareStatement(StringUtil.isNullOrEmpty(filter)
-          ? getInternalUsersSQL
-          : getFilteredInternalUsersSQL))
+  /**
+   * Retrieve a page of the filtered list of users.
+   *
+   * @param filter        the filter to apply to the users
+   * @param sortBy        the attribute used to sort the users
+   * @param sortDirection the direction used to sort the users
+   * @param offset        the number of filtered users to skip
+   * @param limit         the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  public List<User> getFilteredUsers(String filter, UserSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws SecurityException
+  {
+    try
     {
-      statement.setMaxRows(maxFilteredUsers);
+      List<User> list = new ArrayList<>();
 
-      if (StringUtil.isNullOrEmpty(filter))
-      {
-        statement.setObject(1, getUserDirectoryId());
-      }
-      else
-      {
-        StringBuilder filterBuffer = new StringBuilder("%");
-
-        filterBuffer.append(filter.toUpperCase());
-        filterBuffer.append("%");
-
-        statement.setObject(1, getUserDirectoryId());
-        statement.setString(2, filterBuffer.toString());
-        statement.setString(3, filterBuffer.toString());
-        statement.setString(4, filterBuffer.toString());
-      }
+      processFilteredUsers(filter, null, sortBy, sortDirection, offset, limit, list::add);
 
-      try (ResultSet rs = statement.executeQuery())
-      {
-        List<User> list = new ArrayList<>();
+      return list;
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(String.format(
+          "Failed to retrieve the filtered users for the user directory (%s): %s",
+          getUserDirectoryId(), e.getMessage()), e);
+    }
+  }
 
-        while (rs.next())
-        {
-          User user = buildUserFromResultSet(rs);
+  /**
+   * Retrieve the page of the filtered list of users, sorted by username, that follows the user
+   * with the specified username.
+   *
+   * @param filter   the filter to apply to the users
+   * @param username the username for the last user on the previous page or <code>null</code> to
+   *                 retrieve the first page
+   * @param limit    the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  public List<User> getFilteredUsersAfter(String filter, String username, int limit)
+    throws SecurityException
+  {
+    try
+    {
+      List<User> list = new ArrayList<>();
 
-          list.add(user);
-        }
+      processFilteredUsers(filter, username, UserSortBy.USERNAME, SortDirection.ASCENDING, 0,
+          limit, list::add);
 
-        return list;
-      }
+      return list;
     }
     catch (Throwable e)
     {
       throw new SecurityException(String.format(
-          "Failed to retrieve the filtered users for the user directory (%s): %s",
-          getUserDirectoryId(), e.getMessage()), e);
+          "Failed to retrieve the filtered users after the user (%s) for the user directory (%s): "
+          + "%s", username, getUserDirectoryId(), e.getMessage()), e);
     }
   }
 
@@ -1071,11 +1108,7 @@ public class InternalUserDirectory extends UserDirectoryBase
       {
         if (rs.next())
         {
-          int numberOfFilteredUsers = rs.getInt(1);
-
-          return ((numberOfFilteredUsers > maxFilteredUsers)
-              ? maxFilteredUsers
-              : numberOfFilteredUsers);
+          return rs.getInt(1);
         }
         else
         {
@@ -2145,6 +2178,78 @@ public class InternalUserDirectory extends UserDirectoryBase
     }
   }
 
+  private void processFilteredUsers(String filter, String afterUsername, UserSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit, Consumer<User> consumer)
+    throws Exception
+  {
+    if (limit == 0)
+    {
+      return;
+    }
+
+    StringBuilder buffer = new StringBuilder("SELECT IU.ID, IU.USERNAME, IU.PASSWORD, "
+        + "IU.FIRST_NAME, IU.LAST_NAME, IU.PHONE, IU.MOBILE, IU.EMAIL, IU.PASSWORD_ATTEMPTS, "
+        + "IU.PASSWORD_EXPIRY FROM SECURITY.INTERNAL_USERS IU WHERE IU.USER_DIRECTORY_ID=?");
+
+    if (!StringUtil.isNullOrEmpty(filter))
+    {
+      buffer.append(" AND ((UPPER(IU.USERNAME) LIKE ?) OR (UPPER(IU.FIRST_NAME) LIKE ?) "
+          + "OR (UPPER(IU.LAST_NAME) LIKE ?))");
+    }
+
+    if (afterUsername != null)
+    {
+      buffer.append(" AND (UPPER(IU.USERNAME) > UPPER(CAST(? AS VARCHAR(100))))");
+    }
+
+    /*
+     * Usernames are compared without regard to case, as they are when a user is retrieved, so
+     * sort by the upper-case username, which is also used within the sort attribute so the order
+     * of the pages is deterministic and matches the comparison used to retrieve the next page.
+     */
+    if (sortBy == UserSortBy.USERNAME)
+    {
+      buffer.append(" ORDER BY UPPER(IU.USERNAME) ").append(sortDirection.sql());
+    }
+    else
+    {
+      buffer.append(" ORDER BY IU.").append(sortBy.column()).append(" ").append(
+          sortDirection.sql()).append(", UPPER(IU.USERNAME) ").append(sortDirection.sql());
+    }
+
+    buffer.append(DAOUtil.getPagingClause(offset, limit));
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(buffer.toString()))
+    {
+      int parameterIndex = 1;
+
+      statement.setObject(parameterIndex++, getUserDirectoryId());
+
+      if (!StringUtil.isNullOrEmpty(filter))
+      {
+        String filterBuffer = String.format("%%%s%%", filter.toUpperCase());
+
+        statement.setString(parameterIndex++, filterBuffer);
+        statement.setString(parameterIndex++, filterBuffer);
+        statement.setString(parameterIndex++, filterBuffer);
+      }
+
+      if (afterUsername != null)
+      {
+        statement.setString(parameterIndex, afterUsername);
+      }
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        while (rs.next())
+        {
+          consumer.accept(buildUserFromResultSet(rs));
+        }
+      }
+    }
+  }
+
   private void savePasswordHistory(Connection connection, UUID internalUserId, String passwordHash)
     throws SQLException
   {
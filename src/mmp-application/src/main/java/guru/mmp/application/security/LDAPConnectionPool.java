@@ -0,0 +1,424 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.security;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.util.JNDIUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.naming.InterruptedNamingException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>LDAPConnectionPool</code> class implements a bounded pool of JNDI directory contexts,
+ * each of which holds an open and bound connection to an LDAP server.
+ * <p/>
+ * Idle connections are handed out most recently used first so that connections that are not
+ * needed age out and are closed once they have been idle for longer than the maximum idle time.
+ * A connection that has been idle for longer than the validation interval is checked by reading
+ * the root DSE before it is handed out and is discarded if the check fails.
+ *
+ * @author Marcus Portmann
+ */
+public class LDAPConnectionPool
+{
+  /**
+   * The attributes retrieved from the root DSE to check whether a connection is still usable.
+   */
+  private static final String[] VALIDATION_ATTRIBUTES = new String[] { "objectClass" };
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(LDAPConnectionPool.class);
+
+  /**
+   * The factory used to open new connections.
+   */
+  private ConnectionFactory connectionFactory;
+
+  /**
+   * The idle connections with the most recently released connection first.
+   */
+  private Deque<IdleConnection> idleConnections = new ConcurrentLinkedDeque<>();
+
+  /**
+   * The maximum time in nanoseconds a connection may remain idle before it is closed.
+   */
+  private long maximumIdleTime;
+
+  /**
+   * The maximum number of connections that may be open at the same time.
+   */
+  private int maximumSize;
+
+  /**
+   * The maximum time in milliseconds to wait for a connection when all the connections are in use.
+   */
+  private long maximumWait;
+
+  /**
+   * The name of the connection pool.
+   */
+  private String name;
+
+  /**
+   * The number of connections that have been opened.
+   */
+  private LongAdder numberOfConnectionsCreated = new LongAdder();
+
+  /**
+   * The number of connections that were discarded because they failed validation.
+   */
+  private LongAdder numberOfInvalidConnections = new LongAdder();
+
+  /**
+   * The permits limiting the number of connections in use.
+   */
+  private Semaphore permits;
+
+  /**
+   * The time in nanoseconds a connection may remain idle before it is validated again.
+   */
+  private long validationInterval;
+
+  /**
+   * Has the connection pool been closed?
+   */
+  private volatile boolean closed;
+
+  /**
+   * Constructs a new <code>LDAPConnectionPool</code>.
+   *
+   * @param name               the name of the connection pool
+   * @param maximumSize        the maximum number of connections that may be open at the same time
+   * @param maximumIdleTime    the maximum time a connection may remain idle before it is closed
+   * @param validationInterval the time a connection may remain idle before it is validated before
+   *                           being reused
+   * @param maximumWait        the maximum time to wait for a connection when all the connections
+   *                           are in use
+   * @param unit               the time unit for the maximum idle time, validation interval and
+   *                           maximum wait
+   * @param connectionFactory  the factory used to open new connections
+   */
+  public LDAPConnectionPool(String name, int maximumSize, long maximumIdleTime,
+      long validationInterval, long maximumWait, TimeUnit unit, ConnectionFactory connectionFactory)
+  {
+    if (maximumSize < 1)
+    {
+      throw new IllegalArgumentException("The maximum size for the LDAP connection pool must be "
+          + "greater than zero");
+    }
+
+    this.name = name;
+    this.maximumSize = maximumSize;
+    this.maximumIdleTime = unit.toNanos(maximumIdleTime);
+    this.validationInterval = unit.toNanos(validationInterval);
+    this.maximumWait = unit.toMillis(maximumWait);
+    this.connectionFactory = connectionFactory;
+    this.permits = new Semaphore(maximumSize, true);
+  }
+
+  /**
+   * Close the connection pool and all the idle connections.
+   * <p/>
+   * Connections that are in use are closed when they are released.
+   */
+  public void close()
+  {
+    closed = true;
+
+    closeIdleConnections();
+  }
+
+  /**
+   * Close the connections that have been idle for longer than the maximum idle time.
+   *
+   * @return the number of connections that were closed
+   */
+  public int evictIdleConnections()
+  {
+    int numberOfEvictedConnections = 0;
+
+    long now = System.nanoTime();
+
+    IdleConnection idleConnection;
+
+    // The least recently released connections are at the end of the deque
+    while (((idleConnection = idleConnections.peekLast()) != null)
+        && ((now - idleConnection.released) > maximumIdleTime))
+    {
+      if (idleConnections.removeLastOccurrence(idleConnection))
+      {
+        JNDIUtil.close(idleConnection.dirContext);
+
+        numberOfEvictedConnections++;
+      }
+    }
+
+    return numberOfEvictedConnections;
+  }
+
+  /**
+   * Retrieve a connection from the pool, opening a new connection if no idle connection is
+   * available, waiting if all the connections are in use.
+   * <p/>
+   * The connection must be returned to the pool using <code>releaseConnection()</code> or
+   * discarded using <code>invalidateConnection()</code>.
+   *
+   * @return the connection
+   */
+  public DirContext getConnection()
+    throws NamingException
+  {
+    if (closed)
+    {
+      throw new ServiceUnavailableException(String.format(
+          "The LDAP connection pool (%s) has been closed", name));
+    }
+
+    try
+    {
+      if (!permits.tryAcquire(maximumWait, TimeUnit.MILLISECONDS))
+      {
+        throw new ServiceUnavailableException(String.format(
+            "Timed out after %d ms waiting for one of the %d connections in the LDAP connection "
+            + "pool (%s)", maximumWait, maximumSize, name));
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+
+      throw new InterruptedNamingException(String.format(
+          "Interrupted while waiting for a connection from the LDAP connection pool (%s)", name));
+    }
+
+    try
+    {
+      IdleConnection idleConnection;
+
+      while ((idleConnection = idleConnections.pollFirst()) != null)
+      {
+        long idleTime = System.nanoTime() - idleConnection.released;
+
+        if (idleTime > maximumIdleTime)
+        {
+          JNDIUtil.close(idleConnection.dirContext);
+        }
+        else if ((idleTime > validationInterval) && (!isValid(idleConnection.dirContext)))
+        {
+          numberOfInvalidConnections.increment();
+
+          JNDIUtil.close(idleConnection.dirContext);
+        }
+        else
+        {
+          return idleConnection.dirContext;
+        }
+      }
+
+      DirContext dirContext = connectionFactory.createConnection();
+
+      numberOfConnectionsCreated.increment();
+
+      return dirContext;
+    }
+    catch (Throwable e)
+    {
+      permits.release();
+
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the maximum number of connections that may be open at the same time.
+   *
+   * @return the maximum number of connections that may be open at the same time
+   */
+  public int getMaximumSize()
+  {
+    return maximumSize;
+  }
+
+  /**
+   * Returns the number of connections that are currently in use.
+   *
+   * @return the number of connections that are currently in use
+   */
+  public int getNumberOfActiveConnections()
+  {
+    return maximumSize - permits.availablePermits();
+  }
+
+  /**
+   * Returns the number of connections that have been opened.
+   *
+   * @return the number of connections that have been opened
+   */
+  public long getNumberOfConnectionsCreated()
+  {
+    return numberOfConnectionsCreated.sum();
+  }
+
+  /**
+   * Returns the number of connections that are currently idle.
+   *
+   * @return the number of connections that are currently idle
+   */
+  public int getNumberOfIdleConnections()
+  {
+    return idleConnections.size();
+  }
+
+  /**
+   * Returns the number of idle connections that were discarded because they failed validation.
+   *
+   * @return the number of idle connections that were discarded because they failed validation
+   */
+  public long getNumberOfInvalidConnections()
+  {
+    return numberOfInvalidConnections.sum();
+  }
+
+  /**
+   * Close a connection retrieved from the pool that can no longer be used, e.g. because an
+   * operation on the connection failed in a way that leaves it in an unknown state.
+   *
+   * @param dirContext the connection
+   */
+  public void invalidateConnection(DirContext dirContext)
+  {
+    if (dirContext != null)
+    {
+      JNDIUtil.close(dirContext);
+
+      permits.release();
+    }
+  }
+
+  /**
+   * Return a connection retrieved from the pool so that it can be reused.
+   *
+   * @param dirContext the connection
+   */
+  public void releaseConnection(DirContext dirContext)
+  {
+    if (dirContext == null)
+    {
+      return;
+    }
+
+    if (closed)
+    {
+      JNDIUtil.close(dirContext);
+    }
+    else
+    {
+      idleConnections.offerFirst(new IdleConnection(dirContext, System.nanoTime()));
+
+      // Make sure the connection is not left open if the pool was closed in the meantime
+      if (closed)
+      {
+        closeIdleConnections();
+      }
+    }
+
+    permits.release();
+
+    evictIdleConnections();
+  }
+
+  private void closeIdleConnections()
+  {
+    IdleConnection idleConnection;
+
+    while ((idleConnection = idleConnections.pollLast()) != null)
+    {
+      JNDIUtil.close(idleConnection.dirContext);
+    }
+  }
+
+  private boolean isValid(DirContext dirContext)
+  {
+    try
+    {
+      dirContext.getAttributes("", VALIDATION_ATTRIBUTES);
+
+      return true;
+    }
+    catch (Throwable e)
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug(String.format(
+            "Discarding a connection in the LDAP connection pool (%s) that failed validation",
+            name), e);
+      }
+
+      return false;
+    }
+  }
+
+  /**
+   * The <code>ConnectionFactory</code> interface defines the interface that must be implemented
+   * by the factory used to open the connections for an <code>LDAPConnectionPool</code>.
+   */
+  @FunctionalInterface
+  public interface ConnectionFactory
+  {
+    /**
+     * Open and bind a new connection.
+     *
+     * @return the new connection
+     */
+    DirContext createConnection()
+      throws NamingException;
+  }
+
+  /**
+   * The <code>IdleConnection</code> class holds an idle connection and the time it was released.
+   */
+  private static class IdleConnection
+  {
+    private DirContext dirContext;
+    private long released;
+
+    /**
+     * Constructs a new <code>IdleConnection</code>.
+     *
+     * @param dirContext the connection
+     * @param released   the value of <code>System.nanoTime()</code> when the connection was
+     *                   released
+     */
+    IdleConnection(DirContext dirContext, long released)
+    {
+      this.dirContext = dirContext;
+      this.released = released;
+    }
+  }
+}
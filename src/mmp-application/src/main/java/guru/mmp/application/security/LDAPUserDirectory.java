@@ -18,6 +18,7 @@ package guru.mmp.application.security;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.common.persistence.SortDirection;
 import guru.mmp.common.util.JNDIUtil;
 import guru.mmp.common.util.StringUtil;
 import org.slf4j.Logger;
@@ -28,13 +29,23 @@ import javax.inject.Inject;
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.SizeLimitExceededException;
 import javax.naming.directory.*;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
 import javax.naming.ldap.LdapName;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.SortControl;
+import javax.naming.ldap.SortKey;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -44,7 +55,31 @@ import java.util.*;
  * @author Marcus Portmann
  */
 public class LDAPUserDirectory extends UserDirectoryBase
+  implements AutoCloseable
 {
+  /**
+   * The default maximum number of pooled connections to the LDAP server.
+   */
+  public static final int DEFAULT_CONNECTION_POOL_SIZE = 10;
+
+  /**
+   * The default maximum time in milliseconds a pooled connection may remain idle before it is
+   * closed.
+   */
+  public static final int DEFAULT_CONNECTION_POOL_MAX_IDLE_TIME = 300000;
+
+  /**
+   * The default maximum time in milliseconds to wait for a pooled connection when all the
+   * connections are in use.
+   */
+  public static final int DEFAULT_CONNECTION_POOL_MAX_WAIT = 30000;
+
+  /**
+   * The default time in milliseconds a pooled connection may remain idle before it is validated
+   * before being reused.
+   */
+  public static final int DEFAULT_CONNECTION_POOL_VALIDATION_INTERVAL = 10000;
+
   /**
    * The default number of failed password attempts before the user is locked.
    */
@@ -74,6 +109,11 @@ public class LDAPUserDirectory extends UserDirectoryBase
    * The default maximum length of a users's password history.
    */
   private static final int DEFAULT_PASSWORD_HISTORY_MAX_LENGTH = 128;
+
+  /**
+   * The default number of entries to retrieve per page when searching for users.
+   */
+  private static final int DEFAULT_SEARCH_PAGE_SIZE = 500;
   private static final String[] EMPTY_ATTRIBUTE_LIST = new String[0];
 
   /* Logger */
@@ -89,6 +129,20 @@ public class LDAPUserDirectory extends UserDirectoryBase
   private LdapName baseDN;
   private String bindDN;
   private String bindPassword;
+
+  /**
+   * The pool of connections bound using the bind DN for the user directory.
+   * <p/>
+   * A connection is only returned to the pool when the operation using it succeeds. If the
+   * operation fails, e.g. because of a communication error, the connection is invalidated since
+   * it may no longer be usable.
+   */
+  private LDAPConnectionPool connectionPool;
+
+  /**
+   * The optional pool of connections that are rebound to verify the passwords for users.
+   */
+  private LDAPConnectionPool authenticationConnectionPool;
   private LdapName groupBaseDN;
   private String groupDescriptionAttribute;
   private String groupMemberAttribute;
@@ -103,6 +157,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
   private int passwordHistoryMaxLength;
   private int passwordHistoryMonths;
   private int port;
+  private int searchPageSize;
   private LdapName sharedBaseDN;
   private boolean supportPasswordHistory;
   private boolean useSSL;
@@ -423,6 +478,45 @@ public class LDAPUserDirectory extends UserDirectoryBase
       {
         maxFilteredGroups = DEFAULT_MAX_FILTERED_GROUPS;
       }
+
+      if (parameters.containsKey("SearchPageSize"))
+      {
+        searchPageSize = Integer.parseInt(parameters.get("SearchPageSize"));
+      }
+      else
+      {
+        searchPageSize = DEFAULT_SEARCH_PAGE_SIZE;
+      }
+
+      int connectionPoolSize = parameters.containsKey("ConnectionPoolSize")
+          ? Integer.parseInt(parameters.get("ConnectionPoolSize"))
+          : DEFAULT_CONNECTION_POOL_SIZE;
+
+      long connectionPoolMaxIdleTime = parameters.containsKey("ConnectionPoolMaxIdleTime")
+          ? Long.parseLong(parameters.get("ConnectionPoolMaxIdleTime"))
+          : DEFAULT_CONNECTION_POOL_MAX_IDLE_TIME;
+
+      long connectionPoolValidationInterval = parameters.containsKey(
+          "ConnectionPoolValidationInterval")
+          ? Long.parseLong(parameters.get("ConnectionPoolValidationInterval"))
+          : DEFAULT_CONNECTION_POOL_VALIDATION_INTERVAL;
+
+      long connectionPoolMaxWait = parameters.containsKey("ConnectionPoolMaxWait")
+          ? Long.parseLong(parameters.get("ConnectionPoolMaxWait"))
+          : DEFAULT_CONNECTION_POOL_MAX_WAIT;
+
+      connectionPool = new LDAPConnectionPool(String.valueOf(userDirectoryId), connectionPoolSize,
+          connectionPoolMaxIdleTime, connectionPoolValidationInterval, connectionPoolMaxWait,
+          TimeUnit.MILLISECONDS, () -> createDirContext(bindDN, bindPassword));
+
+      if (parameters.containsKey("PooledAuthentication")
+          && Boolean.parseBoolean(parameters.get("PooledAuthentication")))
+      {
+        authenticationConnectionPool = new LDAPConnectionPool(userDirectoryId + " Authentication",
+            connectionPoolSize, connectionPoolMaxIdleTime, connectionPoolValidationInterval,
+            connectionPoolMaxWait, TimeUnit.MILLISECONDS, () -> createDirContext(bindDN,
+            bindPassword));
+      }
     }
     catch (Throwable e)
     {
@@ -445,7 +539,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -499,13 +593,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to add the user (%s) to the security group (%s) for the user directory (%s): %s",
           username, groupName, getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -527,7 +625,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -610,13 +708,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to change the password for the user (%s) for the user directory (%s): %s",
           username, getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -634,7 +736,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       User user = getUser(dirContext, username);
 
@@ -663,11 +765,9 @@ public class LDAPUserDirectory extends UserDirectoryBase
         }
       }
 
-      DirContext userDirContext = null;
-
       try
       {
-        getDirContext(user.getProperty("dn"), password);
+        verifyPassword(user.getProperty("dn"), password);
 
         user.setPassword(password);
       }
@@ -692,10 +792,6 @@ public class LDAPUserDirectory extends UserDirectoryBase
               getUserDirectoryId()), e);
         }
       }
-      finally
-      {
-        JNDIUtil.close(userDirContext);
-      }
     }
     catch (AuthenticationFailedException | UserNotFoundException | UserLockedException
         | ExpiredPasswordException e)
@@ -704,13 +800,30 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to authenticate the user (%s) for the user directory (%s): %s", username,
           getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
+    }
+  }
+
+  /**
+   * Close the pooled connections to the LDAP server.
+   */
+  public void close()
+  {
+    connectionPool.close();
+
+    if (authenticationConnectionPool != null)
+    {
+      authenticationConnectionPool.close();
     }
   }
 
@@ -825,7 +938,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName groupDN = getGroupDN(dirContext, group.getGroupName());
 
@@ -857,13 +970,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to create the security group (%s) for the user directory (%s): %s",
           group.getGroupName(), getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -881,7 +998,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, user.getUsername());
 
@@ -984,13 +1101,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to create the user (%s) for the user directory (%s): %s", user.getUsername(),
           getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1006,7 +1127,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName groupDN = getGroupDN(dirContext, groupName);
 
@@ -1034,13 +1155,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to delete the security group (%s) for the user directory (%s): %s", groupName,
           getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1056,7 +1181,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -1073,13 +1198,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to delete the user (%s) for the user directory (%s): %s", username,
           getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1099,7 +1228,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       String searchFilter = "(objectClass=" + userObjectClass + ")";
 
@@ -1175,6 +1304,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to find the users for the user directory (%s): %s", getUserDirectoryId(),
           e.getMessage()), e);
@@ -1183,12 +1316,40 @@ public class LDAPUserDirectory extends UserDirectoryBase
     {
       JNDIUtil.close(searchResultsSharedUsers);
       JNDIUtil.close(searchResultsNonSharedUsers);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
+    }
+  }
+
+  /**
+   * Invoke the consumer for each of the filtered users.
+   * <p/>
+   * The users are retrieved from the LDAP server a page at a time using the Simple Paged Results
+   * control (RFC 2696), if the LDAP server supports it, instead of being loaded all at once.
+   *
+   * @param filter   the filter to apply to the users
+   * @param consumer the consumer to invoke for each of the filtered users
+   */
+  public void forEachFilteredUser(String filter, Consumer<User> consumer)
+    throws SecurityException
+  {
+    try
+    {
+      searchUsers(buildUserSearchFilter(filter), null, getSortKeys(UserSortBy.USERNAME,
+          SortDirection.ASCENDING), 0, -1, (searchResult, isShared) -> consumer.accept(
+          buildUserFromSearchResult(searchResult, isShared)));
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(String.format(
+          "Failed to process the filtered users for the user directory (%s): %s",
+          getUserDirectoryId(), e.getMessage()), e);
     }
   }
 
   /**
    * Retrieve the filtered list of users.
+   * <p/>
+   * At most <b>MaxFilteredUsers</b> users are returned.
    *
    * @param filter the filter to apply to the users
    *
@@ -1197,48 +1358,95 @@ public class LDAPUserDirectory extends UserDirectoryBase
   public List<User> getFilteredUsers(String filter)
     throws SecurityException
   {
-    DirContext dirContext = null;
-    NamingEnumeration<SearchResult> searchResultsNonSharedUsers = null;
-    NamingEnumeration<SearchResult> searchResultsSharedUsers = null;
+    return getFilteredUsers(filter, UserSortBy.USERNAME, SortDirection.ASCENDING, 0,
+        maxFilteredUsers);
+  }
 
+  /**
+   * Retrieve a page of the filtered list of users.
+   * <p/>
+   * The users are retrieved using the Simple Paged Results control (RFC 2696) and sorted using
+   * the Server Side Sort control (RFC 2891) if the LDAP server supports these controls.
+   *
+   * @param filter        the filter to apply to the users
+   * @param sortBy        the attribute used to sort the users
+   * @param sortDirection the direction used to sort the users
+   * @param offset        the number of filtered users to skip
+   * @param limit         the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  public List<User> getFilteredUsers(String filter, UserSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws SecurityException
+  {
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
-
-      String searchFilter = String.format("(objectClass=%s)", userObjectClass);
+      List<User> users = new ArrayList<>();
 
-      if (!StringUtil.isNullOrEmpty(filter))
-      {
-        searchFilter = String.format("(&(objectClass=%s)(|(%s=*%s*)(%s=*%s*)(%s=*%s*)))",
-            userObjectClass, userUsernameAttribute, filter, userFirstNameAttribute, filter,
-            userLastNameAttribute, filter);
-      }
+      searchUsers(buildUserSearchFilter(filter), null, getSortKeys(sortBy, sortDirection), offset,
+          limit, (searchResult, isShared) -> users.add(buildUserFromSearchResult(searchResult,
+          isShared)));
 
-      SearchControls searchControls = new SearchControls();
-      searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-      searchControls.setReturningObjFlag(false);
-      searchControls.setCountLimit(maxFilteredUsers);
+      return users;
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(String.format(
+          "Failed to retrieve the filtered users for the user directory (%s): %s",
+          getUserDirectoryId(), e.getMessage()), e);
+    }
+  }
 
+  /**
+   * Retrieve the page of the filtered list of users, sorted by username, that follows the user
+   * with the specified username.
+   * <p/>
+   * The users following the specified username are selected using a <b>&gt;=</b> filter on the
+   * username attribute and are sorted using the Server Side Sort control (RFC 2891), which must
+   * be supported by the LDAP server for the pages to be consistent.
+   *
+   * @param filter   the filter to apply to the users
+   * @param username the username for the last user on the previous page or <code>null</code> to
+   *                 retrieve the first page
+   * @param limit    the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  public List<User> getFilteredUsersAfter(String filter, String username, int limit)
+    throws SecurityException
+  {
+    try
+    {
       List<User> users = new ArrayList<>();
 
-      searchResultsNonSharedUsers = dirContext.search(userBaseDN, searchFilter, searchControls);
+      String searchFilter = buildUserSearchFilter(filter);
 
-      while (searchResultsNonSharedUsers.hasMore() && (users.size() <= maxFilteredUsers))
+      if (username != null)
       {
-        users.add(buildUserFromSearchResult(searchResultsNonSharedUsers.next(), false));
+        searchFilter = String.format("(&%s(%s>=%s))", searchFilter, userUsernameAttribute,
+            escapeFilterValue(username));
       }
 
-      if (sharedBaseDN != null)
-      {
-        searchResultsSharedUsers = dirContext.search(sharedBaseDN, searchFilter, searchControls);
+      // Retrieve one additional user to allow for the last user on the previous page, which is
+      // matched by the >= filter and excluded
+      searchUsers(searchFilter, null, getSortKeys(UserSortBy.USERNAME, SortDirection.ASCENDING),
+          0, ((username == null) || (limit < 0))
+          ? limit
+          : limit + 1, (searchResult, isShared) ->
+          {
+            User user = buildUserFromSearchResult(searchResult, isShared);
 
-        while (searchResultsSharedUsers.hasMore() && (users.size() <= maxFilteredUsers))
-        {
-          users.add(buildUserFromSearchResult(searchResultsSharedUsers.next(), true));
-        }
-      }
+            if ((username == null) || (!user.getUsername().equalsIgnoreCase(username)))
+            {
+              users.add(user);
+            }
+          }
+          );
 
-      return users;
+      return ((limit >= 0) && (users.size() > limit))
+          ? users.subList(0, limit)
+          : users;
     }
     catch (Throwable e)
     {
@@ -1246,12 +1454,6 @@ public class LDAPUserDirectory extends UserDirectoryBase
           "Failed to retrieve the filtered users for the user directory (%s): %s",
           getUserDirectoryId(), e.getMessage()), e);
     }
-    finally
-    {
-      JNDIUtil.close(searchResultsSharedUsers);
-      JNDIUtil.close(searchResultsNonSharedUsers);
-      JNDIUtil.close(dirContext);
-    }
   }
 
   /**
@@ -1269,7 +1471,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -1353,6 +1555,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to retrieve the function codes for the user (%s) for the user directory (%s): %s",
           username, getUserDirectoryId(), e.getMessage()), e);
@@ -1360,7 +1566,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
     finally
     {
       JNDIUtil.close(searchResults);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1379,7 +1585,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       String searchFilter = String.format("(&(objectClass=%s)(%s=%s))", groupObjectClass,
           groupNameAttribute, groupName);
@@ -1406,6 +1612,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to retrieve the security group (%s) for the user directory (%s): %s", groupName,
           getUserDirectoryId(), e.getMessage()), e);
@@ -1413,7 +1623,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
     finally
     {
       JNDIUtil.close(searchResults);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1432,7 +1642,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -1472,6 +1682,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to retrieve the security group names for the user (%s) for the user directory (%s): %s",
           username, getUserDirectoryId(), e.getMessage()), e);
@@ -1479,7 +1693,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
     finally
     {
       JNDIUtil.close(searchResults);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1496,7 +1710,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       String searchFilter = String.format("(objectClass=%s)", groupObjectClass);
 
@@ -1518,6 +1732,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to retrieve the security groups for the user directory (%s): %s",
           getUserDirectoryId(), e.getMessage()), e);
@@ -1525,7 +1743,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
     finally
     {
       JNDIUtil.close(searchResults);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1544,7 +1762,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -1578,6 +1796,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to retrieve the security groups for the user (%s) for the user directory (%s): %s",
           username, getUserDirectoryId(), e.getMessage()), e);
@@ -1585,67 +1807,27 @@ public class LDAPUserDirectory extends UserDirectoryBase
     finally
     {
       JNDIUtil.close(searchResults);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
   /**
    * Retrieve the number of filtered users.
+   * <p/>
+   * The count is capped at the maximum number of filtered users for the user directory so that
+   * the whole LDAP directory is not enumerated every time the users are counted.
    *
    * @param filter the filter to apply to the users
    *
-   * @return the number of filtered users
+   * @return the number of filtered users up to the maximum number of filtered users
    */
   public int getNumberOfFilteredUsers(String filter)
     throws SecurityException
   {
-    DirContext dirContext = null;
-    NamingEnumeration<SearchResult> searchResultsNonSharedUsers = null;
-    NamingEnumeration<SearchResult> searchResultsSharedUsers = null;
-
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
-
-      String searchFilter = String.format("(objectClass=%s)", userObjectClass);
-
-      if (!StringUtil.isNullOrEmpty(filter))
-      {
-        searchFilter = String.format("(&(objectClass=%s)(|(%s=*%s*)(%s=*%s*)(%s=*%s*)))",
-            userObjectClass, userUsernameAttribute, filter, userFirstNameAttribute, filter,
-            userLastNameAttribute, filter);
-      }
-
-      SearchControls searchControls = new SearchControls();
-      searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-      searchControls.setReturningObjFlag(false);
-      searchControls.setReturningAttributes(EMPTY_ATTRIBUTE_LIST);
-      searchControls.setCountLimit(maxFilteredUsers);
-
-      int numberOfUsers = 0;
-
-      searchResultsNonSharedUsers = dirContext.search(userBaseDN, searchFilter, searchControls);
-
-      while (searchResultsNonSharedUsers.hasMore() && (numberOfUsers <= maxFilteredUsers))
-      {
-        searchResultsNonSharedUsers.next();
-
-        numberOfUsers++;
-      }
-
-      if (sharedBaseDN != null)
-      {
-        searchResultsSharedUsers = dirContext.search(sharedBaseDN, searchFilter, searchControls);
-
-        while (searchResultsSharedUsers.hasMore() && (numberOfUsers <= maxFilteredUsers))
-        {
-          searchResultsSharedUsers.next();
-
-          numberOfUsers++;
-        }
-      }
-
-      return numberOfUsers;
+      return searchUsers(buildUserSearchFilter(filter), EMPTY_ATTRIBUTE_LIST, null, 0,
+          maxFilteredUsers, (searchResult, isShared) -> {});
     }
     catch (Throwable e)
     {
@@ -1653,12 +1835,6 @@ public class LDAPUserDirectory extends UserDirectoryBase
           "Failed to retrieve the number of filtered users for the user directory (%s):%s",
           getUserDirectoryId(), e.getMessage()), e);
     }
-    finally
-    {
-      JNDIUtil.close(searchResultsSharedUsers);
-      JNDIUtil.close(searchResultsNonSharedUsers);
-      JNDIUtil.close(dirContext);
-    }
   }
 
   /**
@@ -1674,7 +1850,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       String searchFilter = String.format("(objectClass=%s)", groupObjectClass);
 
@@ -1699,6 +1875,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to retrieve the number of security groups for the user directory (%s):%s",
           getUserDirectoryId(), e.getMessage()), e);
@@ -1706,58 +1886,25 @@ public class LDAPUserDirectory extends UserDirectoryBase
     finally
     {
       JNDIUtil.close(searchResults);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
   /**
    * Retrieve the number of users.
+   * <p/>
+   * The count is capped at the maximum number of filtered users for the user directory so that
+   * the whole LDAP directory is not enumerated every time the users are counted.
    *
-   * @return the number of users
+   * @return the number of users up to the maximum number of filtered users
    */
   public int getNumberOfUsers()
     throws SecurityException
   {
-    DirContext dirContext = null;
-    NamingEnumeration<SearchResult> searchResultsNonSharedUsers = null;
-    NamingEnumeration<SearchResult> searchResultsSharedUsers = null;
-
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
-
-      String searchFilter = "(objectClass=" + userObjectClass + ")";
-
-      SearchControls searchControls = new SearchControls();
-      searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-      searchControls.setReturningObjFlag(false);
-      searchControls.setReturningAttributes(EMPTY_ATTRIBUTE_LIST);
-      searchControls.setCountLimit(maxFilteredUsers);
-
-      int numberOfUsers = 0;
-
-      searchResultsNonSharedUsers = dirContext.search(userBaseDN, searchFilter, searchControls);
-
-      while (searchResultsNonSharedUsers.hasMore() && (numberOfUsers <= maxFilteredUsers))
-      {
-        searchResultsNonSharedUsers.next();
-
-        numberOfUsers++;
-      }
-
-      if (sharedBaseDN != null)
-      {
-        searchResultsSharedUsers = dirContext.search(sharedBaseDN, searchFilter, searchControls);
-
-        while (searchResultsSharedUsers.hasMore() && (numberOfUsers <= maxFilteredUsers))
-        {
-          searchResultsSharedUsers.next();
-
-          numberOfUsers++;
-        }
-      }
-
-      return numberOfUsers;
+      return searchUsers(buildUserSearchFilter(null), EMPTY_ATTRIBUTE_LIST, null, 0,
+          maxFilteredUsers, (searchResult, isShared) -> {});
     }
     catch (Throwable e)
     {
@@ -1765,12 +1912,6 @@ public class LDAPUserDirectory extends UserDirectoryBase
           "Failed to retrieve the number of users for the user directory (%s):%s",
           getUserDirectoryId(), e.getMessage()), e);
     }
-    finally
-    {
-      JNDIUtil.close(searchResultsSharedUsers);
-      JNDIUtil.close(searchResultsNonSharedUsers);
-      JNDIUtil.close(dirContext);
-    }
   }
 
   /**
@@ -1787,7 +1928,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       User user = getUser(dirContext, username);
 
@@ -1805,57 +1946,37 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to retrieve the user (%s) for the user directory (%s): %s", username,
           getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
   /**
    * Retrieve all the users.
+   * <p/>
+   * At most <b>MaxFilteredUsers</b> users are returned.
    *
    * @return the list of users
    */
   public List<User> getUsers()
     throws SecurityException
   {
-    DirContext dirContext = null;
-    NamingEnumeration<SearchResult> searchResultsNonSharedUsers = null;
-    NamingEnumeration<SearchResult> searchResultsSharedUsers = null;
-
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
-
-      String searchFilter = String.format("(objectClass=%s)", userObjectClass);
-
-      SearchControls searchControls = new SearchControls();
-      searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-      searchControls.setReturningObjFlag(false);
-      searchControls.setCountLimit(maxFilteredUsers);
-
       List<User> users = new ArrayList<>();
 
-      searchResultsNonSharedUsers = dirContext.search(userBaseDN, searchFilter, searchControls);
-
-      while (searchResultsNonSharedUsers.hasMore() && (users.size() <= maxFilteredUsers))
-      {
-        users.add(buildUserFromSearchResult(searchResultsNonSharedUsers.next(), false));
-      }
-
-      if (sharedBaseDN != null)
-      {
-        searchResultsSharedUsers = dirContext.search(sharedBaseDN, searchFilter, searchControls);
-
-        while (searchResultsSharedUsers.hasMore() && (users.size() <= maxFilteredUsers))
-        {
-          users.add(buildUserFromSearchResult(searchResultsSharedUsers.next(), true));
-        }
-      }
+      searchUsers(buildUserSearchFilter(null), null, getSortKeys(UserSortBy.USERNAME,
+          SortDirection.ASCENDING), 0, maxFilteredUsers, (searchResult, isShared) -> users.add(
+          buildUserFromSearchResult(searchResult, isShared)));
 
       return users;
     }
@@ -1865,12 +1986,6 @@ public class LDAPUserDirectory extends UserDirectoryBase
           "Failed to retrieve the users for the user directory (%s): %s", getUserDirectoryId(),
           e.getMessage()), e);
     }
-    finally
-    {
-      JNDIUtil.close(searchResultsSharedUsers);
-      JNDIUtil.close(searchResultsNonSharedUsers);
-      JNDIUtil.close(dirContext);
-    }
   }
 
   /**
@@ -1890,7 +2005,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       String searchFilter = String.format("(&(objectClass=%s)(%s=%s))", userObjectClass,
           userUsernameAttribute, username);
@@ -1922,6 +2037,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to check whether the user (%s) is an existing user for the user directory (%s)",
           username, getUserDirectoryId()), e);
@@ -1930,7 +2049,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
     {
       JNDIUtil.close(searchResultsSharedUsers);
       JNDIUtil.close(searchResultsNonSharedUsers);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -1951,7 +2070,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -1994,6 +2113,10 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to check if the user (%s) is in the security group (%s) for the user directory (%s): %s",
           username, groupName, getUserDirectoryId(), e.getMessage()), e);
@@ -2001,7 +2124,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
     finally
     {
       JNDIUtil.close(searchResults);
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -2018,7 +2141,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, username);
 
@@ -2074,13 +2197,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to remove the user (%s) from the security group (%s) for the user directory (%s): %s",
           username, groupName, getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -2118,7 +2245,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName groupDN = getGroupDN(dirContext, group.getGroupName());
 
@@ -2148,13 +2275,17 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException(String.format(
           "Failed to update the security group (%s) for the user directory (%s): %s",
           group.getGroupName(), getUserDirectoryId(), e.getMessage()), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
     }
   }
 
@@ -2172,7 +2303,7 @@ public class LDAPUserDirectory extends UserDirectoryBase
 
     try
     {
-      dirContext = getDirContext(bindDN, bindPassword);
+      dirContext = connectionPool.getConnection();
 
       LdapName userDN = getUserDN(dirContext, user.getUsername());
 
@@ -2260,12 +2391,53 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
     catch (Throwable e)
     {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
       throw new SecurityException("Failed to update the user (" + user.getUsername()
           + ") for the user directory (" + getUserDirectoryId() + "): " + e.getMessage(), e);
     }
     finally
     {
-      JNDIUtil.close(dirContext);
+      connectionPool.releaseConnection(dirContext);
+    }
+  }
+
+  /**
+   * Abandon the paged search with the specified cookie so the LDAP server can release the
+   * resources for the remaining pages.
+   * <p/>
+   * A paged search is abandoned by repeating the search with a Simple Paged Results control with
+   * a page size of zero and the cookie returned for the last page (RFC 2696).
+   *
+   * @param dirContext     the connection to the LDAP server the paged search was performed with
+   * @param baseDN         the base DN for the paged search
+   * @param searchFilter   the LDAP search filter for the paged search
+   * @param searchControls the search controls for the paged search
+   * @param sortKeys       the keys used to sort the results of the paged search or
+   *                       <code>null</code> if the results were not sorted
+   * @param cookie         the cookie returned for the last page
+   */
+  private void abandonPagedSearch(LdapContext dirContext, LdapName baseDN, String searchFilter,
+      SearchControls searchControls, SortKey[] sortKeys, byte[] cookie)
+  {
+    NamingEnumeration<SearchResult> searchResults = null;
+
+    try
+    {
+      setPagedSearchRequestControls(dirContext, sortKeys, 0, cookie);
+
+      searchResults = dirContext.search(baseDN, searchFilter, searchControls);
+    }
+    catch (Throwable e)
+    {
+      logger.debug(String.format("Failed to abandon the paged search for the users under the "
+          + "base DN (%s) for the user directory (%s)", baseDN, getUserDirectoryId()), e);
+    }
+    finally
+    {
+      JNDIUtil.close(searchResults);
     }
   }
 
@@ -2389,36 +2561,85 @@ public class LDAPUserDirectory extends UserDirectoryBase
     return user;
   }
 
-  private DirContext getDirContext(String userDN, String password)
-    throws SecurityException
+  private String buildUserSearchFilter(String filter)
   {
-    try
+    if (StringUtil.isNullOrEmpty(filter))
+    {
+      return String.format("(objectClass=%s)", userObjectClass);
+    }
+    else
     {
-      String url = useSSL
-          ? "ldaps://"
-          : "ldap://";
-      url += host;
-      url += ":";
-      url += port;
+      return String.format("(&(objectClass=%s)(|(%s=*%s*)(%s=*%s*)(%s=*%s*)))", userObjectClass,
+          userUsernameAttribute, filter, userFirstNameAttribute, filter, userLastNameAttribute,
+          filter);
+    }
+  }
 
-      String connectionType = "simple";
+  private LdapContext createDirContext(String userDN, String password)
+    throws NamingException
+  {
+    String url = useSSL
+        ? "ldaps://"
+        : "ldap://";
+    url += host;
+    url += ":";
+    url += port;
 
-      Hashtable<String, String> environment = new Hashtable<>();
+    String connectionType = "simple";
 
-      environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-      environment.put(Context.PROVIDER_URL, url);
-      environment.put(Context.SECURITY_AUTHENTICATION, connectionType);
-      environment.put(Context.SECURITY_PRINCIPAL, userDN);
-      environment.put(Context.SECURITY_CREDENTIALS, password);
+    Hashtable<String, String> environment = new Hashtable<>();
 
-      return new InitialDirContext(environment);
-    }
-    catch (Throwable e)
+    environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+    environment.put(Context.PROVIDER_URL, url);
+    environment.put(Context.SECURITY_AUTHENTICATION, connectionType);
+    environment.put(Context.SECURITY_PRINCIPAL, userDN);
+    environment.put(Context.SECURITY_CREDENTIALS, password);
+
+    return new InitialLdapContext(environment, null);
+  }
+
+  /**
+   * Escape the special characters in the specified value so it can be used as an assertion
+   * value in an LDAP search filter (RFC 4515).
+   *
+   * @param value the value to escape
+   *
+   * @return the escaped value
+   */
+  private static String escapeFilterValue(String value)
+  {
+    StringBuilder buffer = new StringBuilder(value.length());
+
+    for (char ch : value.toCharArray())
     {
-      throw new SecurityException(String.format(
-          "Failed to retrieve the JNDI directory context for the user directory (%s)",
-          getUserDirectoryId()), e);
+      switch (ch)
+      {
+        case '\\':
+          buffer.append("\\5c");
+          break;
+
+        case '*':
+          buffer.append("\\2a");
+          break;
+
+        case '(':
+          buffer.append("\\28");
+          break;
+
+        case ')':
+          buffer.append("\\29");
+          break;
+
+        case '\u0000':
+          buffer.append("\\00");
+          break;
+
+        default:
+          buffer.append(ch);
+      }
     }
+
+    return buffer.toString();
   }
 
   private LdapName getGroupDN(DirContext dirContext, String groupName)
@@ -2560,6 +2781,45 @@ public class LDAPUserDirectory extends UserDirectoryBase
     }
   }
 
+  private byte[] getPagedResultsCookie(Control[] responseControls)
+  {
+    if (responseControls != null)
+    {
+      for (Control responseControl : responseControls)
+      {
+        if (responseControl instanceof PagedResultsResponseControl)
+        {
+          byte[] cookie = ((PagedResultsResponseControl) responseControl).getCookie();
+
+          return ((cookie != null) && (cookie.length > 0))
+              ? cookie
+              : null;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  private SortKey[] getSortKeys(UserSortBy sortBy, SortDirection sortDirection)
+  {
+    boolean ascending = sortDirection.isAscending();
+
+    switch (sortBy)
+    {
+      case FIRST_NAME:
+        return new SortKey[] { new SortKey(userFirstNameAttribute, ascending, null),
+            new SortKey(userUsernameAttribute, ascending, null) };
+
+      case LAST_NAME:
+        return new SortKey[] { new SortKey(userLastNameAttribute, ascending, null),
+            new SortKey(userUsernameAttribute, ascending, null) };
+
+      default:
+        return new SortKey[] { new SortKey(userUsernameAttribute, ascending, null) };
+    }
+  }
+
   private LdapName getUserDN(DirContext dirContext, String username)
     throws SecurityException
   {
@@ -2734,4 +2994,253 @@ public class LDAPUserDirectory extends UserDirectoryBase
           passwordHash, username, getUserDirectoryId(), e.getMessage()), e);
     }
   }
+
+  /**
+   * Search for the users matching the search filter under the user base DN and the shared base
+   * DN, if one is configured.
+   * <p/>
+   * The search results are retrieved a page at a time using the Simple Paged Results control
+   * (RFC 2696) and sorted using the Server Side Sort control (RFC 2891). Both controls are
+   * non-critical so they are ignored by LDAP servers that do not support them. The search stops
+   * as soon as the limit has been reached and the paged search is abandoned so the LDAP server
+   * can release the resources for the remaining pages.
+   *
+   * @param searchFilter        the LDAP search filter
+   * @param returningAttributes the attributes to retrieve for each user or <code>null</code> to
+   *                            retrieve all the attributes
+   * @param sortKeys            the keys used to sort the users or <code>null</code> if the users
+   *                            do not need to be sorted
+   * @param offset              the number of matching users to skip
+   * @param limit               the maximum number of matching users to process or -1 to process
+   *                            all the matching users
+   * @param processor           the processor for the search results for the matching users
+   *
+   * @return the number of matching users that were processed
+   */
+  private int searchUsers(String searchFilter, String[] returningAttributes, SortKey[] sortKeys,
+      int offset, int limit, SearchResultProcessor processor)
+    throws Exception
+  {
+    if (limit == 0)
+    {
+      return 0;
+    }
+
+    LdapContext dirContext = null;
+
+    try
+    {
+      dirContext = (LdapContext) connectionPool.getConnection();
+
+      SearchControls searchControls = new SearchControls();
+      searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+      searchControls.setReturningObjFlag(false);
+      searchControls.setReturningAttributes(returningAttributes);
+
+      int numberOfSkippedUsers = 0;
+      int numberOfProcessedUsers = 0;
+
+      LdapName[] baseDNs = (sharedBaseDN == null)
+          ? new LdapName[] { userBaseDN }
+          : new LdapName[] { userBaseDN, sharedBaseDN };
+
+      for (LdapName baseDN : baseDNs)
+      {
+        boolean isShared = (baseDN == sharedBaseDN);
+
+        byte[] cookie = null;
+
+        do
+        {
+          /*
+           * Do not request more users than are required to reach the limit so the last page ends
+           * at the limit instead of returning results that are discarded.
+           */
+          int pageSize = (limit > 0)
+              ? Math.min(searchPageSize, (offset - numberOfSkippedUsers) + (limit
+              - numberOfProcessedUsers))
+              : searchPageSize;
+
+          setPagedSearchRequestControls(dirContext, sortKeys, pageSize, cookie);
+
+          NamingEnumeration<SearchResult> searchResults = dirContext.search(baseDN, searchFilter,
+              searchControls);
+
+          boolean isPageComplete = false;
+
+          try
+          {
+            while (true)
+            {
+              if (!searchResults.hasMore())
+              {
+                isPageComplete = true;
+
+                break;
+              }
+
+              if ((limit > 0) && (numberOfProcessedUsers >= limit))
+              {
+                break;
+              }
+
+              SearchResult searchResult = searchResults.next();
+
+              if (numberOfSkippedUsers < offset)
+              {
+                numberOfSkippedUsers++;
+              }
+              else
+              {
+                processor.process(searchResult, isShared);
+
+                numberOfProcessedUsers++;
+              }
+            }
+          }
+          catch (SizeLimitExceededException e)
+          {
+            logger.warn(String.format("The search for the users under the base DN (%s) for the "
+                + "user directory (%s) exceeded the size limit for the LDAP server and returned "
+                + "%d users", baseDN, getUserDirectoryId(), numberOfSkippedUsers
+                + numberOfProcessedUsers));
+
+            break;
+          }
+          finally
+          {
+            JNDIUtil.close(searchResults);
+          }
+
+          /*
+           * The response controls, and the cookie for the next page, are only available once all
+           * the search results for the page have been read.
+           */
+          cookie = isPageComplete
+              ? getPagedResultsCookie(dirContext.getResponseControls())
+              : null;
+
+          if ((limit > 0) && (numberOfProcessedUsers >= limit))
+          {
+            if (cookie != null)
+            {
+              abandonPagedSearch(dirContext, baseDN, searchFilter, searchControls, sortKeys,
+                  cookie);
+            }
+
+            return numberOfProcessedUsers;
+          }
+        }
+        while (cookie != null);
+      }
+
+      return numberOfProcessedUsers;
+    }
+    catch (Throwable e)
+    {
+      connectionPool.invalidateConnection(dirContext);
+
+      dirContext = null;
+
+      throw e;
+    }
+    finally
+    {
+      if (dirContext != null)
+      {
+        try
+        {
+          // Make sure the controls are not used for later operations on the pooled connection
+          dirContext.setRequestControls(null);
+
+          connectionPool.releaseConnection(dirContext);
+        }
+        catch (Throwable e)
+        {
+          connectionPool.invalidateConnection(dirContext);
+        }
+      }
+    }
+  }
+
+  private void setPagedSearchRequestControls(LdapContext dirContext, SortKey[] sortKeys,
+      int pageSize, byte[] cookie)
+    throws Exception
+  {
+    dirContext.setRequestControls((sortKeys == null)
+        ? new Control[] { new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL) }
+        : new Control[] { new SortControl(sortKeys, Control.NONCRITICAL),
+        new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL) });
+  }
+
+  /**
+   * Verify the password for the user by binding to the LDAP server as the user.
+   * <p/>
+   * If pooled authentication is enabled an existing connection is rebound as the user instead of
+   * opening a new connection.
+   *
+   * @param userDN   the DN for the user
+   * @param password the password being verified
+   */
+  private void verifyPassword(String userDN, String password)
+    throws SecurityException
+  {
+    try
+    {
+      // An empty password results in an unauthenticated bind that always succeeds
+      if (StringUtil.isNullOrEmpty(password))
+      {
+        throw new javax.naming.AuthenticationException("No password was specified");
+      }
+
+      if (authenticationConnectionPool == null)
+      {
+        JNDIUtil.close(createDirContext(userDN, password));
+      }
+      else
+      {
+        LdapContext dirContext = (LdapContext) authenticationConnectionPool.getConnection();
+
+        try
+        {
+          dirContext.addToEnvironment(Context.SECURITY_PRINCIPAL, userDN);
+          dirContext.addToEnvironment(Context.SECURITY_CREDENTIALS, password);
+
+          dirContext.reconnect(null);
+        }
+        catch (Throwable e)
+        {
+          // The state of the connection after a failed bind is unknown so it cannot be reused
+          authenticationConnectionPool.invalidateConnection(dirContext);
+
+          throw e;
+        }
+
+        authenticationConnectionPool.releaseConnection(dirContext);
+      }
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(String.format(
+          "Failed to verify the password for the user (%s) for the user directory (%s)", userDN,
+          getUserDirectoryId()), e);
+    }
+  }
+
+  /**
+   * The <code>SearchResultProcessor</code> interface defines the interface for the processors
+   * that process the search results for the users retrieved from the LDAP server.
+   */
+  @FunctionalInterface
+  private interface SearchResultProcessor
+  {
+    /**
+     * Process the search result for a user.
+     *
+     * @param searchResult the search result for the user
+     * @param isShared     is the user a shared user
+     */
+    void process(SearchResult searchResult, boolean isShared)
+      throws Exception;
+  }
 }
@@ -18,8 +18,12 @@ package guru.mmp.application.security;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.application.configuration.IConfigurationService;
 import guru.mmp.application.persistence.IDGenerator;
 import guru.mmp.common.exceptions.InvalidArgumentException;
+import guru.mmp.common.persistence.DAOUtil;
+import guru.mmp.common.persistence.SortDirection;
+import guru.mmp.common.util.BoundedCache;
 import guru.mmp.common.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,10 +41,16 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -88,6 +98,39 @@ public class SecurityService
   private Map<UUID, IUserDirectory> userDirectories = new ConcurrentHashMap<>();
   private Map<UUID, UserDirectoryType> userDirectoryTypes = new ConcurrentHashMap<>();
 
+  /**
+   * The cache of the IDs of the user directories the users are associated with keyed by username.
+   */
+  private BoundedCache<String, UUID> userDirectoryIdCache;
+
+  /**
+   * The cache of the authorised function codes for the users.
+   */
+  private BoundedCache<String, List<String>> functionCodesCache;
+
+  /**
+   * The cache of the security group names for the users.
+   */
+  private BoundedCache<String, List<String>> groupNamesCache;
+
+  /**
+   * The cache of the security group memberships for the users.
+   */
+  private BoundedCache<String, Map<String, Boolean>> groupMembershipCache;
+
+  /**
+   * The version of the cached authorisations, which is incremented whenever the cached
+   * authorisations for one or more users are invalidated. A user's function codes, group names or
+   * group memberships are removed again after they are cached if the version changed while they
+   * were being retrieved from the user directory, since they may predate the change that caused
+   * the invalidation.
+   */
+  private AtomicLong authorisationCacheVersion = new AtomicLong();
+
+  /* Configuration Service */
+  @Inject
+  private IConfigurationService configurationService;
+
   /**
    * The data source used to provide connections to the application database.
    */
@@ -144,6 +187,8 @@ public class SecurityService
     }
 
     userDirectory.addUserToGroup(username, groupName);
+
+    invalidateCachedAuthorisations(userDirectoryId, username);
   }
 
   /**
@@ -211,6 +256,27 @@ public class SecurityService
 
     try
     {
+      // Try the user directory the user was last found in before searching all of them
+      UUID cachedUserDirectoryId = userDirectoryIdCache.getIfPresent(getUsernameKey(username));
+
+      if (cachedUserDirectoryId != null)
+      {
+        IUserDirectory userDirectory = userDirectories.get(cachedUserDirectoryId);
+
+        if (userDirectory != null)
+        {
+          try
+          {
+            userDirectory.authenticate(username, password);
+
+            return cachedUserDirectoryId;
+          }
+          catch (UserNotFoundException ignored) {}
+        }
+
+        userDirectoryIdCache.remove(getUsernameKey(username));
+      }
+
       // First check if this is an internal user and if so determine the user directory ID
       UUID internalUserDirectoryId = getInternalUserDirectoryIdForUser(username);
 
@@ -228,6 +294,8 @@ public class SecurityService
         {
           internalUserDirectory.authenticate(username, password);
 
+          userDirectoryIdCache.put(getUsernameKey(username), internalUserDirectoryId);
+
           return internalUserDirectoryId;
         }
       }
@@ -249,6 +317,8 @@ public class SecurityService
               {
                 userDirectory.authenticate(username, password);
 
+                userDirectoryIdCache.put(getUsernameKey(username), userDirectoryId);
+
                 return userDirectoryId;
               }
             }
@@ -701,6 +771,10 @@ public class SecurityService
             "No rows were affected as a result of executing the SQL statement (%s)",
             deleteFunctionSQL));
       }
+
+      authorisationCacheVersion.incrementAndGet();
+
+      functionCodesCache.clear();
     }
     catch (FunctionNotFoundException e)
     {
@@ -739,6 +813,8 @@ public class SecurityService
     }
 
     userDirectory.deleteGroup(groupName);
+
+    invalidateCachedAuthorisations();
   }
 
   /**
@@ -811,6 +887,10 @@ public class SecurityService
     }
 
     userDirectory.deleteUser(username);
+
+    invalidateCachedAuthorisations(userDirectoryId, username);
+
+    userDirectoryIdCache.remove(getUsernameKey(username));
   }
 
   /**
@@ -883,6 +963,47 @@ public class SecurityService
     return userDirectory.findUsers(attributes);
   }
 
+  /**
+   * Invoke the consumer for each of the filtered users without loading all the filtered users
+   * into memory at once.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param filter          the filter to apply to the users
+   * @param consumer        the consumer to invoke for each of the filtered users
+   */
+  public void forEachFilteredUser(UUID userDirectoryId, String filter, Consumer<User> consumer)
+    throws UserDirectoryNotFoundException, SecurityException
+  {
+    IUserDirectory userDirectory = userDirectories.get(userDirectoryId);
+
+    if (userDirectory == null)
+    {
+      throw new UserDirectoryNotFoundException(String.format(
+          "The user directory ID (%s) is invalid", userDirectoryId));
+    }
+
+    userDirectory.forEachFilteredUser(filter, consumer);
+  }
+
+  /**
+   * Returns the statistics for the caches of user directory IDs, authorised function codes,
+   * security group names and security group memberships for users keyed by the name of the cache.
+   *
+   * @return the statistics for the caches keyed by the name of the cache
+   */
+  public Map<String, BoundedCache.Statistics> getCacheStatistics()
+  {
+    Map<String, BoundedCache.Statistics> cacheStatistics = new LinkedHashMap<>();
+
+    cacheStatistics.put("UserDirectoryIds", userDirectoryIdCache.getStatistics());
+    cacheStatistics.put("FunctionCodes", functionCodesCache.getStatistics());
+    cacheStatistics.put("GroupNames", groupNamesCache.getStatistics());
+    cacheStatistics.put("GroupMemberships", groupMembershipCache.getStatistics());
+
+    return cacheStatistics;
+  }
+
   /**
    * Retrieve the filtered list of organisations.
    *
@@ -893,38 +1014,55 @@ public class SecurityService
   public List<Organisation> getFilteredOrganisations(String filter)
     throws SecurityException
   {
-    String getOrganisationsSQL =
-        "SELECT O.ID, O.NAME, O.STATUS FROM SECURITY.ORGANISATIONS O ORDER BY O.NAME";
-
-    String getFilteredOrganisationsSQL =
-        "SELECT O.ID, O.NAME, O.STATUS FROM SECURITY.ORGANISATIONS O "
-        + "WHERE (UPPER(O.NAME) LIKE ?) ORDER BY O.NAME";
+    return getFilteredOrganisations(filter, OrganisationSortBy.NAME, SortDirection.ASCENDING, 0,
+        MAX_FILTERED_ORGANISATIONS);
+  }
 
-    try (Connection connection = dataSource.getConnection();
-      PreparedStatement statement = connection.prepareStatement(StringUtil.isNullOrEmpty(filter)
-          ? getOrganisationsSQL
-          : getFilteredOrganisationsSQL))
+  /**
+   * Retrieve a page of the filtered list of organisations.
+   *
+   * @param filter        the filter to apply to the organisations
+   * @param sortBy        the attribute used to sort the organisations
+   * @param sortDirection the direction used to sort the organisations
+   * @param offset        the number of filtered organisations to skip
+   * @param limit         the maximum number of filtered organisations to retrieve
+   *
+   * @return the page of the filtered list of organisations
+   */
+  public List<Organisation> getFilteredOrganisations(String filter, OrganisationSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws SecurityException
+  {
+    try
     {
-      statement.setMaxRows(MAX_FILTERED_ORGANISATIONS);
-
-      if (!StringUtil.isNullOrEmpty(filter))
-      {
-        String filterBuffer = String.format("%%%s%%", filter.toUpperCase());
-
-        statement.setString(1, filterBuffer);
-      }
-
-      try (ResultSet rs = statement.executeQuery())
-      {
-        List<Organisation> list = new ArrayList<>();
-
-        while (rs.next())
-        {
-          list.add(buildOrganisationFromResultSet(rs));
-        }
+      return getFilteredOrganisations(filter, null, sortBy, sortDirection, offset, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(String.format(
+          "Failed to retrieve the filtered organisations: %s", e.getMessage()), e);
+    }
+  }
 
-        return list;
-      }
+  /**
+   * Retrieve the page of the filtered list of organisations, sorted by name, that follows the
+   * specified organisation.
+   *
+   * @param filter       the filter to apply to the organisations
+   * @param organisation the last organisation on the previous page or <code>null</code> to
+   *                     retrieve the first page
+   * @param limit        the maximum number of filtered organisations to retrieve
+   *
+   * @return the page of the filtered list of organisations
+   */
+  public List<Organisation> getFilteredOrganisationsAfter(String filter, Organisation organisation,
+      int limit)
+    throws SecurityException
+  {
+    try
+    {
+      return getFilteredOrganisations(filter, organisation, OrganisationSortBy.NAME,
+          SortDirection.ASCENDING, 0, limit);
     }
     catch (Throwable e)
     {
@@ -943,38 +1081,53 @@ public class SecurityService
   public List<UserDirectory> getFilteredUserDirectories(String filter)
     throws SecurityException
   {
-    String getUserDirectoriesSQL =
-        "SELECT UD.ID, UD.TYPE_ID, UD.NAME, UD.CONFIGURATION FROM SECURITY.USER_DIRECTORIES UD";
-
-    String getFilteredUserDirectoriesSQL =
-        "SELECT UD.ID, UD.TYPE_ID, UD.NAME, UD.CONFIGURATION FROM SECURITY.USER_DIRECTORIES UD "
-        + "WHERE (UPPER(UD.NAME) LIKE ?) ORDER BY UD.NAME";
+    return getFilteredUserDirectories(filter, SortDirection.ASCENDING, 0,
+        MAX_FILTERED_USER_DIRECTORIES);
+  }
 
-    try (Connection connection = dataSource.getConnection();
-      PreparedStatement statement = connection.prepareStatement(StringUtil.isNullOrEmpty(filter)
-          ? getUserDirectoriesSQL
-          : getFilteredUserDirectoriesSQL))
+  /**
+   * Retrieve a page of the filtered list of user directories sorted by name.
+   *
+   * @param filter        the filter to apply to the user directories
+   * @param sortDirection the direction used to sort the user directories
+   * @param offset        the number of filtered user directories to skip
+   * @param limit         the maximum number of filtered user directories to retrieve
+   *
+   * @return the page of the filtered list of user directories
+   */
+  public List<UserDirectory> getFilteredUserDirectories(String filter,
+      SortDirection sortDirection, int offset, int limit)
+    throws SecurityException
+  {
+    try
     {
-      statement.setMaxRows(MAX_FILTERED_USER_DIRECTORIES);
-
-      if (!StringUtil.isNullOrEmpty(filter))
-      {
-        String filterBuffer = String.format("%%%s%%", filter.toUpperCase());
-
-        statement.setString(1, filterBuffer);
-      }
-
-      try (ResultSet rs = statement.executeQuery())
-      {
-        List<UserDirectory> list = new ArrayList<>();
-
-        while (rs.next())
-        {
-          list.add(buildUserDirectoryFromResultSet(rs));
-        }
+      return getFilteredUserDirectories(filter, null, sortDirection, offset, limit);
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(String.format(
+          "Failed to retrieve the filtered user directories: %s", e.getMessage()), e);
+    }
+  }
 
-        return list;
-      }
+  /**
+   * Retrieve the page of the filtered list of user directories, sorted by name, that follows the
+   * specified user directory.
+   *
+   * @param filter        the filter to apply to the user directories
+   * @param userDirectory the last user directory on the previous page or <code>null</code> to
+   *                      retrieve the first page
+   * @param limit         the maximum number of filtered user directories to retrieve
+   *
+   * @return the page of the filtered list of user directories
+   */
+  public List<UserDirectory> getFilteredUserDirectoriesAfter(String filter,
+      UserDirectory userDirectory, int limit)
+    throws SecurityException
+  {
+    try
+    {
+      return getFilteredUserDirectories(filter, userDirectory, SortDirection.ASCENDING, 0, limit);
     }
     catch (Throwable e)
     {
@@ -1006,6 +1159,62 @@ public class SecurityService
     return userDirectory.getFilteredUsers(filter);
   }
 
+  /**
+   * Retrieve a page of the filtered list of users.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param filter          the filter to apply to the users
+   * @param sortBy          the attribute used to sort the users
+   * @param sortDirection   the direction used to sort the users
+   * @param offset          the number of filtered users to skip
+   * @param limit           the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  public List<User> getFilteredUsers(UUID userDirectoryId, String filter, UserSortBy sortBy,
+      SortDirection sortDirection, int offset, int limit)
+    throws UserDirectoryNotFoundException, SecurityException
+  {
+    IUserDirectory userDirectory = userDirectories.get(userDirectoryId);
+
+    if (userDirectory == null)
+    {
+      throw new UserDirectoryNotFoundException(String.format(
+          "The user directory ID (%s) is invalid", userDirectoryId));
+    }
+
+    return userDirectory.getFilteredUsers(filter, sortBy, sortDirection, offset, limit);
+  }
+
+  /**
+   * Retrieve the page of the filtered list of users, sorted by username, that follows the user
+   * with the specified username.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param filter          the filter to apply to the users
+   * @param username        the username for the last user on the previous page or
+   *                        <code>null</code> to retrieve the first page
+   * @param limit           the maximum number of filtered users to retrieve
+   *
+   * @return the page of the filtered list of users
+   */
+  public List<User> getFilteredUsersAfter(UUID userDirectoryId, String filter, String username,
+      int limit)
+    throws UserDirectoryNotFoundException, SecurityException
+  {
+    IUserDirectory userDirectory = userDirectories.get(userDirectoryId);
+
+    if (userDirectory == null)
+    {
+      throw new UserDirectoryNotFoundException(String.format(
+          "The user directory ID (%s) is invalid", userDirectoryId));
+    }
+
+    return userDirectory.getFilteredUsersAfter(filter, username, limit);
+  }
+
   /**
    * Retrieve the authorised function.
    *
@@ -1083,7 +1292,27 @@ public class SecurityService
           "The user directory ID (%s) is invalid", userDirectoryId));
     }
 
-    return userDirectory.getFunctionCodesForUser(username);
+    String userKey = getUserKey(userDirectoryId, username);
+
+    List<String> functionCodes = functionCodesCache.getIfPresent(userKey);
+
+    if (functionCodes == null)
+    {
+      long version = authorisationCacheVersion.get();
+
+      functionCodes = Collections.unmodifiableList(new ArrayList<>(
+          userDirectory.getFunctionCodesForUser(username)));
+
+      functionCodesCache.put(userKey, functionCodes);
+
+      // Discard the function codes if the authorisations were invalidated while loading them
+      if (authorisationCacheVersion.get() != version)
+      {
+        functionCodesCache.remove(userKey);
+      }
+    }
+
+    return new ArrayList<>(functionCodes);
   }
 
   /**
@@ -1173,7 +1402,27 @@ public class SecurityService
           "The user directory ID (%s) is invalid", userDirectoryId));
     }
 
-    return userDirectory.getGroupNamesForUser(username);
+    String userKey = getUserKey(userDirectoryId, username);
+
+    List<String> groupNames = groupNamesCache.getIfPresent(userKey);
+
+    if (groupNames == null)
+    {
+      long version = authorisationCacheVersion.get();
+
+      groupNames = Collections.unmodifiableList(new ArrayList<>(userDirectory.getGroupNamesForUser(
+          username)));
+
+      groupNamesCache.put(userKey, groupNames);
+
+      // Discard the group names if the authorisations were invalidated while loading them
+      if (authorisationCacheVersion.get() != version)
+      {
+        groupNamesCache.remove(userKey);
+      }
+    }
+
+    return new ArrayList<>(groupNames);
   }
 
   /**
@@ -1258,11 +1507,7 @@ public class SecurityService
       {
         if (rs.next())
         {
-          int numberOfFilteredOrganisations = rs.getInt(1);
-
-          return ((numberOfFilteredOrganisations > MAX_FILTERED_ORGANISATIONS)
-              ? MAX_FILTERED_ORGANISATIONS
-              : numberOfFilteredOrganisations);
+          return rs.getInt(1);
         }
         else
         {
@@ -1308,11 +1553,7 @@ public class SecurityService
       {
         if (rs.next())
         {
-          int numberOfFilteredUserDirectories = rs.getInt(1);
-
-          return ((numberOfFilteredUserDirectories > MAX_FILTERED_USER_DIRECTORIES)
-              ? MAX_FILTERED_USER_DIRECTORIES
-              : numberOfFilteredUserDirectories);
+          return rs.getInt(1);
         }
         else
         {
@@ -1792,11 +2033,20 @@ public class SecurityService
 
     try
     {
+      UUID cachedUserDirectoryId = userDirectoryIdCache.getIfPresent(getUsernameKey(username));
+
+      if ((cachedUserDirectoryId != null) && userDirectories.containsKey(cachedUserDirectoryId))
+      {
+        return cachedUserDirectoryId;
+      }
+
       // First check if this is an internal user and if so determine the user directory ID
       UUID internalUserDirectoryId = getInternalUserDirectoryIdForUser(username);
 
       if (internalUserDirectoryId != null)
       {
+        userDirectoryIdCache.put(getUsernameKey(username), internalUserDirectoryId);
+
         return internalUserDirectoryId;
       }
       else
@@ -1815,6 +2065,8 @@ public class SecurityService
             {
               if (userDirectory.isExistingUser(username))
               {
+                userDirectoryIdCache.put(getUsernameKey(username), userDirectoryId);
+
                 return userDirectoryId;
               }
             }
@@ -1945,7 +2197,29 @@ public class SecurityService
           "The user directory ID (%s) is invalid", userDirectoryId));
     }
 
-    return userDirectory.isUserInGroup(username, groupName);
+    String userKey = getUserKey(userDirectoryId, username);
+
+    long version = authorisationCacheVersion.get();
+
+    Map<String, Boolean> groupMemberships = groupMembershipCache.get(userKey,
+        key -> new ConcurrentHashMap<>());
+
+    Boolean isUserInGroup = groupMemberships.get(groupName);
+
+    if (isUserInGroup == null)
+    {
+      isUserInGroup = userDirectory.isUserInGroup(username, groupName);
+
+      groupMemberships.put(groupName, isUserInGroup);
+
+      // Discard the group memberships if the authorisations were invalidated while loading them
+      if (authorisationCacheVersion.get() != version)
+      {
+        groupMembershipCache.remove(userKey);
+      }
+    }
+
+    return isUserInGroup;
   }
 
   /**
@@ -2008,7 +2282,31 @@ public class SecurityService
         }
       }
 
+      Map<UUID, IUserDirectory> previousUserDirectories = this.userDirectories;
+
       this.userDirectories = reloadedUserDirectories;
+
+      // Release any resources, e.g. pooled connections, held by the replaced user directories
+      for (Map.Entry<UUID, IUserDirectory> previousUserDirectory :
+          previousUserDirectories.entrySet())
+      {
+        if (previousUserDirectory.getValue() instanceof AutoCloseable)
+        {
+          try
+          {
+            ((AutoCloseable) previousUserDirectory.getValue()).close();
+          }
+          catch (Throwable e)
+          {
+            logger.warn(String.format("Failed to close the user directory (%s)",
+                previousUserDirectory.getKey()), e);
+          }
+        }
+      }
+
+      userDirectoryIdCache.clear();
+
+      invalidateCachedAuthorisations();
     }
     catch (Throwable e)
     {
@@ -2048,6 +2346,8 @@ public class SecurityService
     }
 
     userDirectory.removeUserFromGroup(username, groupName);
+
+    invalidateCachedAuthorisations(userDirectoryId, username);
   }
 
   /**
@@ -2179,6 +2479,8 @@ public class SecurityService
     }
 
     userDirectory.updateGroup(group);
+
+    invalidateCachedAuthorisations();
   }
 
   /**
@@ -2369,6 +2671,146 @@ public class SecurityService
     return userDirectory;
   }
 
+  /**
+   * Retrieve a page of the filtered list of organisations.
+   * <p/>
+   * If the <code>after</code> organisation is specified then only the organisations that follow it
+   * when sorted by name and ID in ascending order are retrieved, which allows the pages to be
+   * retrieved without skipping the preceding organisations using an offset.
+   *
+   * @param filter        the filter to apply to the organisations
+   * @param after         the last organisation on the previous page or <code>null</code> to
+   *                      retrieve the organisations from the start of the sorted list
+   * @param sortBy        the attribute used to sort the organisations
+   * @param sortDirection the direction used to sort the organisations
+   * @param offset        the number of filtered organisations to skip
+   * @param limit         the maximum number of filtered organisations to retrieve
+   *
+   * @return the page of the filtered list of organisations
+   */
+  private List<Organisation> getFilteredOrganisations(String filter, Organisation after,
+      OrganisationSortBy sortBy, SortDirection sortDirection, int offset, int limit)
+    throws SQLException
+  {
+    List<Organisation> list = new ArrayList<>();
+
+    if (limit == 0)
+    {
+      return list;
+    }
+
+    StringBuilder buffer = new StringBuilder(
+        "SELECT O.ID, O.NAME, O.STATUS FROM SECURITY.ORGANISATIONS O WHERE (1=1)");
+
+    if (!StringUtil.isNullOrEmpty(filter))
+    {
+      buffer.append(" AND (UPPER(O.NAME) LIKE ?)");
+    }
+
+    if (after != null)
+    {
+      buffer.append(" AND ((O.NAME > ?) OR ((O.NAME = ?) AND (O.ID > ?)))");
+    }
+
+    // Sort by ID within the sort attribute so the order of the pages is deterministic
+    buffer.append(" ORDER BY O.").append(sortBy.column()).append(" ").append(
+        sortDirection.sql());
+
+    if (sortBy != OrganisationSortBy.NAME)
+    {
+      buffer.append(", O.NAME ").append(sortDirection.sql());
+    }
+
+    buffer.append(", O.ID ").append(sortDirection.sql());
+    buffer.append(DAOUtil.getPagingClause(offset, limit));
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(buffer.toString()))
+    {
+      int parameterIndex = 1;
+
+      if (!StringUtil.isNullOrEmpty(filter))
+      {
+        statement.setString(parameterIndex++, String.format("%%%s%%", filter.toUpperCase()));
+      }
+
+      if (after != null)
+      {
+        statement.setString(parameterIndex++, after.getName());
+        statement.setString(parameterIndex++, after.getName());
+        statement.setObject(parameterIndex, after.getId());
+      }
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        while (rs.next())
+        {
+          list.add(buildOrganisationFromResultSet(rs));
+        }
+      }
+    }
+
+    return list;
+  }
+
+  private List<UserDirectory> getFilteredUserDirectories(String filter, UserDirectory after,
+      SortDirection sortDirection, int offset, int limit)
+    throws SQLException, SecurityException
+  {
+    List<UserDirectory> list = new ArrayList<>();
+
+    if (limit == 0)
+    {
+      return list;
+    }
+
+    StringBuilder buffer = new StringBuilder("SELECT UD.ID, UD.TYPE_ID, UD.NAME, "
+        + "UD.CONFIGURATION FROM SECURITY.USER_DIRECTORIES UD WHERE (1=1)");
+
+    if (!StringUtil.isNullOrEmpty(filter))
+    {
+      buffer.append(" AND (UPPER(UD.NAME) LIKE ?)");
+    }
+
+    if (after != null)
+    {
+      buffer.append(" AND ((UD.NAME > ?) OR ((UD.NAME = ?) AND (UD.ID > ?)))");
+    }
+
+    // Sort by ID within the name so the order of the pages is deterministic
+    buffer.append(" ORDER BY UD.NAME ").append(sortDirection.sql()).append(", UD.ID ").append(
+        sortDirection.sql());
+    buffer.append(DAOUtil.getPagingClause(offset, limit));
+
+    try (Connection connection = dataSource.getConnection();
+      PreparedStatement statement = connection.prepareStatement(buffer.toString()))
+    {
+      int parameterIndex = 1;
+
+      if (!StringUtil.isNullOrEmpty(filter))
+      {
+        statement.setString(parameterIndex++, String.format("%%%s%%", filter.toUpperCase()));
+      }
+
+      if (after != null)
+      {
+        statement.setString(parameterIndex++, after.getName());
+        statement.setString(parameterIndex++, after.getName());
+        statement.setObject(parameterIndex, after.getId());
+      }
+
+      try (ResultSet rs = statement.executeQuery())
+      {
+        while (rs.next())
+        {
+          list.add(buildUserDirectoryFromResultSet(rs));
+        }
+      }
+    }
+
+    return list;
+  }
+
   /**
    * Returns the Universally Unique Identifier (UUID) used to uniquely identify the function with
    * the specified code.
@@ -2444,19 +2886,104 @@ public class SecurityService
     }
   }
 
+  /**
+   * Returns the key used to cache the authorisation information for the user.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param username        the username identifying the user
+   *
+   * @return the key used to cache the authorisation information for the user
+   */
+  private String getUserKey(UUID userDirectoryId, String username)
+  {
+    return userDirectoryId + "/" + getUsernameKey(username);
+  }
+
+  /**
+   * Returns the key used to cache the information for the username.
+   * <p/>
+   * The user directories match usernames case-insensitively, so the username is converted to
+   * lowercase to ensure that the cached information is invalidated regardless of the case used.
+   *
+   * @param username the username identifying the user
+   *
+   * @return the key used to cache the information for the username
+   */
+  private String getUsernameKey(String username)
+  {
+    return username.toLowerCase(Locale.ENGLISH);
+  }
+
   /**
    * Initialise the configuration for the <code>SecurityService</code> instance.
    */
   private void initConfiguration()
     throws SecurityException
   {
-//  try
-//  {}
-//  catch (Throwable e)
-//  {
-//    throw new SecurityException(
-//        "Failed to initialise the configuration for the Security Service: " + e.getMessage(), e);
-//  }
+    try
+    {
+      if (!configurationService.keyExists("SecurityService.CacheExpiry"))
+      {
+        configurationService.setValue("SecurityService.CacheExpiry", 300,
+            "The number of seconds after which cached user directory IDs, function codes and "
+            + "security group memberships for users expire");
+      }
+
+      if (!configurationService.keyExists("SecurityService.CacheSize"))
+      {
+        configurationService.setValue("SecurityService.CacheSize", 10000,
+            "The maximum number of users whose user directory IDs, function codes and security "
+            + "group memberships are cached");
+      }
+
+      int cacheExpiry = Math.max(1, configurationService.getInteger(
+          "SecurityService.CacheExpiry"));
+
+      int cacheSize = Math.max(1, configurationService.getInteger("SecurityService.CacheSize"));
+
+      userDirectoryIdCache = new BoundedCache<>(cacheSize, cacheExpiry, TimeUnit.SECONDS, true);
+      functionCodesCache = new BoundedCache<>(cacheSize, cacheExpiry, TimeUnit.SECONDS, true);
+      groupNamesCache = new BoundedCache<>(cacheSize, cacheExpiry, TimeUnit.SECONDS, true);
+      groupMembershipCache = new BoundedCache<>(cacheSize, cacheExpiry, TimeUnit.SECONDS, true);
+    }
+    catch (Throwable e)
+    {
+      throw new SecurityException(
+          "Failed to initialise the configuration for the Security Service: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Invalidate the cached authorised function codes, security group names and security group
+   * memberships for all users.
+   */
+  private void invalidateCachedAuthorisations()
+  {
+    authorisationCacheVersion.incrementAndGet();
+
+    functionCodesCache.clear();
+    groupNamesCache.clear();
+    groupMembershipCache.clear();
+  }
+
+  /**
+   * Invalidate the cached authorised function codes, security group names and security group
+   * memberships for the user.
+   *
+   * @param userDirectoryId the Universally Unique Identifier (UUID) used to uniquely identify the
+   *                        user directory
+   * @param username        the username identifying the user
+   */
+  private void invalidateCachedAuthorisations(UUID userDirectoryId, String username)
+  {
+    String userKey = getUserKey(userDirectoryId, username);
+
+    authorisationCacheVersion.incrementAndGet();
+
+    functionCodesCache.remove(userKey);
+    groupNamesCache.remove(userKey);
+    groupMembershipCache.remove(userKey);
   }
 
   /**
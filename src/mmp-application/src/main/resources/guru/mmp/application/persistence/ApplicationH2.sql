@@ -3,6 +3,7 @@
 -- -------------------------------------------------------------------------------------------------
 CREATE SCHEMA CODES;
 CREATE SCHEMA CONFIGURATION;
+CREATE SCHEMA EVENTS;
 CREATE SCHEMA IDGENERATOR;
 CREATE SCHEMA MESSAGING;
 CREATE SCHEMA REPORTING;
@@ -159,6 +160,62 @@ COMMENT ON COLUMN CONFIGURATION.CONFIGURATION.DESCRIPTION
 
 
 
+CREATE TABLE CONFIGURATION.CONFIGURATION_VERSION (
+  VERSION  BIGINT NOT NULL
+);
+
+COMMENT ON COLUMN CONFIGURATION.CONFIGURATION_VERSION.VERSION
+  IS 'The version of the configuration values, which is incremented each time a configuration value is set or removed';
+
+
+
+CREATE TABLE EVENTS.OUTBOX (
+  ID                BIGINT NOT NULL,
+  TOPIC             VARCHAR(4000) NOT NULL,
+  EVENT_KEY         VARCHAR(4000),
+  DATA              BLOB NOT NULL,
+  STATUS            INTEGER NOT NULL,
+  PUBLISH_ATTEMPTS  INTEGER NOT NULL,
+  LOCK_NAME         VARCHAR(4000),
+  CREATED           DATETIME NOT NULL,
+  LAST_PROCESSED    DATETIME,
+
+  PRIMARY KEY (ID)
+);
+
+CREATE INDEX OUTBOX_STATUS_IX
+  ON EVENTS.OUTBOX
+  (STATUS);
+
+COMMENT ON COLUMN EVENTS.OUTBOX.ID
+  IS 'The ID used to uniquely identify the event';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.TOPIC
+  IS 'The name of the Apache Kafka topic the event should be published to';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.EVENT_KEY
+  IS 'The optional key for the event, which determines the partition the event is published to';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.DATA
+  IS 'The serialized event';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.STATUS
+  IS 'The status of the event';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.PUBLISH_ATTEMPTS
+  IS 'The number of times that the publishing of the event was attempted';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.LOCK_NAME
+  IS 'The name of the entity that has locked the event for publishing';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.CREATED
+  IS 'The date and time the event was added to the outbox';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.LAST_PROCESSED
+  IS 'The date and time the last attempt was made to publish the event';
+
+
+
 CREATE TABLE IDGENERATOR.IDGENERATOR (
   NAME     VARCHAR(4000) NOT NULL,
   CURRENT  BIGINT DEFAULT 0,
@@ -418,6 +475,8 @@ CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
   CREATED          DATETIME NOT NULL,
   ARCHIVED         DATETIME NOT NULL,
   DATA             BLOB,
+  DATA_SEGMENT     VARCHAR(4000),
+  DATA_OFFSET      BIGINT,
 
   PRIMARY KEY (ID),
   CONSTRAINT ARCHIVED_MESSAGES_MESSAGE_TYPE_FK FOREIGN KEY (TYPE_ID) REFERENCES MESSAGING.MESSAGE_TYPES(ID)
@@ -425,15 +484,15 @@ CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
 
 CREATE INDEX ARCHIVED_MESSAGES_USERNAME_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (USERNAME);
+  (USERNAME, ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (DEVICE_ID);
+  (DEVICE_ID, ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_TYPE_ID_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (TYPE_ID);
+  (TYPE_ID, ARCHIVED);
 
 COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.ID
   IS 'The Universally Unique Identifier (UUID) used to uniquely identify the message';
@@ -457,7 +516,13 @@ COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.ARCHIVED
   IS 'The date and time the message was archived';
 
 COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA
-  IS 'The data for the message';
+  IS 'The data for the message if it is not stored in the archived message data store';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_SEGMENT
+  IS 'The name of the segment file in the archived message data store containing the data for the message';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_OFFSET
+  IS 'The offset of the data for the message in the segment file in the archived message data store';
 
 
 
@@ -1093,6 +1158,8 @@ COMMENT ON COLUMN TEST.TEST_DATA.VALUE
 -- -------------------------------------------------------------------------------------------------
 -- POPULATE TABLES
 -- -------------------------------------------------------------------------------------------------
+INSERT INTO CONFIGURATION.CONFIGURATION_VERSION (VERSION) VALUES (0);
+
 INSERT INTO SECURITY.ORGANISATIONS (ID, NAME, STATUS) VALUES
   ('c1685b92-9fe5-453a-995b-89d8c0f29cb5', 'MMP', 1);
 
@@ -62,6 +62,8 @@ DROP TABLE IF EXISTS SECURITY.USER_DIRECTORY_TYPES CASCADE;
 DROP TABLE IF EXISTS SECURITY.ORGANISATIONS CASCADE;
 DROP TABLE IF EXISTS SERVICE_REGISTRY.SERVICE_REGISTRY CASCADE;
 DROP TABLE IF EXISTS CONFIGURATION.CONFIG CASCADE;
+DROP TABLE IF EXISTS CONFIGURATION.CONFIGURATION_VERSION CASCADE;
+DROP TABLE IF EXISTS EVENTS.OUTBOX CASCADE;
 DROP TABLE IF EXISTS IDGENERATOR.IDGENERATOR CASCADE;
 DROP TABLE IF EXISTS TEST.TEST_DATA CASCADE;
 
@@ -78,6 +80,7 @@ DROP SCHEMA IF EXISTS SCHEDULER CASCADE;
 DROP SCHEMA IF EXISTS REPORTING CASCADE;
 DROP SCHEMA IF EXISTS MESSAGING CASCADE;
 DROP SCHEMA IF EXISTS IDGENERATOR CASCADE;
+DROP SCHEMA IF EXISTS EVENTS CASCADE;
 DROP SCHEMA IF EXISTS CONFIGURATION CASCADE;
 DROP SCHEMA IF EXISTS CODES CASCADE;
 
@@ -127,6 +130,7 @@ ALTER ROLE dbuser WITH LOGIN;
 -- -------------------------------------------------------------------------------------------------
 CREATE SCHEMA CODES;
 CREATE SCHEMA CONFIGURATION;
+CREATE SCHEMA EVENTS;
 CREATE SCHEMA IDGENERATOR;
 CREATE SCHEMA MESSAGING;
 CREATE SCHEMA REPORTING;
@@ -283,6 +287,62 @@ COMMENT ON COLUMN CONFIGURATION.CONFIGURATION.DESCRIPTION
 
 
 
+CREATE TABLE CONFIGURATION.CONFIGURATION_VERSION (
+  VERSION  BIGINT NOT NULL
+);
+
+COMMENT ON COLUMN CONFIGURATION.CONFIGURATION_VERSION.VERSION
+  IS 'The version of the configuration values, which is incremented each time a configuration value is set or removed';
+
+
+
+CREATE TABLE EVENTS.OUTBOX (
+  ID                BIGINT NOT NULL,
+  TOPIC             TEXT NOT NULL,
+  EVENT_KEY         TEXT,
+  DATA              BYTEA NOT NULL,
+  STATUS            INTEGER NOT NULL,
+  PUBLISH_ATTEMPTS  INTEGER NOT NULL,
+  LOCK_NAME         TEXT,
+  CREATED           TIMESTAMP NOT NULL,
+  LAST_PROCESSED    TIMESTAMP,
+
+  PRIMARY KEY (ID)
+);
+
+CREATE INDEX OUTBOX_STATUS_IX
+  ON EVENTS.OUTBOX
+  (STATUS);
+
+COMMENT ON COLUMN EVENTS.OUTBOX.ID
+  IS 'The ID used to uniquely identify the event';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.TOPIC
+  IS 'The name of the Apache Kafka topic the event should be published to';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.EVENT_KEY
+  IS 'The optional key for the event, which determines the partition the event is published to';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.DATA
+  IS 'The serialized event';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.STATUS
+  IS 'The status of the event';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.PUBLISH_ATTEMPTS
+  IS 'The number of times that the publishing of the event was attempted';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.LOCK_NAME
+  IS 'The name of the entity that has locked the event for publishing';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.CREATED
+  IS 'The date and time the event was added to the outbox';
+
+COMMENT ON COLUMN EVENTS.OUTBOX.LAST_PROCESSED
+  IS 'The date and time the last attempt was made to publish the event';
+
+
+
 CREATE TABLE IDGENERATOR.IDGENERATOR (
   NAME     TEXT NOT NULL,
   CURRENT  BIGINT DEFAULT 0,
@@ -533,6 +593,9 @@ COMMENT ON COLUMN MESSAGING.MESSAGE_PARTS.DATA
 
 
 
+-- NOTE: The MESSAGING.ARCHIVED_MESSAGES table is partitioned by month using inheritance. The
+--       partitions (MESSAGING.ARCHIVED_MESSAGES_YYYYMM) are created and dropped by the Messaging
+--       Service and the messages are inserted directly into the partitions.
 CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
   ID               UUID NOT NULL,
   USERNAME         TEXT NOT NULL,
@@ -542,6 +605,8 @@ CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
   CREATED          TIMESTAMP NOT NULL,
   ARCHIVED         TIMESTAMP NOT NULL,
   DATA             BYTEA,
+  DATA_SEGMENT     TEXT,
+  DATA_OFFSET      BIGINT,
 
   PRIMARY KEY (ID),
   CONSTRAINT ARCHIVED_MESSAGES_MESSAGE_TYPE_FK FOREIGN KEY (TYPE_ID) REFERENCES MESSAGING.MESSAGE_TYPES(ID)
@@ -549,15 +614,15 @@ CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
 
 CREATE INDEX ARCHIVED_MESSAGES_USERNAME_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (USERNAME);
+  (USERNAME, ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (DEVICE_ID);
+  (DEVICE_ID, ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_TYPE_ID_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (TYPE_ID);
+  (TYPE_ID, ARCHIVED);
 
 COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.ID
   IS 'The Universally Unique Identifier (UUID) used to uniquely identify the message';
@@ -581,7 +646,13 @@ COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.ARCHIVED
   IS 'The date and time the message was archived';
 
 COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA
-  IS 'The data for the message';
+  IS 'The data for the message if it is not stored in the archived message data store';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_SEGMENT
+  IS 'The name of the segment file in the archived message data store containing the data for the message';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_OFFSET
+  IS 'The offset of the data for the message in the segment file in the archived message data store';
 
 
 
@@ -1217,6 +1288,8 @@ COMMENT ON COLUMN TEST.TEST_DATA.VALUE
 -- -------------------------------------------------------------------------------------------------
 -- POPULATE TABLES
 -- -------------------------------------------------------------------------------------------------
+INSERT INTO CONFIGURATION.CONFIGURATION_VERSION (VERSION) VALUES (0);
+
 INSERT INTO SECURITY.ORGANISATIONS (ID, NAME, STATUS) VALUES
   ('c1685b92-9fe5-453a-995b-89d8c0f29cb5', 'MMP', 1);
 
@@ -1360,6 +1433,7 @@ INSERT INTO TEST.TEST_DATA (ID, NAME, VALUE) VALUES (9, 'Sample Name 9', 'Sample
 -- -------------------------------------------------------------------------------------------------
 GRANT ALL ON SCHEMA CODES TO dbuser;
 GRANT ALL ON SCHEMA CONFIGURATION TO dbuser;
+GRANT ALL ON SCHEMA EVENTS TO dbuser;
 GRANT ALL ON SCHEMA IDGENERATOR TO dbuser;
 GRANT ALL ON SCHEMA MESSAGING TO dbuser;
 GRANT ALL ON SCHEMA REPORTING TO dbuser;
@@ -1374,6 +1448,8 @@ GRANT ALL ON TABLE CODES.CODES TO dbuser;
 GRANT ALL ON TABLE CODES.CACHED_CODE_CATEGORIES TO dbuser;
 GRANT ALL ON TABLE CODES.CACHED_CODES TO dbuser;
 GRANT ALL ON TABLE CONFIGURATION.CONFIGURATION TO dbuser;
+GRANT ALL ON TABLE CONFIGURATION.CONFIGURATION_VERSION TO dbuser;
+GRANT ALL ON TABLE EVENTS.OUTBOX TO dbuser;
 GRANT ALL ON TABLE IDGENERATOR.IDGENERATOR TO dbuser;
 GRANT ALL ON TABLE MESSAGING.MESSAGE_TYPES TO dbuser;
 GRANT ALL ON TABLE MESSAGING.MESSAGE_STATUSES TO dbuser;
@@ -9,6 +9,10 @@ IF OBJECT_ID('"MESSAGING"."ERROR_REPORTS"', 'U') IS NOT NULL
   DROP TABLE "MESSAGING"."ERROR_REPORTS";
 IF OBJECT_ID('"MESSAGING"."ARCHIVED_MESSAGES"', 'U') IS NOT NULL
   DROP TABLE "MESSAGING"."ARCHIVED_MESSAGES";
+IF EXISTS (SELECT * FROM sys.partition_schemes WHERE name = 'ARCHIVED_MESSAGES_PS')
+  DROP PARTITION SCHEME ARCHIVED_MESSAGES_PS;
+IF EXISTS (SELECT * FROM sys.partition_functions WHERE name = 'ARCHIVED_MESSAGES_PF')
+  DROP PARTITION FUNCTION ARCHIVED_MESSAGES_PF;
 IF OBJECT_ID('"MESSAGING"."MESSAGE_PARTS"', 'U') IS NOT NULL
   DROP TABLE "MESSAGING"."MESSAGE_PARTS";
 IF OBJECT_ID('"MESSAGING"."MESSAGES"', 'U') IS NOT NULL
@@ -59,6 +63,10 @@ IF OBJECT_ID('"SERVICE_REGISTRY"."SERVICE_REGISTRY"', 'U') IS NOT NULL
   DROP TABLE "SERVICE_REGISTRY"."SERVICE_REGISTRY";
 IF OBJECT_ID('"CONFIGURATION"."CONFIGURATION"', 'U') IS NOT NULL
   DROP TABLE "CONFIGURATION"."CONFIGURATION";
+IF OBJECT_ID('"CONFIGURATION"."CONFIGURATION_VERSION"', 'U') IS NOT NULL
+  DROP TABLE "CONFIGURATION"."CONFIGURATION_VERSION";
+IF OBJECT_ID('"EVENTS"."OUTBOX"', 'U') IS NOT NULL
+  DROP TABLE "EVENTS"."OUTBOX";
 IF OBJECT_ID('"IDGENERATOR"."IDGENERATOR"', 'U') IS NOT NULL
   DROP TABLE "IDGENERATOR"."IDGENERATOR";
 IF OBJECT_ID('"TEST"."TEST_DATA"', 'U') IS NOT NULL
@@ -78,6 +86,10 @@ IF NOT EXISTS (SELECT 1 FROM SYS.SCHEMAS WHERE name = 'CONFIGURATION')
 BEGIN
     EXEC('CREATE SCHEMA CONFIGURATION')
 END;
+IF NOT EXISTS (SELECT 1 FROM SYS.SCHEMAS WHERE name = 'EVENTS')
+BEGIN
+    EXEC('CREATE SCHEMA EVENTS')
+END;
 IF NOT EXISTS (SELECT 1 FROM SYS.SCHEMAS WHERE name = 'IDGENERATOR')
 BEGIN
     EXEC('CREATE SCHEMA IDGENERATOR')
@@ -288,6 +300,74 @@ GO
 
 
 
+CREATE TABLE "CONFIGURATION"."CONFIGURATION_VERSION" (
+  VERSION  BIGINT NOT NULL
+);
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The version of the configuration values, which is incremented each time a configuration value is set or removed' ,
+@level0type=N'SCHEMA', @level0name=N'CONFIGURATION', @level1type=N'TABLE', @level1name=N'CONFIGURATION_VERSION', @level2type=N'COLUMN', @level2name=N'VERSION';
+GO
+
+
+
+CREATE TABLE "EVENTS"."OUTBOX" (
+  ID                BIGINT NOT NULL,
+  TOPIC             NVARCHAR(256) NOT NULL,
+  EVENT_KEY         NVARCHAR(256),
+  DATA              VARBINARY(MAX) NOT NULL,
+  STATUS            INTEGER NOT NULL,
+  PUBLISH_ATTEMPTS  INTEGER NOT NULL,
+  LOCK_NAME         NVARCHAR(256),
+  CREATED           DATETIME NOT NULL,
+  LAST_PROCESSED    DATETIME,
+
+  PRIMARY KEY (ID)
+);
+
+CREATE INDEX OUTBOX_STATUS_IX
+  ON "EVENTS"."OUTBOX"
+  (STATUS);
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The ID used to uniquely identify the event' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'ID';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The name of the Apache Kafka topic the event should be published to' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'TOPIC';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The optional key for the event, which determines the partition the event is published to' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'EVENT_KEY';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The serialized event' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'DATA';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The status of the event' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'STATUS';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The number of times that the publishing of the event was attempted' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'PUBLISH_ATTEMPTS';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The name of the entity that has locked the event for publishing' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'LOCK_NAME';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The date and time the event was added to the outbox' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'CREATED';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The date and time the last attempt was made to publish the event' ,
+@level0type=N'SCHEMA', @level0name=N'EVENTS', @level1type=N'TABLE', @level1name=N'OUTBOX', @level2type=N'COLUMN', @level2name=N'LAST_PROCESSED';
+GO
+
+
+
 CREATE TABLE "IDGENERATOR"."IDGENERATOR" (
   NAME       NVARCHAR(256) NOT NULL,
   [CURRENT]  BIGINT DEFAULT 0,
@@ -585,6 +665,15 @@ GO
 
 
 
+-- NOTE: The MESSAGING.ARCHIVED_MESSAGES table is partitioned by month on the ARCHIVED column.
+--       The boundaries for the months are added to and removed from the partition function by
+--       the Messaging Service.
+CREATE PARTITION FUNCTION ARCHIVED_MESSAGES_PF (DATETIME)
+  AS RANGE RIGHT FOR VALUES ();
+
+CREATE PARTITION SCHEME ARCHIVED_MESSAGES_PS
+  AS PARTITION ARCHIVED_MESSAGES_PF ALL TO ([PRIMARY]);
+
 CREATE TABLE "MESSAGING"."ARCHIVED_MESSAGES" (
   ID               UNIQUEIDENTIFIER NOT NULL,
   USERNAME         NVARCHAR(256) NOT NULL,
@@ -594,22 +683,24 @@ CREATE TABLE "MESSAGING"."ARCHIVED_MESSAGES" (
   CREATED          DATETIME NOT NULL,
   ARCHIVED         DATETIME NOT NULL,
   DATA             VARBINARY(MAX),
+  DATA_SEGMENT     NVARCHAR(256),
+  DATA_OFFSET      BIGINT,
 
-  PRIMARY KEY (ID),
+  PRIMARY KEY (ID, ARCHIVED),
   CONSTRAINT ARCHIVED_MESSAGES_MESSAGE_TYPE_FK FOREIGN KEY (TYPE_ID) REFERENCES "MESSAGING"."MESSAGE_TYPES"(ID)
-);
+) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_USERNAME_IX
   ON "MESSAGING"."ARCHIVED_MESSAGES"
-  (USERNAME);
+  (USERNAME, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX
   ON "MESSAGING"."ARCHIVED_MESSAGES"
-  (DEVICE_ID);
+  (DEVICE_ID, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_TYPE_ID_IX
   ON "MESSAGING"."ARCHIVED_MESSAGES"
-  (TYPE_ID);
+  (TYPE_ID, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 EXEC sys.sp_addextendedproperty
 @name=N'MS_Description', @value=N'The Universally Unique Identifier (UUID) used to uniquely identify the message' ,
@@ -640,8 +731,16 @@ EXEC sys.sp_addextendedproperty
 @level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'ARCHIVED';
 
 EXEC sys.sp_addextendedproperty
-@name=N'MS_Description', @value=N'The data for the message' ,
+@name=N'MS_Description', @value=N'The data for the message if it is not stored in the archived message data store' ,
 @level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The name of the segment file in the archived message data store containing the data for the message' ,
+@level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA_SEGMENT';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The offset of the data for the message in the segment file in the archived message data store' ,
+@level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA_OFFSET';
 GO
 
 
@@ -1518,6 +1617,8 @@ GO
 -- -------------------------------------------------------------------------------------------------
 -- POPULATE TABLES
 -- -------------------------------------------------------------------------------------------------
+INSERT INTO "CONFIGURATION"."CONFIGURATION_VERSION" (VERSION) VALUES (0);
+
 INSERT INTO "SECURITY"."ORGANISATIONS" (ID, NAME, STATUS) VALUES
   ('c1685b92-9fe5-453a-995b-89d8c0f29cb5', 'MMP', 1);
 
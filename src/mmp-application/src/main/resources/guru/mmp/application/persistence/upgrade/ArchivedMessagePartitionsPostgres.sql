@@ -0,0 +1,85 @@
+-- -------------------------------------------------------------------------------------------------
+-- NOTE: When changing this file you may also need to modify the following file:
+--       - ArchivedMessagePartitionsSQLServer.sql (mmp-application)
+--
+--  Upgrade an existing PostgreSQL database to partition the MESSAGING.ARCHIVED_MESSAGES table by
+--  month and to add the DATA_SEGMENT and DATA_OFFSET columns, which are used by the Messaging
+--  Service to store the data for large archived messages in the archived message data store.
+--
+--  The existing archived messages are moved out of the MESSAGING.ARCHIVED_MESSAGES table into the
+--  monthly partitions (MESSAGING.ARCHIVED_MESSAGES_YYYYMM), which are created with the same
+--  definition as the partitions created by the Messaging Service.
+--
+--  Execute the following command to upgrade the database:
+--
+--    psql -d dbname -f ArchivedMessagePartitionsPostgres.sql
+--
+--  Replace dbuser below with the name of the database user for the application.
+-- -------------------------------------------------------------------------------------------------
+BEGIN;
+
+ALTER TABLE MESSAGING.ARCHIVED_MESSAGES ADD COLUMN IF NOT EXISTS DATA_SEGMENT TEXT;
+
+ALTER TABLE MESSAGING.ARCHIVED_MESSAGES ADD COLUMN IF NOT EXISTS DATA_OFFSET BIGINT;
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA
+  IS 'The data for the message if it is not stored in the archived message data store';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_SEGMENT
+  IS 'The name of the segment file in the archived message data store containing the data for the message';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_OFFSET
+  IS 'The offset of the data for the message in the segment file in the archived message data store';
+
+DROP INDEX IF EXISTS MESSAGING.ARCHIVED_MESSAGES_USERNAME_IX;
+
+CREATE INDEX ARCHIVED_MESSAGES_USERNAME_IX
+  ON MESSAGING.ARCHIVED_MESSAGES
+  (USERNAME, ARCHIVED);
+
+DROP INDEX IF EXISTS MESSAGING.ARCHIVED_MESSAGES_DEVICE_ID_IX;
+
+CREATE INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX
+  ON MESSAGING.ARCHIVED_MESSAGES
+  (DEVICE_ID, ARCHIVED);
+
+DROP INDEX IF EXISTS MESSAGING.ARCHIVED_MESSAGES_TYPE_ID_IX;
+
+CREATE INDEX ARCHIVED_MESSAGES_TYPE_ID_IX
+  ON MESSAGING.ARCHIVED_MESSAGES
+  (TYPE_ID, ARCHIVED);
+
+DO $$
+DECLARE
+  month_start      DATE;
+  partition_suffix TEXT;
+  partition_table  TEXT;
+  index_column     TEXT;
+BEGIN
+  FOR month_start IN
+    SELECT DISTINCT DATE_TRUNC('month', ARCHIVED)::DATE FROM ONLY MESSAGING.ARCHIVED_MESSAGES
+  LOOP
+    partition_suffix := TO_CHAR(month_start, 'YYYYMM');
+    partition_table := 'MESSAGING.ARCHIVED_MESSAGES_' || partition_suffix;
+
+    EXECUTE FORMAT('CREATE TABLE IF NOT EXISTS %s (PRIMARY KEY (ID), '
+      || 'CHECK (ARCHIVED >= %L AND ARCHIVED < %L), FOREIGN KEY (TYPE_ID) REFERENCES '
+      || 'MESSAGING.MESSAGE_TYPES(ID)) INHERITS (MESSAGING.ARCHIVED_MESSAGES)',
+      partition_table, month_start, (month_start + INTERVAL '1 month')::DATE);
+
+    FOREACH index_column IN ARRAY ARRAY['USERNAME', 'DEVICE_ID', 'TYPE_ID']
+    LOOP
+      EXECUTE FORMAT('CREATE INDEX IF NOT EXISTS ARCHIVED_MESSAGES_%s_%s_IX ON %s (%s, ARCHIVED)',
+        partition_suffix, index_column, partition_table, index_column);
+    END LOOP;
+
+    -- The Messaging Service drops the partitions when they expire so it must own them
+    EXECUTE FORMAT('ALTER TABLE %s OWNER TO dbuser', partition_table);
+
+    EXECUTE FORMAT('WITH MOVED AS (DELETE FROM ONLY MESSAGING.ARCHIVED_MESSAGES '
+      || 'WHERE ARCHIVED >= %L AND ARCHIVED < %L RETURNING *) INSERT INTO %s SELECT * FROM MOVED',
+      month_start, (month_start + INTERVAL '1 month')::DATE, partition_table);
+  END LOOP;
+END $$;
+
+COMMIT;
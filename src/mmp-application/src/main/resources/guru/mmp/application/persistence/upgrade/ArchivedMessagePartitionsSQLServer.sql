@@ -0,0 +1,122 @@
+-- -------------------------------------------------------------------------------------------------
+-- NOTE: When changing this file you may also need to modify the following file:
+--       - ArchivedMessagePartitionsPostgres.sql (mmp-application)
+--
+--  Upgrade an existing SQL Server database to partition the MESSAGING.ARCHIVED_MESSAGES table by
+--  month and to add the DATA_SEGMENT and DATA_OFFSET columns, which are used by the Messaging
+--  Service to store the data for large archived messages in the archived message data store.
+--
+--  The ARCHIVED_MESSAGES_PF partition function and ARCHIVED_MESSAGES_PS partition scheme are
+--  created with a boundary for each month containing existing archived messages, and the table
+--  and its indexes are rebuilt on the partition scheme, which moves the existing archived messages
+--  into the monthly partitions.
+-- -------------------------------------------------------------------------------------------------
+IF COL_LENGTH('MESSAGING.ARCHIVED_MESSAGES', 'DATA_SEGMENT') IS NULL
+BEGIN
+  ALTER TABLE "MESSAGING"."ARCHIVED_MESSAGES" ADD DATA_SEGMENT NVARCHAR(256);
+
+  EXEC sys.sp_addextendedproperty
+  @name=N'MS_Description', @value=N'The name of the segment file in the archived message data store containing the data for the message' ,
+  @level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA_SEGMENT';
+END
+GO
+
+IF COL_LENGTH('MESSAGING.ARCHIVED_MESSAGES', 'DATA_OFFSET') IS NULL
+BEGIN
+  ALTER TABLE "MESSAGING"."ARCHIVED_MESSAGES" ADD DATA_OFFSET BIGINT;
+
+  EXEC sys.sp_addextendedproperty
+  @name=N'MS_Description', @value=N'The offset of the data for the message in the segment file in the archived message data store' ,
+  @level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA_OFFSET';
+END
+GO
+
+EXEC sys.sp_updateextendedproperty
+@name=N'MS_Description', @value=N'The data for the message if it is not stored in the archived message data store' ,
+@level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA';
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.partition_functions WHERE name = 'ARCHIVED_MESSAGES_PF')
+  EXEC('CREATE PARTITION FUNCTION ARCHIVED_MESSAGES_PF (DATETIME) AS RANGE RIGHT FOR VALUES ()');
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.partition_schemes WHERE name = 'ARCHIVED_MESSAGES_PS')
+  EXEC('CREATE PARTITION SCHEME ARCHIVED_MESSAGES_PS AS PARTITION ARCHIVED_MESSAGES_PF ALL TO ([PRIMARY])');
+GO
+
+-- Add the boundaries for the start and end of each month containing existing archived messages
+DECLARE @BOUNDARY DATETIME;
+
+DECLARE BOUNDARIES CURSOR LOCAL FAST_FORWARD FOR
+  SELECT MONTH_START FROM (
+    SELECT DATEFROMPARTS(YEAR(ARCHIVED), MONTH(ARCHIVED), 1) AS MONTH_START
+      FROM "MESSAGING"."ARCHIVED_MESSAGES"
+    UNION
+    SELECT DATEADD(MONTH, 1, DATEFROMPARTS(YEAR(ARCHIVED), MONTH(ARCHIVED), 1))
+      FROM "MESSAGING"."ARCHIVED_MESSAGES"
+  ) AS MONTHS;
+
+OPEN BOUNDARIES;
+
+FETCH NEXT FROM BOUNDARIES INTO @BOUNDARY;
+
+WHILE @@FETCH_STATUS = 0
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM sys.partition_range_values PRV
+    INNER JOIN sys.partition_functions PF ON PRV.function_id = PF.function_id
+    WHERE PF.name = 'ARCHIVED_MESSAGES_PF' AND CAST(PRV.value AS DATETIME) = @BOUNDARY)
+  BEGIN
+    ALTER PARTITION SCHEME ARCHIVED_MESSAGES_PS NEXT USED [PRIMARY];
+    ALTER PARTITION FUNCTION ARCHIVED_MESSAGES_PF() SPLIT RANGE (@BOUNDARY);
+  END
+
+  FETCH NEXT FROM BOUNDARIES INTO @BOUNDARY;
+END
+
+CLOSE BOUNDARIES;
+
+DEALLOCATE BOUNDARIES;
+GO
+
+-- Rebuild the table and its indexes on the partition scheme if this has not already been done
+IF NOT EXISTS (SELECT 1 FROM sys.indexes I
+  INNER JOIN sys.partition_schemes PS ON I.data_space_id = PS.data_space_id
+  WHERE I.object_id = OBJECT_ID('MESSAGING.ARCHIVED_MESSAGES') AND I.index_id = 1)
+BEGIN
+  DECLARE @PRIMARY_KEY NVARCHAR(256);
+
+  SELECT @PRIMARY_KEY = name FROM sys.key_constraints
+    WHERE parent_object_id = OBJECT_ID('MESSAGING.ARCHIVED_MESSAGES') AND type = 'PK';
+
+  IF EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'ARCHIVED_MESSAGES_USERNAME_IX'
+    AND object_id = OBJECT_ID('MESSAGING.ARCHIVED_MESSAGES'))
+    DROP INDEX ARCHIVED_MESSAGES_USERNAME_IX ON "MESSAGING"."ARCHIVED_MESSAGES";
+
+  IF EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'ARCHIVED_MESSAGES_DEVICE_ID_IX'
+    AND object_id = OBJECT_ID('MESSAGING.ARCHIVED_MESSAGES'))
+    DROP INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX ON "MESSAGING"."ARCHIVED_MESSAGES";
+
+  IF EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'ARCHIVED_MESSAGES_TYPE_ID_IX'
+    AND object_id = OBJECT_ID('MESSAGING.ARCHIVED_MESSAGES'))
+    DROP INDEX ARCHIVED_MESSAGES_TYPE_ID_IX ON "MESSAGING"."ARCHIVED_MESSAGES";
+
+  IF @PRIMARY_KEY IS NOT NULL
+    EXEC('ALTER TABLE "MESSAGING"."ARCHIVED_MESSAGES" DROP CONSTRAINT "' + @PRIMARY_KEY + '"');
+
+  -- Rebuilding the clustered primary key on the partition scheme moves the existing rows
+  ALTER TABLE "MESSAGING"."ARCHIVED_MESSAGES"
+    ADD PRIMARY KEY (ID, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
+
+  CREATE INDEX ARCHIVED_MESSAGES_USERNAME_IX
+    ON "MESSAGING"."ARCHIVED_MESSAGES"
+    (USERNAME, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
+
+  CREATE INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX
+    ON "MESSAGING"."ARCHIVED_MESSAGES"
+    (DEVICE_ID, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
+
+  CREATE INDEX ARCHIVED_MESSAGES_TYPE_ID_IX
+    ON "MESSAGING"."ARCHIVED_MESSAGES"
+    (TYPE_ID, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
+END
+GO
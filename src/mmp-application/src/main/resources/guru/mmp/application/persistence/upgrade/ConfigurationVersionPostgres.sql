@@ -0,0 +1,25 @@
+-- -------------------------------------------------------------------------------------------------
+-- NOTE: When changing this file you may also need to modify the following file:
+--       - ConfigurationVersionSQLServer.sql (mmp-application)
+--
+--  Upgrade an existing PostgreSQL database to add the CONFIGURATION.CONFIGURATION_VERSION table,
+--  which is used by the Configuration Service to detect configuration values changed by other
+--  application instances.
+--
+--  Execute the following command to upgrade the database:
+--
+--    psql -d dbname -f ConfigurationVersionPostgres.sql
+--
+--  Replace dbuser below with the name of the database user for the application.
+-- -------------------------------------------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS CONFIGURATION.CONFIGURATION_VERSION (
+  VERSION  BIGINT NOT NULL
+);
+
+COMMENT ON COLUMN CONFIGURATION.CONFIGURATION_VERSION.VERSION
+  IS 'The version of the configuration values, which is incremented each time a configuration value is set or removed';
+
+INSERT INTO CONFIGURATION.CONFIGURATION_VERSION (VERSION)
+  SELECT 0 WHERE NOT EXISTS (SELECT 1 FROM CONFIGURATION.CONFIGURATION_VERSION);
+
+GRANT ALL ON TABLE CONFIGURATION.CONFIGURATION_VERSION TO dbuser;
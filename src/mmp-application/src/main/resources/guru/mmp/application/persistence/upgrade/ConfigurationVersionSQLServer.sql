@@ -0,0 +1,23 @@
+-- -------------------------------------------------------------------------------------------------
+-- NOTE: When changing this file you may also need to modify the following file:
+--       - ConfigurationVersionPostgres.sql (mmp-application)
+--
+--  Upgrade an existing SQL Server database to add the CONFIGURATION.CONFIGURATION_VERSION table,
+--  which is used by the Configuration Service to detect configuration values changed by other
+--  application instances.
+-- -------------------------------------------------------------------------------------------------
+IF OBJECT_ID('"CONFIGURATION"."CONFIGURATION_VERSION"', 'U') IS NULL
+BEGIN
+  CREATE TABLE "CONFIGURATION"."CONFIGURATION_VERSION" (
+    VERSION  BIGINT NOT NULL
+  );
+
+  EXEC sys.sp_addextendedproperty
+  @name=N'MS_Description', @value=N'The version of the configuration values, which is incremented each time a configuration value is set or removed' ,
+  @level0type=N'SCHEMA', @level0name=N'CONFIGURATION', @level1type=N'TABLE', @level1name=N'CONFIGURATION_VERSION', @level2type=N'COLUMN', @level2name=N'VERSION';
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM "CONFIGURATION"."CONFIGURATION_VERSION")
+  INSERT INTO "CONFIGURATION"."CONFIGURATION_VERSION" (VERSION) VALUES (0);
+GO
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.ApplicationConfiguration;
+import guru.mmp.application.executor.ApplicationTaskExecutor;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>ApplicationTaskExecutorTest</code> class contains the implementation of the JUnit
+ * tests for the <code>ApplicationTaskExecutor</code> class.
+ *
+ * @author Marcus Portmann
+ */
+public class ApplicationTaskExecutorTest
+{
+  /**
+   * Test that the tasks submitted to a saturated task executor using the ABORT rejection policy
+   * are rejected and counted.
+   */
+  @Test
+  public void abortRejectionPolicyTest()
+    throws Exception
+  {
+    ApplicationTaskExecutor taskExecutor = createTaskExecutor(
+        ApplicationTaskExecutor.RejectionPolicy.ABORT);
+
+    CountDownLatch blocked = new CountDownLatch(1);
+
+    try
+    {
+      // Occupy the only thread and fill the queue
+      taskExecutor.execute(() -> awaitQuietly(blocked));
+      taskExecutor.execute(() -> awaitQuietly(blocked));
+      taskExecutor.execute(() -> awaitQuietly(blocked));
+
+      assertEquals(2, taskExecutor.getQueueSize());
+      assertEquals(0, taskExecutor.getRemainingQueueCapacity());
+
+      try
+      {
+        taskExecutor.execute(() -> {});
+
+        fail("The task was not rejected by the saturated task executor");
+      }
+      catch (TaskRejectedException ignored) {}
+
+      assertEquals(1, taskExecutor.getRejectedTaskCount());
+    }
+    finally
+    {
+      blocked.countDown();
+
+      taskExecutor.shutdown();
+    }
+
+    assertEquals(3, taskExecutor.getCompletedTaskCount());
+  }
+
+  /**
+   * Test that the tasks submitted to a saturated task executor using the DISCARD rejection policy
+   * are discarded and that the queued tasks are executed when the task executor is shutdown.
+   */
+  @Test
+  public void discardRejectionPolicyTest()
+    throws Exception
+  {
+    ApplicationTaskExecutor taskExecutor = createTaskExecutor(
+        ApplicationTaskExecutor.RejectionPolicy.DISCARD);
+
+    CountDownLatch blocked = new CountDownLatch(1);
+
+    AtomicInteger numberOfTasksExecuted = new AtomicInteger();
+
+    for (int i = 0; i < 10; i++)
+    {
+      taskExecutor.execute(() ->
+          {
+            awaitQuietly(blocked);
+
+            numberOfTasksExecuted.incrementAndGet();
+          }
+          );
+    }
+
+    assertEquals(7, taskExecutor.getRejectedTaskCount());
+
+    blocked.countDown();
+
+    taskExecutor.shutdown();
+
+    assertEquals(3, numberOfTasksExecuted.get());
+  }
+
+  private static void awaitQuietly(CountDownLatch latch)
+  {
+    try
+    {
+      assertTrue(latch.await(30, TimeUnit.SECONDS));
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static ApplicationTaskExecutor createTaskExecutor(
+      ApplicationTaskExecutor.RejectionPolicy rejectionPolicy)
+  {
+    ApplicationTaskExecutor taskExecutor = new ApplicationTaskExecutor("testTaskExecutor",
+        new ApplicationConfiguration.TaskExecutorConfiguration(1, 1, 2, rejectionPolicy));
+
+    taskExecutor.initialize();
+
+    return taskExecutor;
+  }
+}
@@ -21,7 +21,9 @@ package guru.mmp.application.test;
 import guru.mmp.application.codes.Code;
 import guru.mmp.application.codes.CodeCategory;
 import guru.mmp.application.codes.CodeCategoryType;
+import guru.mmp.application.codes.CodeSortBy;
 import guru.mmp.application.codes.ICodesService;
+import guru.mmp.common.persistence.SortDirection;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.ContextConfiguration;
@@ -29,12 +31,18 @@ import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
 import org.springframework.test.context.support.DirtiesContextTestExecutionListener;
 import org.springframework.test.context.transaction.TransactionalTestExecutionListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import javax.inject.Inject;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
 
@@ -61,6 +69,157 @@ public class CodesServiceTest
   @Inject
   private ICodesService codesService;
 
+  /**
+   * The Transaction Manager.
+   */
+  @Inject
+  private PlatformTransactionManager transactionManager;
+
+  /**
+   * Test the caching of code categories and their codes.
+   */
+  @Test
+  public void codeCategoryCacheTest()
+    throws Exception
+  {
+    CodeCategory codeCategory = getTestLocalStandardCodeCategoryDetails();
+
+    codesService.createCodeCategory(codeCategory);
+
+    List<Code> codes = new ArrayList<>();
+
+    for (int i = 0; i < 5; i++)
+    {
+      Code code = getTestCodeDetails(codeCategory.getId());
+
+      codesService.createCode(code);
+
+      codes.add(code);
+    }
+
+    CodeCategory retrievedCodeCategory = codesService.getCodeCategory(codeCategory.getId(), true);
+
+    compareCodes(codes, retrievedCodeCategory.getCodes());
+
+    // Modifying the retrieved code category must not modify the cached code category
+    retrievedCodeCategory.getCodes().clear();
+    retrievedCodeCategory.setName("Modified Name");
+
+    retrievedCodeCategory = codesService.getCodeCategory(codeCategory.getId(), true);
+
+    assertEquals(codeCategory.getName(), retrievedCodeCategory.getName());
+    compareCodes(codes, retrievedCodeCategory.getCodes());
+
+    // Creating, updating and deleting codes must invalidate the cached code category
+    Code code = getTestCodeDetails(codeCategory.getId());
+
+    codesService.createCode(code);
+
+    codes.add(code);
+
+    compareCodes(codes, codesService.getCodeCategory(codeCategory.getId(), true).getCodes());
+
+    code.setValue("Updated " + code.getValue());
+
+    codesService.updateCode(code);
+
+    compareCodes(codes, codesService.getCodeCategory(codeCategory.getId(), true).getCodes());
+
+    codesService.deleteCode(codeCategory.getId(), code.getId());
+
+    codes.remove(code);
+
+    retrievedCodeCategory = codesService.getCodeCategory(codeCategory.getId(), true);
+
+    assertEquals(codes.size(), retrievedCodeCategory.getCodes().size());
+    compareCodes(codes, retrievedCodeCategory.getCodes());
+
+    // The codes must only be omitted if the code category has not changed since it was retrieved
+    Thread.sleep(10);
+
+    LocalDateTime lastRetrieved = LocalDateTime.now();
+
+    Thread.sleep(10);
+
+    retrievedCodeCategory = codesService.getCodeCategory(codeCategory.getId(), lastRetrieved,
+        false);
+
+    assertNull("The codes were returned for a current code category",
+        retrievedCodeCategory.getCodes());
+
+    retrievedCodeCategory = codesService.getCodeCategory(codeCategory.getId(), lastRetrieved,
+        true);
+
+    compareCodes(codes, retrievedCodeCategory.getCodes());
+
+    codesService.createCode(getTestCodeDetails(codeCategory.getId()));
+
+    retrievedCodeCategory = codesService.getCodeCategory(codeCategory.getId(), lastRetrieved,
+        false);
+
+    assertEquals("The codes were not returned for a code category that changed", codes.size() + 1,
+        retrievedCodeCategory.getCodes().size());
+
+    // Updating the code category must invalidate the cached code category
+    codeCategory.setName("Updated " + codeCategory.getName());
+
+    codesService.updateCodeCategory(codeCategory);
+
+    assertEquals(codeCategory.getName(), codesService.getCodeCategory(codeCategory.getId(), false)
+        .getName());
+  }
+
+  /**
+   * Test that a code category changed as part of a transaction is only removed from the cache
+   * once the transaction commits, so that a code category cached by another thread before the
+   * commit is not retained.
+   */
+  @Test
+  public void codeCategoryCacheTransactionTest()
+    throws Exception
+  {
+    CodeCategory codeCategory = getTestLocalStandardCodeCategoryDetails();
+
+    codesService.createCodeCategory(codeCategory);
+
+    List<Code> codes = new ArrayList<>();
+
+    Code code = getTestCodeDetails(codeCategory.getId());
+
+    codesService.createCode(code);
+
+    codes.add(code);
+
+    compareCodes(codes, codesService.getCodeCategory(codeCategory.getId(), true).getCodes());
+
+    // A code created in a transaction that is rolled back must not be retrieved
+    TransactionStatus transactionStatus = transactionManager.getTransaction(
+        new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRED));
+
+    codesService.createCode(getTestCodeDetails(codeCategory.getId()));
+
+    transactionManager.rollback(transactionStatus);
+
+    compareCodes(codes, codesService.getCodeCategory(codeCategory.getId(), true).getCodes());
+
+    // A code created in a transaction that is committed must be retrieved even if the code
+    // category was cached by another thread before the transaction committed
+    transactionStatus = transactionManager.getTransaction(new DefaultTransactionDefinition(
+        TransactionDefinition.PROPAGATION_REQUIRED));
+
+    code = getTestCodeDetails(codeCategory.getId());
+
+    codesService.createCode(code);
+
+    compareCodes(codes, getCodeCategoryOnAnotherThread(codeCategory.getId()).getCodes());
+
+    transactionManager.commit(transactionStatus);
+
+    codes.add(code);
+
+    compareCodes(codes, codesService.getCodeCategory(codeCategory.getId(), true).getCodes());
+  }
+
   /**
    * Test the code functionality.
    */
@@ -262,6 +421,47 @@ public class CodesServiceTest
     compareCodes(codes, retrievedCodes);
   }
 
+  /**
+   * Test the paged retrieval of the codes for a code category.
+   */
+  @Test
+  public void pagedCodesTest()
+    throws Exception
+  {
+    CodeCategory codeCategory = getTestLocalCustomCodeCategoryDetails();
+
+    codesService.createCodeCategory(codeCategory);
+
+    for (int i = 0; i < 12; i++)
+    {
+      codesService.createCode(getTestCodeDetails(codeCategory.getId()));
+    }
+
+    List<Code> allCodes = codesService.getCodesForCodeCategory(codeCategory.getId());
+
+    List<Code> codes = codesService.getCodesForCodeCategory(codeCategory.getId(),
+        CodeSortBy.NAME, SortDirection.ASCENDING, 4, 4);
+
+    assertEquals("The correct number of codes (4) was not retrieved", 4, codes.size());
+
+    for (int i = 0; i < 4; i++)
+    {
+      compareCodes(allCodes.get(4 + i), codes.get(i));
+    }
+
+    codes = codesService.getCodesForCodeCategory(codeCategory.getId(), CodeSortBy.NAME,
+        SortDirection.DESCENDING, 0, 1);
+
+    compareCodes(allCodes.get(allCodes.size() - 1), codes.get(0));
+
+    codes = codesService.getCodesForCodeCategoryAfter(codeCategory.getId(), allCodes.get(7), 10);
+
+    assertEquals("The correct number of codes (4) was not retrieved after the code", 4,
+        codes.size());
+
+    compareCodes(allCodes.get(8), codes.get(0));
+  }
+
   private static synchronized Code getTestCodeDetails(UUID codeCategoryId)
   {
     codeCount++;
@@ -426,4 +626,19 @@ public class CodesServiceTest
       }
     }
   }
+
+  private CodeCategory getCodeCategoryOnAnotherThread(UUID id)
+    throws Exception
+  {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try
+    {
+      return executor.submit(() -> codesService.getCodeCategory(id, true)).get();
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
 }
@@ -21,7 +21,11 @@ package guru.mmp.application.test;
 import guru.mmp.application.configuration.ConfigurationException;
 import guru.mmp.application.configuration.ConfigurationNotFoundException;
 import guru.mmp.application.configuration.ConfigurationValue;
+import guru.mmp.application.configuration.ConfigurationValueSortBy;
+import guru.mmp.application.configuration.IConfigurationDAO;
+import guru.mmp.application.configuration.IConfigurationListener;
 import guru.mmp.application.configuration.IConfigurationService;
+import guru.mmp.common.persistence.SortDirection;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.ContextConfiguration;
@@ -29,9 +33,16 @@ import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
 import org.springframework.test.context.support.DirtiesContextTestExecutionListener;
 import org.springframework.test.context.transaction.TransactionalTestExecutionListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
 
@@ -64,6 +75,9 @@ public class ConfigurationServiceTest
   private static final byte[] TEST_BINARY_UPDATED_VALUE = "TestBinaryUpdatedValue".getBytes();
   private static final String TEST_BOOLEAN_KEY = "TestBooleanKey";
   private static final boolean TEST_BOOLEAN_VALUE = true;
+  private static final String TEST_LISTENER_KEY = "TestListener.Key";
+  private static final String TEST_EXTERNAL_KEY = "TestListener.ExternalKey";
+  private static final String TEST_ROLLBACK_KEY = "TestRollbackKey";
 
   /**
    * The Codes Service.
@@ -71,6 +85,18 @@ public class ConfigurationServiceTest
   @Inject
   private IConfigurationService configurationService;
 
+  /**
+   * The Configuration DAO.
+   */
+  @Inject
+  private IConfigurationDAO configurationDAO;
+
+  /**
+   * The Transaction Manager.
+   */
+  @Inject
+  private PlatformTransactionManager transactionManager;
+
   /**
    * Test the <code>Binary</code> configuration.
    */
@@ -161,6 +187,54 @@ public class ConfigurationServiceTest
         + TEST_BOOLEAN_KEY + ")", false, value);
   }
 
+  /**
+   * Test that the configuration listeners are notified when the configuration values are set and
+   * removed by this application instance or changed in the database by another instance.
+   */
+  @Test
+  public void configurationListenerTest()
+    throws Exception
+  {
+    List<String> changes = new ArrayList<>();
+
+    IConfigurationListener listener = (key, value) -> changes.add(key + "=" + value);
+
+    configurationService.addConfigurationListener("testlistener.", listener);
+
+    try
+    {
+      configurationService.setValue(TEST_LISTENER_KEY, TEST_STRING_VALUE, TEST_DESCRIPTION);
+      configurationService.setValue(TEST_LISTENER_KEY, TEST_STRING_VALUE, TEST_DESCRIPTION);
+      configurationService.setValue(TEST_STRING_KEY + "Listener", TEST_STRING_VALUE,
+          TEST_DESCRIPTION);
+      configurationService.removeValue(TEST_LISTENER_KEY);
+
+      assertEquals("The configuration listener was not notified of the expected changes",
+          2, changes.size());
+      assertEquals(TEST_LISTENER_KEY + "=" + TEST_STRING_VALUE, changes.get(0));
+      assertEquals(TEST_LISTENER_KEY + "=null", changes.get(1));
+
+      // Simulate a change made by another application instance sharing the same database
+      configurationDAO.setValue(TEST_EXTERNAL_KEY, TEST_INTEGER_VALUE, TEST_DESCRIPTION);
+
+      configurationService.refresh();
+
+      assertEquals("The configuration value changed in the database was not retrieved",
+          TEST_INTEGER_VALUE, configurationService.getInteger(TEST_EXTERNAL_KEY));
+      assertEquals("The configuration listener was not notified of the change in the database",
+          TEST_EXTERNAL_KEY + "=" + TEST_INTEGER_VALUE, changes.get(2));
+    }
+    finally
+    {
+      configurationService.removeConfigurationListener(listener);
+    }
+
+    configurationService.setValue(TEST_LISTENER_KEY, TEST_STRING_VALUE, TEST_DESCRIPTION);
+
+    assertEquals("The configuration listener was notified after it was removed", 3,
+        changes.size());
+  }
+
   /**
    * Test the <code>Double</code> configuration.
    */
@@ -316,6 +390,83 @@ public class ConfigurationServiceTest
         + TEST_LONG_KEY + ")", TEST_LONG_VALUE + 1L, value.longValue());
   }
 
+  /**
+   * Test the paged retrieval of the filtered configuration values.
+   */
+  @Test
+  public void pagedConfigurationTest()
+    throws ConfigurationException
+  {
+    for (int i = 0; i < 10; i++)
+    {
+      configurationService.setValue(String.format("TestPagedKey%02d", i), "TestPagedValue" + i,
+          TEST_DESCRIPTION);
+    }
+
+    List<ConfigurationValue> configurationValues =
+        configurationService.getFilteredConfigurationValues("TestPagedKey",
+        ConfigurationValueSortBy.KEY, SortDirection.ASCENDING, 3, 4);
+
+    assertEquals("The correct number of configuration values (4) was not retrieved", 4,
+        configurationValues.size());
+    assertEquals("TestPagedKey03", configurationValues.get(0).getKey());
+    assertEquals("TestPagedKey06", configurationValues.get(3).getKey());
+
+    configurationValues = configurationService.getFilteredConfigurationValues("TestPagedKey",
+        ConfigurationValueSortBy.VALUE, SortDirection.DESCENDING, 0, 1);
+
+    assertEquals("TestPagedKey09", configurationValues.get(0).getKey());
+
+    configurationValues = configurationService.getFilteredConfigurationValuesAfter(
+        "TestPagedKey", "TestPagedKey07", 10);
+
+    assertEquals("The correct number of configuration values (2) was not retrieved after the key",
+        2, configurationValues.size());
+    assertEquals("TestPagedKey08", configurationValues.get(0).getKey());
+  }
+
+  /**
+   * Test that a configuration value set in a transaction that is rolled back is not retained.
+   */
+  @Test
+  public void rollbackConfigurationTest()
+    throws Exception
+  {
+    configurationService.setValue(TEST_ROLLBACK_KEY, TEST_STRING_VALUE, TEST_DESCRIPTION);
+
+    TransactionStatus transactionStatus = transactionManager.getTransaction(
+        new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRED));
+
+    configurationService.setValue(TEST_ROLLBACK_KEY, TEST_STRING_VALUE + "Updated",
+        TEST_DESCRIPTION);
+
+    assertEquals("The updated String value was not retrieved within the transaction",
+        TEST_STRING_VALUE + "Updated", configurationService.getString(TEST_ROLLBACK_KEY));
+    assertEquals("The uncommitted String value was retrieved outside the transaction",
+        TEST_STRING_VALUE, getStringOnAnotherThread(TEST_ROLLBACK_KEY));
+
+    transactionManager.rollback(transactionStatus);
+
+    assertEquals("The String value was not restored after the transaction was rolled back",
+        TEST_STRING_VALUE, configurationService.getString(TEST_ROLLBACK_KEY));
+
+    configurationService.refresh();
+
+    assertEquals("The String value was not restored after the transaction was rolled back",
+        TEST_STRING_VALUE, configurationService.getString(TEST_ROLLBACK_KEY));
+
+    transactionStatus = transactionManager.getTransaction(new DefaultTransactionDefinition(
+        TransactionDefinition.PROPAGATION_REQUIRED));
+
+    configurationService.setValue(TEST_ROLLBACK_KEY, TEST_STRING_VALUE + "Committed",
+        TEST_DESCRIPTION);
+
+    transactionManager.commit(transactionStatus);
+
+    assertEquals("The committed String value was not retrieved outside the transaction",
+        TEST_STRING_VALUE + "Committed", getStringOnAnotherThread(TEST_ROLLBACK_KEY));
+  }
+
   /**
    * Test the <code>String</code> configuration.
    */
@@ -353,4 +504,19 @@ public class ConfigurationServiceTest
     assertEquals("The required updated String value was not retrieved for the configuration key ("
         + TEST_STRING_KEY + ")", TEST_STRING_VALUE + "Updated", value);
   }
+
+  private String getStringOnAnotherThread(String key)
+    throws Exception
+  {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try
+    {
+      return executor.submit(() -> configurationService.getString(key)).get();
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.persistence.IDGenerator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+import org.springframework.test.context.support.DirtiesContextTestExecutionListener;
+import org.springframework.test.context.transaction.TransactionalTestExecutionListener;
+
+import javax.inject.Inject;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>IDGeneratorTest</code> class contains the implementation of the JUnit tests for the
+ * <code>IDGenerator</code> class.
+ *
+ * @author Marcus Portmann
+ */
+@RunWith(TestClassRunner.class)
+@ContextConfiguration(classes = { TestConfiguration.class })
+@TestExecutionListeners(listeners = { DependencyInjectionTestExecutionListener.class,
+    DirtiesContextTestExecutionListener.class, TransactionalTestExecutionListener.class })
+public class IDGeneratorTest
+{
+  /**
+   * The number of application instances simulated by the tests.
+   */
+  private static final int NUMBER_OF_NODES = 4;
+
+  /**
+   * The number of threads retrieving IDs on each simulated application instance.
+   */
+  private static final int NUMBER_OF_THREADS_PER_NODE = 2;
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(IDGeneratorTest.class);
+
+  /**
+   * The Spring application context.
+   */
+  @Inject
+  private ApplicationContext applicationContext;
+
+  /**
+   * Test the generation of IDs using blocks of reserved IDs across multiple simulated application
+   * instances.
+   */
+  @Test
+  public void blockAllocationTest()
+    throws Exception
+  {
+    double baselineRate = generateIds(1, 250);
+
+    double blockRate = generateIds(1000, 10000);
+
+    logger.info(String.format("Retrieved %.0f IDs/second reserving 1 ID at a time and %.0f "
+        + "IDs/second reserving blocks of 1000 IDs", baselineRate, blockRate));
+  }
+
+  /**
+   * Generate IDs on multiple threads across multiple simulated application instances, which share
+   * the same database, and check that no duplicate IDs were generated.
+   *
+   * @param blockSize            the number of IDs to reserve at a time
+   * @param numberOfIdsPerThread the number of IDs to retrieve on each thread
+   *
+   * @return the number of IDs generated per second
+   */
+  private double generateIds(int blockSize, int numberOfIdsPerThread)
+    throws Exception
+  {
+    String type = "Application.IDGeneratorTest." + UUID.randomUUID();
+
+    IDGenerator[] idGenerators = new IDGenerator[NUMBER_OF_NODES];
+
+    for (int i = 0; i < idGenerators.length; i++)
+    {
+      idGenerators[i] = applicationContext.getAutowireCapableBeanFactory().createBean(
+          IDGenerator.class);
+
+      idGenerators[i].setBlockSize(type, blockSize);
+    }
+
+    Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+    ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_NODES
+        * NUMBER_OF_THREADS_PER_NODE);
+
+    try
+    {
+      Future<?>[] futures = new Future<?>[NUMBER_OF_NODES * NUMBER_OF_THREADS_PER_NODE];
+
+      long startTime = System.nanoTime();
+
+      for (int i = 0; i < futures.length; i++)
+      {
+        IDGenerator idGenerator = idGenerators[i % NUMBER_OF_NODES];
+
+        futures[i] = executor.submit(() ->
+            {
+              for (int j = 0; j < numberOfIdsPerThread; j++)
+              {
+                long id = idGenerator.next(type);
+
+                assertTrue(String.format("The duplicate ID (%d) was generated", id), ids.add(id));
+              }
+            }
+            );
+      }
+
+      for (Future<?> future : futures)
+      {
+        future.get();
+      }
+
+      long elapsed = System.nanoTime() - startTime;
+
+      assertEquals("The correct number of IDs was not generated", futures.length
+          * numberOfIdsPerThread, ids.size());
+
+      return (ids.size() * 1000000000.0) / elapsed;
+    }
+    finally
+    {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+}
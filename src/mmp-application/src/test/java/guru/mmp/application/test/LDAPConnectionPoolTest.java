@@ -0,0 +1,293 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.application.security.LDAPConnectionPool;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import java.util.Hashtable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>LDAPConnectionPoolTest</code> class contains the implementation of the JUnit tests
+ * for the <code>LDAPConnectionPool</code> class.
+ *
+ * @author Marcus Portmann
+ */
+public class LDAPConnectionPoolTest
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(LDAPConnectionPoolTest.class);
+
+  /**
+   * Test that connections that have been idle for longer than the maximum idle time are closed.
+   */
+  @Test
+  public void idleEvictionTest()
+    throws Exception
+  {
+    AtomicInteger numberOfClosedConnections = new AtomicInteger();
+
+    LDAPConnectionPool connectionPool = new LDAPConnectionPool("Test", 4, 50, 60000, 1000,
+        TimeUnit.MILLISECONDS, () -> new TestDirContext(new AtomicBoolean(true),
+        numberOfClosedConnections));
+
+    DirContext firstConnection = connectionPool.getConnection();
+    DirContext secondConnection = connectionPool.getConnection();
+
+    connectionPool.releaseConnection(firstConnection);
+    connectionPool.releaseConnection(secondConnection);
+
+    assertEquals("The correct number of idle connections (2) was not found", 2,
+        connectionPool.getNumberOfIdleConnections());
+
+    Thread.sleep(100);
+
+    assertEquals("The correct number of idle connections (2) was not evicted", 2,
+        connectionPool.evictIdleConnections());
+    assertEquals("The evicted connections were not closed", 2, numberOfClosedConnections.get());
+
+    assertNotNull("A new connection was not opened after the idle connections were evicted",
+        connectionPool.getConnection());
+    assertEquals("The correct number of connections (3) was not opened", 3,
+        connectionPool.getNumberOfConnectionsCreated());
+  }
+
+  /**
+   * Test that the number of connections in use is limited to the maximum size of the pool.
+   */
+  @Test
+  public void maximumSizeTest()
+    throws Exception
+  {
+    LDAPConnectionPool connectionPool = new LDAPConnectionPool("Test", 2, 60000, 60000, 100,
+        TimeUnit.MILLISECONDS, () -> new TestDirContext(new AtomicBoolean(true),
+        new AtomicInteger()));
+
+    DirContext firstConnection = connectionPool.getConnection();
+
+    connectionPool.getConnection();
+
+    assertEquals("The correct number of active connections (2) was not found", 2,
+        connectionPool.getNumberOfActiveConnections());
+
+    try
+    {
+      connectionPool.getConnection();
+
+      assertFalse("More connections than the maximum size of the pool were handed out", true);
+    }
+    catch (ServiceUnavailableException ignored) {}
+
+    connectionPool.releaseConnection(firstConnection);
+
+    assertSame("The released connection was not reused", firstConnection,
+        connectionPool.getConnection());
+
+    connectionPool.close();
+  }
+
+  /**
+   * Test that connections are reused instead of being opened for every operation.
+   */
+  @Test
+  public void reuseTest()
+    throws Exception
+  {
+    LDAPConnectionPool connectionPool = new LDAPConnectionPool("Test", 4, 60000, 60000, 1000,
+        TimeUnit.MILLISECONDS, () -> new TestDirContext(new AtomicBoolean(true),
+        new AtomicInteger()));
+
+    for (int i = 0; i < 1000; i++)
+    {
+      connectionPool.releaseConnection(connectionPool.getConnection());
+    }
+
+    assertEquals("The connections were not reused", 1,
+        connectionPool.getNumberOfConnectionsCreated());
+    assertEquals("The correct number of active connections (0) was not found", 0,
+        connectionPool.getNumberOfActiveConnections());
+  }
+
+  /**
+   * Measure the throughput of retrieving and releasing pooled connections from several threads.
+   */
+  @Test
+  public void throughputTest()
+    throws Exception
+  {
+    int numberOfThreads = 8;
+    int numberOfOperations = 25000;
+
+    LDAPConnectionPool connectionPool = new LDAPConnectionPool("Test", 4, 60000, 60000, 10000,
+        TimeUnit.MILLISECONDS, () -> new TestDirContext(new AtomicBoolean(true),
+        new AtomicInteger()));
+
+    ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+
+    try
+    {
+      long start = System.nanoTime();
+
+      Future<?>[] futures = new Future<?>[numberOfThreads];
+
+      for (int i = 0; i < numberOfThreads; i++)
+      {
+        futures[i] = executor.submit(() ->
+            {
+              for (int j = 0; j < numberOfOperations; j++)
+              {
+                connectionPool.releaseConnection(connectionPool.getConnection());
+              }
+
+              return null;
+            }
+            );
+      }
+
+      for (Future<?> future : futures)
+      {
+        future.get();
+      }
+
+      long elapsed = System.nanoTime() - start;
+
+      assertTrue("More connections than the maximum size of the pool were opened",
+          connectionPool.getNumberOfConnectionsCreated() <= 4);
+
+      logger.info(String.format(
+          "Retrieved and released %d pooled connections on %d threads in %d ms (%.0f/second) "
+          + "opening %d connections", numberOfThreads * numberOfOperations, numberOfThreads,
+          elapsed / 1000000, (numberOfThreads * numberOfOperations) / (elapsed / 1e9),
+          connectionPool.getNumberOfConnectionsCreated()));
+    }
+    finally
+    {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Test that idle connections that fail validation are discarded.
+   */
+  @Test
+  public void validationTest()
+    throws Exception
+  {
+    AtomicBoolean isValid = new AtomicBoolean(true);
+
+    AtomicInteger numberOfClosedConnections = new AtomicInteger();
+
+    LDAPConnectionPool connectionPool = new LDAPConnectionPool("Test", 4, 60000, 0, 1000,
+        TimeUnit.MILLISECONDS, () -> new TestDirContext(isValid, numberOfClosedConnections));
+
+    DirContext connection = connectionPool.getConnection();
+
+    connectionPool.releaseConnection(connection);
+
+    Thread.sleep(5);
+
+    isValid.set(false);
+
+    assertNotSame("A connection that failed validation was reused", connection,
+        connectionPool.getConnection());
+    assertEquals("The connection that failed validation was not discarded", 1,
+        connectionPool.getNumberOfInvalidConnections());
+    assertEquals("The connection that failed validation was not closed", 1,
+        numberOfClosedConnections.get());
+  }
+
+  /**
+   * The <code>TestDirContext</code> class provides a JNDI directory context that is not connected
+   * to an LDAP server and whose validity can be controlled by the tests.
+   */
+  private static class TestDirContext extends InitialDirContext
+  {
+    private AtomicBoolean isValid;
+    private AtomicInteger numberOfClosedConnections;
+
+    /**
+     * Constructs a new <code>TestDirContext</code>.
+     *
+     * @param isValid                   is the connection valid
+     * @param numberOfClosedConnections the number of closed connections
+     */
+    TestDirContext(AtomicBoolean isValid, AtomicInteger numberOfClosedConnections)
+      throws NamingException
+    {
+      super(new Hashtable<>());
+
+      this.isValid = isValid;
+      this.numberOfClosedConnections = numberOfClosedConnections;
+    }
+
+    /**
+     * Close the connection.
+     */
+    @Override
+    public void close()
+    {
+      numberOfClosedConnections.incrementAndGet();
+    }
+
+    /**
+     * Retrieve the attributes for the named object.
+     *
+     * @param name    the name of the object
+     * @param attrIds the identifiers of the attributes to retrieve
+     *
+     * @return the attributes for the named object
+     */
+    @Override
+    public Attributes getAttributes(String name, String[] attrIds)
+      throws NamingException
+    {
+      if (!isValid.get())
+      {
+        throw new CommunicationException("The connection has been closed");
+      }
+
+      return new BasicAttributes();
+    }
+  }
+}
@@ -19,6 +19,7 @@ package guru.mmp.application.test;
 //~--- non-JDK imports --------------------------------------------------------
 
 import guru.mmp.application.security.*;
+import guru.mmp.common.persistence.SortDirection;
 import guru.mmp.common.util.BinaryBuffer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -239,6 +240,126 @@ public class SecurityServiceTest
     assertEquals("string", stringAttribute.getTypeName());
   }
 
+  /**
+   * Test the caching of user directory IDs, function codes and security group memberships.
+   */
+  @Test
+  public void authorisationCacheTest()
+    throws Exception
+  {
+    Organisation organisation = getTestOrganisationDetails();
+
+    UserDirectory userDirectory = securityService.createOrganisation(organisation, true);
+
+    Group group = getTestGroupDetails();
+
+    securityService.createGroup(userDirectory.getId(), group);
+
+    User user = getTestUserDetails();
+
+    securityService.createUser(userDirectory.getId(), user, false, false);
+
+    Map<String, guru.mmp.common.util.BoundedCache.Statistics> cacheStatistics =
+        securityService.getCacheStatistics();
+
+    assertEquals("The user directory ID for the user (" + user.getUsername()
+        + ") was not authenticated against the correct user directory", userDirectory.getId(),
+        securityService.authenticate(user.getUsername(), user.getPassword()));
+
+    long userDirectoryIdHits = cacheStatistics.get("UserDirectoryIds").getHitCount();
+
+    assertEquals("The cached user directory ID for the user (" + user.getUsername()
+        + ") is incorrect", userDirectory.getId(), securityService.getUserDirectoryIdForUser(
+        user.getUsername()));
+    assertEquals("The cached user directory ID for the user (" + user.getUsername()
+        + ") was not used", userDirectoryIdHits + 1, cacheStatistics.get("UserDirectoryIds")
+        .getHitCount());
+
+    assertFalse("The user (" + user.getUsername() + ") was found in the group ("
+        + group.getGroupName() + ")", securityService.isUserInGroup(userDirectory.getId(),
+        user.getUsername(), group.getGroupName()));
+    assertEquals("The correct number of group names (0) was not retrieved for the user ("
+        + user.getUsername() + ")", 0, securityService.getGroupNamesForUser(userDirectory.getId(),
+        user.getUsername()).size());
+
+    securityService.addUserToGroup(userDirectory.getId(), user.getUsername(), group.getGroupName());
+
+    assertTrue("The cached membership of the user (" + user.getUsername()
+        + ") in the group (" + group.getGroupName() + ") was not invalidated",
+        securityService.isUserInGroup(userDirectory.getId(), user.getUsername(),
+        group.getGroupName()));
+    assertEquals("The cached group names for the user (" + user.getUsername()
+        + ") were not invalidated", 1, securityService.getGroupNamesForUser(userDirectory.getId(),
+        user.getUsername()).size());
+
+    long groupNamesHits = cacheStatistics.get("GroupNames").getHitCount();
+
+    securityService.getGroupNamesForUser(userDirectory.getId(), user.getUsername());
+
+    assertEquals("The cached group names for the user (" + user.getUsername()
+        + ") were not used", groupNamesHits + 1, cacheStatistics.get("GroupNames").getHitCount());
+
+    securityService.removeUserFromGroup(userDirectory.getId(), user.getUsername(),
+        group.getGroupName());
+
+    assertFalse("The cached membership of the user (" + user.getUsername()
+        + ") in the group (" + group.getGroupName() + ") was not invalidated",
+        securityService.isUserInGroup(userDirectory.getId(), user.getUsername(),
+        group.getGroupName()));
+
+    List<String> functionCodes = securityService.getFunctionCodesForUser(
+        SecurityService.DEFAULT_USER_DIRECTORY_ID, "Administrator");
+
+    long functionCodesHits = cacheStatistics.get("FunctionCodes").getHitCount();
+
+    assertEquals("The cached function codes for the user (Administrator) are incorrect",
+        functionCodes, securityService.getFunctionCodesForUser(
+        SecurityService.DEFAULT_USER_DIRECTORY_ID, "Administrator"));
+    assertEquals("The cached function codes for the user (Administrator) were not used",
+        functionCodesHits + 1, cacheStatistics.get("FunctionCodes").getHitCount());
+  }
+
+  /**
+   * Test that the cached authorisations for a user are invalidated when the user's security group
+   * memberships are changed using a username with a different case.
+   */
+  @Test
+  public void authorisationCacheUsernameCaseTest()
+    throws Exception
+  {
+    Organisation organisation = getTestOrganisationDetails();
+
+    UserDirectory userDirectory = securityService.createOrganisation(organisation, true);
+
+    Group group = getTestGroupDetails();
+
+    securityService.createGroup(userDirectory.getId(), group);
+
+    User user = getTestUserDetails();
+
+    securityService.createUser(userDirectory.getId(), user, false, false);
+
+    securityService.addUserToGroup(userDirectory.getId(), user.getUsername(), group.getGroupName());
+
+    assertTrue("The user (" + user.getUsername() + ") was not found in the group ("
+        + group.getGroupName() + ")", securityService.isUserInGroup(userDirectory.getId(),
+        user.getUsername(), group.getGroupName()));
+    assertEquals("The correct number of group names (1) was not retrieved for the user ("
+        + user.getUsername() + ")", 1, securityService.getGroupNamesForUser(userDirectory.getId(),
+        user.getUsername()).size());
+
+    securityService.removeUserFromGroup(userDirectory.getId(), user.getUsername().toUpperCase(),
+        group.getGroupName());
+
+    assertFalse("The cached membership of the user (" + user.getUsername()
+        + ") in the group (" + group.getGroupName() + ") was not invalidated",
+        securityService.isUserInGroup(userDirectory.getId(), user.getUsername(),
+        group.getGroupName()));
+    assertEquals("The cached group names for the user (" + user.getUsername()
+        + ") were not invalidated", 0, securityService.getGroupNamesForUser(userDirectory.getId(),
+        user.getUsername()).size());
+  }
+
   /**
    * Test the change user password functionality.
    */
@@ -781,6 +902,71 @@ public class SecurityServiceTest
     catch (OrganisationNotFoundException ignored) {}
   }
 
+  /**
+   * Test the paged filtered users functionality.
+   */
+  @Test
+  public void pagedFilteredUsersTest()
+    throws Exception
+  {
+    Organisation organisation = getTestOrganisationDetails();
+
+    UserDirectory userDirectory = securityService.createOrganisation(organisation, true);
+
+    for (int i = 0; i < 19; i++)
+    {
+      securityService.createUser(userDirectory.getId(), getTestUserDetails(), false, false);
+    }
+
+    List<String> usernames = new ArrayList<>();
+
+    securityService.forEachFilteredUser(userDirectory.getId(), "Test User", user -> usernames.add(
+        user.getUsername()));
+
+    assertEquals("The correct number of filtered users (19) was not processed", 19,
+        usernames.size());
+
+    List<User> retrievedUsers = securityService.getFilteredUsers(userDirectory.getId(),
+        "Test User", UserSortBy.USERNAME, SortDirection.ASCENDING, 5, 5);
+
+    assertEquals("The correct number of filtered users (5) was not retrieved", 5,
+        retrievedUsers.size());
+
+    for (int i = 0; i < 5; i++)
+    {
+      assertEquals("The correct filtered user was not retrieved", usernames.get(5 + i),
+          retrievedUsers.get(i).getUsername());
+    }
+
+    retrievedUsers = securityService.getFilteredUsers(userDirectory.getId(), "Test User",
+        UserSortBy.USERNAME, SortDirection.ASCENDING, 15, 10);
+
+    assertEquals("The correct number of filtered users (4) was not retrieved for the last page",
+        4, retrievedUsers.size());
+
+    retrievedUsers = securityService.getFilteredUsers(userDirectory.getId(), "Test User",
+        UserSortBy.USERNAME, SortDirection.DESCENDING, 0, 1);
+
+    assertEquals("The correct filtered user was not retrieved", usernames.get(18),
+        retrievedUsers.get(0).getUsername());
+
+    retrievedUsers = securityService.getFilteredUsersAfter(userDirectory.getId(), "Test User",
+        usernames.get(9), 5);
+
+    assertEquals("The correct number of filtered users (5) was not retrieved after the user", 5,
+        retrievedUsers.size());
+    assertEquals("The correct filtered user was not retrieved after the user", usernames.get(10),
+        retrievedUsers.get(0).getUsername());
+
+    retrievedUsers = securityService.getFilteredUsersAfter(userDirectory.getId(), "Test User",
+        usernames.get(9).toUpperCase(), 5);
+
+    assertEquals("The correct number of filtered users (5) was not retrieved after the user "
+        + "with the upper-case username", 5, retrievedUsers.size());
+    assertEquals("The correct filtered user was not retrieved after the user with the "
+        + "upper-case username", usernames.get(10), retrievedUsers.get(0).getUsername());
+  }
+
   /**
    * Test the reload user directories functionality.
    */
@@ -28,18 +28,14 @@ import org.apache.ws.security.handler.WSHandlerConstants;
 import org.apache.ws.security.handler.WSHandlerResult;
 import org.apache.ws.security.message.token.Timestamp;
 import org.apache.ws.security.util.WSSecurityUtil;
-import org.apache.xml.security.utils.XMLUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 
 import javax.security.auth.callback.CallbackHandler;
 import javax.xml.soap.*;
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.ws.handler.MessageContext;
 import javax.xml.ws.handler.soap.SOAPMessageContext;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -99,7 +95,7 @@ public class WebServiceClientSecurityHandler extends WebServiceSecurityHandlerBa
 
       cryptoProperties = new Properties();
       cryptoProperties.put("org.apache.ws.security.crypto.provider",
-          "guru.mmp.common.service.ws.security.WebServiceClientCrypto");
+          WebServiceClientCrypto.class.getName());
       setOption(WSHandlerConstants.SIG_PROP_REF_ID, MESSAGE_CONTEXT_CRYPTO_PROPERTIES);
 
       secEngine.getWssConfig().setValidator(WSSecurityEngine.SIGNATURE,
@@ -318,36 +314,21 @@ public class WebServiceClientSecurityHandler extends WebServiceSecurityHandlerBa
     // Retrieve the SOAP message
     SOAPMessage message = messageContext.getMessage();
 
-    // Retrieve the SOAP part of the SOAP message
-    SOAPPart sPart = message.getSOAPPart();
-
     // Convert the SOAP message to an org.w3c.dom.Document
     Document doc = messageToDocument(message, true);
 
     doSenderAction(doAction, doc, requestData, actions, true);
 
-    // Convert the org.w3c.dom.Document to a String and set it as the content on the SOAP part
-    ByteArrayOutputStream os = new ByteArrayOutputStream();
-
-    XMLUtils.outputDOM(doc, os, true);
-
-    try
-    {
-      sPart.setContent(new StreamSource(new ByteArrayInputStream(os.toByteArray())));
+    // Apply the WS-Security additions to the SOAP part of the message
+    documentToMessage(doc, message, true);
 
-      /*
-       * This step is required to force the JAX-WS runtime to acknowledge that the message has
-       * been updated via the setContent call above. If we do not do this then certain JAX-WS
-       * runtimes (i.e. WebSphere) will assume that the message has not been modified and send
-       * the original message content without the WS-Security additions.
-       */
-      messageContext.setMessage(messageContext.getMessage());
-    }
-    catch (SOAPException e)
-    {
-      throw new WSSecurityException("Failed to process the SOAP response:"
-          + " Couldn't set content on the SOAPPart", e);
-    }
+    /*
+     * This step is required to force the JAX-WS runtime to acknowledge that the message has been
+     * updated. If we do not do this then certain JAX-WS runtimes (i.e. WebSphere) will assume that
+     * the message has not been modified and send the original message content without the
+     * WS-Security additions.
+     */
+    messageContext.setMessage(messageContext.getMessage());
 
     return true;
   }
@@ -395,9 +376,6 @@ public class WebServiceClientSecurityHandler extends WebServiceSecurityHandlerBa
     // Retrieve the SOAP message
     SOAPMessage message = messageContext.getMessage();
 
-    // Retrieve the SOAP part of the SOAP message
-    SOAPPart sPart = message.getSOAPPart();
-
     // Convert the SOAP message to an org.w3c.dom.Document
     Document doc = messageToDocument(message, false);
 
@@ -449,28 +427,16 @@ public class WebServiceClientSecurityHandler extends WebServiceSecurityHandlerBa
     }
 
     /*
-     * If we had some security processing, get the original SOAP part of message and replace it
-     * with the new SOAP part. This new part may contain decrypted elements.
+     * If we had some security processing, apply the changes to the SOAP part of the message. The
+     * new SOAP part may contain decrypted elements.
      */
-    ByteArrayOutputStream os = new ByteArrayOutputStream();
-
-    XMLUtils.outputDOM(doc, os, true);
-
-    try
-    {
-      sPart.setContent(new StreamSource(new ByteArrayInputStream(os.toByteArray())));
-    }
-    catch (SOAPException e)
-    {
-      throw new WSSecurityException("Failed to process the SOAP response:"
-          + " Couldn't set content on the SOAPPart", e);
-    }
+    documentToMessage(doc, message, false);
 
     /*
-     * After setting the new current message, probably modified because of decryption, we need to
-     * locate the security header. That is, we force the runtime (with getEnvelope()) to parse the
-     * string, build the new header. Then we examine, look up the security header and set the
-     * header as processed.
+     * After applying the changes to the message, probably modified because of decryption, we need
+     * to locate the security header. That is, we retrieve the header (with getEnvelope()), which
+     * forces the runtime to parse the new content if it was replaced. Then we examine, look up the
+     * security header and set the header as processed.
      *
      * Please note: find all header elements that contain the same actor that was given to
      * processSecurityHeader(). Then check if there is a security header with this actor.
@@ -18,19 +18,21 @@ package guru.mmp.common.ws.security;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import guru.mmp.common.xml.XmlParserPool;
 import org.apache.ws.security.WSSecurityException;
 import org.apache.ws.security.handler.WSHandler;
+import org.apache.xml.security.utils.XMLUtils;
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.soap.*;
-import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.ws.handler.MessageContext;
 import javax.xml.ws.handler.soap.SOAPHandler;
 import javax.xml.ws.handler.soap.SOAPMessageContext;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.security.KeyStore;
 import java.util.HashMap;
@@ -228,8 +230,61 @@ public abstract class WebServiceSecurityHandlerBase extends WSHandler
     ((MessageContext) msgContext).put(key, value);
   }
 
+  /**
+   * Utility method to apply the changes made to the <code>org.w3c.dom.Document</code>
+   * representation of a <code>SOAPMessage</code>, returned by <code>messageToDocument</code>, to
+   * the <code>SOAPMessage</code>.
+   * <p/>
+   * If the document is the DOM of the SOAP part of the message the changes have already been made
+   * to the message and nothing needs to be done. Otherwise, the document is serialized and set as
+   * the content of the SOAP part of the message.
+   *
+   * @param document  the <code>org.w3c.dom.Document</code> representation of the
+   *                  <code>SOAPMessage</code>
+   * @param message   the <code>SOAPMessage</code> instance to update
+   * @param isRequest <code>true</code> if the conversion is associated with a SOAP request or
+   *                  <code>false</code> otherwise
+   *
+   * @throws WSSecurityException
+   */
+  protected static void documentToMessage(Document document, SOAPMessage message,
+      boolean isRequest)
+    throws WSSecurityException
+  {
+    SOAPPart soapPart = message.getSOAPPart();
+
+    if (document == soapPart)
+    {
+      return;
+    }
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+    XMLUtils.outputDOM(document, os, true);
+
+    try
+    {
+      soapPart.setContent(new StreamSource(new ByteArrayInputStream(os.toByteArray())));
+    }
+    catch (SOAPException e)
+    {
+      throw new WSSecurityException("Failed to process the SOAP "
+          + (isRequest
+          ? "request"
+          : "response") + ": Couldn't set content on the SOAPPart", e);
+    }
+  }
+
   /**
    * Utility method to convert a <code>SOAPMessage</code> to an <code>org.w3c.dom.Document</code>.
+   * <p/>
+   * The SOAP part of a SAAJ 1.3 message is a DOM document, which is returned so that WSS4J can
+   * process the message in place without it being serialized and parsed again. If the SOAP part
+   * cannot be used as a DOM document, its content is parsed using the pooled namespace aware
+   * document builder for the current thread.
+   * <p/>
+   * Changes made to the document must be applied to the message using
+   * <code>documentToMessage</code>.
    *
    * @param message   the <code>SOAPMessage</code> instance to convert
    * @param isRequest <code>true</code> if the conversion is associated with a SOAP request or
@@ -244,15 +299,24 @@ public abstract class WebServiceSecurityHandlerBase extends WSHandler
   {
     try
     {
-      Source content = message.getSOAPPart().getContent();
+      SOAPPart soapPart = message.getSOAPPart();
 
-      DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-
-      documentBuilderFactory.setNamespaceAware(true);
+      try
+      {
+        if (soapPart.getDocumentElement() != null)
+        {
+          return soapPart;
+        }
+      }
+      catch (UnsupportedOperationException ignored)
+      {
+        // The SAAJ implementation does not support the DOM API for the SOAP part
+      }
 
-      DocumentBuilder builder = documentBuilderFactory.newDocumentBuilder();
+      DocumentBuilder builder = XmlParserPool.getNamespaceAwareDocumentBuilder();
 
-      return builder.parse(org.apache.ws.security.util.XMLUtils.sourceToInputSource(content));
+      return builder.parse(org.apache.ws.security.util.XMLUtils.sourceToInputSource(
+          soapPart.getContent()));
     }
     catch (Exception e)
     {
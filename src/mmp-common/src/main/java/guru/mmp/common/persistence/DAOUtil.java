@@ -245,6 +245,89 @@ public class DAOUtil
     }
   }
 
+  /**
+   * Returns the SQL for the query that selects and locks the next rows to process from a table,
+   * e.g. the next messages queued for processing, for the database associated with the specified
+   * connection.
+   * <p/>
+   * Rows that are already locked by another transaction are skipped where the database supports
+   * it, using <b>FOR UPDATE SKIP LOCKED</b> on PostgreSQL and the <b>UPDLOCK</b> and
+   * <b>READPAST</b> table hints on SQL Server, so that multiple processors can claim rows
+   * concurrently without blocking each other. The SQL contains a <b>%d</b> placeholder for the
+   * maximum number of rows to select, which must be substituted using <code>String.format()</code>.
+   * <p/>
+   * NOTE: The version of H2 used by the framework does not support SKIP LOCKED so we fall back to
+   *       a plain FOR UPDATE. The rows must be claimed using an UPDATE that checks that their
+   *       status has not changed since they were selected to prevent them being processed more
+   *       than once.
+   *
+   * @param connection  the database connection
+   * @param columns     the comma-separated list of columns to select
+   * @param table       the name of the table, with an optional alias, to select the rows from
+   * @param whereClause the <b>WHERE</b> clause that selects the rows to process
+   * @param orderBy     the comma-separated list of columns used to order the rows
+   *
+   * @return the SQL for the query that selects and locks the next rows to process
+   *
+   * @throws SQLException
+   */
+  public static String getClaimNextRowsSQL(Connection connection, String columns, String table,
+      String whereClause, String orderBy)
+    throws SQLException
+  {
+    switch (connection.getMetaData().getDatabaseProductName())
+    {
+      case "PostgreSQL":
+
+        return "SELECT " + columns + " FROM " + table + " " + whereClause + " ORDER BY " + orderBy
+            + " FETCH FIRST %d ROWS ONLY FOR UPDATE SKIP LOCKED";
+
+      case "Microsoft SQL Server":
+
+        return "SELECT TOP %d " + columns + " FROM " + table
+            + " WITH (UPDLOCK, READPAST, ROWLOCK) " + whereClause + " ORDER BY " + orderBy;
+
+      default:
+
+        return "SELECT " + columns + " FROM " + table + " " + whereClause + " ORDER BY " + orderBy
+            + " FETCH FIRST %d ROWS ONLY FOR UPDATE";
+    }
+  }
+
+  /**
+   * Returns the SQL:2008 <b>OFFSET ... FETCH</b> clause that restricts the results of a query,
+   * which must be ordered, to the rows in the page with the specified offset and limit.
+   * <p/>
+   * An empty string is returned if the limit is negative and the offset is zero, i.e. if all the
+   * rows should be returned.
+   *
+   * @param offset the number of rows to skip
+   * @param limit  the maximum number of rows to return or -1 to return all the remaining rows
+   *
+   * @return the <b>OFFSET ... FETCH</b> clause
+   */
+  public static String getPagingClause(int offset, int limit)
+  {
+    if (offset < 0)
+    {
+      throw new IllegalArgumentException("The offset must not be negative");
+    }
+
+    StringBuilder buffer = new StringBuilder();
+
+    if ((offset > 0) || (limit >= 0))
+    {
+      buffer.append(" OFFSET ").append(offset).append(" ROWS");
+    }
+
+    if (limit >= 0)
+    {
+      buffer.append(" FETCH NEXT ").append(limit).append(" ROWS ONLY");
+    }
+
+    return buffer.toString();
+  }
+
   /**
    * Retrieve the schema separator for the database associated with the specified data source.
    *
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.common.persistence;
+
+/**
+ * The <code>SortDirection</code> enumeration defines the possible directions used to sort the
+ * results of a paged query.
+ *
+ * @author Marcus Portmann
+ */
+public enum SortDirection
+{
+  ASCENDING("ASC", "Ascending"), DESCENDING("DESC", "Descending");
+
+  private String description;
+  private String sql;
+
+  SortDirection(String sql, String description)
+  {
+    this.sql = sql;
+    this.description = description;
+  }
+
+  /**
+   * Returns the sort direction for the specified ascending flag.
+   *
+   * @param ascending <code>true</code> to sort in ascending order or <code>false</code> to sort in
+   *                  descending order
+   *
+   * @return the sort direction for the specified ascending flag
+   */
+  public static SortDirection fromAscending(boolean ascending)
+  {
+    return ascending
+        ? SortDirection.ASCENDING
+        : SortDirection.DESCENDING;
+  }
+
+  /**
+   * Returns the description for the sort direction.
+   *
+   * @return the description for the sort direction
+   */
+  public String description()
+  {
+    return description;
+  }
+
+  /**
+   * Returns <code>true</code> if this is the ascending sort direction or <code>false</code>
+   * otherwise.
+   *
+   * @return <code>true</code> if this is the ascending sort direction or <code>false</code>
+   *         otherwise
+   */
+  public boolean isAscending()
+  {
+    return this == ASCENDING;
+  }
+
+  /**
+   * Returns the SQL keyword for the sort direction used in an <b>ORDER BY</b> clause.
+   *
+   * @return the SQL keyword for the sort direction used in an <b>ORDER BY</b> clause
+   */
+  public String sql()
+  {
+    return sql;
+  }
+}
@@ -0,0 +1,1083 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.common.util;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * The <code>BoundedCache</code> class implements a concurrent cache of values indexed by keys
+ * that is bounded by a maximum number of entries and optionally expires entries that have not
+ * been accessed for a specific period of time.
+ * <p/>
+ * Entries are evicted using a segmented LRU policy. New entries are added to a probationary
+ * segment and are promoted to a protected segment, which holds 80% of the entries, when they are
+ * read again. When the cache is full the least recently used probationary entry is evicted first,
+ * which prevents a burst of entries that are only read once from flushing the entries that are
+ * read frequently.
+ * <p/>
+ * Reads do not acquire a lock. They are recorded in a lossy ring buffer that is replayed against
+ * the eviction policy under a lock when the buffer fills up or the cache is written to. Expiry is
+ * managed using a hierarchical timer wheel so the cost of expiring entries does not depend on the
+ * number of entries in the cache.
+ * <p/>
+ * Entries can alternatively be expired a specific period of time after they were added to the
+ * cache, regardless of how often they are read, which is useful when the cached values are
+ * derived from an external source that may change.
+ * <p/>
+ * Values can be loaded on demand using the {@link #get(Object, Function)} method, which ensures
+ * that only one thread loads the value for a key while the other threads requesting the same key
+ * wait for the result.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of cached values
+ *
+ * @author Marcus Portmann
+ */
+@SuppressWarnings("unused")
+public class BoundedCache<K, V>
+{
+  /**
+   * The number of nanoseconds an entry's last access time may lag behind the actual time before
+   * it is updated on a read.
+   */
+  private static final long ACCESS_TIME_TOLERANCE = TimeUnit.MILLISECONDS.toNanos(100);
+
+  /**
+   * The percentage of the maximum size of the cache reserved for the protected segment.
+   */
+  private static final double PROTECTED_PERCENTAGE = 0.8;
+
+  /**
+   * The number of slots in the read buffer, which must be a power of two.
+   */
+  private static final int READ_BUFFER_SIZE = 128;
+
+  /**
+   * The number of reads that will trigger the read buffer to be replayed against the eviction
+   * policy.
+   */
+  private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+  /**
+   * The number of buckets on each level of the timer wheel, which must be a power of two.
+   */
+  private static final int TIMER_WHEEL_BUCKETS = 64;
+
+  /**
+   * The number of bits the time in nanoseconds is shifted by to give the tick for each level of
+   * the timer wheel, i.e. ~1.07 seconds, ~1.15 minutes, ~1.22 hours and ~3.26 days.
+   */
+  private static final int[] TIMER_WHEEL_SHIFT = { 30, 36, 42, 48 };
+  private static final int PROBATION = 0;
+  private static final int PROTECTED = 1;
+  private static final int LINKED = 0;
+  private static final int REMOVED = 1;
+
+  /**
+   * The entries in the cache.
+   */
+  private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+  /**
+   * The lock protecting the eviction policy and the timer wheel.
+   */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  /**
+   * The number of nanoseconds since an entry was last accessed after which it will be expired or
+   * zero if entries do not expire.
+   */
+  private final long expiryPeriod;
+
+  /**
+   * Are entries expired based on the time they were added to the cache rather than the time they
+   * were last accessed?
+   */
+  private final boolean expireAfterWrite;
+
+  /**
+   * The loads that are currently in progress.
+   */
+  private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+  /**
+   * The maximum number of entries in the cache.
+   */
+  private final long maximumSize;
+
+  /**
+   * The time in nanoseconds, as given by the ticker, when the cache was created.
+   */
+  private final long origin;
+
+  /**
+   * The sentinel for the probationary segment of the eviction policy.
+   */
+  private final Node<K, V> probation = new Node<>();
+
+  /**
+   * The maximum number of entries in the protected segment of the eviction policy.
+   */
+  private final long protectedMaximum;
+
+  /**
+   * The sentinel for the protected segment of the eviction policy.
+   */
+  private final Node<K, V> protectedSegment = new Node<>();
+
+  /**
+   * The ring buffer used to record reads.
+   */
+  private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(
+      READ_BUFFER_SIZE);
+
+  /**
+   * The number of reads recorded in the read buffer.
+   */
+  private final AtomicLong readBufferWriteCount = new AtomicLong();
+
+  /**
+   * The statistics for the cache.
+   */
+  private final Statistics statistics = new Statistics();
+
+  /**
+   * The source of the time in nanoseconds.
+   */
+  private final LongSupplier ticker;
+
+  /**
+   * The sentinels for the buckets of the timer wheel.
+   */
+  private final Node<K, V>[][] timerWheel;
+
+  /**
+   * The number of entries in the protected segment of the eviction policy.
+   */
+  private long protectedSize;
+
+  /**
+   * The number of reads in the read buffer that have been replayed against the eviction policy.
+   */
+  private volatile long readBufferReadCount;
+
+  /**
+   * The time in nanoseconds, relative to the origin, up to which the timer wheel has been
+   * advanced.
+   */
+  private long timerWheelTime;
+
+  /**
+   * Constructs a new <code>BoundedCache</code> whose entries do not expire.
+   *
+   * @param maximumSize the maximum number of entries in the cache or zero if the number of entries
+   *                    is not bounded
+   */
+  public BoundedCache(int maximumSize)
+  {
+    this(maximumSize, 0, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Constructs a new <code>BoundedCache</code>.
+   *
+   * @param maximumSize  the maximum number of entries in the cache or zero if the number of
+   *                     entries is not bounded
+   * @param expiryPeriod the period since an entry was last accessed after which it will be
+   *                     expired or zero if entries do not expire
+   * @param unit         the unit for the expiry period
+   */
+  public BoundedCache(int maximumSize, long expiryPeriod, TimeUnit unit)
+  {
+    this(maximumSize, expiryPeriod, unit, false, System::nanoTime);
+  }
+
+  /**
+   * Constructs a new <code>BoundedCache</code>.
+   *
+   * @param maximumSize      the maximum number of entries in the cache or zero if the number of
+   *                         entries is not bounded
+   * @param expiryPeriod     the period after which an entry will be expired or zero if entries do
+   *                         not expire
+   * @param unit             the unit for the expiry period
+   * @param expireAfterWrite <code>true</code> if the expiry period is measured from the time an
+   *                         entry was added to the cache or <code>false</code> if it is measured
+   *                         from the time the entry was last accessed
+   */
+  public BoundedCache(int maximumSize, long expiryPeriod, TimeUnit unit, boolean expireAfterWrite)
+  {
+    this(maximumSize, expiryPeriod, unit, expireAfterWrite, System::nanoTime);
+  }
+
+  /**
+   * Constructs a new <code>BoundedCache</code>.
+   *
+   * @param maximumSize  the maximum number of entries in the cache or zero if the number of
+   *                     entries is not bounded
+   * @param expiryPeriod the period since an entry was last accessed after which it will be
+   *                     expired or zero if entries do not expire
+   * @param unit         the unit for the expiry period
+   * @param ticker       the source of the time in nanoseconds
+   */
+  public BoundedCache(int maximumSize, long expiryPeriod, TimeUnit unit, LongSupplier ticker)
+  {
+    this(maximumSize, expiryPeriod, unit, false, ticker);
+  }
+
+  /**
+   * Constructs a new <code>BoundedCache</code>.
+   *
+   * @param maximumSize      the maximum number of entries in the cache or zero if the number of
+   *                         entries is not bounded
+   * @param expiryPeriod     the period after which an entry will be expired or zero if entries do
+   *                         not expire
+   * @param unit             the unit for the expiry period
+   * @param expireAfterWrite <code>true</code> if the expiry period is measured from the time an
+   *                         entry was added to the cache or <code>false</code> if it is measured
+   *                         from the time the entry was last accessed
+   * @param ticker           the source of the time in nanoseconds
+   */
+  @SuppressWarnings("unchecked")
+  public BoundedCache(int maximumSize, long expiryPeriod, TimeUnit unit, boolean expireAfterWrite,
+      LongSupplier ticker)
+  {
+    if (maximumSize < 0)
+    {
+      throw new IllegalArgumentException("The maximum size for the cache must not be negative");
+    }
+
+    this.maximumSize = (maximumSize == 0)
+        ? Long.MAX_VALUE
+        : maximumSize;
+    this.protectedMaximum = (long) (this.maximumSize * PROTECTED_PERCENTAGE);
+    this.expiryPeriod = (expiryPeriod > 0)
+        ? unit.toNanos(expiryPeriod)
+        : 0;
+    this.expireAfterWrite = expireAfterWrite;
+    this.ticker = ticker;
+    this.origin = ticker.getAsLong();
+
+    timerWheel = new Node[TIMER_WHEEL_SHIFT.length][TIMER_WHEEL_BUCKETS];
+
+    for (Node<K, V>[] buckets : timerWheel)
+    {
+      for (int i = 0; i < buckets.length; i++)
+      {
+        buckets[i] = new Node<>();
+      }
+    }
+  }
+
+  /**
+   * Perform any pending maintenance for the cache, which includes removing the entries that have
+   * expired.
+   *
+   * @return the number of cache entries expired
+   */
+  public int cleanUp()
+  {
+    evictionLock.lock();
+
+    try
+    {
+      drainReadBuffer();
+
+      return expireEntries(now());
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Remove all entries from the cache.
+   */
+  public void clear()
+  {
+    evictionLock.lock();
+
+    try
+    {
+      drainReadBuffer();
+
+      for (Node<K, V> node : data.values())
+      {
+        removeNode(node);
+      }
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Remove the entries in the cache that have not been accessed in the specified period.
+   * <p/>
+   * Unlike {@link #cleanUp()}, this method examines every entry in the cache.
+   *
+   * @param period the period since an entry was last accessed after which it will be expired
+   * @param unit   the unit for the period
+   *
+   * @return the number of cache entries expired
+   */
+  public int expireIdleEntries(long period, TimeUnit unit)
+  {
+    long idlePeriod = unit.toNanos(period);
+
+    evictionLock.lock();
+
+    try
+    {
+      drainReadBuffer();
+
+      long now = now();
+      int count = 0;
+
+      for (Node<K, V> node : data.values())
+      {
+        if ((now - node.accessTime) >= idlePeriod)
+        {
+          removeNode(node);
+
+          statistics.expirationCount.increment();
+
+          count++;
+        }
+      }
+
+      return count;
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the cached value with the specified key, loading it using the specified loader if it
+   * is not present in the cache.
+   * <p/>
+   * If another thread is already loading the value for the key then this thread waits for that
+   * load to complete instead of invoking the loader.
+   *
+   * @param key    the key identifying the cached value
+   * @param loader the function used to load the value, which may return <code>null</code> if the
+   *               value does not exist, in which case nothing is cached
+   *
+   * @return the cached value or <code>null</code> if the value does not exist
+   */
+  public V get(K key, Function<? super K, ? extends V> loader)
+  {
+    V value = getIfPresent(key);
+
+    if (value != null)
+    {
+      return value;
+    }
+
+    CompletableFuture<V> future = new CompletableFuture<>();
+
+    CompletableFuture<V> existingFuture = loads.putIfAbsent(key, future);
+
+    if (existingFuture != null)
+    {
+      try
+      {
+        return existingFuture.join();
+      }
+      catch (CompletionException e)
+      {
+        if (e.getCause() instanceof RuntimeException)
+        {
+          throw (RuntimeException) e.getCause();
+        }
+        else if (e.getCause() instanceof Error)
+        {
+          throw (Error) e.getCause();
+        }
+
+        throw e;
+      }
+    }
+
+    try
+    {
+      // Check whether another thread completed a load while this thread was starting its load
+      Node<K, V> node = data.get(key);
+
+      if ((node != null) && (!hasExpired(node, now())))
+      {
+        value = node.value;
+      }
+      else
+      {
+        long start = ticker.getAsLong();
+
+        value = loader.apply(key);
+
+        statistics.totalLoadTime.add(ticker.getAsLong() - start);
+        statistics.loadSuccessCount.increment();
+
+        if (value != null)
+        {
+          put(key, value);
+        }
+      }
+
+      future.complete(value);
+
+      return value;
+    }
+    catch (RuntimeException | Error e)
+    {
+      statistics.loadFailureCount.increment();
+
+      future.completeExceptionally(e);
+
+      throw e;
+    }
+    finally
+    {
+      loads.remove(key, future);
+    }
+  }
+
+  /**
+   * Returns the cached value with the specified key or <code>null</code> if the value could not be
+   * found.
+   * <p/>
+   * This method is "null friendly" specifying a <code>null</code> key will return a
+   * <code>null</code> value.
+   *
+   * @param key the key identifying the cached value
+   *
+   * @return the cached value
+   */
+  public V getIfPresent(K key)
+  {
+    if (key == null)
+    {
+      return null;
+    }
+
+    Node<K, V> node = data.get(key);
+
+    if (node != null)
+    {
+      long now = now();
+
+      if (!hasExpired(node, now))
+      {
+        if ((!expireAfterWrite) && ((now - node.accessTime) > ACCESS_TIME_TOLERANCE))
+        {
+          node.accessTime = now;
+        }
+
+        recordRead(node);
+
+        statistics.hitCount.increment();
+
+        return node.value;
+      }
+    }
+
+    statistics.missCount.increment();
+
+    return null;
+  }
+
+  /**
+   * Returns the statistics for the cache.
+   *
+   * @return the statistics for the cache
+   */
+  public Statistics getStatistics()
+  {
+    return statistics;
+  }
+
+  /**
+   * Returns the keys for all the entries in the cache.
+   *
+   * @return the keys for all the entries in the cache
+   */
+  public Set<K> keySet()
+  {
+    return Collections.unmodifiableSet(data.keySet());
+  }
+
+  /**
+   * Insert a new entry into the cache with the specified key and value, replacing any existing
+   * entry with the same key.
+   * <p/>
+   * This method is "null friendly" specifying a <code>null</code> key or <code>null</code> value
+   * will result in no action being taken.
+   *
+   * @param key   the key uniquely identifying the entry
+   * @param value the value of the new cache entry
+   *
+   * @return the value of the new cache entry
+   */
+  public V put(K key, V value)
+  {
+    if ((key == null) || (value == null))
+    {
+      return null;
+    }
+
+    evictionLock.lock();
+
+    try
+    {
+      long now = now();
+
+      drainReadBuffer();
+
+      expireEntries(now);
+
+      Node<K, V> node = new Node<>(key, value, now);
+
+      Node<K, V> existingNode = data.put(key, node);
+
+      if (existingNode != null)
+      {
+        unlinkNode(existingNode);
+      }
+
+      linkLast(probation, node);
+
+      if (expiryPeriod > 0)
+      {
+        scheduleNode(node);
+      }
+
+      evictEntries();
+
+      return value;
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Remove an entry from the cache.
+   * <p/>
+   * This method is "null friendly" specifying a <code>null</code> key will result in no action
+   * being taken.
+   *
+   * @param key the key uniquely identifying the cache entry
+   *
+   * @return the value of the removed cache entry
+   */
+  public V remove(K key)
+  {
+    if (key == null)
+    {
+      return null;
+    }
+
+    evictionLock.lock();
+
+    try
+    {
+      Node<K, V> node = data.remove(key);
+
+      if (node != null)
+      {
+        unlinkNode(node);
+
+        return node.value;
+      }
+
+      return null;
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Retrieve the number of entries in the cache.
+   * <p/>
+   * This may include entries that have expired but have not been removed yet.
+   *
+   * @return the number of entries in the cache
+   */
+  public int size()
+  {
+    return data.size();
+  }
+
+  private static <K, V> void linkLast(Node<K, V> sentinel, Node<K, V> node)
+  {
+    node.prev = sentinel.prev;
+    node.next = sentinel;
+    sentinel.prev.next = node;
+    sentinel.prev = node;
+  }
+
+  private static <K, V> void linkTimerLast(Node<K, V> sentinel, Node<K, V> node)
+  {
+    node.timerPrev = sentinel.timerPrev;
+    node.timerNext = sentinel;
+    sentinel.timerPrev.timerNext = node;
+    sentinel.timerPrev = node;
+  }
+
+  private static <K, V> void unlink(Node<K, V> node)
+  {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+  }
+
+  private static <K, V> void unlinkTimer(Node<K, V> node)
+  {
+    if (node.timerPrev != null)
+    {
+      node.timerPrev.timerNext = node.timerNext;
+      node.timerNext.timerPrev = node.timerPrev;
+      node.timerPrev = null;
+      node.timerNext = null;
+    }
+  }
+
+  private void drainReadBuffer()
+  {
+    long readCount = readBufferReadCount;
+    long writeCount = readBufferWriteCount.get();
+
+    while (readCount < writeCount)
+    {
+      int index = (int) (readCount & (READ_BUFFER_SIZE - 1));
+
+      Node<K, V> node = readBuffer.get(index);
+
+      // The read has been claimed but not yet published so stop here and replay it next time
+      if (node == null)
+      {
+        break;
+      }
+
+      readBuffer.lazySet(index, null);
+
+      onRead(node);
+
+      readCount++;
+    }
+
+    readBufferReadCount = readCount;
+  }
+
+  private void evictEntries()
+  {
+    while (data.size() > maximumSize)
+    {
+      Node<K, V> victim = (probation.next != probation)
+          ? probation.next
+          : protectedSegment.next;
+
+      if (victim == protectedSegment)
+      {
+        break;
+      }
+
+      removeNode(victim);
+
+      statistics.evictionCount.increment();
+    }
+  }
+
+  private int expireEntries(long now)
+  {
+    if (expiryPeriod == 0)
+    {
+      return 0;
+    }
+
+    long previousTime = timerWheelTime;
+
+    timerWheelTime = now;
+
+    int count = 0;
+
+    for (int level = 0; level < TIMER_WHEEL_SHIFT.length; level++)
+    {
+      long previousTicks = previousTime >>> TIMER_WHEEL_SHIFT[level];
+      long currentTicks = now >>> TIMER_WHEEL_SHIFT[level];
+
+      if (currentTicks <= previousTicks)
+      {
+        break;
+      }
+
+      /*
+       * Process the buckets from the one that was current when the wheel was last advanced up to
+       * and including the current bucket, detaching each bucket before processing it so that
+       * entries rescheduled into the same bucket are not processed twice.
+       */
+      long numberOfBuckets = Math.min(currentTicks - previousTicks + 1, TIMER_WHEEL_BUCKETS);
+
+      for (long ticks = previousTicks; ticks < previousTicks + numberOfBuckets; ticks++)
+      {
+        Node<K, V> sentinel = timerWheel[level][(int) (ticks & (TIMER_WHEEL_BUCKETS - 1))];
+
+        Node<K, V> node = sentinel.timerNext;
+
+        sentinel.timerNext = sentinel;
+        sentinel.timerPrev = sentinel;
+
+        while (node != sentinel)
+        {
+          Node<K, V> next = node.timerNext;
+
+          node.timerPrev = null;
+          node.timerNext = null;
+
+          if (hasExpired(node, now))
+          {
+            removeNode(node);
+
+            statistics.expirationCount.increment();
+
+            count++;
+          }
+          else
+          {
+            scheduleNode(node);
+          }
+
+          node = next;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  private boolean hasExpired(Node<K, V> node, long now)
+  {
+    return (expiryPeriod > 0) && ((now - node.accessTime) >= expiryPeriod);
+  }
+
+  private long now()
+  {
+    return ticker.getAsLong() - origin;
+  }
+
+  private void onRead(Node<K, V> node)
+  {
+    if (node.state != LINKED)
+    {
+      return;
+    }
+
+    unlink(node);
+
+    /*
+     * If the cache is too small to have a protected segment, e.g. when the maximum size is 1, then
+     * the entries are not promoted and the probationary segment is a plain LRU list.
+     */
+    if ((node.segment == PROBATION) && (protectedMaximum == 0))
+    {
+      linkLast(probation, node);
+
+      return;
+    }
+
+    if (node.segment == PROBATION)
+    {
+      node.segment = PROTECTED;
+      protectedSize++;
+
+      // Demote the least recently used protected entries if the protected segment is full
+      while (protectedSize > protectedMaximum)
+      {
+        Node<K, V> demoted = protectedSegment.next;
+
+        unlink(demoted);
+
+        demoted.segment = PROBATION;
+        protectedSize--;
+
+        linkLast(probation, demoted);
+      }
+    }
+
+    linkLast(protectedSegment, node);
+  }
+
+  private void recordRead(Node<K, V> node)
+  {
+    long readCount = readBufferReadCount;
+    long writeCount = readBufferWriteCount.get();
+
+    // The read buffer is lossy so reads are discarded if it is full or contended
+    if (((writeCount - readCount) < READ_BUFFER_SIZE)
+        && readBufferWriteCount.compareAndSet(writeCount, writeCount + 1))
+    {
+      readBuffer.lazySet((int) (writeCount & (READ_BUFFER_SIZE - 1)), node);
+    }
+
+    if (((writeCount - readCount) >= READ_BUFFER_DRAIN_THRESHOLD) && evictionLock.tryLock())
+    {
+      try
+      {
+        drainReadBuffer();
+
+        expireEntries(now());
+      }
+      finally
+      {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void removeNode(Node<K, V> node)
+  {
+    data.remove(node.key, node);
+
+    unlinkNode(node);
+  }
+
+  private void scheduleNode(Node<K, V> node)
+  {
+    long expiryTime = node.accessTime + expiryPeriod;
+    long delay = Math.max(expiryTime - timerWheelTime, 0);
+
+    int level = 0;
+
+    while ((level < (TIMER_WHEEL_SHIFT.length - 1))
+        && ((delay >>> TIMER_WHEEL_SHIFT[level + 1]) > 0))
+    {
+      level++;
+    }
+
+    // Entries due beyond the range of the highest level are rescheduled when their bucket fires
+    if ((delay >>> TIMER_WHEEL_SHIFT[level]) >= TIMER_WHEEL_BUCKETS)
+    {
+      expiryTime = timerWheelTime + ((long) (TIMER_WHEEL_BUCKETS - 1)
+          << TIMER_WHEEL_SHIFT[level]);
+    }
+
+    linkTimerLast(timerWheel[level][(int) ((expiryTime >>> TIMER_WHEEL_SHIFT[level])
+        & (TIMER_WHEEL_BUCKETS - 1))], node);
+  }
+
+  private void unlinkNode(Node<K, V> node)
+  {
+    if (node.state == LINKED)
+    {
+      unlink(node);
+
+      if (node.segment == PROTECTED)
+      {
+        protectedSize--;
+      }
+
+      unlinkTimer(node);
+
+      node.state = REMOVED;
+    }
+  }
+
+  /**
+   * The <code>Statistics</code> class holds the statistics for a <code>BoundedCache</code>.
+   */
+  public static class Statistics
+  {
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    /**
+     * Returns the number of entries evicted because the cache was full.
+     *
+     * @return the number of entries evicted because the cache was full
+     */
+    public long getEvictionCount()
+    {
+      return evictionCount.sum();
+    }
+
+    /**
+     * Returns the number of entries expired because they had not been accessed in the expiry
+     * period.
+     *
+     * @return the number of entries expired because they had not been accessed in the expiry
+     *         period
+     */
+    public long getExpirationCount()
+    {
+      return expirationCount.sum();
+    }
+
+    /**
+     * Returns the number of reads that found a value in the cache.
+     *
+     * @return the number of reads that found a value in the cache
+     */
+    public long getHitCount()
+    {
+      return hitCount.sum();
+    }
+
+    /**
+     * Returns the ratio of reads that found a value in the cache to the total number of reads.
+     *
+     * @return the ratio of reads that found a value in the cache to the total number of reads
+     */
+    public double getHitRate()
+    {
+      long hits = hitCount.sum();
+      long requests = hits + missCount.sum();
+
+      return (requests == 0)
+          ? 1.0
+          : ((double) hits) / requests;
+    }
+
+    /**
+     * Returns the number of loads that failed with an exception.
+     *
+     * @return the number of loads that failed with an exception
+     */
+    public long getLoadFailureCount()
+    {
+      return loadFailureCount.sum();
+    }
+
+    /**
+     * Returns the number of loads that completed successfully.
+     *
+     * @return the number of loads that completed successfully
+     */
+    public long getLoadSuccessCount()
+    {
+      return loadSuccessCount.sum();
+    }
+
+    /**
+     * Returns the number of reads that did not find a value in the cache.
+     *
+     * @return the number of reads that did not find a value in the cache
+     */
+    public long getMissCount()
+    {
+      return missCount.sum();
+    }
+
+    /**
+     * Returns the total number of nanoseconds spent loading values that were loaded
+     * successfully.
+     *
+     * @return the total number of nanoseconds spent loading values that were loaded successfully
+     */
+    public long getTotalLoadTime()
+    {
+      return totalLoadTime.sum();
+    }
+
+    /**
+     * Returns a string representation of the statistics.
+     *
+     * @return a string representation of the statistics
+     */
+    @Override
+    public String toString()
+    {
+      return "Statistics {hitCount=\"" + getHitCount() + "\", missCount=\"" + getMissCount()
+          + "\", loadSuccessCount=\"" + getLoadSuccessCount() + "\", loadFailureCount=\""
+          + getLoadFailureCount() + "\", totalLoadTime=\"" + getTotalLoadTime()
+          + "\", evictionCount=\"" + getEvictionCount() + "\", expirationCount=\""
+          + getExpirationCount() + "\"}";
+    }
+  }
+
+  /**
+   * The <code>Node</code> class holds an entry in the cache along with the links for the
+   * eviction policy and the timer wheel, which are only accessed while holding the eviction
+   * lock.
+   *
+   * @param <K> the type of key
+   * @param <V> the type of value
+   */
+  private static class Node<K, V>
+  {
+    final K key;
+    final V value;
+    volatile long accessTime;
+    Node<K, V> next;
+    Node<K, V> prev;
+    int segment = PROBATION;
+    int state = LINKED;
+    Node<K, V> timerNext;
+    Node<K, V> timerPrev;
+
+    /**
+     * Constructs a new sentinel <code>Node</code>.
+     */
+    Node()
+    {
+      this.key = null;
+      this.value = null;
+      this.next = this;
+      this.prev = this;
+      this.timerNext = this;
+      this.timerPrev = this;
+    }
+
+    /**
+     * Constructs a new <code>Node</code>.
+     *
+     * @param key        the key for the entry
+     * @param value      the value for the entry
+     * @param accessTime the time in nanoseconds, relative to the origin of the cache, when the
+     *                   entry was last accessed
+     */
+    Node(K key, V value, long accessTime)
+    {
+      this.key = key;
+      this.value = value;
+      this.accessTime = accessTime;
+    }
+  }
+}
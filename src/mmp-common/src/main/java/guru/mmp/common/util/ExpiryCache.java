@@ -18,19 +18,23 @@ package guru.mmp.common.util;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The <code>ExpiryCache</code> class implements a cache of values indexed by keys.
  * <p/>
- * An entry is removed from the cache when it has not been accessed for a specific period of time.
+ * An entry is removed from the cache when it has not been accessed for a specific period of time
+ * or, if a maximum size is specified, when it is the least recently used entry and the cache is
+ * full.
+ * <p/>
+ * The entries are held in a <code>BoundedCache</code>, which expires entries using a timer wheel
+ * as the cache is used. The <code>ExpiryCacheThread</code> periodically cleans up the caches that
+ * are not being used so that their expired entries are released.
  * <p/>
  * NOTE: Please see the <code>ExpiryCacheThread</code> class for more information on the memory
  * management of <code>ExpiryCache</code> instances.
- * <p/>
- * TODO: Implement expiry when the cache reaches a certain size.
  *
  * @param <K> the type of keys maintained by this cache
  * @param <V> the type of cached values
@@ -40,7 +44,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @SuppressWarnings("unused")
 public class ExpiryCache<K, V>
 {
-  private ConcurrentHashMap<K, ExpiryCacheEntry<V>> entries = null;
+  private BoundedCache<K, V> cache;
   private int expiryPeriod = -1;
 
   /**
@@ -52,7 +56,7 @@ public class ExpiryCache<K, V>
   {
     this.expiryPeriod = -1;
 
-    this.entries = new ConcurrentHashMap<>();
+    this.cache = new BoundedCache<>(0);
   }
 
   /**
@@ -62,12 +66,30 @@ public class ExpiryCache<K, V>
    *                     it will be expired
    */
   public ExpiryCache(int expiryPeriod)
+  {
+    this(expiryPeriod, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param expiryPeriod the number of seconds since a cache entry was last accessed after which
+   *                     it will be expired
+   * @param maximumSize  the maximum number of entries in the cache or zero if the number of
+   *                     entries is not bounded
+   */
+  public ExpiryCache(int expiryPeriod, int maximumSize)
   {
     this.expiryPeriod = expiryPeriod;
 
-    this.entries = new ConcurrentHashMap<>();
+    this.cache = new BoundedCache<>(maximumSize, (expiryPeriod == -1)
+        ? 0
+        : expiryPeriod, TimeUnit.SECONDS);
 
-    ExpiryCacheThread.getExpiryCacheThread().addCache(this);
+    if (expiryPeriod != -1)
+    {
+      ExpiryCacheThread.getExpiryCacheThread().addCache(this);
+    }
   }
 
   /**
@@ -75,7 +97,7 @@ public class ExpiryCache<K, V>
    */
   public void clear()
   {
-    entries.clear();
+    cache.clear();
   }
 
   /**
@@ -86,7 +108,13 @@ public class ExpiryCache<K, V>
    */
   public int expire()
   {
-    return expire(expiryPeriod);
+    // Do not expire if expiry period not set
+    if (expiryPeriod == -1)
+    {
+      return 0;
+    }
+
+    return cache.cleanUp();
   }
 
   /**
@@ -105,27 +133,12 @@ public class ExpiryCache<K, V>
       return 0;
     }
 
-    ExpiryCacheEntry<V> entry;
-    Map.Entry<K, ExpiryCacheEntry<V>> each;
-    long now = System.currentTimeMillis();
-    int count = 0;
-
-    for (Map.Entry<K, ExpiryCacheEntry<V>> objectExpiryCacheEntryEntry : entries.entrySet())
+    if (expiryPeriod == this.expiryPeriod)
     {
-      each = objectExpiryCacheEntryEntry;
-      entry = each.getValue();
-
-      if (entry != null)
-      {
-        if ((now - entry.getTimestamp()) >= (expiryPeriod * 1000L))
-        {
-          count++;
-          entries.remove(each.getKey());
-        }
-      }
+      return cache.cleanUp();
     }
 
-    return count;
+    return cache.expireIdleEntries(expiryPeriod, TimeUnit.SECONDS);
   }
 
   /**
@@ -144,21 +157,17 @@ public class ExpiryCache<K, V>
    */
   public V get(K key)
   {
-    if (key == null)
-    {
-      return null;
-    }
-
-    ExpiryCacheEntry<V> entry = entries.get(key);
-
-    if (entry != null)
-    {
-      entry.touch();
-
-      return entry.getValue();
-    }
+    return cache.getIfPresent(key);
+  }
 
-    return null;
+  /**
+   * Returns the statistics for the cache.
+   *
+   * @return the statistics for the cache
+   */
+  public BoundedCache.Statistics getStatistics()
+  {
+    return cache.getStatistics();
   }
 
   /**
@@ -168,7 +177,7 @@ public class ExpiryCache<K, V>
    */
   public Enumeration<K> keys()
   {
-    return entries.keys();
+    return Collections.enumeration(cache.keySet());
   }
 
   /**
@@ -184,16 +193,7 @@ public class ExpiryCache<K, V>
    */
   public V put(K key, V value)
   {
-    if ((key != null) && (value != null))
-    {
-      entries.put(key, new ExpiryCacheEntry<>(value));
-
-      return value;
-    }
-    else
-    {
-      return null;
-    }
+    return cache.put(key, value);
   }
 
   /**
@@ -208,23 +208,7 @@ public class ExpiryCache<K, V>
    */
   public V remove(K key)
   {
-    if (key != null)
-    {
-      ExpiryCacheEntry<V> entry = entries.remove(key);
-
-      if (entry != null)
-      {
-        return entry.getValue();
-      }
-      else
-      {
-        return null;
-      }
-    }
-    else
-    {
-      return null;
-    }
+    return cache.remove(key);
   }
 
   /**
@@ -234,64 +218,6 @@ public class ExpiryCache<K, V>
    */
   public int size()
   {
-    return entries.size();
-  }
-
-  /**
-   * The Entry class wraps actual values that are stored in the Cache in order to associate the
-   * value with a timestamp indicating when it was last accessed.
-   *
-   * @param <T> the type of cached value
-   */
-  private class ExpiryCacheEntry<T>
-  {
-    /**
-     * the EPOCH timestamp in milliseconds giving the time the Entry was last accessed
-     */
-    private long timestamp;
-
-    /**
-     * the value associated with the cache entry
-     */
-    private T value;
-
-    /**
-     * Constructor.
-     *
-     * @param value the value associated with the cache entry
-     */
-    public ExpiryCacheEntry(T value)
-    {
-      this.timestamp = System.currentTimeMillis();
-      this.value = value;
-    }
-
-    /**
-     * Get the EPOCH timestamp in milliseconds giving the time the cache entry was last accessed
-     *
-     * @return the EPOCH timestamp in milliseconds giving the time the cache entry was last accessed
-     */
-    public long getTimestamp()
-    {
-      return timestamp;
-    }
-
-    /**
-     * Retrieve the value associated with this cache entry.
-     *
-     * @return the value associated with this cache entry
-     */
-    public T getValue()
-    {
-      return value;
-    }
-
-    /**
-     * Update the EPOCH timestamp in milliseconds giving the time the cache entry was last accessed.
-     */
-    public void touch()
-    {
-      timestamp = System.currentTimeMillis();
-    }
+    return cache.size();
   }
 }
@@ -19,26 +19,60 @@ package guru.mmp.common.util;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.List;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * The MemoryClassLoader class supports the loading of classes from set of in-memory JARs.
+ * <p/>
+ * The first time a class or resource is requested the central directories of the JARs, and any
+ * JARs nested inside them, are read to build an index of the locations of the entries. Entries
+ * are only inflated when they are first requested and the inflated data is cached until the
+ * class for the entry has been defined or the JARs associated with the class loader change.
  *
  * @author Marcus Portmann
  */
 @SuppressWarnings("unused")
 public class MemoryClassLoader extends ClassLoader
 {
+  /**
+   * The signature for a central directory file header in a JAR.
+   */
+  private static final int CENTRAL_DIRECTORY_FILE_HEADER_SIGNATURE = 0x02014b50;
+
+  /**
+   * The signature for the end of central directory record in a JAR.
+   */
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+  /**
+   * The size of the end of central directory record in a JAR excluding the comment.
+   */
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+  /**
+   * The protocol for the URLs for the resources in the JARs associated with the MemoryClassLoader.
+   */
+  private static final String URL_PROTOCOL = "MemoryClassLoader";
+
+  static
+  {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  /**
+   * The index of the locations of the entries in the JARs associated with the MemoryClassLoader,
+   * keyed by the path for the entry, which is built when the first class or resource is requested.
+   */
+  private volatile Map<String, List<JarEntryLocation>> entryIndex;
+
   /**
    * The list of byte arrays containing the binary data representation of the JARs associated with
    * the MemoryClassLoader.
@@ -73,17 +107,21 @@ public class MemoryClassLoader extends ClassLoader
    *
    * @param jar an array of bytes giving the binary data representation of a JAR
    */
-  public void addJar(byte[] jar)
+  public synchronized void addJar(byte[] jar)
   {
     jars.add(jar);
+
+    entryIndex = null;
   }
 
   /**
    * Clear the list of JARs associated with the memory class loader.
    */
-  public void clearJars()
+  public synchronized void clearJars()
   {
     jars.clear();
+
+    entryIndex = null;
   }
 
   /**
@@ -100,16 +138,23 @@ public class MemoryClassLoader extends ClassLoader
   {
     try
     {
-      byte[] classData = getClassData(name);
+      JarEntryLocation location = getJarEntryLocation(name.replace('.', '/') + ".class", 0);
 
       // If no class was found then delegate to super
-      if (classData == null)
+      if (location == null)
       {
         return super.findClass(name);
       }
       else
       {
-        return defineClass(name, classData, 0, classData.length);
+        byte[] classData = location.getData();
+
+        Class<?> clazz = defineClass(name, classData, 0, classData.length);
+
+        // The class has been defined so the inflated data for the class is no longer required
+        location.releaseData();
+
+        return clazz;
       }
     }
     catch (IOException e)
@@ -121,6 +166,9 @@ public class MemoryClassLoader extends ClassLoader
   }
 
   /**
+   * Returns a URL object for reading the resource, searching the JARs associated with the
+   * MemoryClassLoader before delegating to the parent class loader.
+   *
    * @param name the resource name
    *
    * @return a URL object for reading the resource, or <code>null</code> if the resource could not
@@ -131,21 +179,11 @@ public class MemoryClassLoader extends ClassLoader
   @Override
   public URL getResource(String name)
   {
-    try
-    {
-      byte[] resourceData = getResourceData(name);
-
-      if (resourceData == null)
-      {
-        return null;
-      }
+    URL url = findResource(name);
 
-      return new URL("MemoryClassLoader", "", 0, name, new MemoryUrlStreamHandler(this));
-    }
-    catch (Throwable e)
-    {
-      throw new Error("Unable to create a URL for resource (" + name + "): " + e.getMessage());
-    }
+    return (url != null)
+        ? url
+        : super.getResource(name);
   }
 
   /**
@@ -161,129 +199,352 @@ public class MemoryClassLoader extends ClassLoader
   public byte[] getResourceData(String resourcePath)
     throws IOException
   {
-    // Attempt to find the resource in every JAR associated with this class loader
-    for (byte[] jarData : jars)
+    JarEntryLocation location = getJarEntryLocation(resourcePath, 0);
+
+    // Return a copy so that the cached data cannot be modified
+    return (location == null)
+        ? null
+        : location.getData().clone();
+  }
+
+  /**
+   * @param name the resource name
+   *
+   * @return a URL object for reading the resource, or <code>null</code> if the resource could not
+   * be found
+   *
+   * @see ClassLoader#findResource(String)
+   */
+  @Override
+  protected URL findResource(String name)
+  {
+    try
     {
-      byte[] resourceData = getJarEntryAsBytes(resourcePath, jarData);
+      List<JarEntryLocation> locations = getEntryIndex().get(name);
 
-      if (resourceData != null)
-      {
-        return resourceData;
-      }
+      return (locations == null)
+          ? null
+          : createResourceUrl(name, 0);
+    }
+    catch (Throwable e)
+    {
+      throw new Error("Unable to create a URL for resource (" + name + "): " + e.getMessage());
     }
-
-    return null;
   }
 
   /**
+   * @param name the resource name
+   *
+   * @return an enumeration of URL objects for reading every occurrence of the resource in the JARs
+   * associated with the MemoryClassLoader
+   *
    * @see ClassLoader#findResources(String)
    */
   @Override
   protected Enumeration<URL> findResources(String name)
     throws IOException
   {
-    throw new Error("The method MemoryClassLoader::findResources is not implemented");
+    List<JarEntryLocation> locations = getEntryIndex().get(name);
+
+    if (locations == null)
+    {
+      return Collections.emptyEnumeration();
+    }
+
+    List<URL> urls = new ArrayList<>(locations.size());
+
+    for (int i = 0; i < locations.size(); i++)
+    {
+      urls.add(createResourceUrl(name, i));
+    }
+
+    return Collections.enumeration(urls);
+  }
+
+  private static int readInt(byte[] data, int offset)
+  {
+    return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+        | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+  }
+
+  private static int readShort(byte[] data, int offset)
+  {
+    return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+  }
+
+  private URL createResourceUrl(String name, int occurrence)
+    throws IOException
+  {
+    // The host identifies which occurrence of the resource the URL refers to
+    return new URL(URL_PROTOCOL, (occurrence == 0)
+        ? ""
+        : Integer.toString(occurrence), 0, name, new MemoryUrlStreamHandler(this));
   }
 
   /**
-   * Retrieve the binary data for the class with the specified name.
-   *
-   * @param className the fully qualified name of the class to find
+   * Returns the index of the locations of the entries in the JARs associated with the
+   * MemoryClassLoader, building the index if required.
    *
-   * @return the binary data for the class with the specified name or <code>null</code> if the
-   * class could not be found
+   * @return the index of the locations of the entries in the JARs associated with the
+   * MemoryClassLoader
    *
    * @throws IOException an IO exception occurs
    */
-  private byte[] getClassData(String className)
+  private Map<String, List<JarEntryLocation>> getEntryIndex()
     throws IOException
   {
-    // Build the path for the class file in the JAR
-    String classPath = className.replace('.', '/');
+    Map<String, List<JarEntryLocation>> index = entryIndex;
 
-    classPath += ".class";
-
-    // Retrieve the binary representation of the each JAR associated with the
-    // class loader and attempt to load the class from it
-    for (byte[] jarData : jars)
+    if (index == null)
     {
-      byte[] classData = getJarEntryAsBytes(classPath, jarData);
-
-      if (classData != null)
+      synchronized (this)
       {
-        return classData;
+        index = entryIndex;
+
+        if (index == null)
+        {
+          index = new HashMap<>();
+
+          for (byte[] jarData : jars)
+          {
+            indexJar(jarData, index);
+          }
+
+          entryIndex = index;
+        }
       }
     }
 
-    return null;
+    return index;
   }
 
   /**
-   * Retrieve a JAR entry as a byte array.
+   * Returns the location of the specified occurrence of the JAR entry with the specified path.
    *
-   * @param jarInputStream the JarInputStream pointing at the beginning of the JAR entry
+   * @param path       the path for the entry e.g. guru/mmp/common/util/MemoryClassLoader.class or
+   *                   guru/mmp/common/util/Test.properties
+   * @param occurrence the occurrence of the entry, where occurrences in JARs added earlier come
+   *                   first
    *
-   * @return the JAR entry as a byte array
+   * @return the location of the JAR entry or <code>null</code> if the entry could not be found
    *
    * @throws IOException an IO exception occurs
    */
-  private byte[] getJarEntryAsBytes(JarInputStream jarInputStream)
+  private JarEntryLocation getJarEntryLocation(String path, int occurrence)
     throws IOException
   {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    int noBytesRead;
-    byte[] tmpBuffer = new byte[1024];
+    List<JarEntryLocation> locations = getEntryIndex().get(path);
 
-    while ((noBytesRead = jarInputStream.read(tmpBuffer)) != -1)
-    {
-      baos.write(tmpBuffer, 0, noBytesRead);
-    }
-
-    return baos.toByteArray();
+    return ((locations == null) || (occurrence >= locations.size()))
+        ? null
+        : locations.get(occurrence);
   }
 
   /**
-   * Retrieve the JAR entry with the specified path as an array of bytes from the JAR file given by
-   * the specified binary data.
+   * Add the locations of the entries in the JAR file given by the specified binary data to the
+   * index using the central directory for the JAR.
    * <p/>
-   * If any jar/zip files are found they will be processed recursively.
+   * If any jar/zip files are found they will be inflated and indexed recursively.
    *
-   * @param path    the path for the entry e.g. guru/mmp/common/util/MemoryClassLoader.class or
-   *                guru/mmp/common/util/Test.properties
-   * @param jarData the binary representation of the JAR file to search
-   *
-   * @return the binary representation of the JAR entry or <code>null</code> if the entry could not
-   * be found
+   * @param jarData the binary representation of the JAR file to index
+   * @param index   the index of the locations of the entries
    *
    * @throws IOException an IO exception occurs
    */
-  private byte[] getJarEntryAsBytes(String path, byte[] jarData)
+  private void indexJar(byte[] jarData, Map<String, List<JarEntryLocation>> index)
     throws IOException
   {
-    // Create the jar input stream for parsing
-    JarInputStream jarInputStream = new JarInputStream(new ByteArrayInputStream(jarData));
-    JarEntry entry;
+    // Find the end of central directory record, which is followed by a comment of up to 64 KB
+    int endOfCentralDirectoryOffset = -1;
 
-    // Read each entry in the JAR file looking for the class with the specified path.
-    // If a JAR or ZIP is found embedded in the JAR file then process it recursively
-    while ((entry = jarInputStream.getNextJarEntry()) != null)
+    for (int offset = jarData.length - END_OF_CENTRAL_DIRECTORY_SIZE;
+        offset >= Math.max(0, jarData.length - END_OF_CENTRAL_DIRECTORY_SIZE - 0xFFFF);
+        offset--)
     {
-      if (entry.getName().endsWith(".jar") || entry.getName().endsWith(".zip"))
+      if (readInt(jarData, offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE)
       {
-        byte[] classData = getJarEntryAsBytes(path, getJarEntryAsBytes(jarInputStream));
+        endOfCentralDirectoryOffset = offset;
 
-        if (classData != null)
-        {
-          return classData;
-        }
+        break;
+      }
+    }
+
+    if (endOfCentralDirectoryOffset == -1)
+    {
+      throw new IOException("Failed to find the end of the central directory for the JAR");
+    }
+
+    int offset = readInt(jarData, endOfCentralDirectoryOffset + 16);
+
+    /*
+     * Read the central directory file headers until the signature no longer matches instead of
+     * relying on the number of entries, which is limited to 65535 in the end of central
+     * directory record.
+     */
+    while ((offset < endOfCentralDirectoryOffset)
+        && (readInt(jarData, offset) == CENTRAL_DIRECTORY_FILE_HEADER_SIGNATURE))
+    {
+      int compressionMethod = readShort(jarData, offset + 10);
+      int compressedSize = readInt(jarData, offset + 20);
+      int size = readInt(jarData, offset + 24);
+      int nameLength = readShort(jarData, offset + 28);
+      int extraFieldLength = readShort(jarData, offset + 30);
+      int commentLength = readShort(jarData, offset + 32);
+      int localHeaderOffset = readInt(jarData, offset + 42);
+
+      String name = new String(jarData, offset + 46, nameLength, StandardCharsets.UTF_8);
+
+      offset += 46 + nameLength + extraFieldLength + commentLength;
+
+      // Skip directories
+      if (name.endsWith("/"))
+      {
+        continue;
+      }
+
+      // The data for the entry follows the local file header, whose extra field may differ
+      int dataOffset = localHeaderOffset + 30 + readShort(jarData, localHeaderOffset + 26)
+          + readShort(jarData, localHeaderOffset + 28);
+
+      JarEntryLocation location = new JarEntryLocation(jarData, dataOffset, compressedSize, size,
+          compressionMethod);
+
+      if (name.endsWith(".jar") || name.endsWith(".zip"))
+      {
+        indexJar(location.getData(), index);
+
+        location.releaseData();
       }
-      else if (entry.getName().equals(path))
+      else
+      {
+        index.computeIfAbsent(name, key -> new ArrayList<>(1)).add(location);
+      }
+    }
+  }
+
+  /**
+   * The JarEntryLocation nested class holds the location of an entry in a JAR associated with a
+   * MemoryClassLoader instance and caches the inflated data for the entry.
+   */
+  private static class JarEntryLocation
+  {
+    private int compressedSize;
+    private int compressionMethod;
+    private volatile byte[] data;
+    private int dataOffset;
+    private byte[] jarData;
+    private int size;
+
+    /**
+     * Constructs a new JarEntryLocation.
+     *
+     * @param jarData           the binary representation of the JAR containing the entry
+     * @param dataOffset        the offset of the compressed data for the entry in the JAR
+     * @param compressedSize    the compressed size of the entry
+     * @param size              the uncompressed size of the entry
+     * @param compressionMethod the compression method for the entry
+     */
+    JarEntryLocation(byte[] jarData, int dataOffset, int compressedSize, int size,
+        int compressionMethod)
+    {
+      this.jarData = jarData;
+      this.dataOffset = dataOffset;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.compressionMethod = compressionMethod;
+    }
+
+    /**
+     * Returns the inflated data for the entry, inflating and caching the data if required.
+     *
+     * @return the inflated data for the entry
+     *
+     * @throws IOException an IO exception occurs
+     */
+    byte[] getData()
+      throws IOException
+    {
+      byte[] entryData = data;
+
+      if (entryData == null)
       {
-        return getJarEntryAsBytes(jarInputStream);
+        entryData = inflate();
+
+        data = entryData;
       }
+
+      return entryData;
+    }
+
+    /**
+     * Release the cached inflated data for the entry.
+     */
+    void releaseData()
+    {
+      data = null;
     }
 
-    return null;
+    private byte[] inflate()
+      throws IOException
+    {
+      switch (compressionMethod)
+      {
+        case 0:
+
+          // Stored
+          return Arrays.copyOfRange(jarData, dataOffset, dataOffset + size);
+
+        case 8:
+
+          // Deflated
+          Inflater inflater = new Inflater(true);
+
+          try
+          {
+            // Supply an extra byte, if available, as required when inflating without a header
+            inflater.setInput(jarData, dataOffset, Math.min(compressedSize + 1,
+                jarData.length - dataOffset));
+
+            byte[] entryData = new byte[size];
+
+            int numberOfBytesInflated = 0;
+
+            while ((numberOfBytesInflated < size) && (!inflater.finished()))
+            {
+              int numberOfBytes = inflater.inflate(entryData, numberOfBytesInflated,
+                  size - numberOfBytesInflated);
+
+              if ((numberOfBytes == 0) && (inflater.needsInput() || inflater.needsDictionary()))
+              {
+                break;
+              }
+
+              numberOfBytesInflated += numberOfBytes;
+            }
+
+            if (numberOfBytesInflated != size)
+            {
+              throw new IOException(String.format("Failed to inflate the JAR entry: Expected %d "
+                  + "bytes but inflated %d bytes", size, numberOfBytesInflated));
+            }
+
+            return entryData;
+          }
+          catch (DataFormatException e)
+          {
+            throw new IOException("Failed to inflate the JAR entry: " + e.getMessage(), e);
+          }
+          finally
+          {
+            inflater.end();
+          }
+
+        default:
+          throw new IOException(String.format(
+              "Failed to read the JAR entry: Unsupported compression method (%d)",
+              compressionMethod));
+      }
+    }
   }
 
   /**
@@ -322,15 +583,20 @@ public class MemoryClassLoader extends ClassLoader
     public InputStream getInputStream()
       throws IOException
     {
-      byte[] resourceData = memoryClassLoader.getResourceData(getURL().getFile());
+      String host = getURL().getHost();
+
+      JarEntryLocation location = memoryClassLoader.getJarEntryLocation(getURL().getFile(),
+          host.isEmpty()
+          ? 0
+          : Integer.parseInt(host));
 
-      if (resourceData == null)
+      if (location == null)
       {
         throw new IOException("Unable to find the resource (" + getURL().getFile()
             + ") in the in-memory JAR (" + getURL().getHost() + ")");
       }
 
-      return new ByteArrayInputStream(resourceData);
+      return new ByteArrayInputStream(location.getData());
     }
   }
 
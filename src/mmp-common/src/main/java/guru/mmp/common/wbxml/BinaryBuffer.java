@@ -20,6 +20,7 @@ package guru.mmp.common.wbxml;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 
 /**
@@ -121,4 +122,18 @@ public class BinaryBuffer
   {
     stream.write(b);
   }
+
+  /**
+   * Write the binary data stored by the <code>BinaryBuffer</code> to the specified output stream
+   * without copying the data.
+   *
+   * @param out the output stream to write the binary data to
+   *
+   * @throws IOException
+   */
+  void writeTo(OutputStream out)
+    throws IOException
+  {
+    stream.writeTo(out);
+  }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.common.wbxml;
+
+/**
+ * The <code>BufferPool</code> class provides a per-thread pool of the byte buffers used by the
+ * <code>WBXMLReader</code> and <code>Encoder</code> classes, which allows a buffer to be reused
+ * when successive WBXML documents are read or encoded on the same thread.
+ * <p/>
+ * A buffer that has been acquired is not available to other readers or encoders on the same
+ * thread until it has been released, so nested use results in a new buffer being allocated.
+ *
+ * @author Marcus Portmann
+ */
+final class BufferPool
+{
+  /**
+   * The default size of the buffers allocated by the pool.
+   */
+  static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /**
+   * The maximum size of a buffer that will be retained by the pool. Larger buffers are discarded
+   * when they are released to avoid holding on to the memory for unusually large documents.
+   */
+  static final int MAXIMUM_POOLED_BUFFER_SIZE = 256 * 1024;
+
+  /* The pooled buffers. */
+  private static final ThreadLocal<byte[]> pooledBuffers = new ThreadLocal<>();
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private BufferPool() {}
+
+  /**
+   * Acquire a buffer with at least the specified size from the pool.
+   *
+   * @param minimumSize the minimum size of the buffer
+   *
+   * @return the buffer
+   */
+  static byte[] acquire(int minimumSize)
+  {
+    byte[] buffer = pooledBuffers.get();
+
+    if ((buffer != null) && (buffer.length >= minimumSize))
+    {
+      pooledBuffers.set(null);
+
+      return buffer;
+    }
+
+    return new byte[Math.max(minimumSize, DEFAULT_BUFFER_SIZE)];
+  }
+
+  /**
+   * Release the buffer back to the pool.
+   *
+   * @param buffer the buffer
+   */
+  static void release(byte[] buffer)
+  {
+    if ((buffer != null) && (buffer.length <= MAXIMUM_POOLED_BUFFER_SIZE))
+    {
+      byte[] pooledBuffer = pooledBuffers.get();
+
+      if ((pooledBuffer == null) || (pooledBuffer.length < buffer.length))
+      {
+        pooledBuffers.set(buffer);
+      }
+    }
+  }
+}
@@ -18,42 +18,56 @@ package guru.mmp.common.wbxml;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The <code>Encoder</code> class generates the binary data representation of a WBXML document from
  * a WBXML object hierarchy.
+ * <p/>
+ * The document is encoded when the <code>Encoder</code> is constructed, using a buffer from a
+ * per-thread pool, so any errors encoding the document are reported by the constructor and
+ * changes made to the document afterwards do not affect the binary data. The static
+ * <code>encode()</code> method can be used instead to write a document directly to an
+ * <code>OutputStream</code> without first building the entire binary data representation of the
+ * document in memory.
  *
  * @author Marcus Portmann
  */
 public class Encoder
 {
-  private static final String ENCODING_UTF_8 = "UTF-8";
-  private BinaryBuffer buffer;
+  private byte[] buffer;
   private byte[] data;
-  private int length;
-  private List<String> stringTable;
+  private Document document;
+  private OutputStream opaqueOutputStream = new OpaqueOutputStream();
+  private OutputStream out;
+  private int position;
+  private List<byte[]> stringTable;
+  private int stringTableLength;
+  private Map<String, Integer> stringTableOffsets;
 
   /**
-   * Constructs a new <code>Encoder</code> to WBXML encode the specified document.
+   * Constructs a new <code>Encoder</code> and WBXML encodes the specified document.
    *
    * @param document the document to encode
    */
   public Encoder(Document document)
   {
-    // Initialise member variables
-    buffer = new BinaryBuffer();
-    stringTable = new ArrayList<>();
-
-    // The WBXML version
-    appendByte(WBXML.WBXML_VERSION);
-
-    // The public ID of the DTD associated with the specified document
-    appendMultiByteUINT32(document.getPublicId());
+    this(document, true);
+  }
 
-    // The IANA assigned ID of the charset for the specified document
-    appendMultiByteUINT32(WBXML.CHARSET_UTF_8);
+  private Encoder(Document document, boolean encode)
+  {
+    // Initialise member variables
+    this.document = document;
+    this.stringTable = new ArrayList<>();
+    this.stringTableOffsets = new HashMap<>();
 
     // If we are dealing with a document with an unknown public ID  for its DTD then
     // we must build a string table
@@ -62,23 +76,64 @@ public class Encoder
       buildStringTable(document.getRootElement());
     }
 
-    // Write the length of the string table
-    int stringTableLength = getStringTableLength();
+    if (encode)
+    {
+      buffer = BufferPool.acquire(BufferPool.DEFAULT_BUFFER_SIZE);
 
-    appendMultiByteUINT32(stringTableLength);
+      try
+      {
+        encode();
 
-    // Write the string table if required
-    if (stringTableLength > 0)
-    {
-      for (String tmpStr : stringTable)
+        data = Arrays.copyOf(buffer, position);
+      }
+      catch (IOException e)
       {
-        appendString(tmpStr);
+        throw new RuntimeException("Failed to encode the WBXML document", e);
+      }
+      finally
+      {
+        BufferPool.release(buffer);
+
+        buffer = null;
       }
     }
+  }
 
-    generateWBXML(document.getRootElement());
-    length = buffer.getLength();
-    data = buffer.getData();
+  /**
+   * WBXML encode the specified document and write the binary data directly to the specified
+   * output stream.
+   * <p/>
+   * Unlike <code>new Encoder(document).writeTo(out)</code>, the entire binary data representation
+   * of the document is not built in memory first. As a result, an error encoding the document is
+   * only reported once some of the binary data may already have been written to the output
+   * stream. The output stream is NOT flushed or closed.
+   *
+   * @param document the document to encode
+   * @param out      the output stream to write the binary data to
+   *
+   * @throws IOException
+   */
+  public static void encode(Document document, OutputStream out)
+    throws IOException
+  {
+    Encoder encoder = new Encoder(document, false);
+
+    encoder.buffer = BufferPool.acquire(BufferPool.DEFAULT_BUFFER_SIZE);
+    encoder.out = out;
+
+    try
+    {
+      encoder.encode();
+
+      encoder.flushBuffer();
+    }
+    finally
+    {
+      BufferPool.release(encoder.buffer);
+
+      encoder.buffer = null;
+      encoder.out = null;
+    }
   }
 
   /**
@@ -98,67 +153,119 @@ public class Encoder
    */
   public int getLength()
   {
-    return length;
+    return data.length;
+  }
+
+  /**
+   * Write the binary data which represents the WBXML encoded document to the specified output
+   * stream.
+   * <p/>
+   * The output stream is NOT flushed or closed.
+   *
+   * @param out the output stream to write the binary data to
+   *
+   * @throws IOException
+   */
+  public void writeTo(OutputStream out)
+    throws IOException
+  {
+    out.write(data);
   }
 
   private void addToStringTable(String str)
   {
-    for (String tmpStr : stringTable)
+    // If this string already exists in the string table then dont add it again
+    if (!stringTableOffsets.containsKey(str))
     {
-      // If this string already exists in the string table then dont add it again
-      if (tmpStr.equals(str))
-      {
-        return;
-      }
-    }
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
 
-    // Add the string to the string table
-    stringTable.add(str);
+      stringTableOffsets.put(str, stringTableLength);
+      stringTable.add(bytes);
+
+      stringTableLength += bytes.length + 1;
+    }
   }
 
   private void appendBinary(byte[] data)
+    throws IOException
+  {
+    appendBinary(data, 0, data.length);
+  }
+
+  private void appendBinary(byte[] data, int offset, int length)
+    throws IOException
   {
-    buffer.append(data);
+    if ((out != null) && (length > buffer.length))
+    {
+      // Write large blocks of binary data directly to the output stream
+      flushBuffer();
+
+      out.write(data, offset, length);
+    }
+    else
+    {
+      ensureCapacity(length);
+
+      System.arraycopy(data, offset, buffer, position, length);
+
+      position += length;
+    }
   }
 
   private void appendByte(int b)
+    throws IOException
   {
-    buffer.append(b);
+    ensureCapacity(1);
+
+    buffer[position++] = (byte) b;
   }
 
   private void appendMultiByteUINT32(int value)
+    throws IOException
   {
-    byte[] buf = new byte[5];
-    int idx = 0;
+    int numberOfBytes = 1;
 
-    do
+    for (int tmpValue = value >>> 7; tmpValue != 0; tmpValue >>>= 7)
     {
-      buf[idx++] = (byte) (value & 0x7f);
-      value = value >> 7;
+      numberOfBytes++;
     }
-    while (value != 0);
 
-    while (idx > 1)
+    ensureCapacity(numberOfBytes);
+
+    for (int i = numberOfBytes - 1; i > 0; i--)
     {
-      appendByte(buf[--idx] | 0x80);
+      buffer[position++] = (byte) (((value >>> (7 * i)) & 0x7f) | 0x80);
     }
 
-    appendByte(buf[0]);
+    buffer[position++] = (byte) (value & 0x7f);
   }
 
   private void appendString(String str)
+    throws IOException
   {
-    try
+    int length = str.length();
+
+    for (int i = 0; i < length; i++)
     {
-      buffer.append(str.getBytes(ENCODING_UTF_8));
+      if (str.charAt(i) >= 0x80)
+      {
+        // The string contains non-ASCII characters so it must be encoded as UTF-8
+        appendBinary(str.getBytes(StandardCharsets.UTF_8));
+        appendByte(0);
+
+        return;
+      }
     }
-    catch (Throwable e)
+
+    // Copy the ASCII characters directly into the buffer
+    ensureCapacity(length + 1);
+
+    for (int i = 0; i < length; i++)
     {
-      throw new RuntimeException("Failed to encode the string of length " + str.length()
-          + " for the WBXML document", e);
+      buffer[position++] = (byte) str.charAt(i);
     }
 
-    buffer.append(0);
+    buffer[position++] = 0;
   }
 
   private void buildStringTable(Element element)
@@ -193,7 +300,61 @@ public class Encoder
     }
   }
 
+  private void encode()
+    throws IOException
+  {
+    // The WBXML version
+    appendByte(WBXML.WBXML_VERSION);
+
+    // The public ID of the DTD associated with the specified document
+    appendMultiByteUINT32(document.getPublicId());
+
+    // The IANA assigned ID of the charset for the specified document
+    appendMultiByteUINT32(WBXML.CHARSET_UTF_8);
+
+    // Write the length of the string table
+    appendMultiByteUINT32(stringTableLength);
+
+    // Write the string table if required
+    for (byte[] bytes : stringTable)
+    {
+      appendBinary(bytes);
+      appendByte(0);
+    }
+
+    generateWBXML(document.getRootElement());
+  }
+
+  private void ensureCapacity(int numberOfBytes)
+    throws IOException
+  {
+    if ((position + numberOfBytes) > buffer.length)
+    {
+      if (out != null)
+      {
+        flushBuffer();
+      }
+
+      if ((position + numberOfBytes) > buffer.length)
+      {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + numberOfBytes));
+      }
+    }
+  }
+
+  private void flushBuffer()
+    throws IOException
+  {
+    if (position > 0)
+    {
+      out.write(buffer, 0, position);
+
+      position = 0;
+    }
+  }
+
   private void generateWBXML(Element element)
+    throws IOException
   {
     // Literal TAG
     byte elementTag = WBXML.TOKEN_LITERAL;
@@ -268,7 +429,7 @@ public class Encoder
 
           appendByte(WBXML.TOKEN_OPAQUE);
           appendMultiByteUINT32(opaque.getLength());
-          appendBinary(opaque.getData());
+          opaque.writeTo(opaqueOutputStream);
         }
       }
     }
@@ -277,57 +438,35 @@ public class Encoder
     appendByte(WBXML.TOKEN_END);
   }
 
-  private int getStringTableLength()
+  private int getStringTableOffset(String str)
   {
-    int stringTablelength = 0;
+    Integer offset = stringTableOffsets.get(str);
 
-    for (String tmpStr : stringTable)
-    {
-      try
-      {
-        byte[] bytes = tmpStr.getBytes(ENCODING_UTF_8);
-
-        stringTablelength += bytes.length;
-        stringTablelength += 1;
-      }
-      catch (Throwable e)
-      {
-        throw new RuntimeException("Failed to calculate the length of the string table for the "
-            + "WBXML document", e);
-      }
-    }
-
-    return stringTablelength;
+    // Return -1 if the string could not be found
+    return (offset != null)
+        ? offset
+        : -1;
   }
 
-  private int getStringTableOffset(String str)
+  /**
+   * The <code>OpaqueOutputStream</code> class appends the binary data for the opaque content in
+   * the document being encoded to the encoder's buffer, or writes it directly to the output
+   * stream for large blocks of binary data, without an intermediate copy.
+   */
+  private class OpaqueOutputStream extends OutputStream
   {
-    int offset = 0;
-
-    for (String tmpStr : stringTable)
+    @Override
+    public void write(int b)
+      throws IOException
     {
-      if (tmpStr.equals(str))
-      {
-        return offset;
-      }
-      else
-      {
-        try
-        {
-          byte[] bytes = tmpStr.getBytes(ENCODING_UTF_8);
-
-          offset += bytes.length;
-          offset += 1;
-        }
-        catch (Throwable e)
-        {
-          throw new RuntimeException("Failed to calculate the offset of the string (" + str
-              + ") in the string table for" + " the WBXML document", e);
-        }
-      }
+      appendByte(b);
     }
 
-    // The string could not be found
-    return -1;
+    @Override
+    public void write(byte[] b, int off, int len)
+      throws IOException
+    {
+      appendBinary(b, off, len);
+    }
   }
 }
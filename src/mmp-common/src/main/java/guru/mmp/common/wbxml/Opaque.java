@@ -19,6 +19,7 @@ package guru.mmp.common.wbxml;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
@@ -148,4 +149,18 @@ public class Opaque
       return super.toString();
     }
   }
+
+  /**
+   * Write the binary data for the <code>Opaque</code> instance to the specified output stream
+   * without copying the data.
+   *
+   * @param out the output stream to write the binary data to
+   *
+   * @throws IOException
+   */
+  void writeTo(OutputStream out)
+    throws IOException
+  {
+    buffer.writeTo(out);
+  }
 }
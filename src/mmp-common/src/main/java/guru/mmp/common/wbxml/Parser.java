@@ -18,22 +18,24 @@ package guru.mmp.common.wbxml;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The <code>Parser</code> class generates a WBXML object hierarchy from the binary data
  * representation of a WBXML document.
+ * <p/>
+ * The object hierarchy is built from the events produced by a <code>WBXMLReader</code>, which
+ * allows a document to be parsed directly from an <code>InputStream</code> without first reading
+ * the entire document into memory.
  *
  * @author Marcus Portmann
  */
 public class Parser
 {
-  private static final String ENCODING_UTF_8 = "UTF-8";
-  private ByteArrayInputStream stream = null;
-  private byte[] stringTable = null;
-
   /**
    * Constructs a new <code>Parser</code>.
    */
@@ -52,369 +54,134 @@ public class Parser
   public Document parse(byte[] data)
     throws IOException, ParserException
   {
-    // Local variables
-    int tmpValue;
-
-    // Initialise the input stream
-    stream = new ByteArrayInputStream(data);
-
-    // Read the version number
-    int version;
-    if ((version = readByte()) != WBXML.WBXML_VERSION)
-    {
-      throw new ParserException("Invalid WBXML version: " + version);
-    }
-
-    // Read the well known public identifier and check whether it is supported
-    int publicId;
-    if ((publicId = readByte()) != Document.PUBLIC_ID_UNKNOWN)
+    try (WBXMLReader reader = new WBXMLReader(data))
     {
-      throw new ParserException("Unknown document public identifier: " + publicId);
+      return parse(reader);
     }
+  }
 
-    // Read the character set and check whether it is supported
-    int charset;
-    if ((charset = readMultiByteUINT32()) != WBXML.CHARSET_UTF_8)
+  /**
+   * Parse the binary data representation of the WBXML document held in the remaining bytes of
+   * the specified buffer.
+   *
+   * @param data the buffer containing the binary data representation of the WBXML document
+   *
+   * @return the WBXML object hierarchy
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public Document parse(ByteBuffer data)
+    throws IOException, ParserException
+  {
+    try (WBXMLReader reader = new WBXMLReader(data))
     {
-      throw new ParserException("Unsupported character set: " + charset);
+      return parse(reader);
     }
-
-    // Read the length of the string table
-    int stringTableLength = readMultiByteUINT32();
-
-    // If we have a string table then read the entire thing and store it for later use
-    if (stringTableLength > 0)
-    {
-      stringTable = new byte[stringTableLength];
-
-      if (stream.read(stringTable, 0, stringTableLength) != stringTableLength)
-      {
-        throw new ParserException("Failed to read " + stringTableLength
-            + " bytes for the string table");
-      }
-    }
-
-    // Create the root element
-    Element rootElement = new Element();
-
-    while ((tmpValue = readByte()) != -1)
-    {
-      switch (tmpValue)
-      {
-        case WBXML.TOKEN_SWITCH_PAGE:
-        {
-          throw new ParserException("Unsupported token: TOKEN_SWITCH_PAGE");
-        }
-
-        case WBXML.TOKEN_PI:
-        {
-          throw new ParserException("Unsupported token: TOKEN_PI");
-        }
-
-        case WBXML.TOKEN_END:
-        {
-          throw new ParserException("Unexpected token: TOKEN_END");
-        }
-
-        default:
-        {
-          parseElement(tmpValue, rootElement);
-
-          break;
-        }
-      }
-    }
-
-    return new Document(rootElement);
   }
 
-  void parseAttributes(Element element)
+  /**
+   * Parse the binary data representation of the WBXML document read from the specified input
+   * stream.
+   * <p/>
+   * The input stream is NOT closed.
+   *
+   * @param in the input stream to read the binary data representation of the WBXML document from
+   *
+   * @return the WBXML object hierarchy
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public Document parse(InputStream in)
     throws IOException, ParserException
   {
-    int tmpValue;
-    int attributeNameOffset;
-    String attributeName;
-    String attributeValue;
-
-    // Read the first byte detailing the format of the attribute
-    tmpValue = readByte();
-
-    while (tmpValue != WBXML.TOKEN_END)
+    try (WBXMLReader reader = new WBXMLReader(in))
     {
-      // We can only handle literal attributes
-      if (tmpValue != WBXML.TOKEN_LITERAL)
-      {
-        throw new ParserException("Unsupported attribute tag identity: " + tmpValue);
-      }
-
-      // Read the offset into the string table for the name of this attribute
-      attributeNameOffset = readMultiByteUINT32();
-
-      // Read the name of the attribute from the string table
-      if ((attributeName = readFromStringTable(attributeNameOffset)) == null)
-      {
-        throw new ParserException("Invalid string table offset for attribute name: "
-            + attributeNameOffset);
-      }
-
-      // Read the byte giving the type of value for this attribute
-      tmpValue = readByte();
-
-      // We can only handle inline string attribute values
-      if (tmpValue != WBXML.TOKEN_STR_I)
-      {
-        throw new ParserException("Unsupported attribute value identity: " + tmpValue);
-      }
-
-      // Read the inline string
-      attributeValue = readString();
-
-      // Set the attribute
-      element.setAttribute(attributeName, attributeValue);
-
-      // Read the next byte. This will either be the end of the attributes or
-      // alternatively the start of a new attribute
-      tmpValue = readByte();
+      return parse(reader);
     }
   }
 
-  void parseContent(Element element)
+  /**
+   * Build the WBXML object hierarchy from the events read using the specified reader.
+   *
+   * @param reader the reader
+   *
+   * @return the WBXML object hierarchy
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public Document parse(WBXMLReader reader)
     throws IOException, ParserException
   {
-    int tmpValue;
+    // Create the root element
+    Element rootElement = new Element();
 
-    // Read the first byte detailing the format of the content
-    while (true)
-    {
-      tmpValue = readByte();
+    // The elements that have been started but not yet ended
+    List<Element> elements = new ArrayList<>();
 
-      switch (tmpValue)
-      {
-        case WBXML.TOKEN_END:
-        {
-          // End of content under this element
-          return;
-        }
+    int event;
 
-        case WBXML.TOKEN_ENTITY:
+    while ((event = reader.next()) != WBXMLReader.END_DOCUMENT)
+    {
+      switch (event)
+      {
+        case WBXMLReader.START_ELEMENT:
         {
-          // NOTE: We do not process the entity token
-          int entityLength = readMultiByteUINT32();
+          Element element;
 
-          if (stream.skip(entityLength) != entityLength)
+          if (elements.isEmpty())
           {
-            throw new IOException("Unexpected EOF while skipping entity with length: "
-                + entityLength);
+            element = rootElement;
           }
+          else
+          {
+            element = new Element();
 
-          break;
-        }
+            elements.get(elements.size() - 1).addContent(element);
+          }
 
-        case WBXML.TOKEN_STR_I:
-        {
-          // Read the inline string
-          String str = readString();
+          element.setName(reader.getName());
 
-          // Add as text content to the element
-          element.addContent(str);
+          for (int i = 0; i < reader.getAttributeCount(); i++)
+          {
+            element.setAttribute(reader.getAttributeName(i), reader.getAttributeValue(i));
+          }
+
+          elements.add(element);
 
           break;
         }
 
-        case WBXML.TOKEN_STR_T:
+        case WBXMLReader.END_ELEMENT:
         {
-          // Read the index into the string table
-          int stringTableOffset = readMultiByteUINT32();
-
-          // Read the string from the string table and add as text content to the element
-          element.addContent(readFromStringTable(stringTableOffset));
+          elements.remove(elements.size() - 1);
 
           break;
         }
 
-        case WBXML.TOKEN_OPAQUE:
+        case WBXMLReader.TEXT:
         {
-          // Read the length of the opaque data
-          int opaqueLength = readMultiByteUINT32();
-
-          // Read the opaque data
-          element.addContent(readOpaque(opaqueLength));
+          elements.get(elements.size() - 1).addContent(reader.getText());
 
           break;
         }
 
-        case WBXML.TOKEN_EXT_I_0:
-          throw new ParserException("Unsupported token: TOKEN_EXT_I_0");
-
-        case WBXML.TOKEN_EXT_I_1:
-          throw new ParserException("Unsupported token: TOKEN_EXT_I_1");
-
-        case WBXML.TOKEN_EXT_I_2:
-          throw new ParserException("Unsupported token: TOKEN_EXT_I_2");
-
-        case WBXML.TOKEN_EXT_0:
-          throw new ParserException("Unsupported token: TOKEN_EXT_0");
-
-        case WBXML.TOKEN_EXT_1:
-          throw new ParserException("Unsupported token: TOKEN_EXT_1");
-
-        case WBXML.TOKEN_EXT_2:
-          throw new ParserException("Unsupported token: TOKEN_EXT_2");
-
-        case WBXML.TOKEN_EXT_T_0:
-          throw new ParserException("Unsupported token: TOKEN_EXT_T_0");
-
-        case WBXML.TOKEN_EXT_T_1:
-          throw new ParserException("Unsupported token: TOKEN_EXT_T_1");
-
-        case WBXML.TOKEN_EXT_T_2:
-          throw new ParserException("Unsupported token: TOKEN_EXT_T_2");
-
-        case WBXML.TOKEN_PI:
-          throw new ParserException("Unsupported token: TOKEN_PI");
-
-        default:
+        case WBXMLReader.OPAQUE:
         {
-          Element childElement = new Element();
-
-          parseElement(tmpValue, childElement);
-          element.addContent(childElement);
+          elements.get(elements.size() - 1).addContent(reader.getOpaque());
 
           break;
         }
       }
     }
-  }
-
-  private void parseElement(int token, Element element)
-    throws IOException, ParserException
-  {
-    // Local variables
-    // int result = 0;
-    boolean hasAttributes = (token & 0x80) > 0;
-    boolean hasContent = (token & 0x40) > 0;
-    int elementIdentity = token & 0x3F;
 
-    // We only support unknown tags with an offset into the string table
-    if (elementIdentity != 0x04)
+    if (rootElement.getName() == null)
     {
-      throw new ParserException("Unsupported element tag identity: " + elementIdentity);
+      throw new ParserException("Failed to find the root element for the WBXML document");
     }
 
-    // Read the offset into the string table for the element name
-    int elementNameOffset = readMultiByteUINT32();
-
-    // Read the element name from the string table
-    String elementName;
-
-    if ((elementName = readFromStringTable(elementNameOffset)) == null)
-    {
-      throw new ParserException("Invalid string table offset for element name: "
-          + elementNameOffset);
-    }
-
-    element.setName(elementName);
-
-    // If we have attributes parse them now
-    if (hasAttributes)
-    {
-      parseAttributes(element);
-    }
-
-    // If we have content parse it now
-    if (hasContent)
-    {
-      parseContent(element);
-    }
-    else
-    {
-      if (readByte() != WBXML.TOKEN_END)
-      {
-        throw new ParserException("Missing token after element without content: TOKEN_END");
-      }
-    }
-  }
-
-  private int readByte()
-    throws IOException
-  {
-    return stream.read();
-  }
-
-  private String readFromStringTable(int offset)
-    throws ParserException
-  {
-    int index = offset;
-
-    while (index < stringTable.length)
-    {
-      if (stringTable[index] == 0)
-      {
-        try
-        {
-          return new String(stringTable, offset, index - offset, ENCODING_UTF_8);
-        }
-        catch (Throwable e)
-        {
-          throw new ParserException("Failed to retrieve the string at offset " + offset
-              + " from the string table");
-        }
-      }
-
-      index++;
-    }
-
-    throw new ParserException("String exceeds string table at offset: " + offset);
-  }
-
-  private int readMultiByteUINT32()
-    throws IOException
-  {
-    int result = 0;
-    int i;
-
-    do
-    {
-      i = readByte();
-      result = (result << 7) | (i & 0x7f);
-    }
-    while ((i & 0x80) != 0);
-
-    return result;
-  }
-
-  private byte[] readOpaque(int length)
-    throws IOException
-  {
-    byte[] data = new byte[length];
-
-    if (stream.read(data, 0, length) != length)
-    {
-      throw new IOException("EOF while parsing WBXML and reading opaque data");
-    }
-
-    return data;
-  }
-
-  private String readString()
-    throws IOException
-  {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-    while (true)
-    {
-      int tmpValue = readByte();
-
-      if (tmpValue == 0)
-      {
-        byte[] bytes = baos.toByteArray();
-
-        return new String(bytes, 0, bytes.length, ENCODING_UTF_8);
-      }
-      else
-      {
-        baos.write(tmpValue);
-      }
-    }
+    return new Document(rootElement);
   }
 }
@@ -0,0 +1,774 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.common.wbxml;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>WBXMLReader</code> class implements a pull-style reader that reads the binary data
+ * representation of a WBXML document one event at a time, without building a WBXML object
+ * hierarchy.
+ * <p/>
+ * The document is read incrementally from an <code>InputStream</code> using a buffer from a
+ * per-thread pool, or directly from a byte array or <code>ByteBuffer</code> without copying the
+ * data. Strings in the string table are decoded once and reused for every element and attribute
+ * that references them.
+ * <p/>
+ * A <code>ParserException</code> is thrown if the document is malformed or truncated, while an
+ * <code>IOException</code> is only thrown if the data for the document could not be read from the
+ * input stream.
+ * <p/>
+ * The <code>close()</code> method must be invoked once the reader is no longer required so that
+ * the pooled buffer can be reused. Closing the reader does not close the underlying input stream.
+ *
+ * @author Marcus Portmann
+ */
+public class WBXMLReader
+  implements Closeable
+{
+  /**
+   * The event indicating that the end of the document has been reached.
+   */
+  public static final int END_DOCUMENT = 1;
+
+  /**
+   * The event indicating that the end of an element has been read.
+   */
+  public static final int END_ELEMENT = 3;
+
+  /**
+   * The event indicating that opaque binary data has been read.
+   */
+  public static final int OPAQUE = 5;
+
+  /**
+   * The event indicating that the start of an element and its attributes have been read.
+   */
+  public static final int START_ELEMENT = 2;
+
+  /**
+   * The event indicating that text content has been read.
+   */
+  public static final int TEXT = 4;
+
+  /* The names of the attributes for the current element. */
+  private List<String> attributeNames = new ArrayList<>();
+
+  /* The values of the attributes for the current element. */
+  private List<String> attributeValues = new ArrayList<>();
+
+  /* The buffer holding the data for the document that has been read but not yet processed. */
+  private byte[] buffer;
+
+  /* Was the buffer acquired from the buffer pool? */
+  private boolean bufferPooled;
+
+  /* The names of the elements that have been started but not yet ended. */
+  private List<String> elementNames = new ArrayList<>();
+
+  /* The current event. */
+  private int event;
+
+  /* The input stream the document is read from or null if the document is held in the buffer. */
+  private InputStream in;
+
+  /* The index of the end of the data in the buffer. */
+  private int limit;
+
+  /* The name of the current element. */
+  private String name;
+
+  /* The opaque binary data for the current OPAQUE event. */
+  private byte[] opaque;
+
+  /* Is the TOKEN_END for an element without content still to be read? */
+  private boolean pendingEndElement;
+
+  /* The index of the next byte to read from the buffer. */
+  private int position;
+
+  /* The public ID for the document. */
+  private int publicId;
+
+  /* The buffer used to accumulate strings that span the boundary of the read buffer. */
+  private byte[] stringBuffer;
+
+  /* The string table for the document. */
+  private byte[] stringTable;
+
+  /* The decoded strings from the string table indexed by offset. */
+  private Map<Integer, String> stringTableStrings = new HashMap<>();
+
+  /* The text for the current TEXT event. */
+  private String text;
+
+  /**
+   * Constructs a new <code>WBXMLReader</code> that reads the specified binary data representation
+   * of a WBXML document.
+   *
+   * @param data the binary data representation of the WBXML document
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public WBXMLReader(byte[] data)
+    throws IOException, ParserException
+  {
+    this(data, 0, data.length);
+  }
+
+  /**
+   * Constructs a new <code>WBXMLReader</code> that reads the binary data representation of a
+   * WBXML document from the remaining bytes in the specified buffer.
+   * <p/>
+   * The position of the buffer is not changed.
+   *
+   * @param data the buffer containing the binary data representation of the WBXML document
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public WBXMLReader(ByteBuffer data)
+    throws IOException, ParserException
+  {
+    if (data.hasArray())
+    {
+      this.buffer = data.array();
+      this.position = data.arrayOffset() + data.position();
+      this.limit = data.arrayOffset() + data.limit();
+    }
+    else
+    {
+      this.buffer = new byte[data.remaining()];
+      this.position = 0;
+      this.limit = this.buffer.length;
+
+      data.duplicate().get(this.buffer);
+    }
+
+    readHeader();
+  }
+
+  /**
+   * Constructs a new <code>WBXMLReader</code> that reads the binary data representation of a
+   * WBXML document from the specified input stream.
+   *
+   * @param in the input stream to read the binary data representation of the WBXML document from
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public WBXMLReader(InputStream in)
+    throws IOException, ParserException
+  {
+    this.in = in;
+    this.buffer = BufferPool.acquire(BufferPool.DEFAULT_BUFFER_SIZE);
+    this.bufferPooled = true;
+
+    try
+    {
+      readHeader();
+    }
+    catch (Throwable e)
+    {
+      close();
+
+      throw e;
+    }
+  }
+
+  /**
+   * Constructs a new <code>WBXMLReader</code> that reads the binary data representation of a
+   * WBXML document from the specified range of the byte array.
+   *
+   * @param data   the byte array containing the binary data representation of the WBXML document
+   * @param offset the offset of the WBXML document in the byte array
+   * @param length the length of the WBXML document
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public WBXMLReader(byte[] data, int offset, int length)
+    throws IOException, ParserException
+  {
+    this.buffer = data;
+    this.position = offset;
+    this.limit = offset + length;
+
+    readHeader();
+  }
+
+  /**
+   * Release the pooled buffer used by the reader.
+   * <p/>
+   * The underlying input stream is NOT closed.
+   */
+  @Override
+  public void close()
+  {
+    if (bufferPooled)
+    {
+      bufferPooled = false;
+
+      BufferPool.release(buffer);
+
+      buffer = new byte[0];
+      position = 0;
+      limit = 0;
+    }
+  }
+
+  /**
+   * Returns the number of attributes for the current START_ELEMENT event.
+   *
+   * @return the number of attributes for the current START_ELEMENT event
+   */
+  public int getAttributeCount()
+  {
+    return attributeNames.size();
+  }
+
+  /**
+   * Returns the name of the attribute with the specified index for the current START_ELEMENT
+   * event.
+   *
+   * @param index the index of the attribute
+   *
+   * @return the name of the attribute with the specified index
+   */
+  public String getAttributeName(int index)
+  {
+    return attributeNames.get(index);
+  }
+
+  /**
+   * Returns the value of the attribute with the specified index for the current START_ELEMENT
+   * event.
+   *
+   * @param index the index of the attribute
+   *
+   * @return the value of the attribute with the specified index
+   */
+  public String getAttributeValue(int index)
+  {
+    return attributeValues.get(index);
+  }
+
+  /**
+   * Returns the number of elements that have been started but not yet ended.
+   *
+   * @return the number of elements that have been started but not yet ended
+   */
+  public int getDepth()
+  {
+    return elementNames.size();
+  }
+
+  /**
+   * Returns the current event.
+   *
+   * @return the current event
+   */
+  public int getEventType()
+  {
+    return event;
+  }
+
+  /**
+   * Returns the name of the element for the current START_ELEMENT or END_ELEMENT event or the
+   * name of the enclosing element for the current TEXT or OPAQUE event.
+   *
+   * @return the name of the element
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Returns the opaque binary data for the current OPAQUE event.
+   *
+   * @return the opaque binary data for the current OPAQUE event
+   */
+  public byte[] getOpaque()
+  {
+    return opaque;
+  }
+
+  /**
+   * Returns the public ID for the document.
+   *
+   * @return the public ID for the document
+   */
+  public int getPublicId()
+  {
+    return publicId;
+  }
+
+  /**
+   * Returns the text for the current TEXT event.
+   *
+   * @return the text for the current TEXT event
+   */
+  public String getText()
+  {
+    return text;
+  }
+
+  /**
+   * Read the next event from the document.
+   *
+   * @return the next event i.e. START_ELEMENT, END_ELEMENT, TEXT, OPAQUE or END_DOCUMENT
+   *
+   * @throws IOException
+   * @throws ParserException
+   */
+  public int next()
+    throws IOException, ParserException
+  {
+    attributeNames.clear();
+    attributeValues.clear();
+    opaque = null;
+    text = null;
+
+    if (event == END_DOCUMENT)
+    {
+      return event;
+    }
+
+    if (pendingEndElement)
+    {
+      pendingEndElement = false;
+
+      if (readByte() != WBXML.TOKEN_END)
+      {
+        throw new ParserException("Missing token after element without content: TOKEN_END");
+      }
+
+      return endElement();
+    }
+
+    while (true)
+    {
+      int token = readByte();
+
+      // Process the tokens outside the root element
+      if (elementNames.isEmpty())
+      {
+        switch (token)
+        {
+          case -1:
+          {
+            name = null;
+
+            return event = END_DOCUMENT;
+          }
+
+          case WBXML.TOKEN_SWITCH_PAGE:
+            throw new ParserException("Unsupported token: TOKEN_SWITCH_PAGE");
+
+          case WBXML.TOKEN_PI:
+            throw new ParserException("Unsupported token: TOKEN_PI");
+
+          case WBXML.TOKEN_END:
+            throw new ParserException("Unexpected token: TOKEN_END");
+
+          default:
+            return startElement(token);
+        }
+      }
+
+      // Process the content for the current element
+      switch (token)
+      {
+        case -1:
+          throw new ParserException("Unexpected EOF while parsing the content for the element: "
+              + name);
+
+        case WBXML.TOKEN_END:
+          return endElement();
+
+        case WBXML.TOKEN_ENTITY:
+        {
+          // NOTE: We do not process the entity token
+          skip(readMultiByteUINT32());
+
+          break;
+        }
+
+        case WBXML.TOKEN_STR_I:
+        {
+          text = readString();
+
+          return event = TEXT;
+        }
+
+        case WBXML.TOKEN_STR_T:
+        {
+          text = readFromStringTable(readMultiByteUINT32());
+
+          return event = TEXT;
+        }
+
+        case WBXML.TOKEN_OPAQUE:
+        {
+          int opaqueLength = readMultiByteUINT32();
+
+          opaque = new byte[opaqueLength];
+
+          readFully(opaque, 0, opaqueLength);
+
+          return event = OPAQUE;
+        }
+
+        case WBXML.TOKEN_EXT_I_0:
+          throw new ParserException("Unsupported token: TOKEN_EXT_I_0");
+
+        case WBXML.TOKEN_EXT_I_1:
+          throw new ParserException("Unsupported token: TOKEN_EXT_I_1");
+
+        case WBXML.TOKEN_EXT_I_2:
+          throw new ParserException("Unsupported token: TOKEN_EXT_I_2");
+
+        case WBXML.TOKEN_EXT_0:
+          throw new ParserException("Unsupported token: TOKEN_EXT_0");
+
+        case WBXML.TOKEN_EXT_1:
+          throw new ParserException("Unsupported token: TOKEN_EXT_1");
+
+        case WBXML.TOKEN_EXT_2:
+          throw new ParserException("Unsupported token: TOKEN_EXT_2");
+
+        case WBXML.TOKEN_EXT_T_0:
+          throw new ParserException("Unsupported token: TOKEN_EXT_T_0");
+
+        case WBXML.TOKEN_EXT_T_1:
+          throw new ParserException("Unsupported token: TOKEN_EXT_T_1");
+
+        case WBXML.TOKEN_EXT_T_2:
+          throw new ParserException("Unsupported token: TOKEN_EXT_T_2");
+
+        case WBXML.TOKEN_PI:
+          throw new ParserException("Unsupported token: TOKEN_PI");
+
+        default:
+          return startElement(token);
+      }
+    }
+  }
+
+  private int appendToStringBuffer(int length, int numberOfBytes)
+  {
+    if ((stringBuffer == null) || (stringBuffer.length < (length + numberOfBytes)))
+    {
+      byte[] newStringBuffer = new byte[Math.max(length + numberOfBytes, (stringBuffer == null)
+          ? 256
+          : stringBuffer.length * 2)];
+
+      if (length > 0)
+      {
+        System.arraycopy(stringBuffer, 0, newStringBuffer, 0, length);
+      }
+
+      stringBuffer = newStringBuffer;
+    }
+
+    System.arraycopy(buffer, position, stringBuffer, length, numberOfBytes);
+
+    return length + numberOfBytes;
+  }
+
+  private int endElement()
+  {
+    name = elementNames.remove(elementNames.size() - 1);
+
+    return event = END_ELEMENT;
+  }
+
+  private boolean fill()
+    throws IOException
+  {
+    if (in == null)
+    {
+      return false;
+    }
+
+    position = 0;
+    limit = 0;
+
+    int numberOfBytesRead = in.read(buffer, 0, buffer.length);
+
+    if (numberOfBytesRead <= 0)
+    {
+      return false;
+    }
+
+    limit = numberOfBytesRead;
+
+    return true;
+  }
+
+  private void parseAttributes()
+    throws IOException, ParserException
+  {
+    // Read the first byte detailing the format of the attribute
+    int tmpValue = readByte();
+
+    while (tmpValue != WBXML.TOKEN_END)
+    {
+      // We can only handle literal attributes
+      if (tmpValue != WBXML.TOKEN_LITERAL)
+      {
+        throw new ParserException("Unsupported attribute tag identity: " + tmpValue);
+      }
+
+      // Read the name of the attribute from the string table
+      attributeNames.add(readFromStringTable(readMultiByteUINT32()));
+
+      // We can only handle inline string attribute values
+      if ((tmpValue = readByte()) != WBXML.TOKEN_STR_I)
+      {
+        throw new ParserException("Unsupported attribute value identity: " + tmpValue);
+      }
+
+      attributeValues.add(readString());
+
+      // Read the next byte. This will either be the end of the attributes or
+      // alternatively the start of a new attribute
+      tmpValue = readByte();
+    }
+  }
+
+  private int readByte()
+    throws IOException
+  {
+    if ((position >= limit) && (!fill()))
+    {
+      return -1;
+    }
+
+    return buffer[position++] & 0xFF;
+  }
+
+  private String readFromStringTable(int offset)
+    throws ParserException
+  {
+    String str = stringTableStrings.get(offset);
+
+    if (str != null)
+    {
+      return str;
+    }
+
+    if ((stringTable == null) || (offset < 0) || (offset >= stringTable.length))
+    {
+      throw new ParserException("Invalid string table offset: " + offset);
+    }
+
+    for (int index = offset; index < stringTable.length; index++)
+    {
+      if (stringTable[index] == 0)
+      {
+        str = new String(stringTable, offset, index - offset, StandardCharsets.UTF_8);
+
+        stringTableStrings.put(offset, str);
+
+        return str;
+      }
+    }
+
+    throw new ParserException("String exceeds string table at offset: " + offset);
+  }
+
+  private void readFully(byte[] data, int offset, int length)
+    throws IOException, ParserException
+  {
+    while (length > 0)
+    {
+      if ((position >= limit) && (!fill()))
+      {
+        throw new ParserException("Unexpected EOF while parsing WBXML and reading " + length
+            + " bytes of data");
+      }
+
+      int numberOfBytes = Math.min(length, limit - position);
+
+      System.arraycopy(buffer, position, data, offset, numberOfBytes);
+
+      position += numberOfBytes;
+      offset += numberOfBytes;
+      length -= numberOfBytes;
+    }
+  }
+
+  private void readHeader()
+    throws IOException, ParserException
+  {
+    // Read the version number
+    int version;
+
+    if ((version = readByte()) != WBXML.WBXML_VERSION)
+    {
+      throw new ParserException("Invalid WBXML version: " + version);
+    }
+
+    // Read the well known public identifier and check whether it is supported
+    if ((publicId = readByte()) != Document.PUBLIC_ID_UNKNOWN)
+    {
+      throw new ParserException("Unknown document public identifier: " + publicId);
+    }
+
+    // Read the character set and check whether it is supported
+    int charset;
+
+    if ((charset = readMultiByteUINT32()) != WBXML.CHARSET_UTF_8)
+    {
+      throw new ParserException("Unsupported character set: " + charset);
+    }
+
+    // Read the length of the string table
+    int stringTableLength = readMultiByteUINT32();
+
+    // If we have a string table then read the entire thing and store it for later use
+    if (stringTableLength > 0)
+    {
+      stringTable = new byte[stringTableLength];
+
+      readFully(stringTable, 0, stringTableLength);
+    }
+  }
+
+  private int readMultiByteUINT32()
+    throws IOException, ParserException
+  {
+    int result = 0;
+    int i;
+
+    do
+    {
+      if ((i = readByte()) == -1)
+      {
+        throw new ParserException(
+            "Unexpected EOF while parsing WBXML and reading a multi-byte integer");
+      }
+
+      result = (result << 7) | (i & 0x7f);
+    }
+    while ((i & 0x80) != 0);
+
+    return result;
+  }
+
+  private String readString()
+    throws IOException, ParserException
+  {
+    int length = 0;
+
+    while (true)
+    {
+      // Search the data in the buffer for the null terminator
+      for (int index = position; index < limit; index++)
+      {
+        if (buffer[index] == 0)
+        {
+          String str;
+
+          if (length == 0)
+          {
+            str = new String(buffer, position, index - position, StandardCharsets.UTF_8);
+          }
+          else
+          {
+            length = appendToStringBuffer(length, index - position);
+
+            str = new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+          }
+
+          position = index + 1;
+
+          return str;
+        }
+      }
+
+      // The string spans the end of the buffer so save the data read so far and refill
+      length = appendToStringBuffer(length, limit - position);
+
+      position = limit;
+
+      if (!fill())
+      {
+        throw new ParserException("Unexpected EOF while parsing WBXML and reading a string");
+      }
+    }
+  }
+
+  private void skip(int length)
+    throws IOException, ParserException
+  {
+    while (length > 0)
+    {
+      if ((position >= limit) && (!fill()))
+      {
+        throw new ParserException("Unexpected EOF while skipping entity with length: " + length);
+      }
+
+      int numberOfBytes = Math.min(length, limit - position);
+
+      position += numberOfBytes;
+      length -= numberOfBytes;
+    }
+  }
+
+  private int startElement(int token)
+    throws IOException, ParserException
+  {
+    boolean hasAttributes = (token & 0x80) > 0;
+    boolean hasContent = (token & 0x40) > 0;
+    int elementIdentity = token & 0x3F;
+
+    // We only support unknown tags with an offset into the string table
+    if (elementIdentity != 0x04)
+    {
+      throw new ParserException("Unsupported element tag identity: " + elementIdentity);
+    }
+
+    // Read the element name from the string table
+    name = readFromStringTable(readMultiByteUINT32());
+
+    elementNames.add(name);
+
+    // If we have attributes parse them now
+    if (hasAttributes)
+    {
+      parseAttributes();
+    }
+
+    pendingEndElement = !hasContent;
+
+    return event = START_ELEMENT;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.common.xml;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>XmlParserPool</code> class provides a per-thread pool of securely configured
+ * <code>DocumentBuilder</code> instances, which allows the parsers to be reused when successive
+ * XML documents are parsed on the same thread instead of being created for each document.
+ * <p/>
+ * The document builders do not support DTDs, external entities or XInclude, so they are safe to
+ * use with untrusted XML. XML documents that must be validated against a DTD should use a
+ * dedicated document builder with an appropriate entity resolver, e.g. <code>DtdJarResolver</code>.
+ * <p/>
+ * The document builders are reset before they are returned. They must not be used after they
+ * have been passed to another thread and must not be retrieved again on the same thread while
+ * they are still in use, e.g. when parsing one document from the error handler invoked while
+ * parsing another.
+ *
+ * @author Marcus Portmann
+ */
+public final class XmlParserPool
+{
+  /* The document builders that are not namespace aware. */
+  private static final ThreadLocal<DocumentBuilder> documentBuilders = ThreadLocal.withInitial(
+      () -> newDocumentBuilder(false));
+
+  /* The document builders that are namespace aware. */
+  private static final ThreadLocal<DocumentBuilder> namespaceAwareDocumentBuilders =
+      ThreadLocal.withInitial(() -> newDocumentBuilder(true));
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private XmlParserPool() {}
+
+  /**
+   * Returns the document builder, which is not namespace aware, for the current thread.
+   *
+   * @return the document builder, which is not namespace aware, for the current thread
+   */
+  public static DocumentBuilder getDocumentBuilder()
+  {
+    return reset(documentBuilders.get());
+  }
+
+  /**
+   * Returns the namespace aware document builder for the current thread.
+   *
+   * @return the namespace aware document builder for the current thread
+   */
+  public static DocumentBuilder getNamespaceAwareDocumentBuilder()
+  {
+    return reset(namespaceAwareDocumentBuilders.get());
+  }
+
+  private static DocumentBuilder newDocumentBuilder(boolean namespaceAware)
+  {
+    try
+    {
+      DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+
+      builderFactory.setNamespaceAware(namespaceAware);
+      builderFactory.setValidating(false);
+      builderFactory.setXIncludeAware(false);
+      builderFactory.setExpandEntityReferences(false);
+      builderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      builderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      builderFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+      builderFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+      builderFactory.setFeature(
+          "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+
+      return builderFactory.newDocumentBuilder();
+    }
+    catch (ParserConfigurationException e)
+    {
+      throw new XmlParserException("Failed to initialise the document builder", e);
+    }
+  }
+
+  private static DocumentBuilder reset(DocumentBuilder builder)
+  {
+    builder.reset();
+    builder.setErrorHandler(new XmlParserErrorHandler());
+
+    return builder;
+  }
+}
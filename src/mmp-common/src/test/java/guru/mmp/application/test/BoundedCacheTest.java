@@ -0,0 +1,321 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.util.BoundedCache;
+import guru.mmp.common.util.ExpiryCache;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>BoundedCacheTest</code> class contains the implementation of the JUnit tests for the
+ * <code>BoundedCache</code> and <code>ExpiryCache</code> classes.
+ *
+ * @author Marcus Portmann
+ */
+public class BoundedCacheTest
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(BoundedCacheTest.class);
+
+  /**
+   * Test that frequently read entries survive a scan of entries that are only read once.
+   */
+  @Test
+  public void evictionTest()
+  {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(100);
+
+    for (int i = 0; i < 100; i++)
+    {
+      cache.put(i, "Value" + i);
+    }
+
+    for (int round = 0; round < 5; round++)
+    {
+      for (int i = 0; i < 50; i++)
+      {
+        assertNotNull(cache.getIfPresent(i));
+      }
+    }
+
+    for (int i = 1000; i < 1200; i++)
+    {
+      cache.put(i, "Value" + i);
+    }
+
+    assertEquals("The cache exceeded its maximum size", 100, cache.size());
+
+    for (int i = 0; i < 50; i++)
+    {
+      assertEquals("The frequently read entry (" + i + ") was evicted", "Value" + i,
+          cache.getIfPresent(i));
+    }
+
+    assertEquals("The incorrect number of entries was evicted", 200,
+        cache.getStatistics().getEvictionCount());
+  }
+
+  /**
+   * Test the expiry of entries that have not been accessed in the expiry period.
+   */
+  @Test
+  public void expiryTest()
+  {
+    AtomicLong time = new AtomicLong();
+
+    BoundedCache<Integer, String> cache = new BoundedCache<>(0, 60, TimeUnit.SECONDS, time::get);
+
+    // Add entries over a period of two hours
+    for (int i = 0; i < 7200; i++)
+    {
+      cache.put(i, "Value" + i);
+
+      time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    assertTrue("The expired entries were not removed as the cache was used", cache.size() <= 62);
+
+    assertNull("An expired entry was returned", cache.getIfPresent(0));
+    assertNotNull("An entry that has not expired was not returned", cache.getIfPresent(7199));
+
+    // Keep reading an entry so that it does not expire
+    for (int i = 0; i < 10; i++)
+    {
+      time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+      assertNotNull("An entry that was read recently expired", cache.getIfPresent(7199));
+    }
+
+    time.addAndGet(TimeUnit.HOURS.toNanos(6));
+
+    int expired = cache.cleanUp();
+
+    assertTrue("No entries were expired", expired > 0);
+    assertEquals("Not all the entries were expired", 0, cache.size());
+    assertNull("An expired entry was returned", cache.getIfPresent(7199));
+
+    // Entries that expire after they are written must expire even if they are read regularly
+    BoundedCache<Integer, String> writeCache = new BoundedCache<>(0, 60, TimeUnit.SECONDS, true,
+        time::get);
+
+    writeCache.put(1, "Value1");
+
+    for (int i = 0; i < 3; i++)
+    {
+      time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+      writeCache.getIfPresent(1);
+    }
+
+    assertNull("An entry that was read recently did not expire after it was written",
+        writeCache.getIfPresent(1));
+  }
+
+  /**
+   * Test the <code>ExpiryCache</code> facade.
+   */
+  @Test
+  public void expiryCacheTest()
+    throws Exception
+  {
+    ExpiryCache<String, String> cache = new ExpiryCache<>(1);
+
+    cache.put("Key", "Value");
+
+    assertEquals("Value", cache.get("Key"));
+    assertTrue(cache.keys().hasMoreElements());
+    assertNull(cache.get(null));
+
+    Thread.sleep(1100);
+
+    assertEquals("The entry was not expired", 1, cache.expire());
+    assertEquals(0, cache.size());
+    assertNull(cache.get("Key"));
+
+    cache.put("Key", "Value");
+
+    assertEquals("Value", cache.remove("Key"));
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Test that only one thread invokes the loader for a key that is being loaded by multiple
+   * threads.
+   */
+  @Test
+  public void singleFlightLoadTest()
+    throws Exception
+  {
+    BoundedCache<String, String> cache = new BoundedCache<>(100);
+
+    AtomicInteger numberOfLoads = new AtomicInteger();
+
+    CountDownLatch startLatch = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try
+    {
+      Future<?>[] futures = new Future<?>[8];
+
+      for (int i = 0; i < futures.length; i++)
+      {
+        futures[i] = executor.submit(() ->
+            {
+              startLatch.await();
+
+              return cache.get("Key", key ->
+                  {
+                    numberOfLoads.incrementAndGet();
+
+                    try
+                    {
+                      Thread.sleep(250);
+                    }
+                    catch (InterruptedException ignored) {}
+
+                    return "Value";
+                  }
+                  );
+            }
+            );
+      }
+
+      startLatch.countDown();
+
+      for (Future<?> future : futures)
+      {
+        assertEquals("Value", future.get());
+      }
+    }
+    finally
+    {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    assertEquals("The value was loaded more than once", 1, numberOfLoads.get());
+    assertEquals(1, cache.getStatistics().getLoadSuccessCount());
+
+    logger.info("Retrieved the cache statistics: " + cache.getStatistics());
+  }
+
+  /**
+   * Test that caches with a maximum size too small for the protected segment to hold 80% of the
+   * entries do not exceed their maximum size when entries are read, replaced and added.
+   */
+  @Test
+  public void smallCapacityTest()
+  {
+    for (int maximumSize = 1; maximumSize <= 3; maximumSize++)
+    {
+      BoundedCache<Integer, String> cache = new BoundedCache<>(maximumSize);
+
+      for (int i = 0; i < 300; i += 3)
+      {
+        cache.put(i, "Value" + i);
+
+        assertEquals("The entry (" + i + ") that was just added was not retrieved", "Value" + i,
+            cache.getIfPresent(i));
+
+        // Apply the read, which promotes the entry, and then replace and add entries
+        cache.put(i + 1, "Value" + (i + 1));
+        cache.put(i + 1, "Value" + (i + 1));
+        cache.put(i + 2, "Value" + (i + 2));
+
+        assertTrue("The cache exceeded its maximum size (" + maximumSize + ")",
+            cache.size() <= maximumSize);
+      }
+    }
+  }
+
+  /**
+   * Measure the throughput of concurrent reads.
+   */
+  @Test
+  public void throughputTest()
+    throws Exception
+  {
+    int numberOfThreads = 4;
+    int numberOfReads = 1000000;
+
+    BoundedCache<Integer, Integer> cache = new BoundedCache<>(10000, 5, TimeUnit.MINUTES);
+
+    for (int i = 0; i < 10000; i++)
+    {
+      cache.put(i, i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+
+    try
+    {
+      Future<?>[] futures = new Future<?>[numberOfThreads];
+
+      long startTime = System.nanoTime();
+
+      for (int i = 0; i < futures.length; i++)
+      {
+        futures[i] = executor.submit(() ->
+            {
+              for (int j = 0; j < numberOfReads; j++)
+              {
+                cache.getIfPresent(j % 12000);
+              }
+            }
+            );
+      }
+
+      for (Future<?> future : futures)
+      {
+        future.get();
+      }
+
+      long elapsed = System.nanoTime() - startTime;
+
+      logger.info(String.format("Performed %d reads on %d threads in %d ms (%.0f ns/read)",
+          numberOfThreads * numberOfReads, numberOfThreads, elapsed / 1000000, ((double) elapsed)
+          / (numberOfThreads * numberOfReads)));
+    }
+    finally
+    {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    assertEquals(10000, cache.size());
+  }
+}
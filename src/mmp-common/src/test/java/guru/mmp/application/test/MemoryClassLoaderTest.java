@@ -0,0 +1,326 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.util.MemoryClassLoader;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>MemoryClassLoaderTest</code> class contains the implementation of the JUnit tests for
+ * the <code>MemoryClassLoader</code> class.
+ *
+ * @author Marcus Portmann
+ */
+public class MemoryClassLoaderTest
+{
+  private static final int NUMBER_OF_CLASSES = 10000;
+  private static final int NUMBER_OF_NESTED_CLASSES = 1000;
+  private static final int NUMBER_OF_PACKAGES = 100;
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(MemoryClassLoaderTest.class);
+
+  /**
+   * Test loading every class from a large in-memory JAR, which contains a nested JAR, and log the
+   * time taken.
+   */
+  @Test
+  public void loadAllClassesTest()
+    throws Exception
+  {
+    List<String> classNames = new ArrayList<>();
+
+    byte[] jar = createLargeJar(classNames);
+
+    long start = System.nanoTime();
+
+    MemoryClassLoader memoryClassLoader = new MemoryClassLoader(jar, getClass().getClassLoader());
+
+    for (String className : classNames)
+    {
+      Class<?> clazz = memoryClassLoader.loadClass(className);
+
+      assertSame(memoryClassLoader, clazz.getClassLoader());
+      assertEquals(className, clazz.getName());
+    }
+
+    long elapsed = System.nanoTime() - start;
+
+    logger.info(String.format("Loaded %d classes from a %d byte in-memory JAR in %d ms (%d ns "
+        + "per class)", classNames.size(), jar.length, elapsed / 1000000,
+        elapsed / classNames.size()));
+
+    // Loading the classes again must return the classes that have already been defined
+    for (String className : classNames)
+    {
+      assertSame(memoryClassLoader, memoryClassLoader.loadClass(className).getClassLoader());
+    }
+  }
+
+  /**
+   * Test loading the same classes from multiple threads using the parallel capable
+   * <code>MemoryClassLoader</code>.
+   */
+  @Test
+  public void parallelLoadClassesTest()
+    throws Exception
+  {
+    List<String> classNames = new ArrayList<>();
+
+    byte[] jar = createLargeJar(classNames);
+
+    MemoryClassLoader memoryClassLoader = new MemoryClassLoader(jar, getClass().getClassLoader());
+
+    int numberOfThreads = 8;
+
+    ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+
+    try
+    {
+      long start = System.nanoTime();
+
+      List<Future<List<Class<?>>>> futures = new ArrayList<>();
+
+      for (int i = 0; i < numberOfThreads; i++)
+      {
+        List<String> shuffledClassNames = new ArrayList<>(classNames);
+
+        Collections.shuffle(shuffledClassNames);
+
+        futures.add(executor.submit(() ->
+            {
+              List<Class<?>> classes = new ArrayList<>();
+
+              for (String className : shuffledClassNames)
+              {
+                classes.add(memoryClassLoader.loadClass(className));
+              }
+
+              return classes;
+            }
+            ));
+      }
+
+      for (Future<List<Class<?>>> future : futures)
+      {
+        for (Class<?> clazz : future.get())
+        {
+          assertSame(clazz, memoryClassLoader.loadClass(clazz.getName()));
+        }
+      }
+
+      logger.info(String.format("Loaded %d classes using %d threads in %d ms", classNames.size(),
+          numberOfThreads, (System.nanoTime() - start) / 1000000));
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Test retrieving resources from multiple in-memory JARs.
+   */
+  @Test
+  public void resourcesTest()
+    throws Exception
+  {
+    byte[] firstJar = createJar(Collections.singletonList(new Object[] { "test/Test.properties",
+        "first".getBytes(StandardCharsets.UTF_8) }));
+    byte[] secondJar = createJar(Collections.singletonList(new Object[] { "test/Test.properties",
+        "second".getBytes(StandardCharsets.UTF_8) }));
+
+    MemoryClassLoader memoryClassLoader = new MemoryClassLoader(firstJar,
+        getClass().getClassLoader());
+
+    memoryClassLoader.addJar(secondJar);
+
+    assertArrayEquals("first".getBytes(StandardCharsets.UTF_8),
+        memoryClassLoader.getResourceData("test/Test.properties"));
+    assertEquals("first", readResource(memoryClassLoader.getResource("test/Test.properties")));
+
+    List<URL> urls = Collections.list(memoryClassLoader.getResources("test/Test.properties"));
+
+    assertEquals(2, urls.size());
+    assertEquals("first", readResource(urls.get(0)));
+    assertEquals("second", readResource(urls.get(1)));
+
+    assertNull(memoryClassLoader.getResourceData("test/Missing.properties"));
+    assertNull(memoryClassLoader.getResource("test/Missing.properties"));
+
+    // Resources that are not found in the in-memory JARs are retrieved from the parent
+    assertNotNull(memoryClassLoader.getResource("guru/mmp/common/util/MemoryClassLoader.class"));
+
+    memoryClassLoader.clearJars();
+
+    assertNull(memoryClassLoader.getResourceData("test/Test.properties"));
+  }
+
+  private static byte[] createClassData(String internalClassName)
+    throws IOException
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (DataOutputStream out = new DataOutputStream(baos))
+    {
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(52);
+
+      // The constant pool containing the names of the class and its super class
+      out.writeShort(5);
+      out.writeByte(1);
+      out.writeUTF(internalClassName);
+      out.writeByte(7);
+      out.writeShort(1);
+      out.writeByte(1);
+      out.writeUTF("java/lang/Object");
+      out.writeByte(7);
+      out.writeShort(3);
+
+      // ACC_PUBLIC | ACC_SUPER
+      out.writeShort(0x0021);
+      out.writeShort(2);
+      out.writeShort(4);
+
+      // No interfaces, fields, methods or attributes
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(0);
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static byte[] createJar(List<Object[]> entries)
+    throws IOException
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (JarOutputStream out = new JarOutputStream(baos))
+    {
+      for (Object[] entry : entries)
+      {
+        out.putNextEntry(new JarEntry((String) entry[0]));
+        out.write((byte[]) entry[1]);
+        out.closeEntry();
+      }
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static byte[] createLargeJar(List<String> classNames)
+    throws IOException
+  {
+    List<Object[]> nestedEntries = new ArrayList<>();
+
+    for (int i = 0; i < NUMBER_OF_NESTED_CLASSES; i++)
+    {
+      String className = "nested.NestedClass" + i;
+
+      classNames.add(className);
+
+      nestedEntries.add(new Object[] { className.replace('.', '/') + ".class",
+          createClassData(className.replace('.', '/')) });
+    }
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (JarOutputStream out = new JarOutputStream(baos))
+    {
+      for (int i = 0; i < NUMBER_OF_CLASSES; i++)
+      {
+        String className = "generated.package" + (i % NUMBER_OF_PACKAGES) + ".GeneratedClass" + i;
+
+        classNames.add(className);
+
+        out.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+        out.write(createClassData(className.replace('.', '/')));
+        out.closeEntry();
+      }
+
+      // Store the nested JAR without compression to exercise both compression methods
+      byte[] nestedJar = createJar(nestedEntries);
+
+      CRC32 crc = new CRC32();
+
+      crc.update(nestedJar);
+
+      JarEntry nestedJarEntry = new JarEntry("lib/nested.jar");
+
+      nestedJarEntry.setMethod(ZipEntry.STORED);
+      nestedJarEntry.setSize(nestedJar.length);
+      nestedJarEntry.setCrc(crc.getValue());
+
+      out.putNextEntry(nestedJarEntry);
+      out.write(nestedJar);
+      out.closeEntry();
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static String readResource(URL url)
+    throws IOException
+  {
+    try (InputStream in = url.openStream())
+    {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+      byte[] buffer = new byte[1024];
+      int numberOfBytesRead;
+
+      while ((numberOfBytesRead = in.read(buffer)) != -1)
+      {
+        baos.write(buffer, 0, numberOfBytesRead);
+      }
+
+      return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.wbxml.Document;
+import guru.mmp.common.wbxml.Element;
+import guru.mmp.common.wbxml.Encoder;
+import guru.mmp.common.wbxml.Parser;
+import guru.mmp.common.wbxml.ParserException;
+import guru.mmp.common.wbxml.WBXMLReader;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>WBXMLTest</code> class contains the implementation of the JUnit tests for the WBXML
+ * parser, reader and encoder.
+ *
+ * @author Marcus Portmann
+ */
+public class WBXMLTest
+{
+  /**
+   * The data sizes used when measuring throughput. 40000 bytes is the maximum size of an
+   * asynchronous message for the messaging infrastructure.
+   */
+  private static final int[] DATA_SIZES = { 1024, 40000, 256 * 1024 };
+
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(WBXMLTest.class);
+
+  /**
+   * Test encoding a document and parsing it from a byte array, a buffer and an input stream that
+   * returns the data in small chunks.
+   */
+  @Test
+  public void encodeAndParseTest()
+    throws Exception
+  {
+    Document document = createDocument(20000);
+
+    Encoder encoder = new Encoder(document);
+
+    byte[] data = encoder.getData();
+
+    assertEquals(data.length, encoder.getLength());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    new Encoder(document).writeTo(out);
+
+    assertArrayEquals("The data written to the output stream does not match the encoded data",
+        data, out.toByteArray());
+
+    out.reset();
+
+    Encoder.encode(document, out);
+
+    assertArrayEquals("The data streamed to the output stream does not match the encoded data",
+        data, out.toByteArray());
+
+    Parser parser = new Parser();
+
+    assertDocumentsEqual(document, parser.parse(data));
+    assertDocumentsEqual(document, parser.parse(ByteBuffer.wrap(data)));
+    assertDocumentsEqual(document, parser.parse(new ChunkedInputStream(new ByteArrayInputStream(
+        data), 7)));
+
+    // Re-encoding the parsed document must produce the same binary data
+    assertArrayEquals("The re-encoded data does not match the encoded data", data, new Encoder(
+        parser.parse(new ByteArrayInputStream(data))).getData());
+  }
+
+  /**
+   * Test that the document is encoded when the encoder is constructed, so errors are reported
+   * straight away and later changes to the document do not affect the encoded data.
+   */
+  @Test
+  public void encodeOnConstructionTest()
+    throws Exception
+  {
+    Element rootElement = new Element("Root");
+
+    rootElement.setAttribute("name", "value");
+
+    Document document = new Document(rootElement);
+
+    Encoder encoder = new Encoder(document);
+
+    byte[] data = encoder.getData().clone();
+
+    rootElement.setAttribute("name", "another value");
+
+    assertArrayEquals("The encoded data was changed by a later change to the document", data,
+        encoder.getData());
+
+    rootElement.setAttribute("name", null);
+
+    try
+    {
+      new Encoder(document);
+
+      fail("The document with an invalid attribute value was encoded without an error");
+    }
+    catch (NullPointerException ignored) {}
+  }
+
+  /**
+   * Compare the throughput and allocation rate of the streaming reader and encoder with the
+   * object hierarchy based parser and encoder.
+   */
+  @Test
+  public void throughputTest()
+    throws Exception
+  {
+    for (int dataSize : DATA_SIZES)
+    {
+      Document document = createDocument(dataSize);
+
+      byte[] data = new Encoder(document).getData();
+
+      int iterations = Math.max(50, (4 * 1024 * 1024) / data.length);
+
+      // Warm up
+      for (int i = 0; i < iterations; i++)
+      {
+        new Parser().parse(data);
+        readAll(new ByteArrayInputStream(data));
+        Encoder.encode(document, new ByteArrayOutputStream(data.length));
+      }
+
+      long allocated = getAllocatedBytes();
+      long started = System.nanoTime();
+
+      for (int i = 0; i < iterations; i++)
+      {
+        new Parser().parse(new ByteArrayInputStream(data));
+      }
+
+      long parseTime = System.nanoTime() - started;
+      long parseAllocated = getAllocatedBytes() - allocated;
+
+      allocated = getAllocatedBytes();
+      started = System.nanoTime();
+
+      for (int i = 0; i < iterations; i++)
+      {
+        readAll(new ByteArrayInputStream(data));
+      }
+
+      long readTime = System.nanoTime() - started;
+      long readAllocated = getAllocatedBytes() - allocated;
+
+      allocated = getAllocatedBytes();
+      started = System.nanoTime();
+
+      for (int i = 0; i < iterations; i++)
+      {
+        new Encoder(document).getData();
+      }
+
+      long encodeTime = System.nanoTime() - started;
+      long encodeAllocated = getAllocatedBytes() - allocated;
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+
+      allocated = getAllocatedBytes();
+      started = System.nanoTime();
+
+      for (int i = 0; i < iterations; i++)
+      {
+        out.reset();
+
+        Encoder.encode(document, out);
+      }
+
+      long writeTime = System.nanoTime() - started;
+      long writeAllocated = getAllocatedBytes() - allocated;
+
+      logger.info(String.format("WBXML document with %d bytes (%d iterations): parse %.1f us "
+          + "(%d bytes allocated), streaming read %.1f us (%d bytes allocated), encode %.1f us "
+          + "(%d bytes allocated), streaming write %.1f us (%d bytes allocated)", data.length,
+          iterations, (parseTime / 1000.0) / iterations, parseAllocated / iterations, (readTime
+          / 1000.0) / iterations, readAllocated / iterations, (encodeTime / 1000.0) / iterations,
+          encodeAllocated / iterations, (writeTime / 1000.0) / iterations, writeAllocated
+          / iterations));
+    }
+  }
+
+  /**
+   * Test that parsing a truncated document from an input stream fails with a
+   * <code>ParserException</code> rather than an <code>IOException</code>, so that it can be
+   * distinguished from a failure to read the input stream.
+   */
+  @Test
+  public void truncatedDocumentTest()
+    throws Exception
+  {
+    Element rootElement = new Element("Root");
+
+    rootElement.setAttribute("name", "value");
+    rootElement.addContent(new Element("Text", "Some text"));
+    rootElement.addContent(new Element("Opaque", new byte[] { 1, 2, 3 }));
+
+    byte[] data = new Encoder(new Document(rootElement)).getData();
+
+    Parser parser = new Parser();
+
+    for (int length = 0; length < data.length; length++)
+    {
+      try
+      {
+        parser.parse(new ByteArrayInputStream(data, 0, length));
+
+        fail("The document truncated to " + length + " bytes was parsed");
+      }
+      catch (ParserException ignored) {}
+    }
+  }
+
+  /**
+   * Test reading the events for a document using the streaming reader.
+   */
+  @Test
+  public void wbxmlReaderTest()
+    throws Exception
+  {
+    Element rootElement = new Element("Root");
+
+    rootElement.setAttribute("name", "value");
+    rootElement.addContent(new Element("Empty"));
+    rootElement.addContent(new Element("Text", "Some text"));
+    rootElement.addContent(new Element("Opaque", new byte[] { 1, 2, 3 }));
+
+    byte[] data = new Encoder(new Document(rootElement)).getData();
+
+    try (WBXMLReader reader = new WBXMLReader(new ByteArrayInputStream(data)))
+    {
+      assertEquals(WBXMLReader.START_ELEMENT, reader.next());
+      assertEquals("Root", reader.getName());
+      assertEquals(1, reader.getAttributeCount());
+      assertEquals("name", reader.getAttributeName(0));
+      assertEquals("value", reader.getAttributeValue(0));
+      assertEquals(WBXMLReader.START_ELEMENT, reader.next());
+      assertEquals("Empty", reader.getName());
+      assertEquals(2, reader.getDepth());
+      assertEquals(WBXMLReader.END_ELEMENT, reader.next());
+      assertEquals("Empty", reader.getName());
+      assertEquals(WBXMLReader.START_ELEMENT, reader.next());
+      assertEquals("Text", reader.getName());
+      assertEquals(WBXMLReader.TEXT, reader.next());
+      assertEquals("Some text", reader.getText());
+      assertEquals(WBXMLReader.END_ELEMENT, reader.next());
+      assertEquals(WBXMLReader.START_ELEMENT, reader.next());
+      assertEquals("Opaque", reader.getName());
+      assertEquals(WBXMLReader.OPAQUE, reader.next());
+      assertArrayEquals(new byte[] { 1, 2, 3 }, reader.getOpaque());
+      assertEquals(WBXMLReader.END_ELEMENT, reader.next());
+      assertEquals(WBXMLReader.END_ELEMENT, reader.next());
+      assertEquals("Root", reader.getName());
+      assertEquals(0, reader.getDepth());
+      assertEquals(WBXMLReader.END_DOCUMENT, reader.next());
+    }
+  }
+
+  private static void assertElementsEqual(Element expected, Element actual)
+  {
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getAttributes().size(), actual.getAttributes().size());
+
+    for (int i = 0; i < expected.getAttributes().size(); i++)
+    {
+      assertEquals(expected.getAttributes().get(i).getName(), actual.getAttributes().get(i)
+          .getName());
+      assertEquals(expected.getAttributes().get(i).getValue(), actual.getAttributes().get(i)
+          .getValue());
+    }
+
+    assertEquals(expected.getText(), actual.getText());
+    assertArrayEquals(expected.getOpaque(), actual.getOpaque());
+    assertEquals(expected.getChildren().size(), actual.getChildren().size());
+
+    for (int i = 0; i < expected.getChildren().size(); i++)
+    {
+      assertElementsEqual(expected.getChildren().get(i), actual.getChildren().get(i));
+    }
+  }
+
+  private void assertDocumentsEqual(Document expected, Document actual)
+  {
+    assertElementsEqual(expected.getRootElement(), actual.getRootElement());
+  }
+
+  private Document createDocument(int dataSize)
+  {
+    Random random = new Random(dataSize);
+
+    Element rootElement = new Element("MessageData");
+
+    rootElement.setAttribute("id", "d21fb54e-5c5b-49e8-881f-ce00c6ced1a3");
+    rootElement.setAttribute("description", "Donn\u00e9es de test");
+
+    int remaining = dataSize;
+
+    for (int i = 0; remaining > 0; i++)
+    {
+      Element itemElement = new Element("Item");
+
+      itemElement.setAttribute("index", Integer.toString(i));
+
+      StringBuilder buffer = new StringBuilder();
+
+      for (int j = 0; j < 64; j++)
+      {
+        buffer.append((char) ('a' + random.nextInt(26)));
+      }
+
+      itemElement.addContent(new Element("Name", buffer.toString()));
+
+      byte[] opaque = new byte[Math.min(remaining, 1024 + random.nextInt(4096))];
+
+      random.nextBytes(opaque);
+
+      itemElement.addContent(new Element("Data", opaque));
+
+      rootElement.addContent(itemElement);
+
+      remaining -= opaque.length + buffer.length();
+    }
+
+    return new Document(rootElement);
+  }
+
+  private long getAllocatedBytes()
+  {
+    java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+    {
+      return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread
+          .currentThread().getId());
+    }
+
+    return 0;
+  }
+
+  private int readAll(InputStream in)
+    throws Exception
+  {
+    int numberOfEvents = 0;
+
+    try (WBXMLReader reader = new WBXMLReader(in))
+    {
+      while (reader.next() != WBXMLReader.END_DOCUMENT)
+      {
+        numberOfEvents++;
+      }
+    }
+
+    return numberOfEvents;
+  }
+
+  /**
+   * The <code>ChunkedInputStream</code> class returns the data from the underlying input stream
+   * in chunks no larger than a specified size.
+   */
+  private static class ChunkedInputStream extends FilterInputStream
+  {
+    private int chunkSize;
+
+    /**
+     * Constructs a new <code>ChunkedInputStream</code>.
+     *
+     * @param in        the underlying input stream
+     * @param chunkSize the maximum number of bytes to return from each read
+     */
+    ChunkedInputStream(InputStream in, int chunkSize)
+    {
+      super(in);
+
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+      throws IOException
+    {
+      return super.read(b, off, Math.min(len, chunkSize));
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 Marcus Portmann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package guru.mmp.application.test;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import guru.mmp.common.xml.XmlParserException;
+import guru.mmp.common.xml.XmlParserPool;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.soap.SOAPPart;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+/**
+ * The <code>XmlParserPoolTest</code> class contains the implementation of the JUnit tests for the
+ * <code>XmlParserPool</code> class.
+ *
+ * @author Marcus Portmann
+ */
+public class XmlParserPoolTest
+{
+  /* Logger */
+  private static final Logger logger = LoggerFactory.getLogger(XmlParserPoolTest.class);
+
+  /**
+   * The SOAP message used by the tests.
+   */
+  private static final String SOAP_MESSAGE = "<soapenv:Envelope "
+      + "xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+      + "xmlns:test=\"http://test.mmp.guru\"><soapenv:Header/><soapenv:Body>"
+      + "<test:Echo><test:Message>Hello World</test:Message><test:Count>1</test:Count>"
+      + "</test:Echo></soapenv:Body></soapenv:Envelope>";
+
+  /**
+   * Test that the document builders reject XML documents containing a DOCTYPE declaration, which
+   * prevents external entity and entity expansion attacks.
+   */
+  @Test
+  public void doctypeTest()
+  {
+    String xml = "<?xml version=\"1.0\"?><!DOCTYPE test [<!ENTITY xxe SYSTEM "
+        + "\"file:///etc/passwd\">]><test>&xxe;</test>";
+
+    try
+    {
+      XmlParserPool.getDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+
+      fail("The XML document containing a DOCTYPE declaration was parsed");
+    }
+    catch (XmlParserException ignored) {}
+    catch (Throwable e)
+    {
+      fail("Failed to reject the XML document containing a DOCTYPE declaration: "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * Test that the document builders are reused on the same thread and not shared between threads.
+   */
+  @Test
+  public void documentBuilderReuseTest()
+    throws Exception
+  {
+    DocumentBuilder builder = XmlParserPool.getNamespaceAwareDocumentBuilder();
+
+    assertSame("The document builder was not reused", builder,
+        XmlParserPool.getNamespaceAwareDocumentBuilder());
+    assertNotSame("The namespace aware document builder was returned", builder,
+        XmlParserPool.getDocumentBuilder());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try
+    {
+      Future<DocumentBuilder> future = executor.submit(
+          XmlParserPool::getNamespaceAwareDocumentBuilder);
+
+      assertNotSame("The document builder was shared between threads", builder, future.get());
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+
+    Document document = builder.parse(new InputSource(new StringReader(SOAP_MESSAGE)));
+
+    assertEquals("http://schemas.xmlsoap.org/soap/envelope/",
+        document.getDocumentElement().getNamespaceURI());
+  }
+
+  /**
+   * Measure the number of SOAP messages per second that can be converted to a DOM document by
+   * re-parsing the SOAP part with a new document builder, by re-parsing the SOAP part with the
+   * pooled document builder, and by using the DOM of the SOAP part directly.
+   */
+  @Test
+  public void soapMessageToDocumentPerformanceTest()
+    throws Exception
+  {
+    int numberOfMessages = 5000;
+
+    MessageFactory messageFactory = MessageFactory.newInstance();
+
+    Transformer transformer = TransformerFactory.newInstance().newTransformer();
+
+    byte[] soapMessageData = SOAP_MESSAGE.getBytes(StandardCharsets.UTF_8);
+
+    // Warm up
+    for (int i = 0; i < 1000; i++)
+    {
+      SOAPMessage message = createSOAPMessage(messageFactory, soapMessageData);
+
+      reparse(message.getSOAPPart(), transformer, newDocumentBuilder());
+      reparse(message.getSOAPPart(), transformer,
+          XmlParserPool.getNamespaceAwareDocumentBuilder());
+    }
+
+    long started = System.nanoTime();
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      SOAPMessage message = createSOAPMessage(messageFactory, soapMessageData);
+
+      reparse(message.getSOAPPart(), transformer, newDocumentBuilder());
+    }
+
+    double newBuilderRate = numberOfMessages / ((System.nanoTime() - started) / 1000000000.0);
+
+    started = System.nanoTime();
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      SOAPMessage message = createSOAPMessage(messageFactory, soapMessageData);
+
+      reparse(message.getSOAPPart(), transformer,
+          XmlParserPool.getNamespaceAwareDocumentBuilder());
+    }
+
+    double pooledBuilderRate = numberOfMessages / ((System.nanoTime() - started) / 1000000000.0);
+
+    started = System.nanoTime();
+
+    for (int i = 0; i < numberOfMessages; i++)
+    {
+      SOAPMessage message = createSOAPMessage(messageFactory, soapMessageData);
+
+      SOAPPart soapPart = message.getSOAPPart();
+
+      assertEquals("Envelope", soapPart.getDocumentElement().getLocalName());
+    }
+
+    double soapPartRate = numberOfMessages / ((System.nanoTime() - started) / 1000000000.0);
+
+    logger.info(String.format("Converted SOAP messages to DOM documents at %.0f messages/second "
+        + "with a new document builder, %.0f messages/second with the pooled document builder "
+        + "and %.0f messages/second using the DOM of the SOAP part", newBuilderRate,
+        pooledBuilderRate, soapPartRate));
+  }
+
+  private static SOAPMessage createSOAPMessage(MessageFactory messageFactory, byte[] data)
+    throws Exception
+  {
+    MimeHeaders mimeHeaders = new MimeHeaders();
+
+    mimeHeaders.addHeader("Content-Type", "text/xml; charset=UTF-8");
+
+    SOAPMessage message = messageFactory.createMessage(mimeHeaders, new ByteArrayInputStream(
+        data));
+
+    /*
+     * Retrieve the envelope, as the JAX-WS runtime and the web service security handlers do
+     * before the message is converted to a DOM document, which parses the SOAP part.
+     */
+    message.getSOAPPart().getEnvelope();
+
+    return message;
+  }
+
+  private static DocumentBuilder newDocumentBuilder()
+    throws Exception
+  {
+    DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+
+    documentBuilderFactory.setNamespaceAware(true);
+
+    return documentBuilderFactory.newDocumentBuilder();
+  }
+
+  private static void reparse(SOAPPart soapPart, Transformer transformer,
+      DocumentBuilder builder)
+    throws Exception
+  {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+    transformer.transform(soapPart.getContent(), new StreamResult(os));
+
+    Document document = builder.parse(new ByteArrayInputStream(os.toByteArray()));
+
+    assertEquals("Envelope", document.getDocumentElement().getLocalName());
+  }
+}
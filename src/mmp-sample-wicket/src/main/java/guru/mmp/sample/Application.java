@@ -20,6 +20,7 @@ package guru.mmp.sample;
 
 import guru.mmp.application.cache.CacheManager;
 import guru.mmp.application.cache.CacheManagerException;
+import guru.mmp.application.codes.CodesService;
 import guru.mmp.application.reporting.IReportingService;
 import guru.mmp.application.reporting.ReportDefinition;
 import guru.mmp.application.web.WebApplicationException;
@@ -51,6 +52,7 @@ import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.xml.ws.Endpoint;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -158,6 +160,21 @@ public class Application extends TemplateWebApplication
     return new CacheManager(configuration.getCacheManager());
   }
 
+  /**
+   * Returns the distributed in-memory cache used by the Codes Service to cache the code
+   * categories.
+   *
+   * @param cacheManager the in-memory distributed cache manager
+   *
+   * @return the distributed in-memory cache used by the Codes Service to cache the code categories
+   */
+  @Bean(name = CodesService.CODE_CATEGORY_CACHE_BEAN_NAME)
+  protected Map codeCategoryCache(CacheManager cacheManager)
+    throws CacheManagerException
+  {
+    return cacheManager.getCache("code-category-cache");
+  }
+
   /**
    * Returns the paths to the resources on the classpath that contain the SQL statements used to
    * initialise the in-memory application database.
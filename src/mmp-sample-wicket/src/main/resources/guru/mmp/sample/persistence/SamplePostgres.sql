@@ -63,6 +63,7 @@ DROP TABLE IF EXISTS SECURITY.USER_DIRECTORY_TYPES CASCADE;
 DROP TABLE IF EXISTS SECURITY.ORGANISATIONS CASCADE;
 DROP TABLE IF EXISTS SERVICE_REGISTRY.SERVICE_REGISTRY CASCADE;
 DROP TABLE IF EXISTS CONFIGURATION.CONFIG CASCADE;
+DROP TABLE IF EXISTS CONFIGURATION.CONFIGURATION_VERSION CASCADE;
 DROP TABLE IF EXISTS IDGENERATOR.IDGENERATOR CASCADE;
 DROP TABLE IF EXISTS TEST.TEST_DATA CASCADE;
 
@@ -286,6 +287,15 @@ COMMENT ON COLUMN CONFIGURATION.CONFIGURATION.DESCRIPTION
 
 
 
+CREATE TABLE CONFIGURATION.CONFIGURATION_VERSION (
+  VERSION  BIGINT NOT NULL
+);
+
+COMMENT ON COLUMN CONFIGURATION.CONFIGURATION_VERSION.VERSION
+  IS 'The version of the configuration values, which is incremented each time a configuration value is set or removed';
+
+
+
 CREATE TABLE IDGENERATOR.IDGENERATOR (
   NAME     TEXT NOT NULL,
   CURRENT  BIGINT DEFAULT 0,
@@ -536,6 +546,9 @@ COMMENT ON COLUMN MESSAGING.MESSAGE_PARTS.DATA
 
 
 
+-- NOTE: The MESSAGING.ARCHIVED_MESSAGES table is partitioned by month using inheritance. The
+--       partitions (MESSAGING.ARCHIVED_MESSAGES_YYYYMM) are created and dropped by the Messaging
+--       Service and the messages are inserted directly into the partitions.
 CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
   ID               UUID NOT NULL,
   USERNAME         TEXT NOT NULL,
@@ -545,6 +558,8 @@ CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
   CREATED          TIMESTAMP NOT NULL,
   ARCHIVED         TIMESTAMP NOT NULL,
   DATA             BYTEA,
+  DATA_SEGMENT     TEXT,
+  DATA_OFFSET      BIGINT,
 
   PRIMARY KEY (ID),
   CONSTRAINT ARCHIVED_MESSAGES_MESSAGE_TYPE_FK FOREIGN KEY (TYPE_ID) REFERENCES MESSAGING.MESSAGE_TYPES(ID)
@@ -552,15 +567,15 @@ CREATE TABLE MESSAGING.ARCHIVED_MESSAGES (
 
 CREATE INDEX ARCHIVED_MESSAGES_USERNAME_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (USERNAME);
+  (USERNAME, ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (DEVICE_ID);
+  (DEVICE_ID, ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_TYPE_ID_IX
   ON MESSAGING.ARCHIVED_MESSAGES
-  (TYPE_ID);
+  (TYPE_ID, ARCHIVED);
 
 COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.ID
   IS 'The Universally Unique Identifier (UUID) used to uniquely identify the message';
@@ -584,7 +599,13 @@ COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.ARCHIVED
   IS 'The date and time the message was archived';
 
 COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA
-  IS 'The data for the message';
+  IS 'The data for the message if it is not stored in the archived message data store';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_SEGMENT
+  IS 'The name of the segment file in the archived message data store containing the data for the message';
+
+COMMENT ON COLUMN MESSAGING.ARCHIVED_MESSAGES.DATA_OFFSET
+  IS 'The offset of the data for the message in the segment file in the archived message data store';
 
 
 
@@ -1239,6 +1260,8 @@ COMMENT ON COLUMN SAMPLE.DATA.VALUE
 -- -------------------------------------------------------------------------------------------------
 -- POPULATE TABLES
 -- -------------------------------------------------------------------------------------------------
+INSERT INTO CONFIGURATION.CONFIGURATION_VERSION (VERSION) VALUES (0);
+
 INSERT INTO SECURITY.ORGANISATIONS (ID, NAME, STATUS) VALUES
   ('c1685b92-9fe5-453a-995b-89d8c0f29cb5', 'MMP', 1);
 
@@ -1470,6 +1493,7 @@ GRANT ALL ON TABLE CODES.CODES TO sample;
 GRANT ALL ON TABLE CODES.CACHED_CODE_CATEGORIES TO sample;
 GRANT ALL ON TABLE CODES.CACHED_CODES TO sample;
 GRANT ALL ON TABLE CONFIGURATION.CONFIGURATION TO sample;
+GRANT ALL ON TABLE CONFIGURATION.CONFIGURATION_VERSION TO sample;
 GRANT ALL ON TABLE IDGENERATOR.IDGENERATOR TO sample;
 GRANT ALL ON TABLE MESSAGING.MESSAGE_TYPES TO sample;
 GRANT ALL ON TABLE MESSAGING.MESSAGE_STATUSES TO sample;
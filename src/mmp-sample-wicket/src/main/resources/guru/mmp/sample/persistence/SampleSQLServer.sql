@@ -11,6 +11,10 @@ IF OBJECT_ID('"MESSAGING"."ERROR_REPORTS"', 'U') IS NOT NULL
   DROP TABLE "MESSAGING"."ERROR_REPORTS";
 IF OBJECT_ID('"MESSAGING"."ARCHIVED_MESSAGES"', 'U') IS NOT NULL
   DROP TABLE "MESSAGING"."ARCHIVED_MESSAGES";
+IF EXISTS (SELECT * FROM sys.partition_schemes WHERE name = 'ARCHIVED_MESSAGES_PS')
+  DROP PARTITION SCHEME ARCHIVED_MESSAGES_PS;
+IF EXISTS (SELECT * FROM sys.partition_functions WHERE name = 'ARCHIVED_MESSAGES_PF')
+  DROP PARTITION FUNCTION ARCHIVED_MESSAGES_PF;
 IF OBJECT_ID('"MESSAGING"."MESSAGE_PARTS"', 'U') IS NOT NULL
   DROP TABLE "MESSAGING"."MESSAGE_PARTS";
 IF OBJECT_ID('"MESSAGING"."MESSAGES"', 'U') IS NOT NULL
@@ -61,6 +65,8 @@ IF OBJECT_ID('"SERVICE_REGISTRY"."SERVICE_REGISTRY"', 'U') IS NOT NULL
   DROP TABLE "SERVICE_REGISTRY"."SERVICE_REGISTRY";
 IF OBJECT_ID('"CONFIGURATION"."CONFIGURATION"', 'U') IS NOT NULL
   DROP TABLE "CONFIGURATION"."CONFIGURATION";
+IF OBJECT_ID('"CONFIGURATION"."CONFIGURATION_VERSION"', 'U') IS NOT NULL
+  DROP TABLE "CONFIGURATION"."CONFIGURATION_VERSION";
 IF OBJECT_ID('"IDGENERATOR"."IDGENERATOR"', 'U') IS NOT NULL
   DROP TABLE "IDGENERATOR"."IDGENERATOR";
 IF OBJECT_ID('"TEST"."TEST_DATA"', 'U') IS NOT NULL
@@ -294,6 +300,17 @@ GO
 
 
 
+CREATE TABLE "CONFIGURATION"."CONFIGURATION_VERSION" (
+  VERSION  BIGINT NOT NULL
+);
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The version of the configuration values, which is incremented each time a configuration value is set or removed' ,
+@level0type=N'SCHEMA', @level0name=N'CONFIGURATION', @level1type=N'TABLE', @level1name=N'CONFIGURATION_VERSION', @level2type=N'COLUMN', @level2name=N'VERSION';
+GO
+
+
+
 CREATE TABLE "IDGENERATOR"."IDGENERATOR" (
   NAME       NVARCHAR(256) NOT NULL,
   [CURRENT]  BIGINT DEFAULT 0,
@@ -591,6 +608,15 @@ GO
 
 
 
+-- NOTE: The MESSAGING.ARCHIVED_MESSAGES table is partitioned by month on the ARCHIVED column.
+--       The boundaries for the months are added to and removed from the partition function by
+--       the Messaging Service.
+CREATE PARTITION FUNCTION ARCHIVED_MESSAGES_PF (DATETIME)
+  AS RANGE RIGHT FOR VALUES ();
+
+CREATE PARTITION SCHEME ARCHIVED_MESSAGES_PS
+  AS PARTITION ARCHIVED_MESSAGES_PF ALL TO ([PRIMARY]);
+
 CREATE TABLE "MESSAGING"."ARCHIVED_MESSAGES" (
   ID               UNIQUEIDENTIFIER NOT NULL,
   USERNAME         NVARCHAR(256) NOT NULL,
@@ -600,22 +626,24 @@ CREATE TABLE "MESSAGING"."ARCHIVED_MESSAGES" (
   CREATED          DATETIME NOT NULL,
   ARCHIVED         DATETIME NOT NULL,
   DATA             VARBINARY(MAX),
+  DATA_SEGMENT     NVARCHAR(256),
+  DATA_OFFSET      BIGINT,
 
-  PRIMARY KEY (ID),
+  PRIMARY KEY (ID, ARCHIVED),
   CONSTRAINT ARCHIVED_MESSAGES_MESSAGE_TYPE_FK FOREIGN KEY (TYPE_ID) REFERENCES "MESSAGING"."MESSAGE_TYPES"(ID)
-);
+) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_USERNAME_IX
   ON "MESSAGING"."ARCHIVED_MESSAGES"
-  (USERNAME);
+  (USERNAME, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_DEVICE_ID_IX
   ON "MESSAGING"."ARCHIVED_MESSAGES"
-  (DEVICE_ID);
+  (DEVICE_ID, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 CREATE INDEX ARCHIVED_MESSAGES_TYPE_ID_IX
   ON "MESSAGING"."ARCHIVED_MESSAGES"
-  (TYPE_ID);
+  (TYPE_ID, ARCHIVED) ON ARCHIVED_MESSAGES_PS(ARCHIVED);
 
 EXEC sys.sp_addextendedproperty
 @name=N'MS_Description', @value=N'The Universally Unique Identifier (UUID) used to uniquely identify the message' ,
@@ -646,8 +674,16 @@ EXEC sys.sp_addextendedproperty
 @level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'ARCHIVED';
 
 EXEC sys.sp_addextendedproperty
-@name=N'MS_Description', @value=N'The data for the message' ,
+@name=N'MS_Description', @value=N'The data for the message if it is not stored in the archived message data store' ,
 @level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The name of the segment file in the archived message data store containing the data for the message' ,
+@level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA_SEGMENT';
+
+EXEC sys.sp_addextendedproperty
+@name=N'MS_Description', @value=N'The offset of the data for the message in the segment file in the archived message data store' ,
+@level0type=N'SCHEMA', @level0name=N'MESSAGING', @level1type=N'TABLE', @level1name=N'ARCHIVED_MESSAGES', @level2type=N'COLUMN', @level2name=N'DATA_OFFSET';
 GO
 
 
@@ -1462,6 +1498,8 @@ GO
 -- -------------------------------------------------------------------------------------------------
 -- POPULATE TABLES
 -- -------------------------------------------------------------------------------------------------
+INSERT INTO "CONFIGURATION"."CONFIGURATION_VERSION" (VERSION) VALUES (0);
+
 INSERT INTO "SECURITY"."ORGANISATIONS" (ID, NAME, STATUS) VALUES
   ('c1685b92-9fe5-453a-995b-89d8c0f29cb5', 'MMP', 1);
 